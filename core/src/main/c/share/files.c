@@ -111,6 +111,11 @@ JNIEXPORT jint JNICALL Java_com_questdb_std_Files_close0
     return close((int) fd);
 }
 
+JNIEXPORT jint JNICALL Java_com_questdb_std_Files_fsync0
+        (JNIEnv *e, jclass cl, jlong fd) {
+    return fsync((int) fd);
+}
+
 JNIEXPORT jlong JNICALL Java_com_questdb_std_Files_openRW
         (JNIEnv *e, jclass cl, jlong lpszName) {
     umask(0);
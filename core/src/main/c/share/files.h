@@ -141,6 +141,14 @@ JNIEXPORT jlong JNICALL Java_com_questdb_std_Files_write
 JNIEXPORT jint JNICALL Java_com_questdb_std_Files_close0
         (JNIEnv *, jclass, jlong);
 
+/*
+ * Class:     com_questdb_std_Files
+ * Method:    fsync0
+ * Signature: (J)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_std_Files_fsync0
+        (JNIEnv *, jclass, jlong);
+
 /*
  * Class:     com_questdb_std_Files
  * Method:    munmap0
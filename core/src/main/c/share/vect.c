@@ -0,0 +1,608 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+#include <stdint.h>
+#include <math.h>
+#include "vect.h"
+
+// Kernels skip nulls: NaN for double and float, minimum value for int and long. Aggregate of page
+// without values is null. AVX2 kernels are compiled for x86 with GCC and Clang regardless of compiler
+// flags and are chosen at runtime when CPU supports them, other builds have scalar kernels only.
+
+#if defined(__GNUC__) && (defined(__x86_64__) || defined(__i386__))
+#define VECT_AVX2
+#include <immintrin.h>
+#define AVX2 __attribute__((target("avx2")))
+#endif
+
+#define INT_NULL INT32_MIN
+#define LONG_NULL INT64_MIN
+
+static int instruction_set = com_questdb_std_Vect_INSTRUCTION_SET_SCALAR;
+
+// scalar kernels
+
+static jlong count_double_scalar(const jdouble *p, jlong count) {
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i])) {
+            n++;
+        }
+    }
+    return n;
+}
+
+static jlong count_float_scalar(const jfloat *p, jlong count) {
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i])) {
+            n++;
+        }
+    }
+    return n;
+}
+
+static jlong count_int_scalar(const jint *p, jlong count) {
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] != INT_NULL) {
+            n++;
+        }
+    }
+    return n;
+}
+
+static jlong count_long_scalar(const jlong *p, jlong count) {
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] != LONG_NULL) {
+            n++;
+        }
+    }
+    return n;
+}
+
+static jdouble max_double_scalar(const jdouble *p, jlong count) {
+    jdouble result = NAN;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i]) && (isnan(result) || p[i] > result)) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jfloat max_float_scalar(const jfloat *p, jlong count) {
+    jfloat result = NAN;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i]) && (isnan(result) || p[i] > result)) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jint max_int_scalar(const jint *p, jlong count) {
+    // null is the smallest int, it never wins
+    jint result = INT_NULL;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] > result) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jlong max_long_scalar(const jlong *p, jlong count) {
+    jlong result = LONG_NULL;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] > result) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jdouble min_double_scalar(const jdouble *p, jlong count) {
+    jdouble result = NAN;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i]) && (isnan(result) || p[i] < result)) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jfloat min_float_scalar(const jfloat *p, jlong count) {
+    jfloat result = NAN;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i]) && (isnan(result) || p[i] < result)) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jint min_int_scalar(const jint *p, jlong count) {
+    jint result = INT_NULL;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] != INT_NULL && (result == INT_NULL || p[i] < result)) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jlong min_long_scalar(const jlong *p, jlong count) {
+    jlong result = LONG_NULL;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] != LONG_NULL && (result == LONG_NULL || p[i] < result)) {
+            result = p[i];
+        }
+    }
+    return result;
+}
+
+static jdouble sum_double_scalar(const jdouble *p, jlong count) {
+    jdouble sum = 0;
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i])) {
+            sum += p[i];
+            n++;
+        }
+    }
+    return n > 0 ? sum : NAN;
+}
+
+static jdouble sum_float_scalar(const jfloat *p, jlong count) {
+    jdouble sum = 0;
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (!isnan(p[i])) {
+            sum += p[i];
+            n++;
+        }
+    }
+    return n > 0 ? sum : NAN;
+}
+
+static jlong sum_int_scalar(const jint *p, jlong count) {
+    jlong sum = 0;
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] != INT_NULL) {
+            sum += p[i];
+            n++;
+        }
+    }
+    return n > 0 ? sum : LONG_NULL;
+}
+
+static jlong sum_long_scalar(const jlong *p, jlong count) {
+    jlong sum = 0;
+    jlong n = 0;
+    for (jlong i = 0; i < count; i++) {
+        if (p[i] != LONG_NULL) {
+            sum += p[i];
+            n++;
+        }
+    }
+    return n > 0 ? sum : LONG_NULL;
+}
+
+#ifdef VECT_AVX2
+
+// AVX2 kernels, tails shorter than vector are aggregated by scalar kernels
+
+AVX2 static jdouble hmax_pd(__m256d v) {
+    jdouble d[4];
+    _mm256_storeu_pd(d, v);
+    jdouble result = d[0];
+    for (int i = 1; i < 4; i++) {
+        if (d[i] > result) {
+            result = d[i];
+        }
+    }
+    return result;
+}
+
+AVX2 static jdouble hmin_pd(__m256d v) {
+    jdouble d[4];
+    _mm256_storeu_pd(d, v);
+    jdouble result = d[0];
+    for (int i = 1; i < 4; i++) {
+        if (d[i] < result) {
+            result = d[i];
+        }
+    }
+    return result;
+}
+
+AVX2 static jdouble hsum_pd(__m256d v) {
+    jdouble d[4];
+    _mm256_storeu_pd(d, v);
+    return (d[0] + d[1]) + (d[2] + d[3]);
+}
+
+AVX2 static jlong hsum_epi64(__m256i v) {
+    jlong l[4];
+    _mm256_storeu_si256((__m256i *) l, v);
+    return l[0] + l[1] + l[2] + l[3];
+}
+
+AVX2 static jlong count_double_avx2(const jdouble *p, jlong count) {
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256d v = _mm256_loadu_pd(p + i);
+        n += __builtin_popcount(_mm256_movemask_pd(_mm256_cmp_pd(v, v, _CMP_ORD_Q)));
+    }
+    return n + count_double_scalar(p + i, count - i);
+}
+
+AVX2 static jlong count_float_avx2(const jfloat *p, jlong count) {
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 8 <= count; i += 8) {
+        const __m256 v = _mm256_loadu_ps(p + i);
+        n += __builtin_popcount(_mm256_movemask_ps(_mm256_cmp_ps(v, v, _CMP_ORD_Q)));
+    }
+    return n + count_float_scalar(p + i, count - i);
+}
+
+AVX2 static jlong count_int_avx2(const jint *p, jlong count) {
+    const __m256i nulls = _mm256_set1_epi32(INT_NULL);
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 8 <= count; i += 8) {
+        const __m256i v = _mm256_loadu_si256((const __m256i *) (p + i));
+        n += 8 - __builtin_popcount(_mm256_movemask_ps(_mm256_castsi256_ps(_mm256_cmpeq_epi32(v, nulls))));
+    }
+    return n + count_int_scalar(p + i, count - i);
+}
+
+AVX2 static jlong count_long_avx2(const jlong *p, jlong count) {
+    const __m256i nulls = _mm256_set1_epi64x(LONG_NULL);
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256i v = _mm256_loadu_si256((const __m256i *) (p + i));
+        n += 4 - __builtin_popcount(_mm256_movemask_pd(_mm256_castsi256_pd(_mm256_cmpeq_epi64(v, nulls))));
+    }
+    return n + count_long_scalar(p + i, count - i);
+}
+
+AVX2 static jdouble max_double_avx2(const jdouble *p, jlong count) {
+    const __m256d lowest = _mm256_set1_pd(-INFINITY);
+    __m256d max = lowest;
+    int found = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256d v = _mm256_loadu_pd(p + i);
+        const __m256d ok = _mm256_cmp_pd(v, v, _CMP_ORD_Q);
+        max = _mm256_max_pd(max, _mm256_blendv_pd(lowest, v, ok));
+        found |= _mm256_movemask_pd(ok);
+    }
+    const jdouble tail = max_double_scalar(p + i, count - i);
+    if (!found) {
+        return tail;
+    }
+    const jdouble result = hmax_pd(max);
+    return isnan(tail) || result > tail ? result : tail;
+}
+
+AVX2 static jfloat max_float_avx2(const jfloat *p, jlong count) {
+    const __m256 lowest = _mm256_set1_ps(-INFINITY);
+    __m256 max = lowest;
+    int found = 0;
+    jlong i = 0;
+    for (; i + 8 <= count; i += 8) {
+        const __m256 v = _mm256_loadu_ps(p + i);
+        const __m256 ok = _mm256_cmp_ps(v, v, _CMP_ORD_Q);
+        max = _mm256_max_ps(max, _mm256_blendv_ps(lowest, v, ok));
+        found |= _mm256_movemask_ps(ok);
+    }
+    const jfloat tail = max_float_scalar(p + i, count - i);
+    if (!found) {
+        return tail;
+    }
+    jfloat f[8];
+    _mm256_storeu_ps(f, max);
+    jfloat result = f[0];
+    for (int k = 1; k < 8; k++) {
+        if (f[k] > result) {
+            result = f[k];
+        }
+    }
+    return isnan(tail) || result > tail ? result : tail;
+}
+
+AVX2 static jint max_int_avx2(const jint *p, jlong count) {
+    // null is the smallest int, it never wins
+    __m256i max = _mm256_set1_epi32(INT_NULL);
+    jlong i = 0;
+    for (; i + 8 <= count; i += 8) {
+        max = _mm256_max_epi32(max, _mm256_loadu_si256((const __m256i *) (p + i)));
+    }
+    jint result = max_int_scalar(p + i, count - i);
+    jint m[8];
+    _mm256_storeu_si256((__m256i *) m, max);
+    for (int k = 0; k < 8; k++) {
+        if (m[k] > result) {
+            result = m[k];
+        }
+    }
+    return result;
+}
+
+AVX2 static jlong max_long_avx2(const jlong *p, jlong count) {
+    __m256i max = _mm256_set1_epi64x(LONG_NULL);
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256i v = _mm256_loadu_si256((const __m256i *) (p + i));
+        max = _mm256_blendv_epi8(max, v, _mm256_cmpgt_epi64(v, max));
+    }
+    jlong result = max_long_scalar(p + i, count - i);
+    jlong m[4];
+    _mm256_storeu_si256((__m256i *) m, max);
+    for (int k = 0; k < 4; k++) {
+        if (m[k] > result) {
+            result = m[k];
+        }
+    }
+    return result;
+}
+
+AVX2 static jdouble min_double_avx2(const jdouble *p, jlong count) {
+    const __m256d highest = _mm256_set1_pd(INFINITY);
+    __m256d min = highest;
+    int found = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256d v = _mm256_loadu_pd(p + i);
+        const __m256d ok = _mm256_cmp_pd(v, v, _CMP_ORD_Q);
+        min = _mm256_min_pd(min, _mm256_blendv_pd(highest, v, ok));
+        found |= _mm256_movemask_pd(ok);
+    }
+    const jdouble tail = min_double_scalar(p + i, count - i);
+    if (!found) {
+        return tail;
+    }
+    const jdouble result = hmin_pd(min);
+    return isnan(tail) || result < tail ? result : tail;
+}
+
+AVX2 static jfloat min_float_avx2(const jfloat *p, jlong count) {
+    const __m256 highest = _mm256_set1_ps(INFINITY);
+    __m256 min = highest;
+    int found = 0;
+    jlong i = 0;
+    for (; i + 8 <= count; i += 8) {
+        const __m256 v = _mm256_loadu_ps(p + i);
+        const __m256 ok = _mm256_cmp_ps(v, v, _CMP_ORD_Q);
+        min = _mm256_min_ps(min, _mm256_blendv_ps(highest, v, ok));
+        found |= _mm256_movemask_ps(ok);
+    }
+    const jfloat tail = min_float_scalar(p + i, count - i);
+    if (!found) {
+        return tail;
+    }
+    jfloat f[8];
+    _mm256_storeu_ps(f, min);
+    jfloat result = f[0];
+    for (int k = 1; k < 8; k++) {
+        if (f[k] < result) {
+            result = f[k];
+        }
+    }
+    return isnan(tail) || result < tail ? result : tail;
+}
+
+AVX2 static jint min_int_avx2(const jint *p, jlong count) {
+    const __m256i nulls = _mm256_set1_epi32(INT_NULL);
+    const __m256i highest = _mm256_set1_epi32(INT32_MAX);
+    __m256i min = highest;
+    int found = 0;
+    jlong i = 0;
+    for (; i + 8 <= count; i += 8) {
+        const __m256i v = _mm256_loadu_si256((const __m256i *) (p + i));
+        const __m256i null = _mm256_cmpeq_epi32(v, nulls);
+        min = _mm256_min_epi32(min, _mm256_blendv_epi8(v, highest, null));
+        found |= _mm256_movemask_ps(_mm256_castsi256_ps(null)) ^ 0xff;
+    }
+    jint result = min_int_scalar(p + i, count - i);
+    if (!found) {
+        return result;
+    }
+    jint m[8];
+    _mm256_storeu_si256((__m256i *) m, min);
+    for (int k = 0; k < 8; k++) {
+        if (result == INT_NULL || m[k] < result) {
+            result = m[k];
+        }
+    }
+    return result;
+}
+
+AVX2 static jlong min_long_avx2(const jlong *p, jlong count) {
+    const __m256i nulls = _mm256_set1_epi64x(LONG_NULL);
+    const __m256i highest = _mm256_set1_epi64x(INT64_MAX);
+    __m256i min = highest;
+    int found = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256i v = _mm256_loadu_si256((const __m256i *) (p + i));
+        const __m256i null = _mm256_cmpeq_epi64(v, nulls);
+        const __m256i value = _mm256_blendv_epi8(v, highest, null);
+        min = _mm256_blendv_epi8(min, value, _mm256_cmpgt_epi64(min, value));
+        found |= _mm256_movemask_pd(_mm256_castsi256_pd(null)) ^ 0xf;
+    }
+    jlong result = min_long_scalar(p + i, count - i);
+    if (!found) {
+        return result;
+    }
+    jlong m[4];
+    _mm256_storeu_si256((__m256i *) m, min);
+    for (int k = 0; k < 4; k++) {
+        if (result == LONG_NULL || m[k] < result) {
+            result = m[k];
+        }
+    }
+    return result;
+}
+
+AVX2 static jdouble sum_double_avx2(const jdouble *p, jlong count) {
+    __m256d sum = _mm256_setzero_pd();
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256d v = _mm256_loadu_pd(p + i);
+        const __m256d ok = _mm256_cmp_pd(v, v, _CMP_ORD_Q);
+        sum = _mm256_add_pd(sum, _mm256_and_pd(v, ok));
+        n += __builtin_popcount(_mm256_movemask_pd(ok));
+    }
+    const jdouble tail = sum_double_scalar(p + i, count - i);
+    if (n == 0) {
+        return tail;
+    }
+    return isnan(tail) ? hsum_pd(sum) : hsum_pd(sum) + tail;
+}
+
+AVX2 static jdouble sum_float_avx2(const jfloat *p, jlong count) {
+    __m256d sum = _mm256_setzero_pd();
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256d v = _mm256_cvtps_pd(_mm_loadu_ps(p + i));
+        const __m256d ok = _mm256_cmp_pd(v, v, _CMP_ORD_Q);
+        sum = _mm256_add_pd(sum, _mm256_and_pd(v, ok));
+        n += __builtin_popcount(_mm256_movemask_pd(ok));
+    }
+    const jdouble tail = sum_float_scalar(p + i, count - i);
+    if (n == 0) {
+        return tail;
+    }
+    return isnan(tail) ? hsum_pd(sum) : hsum_pd(sum) + tail;
+}
+
+AVX2 static jlong sum_int_avx2(const jint *p, jlong count) {
+    const __m256i nulls = _mm256_set1_epi32(INT_NULL);
+    __m256i sum = _mm256_setzero_si256();
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 8 <= count; i += 8) {
+        const __m256i v = _mm256_loadu_si256((const __m256i *) (p + i));
+        const __m256i null = _mm256_cmpeq_epi32(v, nulls);
+        const __m256i value = _mm256_andnot_si256(null, v);
+        // widen to long to not overflow
+        sum = _mm256_add_epi64(sum, _mm256_cvtepi32_epi64(_mm256_castsi256_si128(value)));
+        sum = _mm256_add_epi64(sum, _mm256_cvtepi32_epi64(_mm256_extracti128_si256(value, 1)));
+        n += 8 - __builtin_popcount(_mm256_movemask_ps(_mm256_castsi256_ps(null)));
+    }
+    const jlong tail = sum_int_scalar(p + i, count - i);
+    if (n == 0) {
+        return tail;
+    }
+    return tail == LONG_NULL ? hsum_epi64(sum) : hsum_epi64(sum) + tail;
+}
+
+AVX2 static jlong sum_long_avx2(const jlong *p, jlong count) {
+    const __m256i nulls = _mm256_set1_epi64x(LONG_NULL);
+    __m256i sum = _mm256_setzero_si256();
+    jlong n = 0;
+    jlong i = 0;
+    for (; i + 4 <= count; i += 4) {
+        const __m256i v = _mm256_loadu_si256((const __m256i *) (p + i));
+        const __m256i null = _mm256_cmpeq_epi64(v, nulls);
+        sum = _mm256_add_epi64(sum, _mm256_andnot_si256(null, v));
+        n += 4 - __builtin_popcount(_mm256_movemask_pd(_mm256_castsi256_pd(null)));
+    }
+    const jlong tail = sum_long_scalar(p + i, count - i);
+    if (n == 0) {
+        return tail;
+    }
+    return tail == LONG_NULL ? hsum_epi64(sum) : hsum_epi64(sum) + tail;
+}
+
+#define VECT_DISPATCH(JNAME, KERNEL, JTYPE, CTYPE) \
+JNIEXPORT JTYPE JNICALL Java_com_questdb_std_Vect_##JNAME \
+        (JNIEnv *e, jclass cl, jlong address, jlong count) { \
+    if (instruction_set == com_questdb_std_Vect_INSTRUCTION_SET_AVX2) { \
+        return KERNEL##_avx2((const CTYPE *) address, count); \
+    } \
+    return KERNEL##_scalar((const CTYPE *) address, count); \
+}
+
+#else
+
+#define VECT_DISPATCH(JNAME, KERNEL, JTYPE, CTYPE) \
+JNIEXPORT JTYPE JNICALL Java_com_questdb_std_Vect_##JNAME \
+        (JNIEnv *e, jclass cl, jlong address, jlong count) { \
+    return KERNEL##_scalar((const CTYPE *) address, count); \
+}
+
+#endif
+
+VECT_DISPATCH(countDouble0, count_double, jlong, jdouble)
+
+VECT_DISPATCH(countFloat0, count_float, jlong, jfloat)
+
+VECT_DISPATCH(countInt0, count_int, jlong, jint)
+
+VECT_DISPATCH(countLong0, count_long, jlong, jlong)
+
+VECT_DISPATCH(maxDouble0, max_double, jdouble, jdouble)
+
+VECT_DISPATCH(maxFloat0, max_float, jfloat, jfloat)
+
+VECT_DISPATCH(maxInt0, max_int, jint, jint)
+
+VECT_DISPATCH(maxLong0, max_long, jlong, jlong)
+
+VECT_DISPATCH(minDouble0, min_double, jdouble, jdouble)
+
+VECT_DISPATCH(minFloat0, min_float, jfloat, jfloat)
+
+VECT_DISPATCH(minInt0, min_int, jint, jint)
+
+VECT_DISPATCH(minLong0, min_long, jlong, jlong)
+
+VECT_DISPATCH(sumDouble0, sum_double, jdouble, jdouble)
+
+VECT_DISPATCH(sumFloat0, sum_float, jdouble, jfloat)
+
+VECT_DISPATCH(sumInt0, sum_int, jlong, jint)
+
+VECT_DISPATCH(sumLong0, sum_long, jlong, jlong)
+
+JNIEXPORT jint JNICALL Java_com_questdb_std_Vect_getSupportedInstructionSet0
+        (JNIEnv *e, jclass cl) {
+#ifdef VECT_AVX2
+    __builtin_cpu_init();
+    if (__builtin_cpu_supports("avx2")) {
+        instruction_set = com_questdb_std_Vect_INSTRUCTION_SET_AVX2;
+    }
+#endif
+    return instruction_set;
+}
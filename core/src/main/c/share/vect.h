@@ -0,0 +1,155 @@
+/* DO NOT EDIT THIS FILE - it is machine generated */
+#include <jni.h>
+/* Header for class com_questdb_std_Vect */
+
+#ifndef _Included_com_questdb_std_Vect
+#define _Included_com_questdb_std_Vect
+#ifdef __cplusplus
+extern "C" {
+#endif
+#undef com_questdb_std_Vect_INSTRUCTION_SET_JAVA
+#define com_questdb_std_Vect_INSTRUCTION_SET_JAVA -1L
+#undef com_questdb_std_Vect_INSTRUCTION_SET_SCALAR
+#define com_questdb_std_Vect_INSTRUCTION_SET_SCALAR 0L
+#undef com_questdb_std_Vect_INSTRUCTION_SET_AVX2
+#define com_questdb_std_Vect_INSTRUCTION_SET_AVX2 1L
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    countDouble0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_countDouble0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    countFloat0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_countFloat0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    countInt0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_countInt0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    countLong0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_countLong0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    maxDouble0
+ * Signature: (JJ)D
+ */
+JNIEXPORT jdouble JNICALL Java_com_questdb_std_Vect_maxDouble0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    maxFloat0
+ * Signature: (JJ)F
+ */
+JNIEXPORT jfloat JNICALL Java_com_questdb_std_Vect_maxFloat0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    maxInt0
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_std_Vect_maxInt0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    maxLong0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_maxLong0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    minDouble0
+ * Signature: (JJ)D
+ */
+JNIEXPORT jdouble JNICALL Java_com_questdb_std_Vect_minDouble0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    minFloat0
+ * Signature: (JJ)F
+ */
+JNIEXPORT jfloat JNICALL Java_com_questdb_std_Vect_minFloat0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    minInt0
+ * Signature: (JJ)I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_std_Vect_minInt0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    minLong0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_minLong0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    sumDouble0
+ * Signature: (JJ)D
+ */
+JNIEXPORT jdouble JNICALL Java_com_questdb_std_Vect_sumDouble0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    sumFloat0
+ * Signature: (JJ)D
+ */
+JNIEXPORT jdouble JNICALL Java_com_questdb_std_Vect_sumFloat0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    sumInt0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_sumInt0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    sumLong0
+ * Signature: (JJ)J
+ */
+JNIEXPORT jlong JNICALL Java_com_questdb_std_Vect_sumLong0
+        (JNIEnv *, jclass, jlong, jlong);
+
+/*
+ * Class:     com_questdb_std_Vect
+ * Method:    getSupportedInstructionSet0
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_com_questdb_std_Vect_getSupportedInstructionSet0
+        (JNIEnv *, jclass);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -190,6 +190,15 @@ JNIEXPORT jint JNICALL Java_com_questdb_std_Files_close0
     return 0;
 }
 
+JNIEXPORT jint JNICALL Java_com_questdb_std_Files_fsync0
+        (JNIEnv *e, jclass cl, jlong fd) {
+    if (!FlushFileBuffers((HANDLE) fd)) {
+        SaveLastError();
+        return -1;
+    }
+    return 0;
+}
+
 JNIEXPORT jlong JNICALL Java_com_questdb_std_Files_dup
         (JNIEnv *e, jclass cl, jlong fd) {
     return _dup((int) fd);
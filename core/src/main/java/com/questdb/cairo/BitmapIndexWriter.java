@@ -26,6 +26,7 @@ package com.questdb.cairo;
 import com.questdb.cairo.sql.RowCursor;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
+import com.questdb.std.LongList;
 import com.questdb.std.Misc;
 import com.questdb.std.Numbers;
 import com.questdb.std.Unsafe;
@@ -132,6 +133,15 @@ public class BitmapIndexWriter implements Closeable {
         Misc.free(valueMem);
     }
 
+    public void collectFds(LongList fds) {
+        if (keyMem.getFd() != -1) {
+            fds.add(keyMem.getFd());
+        }
+        if (valueMem.getFd() != -1) {
+            fds.add(valueMem.getFd());
+        }
+    }
+
     public RowCursor getCursor(int key) {
         if (key < keyCount) {
             cursor.of(key);
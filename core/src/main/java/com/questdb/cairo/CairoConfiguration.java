@@ -29,6 +29,21 @@ import com.questdb.std.time.MillisecondClock;
 
 public interface CairoConfiguration {
 
+    /**
+     * Number of rows {@link TableWriter#newBufferedRow(long)} collects in column vectors before they are
+     * appended to table as {@link TableWriter.Block}.
+     *
+     * @return number of rows in block
+     */
+    int getBufferedRowCount();
+
+    /**
+     * Durability level of {@link TableWriter#commit()}, one of {@link CommitMode} constants.
+     *
+     * @return commit mode
+     */
+    int getCommitMode();
+
     int getCreateAsSelectRetryCount();
 
     CharSequence getDefaultMapType();
@@ -41,6 +56,14 @@ public interface CairoConfiguration {
 
     FilesFacade getFilesFacade();
 
+    /**
+     * Time in microseconds {@link GroupCommit} waits for more commits to join flush cycle
+     * before it flushes files that have been handed over so far.
+     *
+     * @return latency window in microseconds
+     */
+    long getGroupCommitWindow();
+
     long getIdleCheckInterval();
 
     long getInactiveReaderTTL();
@@ -57,14 +80,37 @@ public interface CairoConfiguration {
 
     int getMkDirMode();
 
+    /**
+     * Size of memory page used by {@link TableWriter} to stage out-of-order rows until they are merged
+     * into partitions on commit.
+     *
+     * @return memory page size
+     */
+    int getOutOfOrderPageSize();
+
     int getParallelIndexThreshold();
 
     int getReaderPoolSegments();
 
+    /**
+     * How often {@link RetentionJob} looks for partitions that are older than table retention.
+     *
+     * @return interval in milliseconds
+     */
+    long getRetentionCheckInterval();
+
     CharSequence getRoot();
 
     long getSpinLockTimeoutUs();
 
+    /**
+     * Page size of memory that holds rows with equal ORDER BY values while analytic functions, whose frame
+     * includes peers of current row, wait for the last of them.
+     *
+     * @return page size in bytes
+     */
+    int getSqlAnalyticPeerPageSize();
+
     int getSqlCacheBlockCount();
 
     int getSqlCacheBlockSize();
@@ -81,6 +127,22 @@ public interface CairoConfiguration {
 
     double getSqlFastMapLoadFactor();
 
+    /**
+     * Number of files GROUP BY distributes its map entries between once the map is over memory budget.
+     * Entries of the same key always go to the same file, so that files can be aggregated one at a time.
+     *
+     * @return number of spill partitions
+     */
+    int getSqlGroupBySpillPartitionCount();
+
+    /**
+     * Number of bytes GROUP BY map can take before its entries are written out to spill files and map is
+     * cleared to continue with the remaining rows.
+     *
+     * @return memory budget of group by map in bytes
+     */
+    long getSqlGroupBySpillThreshold();
+
     int getSqlJoinContextPoolCapacity();
 
     int getSqlLexerPoolCapacity();
@@ -91,22 +153,147 @@ public interface CairoConfiguration {
 
     int getSqlModelPoolCapacity();
 
+    /**
+     * Maximum number of rows in data frame that is processed by single thread when query runs in parallel.
+     * Larger frames are split. Smaller frames spread work more evenly at the expense of dispatch overhead.
+     *
+     * @return number of rows
+     */
+    int getSqlParallelFrameRowCount();
+
+    /**
+     * Maximum number of rows in page frame. Vectorised operators process page frame at a time, frame size
+     * bounds their scratch memory, such as selection vector of filter.
+     *
+     * @return number of rows
+     */
+    int getSqlPageFrameRowCount();
+
     int getSqlSortKeyPageSize();
 
     int getSqlSortLightValuePageSize();
 
+    /**
+     * Number of bytes ORDER BY keeps in memory before it writes sorted run of rows to spill file. Runs are
+     * merged when rows are read back. This applies to sorts that copy rows, sorts of row ids are not bounded.
+     *
+     * @return memory budget of sort in bytes
+     */
+    long getSqlSortSpillThreshold();
+
+    /**
+     * Largest LIMIT that ORDER BY serves from top K heap. Heap re-positions records on every comparison,
+     * once LIMIT is close to size of cursor sorting all rows is cheaper. Larger LIMIT and LIMIT that
+     * counts rows from the end of cursor sort all rows.
+     *
+     * @return maximum number of rows top K heap keeps
+     */
+    long getSqlSortTopKMaxLimit();
+
+    /**
+     * Directory of temporary files of SQL operators that do not fit in memory. Files are removed once
+     * query cursor is closed.
+     *
+     * @return spill directory
+     */
+    CharSequence getSqlSpillRoot();
+
     int getSqlHashJoinValuePageSize();
 
     int getSqlTreePageSize();
 
     int getSqlHashJoinLightValuePageSize();
 
+    /**
+     * Number of files each side of hash join is distributed between when hash table of the join is over
+     * memory budget.
+     *
+     * @return number of spill partitions
+     */
+    int getSqlHashJoinSpillPartitionCount();
+
+    /**
+     * Number of bytes hash table of join can take before join switches to joining partitions of both
+     * sides written to spill files.
+     *
+     * @return memory budget of hash join in bytes
+     */
+    long getSqlHashJoinSpillThreshold();
+
     int getSqlSortValuePageSize();
 
+    int getWalPageSize();
+
+    /**
+     * Number of rows a {@link WalWriter} appends to a WAL segment before it rolls over to a new
+     * segment. Rollover happens on commit, so segments may exceed this count by one transaction.
+     *
+     * @return segment row count threshold
+     */
+    long getWalSegmentRolloverRowCount();
+
     long getWorkStealTimeoutNanos();
 
+    /**
+     * Number of rows summarised by single zone map entry. Smaller blocks let filters skip data with finer
+     * granularity at the expense of larger zone map files. Value is rounded up to power of 2.
+     *
+     * @return number of rows in zone map block
+     */
+    int getZoneMapBlockSize();
+
+    /**
+     * When enabled {@link TableWriter} accepts rows with timestamps lower than its current maximum. Such rows are
+     * staged in memory and merged into respective partitions on commit. When disabled out-of-order rows are rejected.
+     *
+     * @return true when out-of-order rows are allowed
+     */
+    boolean isOutOfOrderEnabled();
+
     boolean isParallelIndexingEnabled();
 
+    /**
+     * When enabled and work scheduler has threads to spare, GROUP BY over table scan aggregates data frames
+     * in parallel, each thread into its own map. Maps are then merged into one. SAMPLE BY aggregates ranges
+     * of samples in parallel under the same setting, except when gaps are filled by linear interpolation.
+     *
+     * @return true when group-by and sample-by can aggregate in parallel
+     */
+    boolean isSqlParallelGroupByEnabled();
+
+    /**
+     * When enabled and work scheduler has threads to spare, table scans with filter evaluate the filter
+     * on data frames in parallel. Rows are still returned in table order.
+     *
+     * @return true when filters can be evaluated in parallel
+     */
+    boolean isSqlParallelFilterEnabled();
+
+    /**
+     * When enabled, table scan filters made of comparisons of numeric columns and constants, combined with
+     * "and", "or" and "not", are compiled to byte code. Other filters are interpreted regardless.
+     *
+     * @return true when filters can be compiled
+     */
+    boolean isSqlFilterCompilationEnabled();
+
+    /**
+     * When enabled, ORDER BY followed by LIMIT keeps only rows LIMIT can return instead of sorting
+     * all rows of the cursor. See {@link #getSqlSortTopKMaxLimit()} for LIMIT that still sorts all rows.
+     *
+     * @return true when sort can be bounded by LIMIT
+     */
+    boolean isSqlSortTopKEnabled();
+
+    /**
+     * When enabled, keyless GROUP BY and SAMPLE BY over table scan aggregate contiguous column pages instead of
+     * individual rows when all aggregate functions support it. Simple comparisons of columns to constants
+     * in WHERE clause of such queries are evaluated on pages too.
+     *
+     * @return true when queries can execute on page frames
+     */
+    boolean isSqlVectorExecutionEnabled();
+
     /**
      * This holds table metadata, which is usually quite small. 16K page should be adequate.
      *
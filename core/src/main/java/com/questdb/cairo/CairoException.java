@@ -40,6 +40,20 @@ public class CairoException extends RuntimeException implements Sinkable {
         return ex;
     }
 
+    /**
+     * @return OS error code or 0 when error is not caused by failed system call
+     */
+    public int getErrno() {
+        return errno;
+    }
+
+    /**
+     * @return message without error code, content changes when exception instance is reused by the same thread
+     */
+    public CharSequence getFlyweightMessage() {
+        return message;
+    }
+
     @Override
     public String getMessage() {
         return "[" + errno + "] " + message.toString();
@@ -30,9 +30,32 @@ import com.questdb.mp.Sequence;
 public interface CairoWorkScheduler {
     void addJob(Job job);
 
+    Sequence getDataFrameLanePubSequence();
+
+    /**
+     * Queue of lanes published by {@link DataFrameDispatcher} for parallel processing of data frames.
+     *
+     * @return queue or null when data frames should be processed by calling thread alone
+     */
+    RingQueue<DataFrameLaneEntry> getDataFrameLaneQueue();
+
+    Sequence getDataFrameLaneSubSequence();
+
+    /**
+     * Flushes files of writers committing in {@link CommitMode#ASYNC} and {@link CommitMode#SYNC} modes.
+     *
+     * @return group commit or null when writers should flush their files individually
+     */
+    GroupCommit getGroupCommit();
+
     Sequence getIndexerPubSequence();
 
     RingQueue<ColumnIndexerEntry> getIndexerQueue();
 
     Sequence getIndexerSubSequence();
+
+    /**
+     * @return number of threads running jobs of this scheduler
+     */
+    int getWorkerCount();
 }
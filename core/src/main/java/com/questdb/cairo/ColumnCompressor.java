@@ -0,0 +1,431 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.std.Unsafe;
+
+/**
+ * Codecs for sealed partition columns. Column values are split into blocks of {@link #BLOCK_ROWS} rows, which
+ * are compressed independently, so that reader can decompress only blocks it needs.
+ * <p>
+ * Compressed file layout is:
+ * <pre>
+ *     [block 0][block 1]...[block N-1][block offsets, N+1 longs][row count, long][column type, int][reserved, int]
+ * </pre>
+ * Codec is chosen by column type:
+ * <ul>
+ * <li>BOOLEAN, BYTE, SHORT, INT and SYMBOL keys are bit-packed relative to block minimum</li>
+ * <li>LONG, DATE and TIMESTAMP are stored as delta-of-delta</li>
+ * <li>FLOAT and DOUBLE are XOR-ed with previous value and only meaningful bits are stored</li>
+ * </ul>
+ * STRING and BINARY columns are not compressed.
+ */
+final class ColumnCompressor {
+    static final int BLOCK_SHIFT = 16;
+    static final long BLOCK_ROWS = 1L << BLOCK_SHIFT;
+    static final int TRAILER_SIZE = 16;
+    // worst case XOR encoding takes 78 bits per value
+    private static final long SCRATCH_SIZE = BLOCK_ROWS * 12 + 64;
+
+    private ColumnCompressor() {
+    }
+
+    static void compress(ReadOnlyMemory src, long rowCount, int type, AppendMemory dst) {
+        assert isCompressible(type);
+        final int shl = ColumnType.pow2SizeOf(type);
+        final long blockCount = getBlockCount(rowCount);
+        final long offsets = Unsafe.malloc((blockCount + 1) * 8);
+        final long scratch = Unsafe.malloc(SCRATCH_SIZE);
+        try {
+            final BitWriter writer = new BitWriter();
+            for (long block = 0; block < blockCount; block++) {
+                final long lo = block << BLOCK_SHIFT;
+                final long hi = Math.min(lo + BLOCK_ROWS, rowCount);
+                Unsafe.getUnsafe().putLong(offsets + block * 8, dst.getAppendOffset());
+                writer.of(scratch);
+                switch (type) {
+                    case ColumnType.LONG:
+                    case ColumnType.DATE:
+                    case ColumnType.TIMESTAMP:
+                        encodeDeltaOfDelta(src, lo, hi, writer);
+                        break;
+                    case ColumnType.DOUBLE:
+                    case ColumnType.FLOAT:
+                        encodeXor(src, shl, lo, hi, writer);
+                        break;
+                    default:
+                        encodeBitPacked(src, shl, lo, hi, writer);
+                        break;
+                }
+                dst.putBlockOfBytes(scratch, writer.finish() - scratch);
+            }
+            Unsafe.getUnsafe().putLong(offsets + blockCount * 8, dst.getAppendOffset());
+            dst.putBlockOfBytes(offsets, (blockCount + 1) * 8);
+            dst.putLong(rowCount);
+            dst.putInt(type);
+            dst.putInt(0);
+        } finally {
+            Unsafe.free(scratch, SCRATCH_SIZE);
+            Unsafe.free(offsets, (blockCount + 1) * 8);
+        }
+    }
+
+    /**
+     * Decodes block of values into native column format.
+     *
+     * @param type   column type
+     * @param reader reader positioned at start of block
+     * @param count  number of values in block
+     * @param dst    address of memory, which must be large enough to accommodate count values
+     */
+    static void decompressBlock(int type, BitReader reader, long count, long dst) {
+        final int shl = ColumnType.pow2SizeOf(type);
+        switch (type) {
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                decodeDeltaOfDelta(reader, count, dst);
+                break;
+            case ColumnType.DOUBLE:
+            case ColumnType.FLOAT:
+                decodeXor(reader, shl, count, dst);
+                break;
+            default:
+                decodeBitPacked(reader, shl, count, dst);
+                break;
+        }
+    }
+
+    /**
+     * Restores native column file from compressed one.
+     *
+     * @param src     compressed column
+     * @param srcSize size of compressed column file
+     * @param dst     native column
+     */
+    static void decompress(ReadOnlyMemory src, long srcSize, AppendMemory dst) {
+        final long rowCount = src.getLong(srcSize - TRAILER_SIZE);
+        final int type = src.getInt(srcSize - TRAILER_SIZE + 8);
+        final long blockCount = getBlockCount(rowCount);
+        final long table = getBlockTableOffset(srcSize, rowCount);
+        final int shl = ColumnType.pow2SizeOf(type);
+        final long size = BLOCK_ROWS << shl;
+        final long buf = Unsafe.malloc(size);
+        try {
+            final BitReader reader = new BitReader();
+            for (long block = 0; block < blockCount; block++) {
+                final long count = Math.min(BLOCK_ROWS, rowCount - (block << BLOCK_SHIFT));
+                reader.of(src, src.getLong(table + block * 8));
+                decompressBlock(type, reader, count, buf);
+                dst.putBlockOfBytes(buf, count << shl);
+            }
+        } finally {
+            Unsafe.free(buf, size);
+        }
+    }
+
+    static long getBlockCount(long rowCount) {
+        return (rowCount + BLOCK_ROWS - 1) >>> BLOCK_SHIFT;
+    }
+
+    static long getBlockTableOffset(long fileSize, long rowCount) {
+        return fileSize - TRAILER_SIZE - (getBlockCount(rowCount) + 1) * 8;
+    }
+
+    static boolean isCompressible(int type) {
+        switch (type) {
+            case ColumnType.STRING:
+            case ColumnType.BINARY:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    private static long readValue(VirtualMemory mem, int shl, long row) {
+        switch (shl) {
+            case 0:
+                return mem.getByte(row);
+            case 1:
+                return mem.getShort(row * 2);
+            case 2:
+                return mem.getInt(row * 4);
+            default:
+                return mem.getLong(row * 8);
+        }
+    }
+
+    private static void writeValue(long address, int shl, long row, long value) {
+        switch (shl) {
+            case 0:
+                Unsafe.getUnsafe().putByte(address + row, (byte) value);
+                break;
+            case 1:
+                Unsafe.getUnsafe().putShort(address + row * 2, (short) value);
+                break;
+            case 2:
+                Unsafe.getUnsafe().putInt(address + row * 4, (int) value);
+                break;
+            default:
+                Unsafe.getUnsafe().putLong(address + row * 8, value);
+                break;
+        }
+    }
+
+    private static void encodeBitPacked(ReadOnlyMemory src, int shl, long lo, long hi, BitWriter writer) {
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (long row = lo; row < hi; row++) {
+            final long value = readValue(src, shl, row);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        // values are at most 32 bits wide, range cannot overflow
+        final int width = 64 - Long.numberOfLeadingZeros(max - min);
+        writer.put(min, 64);
+        writer.put(width, 7);
+        for (long row = lo; row < hi; row++) {
+            writer.put(readValue(src, shl, row) - min, width);
+        }
+    }
+
+    private static void decodeBitPacked(BitReader reader, int shl, long count, long dst) {
+        final long min = reader.get(64);
+        final int width = (int) reader.get(7);
+        for (long i = 0; i < count; i++) {
+            writeValue(dst, shl, i, min + reader.get(width));
+        }
+    }
+
+    private static void encodeDeltaOfDelta(ReadOnlyMemory src, long lo, long hi, BitWriter writer) {
+        long prev = src.getLong(lo * 8);
+        writer.put(prev, 64);
+        if (hi - lo > 1) {
+            long prevDelta = src.getLong((lo + 1) * 8) - prev;
+            writer.put(prevDelta, 64);
+            prev += prevDelta;
+            for (long row = lo + 2; row < hi; row++) {
+                final long value = src.getLong(row * 8);
+                final long delta = value - prev;
+                final long dod = delta - prevDelta;
+                // zig-zag encoding keeps small negative values small
+                final long zz = (dod << 1) ^ (dod >> 63);
+                if (zz == 0) {
+                    writer.put(0, 1);
+                } else if ((zz >>> 7) == 0) {
+                    writer.put(0b10, 2);
+                    writer.put(zz, 7);
+                } else if ((zz >>> 9) == 0) {
+                    writer.put(0b110, 3);
+                    writer.put(zz, 9);
+                } else if ((zz >>> 12) == 0) {
+                    writer.put(0b1110, 4);
+                    writer.put(zz, 12);
+                } else if ((zz >>> 32) == 0) {
+                    writer.put(0b11110, 5);
+                    writer.put(zz, 32);
+                } else {
+                    writer.put(0b11111, 5);
+                    writer.put(zz, 64);
+                }
+                prev = value;
+                prevDelta = delta;
+            }
+        }
+    }
+
+    private static void decodeDeltaOfDelta(BitReader reader, long count, long dst) {
+        long prev = reader.get(64);
+        Unsafe.getUnsafe().putLong(dst, prev);
+        if (count > 1) {
+            long prevDelta = reader.get(64);
+            prev += prevDelta;
+            Unsafe.getUnsafe().putLong(dst + 8, prev);
+            for (long i = 2; i < count; i++) {
+                final int width;
+                if (reader.get(1) == 0) {
+                    width = 0;
+                } else if (reader.get(1) == 0) {
+                    width = 7;
+                } else if (reader.get(1) == 0) {
+                    width = 9;
+                } else if (reader.get(1) == 0) {
+                    width = 12;
+                } else if (reader.get(1) == 0) {
+                    width = 32;
+                } else {
+                    width = 64;
+                }
+                final long zz = reader.get(width);
+                prevDelta += (zz >>> 1) ^ -(zz & 1);
+                prev += prevDelta;
+                Unsafe.getUnsafe().putLong(dst + i * 8, prev);
+            }
+        }
+    }
+
+    private static void encodeXor(ReadOnlyMemory src, int shl, long lo, long hi, BitWriter writer) {
+        final int width = 8 << shl;
+        final long mask = width == 64 ? -1L : (1L << width) - 1;
+        long prev = readValue(src, shl, lo) & mask;
+        writer.put(prev, width);
+        int prevLeading = -1;
+        int prevTrailing = 0;
+        for (long row = lo + 1; row < hi; row++) {
+            final long value = readValue(src, shl, row) & mask;
+            final long xor = value ^ prev;
+            if (xor == 0) {
+                writer.put(0, 1);
+            } else {
+                writer.put(1, 1);
+                final int leading = Long.numberOfLeadingZeros(xor) - (64 - width);
+                final int trailing = Long.numberOfTrailingZeros(xor);
+                if (prevLeading != -1 && leading >= prevLeading && trailing >= prevTrailing) {
+                    // meaningful bits fit into previous window
+                    writer.put(0, 1);
+                    writer.put(xor >>> prevTrailing, width - prevLeading - prevTrailing);
+                } else {
+                    final int len = width - leading - trailing;
+                    writer.put(1, 1);
+                    writer.put(leading, 6);
+                    writer.put(len - 1, 6);
+                    writer.put(xor >>> trailing, len);
+                    prevLeading = leading;
+                    prevTrailing = trailing;
+                }
+            }
+            prev = value;
+        }
+    }
+
+    private static void decodeXor(BitReader reader, int shl, long count, long dst) {
+        final int width = 8 << shl;
+        long prev = reader.get(width);
+        writeValue(dst, shl, 0, prev);
+        int leading = 0;
+        int trailing = 0;
+        for (long i = 1; i < count; i++) {
+            if (reader.get(1) != 0) {
+                if (reader.get(1) != 0) {
+                    leading = (int) reader.get(6);
+                    trailing = width - leading - ((int) reader.get(6) + 1);
+                }
+                prev ^= reader.get(width - leading - trailing) << trailing;
+            }
+            writeValue(dst, shl, i, prev);
+        }
+    }
+
+    /**
+     * Writes bits, most significant first, into 64-bit words at given address.
+     */
+    static final class BitWriter {
+        private long ptr;
+        private long word;
+        private int bits;
+
+        long finish() {
+            if (bits > 0) {
+                flush();
+            }
+            return ptr;
+        }
+
+        void of(long address) {
+            this.ptr = address;
+            this.word = 0;
+            this.bits = 0;
+        }
+
+        void put(long value, int count) {
+            if (count == 0) {
+                return;
+            }
+
+            if (count < 64) {
+                value &= (1L << count) - 1;
+            }
+
+            final int free = 64 - bits;
+            if (count <= free) {
+                word |= value << (free - count);
+                bits += count;
+                if (bits == 64) {
+                    flush();
+                }
+            } else {
+                final int rest = count - free;
+                word |= value >>> rest;
+                flush();
+                word = value << (64 - rest);
+                bits = rest;
+            }
+        }
+
+        private void flush() {
+            Unsafe.getUnsafe().putLong(ptr, word);
+            ptr += 8;
+            word = 0;
+            bits = 0;
+        }
+    }
+
+    /**
+     * Reads bits written by {@link BitWriter} from memory.
+     */
+    static final class BitReader {
+        private VirtualMemory mem;
+        private long offset;
+        private long word;
+        private int available;
+
+        long get(int count) {
+            if (count == 0) {
+                return 0;
+            }
+
+            if (count <= available) {
+                final long value = (word << (64 - available)) >>> (64 - count);
+                available -= count;
+                return value;
+            }
+
+            final int rest = count - available;
+            long value = available == 0 ? 0 : (word << (64 - available)) >>> (64 - available);
+            word = mem.getLong(offset);
+            offset += 8;
+            value = (rest == 64 ? 0 : value << rest) | (word >>> (64 - rest));
+            available = 64 - rest;
+            return value;
+        }
+
+        void of(VirtualMemory mem, long offset) {
+            this.mem = mem;
+            this.offset = offset;
+            this.word = 0;
+            this.available = 0;
+        }
+    }
+}
@@ -23,9 +23,17 @@
 
 package com.questdb.cairo;
 
+import com.questdb.std.LongList;
 import com.questdb.std.str.Path;
 
 interface ColumnIndexer {
+    /**
+     * Adds descriptors of index files to the list.
+     *
+     * @param fds list of file descriptors
+     */
+    void collectFds(LongList fds);
+
     void distress();
 
     long getFd();
@@ -0,0 +1,193 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.std.BinarySequence;
+import com.questdb.std.Numbers;
+import com.questdb.std.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Contiguous off-heap vector of values in column file format. Unlike {@link VirtualMemory} values are never split
+ * between pages, vector is re-allocated when it runs out of space, so that it can be handed over to
+ * {@link TableWriter.Block} as single address.
+ */
+class ColumnVector implements Closeable {
+    private long address;
+    private long capacity;
+    private long appendAddress;
+    private long limit;
+
+    ColumnVector(long capacity) {
+        this.capacity = Numbers.ceilPow2(capacity);
+        this.address = this.appendAddress = Unsafe.malloc(this.capacity);
+        this.limit = address + this.capacity;
+    }
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.free(address, capacity);
+            address = appendAddress = limit = 0;
+        }
+    }
+
+    long getAddress() {
+        return address;
+    }
+
+    long getAppendOffset() {
+        return appendAddress - address;
+    }
+
+    long getLong(long offset) {
+        return Unsafe.getUnsafe().getLong(address + offset);
+    }
+
+    void jumpTo(long offset) {
+        appendAddress = address + offset;
+    }
+
+    long putBin(BinarySequence value) {
+        if (value == null) {
+            return putNullBin();
+        }
+        final long len = value.length();
+        final long offset = putLen(len, 8, len);
+        value.copyTo(appendAddress - len, 0, len);
+        return offset;
+    }
+
+    long putBin(long from, long len) {
+        if (len < 1) {
+            return putNullBin();
+        }
+        final long offset = putLen(len, 8, len);
+        Unsafe.getUnsafe().copyMemory(from, appendAddress - len, len);
+        return offset;
+    }
+
+    void putBool(boolean value) {
+        putByte((byte) (value ? 1 : 0));
+    }
+
+    void putByte(byte value) {
+        ensureCapacity(1);
+        Unsafe.getUnsafe().putByte(appendAddress++, value);
+    }
+
+    void putDouble(double value) {
+        ensureCapacity(8);
+        Unsafe.getUnsafe().putDouble(appendAddress, value);
+        appendAddress += 8;
+    }
+
+    void putFloat(float value) {
+        ensureCapacity(4);
+        Unsafe.getUnsafe().putFloat(appendAddress, value);
+        appendAddress += 4;
+    }
+
+    void putInt(int value) {
+        ensureCapacity(4);
+        Unsafe.getUnsafe().putInt(appendAddress, value);
+        appendAddress += 4;
+    }
+
+    void putLong(long value) {
+        ensureCapacity(8);
+        Unsafe.getUnsafe().putLong(appendAddress, value);
+        appendAddress += 8;
+    }
+
+    long putNullBin() {
+        final long offset = getAppendOffset();
+        putLong(TableUtils.NULL_LEN);
+        return offset;
+    }
+
+    long putNullStr() {
+        final long offset = getAppendOffset();
+        putInt(TableUtils.NULL_LEN);
+        return offset;
+    }
+
+    void putShort(short value) {
+        ensureCapacity(2);
+        Unsafe.getUnsafe().putShort(appendAddress, value);
+        appendAddress += 2;
+    }
+
+    long putStr(CharSequence value) {
+        return value == null ? putNullStr() : putStr(value, 0, value.length());
+    }
+
+    long putStr(CharSequence value, int pos, int len) {
+        if (value == null) {
+            return putNullStr();
+        }
+        final long offset = putLen(len, 4, len * 2L);
+        long p = appendAddress - len * 2L;
+        for (int i = 0; i < len; i++) {
+            Unsafe.getUnsafe().putChar(p, value.charAt(pos + i));
+            p += 2;
+        }
+        return offset;
+    }
+
+    private void ensureCapacity(long len) {
+        if (limit - appendAddress < len) {
+            extend(appendAddress - address + len);
+        }
+    }
+
+    private void extend(long size) {
+        final long capacity = Numbers.ceilPow2(size);
+        final long address = Unsafe.malloc(capacity);
+        final long offset = getAppendOffset();
+        Unsafe.getUnsafe().copyMemory(this.address, address, offset);
+        Unsafe.free(this.address, this.capacity);
+        this.address = address;
+        this.capacity = capacity;
+        this.appendAddress = address + offset;
+        this.limit = address + capacity;
+    }
+
+    /**
+     * Reserves space for value with length prefix and writes prefix. Append position is moved past value bytes,
+     * which caller copies to the end of reserved space.
+     */
+    private long putLen(long len, int prefixSize, long byteCount) {
+        final long offset = getAppendOffset();
+        ensureCapacity(prefixSize + byteCount);
+        if (prefixSize == 4) {
+            Unsafe.getUnsafe().putInt(appendAddress, (int) len);
+        } else {
+            Unsafe.getUnsafe().putLong(appendAddress, len);
+        }
+        appendAddress += prefixSize + byteCount;
+        return offset;
+    }
+}
@@ -0,0 +1,46 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+/**
+ * Durability level of {@link TableWriter#commit(int)}.
+ */
+public final class CommitMode {
+    /**
+     * Commit returns as soon as transaction is written to memory mapped files. Data is flushed
+     * to storage by OS at its own pace.
+     */
+    public static final int NOSYNC = 0;
+    /**
+     * Commit hands files over to background flush and returns without waiting for it.
+     */
+    public static final int ASYNC = 1;
+    /**
+     * Commit returns after data and transaction file are flushed to storage.
+     */
+    public static final int SYNC = 2;
+
+    private CommitMode() {
+    }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.BinarySequence;
+import com.questdb.std.FilesFacade;
+import com.questdb.std.Unsafe;
+import com.questdb.std.str.LPSZ;
+
+/**
+ * Read-only column of sealed partition. Column file is compressed by {@link ColumnCompressor} in blocks of
+ * fixed number of rows. Blocks are decompressed on demand into buffer, which holds one block at a time.
+ * Only fixed size columns are compressed, {@link TableReader} never uses this class for STRING and BINARY columns.
+ */
+public class CompressedColumn implements ReadOnlyColumn {
+    private static final Log LOG = LogFactory.getLog(CompressedColumn.class);
+    private final ReadOnlyMemory mem = new ReadOnlyMemory();
+    private final ColumnCompressor.BitReader reader = new ColumnCompressor.BitReader();
+    private long buffer = 0;
+    private long bufferSize = 0;
+    private long rowCount;
+    private long blockTableOffset;
+    private long blockLo;
+    private long blockHi;
+    private int type;
+    private int shl;
+
+    public CompressedColumn(FilesFacade ff, LPSZ name, long pageSize) {
+        of(ff, name, pageSize);
+    }
+
+    @Override
+    public void close() {
+        mem.close();
+        if (buffer != 0) {
+            Unsafe.free(buffer, bufferSize);
+            buffer = 0;
+            bufferSize = 0;
+        }
+    }
+
+    @Override
+    public BinarySequence getBin(long offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getBinLen(long offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getBool(long offset) {
+        return getByte(offset) == 1;
+    }
+
+    @Override
+    public byte getByte(long offset) {
+        return Unsafe.getUnsafe().getByte(addressOf(offset));
+    }
+
+    @Override
+    public double getDouble(long offset) {
+        return Unsafe.getUnsafe().getDouble(addressOf(offset));
+    }
+
+    @Override
+    public long getFd() {
+        return mem.getFd();
+    }
+
+    @Override
+    public float getFloat(long offset) {
+        return Unsafe.getUnsafe().getFloat(addressOf(offset));
+    }
+
+    @Override
+    public int getInt(long offset) {
+        return Unsafe.getUnsafe().getInt(addressOf(offset));
+    }
+
+    @Override
+    public long getLong(long offset) {
+        return Unsafe.getUnsafe().getLong(addressOf(offset));
+    }
+
+    @Override
+    public short getShort(long offset) {
+        return Unsafe.getUnsafe().getShort(addressOf(offset));
+    }
+
+    @Override
+    public CharSequence getStr(long offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CharSequence getStr2(long offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getStrLen(long offset) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void grow(long size) {
+        // sealed partitions do not grow
+    }
+
+    @Override
+    public boolean isDeleted() {
+        return mem.isDeleted();
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public final void of(FilesFacade ff, LPSZ name, long pageSize) {
+        close();
+        final long fileSize = ff.length(name);
+        if (fileSize < ColumnCompressor.TRAILER_SIZE) {
+            throw CairoException.instance(0).put("Compressed column is too short: ").put(name);
+        }
+        mem.of(ff, name, pageSize, fileSize);
+        this.rowCount = mem.getLong(fileSize - ColumnCompressor.TRAILER_SIZE);
+        this.type = mem.getInt(fileSize - ColumnCompressor.TRAILER_SIZE + 8);
+        this.shl = ColumnType.pow2SizeOf(type);
+        this.blockTableOffset = ColumnCompressor.getBlockTableOffset(fileSize, rowCount);
+        this.bufferSize = Math.min(rowCount, ColumnCompressor.BLOCK_ROWS) << shl;
+        if (bufferSize > 0) {
+            this.buffer = Unsafe.malloc(bufferSize);
+        }
+        this.blockLo = this.blockHi = 0;
+        LOG.info().$("open compressed ").$(name).$(" [rowCount=").$(rowCount).$(", type=").$(ColumnType.nameOf(type)).$(']').$();
+    }
+
+    long addressOf(long offset) {
+        final long row = offset >> shl;
+        if (row < blockLo || row >= blockHi) {
+            decompressBlock(row >>> ColumnCompressor.BLOCK_SHIFT);
+        }
+        return buffer + offset - (blockLo << shl);
+    }
+
+    /**
+     * @param offset offset of value that {@link #addressOf(long)} has been called for
+     * @return number of bytes from offset to end of decompressed block
+     */
+    long pageRemaining(long offset) {
+        return (blockHi << shl) - offset;
+    }
+
+    private void decompressBlock(long block) {
+        final long lo = block << ColumnCompressor.BLOCK_SHIFT;
+        final long count = Math.min(ColumnCompressor.BLOCK_ROWS, rowCount - lo);
+        assert count > 0;
+        reader.of(mem, mem.getLong(blockTableOffset + block * 8));
+        ColumnCompressor.decompressBlock(type, reader, count, buffer);
+        blockLo = lo;
+        blockHi = lo + count;
+    }
+}
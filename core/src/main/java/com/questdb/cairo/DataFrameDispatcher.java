@@ -0,0 +1,185 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.SOCountDownLatch;
+import com.questdb.mp.Sequence;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+import com.questdb.std.Unsafe;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Processes batch of data frames on calling thread and work scheduler threads. Calling thread runs first lane
+ * and publishes the rest to the queue. Lanes claim frames from shared counter until there are none left, hence
+ * the batch is done even when no worker picks up published lanes. Lanes that have not started by then
+ * are taken over by calling thread, which then waits only for the lanes in progress.
+ * <p>
+ * Dispatcher is not thread-safe, only one thread can dispatch at a time.
+ */
+public class DataFrameDispatcher {
+    private static final Log LOG = LogFactory.getLog(DataFrameDispatcher.class);
+    private static final long NEXT_FRAME_OFFSET;
+    private final Sequence pubSequence;
+    private final RingQueue<DataFrameLaneEntry> queue;
+    private final int workerCount;
+    private final SOCountDownLatch latch = new SOCountDownLatch();
+    private final LongList laneSequences = new LongList();
+    private volatile int nextFrame = 0;
+    private volatile Throwable error;
+    private int errorErrno;
+    private String errorMessage;
+    private int frameCount;
+
+    public DataFrameDispatcher(@Nullable CairoWorkScheduler workScheduler) {
+        if (workScheduler != null && workScheduler.getDataFrameLaneQueue() != null) {
+            this.pubSequence = workScheduler.getDataFrameLanePubSequence();
+            this.queue = workScheduler.getDataFrameLaneQueue();
+            this.workerCount = workScheduler.getWorkerCount();
+        } else {
+            this.pubSequence = null;
+            this.queue = null;
+            this.workerCount = 0;
+        }
+    }
+
+    /**
+     * Processes frames and returns when all of them are done.
+     *
+     * @param lanes      lanes to process frames with, first lane runs on calling thread
+     * @param laneCount  number of lanes to use, lanes beyond this count are not touched
+     * @param frameCount number of frames
+     * @throws CairoException when any lane fails, remaining frames are abandoned
+     */
+    public void dispatch(ObjList<? extends DataFrameLane> lanes, int laneCount, int frameCount) {
+        this.frameCount = frameCount;
+        this.nextFrame = 0;
+        this.error = null;
+
+        final int n = Math.min(laneCount, frameCount);
+        int queued = 0;
+        if (n > 1 && queue != null) {
+            laneSequences.clear();
+            latch.setCount(n - 1);
+
+            OUT:
+            for (int i = 1; i < n; i++) {
+                long cursor;
+                do {
+                    cursor = pubSequence.next();
+                    if (cursor == -1) {
+                        // queue is full, frames will be processed by lanes already running
+                        break OUT;
+                    }
+                } while (cursor < 0);
+
+                final DataFrameLaneEntry queueItem = queue.get(cursor);
+                final DataFrameLane lane = lanes.getQuick(i);
+                final long sequence = lane.getSequence();
+                queueItem.dispatcher = this;
+                queueItem.lane = lane;
+                queueItem.sequence = sequence;
+                laneSequences.add(sequence);
+                pubSequence.done(cursor);
+                queued++;
+            }
+
+            for (int i = queued + 1; i < n; i++) {
+                latch.countDown();
+            }
+        }
+
+        run(lanes.getQuick(0));
+
+        if (queued > 0) {
+            // there are no frames left, lanes that have not started would not do anything
+            for (int i = 0; i < queued; i++) {
+                if (lanes.getQuick(i + 1).tryLock(laneSequences.getQuick(i))) {
+                    latch.countDown();
+                }
+            }
+            latch.await();
+        }
+
+        final Throwable e = error;
+        if (e != null) {
+            error = null;
+            if (e instanceof CairoException) {
+                // exception instance belongs to thread that has thrown it, its content was copied by that thread
+                throw CairoException.instance(errorErrno).put(errorMessage);
+            }
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            if (e instanceof Error) {
+                throw (Error) e;
+            }
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return number of threads that can run lanes in addition to calling thread
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    void runAndCountDown(DataFrameLane lane) {
+        try {
+            run(lane);
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    private void run(DataFrameLane lane) {
+        try {
+            int frameIndex;
+            while (error == null && (frameIndex = Unsafe.getUnsafe().getAndAddInt(this, NEXT_FRAME_OFFSET, 1)) < frameCount) {
+                lane.process(frameIndex);
+            }
+        } catch (Throwable e) {
+            LOG.error().$("data frame processing failed [thread=").$(Thread.currentThread().getName()).$(']').$(e).$();
+            synchronized (this) {
+                // first failure is reported, volatile write of error publishes errno and message
+                if (error == null) {
+                    if (e instanceof CairoException) {
+                        errorErrno = ((CairoException) e).getErrno();
+                        errorMessage = ((CairoException) e).getFlyweightMessage().toString();
+                    }
+                    error = e;
+                }
+            }
+        }
+    }
+
+    static {
+        NEXT_FRAME_OFFSET = Unsafe.getFieldOffset(DataFrameDispatcher.class, "nextFrame");
+    }
+}
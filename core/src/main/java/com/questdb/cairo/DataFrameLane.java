@@ -0,0 +1,55 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.std.Unsafe;
+
+/**
+ * State of one thread taking part in parallel processing of data frames, see {@link DataFrameDispatcher}.
+ * Lane is never run by two threads at the same time, implementations can keep per-thread state, such as
+ * table reader or function instances, without synchronisation.
+ */
+public abstract class DataFrameLane {
+    private static final long SEQUENCE_OFFSET;
+    private volatile long sequence = 0L;
+
+    /**
+     * Processes frame claimed by this lane. Frames are numbered in order they were given to dispatcher.
+     *
+     * @param frameIndex index of frame
+     */
+    protected abstract void process(int frameIndex);
+
+    long getSequence() {
+        return sequence;
+    }
+
+    boolean tryLock(long expectedSequence) {
+        return Unsafe.cas(this, SEQUENCE_OFFSET, expectedSequence, expectedSequence + 1);
+    }
+
+    static {
+        SEQUENCE_OFFSET = Unsafe.getFieldOffset(DataFrameLane.class, "sequence");
+    }
+}
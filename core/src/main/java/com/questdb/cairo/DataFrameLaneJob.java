@@ -0,0 +1,61 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.mp.Job;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.Sequence;
+
+class DataFrameLaneJob implements Job {
+    private final RingQueue<DataFrameLaneEntry> queue;
+    private final Sequence sequence;
+
+    public DataFrameLaneJob(CairoWorkScheduler workScheduler) {
+        this.queue = workScheduler.getDataFrameLaneQueue();
+        this.sequence = workScheduler.getDataFrameLaneSubSequence();
+    }
+
+    @Override
+    public boolean run() {
+        long cursor = sequence.next();
+        if (cursor < 0) {
+            return false;
+        }
+
+        DataFrameLaneEntry queueItem = queue.get(cursor);
+        // copy values and release queue item
+        final DataFrameDispatcher dispatcher = queueItem.dispatcher;
+        final DataFrameLane lane = queueItem.lane;
+        final long laneSequence = queueItem.sequence;
+        sequence.done(cursor);
+
+        // dispatching thread takes over lanes nobody has started by the time it runs out of frames,
+        // lock fails when this entry is late for its dispatch
+        if (lane.tryLock(laneSequence)) {
+            dispatcher.runAndCountDown(lane);
+            return true;
+        }
+        return false;
+    }
+}
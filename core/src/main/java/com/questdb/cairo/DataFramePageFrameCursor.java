@@ -0,0 +1,232 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.DataFrame;
+import com.questdb.cairo.sql.DataFrameCursor;
+import com.questdb.cairo.sql.PageFrame;
+import com.questdb.cairo.sql.PageFrameCursor;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.std.*;
+
+/**
+ * Cuts data frames into page frames. Frame ends where any of its columns crosses boundary of mapped page or
+ * of decompressed block. Rows above column top and partitions without the column read from page of nulls,
+ * which makes frames of such rows look the same as any other frame.
+ */
+public class DataFramePageFrameCursor implements PageFrameCursor, PageFrame {
+    private final IntList columnIndexes;
+    private final IntList columnTypes = new IntList();
+    private final LongList nullPages = new LongList();
+    private final LongList pageAddresses = new LongList();
+    private final long maxRowCount;
+    private DataFrameCursor dataFrameCursor;
+    private TableReader reader;
+    private int partitionIndex;
+    private int columnBase;
+    // rows of current data frame that are not in any page frame yet
+    private long rowLo;
+    private long rowHi;
+    private long frameRowLo;
+    private long frameRowCount;
+
+    /**
+     * @param columnIndexes indexes of table columns frames are made of, types of columns must be supported
+     * @param maxRowCount   maximum number of rows in page frame
+     */
+    public DataFramePageFrameCursor(IntList columnIndexes, long maxRowCount) {
+        this.columnIndexes = columnIndexes;
+        this.maxRowCount = maxRowCount;
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            nullPages.add(0);
+        }
+    }
+
+    public static boolean isSupported(int columnType) {
+        switch (columnType) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void close() {
+        dataFrameCursor = Misc.free(dataFrameCursor);
+        for (int i = 0, n = nullPages.size(); i < n; i++) {
+            final long address = nullPages.getQuick(i);
+            if (address != 0) {
+                Unsafe.free(address, maxRowCount << ColumnType.pow2SizeOf(columnTypes.getQuick(i)));
+                nullPages.setQuick(i, 0);
+            }
+        }
+    }
+
+    @Override
+    public TableReader getTableReader() {
+        return reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (rowLo == rowHi) {
+            if (!dataFrameCursor.hasNext()) {
+                return false;
+            }
+            final DataFrame frame = dataFrameCursor.next();
+            partitionIndex = frame.getPartitionIndex();
+            columnBase = reader.getColumnBase(partitionIndex);
+            rowLo = frame.getRowLo();
+            rowHi = frame.getRowHi();
+        }
+        return true;
+    }
+
+    @Override
+    public PageFrame next() {
+        long hi = Math.min(rowHi, rowLo + maxRowCount);
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            final int columnIndex = columnIndexes.getQuick(i);
+            final int shl = ColumnType.pow2SizeOf(columnTypes.getQuick(i));
+            final long top = reader.getColumnTop(columnBase, columnIndex);
+            final ReadOnlyColumn column = reader.getColumn(TableReader.getPrimaryColumnIndex(columnBase, columnIndex));
+
+            final long address;
+            final long rowCount;
+            if (rowLo < top || column instanceof NullColumn) {
+                address = getNullPage(i);
+                rowCount = rowLo < top ? top - rowLo : maxRowCount;
+            } else if (column instanceof CompressedColumn) {
+                final CompressedColumn compressedColumn = (CompressedColumn) column;
+                final long offset = (rowLo - top) << shl;
+                address = compressedColumn.addressOf(offset);
+                rowCount = compressedColumn.pageRemaining(offset) >> shl;
+            } else {
+                final ReadOnlyMemory mem = (ReadOnlyMemory) column;
+                final long offset = (rowLo - top) << shl;
+                address = mem.addressOf(offset);
+                rowCount = mem.pageRemaining(offset) >> shl;
+            }
+            pageAddresses.setQuick(columnIndex, address);
+            hi = Math.min(hi, rowLo + rowCount);
+        }
+        frameRowLo = rowLo;
+        frameRowCount = hi - rowLo;
+        rowLo = hi;
+        return this;
+    }
+
+    @Override
+    public void toTop() {
+        dataFrameCursor.toTop();
+        rowLo = rowHi = 0;
+    }
+
+    @Override
+    public long getPageAddress(int columnIndex) {
+        return pageAddresses.getQuick(columnIndex);
+    }
+
+    @Override
+    public int getPartitionIndex() {
+        return partitionIndex;
+    }
+
+    @Override
+    public long getRowCount() {
+        return frameRowCount;
+    }
+
+    @Override
+    public long getRowLo() {
+        return frameRowLo;
+    }
+
+    public DataFramePageFrameCursor of(DataFrameCursor dataFrameCursor) {
+        if (this.dataFrameCursor != dataFrameCursor) {
+            close();
+            this.dataFrameCursor = dataFrameCursor;
+        }
+        this.reader = dataFrameCursor.getTableReader();
+        this.rowLo = this.rowHi = 0;
+
+        final RecordMetadata metadata = reader.getMetadata();
+        pageAddresses.seed(metadata.getColumnCount(), 0);
+        columnTypes.clear();
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            final int type = metadata.getColumnType(columnIndexes.getQuick(i));
+            assert isSupported(type);
+            columnTypes.add(type);
+        }
+        return this;
+    }
+
+    private long getNullPage(int index) {
+        long address = nullPages.getQuick(index);
+        if (address == 0) {
+            final int type = columnTypes.getQuick(index);
+            address = Unsafe.malloc(maxRowCount << ColumnType.pow2SizeOf(type));
+            switch (type) {
+                case ColumnType.INT:
+                    for (long i = 0; i < maxRowCount; i++) {
+                        Unsafe.getUnsafe().putInt(address + i * 4, Numbers.INT_NaN);
+                    }
+                    break;
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                    for (long i = 0; i < maxRowCount; i++) {
+                        Unsafe.getUnsafe().putLong(address + i * 8, Numbers.LONG_NaN);
+                    }
+                    break;
+                case ColumnType.FLOAT:
+                    for (long i = 0; i < maxRowCount; i++) {
+                        Unsafe.getUnsafe().putFloat(address + i * 4, Float.NaN);
+                    }
+                    break;
+                case ColumnType.DOUBLE:
+                    for (long i = 0; i < maxRowCount; i++) {
+                        Unsafe.getUnsafe().putDouble(address + i * 8, Double.NaN);
+                    }
+                    break;
+                default:
+                    // boolean, byte and short read as zero
+                    Unsafe.getUnsafe().setMemory(address, maxRowCount << ColumnType.pow2SizeOf(type), (byte) 0);
+                    break;
+            }
+            nullPages.setQuick(index, address);
+        }
+        return address;
+    }
+}
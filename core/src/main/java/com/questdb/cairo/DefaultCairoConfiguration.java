@@ -24,6 +24,7 @@
 package com.questdb.cairo;
 
 import com.questdb.std.Chars;
+import com.questdb.std.Files;
 import com.questdb.std.FilesFacade;
 import com.questdb.std.FilesFacadeImpl;
 import com.questdb.std.Numbers;
@@ -35,9 +36,22 @@ import com.questdb.std.time.MillisecondClockImpl;
 public class DefaultCairoConfiguration implements CairoConfiguration {
 
     private final CharSequence root;
+    private final CharSequence spillRoot;
 
     public DefaultCairoConfiguration(CharSequence root) {
-        this.root = Chars.stringOf(root);
+        final String rootStr = Chars.stringOf(root);
+        this.root = rootStr;
+        this.spillRoot = rootStr + Files.SEPARATOR + ".spill";
+    }
+
+    @Override
+    public int getBufferedRowCount() {
+        return 4096;
+    }
+
+    @Override
+    public int getCommitMode() {
+        return CommitMode.NOSYNC;
     }
 
     @Override
@@ -70,6 +84,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return FilesFacadeImpl.INSTANCE;
     }
 
+    @Override
+    public long getGroupCommitWindow() {
+        return 2000;
+    }
+
     @Override
     public long getIdleCheckInterval() {
         return 100;
@@ -110,6 +129,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 509;
     }
 
+    @Override
+    public int getOutOfOrderPageSize() {
+        return Numbers.SIZE_1MB;
+    }
+
     @Override
     public int getParallelIndexThreshold() {
         return 100000;
@@ -120,6 +144,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 5;
     }
 
+    @Override
+    public long getRetentionCheckInterval() {
+        return 60_000;
+    }
+
     @Override
     public CharSequence getRoot() {
         return root;
@@ -130,6 +159,11 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1000000;
     }
 
+    @Override
+    public int getSqlAnalyticPeerPageSize() {
+        return Numbers.SIZE_1MB;
+    }
+
     @Override
     public int getSqlCacheBlockCount() {
         return 16;
@@ -172,6 +206,21 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 0.5;
     }
 
+    @Override
+    public int getSqlGroupBySpillPartitionCount() {
+        return 32;
+    }
+
+    @Override
+    public long getSqlGroupBySpillThreshold() {
+        return 1024L * Numbers.SIZE_1MB;
+    }
+
+    @Override
+    public long getSqlSortTopKMaxLimit() {
+        return 100_000;
+    }
+
     @Override
     public int getSqlJoinContextPoolCapacity() {
         return 64;
@@ -197,6 +246,16 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return 1024;
     }
 
+    @Override
+    public int getSqlParallelFrameRowCount() {
+        return 256 * 1024;
+    }
+
+    @Override
+    public int getSqlPageFrameRowCount() {
+        return 64 * 1024;
+    }
+
     @Override
     public int getSqlSortKeyPageSize() {
         return 4 * Numbers.SIZE_1MB;
@@ -207,6 +266,16 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return Numbers.SIZE_1MB;
     }
 
+    @Override
+    public long getSqlSortSpillThreshold() {
+        return 1024L * Numbers.SIZE_1MB;
+    }
+
+    @Override
+    public CharSequence getSqlSpillRoot() {
+        return spillRoot;
+    }
+
     @Override
     public int getSqlHashJoinValuePageSize() {
         return Numbers.SIZE_1MB * 16;
@@ -222,21 +291,76 @@ public class DefaultCairoConfiguration implements CairoConfiguration {
         return Numbers.SIZE_1MB;
     }
 
+    @Override
+    public int getSqlHashJoinSpillPartitionCount() {
+        return 32;
+    }
+
+    @Override
+    public long getSqlHashJoinSpillThreshold() {
+        return 1024L * Numbers.SIZE_1MB;
+    }
+
     @Override
     public int getSqlSortValuePageSize() {
         return Numbers.SIZE_1MB * 16;
     }
 
+    @Override
+    public int getWalPageSize() {
+        return Numbers.SIZE_1MB;
+    }
+
+    @Override
+    public long getWalSegmentRolloverRowCount() {
+        return 1000000;
+    }
+
     @Override
     public long getWorkStealTimeoutNanos() {
         return 10000;
     }
 
+    @Override
+    public int getZoneMapBlockSize() {
+        return 64 * 1024;
+    }
+
+    @Override
+    public boolean isOutOfOrderEnabled() {
+        return false;
+    }
+
     @Override
     public boolean isParallelIndexingEnabled() {
         return true;
     }
 
+    @Override
+    public boolean isSqlParallelFilterEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlParallelGroupByEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlFilterCompilationEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlSortTopKEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean isSqlVectorExecutionEnabled() {
+        return true;
+    }
+
     @Override
     public int getSqlJoinMetadataPageSize() {
         return 16 * 1024;
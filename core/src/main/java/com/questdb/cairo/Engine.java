@@ -32,6 +32,7 @@ import com.questdb.log.LogFactory;
 import com.questdb.mp.SynchronizedJob;
 import com.questdb.std.FilesFacade;
 import com.questdb.std.Misc;
+import com.questdb.std.Unsafe;
 import com.questdb.std.microtime.MicrosecondClock;
 import com.questdb.std.str.Path;
 import org.jetbrains.annotations.Nullable;
@@ -44,6 +45,10 @@ public class Engine implements Closeable, CairoEngine {
     private final WriterPool writerPool;
     private final ReaderPool readerPool;
     private final CairoConfiguration configuration;
+    private final WalSequencer walSequencer;
+    private final WalApplyJob walApplyJob;
+    private final RetentionJob retentionJob;
+    private final QueryCache queryCache;
 
     public Engine(CairoConfiguration configuration) {
         this(configuration, null);
@@ -53,14 +58,44 @@ public class Engine implements Closeable, CairoEngine {
         this.configuration = configuration;
         this.writerPool = new WriterPool(configuration, workScheduler);
         this.readerPool = new ReaderPool(configuration);
+        this.walSequencer = new WalSequencer(configuration);
+        this.walApplyJob = new WalApplyJob(this, walSequencer);
+        this.retentionJob = new RetentionJob(this);
+        this.queryCache = new QueryCache(
+                this,
+                configuration.getSqlCacheBlockCount() * configuration.getSqlCacheBlockSize(),
+                configuration.getSqlCacheBlockSize()
+        );
         if (workScheduler != null) {
             workScheduler.addJob(new WriterMaintenanceJob(configuration));
             workScheduler.addJob(new ColumnIndexerJob(workScheduler));
+            workScheduler.addJob(walApplyJob);
+            workScheduler.addJob(retentionJob);
+            if (workScheduler.getGroupCommit() != null) {
+                workScheduler.addJob(new GroupCommitJob(workScheduler));
+            }
+            if (workScheduler.getDataFrameLaneQueue() != null) {
+                workScheduler.addJob(new DataFrameLaneJob(workScheduler));
+            }
         }
     }
 
+    /**
+     * Merges transactions committed by WAL writers into their tables. This is done by background job
+     * when engine has work scheduler, the method is for engines without one.
+     *
+     * @return true if any transactions were applied
+     */
+    public boolean applyWal() {
+        return walApplyJob.run();
+    }
+
     @Override
     public void close() {
+        Misc.free(queryCache);
+        Misc.free(walApplyJob);
+        Misc.free(walSequencer);
+        Misc.free(retentionJob);
         Misc.free(writerPool);
         Misc.free(readerPool);
     }
@@ -77,6 +112,11 @@ public class Engine implements Closeable, CairoEngine {
         return configuration;
     }
 
+    @Override
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
     public PoolListener getPoolListener() {
         return this.writerPool.getPoolListener();
     }
@@ -101,11 +141,56 @@ public class Engine implements Closeable, CairoEngine {
         return TableUtils.exists(configuration.getFilesFacade(), path, configuration.getRoot(), tableName, lo, hi);
     }
 
+    /**
+     * Creates new WAL writer for the table. Unlike {@link #getWriter(CharSequence)} this method
+     * can be called for the same table from any number of threads concurrently. WAL writers are
+     * not pooled, caller must close them.
+     *
+     * @param tableName name of existing table
+     * @return new WAL writer
+     */
+    public WalWriter getWalWriter(CharSequence tableName) {
+        if (!configuration.isOutOfOrderEnabled()) {
+            // rows from concurrent WAL writers interleave, applying them needs out-of-order merge
+            throw CairoException.instance(0).put("WAL requires out-of-order ingestion to be enabled [table=").put(tableName).put(']');
+        }
+        return new WalWriter(configuration, tableName, walSequencer);
+    }
+
     @Override
     public TableWriter getWriter(CharSequence tableName) {
         return writerPool.get(tableName);
     }
 
+    /**
+     * Checks whether WAL transactions of the table are held back because they could not be applied.
+     *
+     * @param tableName table name
+     * @return true when table is suspended
+     */
+    public boolean isWalSuspended(CharSequence tableName) {
+        return walSequencer.isSuspended(tableName);
+    }
+
+    @Override
+    public boolean isTableCurrent(CharSequence tableName, long tableId, long structureVersion) {
+        final int status = readerPool.checkTable(tableName, tableId, structureVersion);
+        if (status != ReaderPool.TABLE_NOT_POOLED) {
+            return status == ReaderPool.TABLE_CURRENT;
+        }
+
+        // no idle reader, table is locked or its readers are busy or expired
+        final FilesFacade ff = configuration.getFilesFacade();
+        final long buf = Unsafe.malloc(8);
+        try (Path path = new Path()) {
+            path.of(configuration.getRoot()).concat(tableName);
+            return TableUtils.readTableId(ff, path, buf) == tableId
+                    && TableUtils.readStructureVersion(ff, path, buf) == structureVersion;
+        } finally {
+            Unsafe.free(buf, 8);
+        }
+    }
+
     @Override
     public boolean lock(CharSequence tableName) {
         if (writerPool.lock(tableName)) {
@@ -128,6 +213,26 @@ public class Engine implements Closeable, CairoEngine {
         return writerPool.releaseAll();
     }
 
+    /**
+     * Removes partitions that are older than retention period of their tables. This is done by background
+     * job when engine has work scheduler, the method is for engines without one.
+     *
+     * @return true if any partitions were removed
+     */
+    public boolean removeExpiredPartitions() {
+        return retentionJob.removeExpiredPartitions();
+    }
+
+    /**
+     * Resumes applying WAL transactions of the table, which has been suspended after error. Transactions
+     * committed to the table in the meantime are kept and will be applied in their original order.
+     *
+     * @param tableName table name
+     */
+    public void resumeWal(CharSequence tableName) {
+        walSequencer.resume(tableName);
+    }
+
     @Override
     public void unlock(CharSequence tableName, @Nullable TableWriter writer) {
         readerPool.unlock(tableName);
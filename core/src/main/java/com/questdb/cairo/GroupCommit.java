@@ -0,0 +1,158 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.FilesFacade;
+import com.questdb.std.LongList;
+import com.questdb.std.microtime.MicrosecondClock;
+
+/**
+ * Coalesces file flushes requested by many writers into shared flush cycles. Writers hand over
+ * descriptors of files they have written and get back number of the cycle that will flush them.
+ * Cycle starts when latency window elapses after first hand over, either in {@link GroupCommitJob}
+ * or in a writer that waits for its cycle and finds nobody else flushing. Every descriptor is
+ * flushed once per cycle no matter how many writers handed it over.
+ * <p>
+ * Writers must not close files they handed over before their cycle is complete.
+ */
+public class GroupCommit {
+    private static final Log LOG = LogFactory.getLog(GroupCommit.class);
+    private final FilesFacade ff;
+    private final MicrosecondClock clock;
+    private final long window;
+    private LongList pending = new LongList();
+    private LongList flushing = new LongList();
+    private long pendingCycle = 1;
+    private long pendingSince = Long.MAX_VALUE;
+    private long flushedCycle = 0;
+    private long failedCycle = 0;
+    private boolean flushInProgress = false;
+
+    public GroupCommit(CairoConfiguration configuration) {
+        this.ff = configuration.getFilesFacade();
+        this.clock = configuration.getMicrosecondClock();
+        this.window = configuration.getGroupCommitWindow();
+    }
+
+    /**
+     * Waits until flush cycle is complete. When latency window has elapsed and there is no flush in progress
+     * calling thread flushes pending files itself.
+     *
+     * @param cycle value returned by {@link #submit(LongList)}
+     * @throws CairoException when flush of any file failed, failure may belong to later cycle
+     */
+    public void await(long cycle) {
+        if (cycle == 0) {
+            return;
+        }
+        while (true) {
+            synchronized (this) {
+                if (flushedCycle >= cycle) {
+                    if (failedCycle >= cycle) {
+                        throw CairoException.instance(0).put("Could not flush files [cycle=").put(failedCycle).put(']');
+                    }
+                    return;
+                }
+
+                final long remaining = pendingSince + window - clock.getTicks();
+                if (flushInProgress || (remaining > 0 && cycle == pendingCycle)) {
+                    try {
+                        wait(Math.max(1, remaining / 1000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw CairoException.instance(0).put("Interrupted while waiting for flush");
+                    }
+                    continue;
+                }
+            }
+            flush(true);
+        }
+    }
+
+    /**
+     * Flushes pending files.
+     *
+     * @param force true to flush without waiting for latency window to elapse
+     * @return true if flush cycle has been completed
+     */
+    public boolean flush(boolean force) {
+        final long cycle;
+        final LongList fds;
+        synchronized (this) {
+            if (flushInProgress || pending.size() == 0 || (!force && clock.getTicks() - pendingSince < window)) {
+                return false;
+            }
+            flushInProgress = true;
+            fds = pending;
+            pending = flushing;
+            flushing = fds;
+            cycle = pendingCycle++;
+            pendingSince = Long.MAX_VALUE;
+        }
+
+        boolean failed = false;
+        try {
+            fds.sort();
+            long last = -1;
+            for (int i = 0, n = fds.size(); i < n; i++) {
+                final long fd = fds.getQuick(i);
+                if (fd != last && ff.fsync(fd) != 0) {
+                    LOG.error().$("could not flush [fd=").$(fd).$(", errno=").$(ff.errno()).$(']').$();
+                    failed = true;
+                }
+                last = fd;
+            }
+            fds.clear();
+        } finally {
+            synchronized (this) {
+                if (failed) {
+                    failedCycle = cycle;
+                }
+                flushedCycle = cycle;
+                flushInProgress = false;
+                notifyAll();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hands over files to be flushed.
+     *
+     * @param fds file descriptors, list is copied
+     * @return number of flush cycle to pass to {@link #await(long)}, 0 when there is nothing to flush
+     */
+    public synchronized long submit(LongList fds) {
+        if (fds.size() == 0) {
+            return 0;
+        }
+        if (pending.size() == 0) {
+            pendingSince = clock.getTicks();
+        }
+        pending.add(fds);
+        return pendingCycle;
+    }
+}
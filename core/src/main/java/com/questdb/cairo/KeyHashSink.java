@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.std.BinarySequence;
+import com.questdb.std.Chars;
+import com.questdb.std.Mutable;
+
+/**
+ * Hashes values of key columns written by {@link RecordSink}. Operators that spill rows to several files use it
+ * to send rows of the same key to the same file.
+ */
+public class KeyHashSink implements RecordSinkSPI, Mutable {
+    private long hash;
+
+    @Override
+    public void clear() {
+        hash = 0;
+    }
+
+    @Override
+    public void putBin(BinarySequence value) {
+        if (value == null) {
+            putLong(-1);
+        } else {
+            for (long i = 0, n = value.length(); i < n; i++) {
+                putInt(value.byteAt(i));
+            }
+        }
+    }
+
+    @Override
+    public void putBool(boolean value) {
+        putInt(value ? 1 : 0);
+    }
+
+    @Override
+    public void putByte(byte value) {
+        putInt(value);
+    }
+
+    @Override
+    public void putDate(long value) {
+        putLong(value);
+    }
+
+    @Override
+    public void putDouble(double value) {
+        putLong(Double.doubleToLongBits(value));
+    }
+
+    @Override
+    public void putFloat(float value) {
+        putInt(Float.floatToIntBits(value));
+    }
+
+    @Override
+    public void putInt(int value) {
+        hash = hash * 31 + value;
+    }
+
+    @Override
+    public void putLong(long value) {
+        hash = hash * 31 + value;
+    }
+
+    @Override
+    public void putShort(short value) {
+        putInt(value);
+    }
+
+    @Override
+    public void putStr(CharSequence value) {
+        putInt(value == null ? -1 : Chars.hashCode(value));
+    }
+
+    @Override
+    public void putStr(CharSequence value, int lo, int hi) {
+        putInt(Chars.hashCode(value, lo, hi));
+    }
+
+    @Override
+    public void putTimestamp(long value) {
+        putLong(value);
+    }
+
+    /**
+     * @return hash of key written to this sink since it was cleared, bits are mixed and all of them can be used
+     */
+    public long hash() {
+        long h = hash;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @param partitionCount number of partitions
+     * @return partition of key written to this sink since it was cleared
+     */
+    public int partition(int partitionCount) {
+        // map hashes keys too, mix bits so that keys of one partition spread over all map slots
+        return (int) ((hash() & Long.MAX_VALUE) % partitionCount);
+    }
+}
@@ -0,0 +1,361 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.cairo.sql.SymbolTable;
+import com.questdb.std.*;
+import com.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Finds duplicate rows among out-of-order rows staged for merge into a partition and existing rows of that
+ * partition. Rows are duplicates when they have the same designated timestamp and equal values of all
+ * deduplication key columns. Of each set of duplicates only the latest row is kept: staged rows replace partition
+ * rows and staged rows that were added later replace those added earlier.
+ * <p>
+ * Only rows with equal timestamps can be duplicates, so candidates are grouped by timestamp and within each group
+ * rows are matched by hash of their key values. Hash matches are confirmed by comparing values.
+ */
+final class OutOfOrderDedup implements Closeable {
+    private final FilesFacade ff;
+    private final long tempMem8b;
+    private final IntList keyColumns = new IntList();
+    private final ObjList<ReadOnlyMemory> srcColumns = new ObjList<>();
+    private final LongList srcColumnTops = new LongList();
+    private final LongIntHashMap keys = new LongIntHashMap();
+    private final IntHashSet groupDropped = new IntHashSet();
+    private final LongList droppedRows = new LongList();
+    private final LongList droppedPositions = new LongList();
+    private RecordMetadata metadata;
+    private ObjList<VirtualMemory> oooColumns;
+    private ReadOnlyMemory srcTimestampMem;
+    private long index;
+    private long srcRowCount;
+    private boolean srcColumnsOpen;
+    private long groupSrcLo;
+    private long groupSrcCount;
+    private long groupIndexLo;
+
+    OutOfOrderDedup(FilesFacade ff, long tempMem8b) {
+        this.ff = ff;
+        this.tempMem8b = tempMem8b;
+    }
+
+    @Override
+    public void close() {
+        closeSrcColumns();
+        for (int i = 0, n = srcColumns.size(); i < n; i++) {
+            Misc.free(srcColumns.getQuick(i));
+        }
+        srcColumns.clear();
+    }
+
+    /**
+     * @return positions of staged rows in sorted timestamp index to be dropped, in ascending order
+     */
+    LongList getDroppedPositions() {
+        return droppedPositions;
+    }
+
+    /**
+     * @return partition rows to be dropped, in ascending order
+     */
+    LongList getDroppedRows() {
+        return droppedRows;
+    }
+
+    void of(RecordMetadata metadata, IntList keyColumns, ObjList<VirtualMemory> oooColumns) {
+        this.metadata = metadata;
+        this.oooColumns = oooColumns;
+        this.keyColumns.clear();
+        this.keyColumns.addAll(keyColumns);
+        while (srcColumns.size() < keyColumns.size() * 2) {
+            srcColumns.add(new ReadOnlyMemory());
+        }
+    }
+
+    /**
+     * Finds rows to be dropped when staged rows between indexLo and indexHi are merged into partition.
+     *
+     * @param path            path to partition directory, it is restored before method returns
+     * @param srcRowCount     number of rows in partition
+     * @param srcTimestampMem timestamp column of partition, it is not used when partition is empty
+     * @param index           address of sorted timestamp index
+     * @param indexLo         position of first staged row of partition, inclusive
+     * @param indexHi         position of last staged row of partition, exclusive
+     * @return number of rows to be dropped
+     */
+    long plan(Path path, long srcRowCount, ReadOnlyMemory srcTimestampMem, long index, long indexLo, long indexHi) {
+        this.srcRowCount = srcRowCount;
+        this.srcTimestampMem = srcTimestampMem;
+        this.index = index;
+        droppedRows.clear();
+        droppedPositions.clear();
+        final int plen = path.length();
+        try {
+            long pos = indexLo;
+            while (pos < indexHi) {
+                final long timestamp = TableWriter.getIndexTimestamp(index, pos);
+                long hi = pos + 1;
+                while (hi < indexHi && TableWriter.getIndexTimestamp(index, hi) == timestamp) {
+                    hi++;
+                }
+
+                long srcHi = searchSrcTimestamp(timestamp);
+                long srcLo = srcHi;
+                while (srcLo > 0 && srcTimestampMem.getLong((srcLo - 1) * 8) == timestamp) {
+                    srcLo--;
+                }
+
+                if (hi - pos + srcHi - srcLo > 1) {
+                    if (srcHi > srcLo && !srcColumnsOpen) {
+                        openSrcColumns(path, plen);
+                    }
+                    dedupGroup(srcLo, srcHi, pos, hi);
+                }
+                pos = hi;
+            }
+        } finally {
+            path.trimTo(plen);
+            closeSrcColumns();
+        }
+
+        droppedRows.sort();
+        droppedPositions.sort();
+        return droppedRows.size() + droppedPositions.size();
+    }
+
+    private static long nullWord(int type) {
+        switch (type) {
+            case ColumnType.INT:
+                return Numbers.INT_NaN;
+            case ColumnType.SYMBOL:
+                return SymbolTable.VALUE_IS_NULL;
+            case ColumnType.FLOAT:
+                return Float.floatToIntBits(Float.NaN);
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return Numbers.LONG_NaN;
+            case ColumnType.DOUBLE:
+                return Double.doubleToLongBits(Double.NaN);
+            default:
+                return 0;
+        }
+    }
+
+    private static long readWord(int type, VirtualMemory mem, long row) {
+        switch (type) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+                return mem.getByte(row);
+            case ColumnType.SHORT:
+                return mem.getShort(row * 2);
+            case ColumnType.INT:
+            case ColumnType.SYMBOL:
+                return mem.getInt(row * 4);
+            case ColumnType.FLOAT:
+                return Float.floatToIntBits(mem.getFloat(row * 4));
+            case ColumnType.DOUBLE:
+                return Double.doubleToLongBits(mem.getDouble(row * 8));
+            default:
+                return mem.getLong(row * 8);
+        }
+    }
+
+    private void closeSrcColumns() {
+        if (srcColumnsOpen) {
+            for (int i = 0, n = srcColumns.size(); i < n; i++) {
+                srcColumns.getQuick(i).close();
+            }
+            srcColumnsOpen = false;
+        }
+    }
+
+    private void dedupGroup(long srcLo, long srcHi, long indexLo, long indexHi) {
+        groupSrcLo = srcLo;
+        groupSrcCount = srcHi - srcLo;
+        groupIndexLo = indexLo;
+        keys.clear();
+        groupDropped.clear();
+
+        final int n = (int) (groupSrcCount + indexHi - indexLo);
+        for (int id = 0; id < n; id++) {
+            final long hash = hash(id);
+            int other = keys.get(hash);
+            if (other == -1) {
+                keys.put(hash, id);
+                continue;
+            }
+
+            if (!keyEquals(id, other)) {
+                // hash collision, look for duplicate the slow way
+                other = findDuplicate(id);
+                if (other == -1) {
+                    continue;
+                }
+            }
+
+            if (isNewer(id, other)) {
+                drop(other);
+                if (keys.get(hash) == other) {
+                    keys.put(hash, id);
+                }
+            } else {
+                drop(id);
+            }
+        }
+    }
+
+    private void drop(int id) {
+        groupDropped.add(id);
+        if (id < groupSrcCount) {
+            droppedRows.add(groupSrcLo + id);
+        } else {
+            droppedPositions.add(groupIndexLo + id - groupSrcCount);
+        }
+    }
+
+    private int findDuplicate(int id) {
+        for (int other = 0; other < id; other++) {
+            if (groupDropped.excludes(other) && keyEquals(id, other)) {
+                return other;
+            }
+        }
+        return -1;
+    }
+
+    private long hash(int id) {
+        long h = 0;
+        for (int k = 0, n = keyColumns.size(); k < n; k++) {
+            final int type = metadata.getColumnType(keyColumns.getQuick(k));
+            final long word;
+            if (type == ColumnType.STRING) {
+                final CharSequence value = readStr(k, id, false);
+                word = value == null ? -1 : Chars.hashCode(value);
+            } else {
+                word = readWord(k, type, id);
+            }
+            h = h * 31 + word;
+        }
+        return h ^ (h >>> 32);
+    }
+
+    private boolean isNewer(int id, int other) {
+        if (id < groupSrcCount || other < groupSrcCount) {
+            // staged rows are newer than partition rows, partition rows are in order of addition
+            return id > other;
+        }
+        return rowOf(id) > rowOf(other);
+    }
+
+    private boolean keyEquals(int id1, int id2) {
+        for (int k = 0, n = keyColumns.size(); k < n; k++) {
+            final int type = metadata.getColumnType(keyColumns.getQuick(k));
+            if (type == ColumnType.STRING) {
+                final CharSequence value1 = readStr(k, id1, false);
+                final CharSequence value2 = readStr(k, id2, true);
+                if (value1 == null ? value2 != null : !Chars.equalsNc(value1, value2)) {
+                    return false;
+                }
+            } else if (readWord(k, type, id1) != readWord(k, type, id2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void openSrcColumns(Path path, int plen) {
+        srcColumnsOpen = true;
+        for (int k = 0, n = keyColumns.size(); k < n; k++) {
+            final int columnIndex = keyColumns.getQuick(k);
+            final CharSequence name = metadata.getColumnName(columnIndex);
+            final int type = metadata.getColumnType(columnIndex);
+            long top = srcRowCount;
+            if (ff.exists(TableUtils.dFile(path.trimTo(plen), name))) {
+                top = TableUtils.readColumnTop(ff, path.trimTo(plen), name, plen, tempMem8b);
+                final ReadOnlyMemory mem1 = srcColumns.getQuick(k * 2);
+                if (type == ColumnType.STRING) {
+                    mem1.of(ff, TableUtils.dFile(path.trimTo(plen), name), ff.getMapPageSize(), ff.length(path));
+                    srcColumns.getQuick(k * 2 + 1).of(ff, TableUtils.iFile(path.trimTo(plen), name), ff.getMapPageSize(), (srcRowCount - top) * 8);
+                } else {
+                    mem1.of(ff, TableUtils.dFile(path.trimTo(plen), name), ff.getMapPageSize(), (srcRowCount - top) << ColumnType.pow2SizeOf(type));
+                }
+            }
+            srcColumnTops.extendAndSet(k, top);
+        }
+        path.trimTo(plen);
+    }
+
+    private CharSequence readStr(int k, int id, boolean second) {
+        final VirtualMemory mem1;
+        final VirtualMemory mem2;
+        final long row;
+        if (id < groupSrcCount) {
+            final long top = srcColumnTops.getQuick(k);
+            if (groupSrcLo + id < top) {
+                return null;
+            }
+            mem1 = srcColumns.getQuick(k * 2);
+            mem2 = srcColumns.getQuick(k * 2 + 1);
+            row = groupSrcLo + id - top;
+        } else {
+            final int columnIndex = keyColumns.getQuick(k);
+            mem1 = oooColumns.getQuick(columnIndex * 2);
+            mem2 = oooColumns.getQuick(columnIndex * 2 + 1);
+            row = rowOf(id);
+        }
+        final long offset = mem2.getLong(row * 8);
+        return second ? mem1.getStr2(offset) : mem1.getStr(offset);
+    }
+
+    private long readWord(int k, int type, int id) {
+        if (id < groupSrcCount) {
+            final long row = groupSrcLo + id;
+            final long top = srcColumnTops.getQuick(k);
+            return row < top ? nullWord(type) : readWord(type, srcColumns.getQuick(k * 2), row - top);
+        }
+        return readWord(type, oooColumns.getQuick(keyColumns.getQuick(k) * 2), rowOf(id));
+    }
+
+    private long rowOf(int id) {
+        return TableWriter.getIndexRow(index, groupIndexLo + id - groupSrcCount);
+    }
+
+    private long searchSrcTimestamp(long timestamp) {
+        long low = 0;
+        long high = srcRowCount - 1;
+        while (low <= high) {
+            final long mid = (low + high) >>> 1;
+            if (srcTimestampMem.getLong(mid * 8) <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
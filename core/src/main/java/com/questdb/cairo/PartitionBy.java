@@ -24,6 +24,9 @@
 package com.questdb.cairo;
 
 import com.questdb.std.CharSequenceIntHashMap;
+import com.questdb.std.NumericException;
+import com.questdb.std.Numbers;
+import com.questdb.std.microtime.Dates;
 
 /**
  * Setting partition type on JournalKey to override default settings.
@@ -42,13 +45,83 @@ public final class PartitionBy {
      * Setting partition type to DEFAULT will use whatever partition type is specified in journal configuration.
      */
     public static final int DEFAULT = 4;
+    public static final int HOUR = 5;
+    /**
+     * Partitions of fixed width other than HOUR are encoded as this base plus width in minutes,
+     * see {@link #minutes(int)}. Such partitions are aligned to epoch.
+     */
+    private static final int MINUTES_BASE = 0x10000;
+    private static final int MAX_MINUTES = 0xffff;
     private final static CharSequenceIntHashMap nameToIndexMap = new CharSequenceIntHashMap();
 
     private PartitionBy() {
     }
 
     public static int fromString(CharSequence name) {
-        return nameToIndexMap.get(name);
+        final int partitionBy = nameToIndexMap.get(name);
+        if (partitionBy != -1) {
+            return partitionBy;
+        }
+
+        // fixed width, for example "15m" or "4h"
+        final int len = name.length();
+        if (len < 2) {
+            return -1;
+        }
+
+        final int n;
+        try {
+            n = Numbers.parseInt(name, 0, len - 1);
+        } catch (NumericException e) {
+            return -1;
+        }
+
+        switch (name.charAt(len - 1)) {
+            case 'm':
+            case 'M':
+                return n > 0 && n <= MAX_MINUTES ? minutes(n) : -1;
+            case 'h':
+            case 'H':
+                return n > 0 && n <= MAX_MINUTES / 60 ? minutes(n * 60) : -1;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * @return width of partition in microseconds for fixed width partitions, otherwise 0
+     */
+    public static long getWidth(int partitionBy) {
+        if (partitionBy == HOUR) {
+            return Dates.HOUR_MICROS;
+        }
+        if (partitionBy > MINUTES_BASE) {
+            return (partitionBy - MINUTES_BASE) * Dates.MINUTE_MICROS;
+        }
+        return 0;
+    }
+
+    /**
+     * Fixed width partitions are intervals of the same length. Partition directory name has minute
+     * resolution, except for HOUR, which names directories after hours.
+     *
+     * @return true for HOUR and partitions created via {@link #minutes(int)}
+     */
+    public static boolean isFixedWidth(int partitionBy) {
+        return partitionBy == HOUR || partitionBy > MINUTES_BASE;
+    }
+
+    /**
+     * Creates partition type of fixed width, width of one hour is same as {@link #HOUR}.
+     *
+     * @param n width of partition in minutes
+     * @return partition type
+     */
+    public static int minutes(int n) {
+        if (n < 1 || n > MAX_MINUTES) {
+            throw CairoException.instance(0).put("Invalid partition width [minutes=").put(n).put(']');
+        }
+        return n == 60 ? HOUR : MINUTES_BASE + n;
     }
 
     public static String toString(int partitionBy) {
@@ -63,7 +136,13 @@ public final class PartitionBy {
                 return "NONE";
             case DEFAULT:
                 return "DEFAULT";
+            case HOUR:
+                return "HOUR";
             default:
+                if (partitionBy > MINUTES_BASE && partitionBy <= MINUTES_BASE + MAX_MINUTES) {
+                    final int n = partitionBy - MINUTES_BASE;
+                    return n % 60 == 0 ? (n / 60) + "h" : n + "m";
+                }
                 return "UNKNOWN";
         }
     }
@@ -74,5 +153,6 @@ public final class PartitionBy {
         nameToIndexMap.put("YEAR", YEAR);
         nameToIndexMap.put("NONE", NONE);
         nameToIndexMap.put("DEFAULT", DEFAULT);
+        nameToIndexMap.put("HOUR", HOUR);
     }
 }
@@ -0,0 +1,226 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.CairoEngine;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.std.CharSequenceObjHashMap;
+import com.questdb.std.Chars;
+import com.questdb.std.LongList;
+import com.questdb.std.Misc;
+import com.questdb.std.ObjList;
+
+import java.io.Closeable;
+
+/**
+ * Engine-wide cache of compiled queries. Cache is keyed by query text, which is expected to be
+ * normalised by the caller, and keeps several idle factory instances per statement. Factories are
+ * not reentrant, so an instance is leased to one caller at a time and is returned to the cache
+ * when caller is done with it.
+ * <p>
+ * Each entry remembers ids and structure versions of tables the query was compiled against. Entry is
+ * discarded together with its idle factories once any of these tables changes structure or is dropped
+ * and created again.
+ */
+public class QueryCache implements Closeable {
+    private final CairoEngine engine;
+    private final CharSequenceObjHashMap<Entry> entries = new CharSequenceObjHashMap<>();
+    private final int capacity;
+    private final int instanceCapacity;
+    private long clock = 0;
+
+    public QueryCache(CairoEngine engine, int capacity, int instanceCapacity) {
+        this.engine = engine;
+        this.capacity = Math.max(1, capacity);
+        this.instanceCapacity = Math.max(1, instanceCapacity);
+    }
+
+    @Override
+    public synchronized void close() {
+        ObjList<CharSequence> keys = entries.keys();
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            entries.get(keys.getQuick(i)).invalidate();
+        }
+        entries.clear();
+    }
+
+    public synchronized Entry get(CharSequence key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Leases idle factory of given entry. Table versions are checked before factory
+     * is handed out and stale entry is removed from the cache.
+     *
+     * @param entry cache entry, obtained via {@link #get(CharSequence)}
+     * @return factory or null when entry has no idle factories or is out of date
+     */
+    public RecordCursorFactory lease(Entry entry) {
+        final RecordCursorFactory factory;
+        synchronized (this) {
+            if (!entry.valid || entry.idle.size() == 0) {
+                return null;
+            }
+            int last = entry.idle.size() - 1;
+            factory = entry.idle.getQuick(last);
+            entry.idle.remove(last);
+            entry.lastUsed = ++clock;
+        }
+
+        if (entry.isCurrent(engine)) {
+            return factory;
+        }
+
+        Misc.free(factory);
+        synchronized (this) {
+            if (entries.get(entry.key) == entry) {
+                entries.remove(entry.key);
+            }
+            entry.invalidate();
+        }
+        return null;
+    }
+
+    /**
+     * Creates cache entry for query, which has just been compiled against given table versions.
+     * Existing entry is kept when it was created for the same table versions, otherwise it is
+     * replaced and its idle factories are closed. Least recently used entry is evicted
+     * when cache is full.
+     *
+     * @param key           normalised query text
+     * @param tableNames    names of tables query reads from
+     * @param tableIds      ids of tables at the time of compilation
+     * @param tableVersions structure versions of tables at the time of compilation
+     * @return entry to return factory to
+     */
+    public synchronized Entry register(CharSequence key, ObjList<CharSequence> tableNames, LongList tableIds, LongList tableVersions) {
+        int index = entries.keyIndex(key);
+        if (index < 0) {
+            Entry entry = entries.valueAt(index);
+            if (entry.valid && entry.dependsOn(tableNames, tableIds, tableVersions)) {
+                entry.lastUsed = ++clock;
+                return entry;
+            }
+            entry.invalidate();
+            entries.removeAt(index);
+        } else if (entries.size() >= capacity) {
+            evict();
+        }
+
+        Entry entry = new Entry(key.toString(), tableNames, tableIds, tableVersions);
+        entry.lastUsed = ++clock;
+        entries.put(entry.key, entry);
+        return entry;
+    }
+
+    /**
+     * Returns leased factory to the cache. Factory is closed when entry is no longer
+     * in use or when it already has enough idle factories.
+     *
+     * @param entry   entry factory was leased from or registered with
+     * @param factory factory to keep
+     */
+    public void release(Entry entry, RecordCursorFactory factory) {
+        synchronized (this) {
+            if (entry.valid && entry.idle.size() < instanceCapacity) {
+                entry.idle.add(factory);
+                return;
+            }
+        }
+        Misc.free(factory);
+    }
+
+    private void evict() {
+        ObjList<CharSequence> keys = entries.keys();
+        CharSequence oldestKey = null;
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            CharSequence key = keys.getQuick(i);
+            Entry entry = entries.get(key);
+            if (entry.lastUsed < oldest) {
+                oldest = entry.lastUsed;
+                oldestKey = key;
+            }
+        }
+
+        if (oldestKey != null) {
+            Entry entry = entries.get(oldestKey);
+            entries.remove(oldestKey);
+            entry.invalidate();
+        }
+    }
+
+    public static class Entry {
+        private final String key;
+        private final ObjList<CharSequence> tableNames = new ObjList<>();
+        private final LongList tableIds = new LongList();
+        private final LongList tableVersions = new LongList();
+        private final ObjList<RecordCursorFactory> idle = new ObjList<>();
+        private boolean valid = true;
+        private long lastUsed;
+
+        private Entry(String key, ObjList<CharSequence> tableNames, LongList tableIds, LongList tableVersions) {
+            this.key = key;
+            for (int i = 0, n = tableNames.size(); i < n; i++) {
+                this.tableNames.add(tableNames.getQuick(i).toString());
+                this.tableIds.add(tableIds.getQuick(i));
+                this.tableVersions.add(tableVersions.getQuick(i));
+            }
+        }
+
+        private boolean dependsOn(ObjList<CharSequence> tableNames, LongList tableIds, LongList tableVersions) {
+            if (this.tableNames.size() != tableNames.size()) {
+                return false;
+            }
+
+            for (int i = 0, n = tableNames.size(); i < n; i++) {
+                if (this.tableVersions.getQuick(i) != tableVersions.getQuick(i)
+                        || this.tableIds.getQuick(i) != tableIds.getQuick(i)
+                        || !Chars.equals(this.tableNames.getQuick(i), tableNames.getQuick(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void invalidate() {
+            valid = false;
+            for (int i = 0, n = idle.size(); i < n; i++) {
+                Misc.free(idle.getQuick(i));
+            }
+            idle.clear();
+        }
+
+        private boolean isCurrent(CairoEngine engine) {
+            // idle pooled readers are checked without reload, busy reader pool does not make entry stale
+            for (int i = 0, n = tableNames.size(); i < n; i++) {
+                if (!engine.isTableCurrent(tableNames.getQuick(i), tableIds.getQuick(i), tableVersions.getQuick(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
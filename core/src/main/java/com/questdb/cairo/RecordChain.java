@@ -223,10 +223,26 @@ public class RecordChain implements Closeable, RecordCursor, Mutable, RecordSink
         putLong(value);
     }
 
+    /**
+     * Removes all records, unlike {@link #clear()} memory pages are kept for records that follow.
+     */
+    public void truncate() {
+        mem.jumpTo(0);
+        nextRecordOffset = -1L;
+        varAppendOffset = 0L;
+    }
+
     public void setSymbolTableResolver(RecordCursor resolver) {
         this.symbolTableResolver = resolver;
     }
 
+    /**
+     * @return number of bytes taken by records
+     */
+    public long size() {
+        return varAppendOffset;
+    }
+
     private static long rowToDataOffset(long row) {
         return row + 8;
     }
@@ -0,0 +1,349 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.*;
+import com.questdb.std.str.Path;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * File based counterpart of {@link RecordChain} for records that do not have to stay in memory. Records are
+ * appended to file in spill directory one after another. After {@link #toReadMode()} records can be read
+ * at offsets returned by {@link #put(Record)}, each read returns offset of the record that follows.
+ * File is removed when spill file is cleared or closed.
+ */
+public class RecordSpillFile implements Closeable, Mutable, RecordSinkSPI {
+    private static final Log LOG = LogFactory.getLog(RecordSpillFile.class);
+    private static final AtomicLong FILE_ID = new AtomicLong();
+    private final FilesFacade ff;
+    private final CharSequence spillRoot;
+    private final int mkDirMode;
+    private final int[] columnTypes;
+    // offsets of columns within record when all columns are of fixed size, null otherwise
+    private final long[] fixedOffsets;
+    private final long fixedSize;
+    private final RecordSink recordSink;
+    private final long pageSize;
+    private final AppendMemory appendMem = new AppendMemory();
+    private final ReadOnlyMemory readMem = new ReadOnlyMemory();
+    private final Path path = new Path();
+    private final SpillRecord record;
+    private RecordCursor symbolTableResolver;
+    private boolean open = false;
+    private boolean readMode = false;
+    private long size = 0;
+
+    public RecordSpillFile(CairoConfiguration configuration, @Transient ColumnTypes columnTypes, RecordSink recordSink, long pageSize) {
+        this.ff = configuration.getFilesFacade();
+        this.spillRoot = configuration.getSqlSpillRoot();
+        this.mkDirMode = configuration.getMkDirMode();
+        this.recordSink = recordSink;
+        this.pageSize = pageSize;
+
+        final int count = columnTypes.getColumnCount();
+        this.columnTypes = new int[count];
+        long[] fixedOffsets = new long[count];
+        long fixedSize = 0;
+        for (int i = 0; i < count; i++) {
+            int type = columnTypes.getColumnType(i);
+            this.columnTypes[i] = type;
+            if (type == ColumnType.STRING || type == ColumnType.BINARY) {
+                fixedOffsets = null;
+            } else if (fixedOffsets != null) {
+                fixedOffsets[i] = fixedSize;
+                fixedSize += ColumnType.sizeOf(type);
+            }
+        }
+        this.fixedOffsets = fixedOffsets;
+        this.fixedSize = fixedSize;
+        this.record = new SpillRecord();
+    }
+
+    @Override
+    public void clear() {
+        if (open) {
+            appendMem.close(false);
+            readMem.close();
+            if (!ff.remove(path)) {
+                LOG.error().$("cannot remove [file=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+            open = false;
+        }
+        readMode = false;
+        size = 0;
+    }
+
+    @Override
+    public void close() {
+        clear();
+        path.close();
+    }
+
+    public Record getRecord() {
+        return record;
+    }
+
+    public Record newRecord() {
+        return new SpillRecord();
+    }
+
+    /**
+     * Appends record to file. Spill file must not be in read mode.
+     *
+     * @param record record to copy
+     * @return offset of record in file
+     */
+    public long put(Record record) {
+        if (!open) {
+            openFile();
+        }
+        final long offset = appendMem.getAppendOffset();
+        recordSink.copy(record, this);
+        return offset;
+    }
+
+    @Override
+    public void putBin(BinarySequence value) {
+        appendMem.putBin(value);
+    }
+
+    @Override
+    public void putBool(boolean value) {
+        appendMem.putBool(value);
+    }
+
+    @Override
+    public void putByte(byte value) {
+        appendMem.putByte(value);
+    }
+
+    @Override
+    public void putDate(long value) {
+        appendMem.putLong(value);
+    }
+
+    @Override
+    public void putDouble(double value) {
+        appendMem.putDouble(value);
+    }
+
+    @Override
+    public void putFloat(float value) {
+        appendMem.putFloat(value);
+    }
+
+    @Override
+    public void putInt(int value) {
+        appendMem.putInt(value);
+    }
+
+    @Override
+    public void putLong(long value) {
+        appendMem.putLong(value);
+    }
+
+    @Override
+    public void putShort(short value) {
+        appendMem.putShort(value);
+    }
+
+    @Override
+    public void putStr(CharSequence value) {
+        appendMem.putStr(value);
+    }
+
+    @Override
+    public void putStr(CharSequence value, int lo, int hi) {
+        appendMem.putStr(value, lo, hi - lo);
+    }
+
+    @Override
+    public void putTimestamp(long value) {
+        appendMem.putLong(value);
+    }
+
+    /**
+     * Positions record at given offset. Spill file must be in read mode.
+     *
+     * @param record record instance returned by {@link #getRecord()} or {@link #newRecord()}
+     * @param offset offset of record in file
+     * @return offset of next record
+     */
+    public long recordAt(Record record, long offset) {
+        return ((SpillRecord) record).of(offset);
+    }
+
+    public void setSymbolTableResolver(RecordCursor resolver) {
+        this.symbolTableResolver = resolver;
+    }
+
+    /**
+     * @return number of bytes written to file
+     */
+    public long size() {
+        return readMode ? size : appendMem.getAppendOffset();
+    }
+
+    /**
+     * Finishes writing and maps file for reading. Records cannot be added after that until
+     * spill file is cleared.
+     */
+    public void toReadMode() {
+        if (open && !readMode) {
+            readMode = true;
+            size = appendMem.getAppendOffset();
+            appendMem.close(true);
+            if (size > 0) {
+                readMem.of(ff, path, pageSize, size);
+            }
+        }
+    }
+
+    private void openFile() {
+        path.of(spillRoot).put(Files.SEPARATOR).$();
+        if (!ff.exists(path) && ff.mkdirs(path, mkDirMode) != 0) {
+            throw CairoException.instance(ff.errno()).put("Cannot create spill directory: ").put(path);
+        }
+        path.of(spillRoot).concat("spill-").put(FILE_ID.incrementAndGet());
+        path.put(".d").$();
+        appendMem.of(ff, path, pageSize);
+        appendMem.jumpTo(0);
+        open = true;
+    }
+
+    private class SpillRecord implements Record {
+        private final long[] offsets;
+        private long offset;
+
+        private SpillRecord() {
+            this.offsets = fixedOffsets == null ? new long[columnTypes.length] : null;
+        }
+
+        @Override
+        public BinarySequence getBin(int col) {
+            return readMem.getBin(columnOffset(col));
+        }
+
+        @Override
+        public long getBinLen(int col) {
+            return readMem.getBinLen(columnOffset(col));
+        }
+
+        @Override
+        public boolean getBool(int col) {
+            return readMem.getBool(columnOffset(col));
+        }
+
+        @Override
+        public byte getByte(int col) {
+            return readMem.getByte(columnOffset(col));
+        }
+
+        @Override
+        public double getDouble(int col) {
+            return readMem.getDouble(columnOffset(col));
+        }
+
+        @Override
+        public float getFloat(int col) {
+            return readMem.getFloat(columnOffset(col));
+        }
+
+        @Override
+        public int getInt(int col) {
+            return readMem.getInt(columnOffset(col));
+        }
+
+        @Override
+        public long getLong(int col) {
+            return readMem.getLong(columnOffset(col));
+        }
+
+        @Override
+        public long getRowId() {
+            return offset;
+        }
+
+        @Override
+        public short getShort(int col) {
+            return readMem.getShort(columnOffset(col));
+        }
+
+        @Override
+        public CharSequence getStr(int col) {
+            return readMem.getStr(columnOffset(col));
+        }
+
+        @Override
+        public CharSequence getStrB(int col) {
+            return readMem.getStr2(columnOffset(col));
+        }
+
+        @Override
+        public int getStrLen(int col) {
+            return readMem.getStrLen(columnOffset(col));
+        }
+
+        @Override
+        public CharSequence getSym(int col) {
+            return symbolTableResolver.getSymbolTable(col).value(getInt(col));
+        }
+
+        private long columnOffset(int col) {
+            return offsets == null ? offset + Unsafe.arrayGet(fixedOffsets, col) : Unsafe.arrayGet(offsets, col);
+        }
+
+        private long of(long offset) {
+            this.offset = offset;
+            if (offsets == null) {
+                return offset + fixedSize;
+            }
+
+            // variable length columns make offsets of columns that follow them differ from record to record
+            long o = offset;
+            for (int i = 0, n = columnTypes.length; i < n; i++) {
+                Unsafe.arrayPut(offsets, i, o);
+                switch (Unsafe.arrayGet(columnTypes, i)) {
+                    case ColumnType.STRING:
+                        o += VirtualMemory.STRING_LENGTH_BYTES + Math.max(readMem.getInt(o), 0) * 2L;
+                        break;
+                    case ColumnType.BINARY:
+                        o += 8 + Math.max(readMem.getLong(o), 0);
+                        break;
+                    default:
+                        o += ColumnType.sizeOf(Unsafe.arrayGet(columnTypes, i));
+                        break;
+                }
+            }
+            return o;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.pool.ex.EntryUnavailableException;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.mp.SynchronizedJob;
+import com.questdb.std.*;
+import com.questdb.std.microtime.MicrosecondClock;
+import com.questdb.std.str.NativeLPSZ;
+import com.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Removes partitions that are older than retention period of their tables, see {@link TableWriter#setRetention(long)}.
+ * Tables are found by scanning root directory. Table whose writer is busy is skipped until next run, so
+ * ingestion is never held up waiting for this job.
+ */
+public class RetentionJob extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(RetentionJob.class);
+    private final Engine engine;
+    private final FilesFacade ff;
+    private final CharSequence root;
+    private final MicrosecondClock clock;
+    private final long checkInterval;
+    private final Path path = new Path();
+    private final NativeLPSZ nativeLPSZ = new NativeLPSZ();
+    private final ObjList<String> tableNames = new ObjList<>();
+    private long tempMem8b = Unsafe.malloc(8);
+    private long last = 0;
+
+    public RetentionJob(Engine engine) {
+        final CairoConfiguration configuration = engine.getConfiguration();
+        this.engine = engine;
+        this.ff = configuration.getFilesFacade();
+        this.root = configuration.getRoot();
+        this.clock = configuration.getMicrosecondClock();
+        this.checkInterval = configuration.getRetentionCheckInterval() * 1000;
+    }
+
+    @Override
+    public void close() {
+        if (tempMem8b != 0) {
+            Unsafe.free(tempMem8b, 8);
+            tempMem8b = 0;
+        }
+        Misc.free(path);
+    }
+
+    /**
+     * Removes expired partitions from all tables regardless of check interval.
+     *
+     * @return true if any partitions were removed
+     */
+    public boolean removeExpiredPartitions() {
+        findTablesWithRetention();
+        boolean useful = false;
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            useful |= removeExpiredPartitions(tableNames.getQuick(i));
+        }
+        return useful;
+    }
+
+    @Override
+    protected boolean runSerially() {
+        long t = clock.getTicks();
+        if (last + checkInterval < t) {
+            last = t;
+            return removeExpiredPartitions();
+        }
+        return false;
+    }
+
+    private void findTablesWithRetention() {
+        tableNames.clear();
+        path.of(root);
+        final int rootLen = path.length();
+        ff.iterateDir(path.$(), (name, type) -> {
+            if (type == Files.DT_DIR) {
+                nativeLPSZ.of(name);
+                if (!Files.isDots(nativeLPSZ) && TableUtils.readRetention(ff, path.trimTo(rootLen).concat(nativeLPSZ), tempMem8b) > 0) {
+                    tableNames.add(Chars.stringOf(nativeLPSZ));
+                }
+            }
+        });
+    }
+
+    private boolean removeExpiredPartitions(String tableName) {
+        try (TableWriter writer = engine.getWriter(tableName)) {
+            return writer.removeExpiredPartitions() > 0;
+        } catch (EntryUnavailableException e) {
+            // writer is busy, try again on next run
+            return false;
+        } catch (CairoException e) {
+            LOG.error().$("cannot remove expired partitions [table=").$(tableName).$("] {").$((Sinkable) e).$('}').$();
+            return false;
+        }
+    }
+}
@@ -23,6 +23,7 @@
 
 package com.questdb.cairo;
 
+import com.questdb.std.LongList;
 import com.questdb.std.Misc;
 import com.questdb.std.Unsafe;
 import com.questdb.std.str.Path;
@@ -45,6 +46,11 @@ class SymbolColumnIndexer implements ColumnIndexer, Closeable {
         Misc.free(mem);
     }
 
+    @Override
+    public void collectFds(LongList fds) {
+        writer.collectFds(fds);
+    }
+
     @Override
     public void distress() {
         distressed = true;
@@ -0,0 +1,174 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.SymbolTable;
+import com.questdb.std.Chars;
+import com.questdb.std.Mutable;
+import com.questdb.std.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Off-heap open addressing map of symbol value to symbol key. Map does not copy symbol values,
+ * each slot is a single long holding value hash in upper 32 bits and key + 1 in lower 32 bits.
+ * Values are compared in place against symbol map "char" memory, which makes both lookup and
+ * insert free of object allocation. Slot memory is allocated on first insert, so that unused
+ * dictionaries cost nothing.
+ */
+final class SymbolDictionary implements Closeable, Mutable {
+    private static final int INITIAL_CAPACITY = 1024;
+    private final VirtualMemory charMem;
+    private final VirtualMemory offsetMem;
+    private long address = 0;
+    private int mask;
+    private int free;
+    private int size;
+
+    SymbolDictionary(VirtualMemory charMem, VirtualMemory offsetMem) {
+        this.charMem = charMem;
+        this.offsetMem = offsetMem;
+    }
+
+    static int hash(CharSequence symbol) {
+        final int h = Chars.hashCode(symbol);
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public void clear() {
+        if (address != 0) {
+            Unsafe.getUnsafe().setMemory(address, capacity() * 8L, (byte) 0);
+            free = capacity() / 2;
+            size = 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.free(address, capacity() * 8L);
+            address = 0;
+            size = 0;
+        }
+    }
+
+    /**
+     * Finds key of symbol value.
+     *
+     * @param symbol value to look up, must not be null
+     * @param hash   value hash as returned by {@link #hash(CharSequence)}
+     * @return symbol key or {@link SymbolTable#VALUE_NOT_FOUND}
+     */
+    int get(CharSequence symbol, int hash) {
+        if (address == 0) {
+            return SymbolTable.VALUE_NOT_FOUND;
+        }
+
+        for (int i = hash & mask; ; i = (i + 1) & mask) {
+            final long slot = Unsafe.getUnsafe().getLong(address + i * 8L);
+            if (slot == 0) {
+                return SymbolTable.VALUE_NOT_FOUND;
+            }
+
+            if ((int) (slot >>> 32) == hash) {
+                final int key = (int) slot - 1;
+                if (valueEquals(symbol, key)) {
+                    return key;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds key to dictionary. Caller is responsible for checking that key is not already present.
+     *
+     * @param key  symbol key, value of which is already stored in symbol map memory
+     * @param hash hash of symbol value
+     */
+    void put(int key, int hash) {
+        if (address == 0) {
+            alloc(INITIAL_CAPACITY);
+        } else if (free == 0) {
+            rehash();
+        }
+        putSlot(((long) hash << 32) | (key + 1));
+        free--;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void alloc(int capacity) {
+        address = Unsafe.malloc(capacity * 8L);
+        Unsafe.getUnsafe().setMemory(address, capacity * 8L, (byte) 0);
+        mask = capacity - 1;
+        free = capacity / 2;
+    }
+
+    private int capacity() {
+        return mask + 1;
+    }
+
+    private void putSlot(long slot) {
+        int i = (int) (slot >>> 32) & mask;
+        while (Unsafe.getUnsafe().getLong(address + i * 8L) != 0) {
+            i = (i + 1) & mask;
+        }
+        Unsafe.getUnsafe().putLong(address + i * 8L, slot);
+    }
+
+    private void rehash() {
+        final long oldAddress = address;
+        final int oldCapacity = capacity();
+        alloc(oldCapacity * 2);
+        free -= size;
+        for (long p = oldAddress, hi = oldAddress + oldCapacity * 8L; p < hi; p += 8) {
+            final long slot = Unsafe.getUnsafe().getLong(p);
+            if (slot != 0) {
+                putSlot(slot);
+            }
+        }
+        Unsafe.free(oldAddress, oldCapacity * 8L);
+    }
+
+    private boolean valueEquals(CharSequence symbol, int key) {
+        long offset = offsetMem.getLong(SymbolMapWriter.keyToOffset(key));
+        final int len = charMem.getStrLen(offset);
+        if (len != symbol.length()) {
+            return false;
+        }
+
+        offset += VirtualMemory.STRING_LENGTH_BYTES;
+        for (int i = 0; i < len; i++) {
+            if (charMem.getChar(offset + i * 2L) != symbol.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -40,6 +40,7 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
     private final ReadOnlyMemory charMem = new ReadOnlyMemory();
     private final ReadOnlyMemory offsetMem = new ReadOnlyMemory();
     private final ObjList<String> cache = new ObjList<>();
+    private final SymbolDictionary dictionary = new SymbolDictionary(charMem, offsetMem);
     private int maxHash;
     private boolean cached;
     private int symbolCount;
@@ -54,6 +55,7 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
     public void close() {
         Misc.free(indexReader);
         Misc.free(charMem);
+        Misc.free(dictionary);
         this.cache.clear();
         long fd = this.offsetMem.getFd();
         Misc.free(offsetMem);
@@ -66,15 +68,12 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
             return SymbolTable.VALUE_IS_NULL;
         }
 
-        int hash = Hash.boundedHash(symbol, maxHash);
-        RowCursor cursor = indexReader.getCursor(true, hash, 0, maxOffset);
-        while (cursor.hasNext()) {
-            long offsetOffset = cursor.next();
-            if (Chars.equals(symbol, charMem.getStr(offsetMem.getLong(offsetOffset)))) {
-                return SymbolMapWriter.offsetToKey(offsetOffset);
-            }
+        if (cached) {
+            final int hash = SymbolDictionary.hash(symbol);
+            final int key = dictionary.get(symbol, hash);
+            return key == SymbolTable.VALUE_NOT_FOUND ? lookupAndCache(hash, symbol) : key;
         }
-        return SymbolTable.VALUE_NOT_FOUND;
+        return lookup(symbol);
     }
 
     @Override
@@ -165,6 +164,7 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
                 this.cache.setPos(symbolCapacity);
             }
             this.cache.clear();
+            this.dictionary.clear();
             LOG.info().$("open [name=").$(path.trimTo(plen).concat(name).$()).$(", fd=").$(this.offsetMem.getFd()).$(", capacity=").$(symbolCapacity).$(']').$();
         } catch (CairoException e) {
             close();
@@ -197,6 +197,26 @@ public class SymbolMapReaderImpl implements Closeable, SymbolMapReader {
         }
     }
 
+    private int lookup(CharSequence symbol) {
+        int hash = Hash.boundedHash(symbol, maxHash);
+        RowCursor cursor = indexReader.getCursor(true, hash, 0, maxOffset);
+        while (cursor.hasNext()) {
+            long offsetOffset = cursor.next();
+            if (Chars.equals(symbol, charMem.getStr(offsetMem.getLong(offsetOffset)))) {
+                return SymbolMapWriter.offsetToKey(offsetOffset);
+            }
+        }
+        return SymbolTable.VALUE_NOT_FOUND;
+    }
+
+    private int lookupAndCache(int hash, CharSequence symbol) {
+        final int key = lookup(symbol);
+        if (key != SymbolTable.VALUE_NOT_FOUND) {
+            dictionary.put(key, hash);
+        }
+        return key;
+    }
+
     private CharSequence uncachedValue(int key) {
         return charMem.getStr(offsetMem.getLong(SymbolMapWriter.keyToOffset(key)));
     }
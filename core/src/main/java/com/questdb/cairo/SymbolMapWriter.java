@@ -39,7 +39,7 @@ public class SymbolMapWriter implements Closeable {
     private final BitmapIndexWriter indexWriter;
     private final ReadWriteMemory charMem;
     private final ReadWriteMemory offsetMem;
-    private final CharSequenceIntHashMap cache;
+    private final SymbolDictionary dictionary;
     private final int maxHash;
 
     public SymbolMapWriter(CairoConfiguration configuration, Path path, CharSequence name, int symbolCount) {
@@ -85,11 +85,11 @@ public class SymbolMapWriter implements Closeable {
             this.maxHash = Numbers.ceilPow2(symbolCapacity / 2) - 1;
 
             if (useCache) {
-                this.cache = new CharSequenceIntHashMap(symbolCapacity);
+                this.dictionary = new SymbolDictionary(charMem, offsetMem);
             } else {
-                this.cache = null;
+                this.dictionary = null;
             }
-            LOG.info().$("open [name=").$(path.trimTo(plen).concat(name).$()).$(", fd=").$(this.offsetMem.getFd()).$(", cache=").$(cache != null).$(", capacity=").$(symbolCapacity).$(']').$();
+            LOG.info().$("open [name=").$(path.trimTo(plen).concat(name).$()).$(", fd=").$(this.offsetMem.getFd()).$(", cache=").$(dictionary != null).$(", capacity=").$(symbolCapacity).$(']').$();
         } catch (CairoException e) {
             close();
             throw e;
@@ -130,6 +130,7 @@ public class SymbolMapWriter implements Closeable {
 
     @Override
     public void close() {
+        Misc.free(dictionary);
         Misc.free(indexWriter);
         Misc.free(charMem);
         if (this.offsetMem != null) {
@@ -139,6 +140,12 @@ public class SymbolMapWriter implements Closeable {
         }
     }
 
+    public void collectFds(LongList fds) {
+        fds.add(offsetMem.getFd());
+        fds.add(charMem.getFd());
+        indexWriter.collectFds(fds);
+    }
+
     public int getSymbolCount() {
         return offsetToKey(offsetMem.getAppendOffset());
     }
@@ -149,19 +156,20 @@ public class SymbolMapWriter implements Closeable {
             return SymbolTable.VALUE_IS_NULL;
         }
 
-        if (cache != null) {
-            int index = cache.keyIndex(symbol);
-            return index < 0 ? cache.valueAt(index) : lookupPutAndCache(index, symbol);
+        if (dictionary != null) {
+            final int hash = SymbolDictionary.hash(symbol);
+            final int key = dictionary.get(symbol, hash);
+            return key == SymbolTable.VALUE_NOT_FOUND ? lookupPutAndCache(hash, symbol) : key;
         }
         return lookupAndPut(symbol);
     }
 
     public void rollback(int symbolCount) {
-        indexWriter.rollbackValues(keyToOffset(symbolCount));
+        indexWriter.rollbackValues(keyToOffset(symbolCount) - 1);
         offsetMem.jumpTo(keyToOffset(symbolCount));
         jumpCharMemToSymbolCount(symbolCount);
-        if (cache != null) {
-            cache.clear();
+        if (dictionary != null) {
+            dictionary.clear();
         }
     }
 
@@ -174,7 +182,7 @@ public class SymbolMapWriter implements Closeable {
     }
 
     boolean isCached() {
-        return cache != null;
+        return dictionary != null;
     }
 
     private void jumpCharMemToSymbolCount(int symbolCount) {
@@ -199,10 +207,9 @@ public class SymbolMapWriter implements Closeable {
         return put0(symbol, hash);
     }
 
-    private int lookupPutAndCache(int index, CharSequence symbol) {
-        int result;
-        result = lookupAndPut(symbol);
-        cache.putAt(index, symbol.toString(), result);
+    private int lookupPutAndCache(int hash, CharSequence symbol) {
+        final int result = lookupAndPut(symbol);
+        dictionary.put(result, hash);
         return result;
     }
 
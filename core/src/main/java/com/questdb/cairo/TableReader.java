@@ -42,6 +42,7 @@ public class TableReader implements Closeable {
     private static final PartitionPathGenerator MONTH_GEN = TableReader::pathGenMonth;
     private static final PartitionPathGenerator DAY_GEN = TableReader::pathGenDay;
     private static final PartitionPathGenerator DEFAULT_GEN = (reader, partitionIndex) -> reader.pathGenDefault();
+    private static final PartitionPathGenerator FIXED_WIDTH_GEN = TableReader::pathGenFixedWidth;
     private static final ReloadMethod NON_PARTITIONED_RELOAD_METHOD = TableReader::reloadNonPartitioned;
     private static final ReloadMethod FIRST_TIME_NON_PARTITIONED_RELOAD_METHOD = TableReader::reloadInitialNonPartitioned;
     private static final ReloadMethod FIRST_TIME_PARTITIONED_RELOAD_METHOD = TableReader::reloadInitialPartitioned;
@@ -65,6 +66,8 @@ public class TableReader implements Closeable {
     private final CairoConfiguration configuration;
     private final IntList symbolCountSnapshot = new IntList();
     private final LongHashSet removedPartitions = new LongHashSet();
+    // versions of partitions rewritten by out-of-order merge, version is suffix of directory name
+    private final LongIntHashMap partitionVersions = new LongIntHashMap();
     private LongList columnTops;
     private ObjList<ReadOnlyColumn> columns;
     private ObjList<BitmapIndexReader> bitmapIndexes;
@@ -132,7 +135,7 @@ public class TableReader implements Closeable {
                     partitionMin = findPartitionMinimum();
                     partitionCount = calculatePartitionCount();
                     break;
-                default:
+                case PartitionBy.NONE:
                     partitionPathGenerator = DEFAULT_GEN;
                     reloadMethod = FIRST_TIME_NON_PARTITIONED_RELOAD_METHOD;
                     timestampFloorMethod = null;
@@ -141,6 +144,22 @@ public class TableReader implements Closeable {
                     dateFormat = null;
                     countDefaultPartitions();
                     break;
+                default:
+                    // fixed width partitions, HOUR or multiple of minute
+                    final int partitionBy = this.metadata.getPartitionBy();
+                    final long width = PartitionBy.getWidth(partitionBy);
+                    if (width == 0) {
+                        throw CairoException.instance(0).put("Unsupported partition type [partitionBy=").put(partitionBy).put(']');
+                    }
+                    partitionPathGenerator = FIXED_WIDTH_GEN;
+                    reloadMethod = FIRST_TIME_PARTITIONED_RELOAD_METHOD;
+                    timestampFloorMethod = timestamp -> TableUtils.floorPartition(timestamp, partitionBy);
+                    intervalLengthMethod = (minTimestamp, maxTimestamp) -> (maxTimestamp - minTimestamp) / width;
+                    partitionTimestampCalculatorMethod = (minTimestamp, partitionIndex) -> minTimestamp + partitionIndex * width;
+                    dateFormat = TableWriter.selectPartitionDirFmt(partitionBy);
+                    partitionMin = findPartitionMinimum();
+                    partitionCount = calculatePartitionCount();
+                    break;
             }
 
             int capacity = getColumnBase(partitionCount);
@@ -260,6 +279,32 @@ public class TableReader implements Closeable {
         return txn;
     }
 
+    /**
+     * Reads structure version of last commit from transaction file, which reader keeps mapped. Unlike
+     * {@link #reload()} this does not change reader state, reader may see older version of table.
+     *
+     * @return structure version or -1 when stable version could not be read
+     */
+    public long getCommittedStructureVersion() {
+        for (int i = 0; i < TableUtils.STRUCTURE_VERSION_READ_ATTEMPTS; i++) {
+            final long check = txMem.getLong(TableUtils.TX_OFFSET_TXN_CHECK);
+            Unsafe.getUnsafe().loadFence();
+            final long version = txMem.getLong(TableUtils.TX_OFFSET_STRUCT_VERSION);
+            Unsafe.getUnsafe().loadFence();
+            if (txMem.getLong(TableUtils.TX_OFFSET_TXN) == check) {
+                return version;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return identity of table, it does not change with structure of table
+     */
+    public long getTableId() {
+        return metadata.getTableId();
+    }
+
     public long getVersion() {
         return this.structVersion;
     }
@@ -598,7 +643,10 @@ public class TableReader implements Closeable {
                         int type = ff.findType(p);
                         if (type == Files.DT_DIR || type == Files.DT_LNK) {
                             try {
-                                long time = dateFormat.parse(nativeLPSZ.of(ff.findName(p)), DateLocaleFactory.INSTANCE.getDefaultDateLocale());
+                                // name of partition rewritten by out-of-order merge ends with its version
+                                nativeLPSZ.of(ff.findName(p));
+                                final int dot = Chars.indexOf(nativeLPSZ, '.');
+                                long time = dateFormat.parse(nativeLPSZ, 0, dot == -1 ? nativeLPSZ.length() : dot, DateLocaleFactory.INSTANCE.getDefaultDateLocale());
                                 if (time < partitionMin && time <= maxTimestamp) {
                                     partitionMin = time;
                                 }
@@ -690,7 +738,13 @@ public class TableReader implements Closeable {
         }
     }
 
-    long openPartition(int partitionIndex) {
+    /**
+     * Maps columns of partition unless they are mapped already.
+     *
+     * @param partitionIndex index of partition
+     * @return number of rows in partition or -1 when partition does not exist
+     */
+    public long openPartition(int partitionIndex) {
         final long size = getPartitionRowCount(partitionIndex);
         if (size != -1) {
             return size;
@@ -762,37 +816,60 @@ public class TableReader implements Closeable {
     }
 
     private Path pathGenDay(int partitionIndex) {
+        final long timestamp = Dates.addDays(partitionMin, partitionIndex);
         TableUtils.fmtDay.format(
-                Dates.addDays(partitionMin, partitionIndex),
+                timestamp,
                 DateLocaleFactory.INSTANCE.getDefaultDateLocale(),
                 null,
                 path.put(Files.SEPARATOR)
         );
-        return path.$();
+        return pathGenVersion(timestamp);
     }
 
     private Path pathGenDefault() {
-        return path.concat(TableUtils.DEFAULT_PARTITION_NAME).$();
+        path.concat(TableUtils.DEFAULT_PARTITION_NAME);
+        return pathGenVersion(Long.MIN_VALUE);
+    }
+
+    private Path pathGenFixedWidth(int partitionIndex) {
+        final long timestamp = partitionTimestampCalculatorMethod.calculate(partitionMin, partitionIndex);
+        dateFormat.format(
+                timestamp,
+                DateLocaleFactory.INSTANCE.getDefaultDateLocale(),
+                null,
+                path.put(Files.SEPARATOR)
+        );
+        return pathGenVersion(timestamp);
     }
 
     private Path pathGenMonth(int partitionIndex) {
+        final long timestamp = Dates.addMonths(partitionMin, partitionIndex);
         TableUtils.fmtMonth.format(
-                Dates.addMonths(partitionMin, partitionIndex),
+                timestamp,
                 DateLocaleFactory.INSTANCE.getDefaultDateLocale(),
                 null,
                 path.put(Files.SEPARATOR)
         );
+        return pathGenVersion(timestamp);
+    }
+
+    private Path pathGenVersion(long partitionTimestamp) {
+        final int version = partitionVersions.get(partitionTimestamp);
+        if (version > 0) {
+            path.put('.').put(version);
+        }
         return path.$();
     }
 
     private Path pathGenYear(int partitionIndex) {
+        final long timestamp = Dates.addYear(partitionMin, partitionIndex);
         TableUtils.fmtYear.format(
-                Dates.addYear(partitionMin, partitionIndex),
+                timestamp,
                 DateLocaleFactory.INSTANCE.getDefaultDateLocale(),
                 null,
                 path.put(Files.SEPARATOR)
         );
-        return path.$();
+        return pathGenVersion(timestamp);
     }
 
     private boolean readTxn() {
@@ -842,6 +919,18 @@ public class TableReader implements Closeable {
                     }
                 }
 
+                txMem.grow(TableUtils.getPartitionVersionTableIndexOffset(symbolMapCount, partitionTableSize, 0));
+
+                this.partitionVersions.clear();
+                int partitionVersionCount = txMem.getInt(TableUtils.getPartitionVersionTableSizeOffset(symbolMapCount, partitionTableSize));
+                if (partitionVersionCount > 0) {
+                    txMem.grow(TableUtils.getPartitionVersionTableIndexOffset(symbolMapCount, partitionTableSize, partitionVersionCount));
+                    for (int i = 0; i < partitionVersionCount; i++) {
+                        final long offset = TableUtils.getPartitionVersionTableIndexOffset(symbolMapCount, partitionTableSize, i);
+                        this.partitionVersions.put(txMem.getLong(offset), (int) txMem.getLong(offset + 8));
+                    }
+                }
+
                 Unsafe.getUnsafe().loadFence();
                 // ok, we have snapshot, check if our snapshot is stable
                 if (txn == txMem.getLong(TableUtils.TX_OFFSET_TXN)) {
@@ -868,6 +957,58 @@ public class TableReader implements Closeable {
         }
     }
 
+    /**
+     * Copies zone map of partition column to sink. Zone map is not returned when it is missing or when
+     * table data has been rewritten after reader last reloaded, for zone map might not describe rows
+     * reader can see. Callers have to check that zone map covers all rows of partition.
+     *
+     * @param partitionIndex index of open partition
+     * @param columnIndex    index of column
+     * @param sink           receives zone map as longs, see {@link ZoneMapWriter} for layout
+     * @return true when sink has been populated
+     */
+    boolean readZoneMap(int partitionIndex, int columnIndex, LongList sink) {
+        sink.clear();
+        try {
+            final Path path = partitionPathGenerator.generate(this, partitionIndex);
+            final long fd = ff.openRO(TableUtils.zmFile(path.chopZ(), metadata.getColumnName(columnIndex)));
+            if (fd == -1) {
+                return false;
+            }
+
+            try {
+                final long len = ff.length(fd);
+                if (len < ZoneMapWriter.HEADER_SIZE) {
+                    return false;
+                }
+
+                final long address = ff.mmap(fd, len, 0, Files.MAP_RO);
+                if (address == -1) {
+                    LOG.error().$("cannot mmap zone map [fd=").$(fd).$(", errno=").$(ff.errno()).$(']').$();
+                    return false;
+                }
+
+                try {
+                    for (long p = address, lim = address + len - 7; p < lim; p += 8) {
+                        sink.add(Unsafe.getUnsafe().getLong(p));
+                    }
+                } finally {
+                    ff.munmap(address, len);
+                }
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(rootLen);
+        }
+
+        if (txMem.getLong(TableUtils.TX_OFFSET_DATA_VERSION) != dataVersion) {
+            sink.clear();
+            return false;
+        }
+        return true;
+    }
+
     private void reloadColumnAt(Path path, ObjList<ReadOnlyColumn> columns, LongList columnTops, ObjList<BitmapIndexReader> indexReaders, int columnBase, int columnIndex, long partitionRowCount) {
         int plen = path.length();
         try {
@@ -875,20 +1016,37 @@ public class TableReader implements Closeable {
             final int primaryIndex = getPrimaryColumnIndex(columnBase, columnIndex);
             final int secondaryIndex = primaryIndex + 1;
 
+            final int type = metadata.getColumnType(columnIndex);
+
             ReadOnlyColumn mem1 = columns.getQuick(primaryIndex);
             ReadOnlyColumn mem2 = columns.getQuick(secondaryIndex);
 
-            if (ff.exists(TableUtils.dFile(path.trimTo(plen), name))) {
+            // sealed partition has compressed column files, these are used only when regular file is absent,
+            // var size columns are never compressed and their files are read as they are
+            final boolean compressed = ColumnCompressor.isCompressible(type)
+                    && !ff.exists(TableUtils.dFile(path.trimTo(plen), name))
+                    && ff.exists(TableUtils.dzFile(path.trimTo(plen), name));
 
-                if (mem1 instanceof ReadOnlyMemory) {
+            if (compressed || ff.exists(TableUtils.dFile(path.trimTo(plen), name))) {
+
+                if (compressed) {
+                    TableUtils.dzFile(path.trimTo(plen), name);
+                    if (mem1 instanceof CompressedColumn) {
+                        ((CompressedColumn) mem1).of(ff, path, ff.getMapPageSize());
+                    } else {
+                        Misc.free(mem1);
+                        mem1 = new CompressedColumn(ff, path, ff.getMapPageSize());
+                        columns.setQuick(primaryIndex, mem1);
+                    }
+                } else if (mem1 instanceof ReadOnlyMemory) {
                     ((ReadOnlyMemory) mem1).of(ff, path, ff.getMapPageSize(), 0);
                 } else {
+                    Misc.free(mem1);
                     mem1 = new ReadOnlyMemory(ff, path, ff.getMapPageSize(), 0);
                     columns.setQuick(primaryIndex, mem1);
                 }
 
                 final long columnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), name, plen, tempMem8b);
-                final int type = metadata.getColumnType(columnIndex);
 
                 switch (type) {
                     case ColumnType.BINARY:
@@ -999,11 +1157,45 @@ public class TableReader implements Closeable {
         return true;
     }
 
+    /**
+     * Out-of-order commit moves merged partitions to directories of their new versions. Open partitions
+     * may be previous versions and must be released. They will be re-opened lazily.
+     */
+    private void reloadMergedPartitions() {
+        LOG.info().$("data version change detected").$();
+        for (int i = 0, n = partitionCount; i < n; i++) {
+            if (partitionRowCounts.getQuick(i) > -1) {
+                int base = getColumnBase(i);
+                for (int k = 0; k < columnCount; k++) {
+                    final int index = getPrimaryColumnIndex(base, k);
+                    Misc.free(columns.getAndSetQuick(index, null));
+                    Misc.free(columns.getAndSetQuick(index + 1, null));
+                    Misc.free(bitmapIndexes.getAndSetQuick(index, null));
+                    Misc.free(bitmapIndexes.getAndSetQuick(index + 1, null));
+                }
+                partitionRowCounts.setQuick(i, -1);
+            }
+        }
+        reloadSymbolMapCounts();
+        partitionMin = findPartitionMinimum();
+        partitionCount = calculatePartitionCount();
+        if (partitionCount > 0) {
+            updateCapacities();
+        }
+    }
+
     private boolean reloadNonPartitioned() {
+        final long dataVersion = this.dataVersion;
         // calling readTxn will set "rowCount" member variable
         if (readTxn()) {
             reloadStruct();
-            reloadPartition(0, rowCount);
+            if (dataVersion != this.dataVersion && rowCount > 0) {
+                // partition files have been replaced, re-open them
+                reloadSymbolMapCounts();
+                openPartition0(0);
+            } else {
+                reloadPartition(0, rowCount);
+            }
             return true;
         }
         return false;
@@ -1039,6 +1231,7 @@ public class TableReader implements Closeable {
     private boolean reloadPartitioned() {
         assert timestampFloorMethod != null;
         final long currentPartitionTimestamp = maxTimestamp == Numbers.LONG_NaN ? maxTimestamp : floorToPartitionTimestamp(maxTimestamp);
+        final long dataVersion = this.dataVersion;
         boolean b = readTxn();
         if (b) {
             reloadStruct();
@@ -1047,6 +1240,11 @@ public class TableReader implements Closeable {
                 return true;
             }
 
+            if (dataVersion != this.dataVersion) {
+                reloadMergedPartitions();
+                return true;
+            }
+
             assert intervalLengthMethod != null;
 
             //  calculate timestamp delta between before and after reload.
@@ -252,6 +252,10 @@ class TableReaderMetadata extends BaseRecordMetadata implements Closeable {
         return metaMem.getInt(TableUtils.META_OFFSET_PARTITION_BY);
     }
 
+    public long getTableId() {
+        return metaMem.getLong(TableUtils.META_OFFSET_TABLE_ID);
+    }
+
     private TableColumnMetadata moveMetadata(int index, TableColumnMetadata metadata) {
         return columnMetadata.getAndSetQuick(index, metadata);
     }
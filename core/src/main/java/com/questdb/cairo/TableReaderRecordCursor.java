@@ -80,6 +80,11 @@ public class TableReaderRecordCursor implements RecordCursor {
         recordAt(record, rowId);
     }
 
+    @Override
+    public long size() {
+        return reader.size();
+    }
+
     @Override
     public void toTop() {
         partitionIndex = 0;
@@ -23,16 +23,16 @@
 
 package com.questdb.cairo;
 
-import com.questdb.cairo.sql.CairoEngine;
-import com.questdb.cairo.sql.RecordCursor;
-import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.cairo.sql.*;
 import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.ObjList;
 
-public class TableReaderRecordCursorFactory extends AbstractRecordCursorFactory {
+public class TableReaderRecordCursorFactory extends AbstractRecordCursorFactory implements DataFrameScanSource {
     private final TableReaderRecordCursor cursor = new TableReaderRecordCursor();
     private final CairoEngine engine;
     private final String tableName;
     private final long tableVersion;
+    private FullFwdDataFrameCursorFactory dataFrameCursorFactory;
 
     public TableReaderRecordCursorFactory(RecordMetadata metadata, CairoEngine engine, String tableName, long tableVersion) {
         super(metadata);
@@ -47,6 +47,24 @@ public class TableReaderRecordCursorFactory extends AbstractRecordCursorFactory
         return cursor;
     }
 
+    @Override
+    public DataFrameCursorFactory getScanDataFrameCursorFactory() {
+        if (dataFrameCursorFactory == null) {
+            dataFrameCursorFactory = new FullFwdDataFrameCursorFactory(engine, tableName, tableVersion);
+        }
+        return dataFrameCursorFactory;
+    }
+
+    @Override
+    public ObjList<Function> getScanFilters() {
+        return null;
+    }
+
+    @Override
+    public VectorFilter getScanVectorFilter() {
+        return null;
+    }
+
     @Override
     public boolean isRandomAccessCursor() {
         return true;
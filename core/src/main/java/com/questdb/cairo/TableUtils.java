@@ -34,6 +34,8 @@ import com.questdb.std.microtime.Dates;
 import com.questdb.std.str.LPSZ;
 import com.questdb.std.str.Path;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 public final class TableUtils {
     public static final int TABLE_EXISTS = 0;
     public static final int TABLE_DOES_NOT_EXIST = 1;
@@ -50,8 +52,16 @@ public final class TableUtils {
     static final DateFormat fmtDay;
     static final DateFormat fmtMonth;
     static final DateFormat fmtYear;
+    static final DateFormat fmtHour;
+    static final DateFormat fmtMinute;
     static final String ARCHIVE_FILE_NAME = "_archive";
     static final String DEFAULT_PARTITION_NAME = "default";
+    // directory inside table that holds segments of WAL writers, see WalWriter
+    static final String WAL_DIR_NAME = "wal";
+    // log of transactions published by WAL writers of the table, see WalSequencer
+    static final String WAL_SEQ_FILE_NAME = "_seq";
+    // column names and types of WAL writer, stored in its directory
+    static final String WAL_META_FILE_NAME = "_meta";
     // transaction file structure
     static final long TX_OFFSET_TXN = 0;
     static final long TX_OFFSET_TRANSIENT_ROW_COUNT = 8;
@@ -73,6 +83,10 @@ public final class TableUtils {
      * long txn_check; // same as txn - sanity check for concurrent reads and writes
      * int  map_writer_count; // symbol writer count
      * int  map_writer_position[map_writer_count]; // position of each of map writers
+     * int  removed_partition_count;
+     * long removed_partition_timestamp[removed_partition_count];
+     * int  partition_version_count; // partitions rewritten by out-of-order merge
+     * long partition_version[partition_version_count][2]; // partition timestamp and suffix of its directory name
      * }
      * <p>
      * TableUtils.resetTxn() writes to this file, it could be using different offsets, beware
@@ -86,12 +100,17 @@ public final class TableUtils {
     // below this offset we will have INT values for symbol map size
     static final long META_OFFSET_PARTITION_BY = 4;
     static final long META_OFFSET_TIMESTAMP_INDEX = 8;
+    static final long META_OFFSET_RETENTION = 16;
+    // LONG - identity of table, it is kept by structure changes and differs for table that is dropped and created again
+    static final long META_OFFSET_TABLE_ID = 24;
+    static final int STRUCTURE_VERSION_READ_ATTEMPTS = 16;
     private static final int MIN_SYMBOL_CAPACITY = 2;
     private static final int MAX_SYMBOL_CAPACITY = Numbers.ceilPow2(Integer.MAX_VALUE);
     private static final int MAX_SYMBOL_CAPACITY_CACHED = Numbers.ceilPow2(1_000_000);
     private static final int MAX_INDEX_VALUE_BLOCK_SIZE = Numbers.ceilPow2(8 * 1024 * 1024);
     private static final long META_COLUMN_DATA_SIZE = 16;
     private final static Log LOG = LogFactory.getLog(TableUtils.class);
+    private static final AtomicLong lastTableId = new AtomicLong();
 
     public static void createTable(
             FilesFacade ff,
@@ -115,6 +134,10 @@ public final class TableUtils {
             mem.putInt(count);
             mem.putInt(structure.getPartitionBy());
             mem.putInt(structure.getTimestampIndex());
+            mem.jumpTo(TableUtils.META_OFFSET_RETENTION);
+            // new tables keep all their data
+            mem.putLong(0);
+            mem.putLong(nextTableId());
             mem.jumpTo(TableUtils.META_OFFSET_COLUMN_TYPES);
 
             for (int i = 0; i < count; i++) {
@@ -177,12 +200,20 @@ public final class TableUtils {
         return getSymbolWriterIndexOffset(symbolWriterCount);
     }
 
+    static long getPartitionVersionTableIndexOffset(int symbolWriterCount, int removedPartitionCount, int index) {
+        return getPartitionVersionTableSizeOffset(symbolWriterCount, removedPartitionCount) + 4 + index * 16L;
+    }
+
+    static long getPartitionVersionTableSizeOffset(int symbolWriterCount, int removedPartitionCount) {
+        return getPartitionTableIndexOffset(symbolWriterCount, removedPartitionCount);
+    }
+
     public static long getSymbolWriterIndexOffset(int index) {
         return TX_OFFSET_MAP_WRITER_COUNT + 4 + index * 4L;
     }
 
-    public static long getTxMemSize(int symbolWriterCount, int removedPartitionsCount) {
-        return getPartitionTableIndexOffset(symbolWriterCount, removedPartitionsCount);
+    public static long getTxMemSize(int symbolWriterCount, int removedPartitionsCount, int partitionVersionCount) {
+        return getPartitionVersionTableIndexOffset(symbolWriterCount, removedPartitionsCount, partitionVersionCount);
     }
 
     public static long lock(FilesFacade ff, Path path) {
@@ -232,10 +263,12 @@ public final class TableUtils {
 
         // partition update count
         txMem.putInt(getPartitionTableSizeOffset(symbolMapCount), 0);
+        // partition version count
+        txMem.putInt(getPartitionVersionTableSizeOffset(symbolMapCount, 0), 0);
 
         // make sure we put append pointer behind our data so that
         // files does not get truncated when closing
-        txMem.jumpTo(getPartitionTableIndexOffset(symbolMapCount, 0));
+        txMem.jumpTo(getPartitionVersionTableIndexOffset(symbolMapCount, 0, 0));
     }
 
     public static int toIndexKey(int symbolKey) {
@@ -353,6 +386,10 @@ public final class TableUtils {
         return path.concat(columnName).put(".d").$();
     }
 
+    static LPSZ dzFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(".dz").$();
+    }
+
     static LPSZ topFile(Path path, CharSequence columnName) {
         return path.concat(columnName).put(".top").$();
     }
@@ -361,6 +398,10 @@ public final class TableUtils {
         return path.concat(columnName).put(".i").$();
     }
 
+    static LPSZ zmFile(Path path, CharSequence columnName) {
+        return path.concat(columnName).put(".zm").$();
+    }
+
     static int getColumnType(ReadOnlyMemory metaMem, int columnIndex) {
         return metaMem.getByte(META_OFFSET_COLUMN_TYPES + columnIndex * META_COLUMN_DATA_SIZE);
     }
@@ -373,6 +414,18 @@ public final class TableUtils {
         return metaMem.getInt(META_OFFSET_COLUMN_TYPES + columnIndex * META_COLUMN_DATA_SIZE + 2);
     }
 
+    static long getDedupKeyFlagOffset(int columnIndex) {
+        return META_OFFSET_COLUMN_TYPES + columnIndex * META_COLUMN_DATA_SIZE + 6;
+    }
+
+    /**
+     * Columns flagged as deduplication key, together with designated timestamp, identify a row. Flag on
+     * designated timestamp column itself indicates that table deduplicates rows.
+     */
+    static boolean isColumnDedupKey(ReadOnlyMemory metaMem, int columnIndex) {
+        return metaMem.getBool(getDedupKeyFlagOffset(columnIndex));
+    }
+
     static int openMetaSwapFile(FilesFacade ff, AppendMemory mem, Path path, int rootLen, int retryCount) {
         try {
             path.concat(META_SWAP_FILE_NAME).$();
@@ -429,10 +482,100 @@ public final class TableUtils {
             case PartitionBy.YEAR:
                 return Dates.floorYYYY(timestampA) == Dates.floorYYYY(timestampB);
             default:
+                if (PartitionBy.isFixedWidth(partitionBy)) {
+                    return floorPartition(timestampA, partitionBy) == floorPartition(timestampB, partitionBy);
+                }
                 throw CairoException.instance(0).put("Cannot compare timestamps for unsupported partition type: [").put(partitionBy).put(']');
         }
     }
 
+    static long ceilPartition(long timestamp, int partitionBy) {
+        switch (partitionBy) {
+            case PartitionBy.DAY:
+                return Dates.ceilDD(timestamp);
+            case PartitionBy.MONTH:
+                return Dates.ceilMM(timestamp);
+            case PartitionBy.YEAR:
+                return Dates.ceilYYYY(timestamp);
+            default:
+                if (PartitionBy.isFixedWidth(partitionBy)) {
+                    return floorPartition(timestamp, partitionBy) + PartitionBy.getWidth(partitionBy);
+                }
+                return Long.MAX_VALUE;
+        }
+    }
+
+    static long floorPartition(long timestamp, int partitionBy) {
+        switch (partitionBy) {
+            case PartitionBy.DAY:
+                return Dates.floorDD(timestamp);
+            case PartitionBy.MONTH:
+                return Dates.floorMM(timestamp);
+            case PartitionBy.YEAR:
+                return Dates.floorYYYY(timestamp);
+            default:
+                if (PartitionBy.isFixedWidth(partitionBy)) {
+                    // fixed width partitions are aligned to epoch
+                    return timestamp - Math.floorMod(timestamp, PartitionBy.getWidth(partitionBy));
+                }
+                return Long.MIN_VALUE;
+        }
+    }
+
+    /**
+     * Reads retention period of table without mapping its metadata.
+     *
+     * @param path      path to table directory, it is restored before method returns
+     * @param tempMem8b 8 byte buffer
+     * @return retention in microseconds or 0 when table keeps all its data or metadata cannot be read
+     */
+    static long readRetention(FilesFacade ff, Path path, long tempMem8b) {
+        final int plen = path.length();
+        try {
+            long fd = ff.openRO(path.concat(META_FILE_NAME).$());
+            if (fd == -1) {
+                return 0;
+            }
+            try {
+                if (ff.read(fd, tempMem8b, 8, META_OFFSET_RETENTION) != 8) {
+                    return 0;
+                }
+                return Unsafe.getUnsafe().getLong(tempMem8b);
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * Reads identity of table from its metadata file.
+     *
+     * @param path      path to table directory, it is restored before method returns
+     * @param tempMem8b 8 byte buffer
+     * @return table id or -1 when metadata cannot be read
+     */
+    static long readTableId(FilesFacade ff, Path path, long tempMem8b) {
+        final int plen = path.length();
+        try {
+            long fd = ff.openRO(path.concat(META_FILE_NAME).$());
+            if (fd == -1) {
+                return -1;
+            }
+            try {
+                if (ff.read(fd, tempMem8b, 8, META_OFFSET_TABLE_ID) != 8) {
+                    return -1;
+                }
+                return Unsafe.getUnsafe().getLong(tempMem8b);
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
     static long readPartitionSize(FilesFacade ff, Path path, long tempMem8b) {
         int plen = path.length();
         try {
@@ -458,10 +601,67 @@ public final class TableUtils {
         }
     }
 
+    /**
+     * Reads structure version from transaction file of table without opening a reader. Fields are read
+     * in reverse order of writes, matching transaction numbers guarantee that version has been committed.
+     *
+     * @param path table directory, it is restored before method returns
+     * @return structure version or -1 when table does not exist or version could not be read
+     */
+    static long readStructureVersion(FilesFacade ff, Path path, long tempMem8b) {
+        final int plen = path.length();
+        final long fd = ff.openRO(path.concat(TXN_FILE_NAME).$());
+        path.trimTo(plen);
+        if (fd == -1) {
+            return -1;
+        }
+
+        try {
+            for (int i = 0; i < STRUCTURE_VERSION_READ_ATTEMPTS; i++) {
+                if (ff.read(fd, tempMem8b, 8, TX_OFFSET_TXN_CHECK) != 8) {
+                    return -1;
+                }
+                final long check = Unsafe.getUnsafe().getLong(tempMem8b);
+
+                if (ff.read(fd, tempMem8b, 8, TX_OFFSET_STRUCT_VERSION) != 8) {
+                    return -1;
+                }
+                final long version = Unsafe.getUnsafe().getLong(tempMem8b);
+
+                if (ff.read(fd, tempMem8b, 8, TX_OFFSET_TXN) != 8) {
+                    return -1;
+                }
+
+                if (Unsafe.getUnsafe().getLong(tempMem8b) == check) {
+                    return version;
+                }
+            }
+            return -1;
+        } finally {
+            ff.close(fd);
+        }
+    }
+
+    /**
+     * Table ids are derived from wall clock, so that they stay unique across restarts, and are
+     * bumped when tables are created faster than clock ticks.
+     */
+    private static long nextTableId() {
+        while (true) {
+            final long last = lastTableId.get();
+            final long id = Math.max(last + 1, Os.currentTimeMicros());
+            if (lastTableId.compareAndSet(last, id)) {
+                return id;
+            }
+        }
+    }
+
     static {
         DateFormatCompiler compiler = new DateFormatCompiler();
         fmtDay = compiler.compile("yyyy-MM-dd");
         fmtMonth = compiler.compile("yyyy-MM");
         fmtYear = compiler.compile("yyyy");
+        fmtHour = compiler.compile("yyyy-MM-ddTHH");
+        fmtMinute = compiler.compile("yyyy-MM-ddTHH-mm");
     }
 }
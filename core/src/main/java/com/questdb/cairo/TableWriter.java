@@ -53,6 +53,9 @@ public class TableWriter implements Closeable {
     };
     private final static RemoveFileLambda REMOVE_OR_LOG = TableWriter::removeFileAndOrLog;
     private final static RemoveFileLambda REMOVE_OR_EXCEPTION = TableWriter::removeOrException;
+    private static final int OOO_SORT_RUN_LENGTH = 32;
+    private static final long OOO_SEGMENT_PARTITION = 0;
+    private static final long OOO_SEGMENT_STAGED = 1;
     final ObjList<AppendMemory> columns;
     private final ObjList<SymbolMapWriter> symbolMapWriters;
     private final ObjList<SymbolMapWriter> denseSymbolMapWriters;
@@ -62,6 +65,13 @@ public class TableWriter implements Closeable {
     private final Path other;
     private final LongList refs = new LongList();
     private final Row row = new Row();
+    private final Block block = new Block();
+    private final BufferedRow bufferedRow = new BufferedRow();
+    // rows of newBufferedRow() in column file format, offsets of STRING and BINARY values are in separate vectors
+    private final ObjList<ColumnVector> bufferedColumns = new ObjList<>();
+    private final ObjList<ColumnVector> bufferedOffsets = new ObjList<>();
+    private final LongList bufferedRefs = new LongList();
+    private final int bufferedRowCapacity;
     private final int rootLen;
     private final ReadWriteMemory txMem;
     private final ReadOnlyMemory metaMem;
@@ -87,6 +97,33 @@ public class TableWriter implements Closeable {
     private final CairoWorkScheduler workScheduler;
     private final boolean parallelIndexerEnabled;
     private final LongHashSet removedPartitions = new LongHashSet();
+    // partitions rewritten by out-of-order merge as (timestamp, version) pairs, version is suffix of directory name
+    private final LongList partitionVersions = new LongList();
+    private final LongIntHashMap partitionVersionIndex = new LongIntHashMap();
+    private final LongList expiredPartitions = new LongList();
+    private final boolean outOfOrderEnabled;
+    private final int commitMode;
+    private final GroupCommit groupCommit;
+    private final LongList syncFds = new LongList();
+    private final ObjList<VirtualMemory> oooColumns;
+    private final ObjList<Runnable> oooNullers;
+    private final LongList oooMergeSegments = new LongList();
+    private final LongList oooMergedPartitions = new LongList();
+    private final ReadOnlyMemory oooSrcTimestampMem = new ReadOnlyMemory();
+    private final ReadOnlyMemory oooSrcMem1 = new ReadOnlyMemory();
+    private final ReadOnlyMemory oooSrcMem2 = new ReadOnlyMemory();
+    private final AppendMemory oooDstMem1 = new AppendMemory();
+    private final AppendMemory oooDstMem2 = new AppendMemory();
+    private final BitmapIndexWriter oooIndexWriter = new BitmapIndexWriter();
+    private final ZoneMapWriter zoneMapWriter;
+    private final OutOfOrderDedup oooDedup;
+    private final LongList oooDedupSegments = new LongList();
+    private final IntList dedupColumns = new IntList();
+    private DirectLongList oooTimestampIndex;
+    private ObjList<? extends VirtualMemory> rowColumns;
+    private ObjList<Runnable> rowNullers;
+    private long oooRowCount = 0;
+    private long oooTimestamp;
     private int txPartitionCount = 0;
     private long lockFd;
     private LongConsumer timestampSetter;
@@ -100,9 +137,16 @@ public class TableWriter implements Closeable {
     private long prevTimestamp;
     private long txPrevTransientRowCount;
     private long maxTimestamp;
+    private long retention;
+    private boolean dedup;
     private long partitionHi;
     private long transientRowCount = 0;
     private long masterRef = 0;
+    // group commit cycle that flushes files handed over by last ASYNC commit
+    private long asyncFlushCycle = 0;
+    private long bufferedRowCount = 0;
+    private long bufferedMaxTimestamp;
+    private boolean bufferedRowPending = false;
     private boolean removeDirOnCancelRow = true;
     private long tempMem8b = Unsafe.malloc(8);
     private int metaSwapIndex;
@@ -113,6 +157,7 @@ public class TableWriter implements Closeable {
     private final FragileCode RECOVER_FROM_COLUMN_OPEN_FAILURE = this::recoverOpenColumnFailure;
     private int indexCount;
     private boolean performRecovery;
+    private long zoneMapRowCount;
     private boolean distressed = false;
     private LifecycleManager lifecycleManager;
 
@@ -130,11 +175,17 @@ public class TableWriter implements Closeable {
         this.workScheduler = workScheduler;
         this.lifecycleManager = lifecycleManager;
         this.parallelIndexerEnabled = workScheduler != null && configuration.isParallelIndexingEnabled();
+        this.outOfOrderEnabled = configuration.isOutOfOrderEnabled();
+        this.commitMode = configuration.getCommitMode();
+        this.bufferedRowCapacity = configuration.getBufferedRowCount();
+        this.groupCommit = workScheduler != null ? workScheduler.getGroupCommit() : null;
         this.ff = configuration.getFilesFacade();
         this.mkDirMode = configuration.getMkDirMode();
         this.fileOperationRetryCount = configuration.getFileOperationRetryCount();
         this.path = new Path().of(configuration.getRoot()).concat(name);
         this.other = new Path().of(configuration.getRoot()).concat(name);
+        this.zoneMapWriter = new ZoneMapWriter(ff, configuration.getZoneMapBlockSize());
+        this.oooDedup = new OutOfOrderDedup(ff, tempMem8b);
         this.name = Chars.stringOf(name);
         this.rootLen = path.length();
         try {
@@ -170,6 +221,7 @@ public class TableWriter implements Closeable {
 
             this.columnCount = metadata.getColumnCount();
             this.partitionBy = metaMem.getInt(TableUtils.META_OFFSET_PARTITION_BY);
+            this.retention = metaMem.getLong(TableUtils.META_OFFSET_RETENTION);
             this.txPendingPartitionSizes = new VirtualMemory(ff.getPageSize());
             this.refs.extendAndSet(columnCount, 0);
             this.columns = new ObjList<>(columnCount * 2);
@@ -177,13 +229,22 @@ public class TableWriter implements Closeable {
             this.indexers = new ObjList<>(columnCount);
             this.denseSymbolMapWriters = new ObjList<>(metadata.getSymbolMapCount());
             this.nullers = new ObjList<>(columnCount);
+            this.oooColumns = new ObjList<>(columnCount * 2);
+            this.oooNullers = new ObjList<>(columnCount);
+            if (outOfOrderEnabled) {
+                this.oooTimestampIndex = new DirectLongList(configuration.getOutOfOrderPageSize() / 8);
+            }
+            this.rowColumns = columns;
+            this.rowNullers = nullers;
             this.columnTops = new LongList(columnCount);
             this.partitionDirFmt = selectPartitionDirFmt(partitionBy);
             configureColumnMemory();
             timestampSetter = configureTimestampSetter();
+            loadDedupKey();
+            // active partition directory depends on its version
+            loadPartitionTable();
             configureAppendPosition();
             purgeUnusedPartitions();
-            loadRemovedPartitions();
         } catch (CairoException e) {
             LOG.error().$("cannot open '").$(path).$("' and this is why: {").$((Sinkable) e).$('}').$();
             doClose(false);
@@ -199,8 +260,10 @@ public class TableWriter implements Closeable {
                 return TableUtils.fmtMonth;
             case PartitionBy.YEAR:
                 return TableUtils.fmtYear;
+            case PartitionBy.HOUR:
+                return TableUtils.fmtHour;
             default:
-                return null;
+                return PartitionBy.isFixedWidth(partitionBy) ? TableUtils.fmtMinute : null;
         }
     }
 
@@ -340,8 +403,29 @@ public class TableWriter implements Closeable {
      * <p>
      * <b>Pending rows</b>
      * <p>This method will cancel pending rows by calling {@link #cancelRow()}. Data in partially appended row will be lost.</p>
+     * <p>
+     * <b>Out-of-order rows</b>
+     * <p>Rows staged out of timestamp order are merged into their partitions after in-order rows are appended.
+     * Merge rewrites affected partitions, which are published in the same transaction as in-order rows, so that
+     * readers observe either all or none of the rows. When merge fails the whole transaction is rolled back.</p>
      */
     public void commit() {
+        commit(commitMode);
+    }
+
+    /**
+     * Commits newly added rows with given durability level. In {@link CommitMode#SYNC} mode data files are
+     * flushed before transaction file is updated and transaction file is flushed before method returns.
+     * In {@link CommitMode#ASYNC} mode all files are handed over to {@link GroupCommit}, when writer has one,
+     * and method returns without waiting. Without group commit both modes flush files in the calling thread.
+     * <p>
+     * Partitions writer moves away from before commit are flushed when they are closed if configured commit
+     * mode is other than {@link CommitMode#NOSYNC}. Otherwise they are flushed by commit in any mode other than
+     * {@link CommitMode#NOSYNC}, as are partitions rewritten by out-of-order merge.
+     *
+     * @param commitMode one of {@link CommitMode} constants
+     */
+    public void commit(int commitMode) {
 
         checkDistressed();
 
@@ -349,32 +433,145 @@ public class TableWriter implements Closeable {
             cancelRow();
         }
 
-        if (inTransaction()) {
+        flushBufferedRows();
+
+        final boolean merged = oooRowCount > 0;
+        final boolean committed = inAppendTransaction() || merged;
+
+        if (inAppendTransaction()) {
 
             updateIndexes();
+            // zone maps are extended once rows fill another block, small commits do not pay for them
+            if (transientRowCount >> zoneMapWriter.getBlockShift() > zoneMapRowCount >> zoneMapWriter.getBlockShift()) {
+                updateZoneMaps();
+            }
+
+            if (commitMode == CommitMode.SYNC) {
+                // data must reach storage ahead of transaction that refers to it
+                syncFds.clear();
+                collectDataFds(syncFds);
+                flush(syncFds);
+            }
+
+            if (oooRowCount > 0) {
+                // transaction is published after out-of-order merge
+                if (txPartitionCount > 1) {
+                    commitPendingPartitions(commitMode != CommitMode.NOSYNC);
+                    txPendingPartitionSizes.jumpTo(0);
+                    txPartitionCount = 1;
+                }
+            } else {
+                txMem.putLong(TableUtils.TX_OFFSET_TXN, ++txn);
+                Unsafe.getUnsafe().storeFence();
+
+                txMem.putLong(TableUtils.TX_OFFSET_TRANSIENT_ROW_COUNT, transientRowCount);
+
+                if (txPartitionCount > 1) {
+                    commitPendingPartitions(commitMode != CommitMode.NOSYNC);
+                    txMem.putLong(TableUtils.TX_OFFSET_FIXED_ROW_COUNT, fixedRowCount);
+                    txPendingPartitionSizes.jumpTo(0);
+                    txPartitionCount = 1;
+                }
 
-            txMem.putLong(TableUtils.TX_OFFSET_TXN, ++txn);
-            Unsafe.getUnsafe().storeFence();
+                txMem.putLong(TableUtils.TX_OFFSET_MAX_TIMESTAMP, maxTimestamp);
 
-            txMem.putLong(TableUtils.TX_OFFSET_TRANSIENT_ROW_COUNT, transientRowCount);
+                // store symbol counts
+                for (int i = 0, n = denseSymbolMapWriters.size(); i < n; i++) {
+                    txMem.putInt(TableUtils.getSymbolWriterIndexOffset(i), denseSymbolMapWriters.getQuick(i).getSymbolCount());
+                }
 
-            if (txPartitionCount > 1) {
-                commitPendingPartitions();
-                txMem.putLong(TableUtils.TX_OFFSET_FIXED_ROW_COUNT, fixedRowCount);
-                txPendingPartitionSizes.jumpTo(0);
-                txPartitionCount = 1;
+                Unsafe.getUnsafe().storeFence();
+                txMem.putLong(TX_OFFSET_TXN_CHECK, txn);
             }
+            txPrevTransientRowCount = transientRowCount;
+        }
 
-            txMem.putLong(TableUtils.TX_OFFSET_MAX_TIMESTAMP, maxTimestamp);
+        if (oooRowCount > 0) {
+            try {
+                mergeOutOfOrderRows(commitMode);
+            } catch (CairoException e) {
+                // in-order rows have not been published either
+                rollback0();
+                throw e;
+            }
+        }
 
-            // store symbol counts
-            for (int i = 0, n = denseSymbolMapWriters.size(); i < n; i++) {
-                txMem.putInt(TableUtils.getSymbolWriterIndexOffset(i), denseSymbolMapWriters.getQuick(i).getSymbolCount());
+        if (committed) {
+            switch (commitMode) {
+                case CommitMode.SYNC:
+                    if (merged) {
+                        // merge appends rows to active partition after data files have been flushed
+                        syncFds.clear();
+                        collectDataFds(syncFds);
+                        flush(syncFds);
+                    }
+                    syncFds.clear();
+                    syncFds.add(txMem.getFd());
+                    flush(syncFds);
+                    break;
+                case CommitMode.ASYNC:
+                    syncFds.clear();
+                    collectDataFds(syncFds);
+                    syncFds.add(txMem.getFd());
+                    flushAsync(syncFds);
+                    break;
+                default:
+                    break;
             }
+        }
+    }
 
-            Unsafe.getUnsafe().storeFence();
-            txMem.putLong(TX_OFFSET_TXN_CHECK, txn);
-            txPrevTransientRowCount = transientRowCount;
+    /**
+     * Seals partition by compressing its fixed size column files. Compressed files are read transparently by
+     * {@link TableReader}, which decompresses them on demand. STRING and BINARY columns are left uncompressed,
+     * their .d and .i files are read as they are. Readers that already have partition open continue
+     * using uncompressed files until they re-open partition. Active partition cannot be compressed.
+     * <p>
+     * Rows can still be merged into compressed partition out of order, compressed columns are restored prior to
+     * the merge.
+     *
+     * @param timestamp any timestamp within partition
+     * @return true when partition has been compressed, false when it cannot be compressed
+     */
+    public boolean compressPartition(long timestamp) {
+
+        checkDistressed();
+
+        if (partitionBy == PartitionBy.NONE) {
+            return false;
+        }
+
+        if (TableUtils.isSamePartition(timestamp, maxTimestamp, partitionBy)) {
+            LOG.error()
+                    .$("cannot compress active partition [path=").$(path)
+                    .$(", maxTimestamp=").$ts(maxTimestamp)
+                    .$(']').$();
+            return false;
+        }
+
+        try {
+            setStateForTimestamp(timestamp, false);
+            final int plen = path.length();
+            if (!ff.exists(path.$()) || removedPartitions.contains(TableUtils.floorPartition(timestamp, partitionBy))) {
+                LOG.error().$("partition does not exist [path=").$(path).$(']').$();
+                return false;
+            }
+
+            final long partitionSize = TableUtils.readPartitionSize(ff, path.chopZ(), tempMem8b);
+            for (int i = 0; i < columnCount; i++) {
+                final CharSequence columnName = metadata.getColumnName(i);
+                final int type = metadata.getColumnType(i);
+                if (ColumnCompressor.isCompressible(type) && ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))) {
+                    final long columnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), columnName, plen, tempMem8b);
+                    if (partitionSize > columnTop) {
+                        compressColumn(columnName, type, partitionSize - columnTop, plen);
+                    }
+                }
+            }
+            LOG.info().$("compressed partition '").$(path.trimTo(plen)).$('\'').$();
+            return true;
+        } finally {
+            path.trimTo(rootLen);
         }
     }
 
@@ -402,15 +599,91 @@ public class TableWriter implements Closeable {
         return partitionBy;
     }
 
+    /**
+     * @return retention period in microseconds, 0 when table keeps all its data
+     */
+    public long getRetention() {
+        return retention;
+    }
+
+    /**
+     * @return last committed transaction of the table
+     */
+    public long getTxn() {
+        return txn;
+    }
+
     public boolean inTransaction() {
-        return txPartitionCount > 1 || transientRowCount != txPrevTransientRowCount;
+        return inAppendTransaction() || oooRowCount > 0;
     }
 
     public boolean isOpen() {
         return tempMem8b != 0;
     }
 
+    /**
+     * Starts block of rows, which are appended column by column from off-heap vectors rather than row by row.
+     * Row that is pending at the time of the call is cancelled. See {@link Block} for vector formats.
+     *
+     * @return block instance, which is reused between calls
+     */
+    public Block newBlock() {
+        checkDistressed();
+        if ((masterRef & 1) != 0) {
+            cancelRow();
+        }
+        flushBufferedRows();
+        block.clear();
+        return block;
+    }
+
+    /**
+     * Starts row that is collected in column vectors and appended together with rows that follow it as
+     * {@link Block} once there are {@link CairoConfiguration#getBufferedRowCount()} of them, on commit or when
+     * ordinary row or block is started. Rows that cannot be appended as block, i.e. rows that are out of
+     * timestamp order or may be duplicates, are written as ordinary rows. Pending buffered row is cancelled.
+     *
+     * @param timestamp row timestamp, ignored when table has no designated timestamp
+     * @return row instance, which is reused between calls
+     */
+    public Row newBufferedRow(long timestamp) {
+        if (bufferedRowPending) {
+            cancelBufferedRow();
+        }
+
+        final int timestampIndex = metadata.getTimestampIndex();
+        if (timestampIndex != -1) {
+            final long lastTimestamp = bufferedRowCount > 0 ? bufferedMaxTimestamp : maxTimestamp;
+            if (timestamp < lastTimestamp || (dedup && timestamp == lastTimestamp)) {
+                newRow(timestamp);
+                bufferedRow.direct = true;
+                return bufferedRow;
+            }
+        }
+
+        checkDistressed();
+        if ((masterRef & 1) != 0) {
+            cancelRow();
+        }
+
+        if (bufferedRowCount == 0) {
+            openBufferedRows();
+        }
+
+        bufferedRow.direct = false;
+        bufferedRowPending = true;
+        if (timestampIndex != -1) {
+            bufferedColumns.getQuick(timestampIndex).putLong(timestamp);
+            bufferedRefs.setQuick(timestampIndex, bufferedRowCount);
+            bufferedMaxTimestamp = timestamp;
+        }
+        return bufferedRow;
+    }
+
     public Row newRow(long timestamp) {
+        if (bufferedRowCount > 0 || bufferedRowPending) {
+            flushBufferedRows();
+        }
         return rowFunction.newRow(timestamp);
     }
 
@@ -421,6 +694,8 @@ public class TableWriter implements Closeable {
         final int index = getColumnIndex(name);
         final int type = metadata.getColumnType(index);
 
+        awaitAsyncFlush();
+
         LOG.info().$("removing column '").utf8(name).$("' from ").$(path).$();
 
         // check if we are moving timestamp from a partitioned table
@@ -479,10 +754,70 @@ public class TableWriter implements Closeable {
         bumpStructureVersion();
 
         metadata.removeColumn(name);
+        loadDedupKey();
 
         LOG.info().$("REMOVED column '").utf8(name).$("' from ").$(path).$();
     }
 
+    /**
+     * Stops deduplication of rows, see {@link #setDedupKey(CharSequence...)}. Pending transaction is committed first.
+     */
+    public void removeDedupKey() {
+        checkDistressed();
+        commit();
+        dedupColumns.clear();
+        writeDedupKey(false);
+        dedup = false;
+        LOG.info().$("deduplication removed [name=").$(name).$(']').$();
+    }
+
+    /**
+     * Removes partitions that end more than retention period before maximum timestamp of the table.
+     * Each partition is removed by {@link #removePartition(long)} in its own transaction, readers
+     * that have expired partitions open keep reading them until they reload.
+     *
+     * @return number of removed partitions
+     */
+    public int removeExpiredPartitions() {
+        if (retention == 0 || partitionBy == PartitionBy.NONE || maxTimestamp == Long.MIN_VALUE) {
+            return 0;
+        }
+
+        final long limit = maxTimestamp - retention;
+        expiredPartitions.clear();
+        try {
+            ff.iterateDir(path.$(), (pName, type) -> {
+                if (type == Files.DT_DIR) {
+                    nativeLPSZ.of(pName);
+                    if (IGNORED_FILES.excludes(nativeLPSZ)) {
+                        try {
+                            long dirTimestamp = parsePartitionDirName(nativeLPSZ);
+                            if (TableUtils.ceilPartition(dirTimestamp, partitionBy) < limit && !removedPartitions.contains(dirTimestamp)) {
+                                expiredPartitions.add(dirTimestamp);
+                            }
+                        } catch (NumericException ignore) {
+                            // not a partition
+                        }
+                    }
+                }
+            });
+        } finally {
+            path.trimTo(rootLen);
+        }
+
+        int count = 0;
+        for (int i = 0, n = expiredPartitions.size(); i < n; i++) {
+            if (removePartition(expiredPartitions.getQuick(i))) {
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            LOG.info().$("removed expired partitions [name=").$(name).$(", count=").$(count).$(", limit=").$ts(limit).$(']').$();
+        }
+        return count;
+    }
+
     public boolean removePartition(long timestamp) {
 
         if (partitionBy == PartitionBy.NONE) {
@@ -499,7 +834,8 @@ public class TableWriter implements Closeable {
 
         try {
             setStateForTimestamp(timestamp, false);
-            if (ff.exists(path)) {
+            if (ff.exists(path.$())) {
+                path.chopZ();
 
                 int symbolWriterCount = denseSymbolMapWriters.size();
                 int partitionTableSize = txMem.getInt(getPartitionTableSizeOffset(symbolWriterCount));
@@ -525,6 +861,8 @@ public class TableWriter implements Closeable {
 
                 txMem.putLong(TX_OFFSET_PARTITION_TABLE_VERSION, partitionVersion);
                 txMem.putInt(getPartitionTableSizeOffset(symbolWriterCount), partitionTableSize + 1);
+                // versions of partitions follow removed partitions and have to move along
+                writePartitionVersions(symbolWriterCount, partitionTableSize + 1);
 
                 // decrement row count
                 txMem.putLong(TX_OFFSET_FIXED_ROW_COUNT, txMem.getLong(TX_OFFSET_FIXED_ROW_COUNT) - partitionSize);
@@ -553,21 +891,104 @@ public class TableWriter implements Closeable {
 
     public void rollback() {
         checkDistressed();
+        resetBufferedRows();
         if (inTransaction()) {
-            LOG.info().$("tx rollback [name=").$(name).$(']').$();
-            freeColumns(false);
-            txPendingPartitionSizes.jumpTo(0);
-            configureAppendPosition();
-            rollbackIndexes();
-            purgeUnusedPartitions();
-            LOG.info().$("tx rollback complete [name=").$(name).$(']').$();
+            rollback0();
+        }
+    }
+
+    /**
+     * Makes table replace rows instead of adding duplicates. Rows are duplicates when they have the same designated
+     * timestamp and equal values of all key columns. Row committed later replaces the earlier one, whether they are
+     * committed together or in different transactions. Rows that do not advance maximum timestamp of the table are
+     * merged as out-of-order rows, therefore out-of-order inserts must be enabled. Key is stored in table metadata
+     * and does not change structure version. Pending transaction is committed first.
+     *
+     * @param columnNames key columns in addition to designated timestamp, none to identify rows by timestamp alone
+     */
+    public void setDedupKey(CharSequence... columnNames) {
+        checkDistressed();
+        final int timestampIndex = metadata.getTimestampIndex();
+        if (timestampIndex == -1) {
+            throw CairoException.instance(0).put("Deduplication requires designated timestamp [name=").put(name).put(']');
+        }
+
+        if (!outOfOrderEnabled) {
+            throw CairoException.instance(0).put("Deduplication requires out-of-order inserts [name=").put(name).put(']');
+        }
+
+        for (CharSequence columnName : columnNames) {
+            final int index = metadata.getColumnIndexQuiet(columnName);
+            if (index == -1) {
+                throw CairoException.instance(0).put("Invalid column: ").put(columnName);
+            }
+
+            if (metadata.getColumnType(index) == ColumnType.BINARY) {
+                throw CairoException.instance(0).put("Deduplication key cannot include BINARY column: ").put(columnName);
+            }
+        }
+
+        commit();
+
+        // key columns are kept in order of column index
+        dedupColumns.clear();
+        for (int i = 0; i < columnCount; i++) {
+            if (i != timestampIndex) {
+                for (CharSequence columnName : columnNames) {
+                    if (metadata.getColumnIndexQuiet(columnName) == i) {
+                        dedupColumns.add(i);
+                        break;
+                    }
+                }
+            }
         }
+        writeDedupKey(true);
+        oooDedup.of(metadata, dedupColumns, oooColumns);
+        dedup = true;
+        LOG.info().$("deduplication set [name=").$(name).$(", keyColumns=").$(dedupColumns.size()).$(']').$();
     }
 
     public void setLifecycleManager(LifecycleManager lifecycleManager) {
         this.lifecycleManager = lifecycleManager;
     }
 
+    /**
+     * Sets how long table keeps its data. Retention is measured back from maximum timestamp of the table,
+     * partitions that end before that are removed by {@link #removeExpiredPartitions()}. Engine calls it
+     * periodically. Retention is stored in table metadata and does not change structure version.
+     *
+     * @param retention retention period in microseconds, 0 to keep all data
+     */
+    public void setRetention(long retention) {
+        checkDistressed();
+        if (retention < 0) {
+            throw CairoException.instance(0).put("Invalid retention: ").put(retention);
+        }
+
+        if (retention > 0 && partitionBy == PartitionBy.NONE) {
+            throw CairoException.instance(0).put("Retention is not supported for tables without partitions [name=").put(name).put(']');
+        }
+
+        try {
+            long fd = ff.openRW(path.concat(TableUtils.META_FILE_NAME).$());
+            if (fd == -1) {
+                throw CairoException.instance(ff.errno()).put("Cannot open: ").put(path);
+            }
+            try {
+                Unsafe.getUnsafe().putLong(tempMem8b, retention);
+                if (ff.write(fd, tempMem8b, 8, TableUtils.META_OFFSET_RETENTION) != 8) {
+                    throw CairoException.instance(ff.errno()).put("Cannot write: ").put(path);
+                }
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(rootLen);
+        }
+        this.retention = retention;
+        LOG.info().$("retention set [name=").$(name).$(", retention=").$(retention).$(']').$();
+    }
+
     public long size() {
         return fixedRowCount + transientRowCount;
     }
@@ -591,11 +1012,15 @@ public class TableWriter implements Closeable {
      */
     public final void truncate() {
 
+        resetBufferedRows();
+
         if (size() == 0) {
             return;
         }
 
+        awaitAsyncFlush();
         writeTodo(TableUtils.TODO_TRUNCATE);
+        resetOutOfOrderRows();
         for (int i = 0; i < columnCount; i++) {
             getPrimaryColumn(i).truncate();
             AppendMemory mem = getSecondaryColumn(i);
@@ -607,6 +1032,9 @@ public class TableWriter implements Closeable {
         if (partitionBy != PartitionBy.NONE) {
             freeColumns(false);
             removePartitionDirectories();
+            removedPartitions.clear();
+            partitionVersions.clear();
+            partitionVersionIndex.clear();
             rowFunction = openPartitionFunction;
         }
 
@@ -614,11 +1042,19 @@ public class TableWriter implements Closeable {
         maxTimestamp = Long.MIN_VALUE;
         txPrevTransientRowCount = 0;
         transientRowCount = 0;
+        if (partitionBy == PartitionBy.NONE) {
+            invalidateZoneMaps(maxTimestamp);
+        }
+        zoneMapRowCount = 0;
         fixedRowCount = 0;
         txn++;
         txPartitionCount = 1;
 
         TableUtils.resetTxn(txMem, metadata.getSymbolMapCount(), txn, ++dataVersion);
+        if (partitionVersions.size() > 0) {
+            // columns of non-partitioned table are truncated in directory of current version
+            writePartitionVersions(metadata.getSymbolMapCount(), 0);
+        }
         try {
             removeTodoFile();
         } catch (CairoException err) {
@@ -731,69 +1167,420 @@ public class TableWriter implements Closeable {
         }
     }
 
-    static void indexAndCountDown(ColumnIndexer indexer, long lo, long hi, SOCountDownLatch latch) {
-        try {
-            indexer.index(lo, hi);
-        } catch (CairoException e) {
-            indexer.distress();
-            LOG.error().$("index error [fd=").$(indexer.getFd()).$(']').$('{').$((Sinkable) e).$('}').$();
-        } finally {
-            latch.countDown();
-        }
+    static long getIndexTimestamp(long index, long position) {
+        return Unsafe.getUnsafe().getLong(index + position * 16);
     }
 
-    private int addColumnToMeta(CharSequence name, int type, boolean indexFlag, int indexValueBlockCapacity) {
-        int index;
-        try {
-            index = TableUtils.openMetaSwapFile(ff, ddlMem, path, rootLen, configuration.getMaxNumberOfSwapFiles());
-            int columnCount = metaMem.getInt(TableUtils.META_OFFSET_COUNT);
+    static long getIndexRow(long index, long position) {
+        return Unsafe.getUnsafe().getLong(index + position * 16 + 8);
+    }
 
-            ddlMem.putInt(columnCount + 1);
-            ddlMem.putInt(metaMem.getInt(TableUtils.META_OFFSET_PARTITION_BY));
-            ddlMem.putInt(metaMem.getInt(TableUtils.META_OFFSET_TIMESTAMP_INDEX));
-            ddlMem.jumpTo(TableUtils.META_OFFSET_COLUMN_TYPES);
-            for (int i = 0; i < columnCount; i++) {
-                ddlMem.putByte((byte) TableUtils.getColumnType(metaMem, i));
-                ddlMem.putBool(TableUtils.isColumnIndexed(metaMem, i));
-                ddlMem.putInt(TableUtils.getIndexBlockCapacity(metaMem, i));
-                ddlMem.skip(10);
+    private static void putIndexEntry(long index, long position, long timestamp, long row) {
+        Unsafe.getUnsafe().putLong(index + position * 16, timestamp);
+        Unsafe.getUnsafe().putLong(index + position * 16 + 8, row);
+    }
+
+    /**
+     * Sorts index of out-of-order rows by timestamp. Index is a list of (timestamp, row) pairs. Sort is stable, so
+     * that rows with equal timestamps are merged into partition in the order they were appended. Late rows tend to
+     * be almost sorted, which is why we check for sorted input first.
+     *
+     * @param index address of index
+     * @param count number of entries in index
+     */
+    static void sortOutOfOrderIndex(long index, long count) {
+        long prev = Long.MIN_VALUE;
+        long i = 0;
+        for (; i < count; i++) {
+            final long ts = getIndexTimestamp(index, i);
+            if (ts < prev) {
+                break;
             }
+            prev = ts;
+        }
 
-            // add new column metadata to bottom of list
-            ddlMem.putByte((byte) type);
-            ddlMem.putBool(indexFlag);
-            ddlMem.putInt(indexValueBlockCapacity);
-            ddlMem.skip(10);
+        if (i == count) {
+            return;
+        }
 
-            long nameOffset = TableUtils.getColumnNameOffset(columnCount);
-            for (int i = 0; i < columnCount; i++) {
-                CharSequence columnName = metaMem.getStr(nameOffset);
-                ddlMem.putStr(columnName);
-                nameOffset += VirtualMemory.getStorageLength(columnName);
+        final long size = count * 16;
+        final long tmp = Unsafe.malloc(size);
+        try {
+            // insertion sort short runs and merge them bottom-up, alternating between buffers
+            for (long lo = 0; lo < count; lo += OOO_SORT_RUN_LENGTH) {
+                insertionSortIndex(index, lo, Math.min(lo + OOO_SORT_RUN_LENGTH, count));
+            }
+
+            long src = index;
+            long dst = tmp;
+            for (long width = OOO_SORT_RUN_LENGTH; width < count; width *= 2) {
+                for (long lo = 0; lo < count; lo += 2 * width) {
+                    final long mid = Math.min(lo + width, count);
+                    mergeIndexRuns(src, dst, lo, mid, Math.min(lo + 2 * width, count));
+                }
+                final long t = src;
+                src = dst;
+                dst = t;
+            }
+
+            if (src != index) {
+                Unsafe.getUnsafe().copyMemory(src, index, size);
             }
-            ddlMem.putStr(name);
         } finally {
-            ddlMem.close();
+            Unsafe.free(tmp, size);
         }
-        return index;
     }
 
-    private void bumpMasterRef() {
-        if ((masterRef & 1) != 0) {
-            cancelRow();
+    private static void insertionSortIndex(long index, long lo, long hi) {
+        for (long i = lo + 1; i < hi; i++) {
+            final long ts = getIndexTimestamp(index, i);
+            final long row = getIndexRow(index, i);
+            long j = i - 1;
+            while (j >= lo && getIndexTimestamp(index, j) > ts) {
+                putIndexEntry(index, j + 1, getIndexTimestamp(index, j), getIndexRow(index, j));
+                j--;
+            }
+            putIndexEntry(index, j + 1, ts, row);
         }
-        masterRef++;
     }
 
-    private void bumpStructureVersion() {
-        txMem.putLong(TableUtils.TX_OFFSET_TXN, ++txn);
-        Unsafe.getUnsafe().storeFence();
+    private static void mergeIndexRuns(long src, long dst, long lo, long mid, long hi) {
+        long l = lo;
+        long r = mid;
+        long k = lo;
+        while (l < mid && r < hi) {
+            if (getIndexTimestamp(src, r) < getIndexTimestamp(src, l)) {
+                putIndexEntry(dst, k++, getIndexTimestamp(src, r), getIndexRow(src, r));
+                r++;
+            } else {
+                putIndexEntry(dst, k++, getIndexTimestamp(src, l), getIndexRow(src, l));
+                l++;
+            }
+        }
 
-        txMem.putLong(TableUtils.TX_OFFSET_STRUCT_VERSION, ++structVersion);
+        if (l < mid) {
+            Unsafe.getUnsafe().copyMemory(src + l * 16, dst + k * 16, (mid - l) * 16);
+        } else if (r < hi) {
+            Unsafe.getUnsafe().copyMemory(src + r * 16, dst + k * 16, (hi - r) * 16);
+        }
+    }
 
-        final int count = denseSymbolMapWriters.size();
-        final int oldCount = txMem.getInt(TableUtils.TX_OFFSET_MAP_WRITER_COUNT);
-        txMem.putInt(TableUtils.TX_OFFSET_MAP_WRITER_COUNT, count);
+    private static void putNull(int type, VirtualMemory mem1, VirtualMemory mem2) {
+        switch (type) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+                mem1.putByte((byte) 0);
+                break;
+            case ColumnType.DOUBLE:
+                mem1.putDouble(Double.NaN);
+                break;
+            case ColumnType.FLOAT:
+                mem1.putFloat(Float.NaN);
+                break;
+            case ColumnType.INT:
+                mem1.putInt(Numbers.INT_NaN);
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                mem1.putLong(Numbers.LONG_NaN);
+                break;
+            case ColumnType.SHORT:
+                mem1.putShort((short) 0);
+                break;
+            case ColumnType.STRING:
+                mem2.putLong(mem1.putNullStr());
+                break;
+            case ColumnType.SYMBOL:
+                mem1.putInt(SymbolTable.VALUE_IS_NULL);
+                break;
+            case ColumnType.BINARY:
+                mem2.putLong(mem1.putNullBin());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void appendPartitionVersion(Path path, int version) {
+        if (version > 0) {
+            path.put('.').put(version);
+        }
+    }
+
+    private static void copyBlock(VirtualMemory srcMem, long offset, long len, VirtualMemory dstMem) {
+        while (len > 0) {
+            final long n = Math.min(len, srcMem.pageRemaining(offset));
+            dstMem.putBlockOfBytes(srcMem.addressOf(offset), n);
+            offset += n;
+            len -= n;
+        }
+    }
+
+    private static void copyValue(int type, VirtualMemory srcMem1, VirtualMemory srcMem2, long row, VirtualMemory dstMem1, VirtualMemory dstMem2) {
+        switch (type) {
+            case ColumnType.STRING:
+                dstMem2.putLong(dstMem1.putStr(srcMem1.getStr(srcMem2.getLong(row * 8))));
+                break;
+            case ColumnType.BINARY:
+                dstMem2.putLong(dstMem1.putBin(srcMem1.getBin(srcMem2.getLong(row * 8))));
+                break;
+            default:
+                switch (ColumnType.pow2SizeOf(type)) {
+                    case 0:
+                        dstMem1.putByte(srcMem1.getByte(row));
+                        break;
+                    case 1:
+                        dstMem1.putShort(srcMem1.getShort(row * 2));
+                        break;
+                    case 2:
+                        dstMem1.putInt(srcMem1.getInt(row * 4));
+                        break;
+                    default:
+                        dstMem1.putLong(srcMem1.getLong(row * 8));
+                        break;
+                }
+                break;
+        }
+    }
+
+    /**
+     * @return number of bytes taken by first rowCount values of variable size column
+     */
+    private static long getVarColumnSize(int type, VirtualMemory mem1, VirtualMemory mem2, long rowCount) {
+        final long offset = mem2.getLong((rowCount - 1) * 8);
+        if (type == ColumnType.STRING) {
+            final int len = mem1.getInt(offset);
+            return len == TableUtils.NULL_LEN ? offset + 4 : offset + len * 2L + 4;
+        }
+        final long len = mem1.getLong(offset);
+        return len == TableUtils.NULL_LEN ? offset + 8 : offset + len + 8;
+    }
+
+    /**
+     * Binary search of block timestamps for first row that is at or above given timestamp.
+     */
+    private static long searchBlockTimestamp(long timestamps, long lo, long hi, long timestamp) {
+        long low = lo;
+        long high = hi - 1;
+        while (low <= high) {
+            final long mid = (low + high) >>> 1;
+            if (Unsafe.getUnsafe().getLong(timestamps + mid * 8) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    static void indexAndCountDown(ColumnIndexer indexer, long lo, long hi, SOCountDownLatch latch) {
+        try {
+            indexer.index(lo, hi);
+        } catch (CairoException e) {
+            indexer.distress();
+            LOG.error().$("index error [fd=").$(indexer.getFd()).$(']').$('{').$((Sinkable) e).$('}').$();
+        } finally {
+            latch.countDown();
+        }
+    }
+
+    private int addColumnToMeta(CharSequence name, int type, boolean indexFlag, int indexValueBlockCapacity) {
+        int index;
+        try {
+            index = TableUtils.openMetaSwapFile(ff, ddlMem, path, rootLen, configuration.getMaxNumberOfSwapFiles());
+            int columnCount = metaMem.getInt(TableUtils.META_OFFSET_COUNT);
+
+            ddlMem.putInt(columnCount + 1);
+            ddlMem.putInt(metaMem.getInt(TableUtils.META_OFFSET_PARTITION_BY));
+            ddlMem.putInt(metaMem.getInt(TableUtils.META_OFFSET_TIMESTAMP_INDEX));
+            ddlMem.jumpTo(TableUtils.META_OFFSET_RETENTION);
+            ddlMem.putLong(retention);
+            ddlMem.putLong(metaMem.getLong(TableUtils.META_OFFSET_TABLE_ID));
+            ddlMem.jumpTo(TableUtils.META_OFFSET_COLUMN_TYPES);
+            for (int i = 0; i < columnCount; i++) {
+                ddlMem.putByte((byte) TableUtils.getColumnType(metaMem, i));
+                ddlMem.putBool(TableUtils.isColumnIndexed(metaMem, i));
+                ddlMem.putInt(TableUtils.getIndexBlockCapacity(metaMem, i));
+                ddlMem.putBool(TableUtils.isColumnDedupKey(metaMem, i));
+                ddlMem.skip(9);
+            }
+
+            // add new column metadata to bottom of list
+            ddlMem.putByte((byte) type);
+            ddlMem.putBool(indexFlag);
+            ddlMem.putInt(indexValueBlockCapacity);
+            ddlMem.skip(10);
+
+            long nameOffset = TableUtils.getColumnNameOffset(columnCount);
+            for (int i = 0; i < columnCount; i++) {
+                CharSequence columnName = metaMem.getStr(nameOffset);
+                ddlMem.putStr(columnName);
+                nameOffset += VirtualMemory.getStorageLength(columnName);
+            }
+            ddlMem.putStr(name);
+        } finally {
+            ddlMem.close();
+        }
+        return index;
+    }
+
+    private void addMergeSegment(long source, long lo, long hi) {
+        oooMergeSegments.add(source);
+        oooMergeSegments.add(lo);
+        oooMergeSegments.add(hi);
+    }
+
+    private void appendBlock(long rowCount) {
+        if (rowCount < 1) {
+            return;
+        }
+
+        final int timestampIndex = metadata.getTimestampIndex();
+        final long timestamps;
+        final long timestampLo;
+        if (timestampIndex == -1) {
+            timestamps = 0;
+            timestampLo = 0;
+        } else {
+            timestamps = block.addresses.getQuick(timestampIndex);
+            if (timestamps == 0) {
+                throw CairoException.instance(0).put("Block must include timestamp column. Table=").put(path);
+            }
+            timestampLo = Unsafe.getUnsafe().getLong(timestamps);
+            long prev = timestampLo;
+            for (long i = 1; i < rowCount; i++) {
+                final long timestamp = Unsafe.getUnsafe().getLong(timestamps + i * 8);
+                if (timestamp < prev || (dedup && timestamp == prev)) {
+                    throw CairoException.instance(0).put("Block rows are out of order. Table=").put(path);
+                }
+                prev = timestamp;
+            }
+        }
+
+        // blocks bypass deduplication, their rows must not repeat timestamps
+        if (timestampLo < maxTimestamp || (dedup && timestampLo == maxTimestamp)) {
+            throw CairoException.instance(0).put("Cannot insert rows out of order. Table=").put(path);
+        }
+
+        if (rowFunction == openPartitionFunction) {
+            if (maxTimestamp == Long.MIN_VALUE) {
+                openFirstPartition(timestampLo);
+            }
+            rowFunction = switchPartitionFunction;
+        }
+
+        long lo = 0;
+        try {
+            while (lo < rowCount) {
+                final long hi;
+                if (timestamps == 0 || partitionBy == PartitionBy.NONE) {
+                    hi = rowCount;
+                } else {
+                    final long timestamp = Unsafe.getUnsafe().getLong(timestamps + lo * 8);
+                    if (timestamp >= partitionHi) {
+                        switchPartition(timestamp);
+                    }
+                    hi = searchBlockTimestamp(timestamps, lo, rowCount, partitionHi);
+                }
+
+                for (int i = 0; i < columnCount; i++) {
+                    appendBlockColumn(i, lo, hi, rowCount);
+                }
+
+                transientRowCount += hi - lo;
+                prevTimestamp = maxTimestamp;
+                maxTimestamp = timestamps == 0 ? timestampLo : Unsafe.getUnsafe().getLong(timestamps + (hi - 1) * 8);
+                lo = hi;
+            }
+        } catch (CairoException e) {
+            // columns can be written in part, which row counts do not reflect and rollback() would not undo
+            LOG.error().$("block append failed, rolling back [name=").$(name).$(", rowCount=").$(rowCount).$(']').$();
+            rollback0();
+            throw e;
+        }
+    }
+
+    private void appendBlockColumn(int columnIndex, long lo, long hi, long rowCount) {
+        final long address = block.addresses.getQuick(columnIndex);
+        final AppendMemory mem1 = getPrimaryColumn(columnIndex);
+        final AppendMemory mem2 = getSecondaryColumn(columnIndex);
+
+        if (address == 0) {
+            final Runnable nuller = nullers.getQuick(columnIndex);
+            for (long row = lo; row < hi; row++) {
+                nuller.run();
+            }
+        } else if (mem2 == null) {
+            final int shl = ColumnType.pow2SizeOf(metadata.getColumnType(columnIndex));
+            mem1.putBlockOfBytes(address + (lo << shl), (hi - lo) << shl);
+        } else {
+            // values are copied in bulk, offsets have to be rebased to position of values in column file
+            final long offsets = block.offsets.getQuick(columnIndex);
+            final long dataLo = Unsafe.getUnsafe().getLong(offsets + lo * 8);
+            final long dataHi = hi < rowCount ? Unsafe.getUnsafe().getLong(offsets + hi * 8) : block.sizes.getQuick(columnIndex);
+            final long base = mem1.getAppendOffset() - dataLo;
+            mem1.putBlockOfBytes(address + dataLo, dataHi - dataLo);
+            for (long row = lo; row < hi; row++) {
+                mem2.putLong(base + Unsafe.getUnsafe().getLong(offsets + row * 8));
+            }
+        }
+    }
+
+    /**
+     * Appends out-of-order rows that repeat maximum timestamp to active partition in place. Rows that
+     * {@link #planOutOfOrderTail(long, long)} found to be replaced by other out-of-order rows are skipped.
+     */
+    private void appendOutOfOrderTail(long indexLo, long indexHi) {
+        final long index = oooTimestampIndex.getAddress();
+        final LongList dropped = oooDedup.getDroppedPositions();
+        for (int i = 0; i < columnCount; i++) {
+            final int type = metadata.getColumnType(i);
+            final VirtualMemory oooMem1 = oooColumns.getQuick(getPrimaryColumnIndex(i));
+            final VirtualMemory oooMem2 = oooColumns.getQuick(getSecondaryColumnIndex(i));
+            final AppendMemory mem1 = getPrimaryColumn(i);
+            final AppendMemory mem2 = getSecondaryColumn(i);
+            int k = 0;
+            for (long p = indexLo; p < indexHi; p++) {
+                if (k < dropped.size() && dropped.getQuick(k) == p) {
+                    k++;
+                    continue;
+                }
+                copyValue(type, oooMem1, oooMem2, getIndexRow(index, p), mem1, mem2);
+            }
+        }
+
+        transientRowCount += indexHi - indexLo - dropped.size();
+        updateIndexes();
+        if (transientRowCount >> zoneMapWriter.getBlockShift() > zoneMapRowCount >> zoneMapWriter.getBlockShift()) {
+            updateZoneMaps();
+        }
+    }
+
+    private void awaitAsyncFlush() {
+        if (asyncFlushCycle != 0) {
+            final long cycle = asyncFlushCycle;
+            asyncFlushCycle = 0;
+            groupCommit.await(cycle);
+        }
+    }
+
+    private void bumpMasterRef() {
+        if ((masterRef & 1) != 0) {
+            cancelRow();
+        }
+        masterRef++;
+    }
+
+    private void bumpStructureVersion() {
+        txMem.putLong(TableUtils.TX_OFFSET_TXN, ++txn);
+        Unsafe.getUnsafe().storeFence();
+
+        txMem.putLong(TableUtils.TX_OFFSET_STRUCT_VERSION, ++structVersion);
+
+        final int count = denseSymbolMapWriters.size();
+        final int oldCount = txMem.getInt(TableUtils.TX_OFFSET_MAP_WRITER_COUNT);
+        txMem.putInt(TableUtils.TX_OFFSET_MAP_WRITER_COUNT, count);
         for (int i = 0; i < count; i++) {
             txMem.putInt(TableUtils.getSymbolWriterIndexOffset(i), denseSymbolMapWriters.getQuick(i).getSymbolCount());
         }
@@ -807,18 +1594,43 @@ public class TableWriter implements Closeable {
             for (int i = 0; i < n; i++) {
                 txMem.putLong(getPartitionTableIndexOffset(count, i), removedPartitions.get(i));
             }
+            writePartitionVersions(count, n);
         }
 
         Unsafe.getUnsafe().storeFence();
         txMem.putLong(TX_OFFSET_TXN_CHECK, txn);
     }
 
+    /**
+     * Truncates column vectors to values of rows that have been appended before pending buffered row.
+     */
+    private void cancelBufferedRow() {
+        for (int i = 0; i < columnCount; i++) {
+            if (bufferedRefs.getQuick(i) == bufferedRowCount) {
+                final ColumnVector offsets = bufferedOffsets.getQuiet(i);
+                if (offsets == null) {
+                    bufferedColumns.getQuick(i).jumpTo(bufferedRowCount << ColumnType.pow2SizeOf(metadata.getColumnType(i)));
+                } else {
+                    bufferedColumns.getQuick(i).jumpTo(offsets.getLong(bufferedRowCount * 8));
+                    offsets.jumpTo(bufferedRowCount * 8);
+                }
+                bufferedRefs.setQuick(i, -1);
+            }
+        }
+        bufferedRowPending = false;
+    }
+
     private void cancelRow() {
 
         if ((masterRef & 1) == 0) {
             return;
         }
 
+        if (rowColumns != columns) {
+            cancelOutOfOrderRow();
+            return;
+        }
+
         if (transientRowCount == 0) {
             if (partitionBy != PartitionBy.NONE) {
                 // we have to undo creation of partition
@@ -887,21 +1699,70 @@ public class TableWriter implements Closeable {
         refs.fill(0, columnCount, --masterRef);
     }
 
+    private void cancelOutOfOrderRow() {
+        // staged row may have been partially written, rewind every column to end of last complete row
+        for (int i = 0; i < columnCount; i++) {
+            final VirtualMemory mem1 = oooColumns.getQuick(getPrimaryColumnIndex(i));
+            final VirtualMemory mem2 = oooColumns.getQuick(getSecondaryColumnIndex(i));
+            final int type = metadata.getColumnType(i);
+            switch (type) {
+                case ColumnType.STRING:
+                case ColumnType.BINARY:
+                    assert mem2 != null;
+                    if (mem2.getAppendOffset() > oooRowCount * 8) {
+                        mem1.jumpTo(mem2.getLong(oooRowCount * 8));
+                        mem2.jumpTo(oooRowCount * 8);
+                    }
+                    break;
+                default:
+                    mem1.jumpTo(oooRowCount << ColumnType.pow2SizeOf(type));
+                    break;
+            }
+        }
+        rowColumns = columns;
+        rowNullers = nullers;
+        refs.fill(0, columnCount, --masterRef);
+    }
+
     private void checkDistressed() {
         if (distressed) {
             throw new CairoError("Table '" + name.toString() + "' is distressed");
         }
     }
 
-    private void commitPendingPartitions() {
+    private void collectDataFds(LongList fds) {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final AppendMemory mem = columns.getQuick(i);
+            if (mem != null && mem.getFd() != -1) {
+                fds.add(mem.getFd());
+            }
+        }
+        for (int i = 0; i < indexCount; i++) {
+            denseIndexers.getQuick(i).collectFds(fds);
+        }
+        for (int i = 0, n = denseSymbolMapWriters.size(); i < n; i++) {
+            denseSymbolMapWriters.getQuick(i).collectFds(fds);
+        }
+    }
+
+    private void commitPendingPartitions(boolean sync) {
         long offset = 0;
         for (int i = 0; i < txPartitionCount - 1; i++) {
             try {
                 long partitionTimestamp = txPendingPartitionSizes.getLong(offset + 8);
                 setStateForTimestamp(partitionTimestamp, false);
 
+                if (sync && this.commitMode == CommitMode.NOSYNC) {
+                    // partition files were closed by switchPartition() without being flushed
+                    syncPartitionFiles();
+                }
+
                 long fd = openAppend(path.concat(TableUtils.ARCHIVE_FILE_NAME).$());
                 try {
+                    // partition size could have been written by transaction that was rolled back
+                    if (!ff.truncate(fd, 0)) {
+                        throw CairoException.instance(ff.errno()).put("Cannot truncate ").put(path);
+                    }
                     int len = 8;
                     long o = offset;
                     while (len > 0) {
@@ -912,6 +1773,9 @@ public class TableWriter implements Closeable {
                         len -= l;
                         o += l;
                     }
+                    if (sync && ff.fsync(fd) != 0) {
+                        throw CairoException.instance(ff.errno()).put("Could not flush ").put(path);
+                    }
                 } finally {
                     ff.close(fd);
                 }
@@ -922,6 +1786,26 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void compressColumn(CharSequence columnName, int type, long rowCount, int plen) {
+        try {
+            try (
+                    ReadOnlyMemory src = new ReadOnlyMemory(
+                            ff,
+                            TableUtils.dFile(path.trimTo(plen), columnName),
+                            ff.getMapPageSize(),
+                            rowCount << ColumnType.pow2SizeOf(type)
+                    );
+                    AppendMemory dst = new AppendMemory(ff, TableUtils.dzFile(path.trimTo(plen), columnName), ff.getMapPageSize())
+            ) {
+                ColumnCompressor.compress(src, rowCount, type, dst);
+            }
+            // compressed file is complete, readers will pick it up once uncompressed file is gone
+            removeOrException(ff, TableUtils.dFile(path.trimTo(plen), columnName));
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
     private void configureAppendPosition() {
         this.txn = txMem.getLong(TableUtils.TX_OFFSET_TXN);
         this.transientRowCount = txMem.getLong(TableUtils.TX_OFFSET_TRANSIENT_ROW_COUNT);
@@ -957,7 +1841,14 @@ public class TableWriter implements Closeable {
         }
         columns.add(primary);
         columns.add(secondary);
-        configureNuller(type, primary, secondary);
+        configureNuller(type, primary, secondary, nullers);
+        if (outOfOrderEnabled) {
+            final VirtualMemory oooPrimary = new VirtualMemory(configuration.getOutOfOrderPageSize());
+            final VirtualMemory oooSecondary = secondary == null ? null : new VirtualMemory(configuration.getOutOfOrderPageSize());
+            oooColumns.add(oooPrimary);
+            oooColumns.add(oooSecondary);
+            configureNuller(type, oooPrimary, oooSecondary, oooNullers);
+        }
         if (indexFlag) {
             indexers.extendAndSet((columns.size() - 1) / 2, new SymbolColumnIndexer());
             populateDenseIndexerList();
@@ -989,7 +1880,7 @@ public class TableWriter implements Closeable {
         populateDenseIndexerList();
     }
 
-    private void configureNuller(int type, AppendMemory mem1, AppendMemory mem2) {
+    private static void configureNuller(int type, VirtualMemory mem1, VirtualMemory mem2, ObjList<Runnable> nullers) {
         switch (type) {
             case ColumnType.BOOLEAN:
             case ColumnType.BYTE:
@@ -1033,6 +1924,9 @@ public class TableWriter implements Closeable {
             };
         } else {
             nullers.setQuick(index, NOOP);
+            if (outOfOrderEnabled) {
+                oooNullers.setQuick(index, NOOP);
+            }
             return getPrimaryColumn(index)::putLong;
         }
     }
@@ -1082,7 +1976,14 @@ public class TableWriter implements Closeable {
 
     private void doClose(boolean truncate) {
         boolean tx = inTransaction();
+        try {
+            awaitAsyncFlush();
+        } catch (CairoException e) {
+            LOG.error().$("could not flush '").utf8(name).$("' {").$((Sinkable) e).$('}').$();
+        }
         freeColumns(truncate);
+        freeOutOfOrderMemory();
+        freeBufferedColumns();
         freeSymbolMapWriters();
         freeIndexers();
         try {
@@ -1092,6 +1993,7 @@ public class TableWriter implements Closeable {
             Misc.free(txPendingPartitionSizes);
             Misc.free(ddlMem);
             Misc.free(other);
+            Misc.free(zoneMapWriter);
             try {
                 releaseLock(!truncate | tx | performRecovery | distressed);
             } finally {
@@ -1102,7 +2004,97 @@ public class TableWriter implements Closeable {
         }
     }
 
+    /**
+     * Splits merge segments around rows that deduplication has dropped.
+     */
+    private void excludeDroppedMergeRows() {
+        final LongList droppedRows = oooDedup.getDroppedRows();
+        final LongList droppedPositions = oooDedup.getDroppedPositions();
+        int r = 0;
+        int p = 0;
+        oooDedupSegments.clear();
+        for (int i = 0, n = oooMergeSegments.size(); i < n; i += 3) {
+            final long source = oooMergeSegments.getQuick(i);
+            final long hi = oooMergeSegments.getQuick(i + 2);
+            final LongList dropped = source == OOO_SEGMENT_PARTITION ? droppedRows : droppedPositions;
+            int k = source == OOO_SEGMENT_PARTITION ? r : p;
+            long lo = oooMergeSegments.getQuick(i + 1);
+            while (k < dropped.size() && dropped.getQuick(k) < hi) {
+                final long row = dropped.getQuick(k++);
+                if (row > lo) {
+                    oooDedupSegments.add(source);
+                    oooDedupSegments.add(lo);
+                    oooDedupSegments.add(row);
+                }
+                lo = row + 1;
+            }
+
+            if (hi > lo) {
+                oooDedupSegments.add(source);
+                oooDedupSegments.add(lo);
+                oooDedupSegments.add(hi);
+            }
+
+            if (source == OOO_SEGMENT_PARTITION) {
+                r = k;
+            } else {
+                p = k;
+            }
+        }
+        oooMergeSegments.clear();
+        oooMergeSegments.add(oooDedupSegments);
+    }
+
+    private void flushBufferedRows() {
+        if (bufferedRowPending) {
+            cancelBufferedRow();
+        }
+
+        if (bufferedRowCount == 0) {
+            return;
+        }
+
+        final long rowCount = bufferedRowCount;
+        bufferedRowCount = 0;
+        final Block block = newBlock();
+        for (int i = 0; i < columnCount; i++) {
+            final ColumnVector data = bufferedColumns.getQuick(i);
+            final ColumnVector offsets = bufferedOffsets.getQuiet(i);
+            if (offsets == null) {
+                block.putColumn(i, data.getAddress());
+            } else {
+                block.putColumn(i, data.getAddress(), data.getAppendOffset(), offsets.getAddress());
+                offsets.jumpTo(0);
+            }
+            // vectors are not released, block is appended before they are written again
+            data.jumpTo(0);
+        }
+        block.append(rowCount);
+    }
+
+    private void flush(LongList fds) {
+        if (groupCommit != null) {
+            groupCommit.await(groupCommit.submit(fds));
+            return;
+        }
+        for (int i = 0, n = fds.size(); i < n; i++) {
+            if (ff.fsync(fds.getQuick(i)) != 0) {
+                throw CairoException.instance(ff.errno()).put("Could not flush [fd=").put(fds.getQuick(i)).put(']');
+            }
+        }
+    }
+
+    private void flushAsync(LongList fds) {
+        if (groupCommit != null) {
+            asyncFlushCycle = groupCommit.submit(fds);
+        } else {
+            flush(fds);
+        }
+    }
+
     private void freeColumns(boolean truncate) {
+        // column files can still be queued for group commit flush
+        awaitAsyncFlush();
         if (columns != null) {
             for (int i = 0, n = columns.size(); i < n; i++) {
                 AppendMemory m = columns.getQuick(i);
@@ -1113,6 +2105,31 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void freeBufferedColumns() {
+        for (int i = 0, n = bufferedColumns.size(); i < n; i++) {
+            Misc.free(bufferedColumns.getQuick(i));
+            Misc.free(bufferedOffsets.getQuiet(i));
+        }
+        bufferedColumns.clear();
+        bufferedOffsets.clear();
+    }
+
+    private void freeOutOfOrderMemory() {
+        if (oooColumns != null) {
+            for (int i = 0, n = oooColumns.size(); i < n; i++) {
+                Misc.free(oooColumns.getQuick(i));
+            }
+        }
+        oooTimestampIndex = Misc.free(oooTimestampIndex);
+        Misc.free(oooSrcTimestampMem);
+        Misc.free(oooSrcMem1);
+        Misc.free(oooSrcMem2);
+        Misc.free(oooDstMem1);
+        Misc.free(oooDstMem2);
+        Misc.free(oooIndexWriter);
+        Misc.free(oooDedup);
+    }
+
     private void freeIndexers() {
         if (indexers != null) {
             for (int i = 0, n = indexers.size(); i < n; i++) {
@@ -1163,9 +2180,24 @@ public class TableWriter implements Closeable {
         return columns.getQuick(getSecondaryColumnIndex(column));
     }
 
+    private int getPartitionVersion(long partitionTimestamp) {
+        final int index = partitionVersionIndex.get(partitionTimestamp);
+        return index == -1 ? 0 : (int) partitionVersions.getQuick(index + 1);
+    }
+
+    private VirtualMemory getRowPrimaryColumn(int column) {
+        assert column < columnCount : "Column index is out of bounds: " + column + " >= " + columnCount;
+        return rowColumns.getQuick(getPrimaryColumnIndex(column));
+    }
+
+    private VirtualMemory getRowSecondaryColumn(int column) {
+        assert column < columnCount : "Column index is out of bounds: " + column + " >= " + columnCount;
+        return rowColumns.getQuick(getSecondaryColumnIndex(column));
+    }
+
     private long getTxEofOffset() {
         if (metadata != null) {
-            return TableUtils.getTxMemSize(metadata.getSymbolMapCount(), removedPartitions.size());
+            return TableUtils.getTxMemSize(metadata.getSymbolMapCount(), removedPartitions.size(), partitionVersions.size() / 2);
         } else {
             return ff.length(txMem.getFd());
         }
@@ -1175,11 +2207,86 @@ public class TableWriter implements Closeable {
         return txPartitionCount;
     }
 
+    /**
+     * Creates index of column in directory of new partition version, rows below column top are not indexed.
+     */
+    private void indexOutOfOrderColumn(int columnIndex, long columnTop, long rowCount, int olen, boolean sync) {
+        final CharSequence columnName = metadata.getColumnName(columnIndex);
+        try {
+            // primary column memory is used to create index key file
+            oooDstMem1.of(ff, BitmapIndexUtils.keyFileName(other.trimTo(olen), columnName), ff.getPageSize());
+            BitmapIndexWriter.initKeyMemory(oooDstMem1, metadata.getIndexValueBlockCapacity(columnIndex));
+            oooDstMem1.close();
+            ff.touch(BitmapIndexUtils.valueFileName(other.trimTo(olen), columnName));
+
+            oooIndexWriter.of(configuration, other.trimTo(olen), columnName);
+            if (rowCount > columnTop) {
+                oooSrcMem1.of(ff, TableUtils.dFile(other.trimTo(olen), columnName), ff.getMapPageSize(), (rowCount - columnTop) * 4);
+                for (long row = columnTop; row < rowCount; row++) {
+                    oooIndexWriter.add(TableUtils.toIndexKey(oooSrcMem1.getInt((row - columnTop) * 4)), row);
+                }
+            }
+
+            if (sync) {
+                syncFds.clear();
+                oooIndexWriter.collectFds(syncFds);
+                flush(syncFds);
+            }
+        } finally {
+            other.trimTo(olen);
+            oooDstMem1.close();
+            oooSrcMem1.close();
+            oooIndexWriter.close();
+        }
+    }
+
+    private boolean inAppendTransaction() {
+        return txPartitionCount > 1 || transientRowCount != txPrevTransientRowCount;
+    }
+
+    /**
+     * Removes zone maps of partition that cover more rows than partition has. Such zone maps are left behind
+     * by rolled back or interrupted transactions.
+     */
+    private void invalidateZoneMaps(long timestamp) {
+        try {
+            setStateForTimestamp(timestamp, false);
+            final int plen = path.length();
+            for (int i = 0; i < columnCount; i++) {
+                if (ZoneMapWriter.isSupported(metadata.getColumnType(i))) {
+                    zoneMapWriter.invalidate(path.trimTo(plen), metadata.getColumnName(i), transientRowCount);
+                }
+            }
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
     boolean isSymbolMapWriterCached(int columnIndex) {
         return symbolMapWriters.getQuick(columnIndex).isCached();
     }
 
-    private void loadRemovedPartitions() {
+    private void loadDedupKey() {
+        dedupColumns.clear();
+        final int timestampIndex = metadata.getTimestampIndex();
+        dedup = timestampIndex != -1 && TableUtils.isColumnDedupKey(metaMem, timestampIndex);
+        if (dedup) {
+            for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
+                if (i != timestampIndex && TableUtils.isColumnDedupKey(metaMem, i)) {
+                    dedupColumns.add(i);
+                }
+            }
+
+            if (outOfOrderEnabled) {
+                oooDedup.of(metadata, dedupColumns, oooColumns);
+            } else {
+                LOG.error().$("deduplication is off, out-of-order inserts are disabled [name=").$(name).$(']').$();
+                dedup = false;
+            }
+        }
+    }
+
+    private void loadPartitionTable() {
         int symbolWriterCount = denseSymbolMapWriters.size();
         int partitionTableSize = txMem.getInt(getPartitionTableSizeOffset(symbolWriterCount));
         if (partitionTableSize > 0) {
@@ -1187,6 +2294,12 @@ public class TableWriter implements Closeable {
                 removedPartitions.add(txMem.getLong(getPartitionTableIndexOffset(symbolWriterCount, i)));
             }
         }
+
+        int partitionVersionCount = txMem.getInt(getPartitionVersionTableSizeOffset(symbolWriterCount, partitionTableSize));
+        for (int i = 0; i < partitionVersionCount; i++) {
+            final long offset = getPartitionVersionTableIndexOffset(symbolWriterCount, partitionTableSize, i);
+            setPartitionVersion(txMem.getLong(offset), (int) txMem.getLong(offset + 8));
+        }
     }
 
     private void lock() {
@@ -1204,6 +2317,302 @@ public class TableWriter implements Closeable {
         }
     }
 
+    /**
+     * Writes column of merged partition to directory of next version of the partition. Values of rows that
+     * precede first rewritten row are copied as they are, merged rows follow them. Column top, index and zone
+     * map are created for the new version, files of current version are only read.
+     */
+    private void mergeOutOfOrderColumn(int columnIndex, long srcRowCount, long rowLo, long rowCount, int plen, int olen, boolean sync) {
+        final CharSequence columnName = metadata.getColumnName(columnIndex);
+        final int type = metadata.getColumnType(columnIndex);
+        final VirtualMemory oooMem1 = oooColumns.getQuick(getPrimaryColumnIndex(columnIndex));
+        final VirtualMemory oooMem2 = oooColumns.getQuick(getSecondaryColumnIndex(columnIndex));
+        final long index = oooTimestampIndex.getAddress();
+
+        // partition rows below column top do not have data and are merged as nulls
+        long srcColumnTop = srcRowCount;
+        final long columnTop;
+        try {
+            if (srcRowCount > 0 && ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))) {
+                oooSrcMem1.of(ff, path, ff.getMapPageSize(), ff.length(path));
+                if (oooMem2 != null) {
+                    oooSrcMem2.of(ff, TableUtils.iFile(path.trimTo(plen), columnName), ff.getMapPageSize(), ff.length(path));
+                }
+                srcColumnTop = TableUtils.readColumnTop(ff, path.trimTo(plen), columnName, plen, tempMem8b);
+            }
+            // merged rows have data even when they are below column top of current version
+            columnTop = Math.min(srcColumnTop, rowLo);
+
+            oooDstMem1.of(ff, TableUtils.dFile(other.trimTo(olen), columnName), ff.getMapPageSize());
+            if (oooMem2 != null) {
+                oooDstMem2.of(ff, TableUtils.iFile(other.trimTo(olen), columnName), ff.getMapPageSize());
+            }
+
+            if (rowLo > columnTop) {
+                final long dataRowCount = rowLo - columnTop;
+                if (oooMem2 == null) {
+                    copyBlock(oooSrcMem1, 0, dataRowCount << ColumnType.pow2SizeOf(type), oooDstMem1);
+                } else {
+                    // copied values keep their offsets
+                    copyBlock(oooSrcMem1, 0, getVarColumnSize(type, oooSrcMem1, oooSrcMem2, dataRowCount), oooDstMem1);
+                    copyBlock(oooSrcMem2, 0, dataRowCount * 8, oooDstMem2);
+                }
+            }
+
+            for (int i = 0, n = oooMergeSegments.size(); i < n; i += 3) {
+                final long lo = oooMergeSegments.getQuick(i + 1);
+                final long hi = oooMergeSegments.getQuick(i + 2);
+                if (oooMergeSegments.getQuick(i) == OOO_SEGMENT_PARTITION) {
+                    final long dataLo = Math.min(Math.max(lo, srcColumnTop), hi);
+                    for (long row = lo; row < dataLo; row++) {
+                        putNull(type, oooDstMem1, oooDstMem2);
+                    }
+
+                    if (oooMem2 == null) {
+                        // fixed size values are copied page by page
+                        final int shl = ColumnType.pow2SizeOf(type);
+                        copyBlock(oooSrcMem1, (dataLo - srcColumnTop) << shl, (hi - dataLo) << shl, oooDstMem1);
+                    } else {
+                        for (long row = dataLo; row < hi; row++) {
+                            copyValue(type, oooSrcMem1, oooSrcMem2, row - srcColumnTop, oooDstMem1, oooDstMem2);
+                        }
+                    }
+                } else {
+                    for (long p = lo; p < hi; p++) {
+                        copyValue(type, oooMem1, oooMem2, getIndexRow(index, p), oooDstMem1, oooDstMem2);
+                    }
+                }
+            }
+
+            if (sync) {
+                syncFds.clear();
+                syncFds.add(oooDstMem1.getFd());
+                if (oooMem2 != null) {
+                    syncFds.add(oooDstMem2.getFd());
+                }
+                flush(syncFds);
+            }
+        } finally {
+            path.trimTo(plen);
+            other.trimTo(olen);
+            oooSrcMem1.close();
+            oooSrcMem2.close();
+            oooDstMem1.close();
+            oooDstMem2.close();
+        }
+
+        if (columnTop > 0) {
+            writeColumnTop(other, columnName, columnTop);
+        }
+
+        if (metadata.isColumnIndexed(columnIndex)) {
+            indexOutOfOrderColumn(columnIndex, columnTop, rowCount, olen, sync);
+        }
+
+        if (ZoneMapWriter.isSupported(type)) {
+            zoneMapWriter.update(other.trimTo(olen), columnName, type, columnTop, -1, rowCount);
+        }
+    }
+
+    /**
+     * Writes merged rows of partition between indexLo and indexHi positions of sorted timestamp index to
+     * directory of next version of the partition. Current version of partition is not modified, readers keep
+     * reading it until {@link #mergeOutOfOrderRows(int)} commits transaction that switches partition to the new
+     * version. Leftovers of merge that did not commit are removed when writer opens table.
+     * <p>
+     * Partition is added to {@link #oooMergedPartitions} as timestamp, first rewritten row, row count before
+     * and row count after the merge. Merged row count is less than sum of partition and out-of-order rows when
+     * some of them replace partition rows or each other.
+     *
+     * @param timestamp timestamp of first out-of-order row of the partition
+     * @param indexLo   position of first out-of-order row in sorted index, inclusive
+     * @param indexHi   position of last out-of-order row in sorted index, exclusive
+     * @param sync      true when files of new version have to be flushed
+     */
+    private void mergeOutOfOrderPartition(long timestamp, long indexLo, long indexHi, boolean sync) {
+        try {
+            setStateForTimestamp(timestamp, false);
+            final int plen = path.length();
+            final boolean active = TableUtils.isSamePartition(timestamp, maxTimestamp, partitionBy);
+            final long srcRowCount;
+            if (active) {
+                srcRowCount = transientRowCount;
+            } else if (ff.exists(path.$())) {
+                srcRowCount = TableUtils.readPartitionSize(ff, path.chopZ(), tempMem8b);
+            } else {
+                srcRowCount = 0;
+            }
+
+            if (srcRowCount > 0) {
+                uncompressPartition(plen);
+            }
+
+            setStateForTimestamp(other, timestamp, false);
+            appendPartitionVersion(other, getPartitionVersion(TableUtils.floorPartition(timestamp, partitionBy)) + 1);
+            final int olen = other.length();
+            if (ff.exists(other.$()) && !ff.rmdir(other)) {
+                throw CairoException.instance(ff.errno()).put("Cannot remove directory: ").put(other);
+            }
+
+            if (ff.mkdirs(other.trimTo(olen).put(Files.SEPARATOR).$(), mkDirMode) != 0) {
+                throw CairoException.instance(ff.errno()).put("Cannot create directory: ").put(other);
+            }
+
+            try {
+                final long rowLo = planOutOfOrderMerge(srcRowCount, plen, indexLo, indexHi);
+                long rowCount = rowLo;
+                for (int i = 0, n = oooMergeSegments.size(); i < n; i += 3) {
+                    rowCount += oooMergeSegments.getQuick(i + 2) - oooMergeSegments.getQuick(i + 1);
+                }
+
+                for (int i = 0; i < columnCount; i++) {
+                    mergeOutOfOrderColumn(i, srcRowCount, rowLo, rowCount, plen, olen, sync);
+                }
+
+                if (!active) {
+                    writePartitionSize(other.trimTo(olen), rowCount);
+                }
+
+                oooMergedPartitions.add(timestamp);
+                oooMergedPartitions.add(rowLo);
+                oooMergedPartitions.add(srcRowCount);
+                oooMergedPartitions.add(rowCount);
+                LOG.info().$("merged partition '").$(other.trimTo(olen)).$("' [rowLo=").$(rowLo).$(", rowCount=").$(rowCount).$(']').$();
+            } catch (CairoException e) {
+                if (!ff.rmdir(other.trimTo(olen).$())) {
+                    LOG.error().$("cannot remove '").$(other).$("' [errno=").$(ff.errno()).$(']').$();
+                }
+                throw e;
+            }
+        } finally {
+            path.trimTo(rootLen);
+            other.trimTo(rootLen);
+        }
+    }
+
+    private void mergeOutOfOrderRows(int commitMode) {
+        awaitAsyncFlush();
+        final long index = oooTimestampIndex.getAddress();
+        final long count = oooRowCount;
+        final boolean sync = commitMode != CommitMode.NOSYNC;
+
+        LOG.info().$("merging out-of-order rows [name=").$(name).$(", rowCount=").$(count).$(']').$();
+
+        sortOutOfOrderIndex(index, count);
+
+        // write new versions of affected partitions first, table is intact should any of it fail
+        oooMergedPartitions.clear();
+        long tailLo = count;
+        try {
+            long lo = 0;
+            while (lo < count) {
+                final long timestamp = getIndexTimestamp(index, lo);
+                long hi = lo + 1;
+                while (hi < count && TableUtils.isSamePartition(timestamp, getIndexTimestamp(index, hi), partitionBy)) {
+                    hi++;
+                }
+
+                // rows that only repeat maximum timestamp are last to merge, they are appended to
+                // active partition unless they replace some of its rows
+                if (dedup && timestamp == maxTimestamp && planOutOfOrderTail(lo, hi)) {
+                    tailLo = lo;
+                    break;
+                }
+
+                mergeOutOfOrderPartition(timestamp, lo, hi, sync);
+                lo = hi;
+            }
+        } catch (CairoException e) {
+            LOG.error().$("out-of-order merge failed [name=").$(name).$("] {").$((Sinkable) e).$('}').$();
+            for (int i = 0, n = oooMergedPartitions.size(); i < n; i += 4) {
+                final long timestamp = oooMergedPartitions.getQuick(i);
+                removePartitionVersion(timestamp, getPartitionVersion(TableUtils.floorPartition(timestamp, partitionBy)) + 1);
+            }
+            resetOutOfOrderRows();
+            throw e;
+        }
+
+        // switch writer to new versions, failure here leaves writer inconsistent
+        try {
+            for (int i = 0, n = oooMergedPartitions.size(); i < n; i += 4) {
+                final long timestamp = oooMergedPartitions.getQuick(i);
+                final long partitionTimestamp = TableUtils.floorPartition(timestamp, partitionBy);
+                final long rowCount = oooMergedPartitions.getQuick(i + 3);
+                setPartitionVersion(partitionTimestamp, getPartitionVersion(partitionTimestamp) + 1);
+                if (TableUtils.isSamePartition(timestamp, maxTimestamp, partitionBy)) {
+                    // active partition continues in its new version, files of current version are left as they are
+                    freeColumns(false);
+                    for (int k = 0, m = denseIndexers.size(); k < m; k++) {
+                        Misc.free(denseIndexers.getQuick(k));
+                    }
+                    transientRowCount = rowCount;
+                    openPartition(maxTimestamp);
+                    setAppendPosition(transientRowCount);
+                    zoneMapRowCount = transientRowCount;
+                } else {
+                    fixedRowCount += rowCount - oooMergedPartitions.getQuick(i + 2);
+                }
+            }
+
+            if (tailLo < count) {
+                appendOutOfOrderTail(tailLo, count);
+            }
+        } catch (CairoException e) {
+            throwDistressException(e);
+        }
+
+        txMem.putLong(TableUtils.TX_OFFSET_TXN, ++txn);
+        Unsafe.getUnsafe().storeFence();
+
+        txMem.putLong(TableUtils.TX_OFFSET_TRANSIENT_ROW_COUNT, transientRowCount);
+        txMem.putLong(TableUtils.TX_OFFSET_FIXED_ROW_COUNT, fixedRowCount);
+        // in-order rows of the same commit are published by this transaction
+        txMem.putLong(TableUtils.TX_OFFSET_MAX_TIMESTAMP, maxTimestamp);
+        if (oooMergedPartitions.size() > 0) {
+            // partitions have moved to new directories, readers have to reopen them
+            txMem.putLong(TableUtils.TX_OFFSET_DATA_VERSION, ++dataVersion);
+        }
+
+        for (int i = 0, n = denseSymbolMapWriters.size(); i < n; i++) {
+            txMem.putInt(TableUtils.getSymbolWriterIndexOffset(i), denseSymbolMapWriters.getQuick(i).getSymbolCount());
+        }
+
+        if (oooMergedPartitions.size() > 0) {
+            writePartitionVersions(denseSymbolMapWriters.size(), removedPartitions.size());
+        }
+
+        Unsafe.getUnsafe().storeFence();
+        txMem.putLong(TX_OFFSET_TXN_CHECK, txn);
+        txPrevTransientRowCount = transientRowCount;
+
+        // previous versions are not part of table anymore, readers that have them open keep reading them
+        for (int i = 0, n = oooMergedPartitions.size(); i < n; i += 4) {
+            final long timestamp = oooMergedPartitions.getQuick(i);
+            removePartitionVersion(timestamp, getPartitionVersion(TableUtils.floorPartition(timestamp, partitionBy)) - 1);
+        }
+
+        resetOutOfOrderRows();
+
+        LOG.info().$("merged out-of-order rows [name=").$(name).$(", partitions=").$(oooMergedPartitions.size() / 4).$(']').$();
+    }
+
+    private Row newOutOfOrderRow(long timestamp) {
+        final int timestampIndex = metadata.getTimestampIndex();
+        if (!outOfOrderEnabled || timestampIndex == -1) {
+            throw CairoException.instance(ff.errno()).put("Cannot insert rows out of order. Table=").put(path);
+        }
+
+        if (partitionBy != PartitionBy.NONE && removedPartitions.contains(TableUtils.floorPartition(timestamp, partitionBy))) {
+            throw CairoException.instance(0).put("Cannot insert rows into removed partition. Table=").put(path);
+        }
+
+        rowColumns = oooColumns;
+        rowNullers = oooNullers;
+        oooTimestamp = timestamp;
+        oooColumns.getQuick(getPrimaryColumnIndex(timestampIndex)).putLong(timestamp);
+        return row;
+    }
+
     private long openAppend(LPSZ name) {
         long fd = ff.openAppend(name);
         if (fd == -1) {
@@ -1225,12 +2634,37 @@ public class TableWriter implements Closeable {
         path.trimTo(plen);
     }
 
+    /**
+     * Prepares column vectors for first of buffered rows. Vectors are kept between blocks, columns may have
+     * changed type though, when they were removed and added again.
+     */
+    private void openBufferedRows() {
+        final long capacity = (long) bufferedRowCapacity * 8;
+        for (int i = 0; i < columnCount; i++) {
+            if (bufferedColumns.getQuiet(i) == null) {
+                bufferedColumns.extendAndSet(i, new ColumnVector(capacity));
+            }
+
+            final int type = metadata.getColumnType(i);
+            final boolean varSize = type == ColumnType.STRING || type == ColumnType.BINARY;
+            if (varSize && bufferedOffsets.getQuiet(i) == null) {
+                bufferedOffsets.extendAndSet(i, new ColumnVector(capacity));
+            } else if (!varSize && bufferedOffsets.getQuiet(i) != null) {
+                bufferedOffsets.setQuick(i, Misc.free(bufferedOffsets.getQuick(i)));
+            }
+        }
+        bufferedRefs.setPos(columnCount);
+        bufferedRefs.fill(0, columnCount, -1);
+    }
+
     private void openFirstPartition(long timestamp) {
         openPartition(timestamp);
         setAppendPosition(transientRowCount);
         if (performRecovery) {
             performRecovery();
         }
+        invalidateZoneMaps(timestamp);
+        zoneMapRowCount = 0;
         txPartitionCount = 1;
     }
 
@@ -1274,6 +2708,7 @@ public class TableWriter implements Closeable {
     }
 
     private void openPartition(long timestamp) {
+        awaitAsyncFlush();
         try {
             setStateForTimestamp(timestamp, true);
             int plen = path.length();
@@ -1323,12 +2758,120 @@ public class TableWriter implements Closeable {
         }
     }
 
+    /**
+     * Parses timestamp of partition from directory name. Name of partition that has been rewritten by out-of-order
+     * merge ends with version, directories of other versions are leftovers of merges and are not partitions.
+     *
+     * @param name of directory
+     * @return timestamp of partition or {@link Long#MIN_VALUE} for partition of non-partitioned table
+     * @throws NumericException when directory is not current version of partition
+     */
+    private long parsePartitionDirName(CharSequence name) throws NumericException {
+        final int len = name.length();
+        final int dot = Chars.indexOf(name, '.');
+        final int hi = dot == -1 ? len : dot;
+        final long timestamp;
+        if (partitionBy == PartitionBy.NONE) {
+            if (hi != TableUtils.DEFAULT_PARTITION_NAME.length() || !Chars.startsWith(name, TableUtils.DEFAULT_PARTITION_NAME)) {
+                throw NumericException.INSTANCE;
+            }
+            timestamp = Long.MIN_VALUE;
+        } else {
+            timestamp = partitionDirFmt.parse(name, 0, hi, DateLocaleFactory.INSTANCE.getDefaultDateLocale());
+        }
+
+        if ((dot == -1 ? 0 : Numbers.parseInt(name, dot + 1, len)) != getPartitionVersion(timestamp)) {
+            throw NumericException.INSTANCE;
+        }
+        return timestamp;
+    }
+
     private void performRecovery() {
         rollbackIndexes();
         rollbackSymbolTables();
         performRecovery = false;
     }
 
+    /**
+     * Splits merged rows of partition into segments of consecutive partition rows and consecutive out-of-order
+     * rows. Each segment is stored as (source, lo, hi) triplet. Partition rows come first when timestamps are
+     * equal. Segments start at first partition row that is not older than out-of-order rows, rows before it
+     * are not rewritten.
+     *
+     * @return first partition row to rewrite
+     */
+    private long planOutOfOrderMerge(long srcRowCount, int plen, long indexLo, long indexHi) {
+        final long index = oooTimestampIndex.getAddress();
+        oooMergeSegments.clear();
+        try {
+            long rowLo = 0;
+            if (srcRowCount > 0) {
+                oooSrcTimestampMem.of(
+                        ff,
+                        TableUtils.dFile(path.trimTo(plen), metadata.getColumnName(metadata.getTimestampIndex())),
+                        ff.getMapPageSize(),
+                        srcRowCount * 8
+                );
+                // rows with timestamp of first out-of-order row are rewritten, deduplication may drop them
+                rowLo = searchPartitionTimestamp(0, srcRowCount, getIndexTimestamp(index, indexLo) - 1);
+            }
+
+            long srcRow = rowLo;
+            long pos = indexLo;
+            while (pos < indexHi) {
+                // partition rows up to and including timestamp of next out-of-order row
+                final long srcHi = searchPartitionTimestamp(srcRow, srcRowCount, getIndexTimestamp(index, pos));
+                if (srcHi > srcRow) {
+                    addMergeSegment(OOO_SEGMENT_PARTITION, srcRow, srcHi);
+                    srcRow = srcHi;
+                }
+
+                long hi = indexHi;
+                if (srcRow < srcRowCount) {
+                    final long srcTimestamp = oooSrcTimestampMem.getLong(srcRow * 8);
+                    hi = pos + 1;
+                    while (hi < indexHi && getIndexTimestamp(index, hi) < srcTimestamp) {
+                        hi++;
+                    }
+                }
+                addMergeSegment(OOO_SEGMENT_STAGED, pos, hi);
+                pos = hi;
+            }
+
+            if (srcRow < srcRowCount) {
+                addMergeSegment(OOO_SEGMENT_PARTITION, srcRow, srcRowCount);
+            }
+
+            if (dedup && oooDedup.plan(path.trimTo(plen), srcRowCount, oooSrcTimestampMem, index, indexLo, indexHi) > 0) {
+                excludeDroppedMergeRows();
+            }
+            return rowLo;
+        } finally {
+            path.trimTo(plen);
+            oooSrcTimestampMem.close();
+        }
+    }
+
+    /**
+     * Finds duplicates among out-of-order rows that repeat maximum timestamp of table and rows of active partition
+     * with the same timestamp.
+     *
+     * @return true when out-of-order rows only duplicate each other and can be appended to active partition
+     */
+    private boolean planOutOfOrderTail(long indexLo, long indexHi) {
+        try {
+            setStateForTimestamp(maxTimestamp, false);
+            final int plen = path.length();
+            final CharSequence timestampName = metadata.getColumnName(metadata.getTimestampIndex());
+            oooSrcTimestampMem.of(ff, TableUtils.dFile(path.trimTo(plen), timestampName), ff.getMapPageSize(), transientRowCount * 8);
+            oooDedup.plan(path.trimTo(plen), transientRowCount, oooSrcTimestampMem, oooTimestampIndex.getAddress(), indexLo, indexHi);
+            return oooDedup.getDroppedRows().size() == 0;
+        } finally {
+            path.trimTo(rootLen);
+            oooSrcTimestampMem.close();
+        }
+    }
+
     private void populateDenseIndexerList() {
         denseIndexers.clear();
         for (int i = 0, n = indexers.size(); i < n; i++) {
@@ -1337,13 +2880,50 @@ public class TableWriter implements Closeable {
                 denseIndexers.add(indexer);
             }
         }
-        indexCount = denseIndexers.size();
+        indexCount = denseIndexers.size();
+    }
+
+    private void putBufferedNull(int columnIndex) {
+        final ColumnVector data = bufferedColumns.getQuick(columnIndex);
+        switch (metadata.getColumnType(columnIndex)) {
+            case ColumnType.BOOLEAN:
+            case ColumnType.BYTE:
+                data.putByte((byte) 0);
+                break;
+            case ColumnType.DOUBLE:
+                data.putDouble(Double.NaN);
+                break;
+            case ColumnType.FLOAT:
+                data.putFloat(Float.NaN);
+                break;
+            case ColumnType.INT:
+                data.putInt(Numbers.INT_NaN);
+                break;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                data.putLong(Numbers.LONG_NaN);
+                break;
+            case ColumnType.SHORT:
+                data.putShort((short) 0);
+                break;
+            case ColumnType.STRING:
+                bufferedOffsets.getQuick(columnIndex).putLong(data.putNullStr());
+                break;
+            case ColumnType.SYMBOL:
+                data.putInt(SymbolTable.VALUE_IS_NULL);
+                break;
+            case ColumnType.BINARY:
+                bufferedOffsets.getQuick(columnIndex).putLong(data.putNullBin());
+                break;
+            default:
+                break;
+        }
     }
 
     private void purgeUnusedPartitions() {
-        if (partitionBy != PartitionBy.NONE) {
-            removePartitionDirsNewerThan(maxTimestamp);
-        }
+        // partition of non-partitioned table is not newer than anything, only its stale versions are removed
+        removePartitionDirsNewerThan(maxTimestamp);
     }
 
     private long readTodoTaskCode() {
@@ -1418,6 +2998,13 @@ public class TableWriter implements Closeable {
         columns.remove(getPrimaryColumnIndex(columnIndex));
         columnTops.removeIndex(columnIndex);
         nullers.remove(columnIndex);
+        if (outOfOrderEnabled) {
+            Misc.free(oooColumns.getQuick(getPrimaryColumnIndex(columnIndex)));
+            Misc.free(oooColumns.getQuick(getSecondaryColumnIndex(columnIndex)));
+            oooColumns.remove(getSecondaryColumnIndex(columnIndex));
+            oooColumns.remove(getPrimaryColumnIndex(columnIndex));
+            oooNullers.remove(columnIndex);
+        }
         if (columnIndex < indexers.size()) {
             Misc.free(indexers.getQuick(columnIndex));
             indexers.remove(columnIndex);
@@ -1434,8 +3021,10 @@ public class TableWriter implements Closeable {
                     path.concat(nativeLPSZ);
                     int plen = path.length();
                     removeLambda.remove(ff, TableUtils.dFile(path, columnName));
+                    removeLambda.remove(ff, TableUtils.dzFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, TableUtils.iFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, TableUtils.topFile(path.trimTo(plen), columnName));
+                    removeLambda.remove(ff, TableUtils.zmFile(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, BitmapIndexUtils.keyFileName(path.trimTo(plen), columnName));
                     removeLambda.remove(ff, BitmapIndexUtils.valueFileName(path.trimTo(plen), columnName));
                 }
@@ -1466,6 +3055,9 @@ public class TableWriter implements Closeable {
             } else {
                 ddlMem.putInt(timestampIndex);
             }
+            ddlMem.jumpTo(TableUtils.META_OFFSET_RETENTION);
+            ddlMem.putLong(retention);
+            ddlMem.putLong(metaMem.getLong(TableUtils.META_OFFSET_TABLE_ID));
             ddlMem.jumpTo(TableUtils.META_OFFSET_COLUMN_TYPES);
 
             for (int i = 0; i < columnCount; i++) {
@@ -1473,7 +3065,8 @@ public class TableWriter implements Closeable {
                     ddlMem.putByte((byte) TableUtils.getColumnType(metaMem, i));
                     ddlMem.putBool(TableUtils.isColumnIndexed(metaMem, i));
                     ddlMem.putInt(TableUtils.getIndexBlockCapacity(metaMem, i));
-                    ddlMem.skip(10);
+                    ddlMem.putBool(TableUtils.isColumnDedupKey(metaMem, i));
+                    ddlMem.skip(9);
                 }
             }
 
@@ -1535,7 +3128,7 @@ public class TableWriter implements Closeable {
                 if (IGNORED_FILES.excludes(nativeLPSZ)) {
                     if (type == Files.DT_DIR) {
                         try {
-                            long dirTimestamp = partitionDirFmt.parse(nativeLPSZ, DateLocaleFactory.INSTANCE.getDefaultDateLocale());
+                            long dirTimestamp = parsePartitionDirName(nativeLPSZ);
                             if (dirTimestamp <= timestamp) {
                                 return;
                             }
@@ -1556,6 +3149,18 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void removePartitionVersion(long timestamp, int version) {
+        try {
+            setStateForTimestamp(other, timestamp, false);
+            appendPartitionVersion(other, version);
+            if (ff.exists(other.$()) && !ff.rmdir(other)) {
+                LOG.info().$("partition directory delete is postponed [path=").$(other).$(']').$();
+            }
+        } finally {
+            other.trimTo(rootLen);
+        }
+    }
+
     private void removeSymbolMapFilesQuiet(CharSequence name) {
         try {
             removeFileAndOrLog(ff, SymbolMapWriter.offsetFileName(path.trimTo(rootLen), name));
@@ -1679,6 +3284,35 @@ public class TableWriter implements Closeable {
         removeTodoFile();
     }
 
+    private void resetBufferedRows() {
+        if (bufferedRowPending) {
+            cancelBufferedRow();
+        }
+        if (bufferedRowCount > 0) {
+            for (int i = 0; i < columnCount; i++) {
+                bufferedColumns.getQuick(i).jumpTo(0);
+                final ColumnVector offsets = bufferedOffsets.getQuiet(i);
+                if (offsets != null) {
+                    offsets.jumpTo(0);
+                }
+            }
+            bufferedRowCount = 0;
+        }
+    }
+
+    private void resetOutOfOrderRows() {
+        if (oooRowCount > 0) {
+            for (int i = 0, n = oooColumns.size(); i < n; i++) {
+                VirtualMemory mem = oooColumns.getQuick(i);
+                if (mem != null) {
+                    mem.jumpTo(0);
+                }
+            }
+            oooTimestampIndex.setPos(0);
+            oooRowCount = 0;
+        }
+    }
+
     private void restoreMetaFrom(CharSequence fromBase, int fromIndex) {
         try {
             path.concat(fromBase);
@@ -1696,6 +3330,17 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void rollback0() {
+        LOG.info().$("tx rollback [name=").$(name).$(']').$();
+        resetOutOfOrderRows();
+        freeColumns(false);
+        txPendingPartitionSizes.jumpTo(0);
+        configureAppendPosition();
+        rollbackIndexes();
+        purgeUnusedPartitions();
+        LOG.info().$("tx rollback complete [name=").$(name).$(']').$();
+    }
+
     private void rollbackIndexes() {
         final long maxRow = transientRowCount - 1;
         for (int i = 0, n = denseIndexers.size(); i < n; i++) {
@@ -1722,6 +3367,23 @@ public class TableWriter implements Closeable {
         throw e;
     }
 
+    /**
+     * Binary search of partition timestamp column for first row with timestamp greater than given value.
+     */
+    private long searchPartitionTimestamp(long lo, long hi, long timestamp) {
+        long low = lo;
+        long high = hi - 1;
+        while (low <= high) {
+            final long mid = (low + high) >>> 1;
+            if (oooSrcTimestampMem.getLong(mid * 8) <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
     private void setAppendPosition(final long position) {
         for (int i = 0; i < columnCount; i++) {
             // stop calculating oversize as soon as we find first over-sized column
@@ -1733,8 +3395,9 @@ public class TableWriter implements Closeable {
      * Sets path member variable to partition directory for the given timestamp and
      * partitionLo and partitionHi to partition interval in millis. These values are
      * determined based on input timestamp and value of partitionBy. For any given
-     * timestamp this method will determine either day, month or year interval timestamp falls to.
-     * Partition directory name is ISO string of interval start.
+     * timestamp this method will determine either day, month, year or fixed width interval timestamp falls to.
+     * Partition directory name is ISO string of interval start followed by version of partition once
+     * out-of-order merge has rewritten it.
      * <p>
      * Because this method modifies "path" member variable, be sure path is trimmed to original
      * state withing try..finally block.
@@ -1743,7 +3406,23 @@ public class TableWriter implements Closeable {
      * @param updatePartitionInterval flag indicating that partition interval partitionLo and
      *                                partitionHi have to be updated as well.
      */
+    private void setPartitionVersion(long partitionTimestamp, int version) {
+        final int index = partitionVersionIndex.get(partitionTimestamp);
+        if (index == -1) {
+            partitionVersionIndex.put(partitionTimestamp, partitionVersions.size());
+            partitionVersions.add(partitionTimestamp);
+            partitionVersions.add(version);
+        } else {
+            partitionVersions.setQuick(index + 1, version);
+        }
+    }
+
     private void setStateForTimestamp(long timestamp, boolean updatePartitionInterval) {
+        setStateForTimestamp(path, timestamp, updatePartitionInterval);
+        appendPartitionVersion(path, getPartitionVersion(TableUtils.floorPartition(timestamp, partitionBy)));
+    }
+
+    private void setStateForTimestamp(Path path, long timestamp, boolean updatePartitionInterval) {
         int y, m, d;
         boolean leap;
         path.put(Files.SEPARATOR);
@@ -1789,10 +3468,17 @@ public class TableWriter implements Closeable {
                     partitionHi = Dates.addYear(Dates.yearMicros(y, leap), 1);
                 }
                 break;
-            default:
+            case PartitionBy.NONE:
                 path.put(TableUtils.DEFAULT_PARTITION_NAME);
                 partitionHi = Long.MAX_VALUE;
                 break;
+            default:
+                final long partitionLo = TableUtils.floorPartition(timestamp, partitionBy);
+                partitionDirFmt.format(partitionLo, DateLocaleFactory.INSTANCE.getDefaultDateLocale(), null, path);
+                if (updatePartitionInterval) {
+                    partitionHi = partitionLo + PartitionBy.getWidth(partitionBy);
+                }
+                break;
         }
     }
 
@@ -1801,6 +3487,14 @@ public class TableWriter implements Closeable {
         // added so far. Index writers will start point to different
         // files after switch.
         updateIndexes();
+        updateZoneMaps();
+
+        if (commitMode != CommitMode.NOSYNC) {
+            // files of this partition are about to be closed, they cannot be flushed on commit
+            syncFds.clear();
+            collectDataFds(syncFds);
+            flush(syncFds);
+        }
 
         // We need to store reference on partition so that archive
         // file can be created in appropriate directory.
@@ -1813,15 +3507,72 @@ public class TableWriter implements Closeable {
         fixedRowCount += transientRowCount;
         txPrevTransientRowCount = transientRowCount;
         transientRowCount = 0;
+        zoneMapRowCount = 0;
         openPartition(timestamp);
         setAppendPosition(0);
     }
 
+    private void syncPartitionFiles() {
+        final int plen = path.length();
+        try {
+            ff.iterateDir(path.$(), (name, type) -> {
+                if (type != Files.DT_DIR) {
+                    nativeLPSZ.of(name);
+                    final long fd = ff.openRW(path.trimTo(plen).concat(nativeLPSZ).$());
+                    if (fd == -1) {
+                        throw CairoException.instance(ff.errno()).put("Cannot open ").put(path);
+                    }
+                    try {
+                        if (ff.fsync(fd) != 0) {
+                            throw CairoException.instance(ff.errno()).put("Could not flush ").put(path);
+                        }
+                    } finally {
+                        ff.close(fd);
+                    }
+                }
+            });
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
     private void throwDistressException(Throwable cause) {
         this.distressed = true;
         throw new CairoError(cause);
     }
 
+    /**
+     * Restores uncompressed column files of sealed partition. Readers are not affected as both files have
+     * same content.
+     */
+    private void uncompressPartition(int plen) {
+        try {
+            for (int i = 0; i < columnCount; i++) {
+                final CharSequence columnName = metadata.getColumnName(i);
+                if (ColumnCompressor.isCompressible(metadata.getColumnType(i))
+                        && !ff.exists(TableUtils.dFile(path.trimTo(plen), columnName))
+                        && ff.exists(TableUtils.dzFile(path.trimTo(plen), columnName))) {
+                    // readers that open partition meanwhile see either compressed or complete uncompressed file
+                    other.of(path.trimTo(plen)).concat(columnName).put(".d.tmp").$();
+                    try (
+                            ReadOnlyMemory src = new ReadOnlyMemory(ff, TableUtils.dzFile(path.trimTo(plen), columnName), ff.getMapPageSize(), ff.length(path));
+                            AppendMemory dst = new AppendMemory(ff, other, ff.getMapPageSize())
+                    ) {
+                        ColumnCompressor.decompress(src, src.size(), dst);
+                    }
+                    if (!ff.rename(other, TableUtils.dFile(path.trimTo(plen), columnName))) {
+                        throw CairoException.instance(ff.errno()).put("Cannot rename ").put(other).put(" -> ").put(path);
+                    }
+                    removeOrException(ff, TableUtils.dzFile(path.trimTo(plen), columnName));
+                    LOG.info().$("uncompressed '").$(path.trimTo(plen)).$(Files.SEPARATOR).utf8(columnName).$('\'').$();
+                }
+            }
+        } finally {
+            path.trimTo(plen);
+            other.trimTo(rootLen);
+        }
+    }
+
     private void updateIndexes() {
         if (indexCount > 0) {
             final long lo = txPartitionCount == 1 ? txPrevTransientRowCount : 0;
@@ -1925,6 +3676,26 @@ public class TableWriter implements Closeable {
         this.timestampSetter.accept(timestamp);
     }
 
+    private void updateZoneMaps() {
+        if (transientRowCount == 0) {
+            return;
+        }
+
+        try {
+            setStateForTimestamp(maxTimestamp, false);
+            final int plen = path.length();
+            for (int i = 0; i < columnCount; i++) {
+                final int type = metadata.getColumnType(i);
+                if (ZoneMapWriter.isSupported(type)) {
+                    zoneMapWriter.update(path.trimTo(plen), metadata.getColumnName(i), type, columnTops.getQuick(i), getPrimaryColumn(i).getFd(), transientRowCount);
+                }
+            }
+            zoneMapRowCount = transientRowCount;
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
     private void validateSwapMeta(CharSequence columnName) {
         try {
             try {
@@ -1944,6 +3715,49 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void writeDedupKey(boolean enabled) {
+        try {
+            long fd = ff.openRW(path.concat(TableUtils.META_FILE_NAME).$());
+            if (fd == -1) {
+                throw CairoException.instance(ff.errno()).put("Cannot open: ").put(path);
+            }
+            try {
+                final int timestampIndex = metadata.getTimestampIndex();
+                for (int i = 0; i < columnCount; i++) {
+                    final boolean flag = enabled && (i == timestampIndex || dedupColumns.binarySearch(i) > -1);
+                    Unsafe.getUnsafe().putByte(tempMem8b, (byte) (flag ? 1 : 0));
+                    if (ff.write(fd, tempMem8b, 1, TableUtils.getDedupKeyFlagOffset(i)) != 1) {
+                        throw CairoException.instance(ff.errno()).put("Cannot write: ").put(path);
+                    }
+                }
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(rootLen);
+        }
+    }
+
+    private void writeColumnTop(Path path, CharSequence name, long columnTop) {
+        final int plen = path.length();
+        try {
+            long fd = ff.openRW(TableUtils.topFile(path, name));
+            if (fd == -1) {
+                throw CairoException.instance(ff.errno()).put("Cannot open ").put(path);
+            }
+            try {
+                Unsafe.getUnsafe().putLong(tempMem8b, columnTop);
+                if (ff.write(fd, tempMem8b, 8, 0) != 8) {
+                    throw CairoException.instance(ff.errno()).put("Cannot write ").put(path);
+                }
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
     private void writeColumnTop(CharSequence name) {
         long fd = openAppend(path.concat(name).put(".top").$());
         try {
@@ -1956,6 +3770,37 @@ public class TableWriter implements Closeable {
         }
     }
 
+    private void writePartitionSize(Path path, long size) {
+        final int plen = path.length();
+        try {
+            // size of existing partition is overwritten, file cannot be open for append
+            long fd = ff.openRW(path.concat(TableUtils.ARCHIVE_FILE_NAME).$());
+            if (fd == -1) {
+                throw CairoException.instance(ff.errno()).put("Cannot open ").put(path);
+            }
+            try {
+                Unsafe.getUnsafe().putLong(tempMem8b, size);
+                if (ff.write(fd, tempMem8b, 8, 0) != 8) {
+                    throw CairoException.instance(ff.errno()).put("Cannot write partition size: ").put(path);
+                }
+            } finally {
+                ff.close(fd);
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    private void writePartitionVersions(int symbolWriterCount, int removedPartitionCount) {
+        final int n = partitionVersions.size() / 2;
+        txMem.putInt(getPartitionVersionTableSizeOffset(symbolWriterCount, removedPartitionCount), n);
+        for (int i = 0; i < n; i++) {
+            final long offset = getPartitionVersionTableIndexOffset(symbolWriterCount, removedPartitionCount, i);
+            txMem.putLong(offset, partitionVersions.getQuick(i * 2));
+            txMem.putLong(offset + 8, partitionVersions.getQuick(i * 2 + 1));
+        }
+    }
+
     private void writeRestoreMetaTodo(CharSequence columnName) {
         try {
             writeTodo(((long) metaPrevIndex << 8) | TableUtils.TODO_RESTORE_META);
@@ -2004,8 +3849,8 @@ public class TableWriter implements Closeable {
         @Override
         public Row newRow(long timestamp) {
             bumpMasterRef();
-            if (timestamp < maxTimestamp) {
-                throw CairoException.instance(ff.errno()).put("Cannot insert rows out of order. Table=").put(path);
+            if (timestamp < maxTimestamp || (dedup && timestamp == maxTimestamp)) {
+                return newOutOfOrderRow(timestamp);
             }
             updateMaxTimestamp(timestamp);
             return row;
@@ -2015,8 +3860,9 @@ public class TableWriter implements Closeable {
     private class SwitchPartitionRowFunction implements RowFunction {
         @NotNull
         private Row newRow0(long timestamp) {
-            if (timestamp < maxTimestamp) {
-                throw CairoException.instance(ff.errno()).put("Cannot insert rows out of order. Table=").put(path);
+            // with deduplication rows that repeat maximum timestamp can replace existing rows
+            if (timestamp < maxTimestamp || (dedup && timestamp == maxTimestamp)) {
+                return newOutOfOrderRow(timestamp);
             }
 
             if (timestamp >= partitionHi && partitionBy != PartitionBy.NONE) {
@@ -2030,7 +3876,7 @@ public class TableWriter implements Closeable {
         @Override
         public Row newRow(long timestamp) {
             bumpMasterRef();
-            if (timestamp < partitionHi && timestamp >= maxTimestamp) {
+            if (timestamp < partitionHi && timestamp >= maxTimestamp && (timestamp > maxTimestamp || !dedup)) {
                 updateMaxTimestamp(timestamp);
                 return row;
             }
@@ -2038,6 +3884,229 @@ public class TableWriter implements Closeable {
         }
     }
 
+    /**
+     * Block of rows supplied as column vectors. Fixed size columns are vectors of values in the same binary
+     * format as column files. STRING and BINARY columns are supplied as data vector in column file format, i.e.
+     * values with length prefix, and vector of long offsets of each value relative to start of data vector.
+     * SYMBOL columns are vectors of int keys, which are obtained via {@link #putSym(int, CharSequence)}.
+     * Columns that are not supplied are filled with nulls. Timestamp column must be supplied for tables
+     * that have designated timestamp and timestamps must be in ascending order.
+     */
+    public class Block {
+        private final LongList addresses = new LongList();
+        private final LongList offsets = new LongList();
+        private final LongList sizes = new LongList();
+
+        /**
+         * Appends rows to table. Rows spanning multiple partitions are split at partition boundaries.
+         * Vectors are released from block whether append is successful or not. When rows cannot be written,
+         * e.g. due to I/O error, pending transaction is rolled back.
+         *
+         * @param rowCount number of rows in each column vector
+         */
+        public void append(long rowCount) {
+            try {
+                appendBlock(rowCount);
+            } finally {
+                clear();
+            }
+        }
+
+        public void putColumn(int index, long address) {
+            assert getSecondaryColumn(index) == null;
+            addresses.setQuick(index, address);
+        }
+
+        public void putColumn(int index, long address, long size, long offsetsAddress) {
+            assert getSecondaryColumn(index) != null;
+            addresses.setQuick(index, address);
+            sizes.setQuick(index, size);
+            offsets.setQuick(index, offsetsAddress);
+        }
+
+        /**
+         * Resolves symbol value to key, adding value to symbol table if necessary.
+         *
+         * @param index column index
+         * @param value symbol value
+         * @return key to be used in column vector
+         */
+        public int putSym(int index, CharSequence value) {
+            return symbolMapWriters.getQuick(index).put(value);
+        }
+
+        private void clear() {
+            addresses.setPos(columnCount);
+            addresses.zero(0);
+            offsets.setPos(columnCount);
+            sizes.setPos(columnCount);
+        }
+    }
+
+    /**
+     * Row returned by {@link #newBufferedRow(long)}. Values are written to column vectors, unless row has to be
+     * written directly, in which case calls are delegated to {@link Row}.
+     */
+    public class BufferedRow extends Row {
+        private boolean direct = false;
+
+        @Override
+        public void append() {
+            if (direct) {
+                direct = false;
+                super.append();
+                return;
+            }
+
+            if (!bufferedRowPending) {
+                return;
+            }
+
+            for (int i = 0; i < columnCount; i++) {
+                if (bufferedRefs.getQuick(i) != bufferedRowCount) {
+                    putBufferedNull(i);
+                }
+            }
+            bufferedRowPending = false;
+            if (++bufferedRowCount == bufferedRowCapacity) {
+                flushBufferedRows();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (direct) {
+                direct = false;
+                super.cancel();
+            } else if (bufferedRowPending) {
+                cancelBufferedRow();
+            }
+        }
+
+        @Override
+        public void putBin(int index, long address, long len) {
+            if (direct) {
+                super.putBin(index, address, len);
+            } else {
+                varColumn(index).putBin(address, len);
+            }
+        }
+
+        @Override
+        public void putBin(int index, BinarySequence sequence) {
+            if (direct) {
+                super.putBin(index, sequence);
+            } else {
+                varColumn(index).putBin(sequence);
+            }
+        }
+
+        @Override
+        public void putBool(int index, boolean value) {
+            if (direct) {
+                super.putBool(index, value);
+            } else {
+                column(index).putBool(value);
+            }
+        }
+
+        @Override
+        public void putByte(int index, byte value) {
+            if (direct) {
+                super.putByte(index, value);
+            } else {
+                column(index).putByte(value);
+            }
+        }
+
+        @Override
+        public void putDouble(int index, double value) {
+            if (direct) {
+                super.putDouble(index, value);
+            } else {
+                column(index).putDouble(value);
+            }
+        }
+
+        @Override
+        public void putFloat(int index, float value) {
+            if (direct) {
+                super.putFloat(index, value);
+            } else {
+                column(index).putFloat(value);
+            }
+        }
+
+        @Override
+        public void putInt(int index, int value) {
+            if (direct) {
+                super.putInt(index, value);
+            } else {
+                column(index).putInt(value);
+            }
+        }
+
+        @Override
+        public void putLong(int index, long value) {
+            if (direct) {
+                super.putLong(index, value);
+            } else {
+                column(index).putLong(value);
+            }
+        }
+
+        @Override
+        public void putShort(int index, short value) {
+            if (direct) {
+                super.putShort(index, value);
+            } else {
+                column(index).putShort(value);
+            }
+        }
+
+        @Override
+        public void putStr(int index, CharSequence value) {
+            if (direct) {
+                super.putStr(index, value);
+            } else {
+                varColumn(index).putStr(value);
+            }
+        }
+
+        @Override
+        public void putStr(int index, CharSequence value, int pos, int len) {
+            if (direct) {
+                super.putStr(index, value, pos, len);
+            } else {
+                varColumn(index).putStr(value, pos, len);
+            }
+        }
+
+        @Override
+        public void putSym(int index, CharSequence value) {
+            if (direct) {
+                super.putSym(index, value);
+            } else {
+                column(index).putInt(symbolMapWriters.getQuick(index).put(value));
+            }
+        }
+
+        private ColumnVector column(int index) {
+            bufferedRefs.setQuick(index, bufferedRowCount);
+            return bufferedColumns.getQuick(index);
+        }
+
+        /**
+         * Offset of value is stored ahead of value, cancelled row is truncated back to it.
+         */
+        private ColumnVector varColumn(int index) {
+            final ColumnVector data = bufferedColumns.getQuick(index);
+            bufferedOffsets.getQuick(index).putLong(data.getAppendOffset());
+            bufferedRefs.setQuick(index, bufferedRowCount);
+            return data;
+        }
+    }
+
     public class Row {
         public void append() {
             if ((masterRef & 1) == 0) {
@@ -2046,10 +4115,18 @@ public class TableWriter implements Closeable {
 
             for (int i = 0; i < columnCount; i++) {
                 if (refs.getQuick(i) < masterRef) {
-                    nullers.getQuick(i).run();
+                    rowNullers.getQuick(i).run();
                 }
             }
-            transientRowCount++;
+
+            if (rowColumns == columns) {
+                transientRowCount++;
+            } else {
+                oooTimestampIndex.add(oooTimestamp);
+                oooTimestampIndex.add(oooRowCount++);
+                rowColumns = columns;
+                rowNullers = nullers;
+            }
             masterRef++;
         }
 
@@ -2058,22 +4135,22 @@ public class TableWriter implements Closeable {
         }
 
         public void putBin(int index, long address, long len) {
-            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(address, len));
+            getRowSecondaryColumn(index).putLong(getRowPrimaryColumn(index).putBin(address, len));
             notNull(index);
         }
 
         public void putBin(int index, BinarySequence sequence) {
-            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putBin(sequence));
+            getRowSecondaryColumn(index).putLong(getRowPrimaryColumn(index).putBin(sequence));
             notNull(index);
         }
 
         public void putBool(int index, boolean value) {
-            getPrimaryColumn(index).putBool(value);
+            getRowPrimaryColumn(index).putBool(value);
             notNull(index);
         }
 
         public void putByte(int index, byte value) {
-            getPrimaryColumn(index).putByte(value);
+            getRowPrimaryColumn(index).putByte(value);
             notNull(index);
         }
 
@@ -2082,42 +4159,42 @@ public class TableWriter implements Closeable {
         }
 
         public void putDouble(int index, double value) {
-            getPrimaryColumn(index).putDouble(value);
+            getRowPrimaryColumn(index).putDouble(value);
             notNull(index);
         }
 
         public void putFloat(int index, float value) {
-            getPrimaryColumn(index).putFloat(value);
+            getRowPrimaryColumn(index).putFloat(value);
             notNull(index);
         }
 
         public void putInt(int index, int value) {
-            getPrimaryColumn(index).putInt(value);
+            getRowPrimaryColumn(index).putInt(value);
             notNull(index);
         }
 
         public void putLong(int index, long value) {
-            getPrimaryColumn(index).putLong(value);
+            getRowPrimaryColumn(index).putLong(value);
             notNull(index);
         }
 
         public void putShort(int index, short value) {
-            getPrimaryColumn(index).putShort(value);
+            getRowPrimaryColumn(index).putShort(value);
             notNull(index);
         }
 
         public void putStr(int index, CharSequence value) {
-            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value));
+            getRowSecondaryColumn(index).putLong(getRowPrimaryColumn(index).putStr(value));
             notNull(index);
         }
 
         public void putStr(int index, CharSequence value, int pos, int len) {
-            getSecondaryColumn(index).putLong(getPrimaryColumn(index).putStr(value, pos, len));
+            getRowSecondaryColumn(index).putLong(getRowPrimaryColumn(index).putStr(value, pos, len));
             notNull(index);
         }
 
         public void putSym(int index, CharSequence value) {
-            getPrimaryColumn(index).putInt(symbolMapWriters.getQuick(index).put(value));
+            getRowPrimaryColumn(index).putInt(symbolMapWriters.getQuick(index).put(value));
             notNull(index);
         }
 
@@ -2136,5 +4213,6 @@ public class TableWriter implements Closeable {
         IGNORED_FILES.add(TableUtils.META_FILE_NAME);
         IGNORED_FILES.add(TableUtils.TXN_FILE_NAME);
         IGNORED_FILES.add(TableUtils.TODO_FILE_NAME);
+        IGNORED_FILES.add(TableUtils.WAL_DIR_NAME);
     }
 }
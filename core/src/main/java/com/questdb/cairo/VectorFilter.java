@@ -0,0 +1,275 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.PageFrame;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.Unsafe;
+
+/**
+ * Conjunction of column predicates that is evaluated on page frame into selection vector. Predicates compare
+ * values as doubles, the same way SQL comparison functions do, so the filter selects exactly the rows
+ * filter function would. The first predicate scans all rows of the frame, each following one scans only
+ * the rows selected so far.
+ */
+public class VectorFilter {
+    public static final int OP_LT = 0;
+    public static final int OP_GT = 1;
+    private final IntList columnIndexes = new IntList();
+    private final IntList columnTypes = new IntList();
+    private final IntList ops = new IntList();
+    private final LongList values = new LongList();
+
+    public static boolean isSupported(int columnType) {
+        switch (columnType) {
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public void add(int columnIndex, int columnType, int op, double value) {
+        assert isSupported(columnType);
+        columnIndexes.add(columnIndex);
+        columnTypes.add(columnType);
+        ops.add(op);
+        values.add(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Selects rows of page frame that match all predicates.
+     *
+     * @param frame page frame that includes columns of all predicates
+     * @param rows  address of selection vector, there must be room for offset of every row of the frame
+     * @return number of offsets written to selection vector
+     */
+    public long filter(PageFrame frame, long rows) {
+        long count = frame.getRowCount();
+        for (int i = 0, n = columnIndexes.size(); i < n && count > 0; i++) {
+            final long address = frame.getPageAddress(columnIndexes.getQuick(i));
+            final boolean lt = ops.getQuick(i) == OP_LT;
+            final double value = Double.longBitsToDouble(values.getQuick(i));
+            if (i == 0) {
+                switch (columnTypes.getQuick(i)) {
+                    case ColumnType.INT:
+                        count = lt ? ltInt(address, count, value, rows) : gtInt(address, count, value, rows);
+                        break;
+                    case ColumnType.LONG:
+                        count = lt ? ltLong(address, count, value, rows) : gtLong(address, count, value, rows);
+                        break;
+                    case ColumnType.FLOAT:
+                        count = lt ? ltFloat(address, count, value, rows) : gtFloat(address, count, value, rows);
+                        break;
+                    default:
+                        count = lt ? ltDouble(address, count, value, rows) : gtDouble(address, count, value, rows);
+                        break;
+                }
+            } else {
+                switch (columnTypes.getQuick(i)) {
+                    case ColumnType.INT:
+                        count = lt ? ltIntSelected(address, rows, count, value) : gtIntSelected(address, rows, count, value);
+                        break;
+                    case ColumnType.LONG:
+                        count = lt ? ltLongSelected(address, rows, count, value) : gtLongSelected(address, rows, count, value);
+                        break;
+                    case ColumnType.FLOAT:
+                        count = lt ? ltFloatSelected(address, rows, count, value) : gtFloatSelected(address, rows, count, value);
+                        break;
+                    default:
+                        count = lt ? ltDoubleSelected(address, rows, count, value) : gtDoubleSelected(address, rows, count, value);
+                        break;
+                }
+            }
+        }
+        return count;
+    }
+
+    public int getColumnIndex(int index) {
+        return columnIndexes.getQuick(index);
+    }
+
+    public int size() {
+        return columnIndexes.size();
+    }
+
+    // Loops below write offset of every row and advance selection only past rows that match. This keeps
+    // them free of unpredictable branches.
+
+    private static long gtDouble(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getDouble(address + (i << 3)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long gtDoubleSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getDouble(address + (row << 3)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long gtFloat(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getFloat(address + (i << 2)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long gtFloatSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getFloat(address + (row << 2)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long gtInt(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getInt(address + (i << 2)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long gtIntSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getInt(address + (row << 2)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long gtLong(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getLong(address + (i << 3)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long gtLongSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getLong(address + (row << 3)) > value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltDouble(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getDouble(address + (i << 3)) < value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltDoubleSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getDouble(address + (row << 3)) < value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltFloat(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getFloat(address + (i << 2)) < value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltFloatSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getFloat(address + (row << 2)) < value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltInt(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getInt(address + (i << 2)) < value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltIntSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getInt(address + (row << 2)) < value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltLong(long address, long count, double value, long rows) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += Unsafe.getUnsafe().getLong(address + (i << 3)) < value ? 1 : 0;
+        }
+        return n;
+    }
+
+    private static long ltLongSelected(long address, long rows, long count, double value) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (i << 3));
+            Unsafe.getUnsafe().putLong(rows + (n << 3), row);
+            n += Unsafe.getUnsafe().getLong(address + (row << 3)) < value ? 1 : 0;
+        }
+        return n;
+    }
+}
@@ -31,7 +31,7 @@ import java.io.Closeable;
 import java.nio.ByteBuffer;
 
 public class VirtualMemory implements Closeable {
-    private static final int STRING_LENGTH_BYTES = 4;
+    static final int STRING_LENGTH_BYTES = 4;
     protected final LongList pages = new LongList(4, 0);
     private final ByteSequenceView bsview = new ByteSequenceView();
     private final CharSequenceView csview = new CharSequenceView();
@@ -263,6 +263,21 @@ public class VirtualMemory implements Closeable {
         return offset;
     }
 
+    /**
+     * Appends block of memory without length prefix. Block can span multiple pages.
+     *
+     * @param from address of first byte to copy
+     * @param len  number of bytes to copy
+     */
+    public void putBlockOfBytes(long from, long len) {
+        if (len < pageHi - appendPointer) {
+            Unsafe.getUnsafe().copyMemory(from, appendPointer, len);
+            appendPointer += len;
+        } else {
+            putBinSlit(from, len);
+        }
+    }
+
     public void putBool(boolean value) {
         putByte((byte) (value ? 1 : 0));
     }
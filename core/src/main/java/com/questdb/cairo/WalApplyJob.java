@@ -0,0 +1,477 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.pool.ex.EntryUnavailableException;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.mp.SynchronizedJob;
+import com.questdb.std.*;
+import com.questdb.std.str.LPSZ;
+import com.questdb.std.str.Path;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Merges transactions committed by {@link WalWriter} instances into their tables. All transactions
+ * pending for a table are applied together: rows are sorted by timestamp across WAL segments and
+ * appended with single {@link TableWriter#commit()}, so readers observe either none or all of them.
+ * Runs of rows that a transaction wrote in timestamp order are copied from WAL files as column vectors via
+ * {@link TableWriter.Block}. Rows older than table maximum timestamp are appended one by one and rely on
+ * out-of-order support of the writer, which publishes merged partitions in the same transaction as appended rows.
+ * <p>
+ * Last transaction of the batch and table txn are recorded in sequencer log ahead of commit, so that
+ * batch committed right before restart is not applied twice.
+ * <p>
+ * Transactions that could not be applied are never dropped. They go back to the sequencer and are
+ * retried on next run when error is an I/O error. Any other error, such as column type mismatch or
+ * rejected out-of-order row, suspends the table and transactions stay in the queue until
+ * {@link Engine#resumeWal(CharSequence)} is called.
+ */
+public class WalApplyJob extends SynchronizedJob implements Closeable {
+    private static final Log LOG = LogFactory.getLog(WalApplyJob.class);
+    private final Engine engine;
+    private final WalSequencer sequencer;
+    private final FilesFacade ff;
+    private final CharSequence root;
+    private final long pageSize;
+    private final Path path = new Path();
+    private final ObjList<WalSequencer.Txn> txns = new ObjList<>();
+    // data and index memories of all transactions being applied, one of each per column,
+    // index memory is not open for fixed size columns
+    private final ObjList<ReadOnlyMemory> dataColumns = new ObjList<>();
+    private final ObjList<ReadOnlyMemory> indexColumns = new ObjList<>();
+    // index of first column of each transaction in dataColumns and indexColumns
+    private final IntList txnColumnBase = new IntList();
+    // writer column index for each WAL column, same layout as dataColumns
+    private final IntList columnMap = new IntList();
+    // pairs of timestamp and row reference, where reference is transaction index in high and row in low 32 bits
+    private final DirectLongList index = new DirectLongList(1024);
+    private int segmentColumnCount = 0;
+    // symbol keys of rows appended as block, symbol values are resolved for each column in turn
+    private long symbolKeys = 0;
+    private long symbolKeysSize = 0;
+
+    public WalApplyJob(Engine engine, WalSequencer sequencer) {
+        final CairoConfiguration configuration = engine.getConfiguration();
+        this.engine = engine;
+        this.sequencer = sequencer;
+        this.ff = configuration.getFilesFacade();
+        this.root = configuration.getRoot();
+        this.pageSize = configuration.getWalPageSize();
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = dataColumns.size(); i < n; i++) {
+            Misc.free(dataColumns.getQuick(i));
+            Misc.free(indexColumns.getQuick(i));
+        }
+        dataColumns.clear();
+        indexColumns.clear();
+        Misc.free(index);
+        Misc.free(path);
+        if (symbolKeys != 0) {
+            Unsafe.free(symbolKeys, symbolKeysSize);
+            symbolKeys = 0;
+            symbolKeysSize = 0;
+        }
+    }
+
+    @Override
+    protected boolean runSerially() {
+        boolean useful = false;
+        Iterator<WalSequencer.Table> iterator = sequencer.iterator();
+        while (iterator.hasNext()) {
+            WalSequencer.Table table = iterator.next();
+            txns.clear();
+            if (table.drain(txns)) {
+                useful |= apply(table);
+            }
+        }
+        return useful;
+    }
+
+    private boolean apply(WalSequencer.Table table) {
+        final TableWriter writer;
+        try {
+            writer = engine.getWriter(table.name);
+        } catch (EntryUnavailableException e) {
+            // writer is busy, try again on next run
+            table.requeue(txns);
+            return false;
+        } catch (CairoException e) {
+            LOG.error().$("cannot open writer, WAL is suspended [table=").$(table.name).$(", count=").$(txns.size()).$("] {").$((Sinkable) e).$('}').$();
+            table.requeue(txns);
+            table.suspend();
+            return false;
+        }
+
+        final WalSequencer.Txn last = txns.getLast();
+        try {
+            copyRows(writer);
+            table.applying(last.seqTxn, writer.getTxn());
+            writer.commit();
+        } catch (CairoException e) {
+            writer.rollback();
+            table.requeue(txns);
+            if (e.getErrno() == 0) {
+                // error is not caused by environment, next attempt would fail the same way
+                LOG.error().$("could not apply WAL, WAL is suspended [table=").$(table.name).$("] {").$((Sinkable) e).$('}').$();
+                table.suspend();
+            } else {
+                LOG.error().$("could not apply WAL, will retry [table=").$(table.name).$("] {").$((Sinkable) e).$('}').$();
+            }
+            return false;
+        } catch (RuntimeException e) {
+            LOG.error().$("could not apply WAL, WAL is suspended [table=").$(table.name).$("] {").$(e).$('}').$();
+            if (writer.inTransaction()) {
+                writer.rollback();
+            }
+            table.requeue(txns);
+            table.suspend();
+            return false;
+        } finally {
+            writer.close();
+            closeSegments();
+        }
+
+        try {
+            table.applied(last.seqTxn);
+        } catch (CairoException e) {
+            // transactions are in the table, replay tells that from table txn recorded ahead of commit
+            LOG.error().$("could not record applied WAL [table=").$(table.name).$(", seqTxn=").$(last.seqTxn).$("] {").$((Sinkable) e).$('}').$();
+        }
+        LOG.info().$("applied WAL [table=").$(table.name).$(", txns=").$(txns.size()).$(", rows=").$(index.size() / 2).$(", seqTxn=").$(last.seqTxn).$(']').$();
+        removeSegments();
+        return true;
+    }
+
+    private void closeSegments() {
+        for (int i = 0; i < segmentColumnCount; i++) {
+            dataColumns.getQuick(i).close();
+            indexColumns.getQuick(i).close();
+        }
+        segmentColumnCount = 0;
+    }
+
+    private void copyRows(TableWriter writer) {
+        index.clear();
+        txnColumnBase.clear();
+        columnMap.clear();
+        boolean timestamped = true;
+
+        for (int i = 0, n = txns.size(); i < n; i++) {
+            final WalSequencer.Txn txn = txns.getQuick(i);
+            txnColumnBase.add(segmentColumnCount);
+            if (txn.rowHi == txn.rowLo) {
+                continue;
+            }
+            openSegment(txn, writer.getMetadata());
+            final int base = txnColumnBase.getQuick(i);
+            final ReadOnlyMemory timestamps = txn.timestampIndex == -1 ? null : dataColumns.getQuick(base + txn.timestampIndex);
+            timestamped &= timestamps != null;
+            for (long row = txn.rowLo; row < txn.rowHi; row++) {
+                index.add(timestamps == null ? 0 : timestamps.getLong(row * 8));
+                index.add(((long) i << 32) | row);
+            }
+        }
+
+        final long count = index.size() / 2;
+        if (timestamped) {
+            TableWriter.sortOutOfOrderIndex(index.getAddress(), count);
+        }
+
+        long k = 0;
+        while (k < count) {
+            final long hi = getBlockHi(writer, k, count);
+            if (hi > k) {
+                appendBlock(writer, k, hi);
+                k = hi;
+            } else {
+                appendRow(writer, k++);
+            }
+        }
+    }
+
+    private void appendBlock(TableWriter writer, long k, long hi) {
+        final long ref = index.get(k * 2 + 1);
+        final int txnIndex = (int) (ref >>> 32);
+        final long rowLo = ref & 0xFFFFFFFFL;
+        final long rowCount = hi - k;
+        final WalSequencer.Txn txn = txns.getQuick(txnIndex);
+        final int base = txnColumnBase.getQuick(txnIndex);
+
+        int symbolColumnCount = 0;
+        for (int i = 0, n = txn.columnTypes.size(); i < n; i++) {
+            if (txn.columnTypes.getQuick(i) == ColumnType.SYMBOL && columnMap.getQuick(base + i) != -1) {
+                symbolColumnCount++;
+            }
+        }
+        final long symbolKeysSize = symbolColumnCount * rowCount * 4;
+        if (symbolKeysSize > this.symbolKeysSize) {
+            if (symbolKeys != 0) {
+                Unsafe.free(symbolKeys, this.symbolKeysSize);
+            }
+            symbolKeys = Unsafe.malloc(symbolKeysSize);
+            this.symbolKeysSize = symbolKeysSize;
+        }
+
+        final TableWriter.Block block = writer.newBlock();
+        long keys = symbolKeys;
+        for (int i = 0, n = txn.columnTypes.size(); i < n; i++) {
+            final int columnIndex = columnMap.getQuick(base + i);
+            if (columnIndex == -1) {
+                continue;
+            }
+            final int type = txn.columnTypes.getQuick(i);
+            final ReadOnlyMemory mem1 = dataColumns.getQuick(base + i);
+            final ReadOnlyMemory mem2 = indexColumns.getQuick(base + i);
+            switch (type) {
+                case ColumnType.STRING:
+                case ColumnType.BINARY:
+                    // offsets are relative to start of WAL file, which is where block data address points to
+                    final long dataLo = mem2.getLong(rowLo * 8);
+                    block.putColumn(
+                            columnIndex,
+                            mem1.addressOf(dataLo) - dataLo,
+                            getValueEnd(type, mem1, mem2, rowLo + rowCount - 1),
+                            mem2.addressOf(rowLo * 8)
+                    );
+                    break;
+                case ColumnType.SYMBOL:
+                    // WAL keeps symbol values, block takes keys of table symbol map
+                    for (long row = 0; row < rowCount; row++) {
+                        Unsafe.getUnsafe().putInt(keys + row * 4, block.putSym(columnIndex, mem1.getStr(mem2.getLong((rowLo + row) * 8))));
+                    }
+                    block.putColumn(columnIndex, keys);
+                    keys += rowCount * 4;
+                    break;
+                default:
+                    block.putColumn(columnIndex, mem1.addressOf(rowLo << ColumnType.pow2SizeOf(type)));
+                    break;
+            }
+        }
+        block.append(rowCount);
+    }
+
+    private void appendRow(TableWriter writer, long k) {
+        final long timestamp = index.get(k * 2);
+        final long ref = index.get(k * 2 + 1);
+        final int txnIndex = (int) (ref >>> 32);
+        final long row = ref & 0xFFFFFFFFL;
+        final WalSequencer.Txn txn = txns.getQuick(txnIndex);
+        final int base = txnColumnBase.getQuick(txnIndex);
+
+        final TableWriter.Row r = writer.newRow(timestamp);
+        for (int i = 0, n = txn.columnTypes.size(); i < n; i++) {
+            final int columnIndex = columnMap.getQuick(base + i);
+            if (columnIndex == -1 || i == txn.timestampIndex) {
+                continue;
+            }
+            copyValue(r, columnIndex, txn.columnTypes.getQuick(i), dataColumns.getQuick(base + i), indexColumns.getQuick(base + i), row);
+        }
+        r.append();
+    }
+
+    /**
+     * Finds rows, starting at given position of sorted index, that can be appended to table as {@link TableWriter.Block}.
+     * These are rows of the same transaction in the order they were written, which come after table maximum
+     * timestamp and do not repeat timestamps. Values of each column also have to be in the same mapped page of WAL file.
+     *
+     * @return position in index past the last row of block, k when row at k has to be appended on its own
+     */
+    private long getBlockHi(TableWriter writer, long k, long count) {
+        final long ref = index.get(k * 2 + 1);
+        final int txnIndex = (int) (ref >>> 32);
+        final long rowLo = ref & 0xFFFFFFFFL;
+        final WalSequencer.Txn txn = txns.getQuick(txnIndex);
+        final int base = txnColumnBase.getQuick(txnIndex);
+        final int timestampIndex = writer.getMetadata().getTimestampIndex();
+
+        long timestamp = index.get(k * 2);
+        if (timestampIndex != -1) {
+            // out-of-order rows and rows that can replace existing rows are left to the writer
+            if (txn.timestampIndex == -1 || columnMap.getQuick(base + txn.timestampIndex) != timestampIndex || timestamp <= writer.getMaxTimestamp()) {
+                return k;
+            }
+        }
+
+        long hi = k + 1;
+        while (hi < count && index.get(hi * 2 + 1) == ref + hi - k) {
+            final long next = index.get(hi * 2);
+            if (timestampIndex != -1 && next == timestamp) {
+                break;
+            }
+            timestamp = next;
+            hi++;
+        }
+
+        long rowHi = rowLo + hi - k;
+        for (int i = 0, n = txn.columnTypes.size(); i < n && rowHi > rowLo; i++) {
+            if (columnMap.getQuick(base + i) != -1) {
+                rowHi = getContiguousRowHi(txn.columnTypes.getQuick(i), dataColumns.getQuick(base + i), indexColumns.getQuick(base + i), rowLo, rowHi);
+            }
+        }
+        return k + rowHi - rowLo;
+    }
+
+    private static void copyValue(TableWriter.Row r, int columnIndex, int type, ReadOnlyMemory mem1, ReadOnlyMemory mem2, long row) {
+        switch (type) {
+            case ColumnType.BOOLEAN:
+                r.putBool(columnIndex, mem1.getBool(row));
+                break;
+            case ColumnType.BYTE:
+                r.putByte(columnIndex, mem1.getByte(row));
+                break;
+            case ColumnType.SHORT:
+                r.putShort(columnIndex, mem1.getShort(row * 2));
+                break;
+            case ColumnType.INT:
+                r.putInt(columnIndex, mem1.getInt(row * 4));
+                break;
+            case ColumnType.FLOAT:
+                r.putFloat(columnIndex, mem1.getFloat(row * 4));
+                break;
+            case ColumnType.DOUBLE:
+                r.putDouble(columnIndex, mem1.getDouble(row * 8));
+                break;
+            case ColumnType.STRING:
+                r.putStr(columnIndex, mem1.getStr(mem2.getLong(row * 8)));
+                break;
+            case ColumnType.SYMBOL:
+                r.putSym(columnIndex, mem1.getStr(mem2.getLong(row * 8)));
+                break;
+            case ColumnType.BINARY:
+                r.putBin(columnIndex, mem1.getBin(mem2.getLong(row * 8)));
+                break;
+            default:
+                r.putLong(columnIndex, mem1.getLong(row * 8));
+                break;
+        }
+    }
+
+    private static long getContiguousRowHi(int type, ReadOnlyMemory mem1, ReadOnlyMemory mem2, long rowLo, long rowHi) {
+        switch (type) {
+            case ColumnType.STRING:
+            case ColumnType.BINARY:
+                rowHi = Math.min(rowHi, rowLo + mem2.pageRemaining(rowLo * 8) / 8);
+                final long dataLo = mem2.getLong(rowLo * 8);
+                final long dataLimit = dataLo + mem1.pageRemaining(dataLo);
+                // values end further into file as row grows, find first row that ends past the page
+                long lo = rowLo;
+                long hi = rowHi;
+                while (lo < hi) {
+                    final long mid = (lo + hi) >>> 1;
+                    if (getValueEnd(type, mem1, mem2, mid) <= dataLimit) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                return lo;
+            case ColumnType.SYMBOL:
+                return rowHi;
+            default:
+                final int shl = ColumnType.pow2SizeOf(type);
+                return Math.min(rowHi, rowLo + (mem1.pageRemaining(rowLo << shl) >> shl));
+        }
+    }
+
+    private static long getValueEnd(int type, ReadOnlyMemory mem1, ReadOnlyMemory mem2, long row) {
+        final long offset = mem2.getLong(row * 8);
+        if (type == ColumnType.STRING) {
+            final int len = mem1.getStrLen(offset);
+            return offset + 4 + (len > 0 ? len * 2L : 0);
+        }
+        final long len = mem1.getBinLen(offset);
+        return offset + 8 + (len > 0 ? len : 0);
+    }
+
+    private static ReadOnlyMemory nextSegmentColumn(ObjList<ReadOnlyMemory> columns, int index) {
+        ReadOnlyMemory mem;
+        if (index < columns.size()) {
+            mem = columns.getQuick(index);
+        } else {
+            columns.add(mem = new ReadOnlyMemory());
+        }
+        return mem;
+    }
+
+    private void openSegment(WalSequencer.Txn txn, RecordMetadata metadata) {
+        setSegmentPath(txn);
+        final int plen = path.length();
+        final boolean timestamped = metadata.getTimestampIndex() != -1;
+        for (int i = 0, n = txn.columnNames.size(); i < n; i++) {
+            final CharSequence name = txn.columnNames.getQuick(i);
+            final int type = txn.columnTypes.getQuick(i);
+            int columnIndex = metadata.getColumnIndexQuiet(name);
+            if (columnIndex != -1 && metadata.getColumnType(columnIndex) != type) {
+                throw CairoException.instance(0).put("WAL column type mismatch [table=").put(txn.tableName).put(", column=").put(name).put(']');
+            }
+            if (i == txn.timestampIndex && !timestamped) {
+                columnIndex = -1;
+            }
+            columnMap.add(columnIndex);
+
+            final ReadOnlyMemory dataMem = nextSegmentColumn(dataColumns, segmentColumnCount);
+            final ReadOnlyMemory indexMem = nextSegmentColumn(indexColumns, segmentColumnCount);
+            segmentColumnCount++;
+
+            LPSZ fileName = TableUtils.dFile(path.trimTo(plen), name);
+            dataMem.of(ff, fileName, pageSize, ff.length(fileName));
+            if (type == ColumnType.STRING || type == ColumnType.SYMBOL || type == ColumnType.BINARY) {
+                fileName = TableUtils.iFile(path.trimTo(plen), name);
+                indexMem.of(ff, fileName, pageSize, ff.length(fileName));
+            }
+        }
+    }
+
+    private void removeSegments() {
+        for (int i = 0, n = txns.size(); i < n; i++) {
+            final WalSequencer.Txn txn = txns.getQuick(i);
+            if (txn.lastInWal) {
+                setWalPath(txn);
+            } else if (txn.lastInSegment) {
+                setSegmentPath(txn);
+            } else {
+                continue;
+            }
+            if (!ff.rmdir(path.$())) {
+                LOG.error().$("could not remove WAL segment [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+            }
+        }
+    }
+
+    private void setSegmentPath(WalSequencer.Txn txn) {
+        setWalPath(txn);
+        path.put(Files.SEPARATOR).put(txn.segmentId);
+    }
+
+    private void setWalPath(WalSequencer.Txn txn) {
+        path.of(root).concat(txn.tableName).concat(TableUtils.WAL_DIR_NAME).put(Files.SEPARATOR).put(txn.walId);
+    }
+}
@@ -0,0 +1,470 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.*;
+import com.questdb.std.str.NativeLPSZ;
+import com.questdb.std.str.Path;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Orders transactions committed by {@link WalWriter} instances. Each table has its own
+ * queue of committed transactions, which {@link WalApplyJob} drains and applies to the table
+ * in sequence order.
+ * <p>
+ * Transactions are also recorded in the log file of the table, which survives restart:
+ * <pre>
+ *     [table]/wal/_seq
+ * </pre>
+ * Log has a header followed by fixed size records, one per transaction in sequence order. Records
+ * of applied transactions are discarded once there is nothing left to apply. When sequencer is
+ * created it replays logs of all tables, so that transactions which have not been applied before
+ * restart are applied, and removes WAL directories of writers that did not survive restart.
+ */
+public class WalSequencer implements Closeable {
+    private static final Log LOG = LogFactory.getLog(WalSequencer.class);
+    // sequence number of transaction preceding first record in the log
+    private static final long SEQ_OFFSET_BASE_TXN = 0;
+    // sequence number of last published transaction
+    private static final long SEQ_OFFSET_TXN = 8;
+    static final long SEQ_OFFSET_APPLIED_TXN = 16;
+    // last transaction of batch that is being applied and table txn before batch is committed, when table
+    // txn on disk is newer the batch has been applied even though applied txn has not been updated
+    private static final long SEQ_OFFSET_APPLYING_TXN = 24;
+    private static final long SEQ_OFFSET_APPLYING_WRITER_TXN = 32;
+    private static final long SEQ_HEADER_SIZE = 64;
+    // walId (int), segmentId (int), rowLo (long), rowHi (long), flags (long)
+    private static final long SEQ_RECORD_SIZE = 32;
+    private static final long SEQ_FLAG_LAST_IN_SEGMENT = 1;
+    private static final long SEQ_FLAG_LAST_IN_WAL = 2;
+    private final ConcurrentHashMap<Table> tables = new ConcurrentHashMap<>();
+    private final FilesFacade ff;
+    private final CharSequence root;
+    private final int mkDirMode;
+    private final int commitMode;
+    private final Path path = new Path();
+    private final NativeLPSZ nativeLPSZ = new NativeLPSZ();
+    private final ObjList<String> tableNames = new ObjList<>();
+    private final IntList walIds = new IntList();
+
+    WalSequencer(CairoConfiguration configuration) {
+        this.ff = configuration.getFilesFacade();
+        this.root = configuration.getRoot();
+        this.mkDirMode = configuration.getMkDirMode();
+        this.commitMode = configuration.getCommitMode();
+        replay();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            Iterator<Table> iterator = tables.values().iterator();
+            while (iterator.hasNext()) {
+                iterator.next().close();
+            }
+            Misc.free(path);
+        }
+    }
+
+    Iterator<Table> iterator() {
+        return tables.values().iterator();
+    }
+
+    boolean isSuspended(CharSequence tableName) {
+        Table table = tables.get(tableName);
+        return table != null && table.isSuspended();
+    }
+
+    int nextWalId(CharSequence tableName) {
+        Table table = getTable(tableName);
+        synchronized (table) {
+            return ++table.walId;
+        }
+    }
+
+    /**
+     * Publishes transaction to the queue and to the log of its table.
+     *
+     * @param txn        committed range of rows
+     * @param commitMode {@link CommitMode#NOSYNC} leaves log flush to OS, other modes flush log before returning
+     * @return sequence number of the transaction
+     */
+    long publish(Txn txn, int commitMode) {
+        return getTable(txn.tableName).publish(txn, commitMode);
+    }
+
+    void resume(CharSequence tableName) {
+        Table table = tables.get(tableName);
+        if (table != null) {
+            table.resume();
+        }
+    }
+
+    private static boolean isCommitted(ReadOnlyMemory txMem, long writerTxn) {
+        final long txn = txMem.getLong(TableUtils.TX_OFFSET_TXN);
+        return txn > writerTxn && txn == txMem.getLong(TableUtils.TX_OFFSET_TXN_CHECK);
+    }
+
+    private Table getTable(CharSequence tableName) {
+        Table table = tables.get(tableName);
+        if (table == null) {
+            // log is opened and replayed once, creation is rare enough to be serialised
+            synchronized (this) {
+                table = tables.get(tableName);
+                if (table == null) {
+                    table = new Table(Chars.stringOf(tableName));
+                    table.open();
+                    tables.put(table.name, table);
+                }
+            }
+        }
+        return table;
+    }
+
+    private void replay() {
+        path.of(root);
+        final int rootLen = path.length();
+        ff.iterateDir(path.$(), (name, type) -> {
+            if (type == Files.DT_DIR) {
+                nativeLPSZ.of(name);
+                if (!Files.isDots(nativeLPSZ)
+                        && ff.exists(path.trimTo(rootLen).concat(nativeLPSZ).concat(TableUtils.WAL_DIR_NAME).concat(TableUtils.WAL_SEQ_FILE_NAME).$())) {
+                    tableNames.add(Chars.stringOf(nativeLPSZ));
+                }
+            }
+        });
+
+        for (int i = 0, n = tableNames.size(); i < n; i++) {
+            final String tableName = tableNames.getQuick(i);
+            try {
+                getTable(tableName);
+            } catch (CairoException e) {
+                // log is left as it is, replay is attempted again when table gets WAL writer
+                LOG.error().$("could not replay WAL [table=").$(tableName).$("] {").$((Sinkable) e).$('}').$();
+            }
+        }
+        tableNames.clear();
+    }
+
+    private void sync(long fd, int commitMode) {
+        if (commitMode != CommitMode.NOSYNC && ff.fsync(fd) != 0) {
+            throw CairoException.instance(ff.errno()).put("Could not flush WAL log [fd=").put(fd).put(']');
+        }
+    }
+
+    class Table {
+        final String name;
+        private final ObjList<Txn> pending = new ObjList<>();
+        private final ReadWriteMemory log = new ReadWriteMemory();
+        private int walId = 0;
+        private long baseSeqTxn = 0;
+        private long seqTxn = 0;
+        private long appliedSeqTxn = 0;
+        // suspended table keeps its transactions until it is resumed
+        private boolean suspended = false;
+
+        private Table(String name) {
+            this.name = name;
+        }
+
+        synchronized void applied(long seqTxn) {
+            this.appliedSeqTxn = seqTxn;
+            log.putLong(SEQ_OFFSET_APPLIED_TXN, seqTxn);
+            if (seqTxn == this.seqTxn) {
+                // all published transactions are applied, their records are not needed anymore
+                baseSeqTxn = seqTxn;
+                Unsafe.getUnsafe().storeFence();
+                log.putLong(SEQ_OFFSET_BASE_TXN, seqTxn);
+                log.jumpTo(SEQ_HEADER_SIZE);
+            }
+            sync(log.getFd(), commitMode);
+        }
+
+        /**
+         * Records batch of transactions that is about to be committed to the table, so that replay can tell
+         * whether the batch made it to the table before restart.
+         *
+         * @param seqTxn    last transaction of the batch
+         * @param writerTxn table transaction prior to commit of the batch
+         */
+        synchronized void applying(long seqTxn, long writerTxn) {
+            log.putLong(SEQ_OFFSET_APPLYING_WRITER_TXN, writerTxn);
+            Unsafe.getUnsafe().storeFence();
+            log.putLong(SEQ_OFFSET_APPLYING_TXN, seqTxn);
+            sync(log.getFd(), commitMode);
+        }
+
+        synchronized boolean drain(ObjList<Txn> sink) {
+            final int n = pending.size();
+            if (n == 0 || suspended) {
+                return false;
+            }
+            for (int i = 0; i < n; i++) {
+                sink.add(pending.getQuick(i));
+            }
+            pending.clear();
+            return true;
+        }
+
+        synchronized long getAppliedSeqTxn() {
+            return appliedSeqTxn;
+        }
+
+        synchronized boolean isSuspended() {
+            return suspended;
+        }
+
+        synchronized void requeue(ObjList<Txn> txns) {
+            // failed transactions go back in front of anything published since they were drained
+            for (int i = 0, n = pending.size(); i < n; i++) {
+                txns.add(pending.getQuick(i));
+            }
+            pending.clear();
+            for (int i = 0, n = txns.size(); i < n; i++) {
+                pending.add(txns.getQuick(i));
+            }
+        }
+
+        synchronized void resume() {
+            suspended = false;
+        }
+
+        synchronized void suspend() {
+            suspended = true;
+        }
+
+        private synchronized void close() {
+            log.close();
+        }
+
+        private void open() {
+            path.of(root).concat(name).concat(TableUtils.WAL_DIR_NAME).put(Files.SEPARATOR);
+            final int walDirLen = path.length();
+            if (!ff.exists(path.$()) && ff.mkdirs(path, mkDirMode) != 0 && !ff.exists(path)) {
+                throw CairoException.instance(ff.errno()).put("Cannot create WAL directory: ").put(path);
+            }
+            log.of(ff, path.trimTo(walDirLen).concat(TableUtils.WAL_SEQ_FILE_NAME).$(), ff.getPageSize());
+            try {
+                if (log.getAppendOffset() < SEQ_HEADER_SIZE) {
+                    log.jumpTo(0);
+                    for (long offset = 0; offset < SEQ_HEADER_SIZE; offset += 8) {
+                        log.putLong(0);
+                    }
+                    sync(log.getFd(), commitMode);
+                } else {
+                    replayLog(walDirLen);
+                }
+                closeDeadWals(walDirLen);
+            } catch (CairoException e) {
+                log.close();
+                throw e;
+            } finally {
+                path.trimTo(walDirLen);
+            }
+        }
+
+        private void replayLog(int walDirLen) {
+            baseSeqTxn = log.getLong(SEQ_OFFSET_BASE_TXN);
+            seqTxn = log.getLong(SEQ_OFFSET_TXN);
+            appliedSeqTxn = log.getLong(SEQ_OFFSET_APPLIED_TXN);
+            log.jumpTo(SEQ_HEADER_SIZE + (seqTxn - baseSeqTxn) * SEQ_RECORD_SIZE);
+
+            final long applyingSeqTxn = log.getLong(SEQ_OFFSET_APPLYING_TXN);
+            if (applyingSeqTxn > appliedSeqTxn) {
+                path.of(root).concat(name).concat(TableUtils.TXN_FILE_NAME).$();
+                try (ReadOnlyMemory txMem = new ReadOnlyMemory(ff, path, ff.getPageSize(), TableUtils.TX_OFFSET_TXN_CHECK + 8)) {
+                    if (isCommitted(txMem, log.getLong(SEQ_OFFSET_APPLYING_WRITER_TXN))) {
+                        appliedSeqTxn = applyingSeqTxn;
+                        log.putLong(SEQ_OFFSET_APPLIED_TXN, appliedSeqTxn);
+                    }
+                }
+                path.of(root).concat(name).concat(TableUtils.WAL_DIR_NAME).put(Files.SEPARATOR);
+            }
+
+            final IntObjHashMap<WalMetadata> metadataByWalId = new IntObjHashMap<>();
+            for (long txn = appliedSeqTxn + 1; txn <= seqTxn; txn++) {
+                final long offset = SEQ_HEADER_SIZE + (txn - baseSeqTxn - 1) * SEQ_RECORD_SIZE;
+                final int walId = log.getInt(offset);
+                final long rowLo = log.getLong(offset + 8);
+                final long rowHi = log.getLong(offset + 16);
+                final long flags = log.getLong(offset + 24);
+
+                WalMetadata metadata = metadataByWalId.get(walId);
+                if (metadata == null) {
+                    metadata = rowHi > rowLo ? readWalMetadata(walDirLen, walId) : WalMetadata.EMPTY;
+                    metadataByWalId.put(walId, metadata);
+                }
+
+                final Txn t = new Txn(
+                        name,
+                        walId,
+                        log.getInt(offset + 4),
+                        rowLo,
+                        rowHi,
+                        metadata.columnNames,
+                        metadata.columnTypes,
+                        metadata.timestampIndex,
+                        (flags & SEQ_FLAG_LAST_IN_SEGMENT) != 0,
+                        (flags & SEQ_FLAG_LAST_IN_WAL) != 0
+                );
+                t.seqTxn = txn;
+                pending.add(t);
+                this.walId = Math.max(this.walId, walId);
+            }
+            LOG.info().$("replayed WAL [table=").$(name).$(", appliedSeqTxn=").$(appliedSeqTxn).$(", seqTxn=").$(seqTxn).$(']').$();
+        }
+
+        // writers that were open before restart cannot publish anymore, their directories
+        // are removed after transactions published ahead of them are applied
+        private void closeDeadWals(int walDirLen) {
+            walIds.clear();
+            ff.iterateDir(path.trimTo(walDirLen).$(), (fileName, type) -> {
+                if (type == Files.DT_DIR) {
+                    nativeLPSZ.of(fileName);
+                    if (!Files.isDots(nativeLPSZ)) {
+                        try {
+                            walIds.add(Numbers.parseInt(nativeLPSZ));
+                        } catch (NumericException ignore) {
+                        }
+                    }
+                }
+            });
+
+            for (int i = 0, n = walIds.size(); i < n; i++) {
+                final int walId = walIds.getQuick(i);
+                this.walId = Math.max(this.walId, walId);
+                if (!isClosed(walId)) {
+                    final WalMetadata metadata = WalMetadata.EMPTY;
+                    publish(new Txn(name, walId, 0, 0, 0, metadata.columnNames, metadata.columnTypes, metadata.timestampIndex, true, true), commitMode);
+                }
+            }
+        }
+
+        // writer has been closed before restart and its directory is due to be removed
+        private boolean isClosed(int walId) {
+            for (int i = 0, n = pending.size(); i < n; i++) {
+                final Txn txn = pending.getQuick(i);
+                if (txn.walId == walId && txn.lastInWal) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private synchronized long publish(Txn txn, int commitMode) {
+            if (!log.isOpen()) {
+                throw CairoException.instance(0).put("WAL sequencer is closed [table=").put(name).put(']');
+            }
+            txn.seqTxn = ++seqTxn;
+            log.putInt(txn.walId);
+            log.putInt(txn.segmentId);
+            log.putLong(txn.rowLo);
+            log.putLong(txn.rowHi);
+            log.putLong((txn.lastInSegment ? SEQ_FLAG_LAST_IN_SEGMENT : 0) | (txn.lastInWal ? SEQ_FLAG_LAST_IN_WAL : 0));
+            Unsafe.getUnsafe().storeFence();
+            log.putLong(SEQ_OFFSET_TXN, seqTxn);
+            sync(log.getFd(), commitMode);
+            pending.add(txn);
+            return txn.seqTxn;
+        }
+
+        private WalMetadata readWalMetadata(int walDirLen, int walId) {
+            path.trimTo(walDirLen).put(walId);
+            path.concat(TableUtils.WAL_META_FILE_NAME).$();
+            try (ReadOnlyMemory mem = new ReadOnlyMemory(ff, path, ff.getPageSize(), ff.length(path))) {
+                final int columnCount = mem.getInt(0);
+                final WalMetadata metadata = new WalMetadata(mem.getInt(4));
+                long offset = 8;
+                for (int i = 0; i < columnCount; i++) {
+                    metadata.columnTypes.add(mem.getInt(offset));
+                    final CharSequence columnName = mem.getStr(offset + 4);
+                    metadata.columnNames.add(Chars.stringOf(columnName));
+                    offset += 4 + VirtualMemory.getStorageLength(columnName);
+                }
+                return metadata;
+            } finally {
+                path.trimTo(walDirLen);
+            }
+        }
+    }
+
+    /**
+     * Committed range of rows in WAL segment. Transaction with empty row range only releases its segment.
+     */
+    static class Txn {
+        final String tableName;
+        final int walId;
+        final int segmentId;
+        final long rowLo;
+        final long rowHi;
+        // column names and types of the WAL writer, they are shared by all transactions of the writer
+        final ObjList<String> columnNames;
+        final IntList columnTypes;
+        final int timestampIndex;
+        // segment will not receive more rows, it can be removed when this transaction is applied
+        final boolean lastInSegment;
+        // WAL writer is closed, its directory can be removed when this transaction is applied
+        final boolean lastInWal;
+        long seqTxn;
+
+        Txn(
+                String tableName,
+                int walId,
+                int segmentId,
+                long rowLo,
+                long rowHi,
+                ObjList<String> columnNames,
+                IntList columnTypes,
+                int timestampIndex,
+                boolean lastInSegment,
+                boolean lastInWal
+        ) {
+            this.tableName = tableName;
+            this.walId = walId;
+            this.segmentId = segmentId;
+            this.rowLo = rowLo;
+            this.rowHi = rowHi;
+            this.columnNames = columnNames;
+            this.columnTypes = columnTypes;
+            this.timestampIndex = timestampIndex;
+            this.lastInSegment = lastInSegment;
+            this.lastInWal = lastInWal;
+        }
+    }
+
+    private static class WalMetadata {
+        private static final WalMetadata EMPTY = new WalMetadata(-1);
+        private final ObjList<String> columnNames = new ObjList<>();
+        private final IntList columnTypes = new IntList();
+        private final int timestampIndex;
+
+        private WalMetadata(int timestampIndex) {
+            this.timestampIndex = timestampIndex;
+        }
+    }
+}
@@ -0,0 +1,482 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.*;
+import com.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Appends rows of a table to a write-ahead log instead of the table itself. Any number of WAL writers
+ * can be open for the same table at the same time, each writing into its own directory of segments:
+ * <pre>
+ *     [table]/wal/[walId]/_meta
+ *     [table]/wal/[walId]/[segmentId]/[column].d|.i
+ * </pre>
+ * Column files use partition format except for symbols, which are stored as strings because symbol
+ * tables belong to {@link TableWriter}. Column names and types of the writer are kept in _meta file, so
+ * that committed rows can be applied after restart. Committed rows are published to {@link WalSequencer}
+ * and become visible to readers when {@link WalApplyJob} merges them into the table.
+ * <p>
+ * Instances are not thread-safe, each producer thread is expected to use its own writer.
+ */
+public class WalWriter implements Closeable {
+    private static final Log LOG = LogFactory.getLog(WalWriter.class);
+    private final FilesFacade ff;
+    private final WalSequencer sequencer;
+    private final String tableName;
+    private final int walId;
+    private final int mkDirMode;
+    private final int commitMode;
+    private final long pageSize;
+    private final long segmentRolloverRowCount;
+    private final Path path = new Path();
+    private final int walLen;
+    private final int columnCount;
+    private final ObjList<String> columnNames = new ObjList<>();
+    private final IntList columnTypes = new IntList();
+    private final int timestampIndex;
+    private final ObjList<AppendMemory> columns = new ObjList<>();
+    private final ObjList<Runnable> nullers = new ObjList<>();
+    private final LongList refs = new LongList();
+    // append offsets of variable length columns at start of current row
+    private final LongList rowStartOffsets = new LongList();
+    // append offsets of variable length columns at start of uncommitted transaction
+    private final LongList txnStartOffsets = new LongList();
+    private final Row row = new Row();
+    private long masterRef = 0;
+    private int segmentId = -1;
+    private long segmentRowCount = 0;
+    private long txnRowLo = 0;
+    private boolean walPublished = false;
+
+    WalWriter(CairoConfiguration configuration, CharSequence tableName, WalSequencer sequencer) {
+        this.ff = configuration.getFilesFacade();
+        this.sequencer = sequencer;
+        this.tableName = Chars.stringOf(tableName);
+        this.mkDirMode = configuration.getMkDirMode();
+        this.commitMode = configuration.getCommitMode();
+        this.pageSize = configuration.getWalPageSize();
+        this.segmentRolloverRowCount = configuration.getWalSegmentRolloverRowCount();
+        if (TableUtils.exists(ff, path, configuration.getRoot(), tableName) != TableUtils.TABLE_EXISTS) {
+            Misc.free(path);
+            throw CairoException.instance(0).put("Table does not exist [name=").put(tableName).put(']');
+        }
+        this.walId = sequencer.nextWalId(tableName);
+        try {
+            path.of(configuration.getRoot()).concat(tableName).concat(TableUtils.META_FILE_NAME).$();
+            try (TableReaderMetadata metadata = new TableReaderMetadata(ff, path)) {
+                this.columnCount = metadata.getColumnCount();
+                this.timestampIndex = metadata.getTimestampIndex();
+                for (int i = 0; i < columnCount; i++) {
+                    columnNames.add(Chars.stringOf(metadata.getColumnName(i)));
+                    columnTypes.add(metadata.getColumnType(i));
+                }
+            }
+
+            // WAL directory of the table is created by sequencer
+            path.of(configuration.getRoot()).concat(tableName).concat(TableUtils.WAL_DIR_NAME).put(Files.SEPARATOR).put(walId);
+            this.walLen = path.length();
+            if (ff.mkdirs(path.put(Files.SEPARATOR).$(), mkDirMode) != 0) {
+                throw CairoException.instance(ff.errno()).put("Cannot create WAL: ").put(path);
+            }
+            writeMetadata();
+            configureColumns();
+            openSegment();
+        } catch (CairoException e) {
+            LOG.error().$("could not open WAL [table=").$(tableName).$(", walId=").$(walId).$("] {").$((Sinkable) e).$('}').$();
+            freeColumns(false);
+            Misc.free(path);
+            throw e;
+        }
+    }
+
+    /**
+     * Rolls back uncommitted rows and releases the writer. Segments that still have transactions waiting
+     * to be applied are removed by {@link WalApplyJob}.
+     */
+    @Override
+    public void close() {
+        if (segmentId == -1) {
+            return;
+        }
+        try {
+            rollback();
+            freeColumns(true);
+            if (walPublished) {
+                // earlier segments may still be waiting to be applied, apply job removes WAL directory
+                sequencer.publish(newTxn(txnRowLo, txnRowLo, true, true), CommitMode.NOSYNC);
+            } else {
+                removeWalDir();
+            }
+        } finally {
+            segmentId = -1;
+            Misc.free(path);
+            LOG.info().$("closed WAL [table=").$(tableName).$(", walId=").$(walId).$(']').$();
+        }
+    }
+
+    /**
+     * Publishes rows appended since last commit to sequencer with configured durability level. Rows
+     * are not visible to table readers until the transaction is applied to the table.
+     *
+     * @return sequence number of the transaction or -1 when there was nothing to commit
+     */
+    public long commit() {
+        return commit(commitMode);
+    }
+
+    /**
+     * Publishes rows appended since last commit to sequencer. Modes other than {@link CommitMode#NOSYNC}
+     * flush segment files and sequencer log in the calling thread before method returns, transaction
+     * survives restart from then on.
+     *
+     * @param commitMode one of {@link CommitMode} constants
+     * @return sequence number of the transaction or -1 when there was nothing to commit
+     */
+    public long commit(int commitMode) {
+        if ((masterRef & 1) != 0) {
+            row.cancel();
+        }
+
+        if (segmentRowCount == txnRowLo) {
+            return -1;
+        }
+
+        if (commitMode != CommitMode.NOSYNC) {
+            syncColumns();
+        }
+
+        final boolean roll = segmentRowCount >= segmentRolloverRowCount;
+        if (roll) {
+            // segment files are released before transaction is published, apply job can remove them from then on
+            freeColumns(true);
+        }
+        final long seqTxn = sequencer.publish(newTxn(txnRowLo, segmentRowCount, roll, false), commitMode);
+        walPublished = true;
+        txnRowLo = segmentRowCount;
+        if (roll) {
+            openSegment();
+        } else {
+            storeVarOffsets(txnStartOffsets);
+        }
+        return seqTxn;
+    }
+
+    public int getColumnIndex(CharSequence name) {
+        for (int i = 0; i < columnCount; i++) {
+            if (Chars.equals(columnNames.getQuick(i), name)) {
+                return i;
+            }
+        }
+        throw CairoException.instance(0).put("Invalid column name: ").put(name);
+    }
+
+    public CharSequence getTableName() {
+        return tableName;
+    }
+
+    public int getWalId() {
+        return walId;
+    }
+
+    public Row newRow(long timestamp) {
+        if ((masterRef & 1) != 0) {
+            row.cancel();
+        }
+
+        storeVarOffsets(rowStartOffsets);
+        masterRef++;
+        if (timestampIndex != -1) {
+            row.putLong(timestampIndex, timestamp);
+        }
+        return row;
+    }
+
+    public void rollback() {
+        if ((masterRef & 1) != 0) {
+            row.cancel();
+        }
+        if (segmentRowCount > txnRowLo) {
+            setAppendPosition(txnRowLo, txnStartOffsets);
+            segmentRowCount = txnRowLo;
+        }
+    }
+
+    public long size() {
+        return segmentRowCount - txnRowLo;
+    }
+
+    private static boolean isVariableLength(int type) {
+        return type == ColumnType.STRING || type == ColumnType.SYMBOL || type == ColumnType.BINARY;
+    }
+
+    private void configureColumns() {
+        for (int i = 0; i < columnCount; i++) {
+            final int type = columnTypes.getQuick(i);
+            final AppendMemory mem1 = new AppendMemory();
+            final AppendMemory mem2 = isVariableLength(type) ? new AppendMemory() : null;
+            columns.add(mem1);
+            columns.add(mem2);
+            switch (type) {
+                case ColumnType.BOOLEAN:
+                case ColumnType.BYTE:
+                    nullers.add(() -> mem1.putByte((byte) 0));
+                    break;
+                case ColumnType.DOUBLE:
+                    nullers.add(() -> mem1.putDouble(Double.NaN));
+                    break;
+                case ColumnType.FLOAT:
+                    nullers.add(() -> mem1.putFloat(Float.NaN));
+                    break;
+                case ColumnType.INT:
+                    nullers.add(() -> mem1.putInt(Numbers.INT_NaN));
+                    break;
+                case ColumnType.SHORT:
+                    nullers.add(() -> mem1.putShort((short) 0));
+                    break;
+                case ColumnType.STRING:
+                case ColumnType.SYMBOL:
+                    nullers.add(() -> mem2.putLong(mem1.putNullStr()));
+                    break;
+                case ColumnType.BINARY:
+                    nullers.add(() -> mem2.putLong(mem1.putNullBin()));
+                    break;
+                default:
+                    nullers.add(() -> mem1.putLong(Numbers.LONG_NaN));
+                    break;
+            }
+        }
+        refs.seed(columnCount, 0);
+        rowStartOffsets.seed(columnCount, 0);
+        txnStartOffsets.seed(columnCount, 0);
+    }
+
+    private void freeColumns(boolean truncate) {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            AppendMemory mem = columns.getQuick(i);
+            if (mem != null) {
+                mem.close(truncate);
+            }
+        }
+    }
+
+    private WalSequencer.Txn newTxn(long rowLo, long rowHi, boolean lastInSegment, boolean lastInWal) {
+        return new WalSequencer.Txn(
+                tableName,
+                walId,
+                segmentId,
+                rowLo,
+                rowHi,
+                columnNames,
+                columnTypes,
+                timestampIndex,
+                lastInSegment,
+                lastInWal
+        );
+    }
+
+    private void openSegment() {
+        segmentId++;
+        segmentRowCount = 0;
+        txnRowLo = 0;
+        txnStartOffsets.fill(0, columnCount, 0);
+        try {
+            path.trimTo(walLen).put(Files.SEPARATOR).put(segmentId);
+            if (ff.mkdirs(path.put(Files.SEPARATOR).$(), mkDirMode) != 0) {
+                throw CairoException.instance(ff.errno()).put("Cannot create WAL segment: ").put(path);
+            }
+            path.chopZ();
+            final int plen = path.length();
+            for (int i = 0; i < columnCount; i++) {
+                final CharSequence name = columnNames.getQuick(i);
+                columns.getQuick(i * 2).of(ff, TableUtils.dFile(path.trimTo(plen), name), pageSize);
+                AppendMemory mem2 = columns.getQuick(i * 2 + 1);
+                if (mem2 != null) {
+                    mem2.of(ff, TableUtils.iFile(path.trimTo(plen), name), pageSize);
+                }
+            }
+        } finally {
+            path.trimTo(walLen);
+        }
+        LOG.info().$("opened WAL segment [table=").$(tableName).$(", walId=").$(walId).$(", segment=").$(segmentId).$(']').$();
+    }
+
+    private void removeWalDir() {
+        path.trimTo(walLen).$();
+        if (!ff.rmdir(path)) {
+            LOG.error().$("could not remove WAL [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+        }
+    }
+
+    private void setAppendPosition(long rowCount, LongList varOffsets) {
+        for (int i = 0; i < columnCount; i++) {
+            final int type = columnTypes.getQuick(i);
+            final AppendMemory mem1 = columns.getQuick(i * 2);
+            if (isVariableLength(type)) {
+                mem1.jumpTo(varOffsets.getQuick(i));
+                columns.getQuick(i * 2 + 1).jumpTo(rowCount * 8);
+            } else {
+                mem1.jumpTo(rowCount << ColumnType.pow2SizeOf(type));
+            }
+        }
+    }
+
+    private void storeVarOffsets(LongList varOffsets) {
+        for (int i = 0; i < columnCount; i++) {
+            if (isVariableLength(columnTypes.getQuick(i))) {
+                varOffsets.setQuick(i, columns.getQuick(i * 2).getAppendOffset());
+            }
+        }
+    }
+
+    private void sync(long fd) {
+        if (ff.fsync(fd) != 0) {
+            throw CairoException.instance(ff.errno()).put("Could not flush WAL [fd=").put(fd).put(']');
+        }
+    }
+
+    private void syncColumns() {
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            AppendMemory mem = columns.getQuick(i);
+            if (mem != null) {
+                sync(mem.getFd());
+            }
+        }
+    }
+
+    private void writeMetadata() {
+        try (AppendMemory mem = new AppendMemory(ff, path.trimTo(walLen).concat(TableUtils.WAL_META_FILE_NAME).$(), ff.getPageSize())) {
+            mem.putInt(columnCount);
+            mem.putInt(timestampIndex);
+            for (int i = 0; i < columnCount; i++) {
+                mem.putInt(columnTypes.getQuick(i));
+                mem.putStr(columnNames.getQuick(i));
+            }
+            if (commitMode != CommitMode.NOSYNC) {
+                sync(mem.getFd());
+            }
+        } finally {
+            path.trimTo(walLen);
+        }
+    }
+
+    public class Row {
+        public void append() {
+            if ((masterRef & 1) == 0) {
+                return;
+            }
+
+            for (int i = 0; i < columnCount; i++) {
+                if (refs.getQuick(i) < masterRef) {
+                    nullers.getQuick(i).run();
+                }
+            }
+            segmentRowCount++;
+            masterRef++;
+        }
+
+        public void cancel() {
+            if ((masterRef & 1) == 0) {
+                return;
+            }
+            setAppendPosition(segmentRowCount, rowStartOffsets);
+            refs.fill(0, columnCount, --masterRef);
+        }
+
+        public void putBin(int index, long address, long len) {
+            columns.getQuick(index * 2 + 1).putLong(columns.getQuick(index * 2).putBin(address, len));
+            notNull(index);
+        }
+
+        public void putBin(int index, BinarySequence sequence) {
+            columns.getQuick(index * 2 + 1).putLong(columns.getQuick(index * 2).putBin(sequence));
+            notNull(index);
+        }
+
+        public void putBool(int index, boolean value) {
+            columns.getQuick(index * 2).putBool(value);
+            notNull(index);
+        }
+
+        public void putByte(int index, byte value) {
+            columns.getQuick(index * 2).putByte(value);
+            notNull(index);
+        }
+
+        public void putDate(int index, long value) {
+            putLong(index, value);
+        }
+
+        public void putDouble(int index, double value) {
+            columns.getQuick(index * 2).putDouble(value);
+            notNull(index);
+        }
+
+        public void putFloat(int index, float value) {
+            columns.getQuick(index * 2).putFloat(value);
+            notNull(index);
+        }
+
+        public void putInt(int index, int value) {
+            columns.getQuick(index * 2).putInt(value);
+            notNull(index);
+        }
+
+        public void putLong(int index, long value) {
+            columns.getQuick(index * 2).putLong(value);
+            notNull(index);
+        }
+
+        public void putShort(int index, short value) {
+            columns.getQuick(index * 2).putShort(value);
+            notNull(index);
+        }
+
+        public void putStr(int index, CharSequence value) {
+            columns.getQuick(index * 2 + 1).putLong(columns.getQuick(index * 2).putStr(value));
+            notNull(index);
+        }
+
+        public void putStr(int index, CharSequence value, int pos, int len) {
+            columns.getQuick(index * 2 + 1).putLong(columns.getQuick(index * 2).putStr(value, pos, len));
+            notNull(index);
+        }
+
+        public void putSym(int index, CharSequence value) {
+            putStr(index, value);
+        }
+
+        public void putTimestamp(int index, long value) {
+            putLong(index, value);
+        }
+
+        private void notNull(int index) {
+            refs.setQuick(index, masterRef);
+        }
+    }
+}
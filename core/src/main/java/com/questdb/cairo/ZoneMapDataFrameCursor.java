@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.DataFrame;
+import com.questdb.cairo.sql.DataFrameCursor;
+import com.questdb.cairo.sql.SymbolTable;
+
+/**
+ * Forward data frame cursor that removes rows zone maps rule out from frames of underlying cursor. Frames
+ * are skipped entirely or split into several frames of the same partition.
+ */
+public class ZoneMapDataFrameCursor implements DataFrameCursor {
+    private final ZoneMapFilter filter;
+    private final ZoneMapDataFrame frame = new ZoneMapDataFrame();
+    private DataFrameCursor base;
+    private DataFrame baseFrame;
+    private int partitionIndex = -1;
+    private boolean partitionMatches;
+    private long rowLo;
+    private long rowHi;
+
+    public ZoneMapDataFrameCursor(ZoneMapFilter filter) {
+        this.filter = filter;
+    }
+
+    @Override
+    public void close() {
+        if (base != null) {
+            base.close();
+            base = null;
+        }
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public TableReader getTableReader() {
+        return base.getTableReader();
+    }
+
+    @Override
+    public boolean reload() {
+        boolean moreData = base.reload();
+        clear();
+        return moreData;
+    }
+
+    @Override
+    public void toTop() {
+        base.toTop();
+        clear();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (true) {
+            if (rowLo < rowHi) {
+                final long lo = filter.skip(rowLo, rowHi);
+                if (lo < rowHi) {
+                    final long hi = filter.span(lo, rowHi);
+                    frame.rowLo = lo;
+                    frame.rowHi = hi;
+                    rowLo = hi;
+                    return true;
+                }
+                rowLo = rowHi;
+            }
+
+            if (!base.hasNext()) {
+                return false;
+            }
+
+            baseFrame = base.next();
+            rowLo = baseFrame.getRowLo();
+            rowHi = baseFrame.getRowHi();
+            if (baseFrame.getPartitionIndex() != partitionIndex) {
+                final TableReader reader = base.getTableReader();
+                partitionIndex = baseFrame.getPartitionIndex();
+                partitionMatches = filter.of(reader, partitionIndex, reader.openPartition(partitionIndex));
+            }
+
+            if (!partitionMatches) {
+                // partition is skipped along with all of its frames
+                rowLo = rowHi;
+            }
+        }
+    }
+
+    @Override
+    public DataFrame next() {
+        return frame;
+    }
+
+    public DataFrameCursor of(DataFrameCursor base) {
+        this.base = base;
+        clear();
+        return this;
+    }
+
+    private void clear() {
+        partitionIndex = -1;
+        baseFrame = null;
+        rowLo = rowHi = 0;
+    }
+
+    private class ZoneMapDataFrame implements DataFrame {
+        private long rowLo;
+        private long rowHi;
+
+        @Override
+        public BitmapIndexReader getBitmapIndexReader(int columnIndex, int direction) {
+            return baseFrame.getBitmapIndexReader(columnIndex, direction);
+        }
+
+        @Override
+        public int getPartitionIndex() {
+            return baseFrame.getPartitionIndex();
+        }
+
+        @Override
+        public long getRowHi() {
+            return rowHi;
+        }
+
+        @Override
+        public long getRowLo() {
+            return rowLo;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+/**
+ * Conjunction of simple column predicates that is tested against zone maps to find row ranges that cannot
+ * match. Predicates mirror SQL comparison functions, which compare values as doubles. Predicate is ignored
+ * for partition without zone map and for rows zone map does not cover yet, writer extends zone map of its
+ * current partition only when rows fill another block.
+ */
+public class ZoneMapFilter {
+    public static final int OP_EQ = 0;
+    public static final int OP_LT = 1;
+    public static final int OP_GT = 2;
+    // equality of doubles is tested with tolerance
+    private static final double EQ_TOLERANCE = 0.0000000001;
+    private static final int ENTRY_LONGS = (int) (ZoneMapWriter.ENTRY_SIZE / 8);
+    private static final int HEADER_LONGS = (int) (ZoneMapWriter.HEADER_SIZE / 8);
+    private final IntList columnIndexes = new IntList();
+    private final IntList ops = new IntList();
+    private final LongList values = new LongList();
+    private final ObjList<LongList> zoneMaps = new ObjList<>();
+    private final IntList activeConditions = new IntList();
+    private final IntList doubleColumns = new IntList();
+
+    public static boolean isSupported(int columnType) {
+        return ZoneMapWriter.isSupported(columnType);
+    }
+
+    public void add(int columnIndex, int op, double value) {
+        if (value != value) {
+            return;
+        }
+        columnIndexes.add(columnIndex);
+        ops.add(op);
+        values.add(Double.doubleToRawLongBits(value));
+        zoneMaps.add(new LongList());
+    }
+
+    public int size() {
+        return columnIndexes.size();
+    }
+
+    /**
+     * Loads zone maps of partition for all predicates.
+     *
+     * @param reader         table reader
+     * @param partitionIndex index of open partition
+     * @param rowCount       number of rows in partition reader can see
+     * @return false when no row of partition can match
+     */
+    boolean of(TableReader reader, int partitionIndex, long rowCount) {
+        activeConditions.clear();
+        doubleColumns.clear();
+        for (int i = 0, n = columnIndexes.size(); i < n; i++) {
+            final int columnIndex = columnIndexes.getQuick(i);
+            final LongList zoneMap = zoneMaps.getQuick(i);
+            doubleColumns.add(ZoneMapWriter.isDoubleType(reader.getMetadata().getColumnType(columnIndex)) ? 1 : 0);
+            if (reader.readZoneMap(partitionIndex, columnIndex, zoneMap)
+                    && zoneMap.getQuick(0) > 0
+                    && zoneMap.size() >= HEADER_LONGS + (((zoneMap.getQuick(0) - 1) >> zoneMap.getQuick(1)) + 1) * ENTRY_LONGS) {
+                if (zoneMap.getQuick(0) >= rowCount && !test(i, (int) (ZoneMapWriter.OFFSET_PARTITION_ENTRY / 8))) {
+                    return false;
+                }
+                activeConditions.add(i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds first row that might match predicates.
+     *
+     * @param lo first row, inclusive
+     * @param hi last row, exclusive
+     * @return row between lo and hi or hi when there is no such row
+     */
+    long skip(long lo, long hi) {
+        long row = lo;
+        while (row < hi) {
+            final long next = nextMismatch(row);
+            if (next == row) {
+                return row;
+            }
+            row = next;
+        }
+        return hi;
+    }
+
+    /**
+     * Finds end of range of rows that might match predicates.
+     *
+     * @param lo first row that might match, inclusive
+     * @param hi last row, exclusive
+     * @return first row after lo that does not match or hi
+     */
+    long span(long lo, long hi) {
+        long row = lo;
+        while (row < hi && nextMismatch(row) == row) {
+            row = nextBlock(row);
+        }
+        return Math.min(row, hi);
+    }
+
+    private long nextBlock(long row) {
+        // nearest end of block or of rows covered by zone map
+        long next = Long.MAX_VALUE;
+        for (int i = 0, n = activeConditions.size(); i < n; i++) {
+            final LongList zoneMap = zoneMaps.getQuick(activeConditions.getQuick(i));
+            final long zoneMapRowCount = zoneMap.getQuick(0);
+            if (row < zoneMapRowCount) {
+                final long shift = zoneMap.getQuick(1);
+                next = Math.min(next, Math.min(((row >> shift) + 1) << shift, zoneMapRowCount));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * @return row itself when it might match, otherwise first row after block that cannot match
+     */
+    private long nextMismatch(long row) {
+        for (int i = 0, n = activeConditions.size(); i < n; i++) {
+            final int index = activeConditions.getQuick(i);
+            final LongList zoneMap = zoneMaps.getQuick(index);
+            final long zoneMapRowCount = zoneMap.getQuick(0);
+            if (row < zoneMapRowCount) {
+                final long shift = zoneMap.getQuick(1);
+                final long block = row >> shift;
+                if (!test(index, (int) (HEADER_LONGS + block * ENTRY_LONGS))) {
+                    return Math.min((block + 1) << shift, zoneMapRowCount);
+                }
+            }
+        }
+        return row;
+    }
+
+    private boolean test(int index, int entry) {
+        final LongList zoneMap = zoneMaps.getQuick(index);
+        final double min;
+        final double max;
+        if (doubleColumns.getQuick(index) == 1) {
+            min = Double.longBitsToDouble(zoneMap.getQuick(entry + 1));
+            max = Double.longBitsToDouble(zoneMap.getQuick(entry + 2));
+        } else {
+            min = zoneMap.getQuick(entry + 1);
+            max = zoneMap.getQuick(entry + 2);
+        }
+
+        final double value = Double.longBitsToDouble(values.getQuick(index));
+        switch (ops.getQuick(index)) {
+            case OP_LT:
+                return min < value;
+            case OP_GT:
+                return max > value;
+            default:
+                return min - EQ_TOLERANCE < value && value < max + EQ_TOLERANCE;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.*;
+import com.questdb.std.str.LPSZ;
+import com.questdb.std.str.Path;
+
+import java.io.Closeable;
+
+/**
+ * Maintains zone maps of fixed size numeric columns. Zone map is "column.zm" file in partition directory,
+ * it holds null count, minimum and maximum of column values for the whole partition and for each block of
+ * rows. Values of integer columns are kept as longs, nulls are included in minimum and maximum because filters
+ * compare them as they are. Values of FLOAT and DOUBLE columns are kept as double bits, NaN values are counted
+ * as nulls only.
+ * <p>
+ * File layout is: row count covered by zone map, block shift, partition entry, block entries. Each entry is
+ * null count, minimum and maximum, 8 bytes each. Zone map is updated incrementally from the row count it covers
+ * and must be removed whenever rows it covers are rewritten, see {@link #invalidate(Path, CharSequence, long)}.
+ * Zone map may cover fewer rows than partition has, readers do not prune rows it does not cover.
+ */
+class ZoneMapWriter implements Closeable {
+    static final long OFFSET_ROW_COUNT = 0;
+    static final long OFFSET_BLOCK_SHIFT = 8;
+    static final long OFFSET_PARTITION_ENTRY = 16;
+    static final long HEADER_SIZE = 40;
+    static final long ENTRY_SIZE = 24;
+    private static final Log LOG = LogFactory.getLog(ZoneMapWriter.class);
+    private static final long BUF_SIZE = HEADER_SIZE + ENTRY_SIZE;
+    private static final long BLOCK_ENTRY = HEADER_SIZE;
+    private final FilesFacade ff;
+    private final int blockShift;
+    private long buf = Unsafe.malloc(BUF_SIZE);
+
+    ZoneMapWriter(FilesFacade ff, int blockSize) {
+        this.ff = ff;
+        this.blockShift = Numbers.msb(Numbers.ceilPow2(blockSize));
+    }
+
+    static boolean isDoubleType(int columnType) {
+        return columnType == ColumnType.FLOAT || columnType == ColumnType.DOUBLE;
+    }
+
+    static boolean isSupported(int columnType) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    int getBlockShift() {
+        return blockShift;
+    }
+
+    @Override
+    public void close() {
+        if (buf != 0) {
+            Unsafe.free(buf, BUF_SIZE);
+            buf = 0;
+        }
+    }
+
+    /**
+     * Removes zone map when it covers more rows than partition has. This is the case after rows have been
+     * rolled back, zone map has to be rebuilt before rows are appended again.
+     *
+     * @param path     partition directory, it is restored before method returns
+     * @param rowCount number of rows in partition
+     */
+    void invalidate(Path path, CharSequence columnName, long rowCount) {
+        final int plen = path.length();
+        try {
+            if (ff.exists(TableUtils.zmFile(path, columnName))) {
+                if (rowCount == 0 || readRowCount(path) > rowCount) {
+                    remove(path);
+                }
+            }
+        } finally {
+            path.trimTo(plen);
+        }
+    }
+
+    /**
+     * Brings zone map up to date with rows of partition. Failure to update zone map is not fatal, file is
+     * removed and readers do not prune partition until it is rebuilt.
+     *
+     * @param path       partition directory, it is restored before method returns
+     * @param columnTop  number of rows at top of partition that precede column data
+     * @param dataFd     descriptor of column data file or -1 to open file by name
+     * @param rowCount   number of rows in partition
+     */
+    void update(Path path, CharSequence columnName, int columnType, long columnTop, long dataFd, long rowCount) {
+        final int plen = path.length();
+        long fd = -1;
+        try {
+            fd = ff.openRW(TableUtils.zmFile(path, columnName));
+            if (fd == -1) {
+                LOG.error().$("cannot open zone map [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+                return;
+            }
+            update0(path.trimTo(plen), columnName, columnType, columnTop, dataFd, rowCount, fd);
+        } catch (CairoException e) {
+            LOG.error().$("cannot update zone map [path=").$(path.trimTo(plen)).$(Files.SEPARATOR).utf8(columnName).$("] {").$((Sinkable) e).$('}').$();
+            if (fd != -1) {
+                ff.close(fd);
+                fd = -1;
+            }
+            remove(TableUtils.zmFile(path.trimTo(plen), columnName));
+        } finally {
+            if (fd != -1) {
+                ff.close(fd);
+            }
+            path.trimTo(plen);
+        }
+    }
+
+    private static void resetEntry(long address, boolean doubles) {
+        Unsafe.getUnsafe().putLong(address, 0);
+        if (doubles) {
+            Unsafe.getUnsafe().putDouble(address + 8, Double.POSITIVE_INFINITY);
+            Unsafe.getUnsafe().putDouble(address + 16, Double.NEGATIVE_INFINITY);
+        } else {
+            Unsafe.getUnsafe().putLong(address + 8, Long.MAX_VALUE);
+            Unsafe.getUnsafe().putLong(address + 16, Long.MIN_VALUE);
+        }
+    }
+
+    private static void addDouble(long address, double value) {
+        if (value != value) {
+            Unsafe.getUnsafe().putLong(address, Unsafe.getUnsafe().getLong(address) + 1);
+        } else {
+            if (value < Unsafe.getUnsafe().getDouble(address + 8)) {
+                Unsafe.getUnsafe().putDouble(address + 8, value);
+            }
+            if (value > Unsafe.getUnsafe().getDouble(address + 16)) {
+                Unsafe.getUnsafe().putDouble(address + 16, value);
+            }
+        }
+    }
+
+    private static void addLong(long address, long value, boolean isNull) {
+        if (isNull) {
+            Unsafe.getUnsafe().putLong(address, Unsafe.getUnsafe().getLong(address) + 1);
+        }
+        if (value < Unsafe.getUnsafe().getLong(address + 8)) {
+            Unsafe.getUnsafe().putLong(address + 8, value);
+        }
+        if (value > Unsafe.getUnsafe().getLong(address + 16)) {
+            Unsafe.getUnsafe().putLong(address + 16, value);
+        }
+    }
+
+    private static void mergeEntry(long dst, long src, boolean doubles) {
+        Unsafe.getUnsafe().putLong(dst, Unsafe.getUnsafe().getLong(dst) + Unsafe.getUnsafe().getLong(src));
+        if (doubles) {
+            Unsafe.getUnsafe().putDouble(dst + 8, Math.min(Unsafe.getUnsafe().getDouble(dst + 8), Unsafe.getUnsafe().getDouble(src + 8)));
+            Unsafe.getUnsafe().putDouble(dst + 16, Math.max(Unsafe.getUnsafe().getDouble(dst + 16), Unsafe.getUnsafe().getDouble(src + 16)));
+        } else {
+            Unsafe.getUnsafe().putLong(dst + 8, Math.min(Unsafe.getUnsafe().getLong(dst + 8), Unsafe.getUnsafe().getLong(src + 8)));
+            Unsafe.getUnsafe().putLong(dst + 16, Math.max(Unsafe.getUnsafe().getLong(dst + 16), Unsafe.getUnsafe().getLong(src + 16)));
+        }
+    }
+
+    private void addValue(int columnType, long address, boolean top) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+                addLong(buf + BLOCK_ENTRY, top ? 0 : Unsafe.getUnsafe().getByte(address), false);
+                break;
+            case ColumnType.SHORT:
+                addLong(buf + BLOCK_ENTRY, top ? 0 : Unsafe.getUnsafe().getShort(address), false);
+                break;
+            case ColumnType.INT:
+                final int i = top ? Numbers.INT_NaN : Unsafe.getUnsafe().getInt(address);
+                addLong(buf + BLOCK_ENTRY, i, i == Numbers.INT_NaN);
+                break;
+            case ColumnType.FLOAT:
+                addDouble(buf + BLOCK_ENTRY, top ? Float.NaN : Unsafe.getUnsafe().getFloat(address));
+                break;
+            case ColumnType.DOUBLE:
+                addDouble(buf + BLOCK_ENTRY, top ? Double.NaN : Unsafe.getUnsafe().getDouble(address));
+                break;
+            default:
+                final long l = top ? Numbers.LONG_NaN : Unsafe.getUnsafe().getLong(address);
+                addLong(buf + BLOCK_ENTRY, l, l == Numbers.LONG_NaN);
+                break;
+        }
+    }
+
+    private long readRowCount(Path path) {
+        long fd = ff.openRO(path);
+        if (fd == -1) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            if (ff.read(fd, buf, 8, OFFSET_ROW_COUNT) != 8) {
+                return Long.MAX_VALUE;
+            }
+            return Unsafe.getUnsafe().getLong(buf);
+        } finally {
+            ff.close(fd);
+        }
+    }
+
+    private void remove(LPSZ path) {
+        if (!ff.remove(path)) {
+            LOG.error().$("cannot remove zone map [path=").$(path).$(", errno=").$(ff.errno()).$(']').$();
+        }
+    }
+
+    private void update0(Path path, CharSequence columnName, int columnType, long columnTop, long dataFd, long rowCount, long fd) {
+        final boolean doubles = isDoubleType(columnType);
+        final long mask = (1L << blockShift) - 1;
+
+        long lo;
+        if (ff.read(fd, buf, HEADER_SIZE, 0) == HEADER_SIZE
+                && Unsafe.getUnsafe().getLong(buf + OFFSET_BLOCK_SHIFT) == blockShift
+                && Unsafe.getUnsafe().getLong(buf + OFFSET_ROW_COUNT) <= rowCount) {
+            lo = Unsafe.getUnsafe().getLong(buf + OFFSET_ROW_COUNT);
+        } else {
+            lo = 0;
+            resetEntry(buf + OFFSET_PARTITION_ENTRY, doubles);
+        }
+
+        if (lo == rowCount) {
+            return;
+        }
+
+        // partially filled block is carried over, its nulls are already counted by partition entry
+        if ((lo & mask) != 0) {
+            if (ff.read(fd, buf + BLOCK_ENTRY, ENTRY_SIZE, HEADER_SIZE + (lo >> blockShift) * ENTRY_SIZE) != ENTRY_SIZE) {
+                throw CairoException.instance(ff.errno()).put("Cannot read zone map [fd=").put(fd).put(']');
+            }
+            final long partitionEntry = buf + OFFSET_PARTITION_ENTRY;
+            Unsafe.getUnsafe().putLong(partitionEntry, Unsafe.getUnsafe().getLong(partitionEntry) - Unsafe.getUnsafe().getLong(buf + BLOCK_ENTRY));
+        } else {
+            resetEntry(buf + BLOCK_ENTRY, doubles);
+        }
+
+        // map column data of rows being added
+        final int shl = ColumnType.pow2SizeOf(columnType);
+        final long dataLo = Math.max(lo, columnTop) - columnTop;
+        final long dataHi = rowCount - columnTop;
+        long mapOffset = 0;
+        long mapSize = 0;
+        long mapAddress = 0;
+        boolean closeData = false;
+        if (dataHi > dataLo) {
+            if (dataFd == -1) {
+                dataFd = ff.openRO(TableUtils.dFile(path, columnName));
+                if (dataFd == -1) {
+                    throw CairoException.instance(ff.errno()).put("Cannot open ").put(path);
+                }
+                closeData = true;
+            }
+            mapOffset = (dataLo << shl) - (dataLo << shl) % ff.getPageSize();
+            mapSize = (dataHi << shl) - mapOffset;
+            mapAddress = ff.mmap(dataFd, mapSize, mapOffset, Files.MAP_RO);
+            if (mapAddress == -1) {
+                if (closeData) {
+                    ff.close(dataFd);
+                }
+                throw CairoException.instance(ff.errno()).put("Cannot mmap column [fd=").put(dataFd).put(", size=").put(mapSize).put(']');
+            }
+        }
+
+        try {
+            for (long row = lo; row < rowCount; row++) {
+                final boolean top = row < columnTop;
+                addValue(columnType, top ? 0 : mapAddress + ((row - columnTop) << shl) - mapOffset, top);
+                if (((row + 1) & mask) == 0 || row + 1 == rowCount) {
+                    writeEntry(fd, HEADER_SIZE + (row >> blockShift) * ENTRY_SIZE);
+                    mergeEntry(buf + OFFSET_PARTITION_ENTRY, buf + BLOCK_ENTRY, doubles);
+                    resetEntry(buf + BLOCK_ENTRY, doubles);
+                }
+            }
+        } finally {
+            if (mapAddress != 0) {
+                ff.munmap(mapAddress, mapSize);
+            }
+            if (closeData) {
+                ff.close(dataFd);
+            }
+        }
+
+        // row count is written last, readers cannot see blocks it does not cover
+        Unsafe.getUnsafe().putLong(buf + OFFSET_ROW_COUNT, rowCount);
+        Unsafe.getUnsafe().putLong(buf + OFFSET_BLOCK_SHIFT, blockShift);
+        if (ff.write(fd, buf, HEADER_SIZE, 0) != HEADER_SIZE) {
+            throw CairoException.instance(ff.errno()).put("Cannot write zone map [fd=").put(fd).put(']');
+        }
+    }
+
+    private void writeEntry(long fd, long offset) {
+        if (ff.write(fd, buf + BLOCK_ENTRY, ENTRY_SIZE, offset) != ENTRY_SIZE) {
+            throw CairoException.instance(ff.errno()).put("Cannot write zone map [fd=").put(fd).put(']');
+        }
+    }
+}
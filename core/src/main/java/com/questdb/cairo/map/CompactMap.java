@@ -184,6 +184,11 @@ public class CompactMap implements Map {
         return record;
     }
 
+    @Override
+    public long getUsedMemory() {
+        return currentEntryOffset + currentEntrySize + (mask + 1) * 8;
+    }
+
     public long size() {
         return size;
     }
@@ -168,6 +168,11 @@ public class FastMap implements Map {
         return record;
     }
 
+    @Override
+    public long getUsedMemory() {
+        return kPos - kStart + offsets.size() * 8L;
+    }
+
     @Override
     public long size() {
         return size;
@@ -36,6 +36,11 @@ public interface Map extends Mutable, Closeable {
 
     MapRecord getRecord();
 
+    /**
+     * @return number of bytes taken by keys, values and hash slots of this map
+     */
+    long getUsedMemory();
+
     long size();
 
     MapValue valueAt(long address);
@@ -38,6 +38,9 @@ import java.util.Arrays;
 import java.util.Map;
 
 public class ReaderPool extends AbstractPool implements ResourcePool<TableReader> {
+    public static final int TABLE_CURRENT = 0;
+    public static final int TABLE_CHANGED = 1;
+    public static final int TABLE_NOT_POOLED = 2;
 
     private static final Log LOG = LogFactory.getLog(ReaderPool.class);
     private static final long UNLOCKED = -1L;
@@ -131,6 +134,42 @@ public class ReaderPool extends AbstractPool implements ResourcePool<TableReader
         throw EntryUnavailableException.INSTANCE;
     }
 
+    /**
+     * Compares identity and structure version of table with given values using idle pooled reader. Reader is
+     * neither reloaded nor handed out, values are read from files it keeps mapped. Reader slot is claimed
+     * for the duration of the check, so that reader cannot be closed underneath.
+     *
+     * @param name             table name
+     * @param tableId          expected table id
+     * @param structureVersion expected structure version
+     * @return {@link #TABLE_CURRENT} or {@link #TABLE_CHANGED}, {@link #TABLE_NOT_POOLED} when there is no idle reader to check
+     */
+    public int checkTable(CharSequence name, long tableId, long structureVersion) {
+        Entry e = entries.get(name);
+        if (e == null || e.lockOwner != UNLOCKED || isClosed()) {
+            return TABLE_NOT_POOLED;
+        }
+
+        long thread = Thread.currentThread().getId();
+        do {
+            for (int i = 0; i < ENTRY_SIZE; i++) {
+                if (Unsafe.arrayGet(e.readers, i) != null && Unsafe.cas(e.allocations, i, UNALLOCATED, thread)) {
+                    try {
+                        R r = Unsafe.arrayGet(e.readers, i);
+                        if (r != null) {
+                            return r.getTableId() == tableId && r.getCommittedStructureVersion() == structureVersion ? TABLE_CURRENT : TABLE_CHANGED;
+                        }
+                    } finally {
+                        // release time is not updated, check does not count as use of reader
+                        Unsafe.arrayPutOrdered(e.allocations, i, UNALLOCATED);
+                    }
+                }
+            }
+            e = e.next;
+        } while (e != null);
+        return TABLE_NOT_POOLED;
+    }
+
     public int getBusyCount() {
         int count = 0;
         for (Map.Entry<CharSequence, Entry> me : entries.entrySet()) {
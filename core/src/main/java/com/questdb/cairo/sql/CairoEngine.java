@@ -23,6 +23,7 @@
 
 package com.questdb.cairo.sql;
 
+import com.questdb.cairo.QueryCache;
 import com.questdb.cairo.TableReader;
 import com.questdb.cairo.TableWriter;
 import com.questdb.std.str.Path;
@@ -34,6 +35,8 @@ public interface CairoEngine extends Closeable {
     @Override
     void close();
 
+    QueryCache getQueryCache();
+
     TableReader getReader(CharSequence tableName, long version);
 
     int getStatus(Path path, CharSequence tableName, int lo, int hi);
@@ -44,6 +47,18 @@ public interface CairoEngine extends Closeable {
 
     TableWriter getWriter(CharSequence tableName);
 
+    /**
+     * Checks that table has not been dropped and created again and has not changed structure since
+     * given version. Unlike {@link #getReader(CharSequence, long)} this does not check out a reader and
+     * does not depend on availability of pooled readers.
+     *
+     * @param tableName        name of table
+     * @param tableId          table id, see {@link TableReader#getTableId()}
+     * @param structureVersion structure version
+     * @return true when table id and structure version of last commit match
+     */
+    boolean isTableCurrent(CharSequence tableName, long tableId, long structureVersion);
+
     boolean lock(CharSequence tableName);
 
     boolean releaseAllReaders();
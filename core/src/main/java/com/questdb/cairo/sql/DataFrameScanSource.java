@@ -0,0 +1,57 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo.sql;
+
+import com.questdb.cairo.VectorFilter;
+import com.questdb.std.ObjList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Record cursor factory whose cursor returns rows of data frames in table order, either all of them or ones
+ * that pass filter. Aggregating factories can process such data frames in parallel instead of iterating the cursor.
+ */
+public interface DataFrameScanSource {
+
+    /**
+     * @return factory of data frames scanned by cursor or null when cursor is not a plain scan of data frames
+     */
+    @Nullable
+    DataFrameCursorFactory getScanDataFrameCursorFactory();
+
+    /**
+     * Filter instances are not thread-safe, scan that is split between threads uses one instance per thread.
+     *
+     * @return filter instances, one for calling thread and one for each worker, or null when scan returns all rows
+     */
+    @Nullable
+    ObjList<Function> getScanFilters();
+
+    /**
+     * @return filter that selects the same rows as scan filters a page frame at a time, or null when scan returns
+     * all rows or its filter cannot be evaluated on page frames
+     */
+    @Nullable
+    VectorFilter getScanVectorFilter();
+}
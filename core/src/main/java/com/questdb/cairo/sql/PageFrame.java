@@ -0,0 +1,48 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo.sql;
+
+/**
+ * Rows of one partition whose values are in contiguous memory for every column of the frame. Value of row
+ * {@code i} of the frame is at {@code getPageAddress(columnIndex) + (i << ColumnType.pow2SizeOf(columnType))}.
+ * Frame stays valid until cursor that returned it moves to the next frame.
+ */
+public interface PageFrame {
+
+    /**
+     * @param columnIndex index of column in table
+     * @return address of value of the first row of the frame or 0 when column is not part of the frame
+     */
+    long getPageAddress(int columnIndex);
+
+    int getPartitionIndex();
+
+    long getRowCount();
+
+    /**
+     * @return row of partition that is the first row of the frame
+     */
+    long getRowLo();
+}
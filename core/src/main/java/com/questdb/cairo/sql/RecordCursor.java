@@ -39,9 +39,31 @@ public interface RecordCursor extends Closeable {
 
     Record newRecord();
 
+    /**
+     * Adds filter to rows of this cursor. Cursors that scan tables test records before they are returned,
+     * so that rejected rows are skipped together with other rows their scan rejects. Filter applies until cursor
+     * is re-opened by its factory. Size of filtered cursor is unknown, {@link #size()} is to be called first.
+     *
+     * @return false when cursor cannot apply filter and caller has to test records itself
+     */
+    default boolean pushFilter(RecordFilter filter) {
+        return false;
+    }
+
     void recordAt(Record record, long atRowId);
 
     void recordAt(long rowId);
 
+    /**
+     * Counts rows of cursor when that is possible without reading them, for example when rows are all rows
+     * of table or of its interval. Cursor is moved to top, so this method is to be called before cursor
+     * is iterated.
+     *
+     * @return number of rows or -1 when it is unknown
+     */
+    default long size() {
+        return -1;
+    }
+
     void toTop();
 }
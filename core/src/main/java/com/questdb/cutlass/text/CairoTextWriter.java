@@ -120,7 +120,7 @@ public class CairoTextWriter implements TextLexer.Listener, Closeable, Mutable {
 
     @Override
     public void onFields(long line, ObjList<DirectByteCharSequence> values, int hi) {
-        final TableWriter.Row w = writer.newRow(0);
+        final TableWriter.Row w = writer.newBufferedRow(0);
         for (int i = 0; i < hi; i++) {
             if (values.getQuick(i).length() == 0) {
                 continue;
@@ -28,17 +28,23 @@ import com.questdb.cairo.map.RecordValueSinkFactory;
 import com.questdb.cairo.sql.*;
 import com.questdb.griffin.engine.EmptyTableRecordCursorFactory;
 import com.questdb.griffin.engine.LimitRecordCursorFactory;
+import com.questdb.griffin.engine.analytic.*;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
 import com.questdb.griffin.engine.functions.columns.SymbolColumn;
 import com.questdb.griffin.engine.functions.constants.LongConstant;
 import com.questdb.griffin.engine.groupby.*;
 import com.questdb.griffin.engine.join.*;
+import com.questdb.griffin.engine.orderby.RecordComparator;
 import com.questdb.griffin.engine.orderby.RecordComparatorCompiler;
 import com.questdb.griffin.engine.orderby.SortedLightRecordCursorFactory;
 import com.questdb.griffin.engine.orderby.SortedRecordCursorFactory;
+import com.questdb.griffin.engine.orderby.TopKLightRecordCursorFactory;
+import com.questdb.griffin.engine.orderby.TopKRecordCursorFactory;
 import com.questdb.griffin.engine.table.*;
 import com.questdb.griffin.model.*;
 import com.questdb.std.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class SqlCodeGenerator {
     private static final IntHashSet limitTypes = new IntHashSet();
@@ -52,17 +58,153 @@ public class SqlCodeGenerator {
     private final SingleColumnType singleColumnType = new SingleColumnType();
     private final CairoConfiguration configuration;
     private final RecordComparatorCompiler recordComparatorCompiler;
+    private final FilterCompiler filterCompiler;
     private final IntHashSet intHashSet = new IntHashSet();
     private final ArrayColumnTypes keyTypes = new ArrayColumnTypes();
     private final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
     private final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
+    private final CairoWorkScheduler workScheduler;
+    private final AnalyticContext analyticContext;
+    private final CharSequenceObjHashMap<AnalyticFunctionFactory> analyticFunctionFactories = new CharSequenceObjHashMap<>();
     private boolean fullFatJoins = false;
 
-    public SqlCodeGenerator(CairoEngine engine, CairoConfiguration configuration, FunctionParser functionParser) {
+    public SqlCodeGenerator(
+            CairoEngine engine,
+            CairoConfiguration configuration,
+            FunctionParser functionParser,
+            Iterable<AnalyticFunctionFactory> analyticFunctionFactories,
+            @Nullable CairoWorkScheduler workScheduler
+    ) {
         this.engine = engine;
         this.configuration = configuration;
         this.functionParser = functionParser;
+        this.workScheduler = workScheduler;
         this.recordComparatorCompiler = new RecordComparatorCompiler(asm);
+        this.filterCompiler = new FilterCompiler(asm);
+        this.analyticContext = new AnalyticContext(configuration);
+        for (AnalyticFunctionFactory factory : analyticFunctionFactories) {
+            this.analyticFunctionFactories.put(factory.getName(), factory);
+        }
+    }
+
+    /**
+     * Collects "column op constant" conjuncts of filter that zone maps can evaluate. Filter is still applied
+     * to every row, conjuncts only let data frames skip rows that cannot match.
+     */
+    private static void addZoneMapConditions(ExpressionNode node, RecordMetadata metadata, ZoneMapFilter zoneMapFilter) {
+        if (node.type != ExpressionNode.OPERATION || node.paramCount != 2) {
+            return;
+        }
+
+        if (Chars.equals("and", node.token)) {
+            addZoneMapConditions(node.lhs, metadata, zoneMapFilter);
+            addZoneMapConditions(node.rhs, metadata, zoneMapFilter);
+            return;
+        }
+
+        int op;
+        if (Chars.equals("=", node.token)) {
+            op = ZoneMapFilter.OP_EQ;
+        } else if (Chars.equals("<", node.token)) {
+            op = ZoneMapFilter.OP_LT;
+        } else if (Chars.equals(">", node.token)) {
+            op = ZoneMapFilter.OP_GT;
+        } else {
+            return;
+        }
+
+        final ExpressionNode column;
+        final ExpressionNode constant;
+        if (node.lhs.type == ExpressionNode.LITERAL && node.rhs.type == ExpressionNode.CONSTANT) {
+            column = node.lhs;
+            constant = node.rhs;
+        } else if (node.lhs.type == ExpressionNode.CONSTANT && node.rhs.type == ExpressionNode.LITERAL) {
+            column = node.rhs;
+            constant = node.lhs;
+            if (op != ZoneMapFilter.OP_EQ) {
+                op = op == ZoneMapFilter.OP_LT ? ZoneMapFilter.OP_GT : ZoneMapFilter.OP_LT;
+            }
+        } else {
+            return;
+        }
+
+        final int columnIndex = metadata.getColumnIndexQuiet(column.token);
+        if (columnIndex == -1 || !ZoneMapFilter.isSupported(metadata.getColumnType(columnIndex))) {
+            return;
+        }
+
+        try {
+            zoneMapFilter.add(columnIndex, op, Numbers.parseDouble(constant.token));
+        } catch (NumericException ignore) {
+            // not a number, zone maps cannot help
+        }
+    }
+
+    /**
+     * Collects "column op constant" conjuncts of filter into vector filter, which then selects exactly the
+     * rows filter function would.
+     *
+     * @return false when filter has conjunct vector filter cannot evaluate
+     */
+    private static boolean addVectorFilterConditions(ExpressionNode node, RecordMetadata metadata, VectorFilter vectorFilter) {
+        if (node.type != ExpressionNode.OPERATION || node.paramCount != 2) {
+            return false;
+        }
+
+        if (Chars.equals("and", node.token)) {
+            return addVectorFilterConditions(node.lhs, metadata, vectorFilter)
+                    && addVectorFilterConditions(node.rhs, metadata, vectorFilter);
+        }
+
+        int op;
+        if (Chars.equals("<", node.token)) {
+            op = VectorFilter.OP_LT;
+        } else if (Chars.equals(">", node.token)) {
+            op = VectorFilter.OP_GT;
+        } else {
+            return false;
+        }
+
+        final ExpressionNode column;
+        final ExpressionNode constant;
+        if (node.lhs.type == ExpressionNode.LITERAL && node.rhs.type == ExpressionNode.CONSTANT) {
+            column = node.lhs;
+            constant = node.rhs;
+        } else if (node.lhs.type == ExpressionNode.CONSTANT && node.rhs.type == ExpressionNode.LITERAL) {
+            column = node.rhs;
+            constant = node.lhs;
+            op = op == VectorFilter.OP_LT ? VectorFilter.OP_GT : VectorFilter.OP_LT;
+        } else {
+            return false;
+        }
+
+        final int columnIndex = metadata.getColumnIndexQuiet(column.token);
+        if (columnIndex == -1) {
+            return false;
+        }
+
+        final int columnType = metadata.getColumnType(columnIndex);
+        if (!VectorFilter.isSupported(columnType) || !DataFramePageFrameCursor.isSupported(columnType)) {
+            return false;
+        }
+
+        try {
+            final double value = Numbers.parseDouble(constant.token);
+            if (value != value) {
+                return false;
+            }
+            vectorFilter.add(columnIndex, columnType, op, value);
+            return true;
+        } catch (NumericException ignore) {
+            // not a number, filter function will deal with it
+            return false;
+        }
+    }
+
+    @Nullable
+    private static Function getScanFilter(DataFrameScanSource scanSource) {
+        final ObjList<Function> filters = scanSource.getScanFilters();
+        return filters != null ? filters.getQuick(0) : null;
     }
 
     private void clearState() {
@@ -249,8 +391,15 @@ public class SqlCodeGenerator {
         valueTypes.add(ColumnType.LONG);
         valueTypes.add(ColumnType.LONG);
 
+        // single symbol key lets inner join filter master rows by symbol key
+        final boolean symbolKey = listColumnFilterB.getColumnCount() == 1
+                && masterMetadata.getColumnType(listColumnFilterB.getColumnIndex(0)) == ColumnType.SYMBOL;
+        final int masterSymbolKeyIndex = symbolKey ? listColumnFilterB.getColumnIndex(0) : -1;
+        final int slaveSymbolKeyIndex = symbolKey ? listColumnFilterA.getColumnIndex(0) : -1;
+
         if (slave.isRandomAccessCursor() && !fullFatJoins) {
             if (joinType == QueryModel.JOIN_INNER) {
+                entityColumnFilter.of(keyTypes.getColumnCount());
                 return new HashJoinLightRecordCursorFactory(
                         configuration,
                         metadata,
@@ -260,6 +409,9 @@ public class SqlCodeGenerator {
                         valueTypes,
                         masterKeySink,
                         slaveKeySink,
+                        RecordSinkFactory.getInstance(asm, keyTypes, entityColumnFilter, false),
+                        masterSymbolKeyIndex,
+                        slaveSymbolKeyIndex,
                         masterMetadata.getColumnCount()
                 );
             }
@@ -296,6 +448,8 @@ public class SqlCodeGenerator {
                     masterKeySink,
                     slaveKeySink,
                     slaveSink,
+                    masterSymbolKeyIndex,
+                    slaveSymbolKeyIndex,
                     masterMetadata.getColumnCount()
             );
         }
@@ -377,13 +531,14 @@ public class SqlCodeGenerator {
                     final RecordMetadata masterMetadata = master.getMetadata();
                     final RecordMetadata slaveMetadata = slave.getMetadata();
 
-                    if (joinType == QueryModel.JOIN_ASOF) {
+                    if (joinType == QueryModel.JOIN_ASOF || joinType == QueryModel.JOIN_SPLICE) {
+                        final String joinName = joinType == QueryModel.JOIN_ASOF ? "ASOF" : "SPLICE";
                         if (masterMetadata.getTimestampIndex() == -1) {
-                            throw SqlException.$(slaveModel.getJoinKeywordPosition(), "left side of ASOF join has no timestamp");
+                            throw SqlException.position(slaveModel.getJoinKeywordPosition()).put("left side of ").put(joinName).put(" join has no timestamp");
                         }
 
                         if (slaveMetadata.getTimestampIndex() == -1) {
-                            throw SqlException.$(slaveModel.getJoinKeywordPosition(), "right side of ASOF join has no timestamp");
+                            throw SqlException.position(slaveModel.getJoinKeywordPosition()).put("right side of ").put(joinName).put(" join has no timestamp");
                         }
                     }
 
@@ -397,7 +552,18 @@ public class SqlCodeGenerator {
                             );
                         case QueryModel.JOIN_ASOF:
                             processJoinContext(index == 1, slaveModel.getContext(), masterMetadata, slaveMetadata);
-                            if (slave.isRandomAccessCursor() && !fullFatJoins) {
+                            final DataFrameCursorFactory slaveDataFrameCursorFactory = getIndexedAsOfJoinFrames(slave, slaveMetadata);
+                            if (slaveDataFrameCursorFactory != null && !fullFatJoins) {
+                                master = new AsOfJoinIndexedRecordCursorFactory(
+                                        createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
+                                        master,
+                                        slave,
+                                        slaveDataFrameCursorFactory,
+                                        listColumnFilterB.getColumnIndex(0),
+                                        listColumnFilterA.getColumnIndex(0),
+                                        masterMetadata.getColumnCount()
+                                );
+                            } else if (slave.isRandomAccessCursor() && !fullFatJoins) {
                                 master = createAsOfJoin(
                                         createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
                                         master,
@@ -429,16 +595,49 @@ public class SqlCodeGenerator {
                             }
                             masterAlias = null;
                             break;
-                        default:
+                        case QueryModel.JOIN_SPLICE:
                             processJoinContext(index == 1, slaveModel.getContext(), masterMetadata, slaveMetadata);
-                            master = createHashJoin(
-                                    createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
+                            if (listColumnFilterA.getColumnCount() > 0) {
+                                throw SqlException.$(slaveModel.getJoinKeywordPosition(), "SPLICE join does not support join keys");
+                            }
+
+                            if (!master.isRandomAccessCursor() || !slave.isRandomAccessCursor()) {
+                                throw SqlException.$(slaveModel.getJoinKeywordPosition(), "SPLICE join requires random access on both sides");
+                            }
+                            JoinRecordMetadata spliceMetadata = createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata);
+                            // either side can be null, there is no timestamp to speak of
+                            spliceMetadata.setTimestampIndex(-1);
+                            master = new SpliceJoinRecordCursorFactory(
+                                    spliceMetadata,
                                     master,
                                     slave,
-                                    joinType
+                                    masterMetadata.getColumnCount()
                             );
                             masterAlias = null;
                             break;
+                        default:
+                            processJoinContext(index == 1, slaveModel.getContext(), masterMetadata, slaveMetadata);
+                            if (joinType == QueryModel.JOIN_INNER
+                                    && !fullFatJoins
+                                    && slave.isRandomAccessCursor()
+                                    && isTimestampJoin(masterMetadata, slaveMetadata)) {
+                                // both sides are ordered by join key, merge them instead of hashing
+                                master = new MergeJoinRecordCursorFactory(
+                                        createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
+                                        master,
+                                        slave,
+                                        masterMetadata.getColumnCount()
+                                );
+                            } else {
+                                master = createHashJoin(
+                                        createJoinMetadata(masterAlias, masterMetadata, slaveModel.getName(), slaveMetadata),
+                                        master,
+                                        slave,
+                                        joinType
+                                );
+                            }
+                            masterAlias = null;
+                            break;
                     }
                 }
 
@@ -633,19 +832,11 @@ public class SqlCodeGenerator {
         if (limitLo == null) {
             loFunc = new LongConstant(0, 0L);
         } else {
-            loFunc = functionParser.parseFunction(limitLo, EmptyRecordMetadata.INSTANCE, executionContext);
-            final int type = loFunc.getType();
-            if (limitTypes.excludes(type)) {
-                throw SqlException.$(limitLo.position, "invalid type: ").put(ColumnType.nameOf(type));
-            }
+            loFunc = parseLimitFunction(limitLo, executionContext);
         }
 
         if (limitHi != null) {
-            hiFunc = functionParser.parseFunction(limitHi, EmptyRecordMetadata.INSTANCE, executionContext);
-            final int type = hiFunc.getType();
-            if (limitTypes.excludes(type)) {
-                throw SqlException.$(limitHi.position, "invalid type: ").put(ColumnType.nameOf(type));
-            }
+            hiFunc = parseLimitFunction(limitHi, executionContext);
         } else {
             hiFunc = null;
         }
@@ -665,15 +856,31 @@ public class SqlCodeGenerator {
         return generateSubQuery(model, executionContext);
     }
 
-    private RecordCursorFactory generateOrderBy(RecordCursorFactory recordCursorFactory, QueryModel model) throws SqlException {
+    private RecordCursorFactory generateOrderBy(RecordCursorFactory recordCursorFactory, QueryModel model, SqlExecutionContext executionContext) throws SqlException {
+        return generateOrderBy(
+                recordCursorFactory,
+                model.getOrderBy(),
+                model.getOrderByDirection(),
+                model.getLimitLo(),
+                model.getLimitHi(),
+                executionContext
+        );
+    }
+
+    private RecordCursorFactory generateOrderBy(
+            RecordCursorFactory recordCursorFactory,
+            ObjList<ExpressionNode> orderBy,
+            IntList orderByDirection,
+            @Nullable ExpressionNode limitLo,
+            @Nullable ExpressionNode limitHi,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
         try {
-            final ObjList<ExpressionNode> orderBy = model.getOrderBy();
             final int size = orderBy.size();
 
             if (size > 0) {
 
                 final RecordMetadata metadata = recordCursorFactory.getMetadata();
-                final IntList orderByDirection = model.getOrderByDirection();
                 listColumnFilterA.clear();
                 intHashSet.clear();
 
@@ -722,6 +929,42 @@ public class SqlCodeGenerator {
                     }
                 }
 
+                // LIMIT needs first rows only, there is no need to sort the rest,
+                // factories fall back to full sort when value of LIMIT is too large for the heap
+                if ((limitLo != null || limitHi != null) && configuration.isSqlSortTopKEnabled()) {
+                    final Function loFunc = limitLo == null ? new LongConstant(0, 0L) : parseLimitFunction(limitLo, executionContext);
+                    final Function hiFunc = limitHi == null ? null : parseLimitFunction(limitHi, executionContext);
+
+                    if (recordCursorFactory.isRandomAccessCursor()) {
+                        return new TopKLightRecordCursorFactory(
+                                configuration,
+                                orderedMetadata,
+                                recordCursorFactory,
+                                recordComparatorCompiler.compile(metadata, listColumnFilterA),
+                                loFunc,
+                                hiFunc
+                        );
+                    }
+
+                    entityColumnFilter.of(orderedMetadata.getColumnCount());
+
+                    return new TopKRecordCursorFactory(
+                            configuration,
+                            orderedMetadata,
+                            recordCursorFactory,
+                            orderedMetadata,
+                            RecordSinkFactory.getInstance(
+                                    asm,
+                                    orderedMetadata,
+                                    entityColumnFilter,
+                                    false
+                            ),
+                            recordComparatorCompiler.compile(metadata, listColumnFilterA),
+                            loFunc,
+                            hiFunc
+                    );
+                }
+
                 if (recordCursorFactory.isRandomAccessCursor()) {
                     return new SortedLightRecordCursorFactory(
                             configuration,
@@ -758,6 +1001,72 @@ public class SqlCodeGenerator {
         }
     }
 
+    private RecordCursorFactory generateDataFrameSampleBy(
+            QueryModel model,
+            SqlExecutionContext executionContext,
+            RecordCursorFactory factory,
+            TimestampSampler timestampSampler
+    ) throws SqlException {
+        if (!(factory instanceof DataFrameScanSource) || factory.getMetadata().getTimestampIndex() == -1) {
+            return null;
+        }
+
+        final DataFrameScanSource scanSource = (DataFrameScanSource) factory;
+        final DataFrameCursorFactory dfcFactory = scanSource.getScanDataFrameCursorFactory();
+        if (dfcFactory == null) {
+            return null;
+        }
+
+        final SampleByCursorLambda cursorLambda = getSampleByCursorLambda(model.getSampleByFill());
+        if (cursorLambda == null) {
+            return null;
+        }
+
+        if (isParallelScan(scanSource)) {
+            return new ParallelSampleByRecordCursorFactory(
+                    configuration,
+                    engine,
+                    factory,
+                    dfcFactory,
+                    scanSource.getScanFilters(),
+                    new DataFrameDispatcher(workScheduler),
+                    timestampSampler,
+                    cursorLambda != SampleByFillNoneRecordCursorFactory.CURSOR_LAMBDA,
+                    model,
+                    listColumnFilterA,
+                    functionParser,
+                    executionContext,
+                    asm,
+                    cursorLambda,
+                    keyTypes,
+                    valueTypes
+            );
+        }
+
+        final IntList aggregateColumns = new IntList();
+        if (prepareVectorAggregation(model, factory.getMetadata(), executionContext, aggregateColumns)) {
+            return new VectorSampleByRecordCursorFactory(
+                    configuration,
+                    factory,
+                    dfcFactory,
+                    aggregateColumns,
+                    getScanFilter(scanSource),
+                    scanSource.getScanVectorFilter(),
+                    timestampSampler,
+                    cursorLambda != SampleByFillNoneRecordCursorFactory.CURSOR_LAMBDA,
+                    model,
+                    listColumnFilterA,
+                    functionParser,
+                    executionContext,
+                    asm,
+                    cursorLambda,
+                    keyTypes,
+                    valueTypes
+            );
+        }
+        return null;
+    }
+
     private RecordCursorFactory generateQuery(QueryModel model, SqlExecutionContext executionContext, boolean processJoins) throws SqlException {
         return generateLimit(
                 generateOrderBy(
@@ -765,7 +1074,8 @@ public class SqlCodeGenerator {
                                 model,
                                 executionContext,
                                 processJoins),
-                        model
+                        model,
+                        executionContext
                 ),
                 model,
                 executionContext
@@ -785,6 +1095,11 @@ public class SqlCodeGenerator {
             valueTypes.reset();
             listColumnFilterA.clear();
 
+            final RecordCursorFactory dataFrameFactory = generateDataFrameSampleBy(model, executionContext, factory, timestampSampler);
+            if (dataFrameFactory != null) {
+                return dataFrameFactory;
+            }
+
             if (fillCount == 0 || fillCount == 1 && Chars.equals(sampleByFill.getQuick(0).token, "none")) {
                 return new SampleByFillNoneRecordCursorFactory(
                         configuration,
@@ -887,7 +1202,227 @@ public class SqlCodeGenerator {
     }
 
     private RecordCursorFactory generateSelectAnalytic(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
-        return generateSubQuery(model, executionContext);
+        RecordCursorFactory factory = generateSubQuery(model, executionContext);
+        final ObjList<QueryColumn> columns = model.getColumns();
+        final int columnCount = columns.size();
+
+        // analytic functions are computed in single pass over base cursor, they all have to agree on row order
+        AnalyticColumn ordering = null;
+        for (int i = 0; i < columnCount; i++) {
+            final QueryColumn column = columns.getQuick(i);
+            if (column instanceof AnalyticColumn && ((AnalyticColumn) column).getOrderBy().size() > 0) {
+                final AnalyticColumn ac = (AnalyticColumn) column;
+                if (ordering == null) {
+                    ordering = ac;
+                } else if (!isSameAnalyticOrder(ordering, ac)) {
+                    factory.close();
+                    throw SqlException.$(ac.getOrderBy().getQuick(0).position, "analytic functions must have the same ORDER BY");
+                }
+            }
+        }
+
+        if (ordering != null) {
+            final RecordMetadata metadata = factory.getMetadata();
+            final ObjList<ExpressionNode> orderBy = ordering.getOrderBy();
+            for (int i = 0, n = orderBy.size(); i < n; i++) {
+                final ExpressionNode node = orderBy.getQuick(i);
+                if (metadata.getColumnIndexQuiet(node.token) == -1) {
+                    factory.close();
+                    throw SqlException.invalidColumn(node.position, node.token);
+                }
+            }
+
+            // data that is already in timestamp order is streamed as is
+            if (orderBy.size() > 1
+                    || ordering.getOrderByDirection().getQuick(0) != QueryModel.ORDER_DIRECTION_ASCENDING
+                    || metadata.getColumnIndexQuiet(orderBy.getQuick(0).token) != metadata.getTimestampIndex()) {
+                factory = generateOrderBy(factory, orderBy, ordering.getOrderByDirection(), null, null, executionContext);
+            }
+        }
+
+        final ObjList<Function> functions = new ObjList<>(columnCount);
+        final ObjList<AnalyticFunction> analyticFunctions = new ObjList<>();
+        try {
+            final RecordMetadata metadata = factory.getMetadata();
+            final GenericRecordMetadata analyticMetadata = new GenericRecordMetadata();
+
+            // attempt to preserve timestamp on new data set
+            CharSequence timestampColumn;
+            final int timestampIndex = metadata.getTimestampIndex();
+            if (timestampIndex > -1) {
+                timestampColumn = metadata.getColumnName(timestampIndex);
+            } else {
+                timestampColumn = null;
+            }
+
+            IntList symbolTableCrossIndex = null;
+
+            for (int i = 0; i < columnCount; i++) {
+                final QueryColumn column = columns.getQuick(i);
+                final Function function;
+                if (column instanceof AnalyticColumn) {
+                    final AnalyticFunction analyticFunction = createAnalyticFunction((AnalyticColumn) column, metadata, executionContext);
+                    analyticFunctions.add(analyticFunction);
+                    function = analyticFunction;
+                } else {
+                    final ExpressionNode node = column.getAst();
+                    if (timestampColumn != null && node.type == ExpressionNode.LITERAL && Chars.equals(timestampColumn, node.token)) {
+                        analyticMetadata.setTimestampIndex(i);
+                    }
+                    function = functionParser.parseFunction(node, metadata, executionContext);
+
+                    if (function instanceof SymbolColumn) {
+                        if (symbolTableCrossIndex == null) {
+                            symbolTableCrossIndex = new IntList(columnCount);
+                        }
+                        symbolTableCrossIndex.extendAndSet(i, ((SymbolColumn) function).getColumnIndex());
+                    }
+                }
+                functions.add(function);
+
+                analyticMetadata.add(new TableColumnMetadata(
+                        Chars.toString(column.getAlias()),
+                        function.getType()
+                ));
+            }
+
+            // functions, whose frame includes peers of current row, make cursor buffer groups of rows
+            // with equal ORDER BY values
+            RecordComparator peerComparator = null;
+            RecordSink peerSink = null;
+            for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                if (analyticFunctions.getQuick(i).isPeerFrame()) {
+                    assert ordering != null;
+                    final ObjList<ExpressionNode> orderBy = ordering.getOrderBy();
+                    listColumnFilterA.clear();
+                    for (int j = 0, m = orderBy.size(); j < m; j++) {
+                        listColumnFilterA.add(metadata.getColumnIndex(orderBy.getQuick(j).token) + 1);
+                    }
+                    peerComparator = recordComparatorCompiler.compile(metadata, listColumnFilterA);
+                    entityColumnFilter.of(metadata.getColumnCount());
+                    peerSink = RecordSinkFactory.getInstance(asm, metadata, entityColumnFilter, false);
+                    break;
+                }
+            }
+
+            return new AnalyticRecordCursorFactory(
+                    configuration,
+                    analyticMetadata,
+                    factory,
+                    functions,
+                    analyticFunctions,
+                    symbolTableCrossIndex,
+                    peerComparator,
+                    peerSink
+            );
+        } catch (SqlException | CairoException e) {
+            for (int i = 0, n = functions.size(); i < n; i++) {
+                functions.getQuick(i).close();
+            }
+            factory.close();
+            throw e;
+        }
+    }
+
+    private AnalyticFunction createAnalyticFunction(
+            AnalyticColumn column,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext
+    ) throws SqlException {
+        final ExpressionNode ast = column.getAst();
+        final AnalyticFunctionFactory factory = analyticFunctionFactories.get(ast.token);
+        if (factory == null) {
+            throw SqlException.position(ast.position).put("unknown analytic function: ").put(ast.token);
+        }
+
+        // function arguments are evaluated against base rows as any other function would be
+        final ObjList<Function> args = new ObjList<>(ast.paramCount);
+        switch (ast.paramCount) {
+            case 0:
+                break;
+            case 1:
+                args.add(functionParser.parseFunction(ast.rhs, metadata, executionContext));
+                break;
+            case 2:
+                args.add(functionParser.parseFunction(ast.lhs, metadata, executionContext));
+                args.add(functionParser.parseFunction(ast.rhs, metadata, executionContext));
+                break;
+            default:
+                for (int i = ast.paramCount - 1; i > -1; i--) {
+                    args.add(functionParser.parseFunction(ast.args.getQuick(i), metadata, executionContext));
+                }
+                break;
+        }
+
+        final ObjList<ExpressionNode> partitionBy = column.getPartitionBy();
+        RecordSink partitionSink = null;
+        keyTypes.reset();
+        if (partitionBy.size() > 0) {
+            listColumnFilterB.clear();
+            for (int i = 0, n = partitionBy.size(); i < n; i++) {
+                final ExpressionNode node = partitionBy.getQuick(i);
+                final int index = metadata.getColumnIndexQuiet(node.token);
+                if (index == -1) {
+                    throw SqlException.invalidColumn(node.position, node.token);
+                }
+
+                final int type = metadata.getColumnType(index);
+                if (type == ColumnType.BINARY) {
+                    throw SqlException.$(node.position, "unsupported column type: ").put(ColumnType.nameOf(type));
+                }
+                listColumnFilterB.add(index);
+                // symbols are partitioned by their int keys
+                keyTypes.add(type == ColumnType.SYMBOL ? ColumnType.INT : type);
+            }
+            partitionSink = RecordSinkFactory.getInstance(asm, metadata, listColumnFilterB, false);
+        }
+
+        int rangeColumnIndex = -1;
+        int rangeColumnType = -1;
+        if (column.getFramingMode() == AnalyticColumn.FRAMING_RANGE && column.getFramePreceding() != AnalyticColumn.UNBOUNDED_PRECEDING) {
+            if (column.getOrderBy().size() == 1) {
+                rangeColumnIndex = metadata.getColumnIndexQuiet(column.getOrderBy().getQuick(0).token);
+                rangeColumnType = metadata.getColumnType(rangeColumnIndex);
+            }
+
+            switch (rangeColumnType) {
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                case ColumnType.DATE:
+                case ColumnType.TIMESTAMP:
+                    break;
+                default:
+                    throw SqlException.$(column.getFramingPosition(), "RANGE frame requires single ORDER BY column of integer or timestamp type");
+            }
+        }
+
+        analyticContext.of(
+                keyTypes,
+                partitionSink,
+                column.getOrderBy().size() > 0,
+                column.getFramingMode(),
+                column.getFramePreceding(),
+                rangeColumnIndex,
+                rangeColumnType,
+                column.getOrderBy().size() > 0 && column.getOrderByDirection().getQuick(0) == QueryModel.ORDER_DIRECTION_DESCENDING
+        );
+        return factory.newInstance(args, ast.position, analyticContext);
+    }
+
+    private boolean isSameAnalyticOrder(AnalyticColumn a, AnalyticColumn b) {
+        final ObjList<ExpressionNode> orderByA = a.getOrderBy();
+        final ObjList<ExpressionNode> orderByB = b.getOrderBy();
+        if (orderByA.size() != orderByB.size()) {
+            return false;
+        }
+
+        for (int i = 0, n = orderByA.size(); i < n; i++) {
+            if (!Chars.equals(orderByA.getQuick(i).token, orderByB.getQuick(i).token)
+                    || a.getOrderByDirection().getQuick(i) != b.getOrderByDirection().getQuick(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private RecordCursorFactory generateSelectChoose(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
@@ -963,6 +1498,46 @@ public class SqlCodeGenerator {
             valueTypes.reset();
             listColumnFilterA.clear();
 
+            final DataFrameScanSource scanSource = factory instanceof DataFrameScanSource ? (DataFrameScanSource) factory : null;
+            final DataFrameCursorFactory dfcFactory = scanSource != null ? scanSource.getScanDataFrameCursorFactory() : null;
+            if (dfcFactory != null) {
+                if (isParallelScan(scanSource)) {
+                    return new ParallelGroupByRecordCursorFactory(
+                            configuration,
+                            engine,
+                            factory,
+                            dfcFactory,
+                            scanSource.getScanFilters(),
+                            new DataFrameDispatcher(workScheduler),
+                            model,
+                            listColumnFilterA,
+                            functionParser,
+                            executionContext,
+                            asm,
+                            keyTypes,
+                            valueTypes
+                    );
+                }
+
+                final IntList aggregateColumns = new IntList();
+                if (prepareVectorAggregation(model, factory.getMetadata(), executionContext, aggregateColumns)) {
+                    return new VectorGroupByRecordCursorFactory(
+                            configuration,
+                            factory,
+                            dfcFactory,
+                            aggregateColumns,
+                            getScanFilter(scanSource),
+                            scanSource.getScanVectorFilter(),
+                            model,
+                            listColumnFilterA,
+                            functionParser,
+                            executionContext,
+                            keyTypes,
+                            valueTypes
+                    );
+                }
+            }
+
             return new GroupByRecordCursorFactory(
                     configuration,
                     factory,
@@ -1103,6 +1678,14 @@ public class SqlCodeGenerator {
                     filter = null;
                 }
 
+                final Class<CompiledFilter> compiledFilterClass;
+                if (filter != null && configuration.isSqlFilterCompilationEnabled()) {
+                    compiledFilterClass = filterCompiler.compile(filter, intrinsicModel.filter, metadata);
+                    filter = FilterCompiler.newFilter(compiledFilterClass, filter);
+                } else {
+                    compiledFilterClass = null;
+                }
+
                 DataFrameCursorFactory dfcFactory;
 
                 if (latestByIndex > -1) {
@@ -1126,6 +1709,14 @@ public class SqlCodeGenerator {
                     dfcFactory = new FullFwdDataFrameCursorFactory(engine, tableName, model.getTableVersion());
                 }
 
+                if (filter != null) {
+                    final ZoneMapFilter zoneMapFilter = new ZoneMapFilter();
+                    addZoneMapConditions(intrinsicModel.filter, reader.getMetadata(), zoneMapFilter);
+                    if (zoneMapFilter.size() > 0) {
+                        dfcFactory = new ZoneMapDataFrameCursorFactory(dfcFactory, zoneMapFilter);
+                    }
+                }
+
                 if (intrinsicModel.keyColumn != null) {
                     // existence of column would have been already validated
                     final int keyColumnIndex = reader.getMetadata().getColumnIndexQuiet(intrinsicModel.keyColumn);
@@ -1177,8 +1768,43 @@ public class SqlCodeGenerator {
                 }
 
                 if (filter != null) {
+                    final VectorFilter vectorFilter = createVectorFilter(intrinsicModel.filter, metadata);
+                    final int workerCount = getParallelWorkerCount(configuration.isSqlParallelFilterEnabled());
+                    if (workerCount > 0) {
+                        final ObjList<Function> filters = new ObjList<>(workerCount + 1);
+                        filters.add(filter);
+                        try {
+                            for (int i = 0; i < workerCount; i++) {
+                                // functions are not thread-safe, each worker needs its own instance
+                                filters.add(FilterCompiler.newFilter(
+                                        compiledFilterClass,
+                                        functionParser.parseFunction(intrinsicModel.filter, metadata, executionContext)
+                                ));
+                            }
+                        } catch (SqlException | CairoException e) {
+                            for (int i = 0, n = filters.size(); i < n; i++) {
+                                filters.getQuick(i).close();
+                            }
+                            throw e;
+                        }
+                        return new ParallelFilteredRecordCursorFactory(
+                                copyMetadata(metadata),
+                                dfcFactory,
+                                engine,
+                                tableName,
+                                model.getTableVersion(),
+                                filters,
+                                new DataFrameDispatcher(workScheduler),
+                                configuration.getSqlParallelFrameRowCount(),
+                                vectorFilter
+                        );
+                    }
                     // filter lifecycle is managed by top level
-                    return new FilteredRecordCursorFactory(new DataFrameRecordCursorFactory(copyMetadata(metadata), dfcFactory, new DataFrameRowCursorFactory(), null), filter);
+                    return new FilteredRecordCursorFactory(
+                            new DataFrameRecordCursorFactory(copyMetadata(metadata), dfcFactory, new DataFrameRowCursorFactory(), null),
+                            filter,
+                            vectorFilter
+                    );
                 }
                 return new DataFrameRecordCursorFactory(copyMetadata(metadata), dfcFactory, new DataFrameRowCursorFactory(), filter);
             }
@@ -1210,6 +1836,60 @@ public class SqlCodeGenerator {
         }
     }
 
+    @Nullable
+    private VectorFilter createVectorFilter(ExpressionNode filter, RecordMetadata metadata) {
+        if (!configuration.isSqlVectorExecutionEnabled()) {
+            return null;
+        }
+        final VectorFilter vectorFilter = new VectorFilter();
+        return addVectorFilterConditions(filter, metadata, vectorFilter) ? vectorFilter : null;
+    }
+
+    /**
+     * @return fill cursor of sample-by that aggregates partial aggregates or null when fill has to look at
+     * neighbouring samples
+     */
+    @Nullable
+    private SampleByCursorLambda getSampleByCursorLambda(ObjList<ExpressionNode> sampleByFill) {
+        final int fillCount = sampleByFill.size();
+        if (fillCount == 0 || fillCount == 1 && Chars.equals(sampleByFill.getQuick(0).token, "none")) {
+            return SampleByFillNoneRecordCursorFactory.CURSOR_LAMBDA;
+        }
+        if (fillCount == 1 && Chars.equals(sampleByFill.getQuick(0).token, "prev")) {
+            return SampleByFillPrevRecordCursorFactory.CURSOR_LAMBDA;
+        }
+        if (fillCount == 1 && Chars.equals(sampleByFill.getQuick(0).token, "null")) {
+            return SampleByFillNullRecordCursorFactory.CURSOR_LAMBDA;
+        }
+        if (fillCount == 1 && Chars.equals(sampleByFill.getQuick(0).token, "linear")) {
+            // interpolation looks at neighbouring samples
+            return null;
+        }
+        return SampleByFillValueRecordCursorFactory.getCursorLambda(sampleByFill);
+    }
+
+    private Function parseLimitFunction(ExpressionNode limit, SqlExecutionContext executionContext) throws SqlException {
+        final Function function = functionParser.parseFunction(limit, EmptyRecordMetadata.INSTANCE, executionContext);
+        final int type = function.getType();
+        if (limitTypes.excludes(type)) {
+            throw SqlException.$(limit.position, "invalid type: ").put(ColumnType.nameOf(type));
+        }
+        return function;
+    }
+
+    private int getParallelWorkerCount(boolean enabled) {
+        if (enabled && workScheduler != null && workScheduler.getDataFrameLaneQueue() != null) {
+            return workScheduler.getWorkerCount();
+        }
+        return 0;
+    }
+
+    private boolean isParallelScan(DataFrameScanSource scanSource) {
+        // scan with single filter instance cannot be split between threads
+        final ObjList<Function> filters = scanSource.getScanFilters();
+        return getParallelWorkerCount(configuration.isSqlParallelGroupByEnabled()) > 0 && (filters == null || filters.size() > 1);
+    }
+
     private void lookupColumnIndexes(
             ListColumnFilter filter,
             ObjList<ExpressionNode> columnNames,
@@ -1232,6 +1912,96 @@ public class SqlCodeGenerator {
         }
     }
 
+    /**
+     * Finds table column each group-by function of keyless group-by or sample-by reads. Such aggregation can run
+     * on page frames when every function aggregates plain column, or no column at all, straight from column memory.
+     *
+     * @return false when aggregation has keys or any of its functions cannot read column memory
+     */
+    private boolean prepareVectorAggregation(
+            QueryModel model,
+            RecordMetadata metadata,
+            SqlExecutionContext executionContext,
+            IntList aggregateColumns
+    ) throws SqlException {
+        if (!configuration.isSqlVectorExecutionEnabled()) {
+            return false;
+        }
+
+        final int timestampIndex = model.getSampleBy() != null ? metadata.getTimestampIndex() : -1;
+        final ObjList<QueryColumn> columns = model.getColumns();
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            final ExpressionNode node = columns.getQuick(i).getAst();
+            if (node.type == ExpressionNode.LITERAL) {
+                // the only column that is not a key is timestamp of sample-by
+                if (timestampIndex == -1 || metadata.getColumnIndexQuiet(node.token) != timestampIndex) {
+                    return false;
+                }
+                continue;
+            }
+
+            if (node.type != ExpressionNode.FUNCTION) {
+                return false;
+            }
+
+            final int columnIndex;
+            final int columnType;
+            if (node.paramCount == 0) {
+                columnIndex = -1;
+                columnType = -1;
+            } else if (node.paramCount == 1 && node.rhs.type == ExpressionNode.LITERAL) {
+                columnIndex = metadata.getColumnIndexQuiet(node.rhs.token);
+                if (columnIndex == -1) {
+                    return false;
+                }
+                columnType = metadata.getColumnType(columnIndex);
+                if (!DataFramePageFrameCursor.isSupported(columnType)) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+
+            final Function function = functionParser.parseFunction(node, metadata, executionContext);
+            final boolean supported = function instanceof VectorAggregateFunction
+                    && ((VectorAggregateFunction) function).isVectorSupported(columnType);
+            function.close();
+            if (!supported) {
+                return false;
+            }
+            aggregateColumns.add(columnIndex);
+        }
+        return true;
+    }
+
+    /**
+     * Slave of ASOF join can be looked up via index instead of being scanned when it is a plain
+     * table scan and the only join key is an indexed symbol.
+     *
+     * @return data frames of slave table or null when slave has to be scanned
+     */
+    @Nullable
+    private DataFrameCursorFactory getIndexedAsOfJoinFrames(RecordCursorFactory slave, RecordMetadata slaveMetadata) {
+        if (listColumnFilterA.getColumnCount() != 1 || !(slave instanceof DataFrameScanSource)) {
+            return null;
+        }
+
+        final int slaveKeyIndex = listColumnFilterA.getColumnIndex(0);
+        if (slaveMetadata.getColumnType(slaveKeyIndex) != ColumnType.SYMBOL || !slaveMetadata.isColumnIndexed(slaveKeyIndex)) {
+            return null;
+        }
+
+        final DataFrameScanSource scanSource = (DataFrameScanSource) slave;
+        return scanSource.getScanFilters() == null ? scanSource.getScanDataFrameCursorFactory() : null;
+    }
+
+    private boolean isTimestampJoin(RecordMetadata masterMetadata, RecordMetadata slaveMetadata) {
+        return listColumnFilterA.getColumnCount() == 1
+                && masterMetadata.getTimestampIndex() != -1
+                && listColumnFilterB.getColumnIndex(0) == masterMetadata.getTimestampIndex()
+                && listColumnFilterA.getColumnIndex(0) == slaveMetadata.getTimestampIndex();
+    }
+
     private void processJoinContext(boolean vanillaMaster, JoinContext jc, RecordMetadata masterMetadata, RecordMetadata slaveMetadata) throws SqlException {
         lookupColumnIndexesUsingVanillaNames(listColumnFilterA, jc.aNames, slaveMetadata);
         if (vanillaMaster) {
@@ -25,12 +25,14 @@ package com.questdb.griffin;
 
 import com.questdb.cairo.*;
 import com.questdb.cairo.sql.*;
+import com.questdb.griffin.engine.analytic.AnalyticFunctionFactory;
 import com.questdb.griffin.engine.functions.bind.BindVariableService;
 import com.questdb.griffin.model.*;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.std.*;
 import com.questdb.std.str.Path;
+import com.questdb.std.str.StringSink;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
@@ -40,6 +42,7 @@ import java.util.ServiceLoader;
 public class SqlCompiler implements Closeable {
     public static final ObjList<String> sqlControlSymbols = new ObjList<>(8);
     private final static Log LOG = LogFactory.getLog(SqlCompiler.class);
+    private static final int MAX_TRACKED_LEASES = 64;
     private static final IntList castGroups = new IntList();
     private final SqlOptimiser optimiser;
     private final SqlParser parser;
@@ -60,7 +63,13 @@ public class SqlCompiler implements Closeable {
     private final IntIntHashMap typeCast = new IntIntHashMap();
     private final ExecutableMethod insertAsSelectMethod = this::insertAsSelect;
     private final SqlExecutionContextImpl executionContext = new SqlExecutionContextImpl();
-    private final AssociativeCache<RecordCursorFactory> sqlCache;
+    private final QueryCache queryCache;
+    private final StringSink cacheKey = new StringSink();
+    private final ObjList<CharSequence> cacheTableNames = new ObjList<>();
+    private final LongList cacheTableIds = new LongList();
+    private final LongList cacheTableVersions = new LongList();
+    private final ObjList<RecordCursorFactory> leasedFactories = new ObjList<>();
+    private final ObjList<QueryCache.Entry> leasedEntries = new ObjList<>();
     private final ObjList<TableWriter> tableWriters = new ObjList<>();
     private final TableStructureAdapter tableStructureAdapter = new TableStructureAdapter();
     private final ExecutableMethod createTableMethod = this::createTable;
@@ -81,7 +90,13 @@ public class SqlCompiler implements Closeable {
         );
         this.lexer = new GenericLexer(configuration.getSqlLexerPoolCapacity());
         final FunctionParser functionParser = new FunctionParser(configuration, ServiceLoader.load(FunctionFactory.class));
-        this.codeGenerator = new SqlCodeGenerator(engine, configuration, functionParser);
+        this.codeGenerator = new SqlCodeGenerator(
+                engine,
+                configuration,
+                functionParser,
+                ServiceLoader.load(AnalyticFunctionFactory.class),
+                workScheduler
+        );
         this.configuration = configuration;
 
         configureLexer(lexer);
@@ -109,10 +124,7 @@ public class SqlCompiler implements Closeable {
                 postOrderTreeTraversalAlgo
         );
 
-        this.sqlCache = new AssociativeCache<>(
-                configuration.getSqlCacheBlockSize(),
-                configuration.getSqlCacheBlockCount()
-        );
+        this.queryCache = engine.getQueryCache();
     }
 
     public static void configureLexer(GenericLexer lexer) {
@@ -127,14 +139,32 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    /**
+     * Returns factory to engine's query cache, where it can be leased by this or any other
+     * compiler compiling the same query. Factory must not be used by the caller after this call.
+     *
+     * @param query   query text factory was compiled from
+     * @param factory factory to keep
+     */
     public void cache(CharSequence query, RecordCursorFactory factory) {
-        sqlCache.put(query, factory);
+        QueryCache.Entry entry = removeLease(factory);
+        if (entry == null) {
+            buildCacheKey(query, executionContext.getBindVariableService());
+            entry = queryCache.get(cacheKey);
+        }
+
+        if (entry != null) {
+            queryCache.release(entry, factory);
+        } else {
+            Misc.free(factory);
+        }
     }
 
     @Override
     public void close() {
         Misc.free(path);
-        Misc.free(sqlCache);
+        leasedFactories.clear();
+        leasedEntries.clear();
     }
 
     public RecordCursorFactory compile(CharSequence query, BindVariableService bindVariableService) throws SqlException {
@@ -156,9 +186,14 @@ public class SqlCompiler implements Closeable {
         }
 
         // short circuit to cache if there is anything there
-        RecordCursorFactory result = sqlCache.poll(query);
-        if (result != null) {
-            return result;
+        buildCacheKey(query, bindVariableService);
+        QueryCache.Entry entry = queryCache.get(cacheKey);
+        if (entry != null) {
+            RecordCursorFactory result = queryCache.lease(entry);
+            if (result != null) {
+                addLease(result, entry);
+                return result;
+            }
         }
 
         return compileUsingModel(query, bindVariableService);
@@ -826,7 +861,13 @@ public class SqlCompiler implements Closeable {
         ExecutionModel executionModel = compileExecutionModel(query, executionContext);
         switch (executionModel.getModelType()) {
             case ExecutionModel.QUERY:
-                return generate((QueryModel) executionModel, executionContext);
+                final RecordCursorFactory factory = generate((QueryModel) executionModel, executionContext);
+                cacheTableNames.clear();
+                cacheTableIds.clear();
+                cacheTableVersions.clear();
+                collectTables((QueryModel) executionModel);
+                addLease(factory, queryCache.register(cacheKey, cacheTableNames, cacheTableIds, cacheTableVersions));
+                return factory;
             case ExecutionModel.CREATE_TABLE:
                 createTableWithRetries(query, executionModel);
                 break;
@@ -843,10 +884,37 @@ public class SqlCompiler implements Closeable {
         return null;
     }
 
+    private void collectTables(QueryModel model) {
+        if (model == null) {
+            return;
+        }
+
+        final ExpressionNode tableName = model.getTableName();
+        if (tableName != null && model.getTableVersion() > -1) {
+            CharSequence token = tableName.token;
+            if (Chars.startsWith(token, QueryModel.NO_ROWID_MARKER)) {
+                token = token.subSequence(QueryModel.NO_ROWID_MARKER.length(), token.length());
+            }
+            cacheTableNames.add(token);
+            cacheTableIds.add(model.getTableId());
+            cacheTableVersions.add(model.getTableVersion());
+        }
+
+        collectTables(model.getNestedModel());
+
+        final ObjList<QueryModel> joinModels = model.getJoinModels();
+        for (int i = 0, n = joinModels.size(); i < n; i++) {
+            QueryModel joinModel = joinModels.getQuick(i);
+            if (joinModel != model) {
+                collectTables(joinModel);
+            }
+        }
+    }
+
     private void copyOrdered(TableWriter writer, RecordCursor cursor, RecordToRowCopier copier, int cursorTimestampIndex) {
         final Record record = cursor.getRecord();
         while (cursor.hasNext()) {
-            TableWriter.Row row = writer.newRow(record.getTimestamp(cursorTimestampIndex));
+            TableWriter.Row row = writer.newBufferedRow(record.getTimestamp(cursorTimestampIndex));
             copier.copy(record, row);
             row.append();
         }
@@ -876,7 +944,7 @@ public class SqlCompiler implements Closeable {
     private void copyUnordered(RecordCursor cursor, TableWriter writer, RecordToRowCopier ccopier) {
         final Record record = cursor.getRecord();
         while (cursor.hasNext()) {
-            TableWriter.Row row = writer.newRow(0);
+            TableWriter.Row row = writer.newBufferedRow(0);
             ccopier.copy(record, row);
             row.append();
         }
@@ -897,6 +965,11 @@ public class SqlCompiler implements Closeable {
             TableWriter writer = null;
 
             try {
+                // table could have been created while we were waiting for the lock
+                if (TableUtils.exists(ff, path, configuration.getRoot(), name.token) != TableUtils.TABLE_DOES_NOT_EXIST) {
+                    throw SqlException.$(name.position, "table already exists");
+                }
+
 //                if (ff.mkdir(path.chopZ().put(Files.SEPARATOR).$(), configuration.getMkDirMode()) != 0) {
 //                    LOG.error().$("table already exists [path=").utf8(path).$(", errno=").$(ff.errno()).$(']').$();
 //                    throw SqlException.$(name.position, "Cannot create table. See log for details.");
@@ -999,6 +1072,62 @@ public class SqlCompiler implements Closeable {
         }
     }
 
+    private void addLease(RecordCursorFactory factory, QueryCache.Entry entry) {
+        // factories that are never returned to cache must not be tracked forever
+        if (leasedFactories.size() == MAX_TRACKED_LEASES) {
+            leasedFactories.remove(0);
+            leasedEntries.remove(0);
+        }
+        leasedFactories.add(factory);
+        leasedEntries.add(entry);
+    }
+
+    // Query cache key is query text with whitespace collapsed outside of quotes
+    // followed by names and types of bind variables.
+    private void buildCacheKey(CharSequence query, @Nullable BindVariableService bindVariableService) {
+        cacheKey.clear();
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0, n = query.length(); i < n; i++) {
+            char c = query.charAt(i);
+            if (quote == 0 && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+
+            if (space && cacheKey.length() > 0) {
+                cacheKey.put(' ');
+            }
+            space = false;
+
+            if (quote == 0) {
+                if (c == '\'' || c == '"') {
+                    quote = c;
+                }
+            } else if (c == quote) {
+                quote = 0;
+            }
+            cacheKey.put(c);
+        }
+
+        if (bindVariableService != null) {
+            cacheKey.put('\n');
+            bindVariableService.typesToSink(cacheKey);
+        }
+    }
+
+    private QueryCache.Entry removeLease(RecordCursorFactory factory) {
+        for (int i = leasedFactories.size() - 1; i > -1; i--) {
+            if (leasedFactories.getQuick(i) == factory) {
+                QueryCache.Entry entry = leasedEntries.getQuick(i);
+                leasedFactories.remove(i);
+                leasedEntries.remove(i);
+                return entry;
+            }
+        }
+        return null;
+    }
+
     RecordCursorFactory generate(QueryModel queryModel, SqlExecutionContext executionContext) throws SqlException {
         return codeGenerator.generate(queryModel, executionContext);
     }
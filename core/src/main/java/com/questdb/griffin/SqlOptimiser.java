@@ -483,7 +483,7 @@ class SqlOptimiser {
         JoinContext jc;
         for (int i = 0, n = models.size(); i < n; i++) {
             QueryModel m = models.getQuick(i);
-            if (m.getJoinType() == QueryModel.JOIN_ASOF) {
+            if (m.getJoinType() == QueryModel.JOIN_ASOF || m.getJoinType() == QueryModel.JOIN_SPLICE) {
                 linkDependencies(parent, 0, i);
                 if (m.getContext() == null) {
                     m.setContext(jc = contextPool.next());
@@ -784,6 +784,17 @@ class SqlOptimiser {
         }
     }
 
+    private void emitLiterals(
+            ObjList<ExpressionNode> nodes,
+            QueryModel translatingModel,
+            QueryModel innerModel,
+            QueryModel validatingModel
+    ) throws SqlException {
+        for (int i = 0, n = nodes.size(); i < n; i++) {
+            nodes.setQuick(i, replaceLiteral(nodes.getQuick(i), translatingModel, innerModel, validatingModel));
+        }
+    }
+
     private void enumerateTableColumns(QueryModel model, SqlExecutionContext executionContext) throws SqlException {
         final ObjList<QueryModel> jm = model.getJoinModels();
 
@@ -914,7 +925,11 @@ class SqlOptimiser {
                 if (c != null && c.parents.size() > 0) {
                     m.setJoinType(QueryModel.JOIN_INNER);
                 }
-            } else if (m.getJoinType() != QueryModel.JOIN_ASOF && (c == null || c.parents.size() == 0)) {
+            } else if (
+                    m.getJoinType() != QueryModel.JOIN_ASOF
+                            && m.getJoinType() != QueryModel.JOIN_SPLICE
+                            && (c == null || c.parents.size() == 0)
+            ) {
                 m.setJoinType(QueryModel.JOIN_CROSS);
             }
         }
@@ -1129,7 +1144,7 @@ class SqlOptimiser {
                 // Outer join can produce nulls in slave model columns.
                 int joinType = parent.getJoinType();
                 if (tableIndex > 0
-                        && (joinType == QueryModel.JOIN_OUTER || joinType == QueryModel.JOIN_ASOF)
+                        && (joinType == QueryModel.JOIN_OUTER || joinType == QueryModel.JOIN_ASOF || joinType == QueryModel.JOIN_SPLICE)
                         && literalCollector.nullCount > 0) {
                     model.setPostJoinWhereClause(concatFilters(model.getPostJoinWhereClause(), node));
                     continue;
@@ -1232,6 +1247,7 @@ class SqlOptimiser {
 
         try (TableReader r = engine.getReader(tableLookupSequence.of(tableName, lo, hi - lo), TableUtils.ANY_TABLE_VERSION)) {
             model.setTableVersion(r.getVersion());
+            model.setTableId(r.getTableId());
             copyColumnsFromMetadata(model, r.getMetadata());
         } catch (EntryLockedException e) {
             throw SqlException.position(tableNamePosition).put("table is locked: ").put(tableLookupSequence);
@@ -1814,6 +1830,11 @@ class SqlOptimiser {
 
             if (base != model) {
                 base.clearOrderBy();
+                // limit logically applies after order by, it has to ascend together with order by columns
+                if (ascendColumns && model.getLimitLo() == null && model.getLimitHi() == null) {
+                    model.setLimit(base.getLimitLo(), base.getLimitHi());
+                    base.setLimit(null, null);
+                }
             }
         }
 
@@ -1940,6 +1961,9 @@ class SqlOptimiser {
 
                         // ensure literals referenced by analytic column are present in nested models
                         emitLiterals(qc.getAst(), translatingModel, innerModel, baseModel);
+                        final AnalyticColumn ac = (AnalyticColumn) qc;
+                        emitLiterals(ac.getPartitionBy(), translatingModel, innerModel, baseModel);
+                        emitLiterals(ac.getOrderBy(), translatingModel, innerModel, baseModel);
                         useAnalyticModel = true;
                         continue;
                     } else if (functionParser.isGroupBy(qc.getAst().token)) {
@@ -2288,6 +2312,7 @@ class SqlOptimiser {
         joinBarriers = new IntHashSet();
         joinBarriers.add(QueryModel.JOIN_OUTER);
         joinBarriers.add(QueryModel.JOIN_ASOF);
+        joinBarriers.add(QueryModel.JOIN_SPLICE);
 
         nullConstants.add("null");
         nullConstants.add("NaN");
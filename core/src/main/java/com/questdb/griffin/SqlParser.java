@@ -295,7 +295,7 @@ public final class SqlParser {
         ExpressionNode partitionBy = parseCreateTablePartition(lexer, tok);
         if (partitionBy != null) {
             if (PartitionBy.fromString(partitionBy.token) == -1) {
-                throw SqlException.$(partitionBy.position, "'NONE', 'DAY', 'MONTH' or 'YEAR' expected");
+                throw SqlException.$(partitionBy.position, "'NONE', 'HOUR', 'DAY', 'MONTH', 'YEAR' or width such as '15m' or '4h' expected");
             }
             model.setPartitionBy(partitionBy);
             tok = optTok(lexer);
@@ -741,6 +741,10 @@ public final class SqlParser {
             throw SqlException.$(lexer.lastTokenPosition(), "Cross joins cannot have join clauses");
         }
 
+        if (joinType == QueryModel.JOIN_SPLICE && tok != null && Chars.equals(tok, "on")) {
+            throw SqlException.$(lexer.lastTokenPosition(), "Splice joins cannot have join clauses");
+        }
+
         switch (joinType) {
             case QueryModel.JOIN_ASOF:
                 if (tok == null || !Chars.equals("on", tok)) {
@@ -921,6 +925,10 @@ public final class SqlParser {
                         }
                     } while (Chars.equals(tok, ','));
                 }
+
+                if (Chars.equals(tok, "rows") || Chars.equals(tok, "range")) {
+                    tok = parseAnalyticFrame(lexer, col, tok);
+                }
                 expectTok(tok, lexer.lastTokenPosition(), ')');
                 model.addColumn(col);
                 tok = tok(lexer, "'from' or ','");
@@ -938,6 +946,42 @@ public final class SqlParser {
         }
     }
 
+    private CharSequence parseAnalyticFrame(GenericLexer lexer, AnalyticColumn col, CharSequence tok) throws SqlException {
+        col.setFraming(
+                Chars.equals(tok, "rows") ? AnalyticColumn.FRAMING_ROWS : AnalyticColumn.FRAMING_RANGE,
+                lexer.lastTokenPosition()
+        );
+
+        tok = tok(lexer, "'between', 'unbounded', 'current' or number");
+        final boolean between = Chars.equals(tok, "between");
+        if (between) {
+            tok = tok(lexer, "'unbounded', 'current' or number");
+        }
+
+        if (Chars.equals(tok, "unbounded")) {
+            expectTok(lexer, "preceding");
+            col.setFramePreceding(AnalyticColumn.UNBOUNDED_PRECEDING);
+        } else if (Chars.equals(tok, "current")) {
+            expectTok(lexer, "row");
+            col.setFramePreceding(0);
+        } else {
+            try {
+                col.setFramePreceding(Numbers.parseLong(tok));
+            } catch (NumericException e) {
+                throw err(lexer, "'unbounded', 'current' or number expected");
+            }
+            expectTok(lexer, "preceding");
+        }
+
+        // frame always ends at current row, we only accept explicit end that says so
+        if (between) {
+            expectTok(lexer, "and");
+            expectTok(lexer, "current");
+            expectTok(lexer, "row");
+        }
+        return tok(lexer, "')'");
+    }
+
     private void parseSelectFrom(GenericLexer lexer, QueryModel model, QueryModel masterModel) throws SqlException {
         ExpressionNode expr = expr(lexer, model);
         CharSequence name = expr.token;
@@ -1141,6 +1185,7 @@ public final class SqlParser {
         tableAliasStop.add("inner");
         tableAliasStop.add("outer");
         tableAliasStop.add("asof");
+        tableAliasStop.add("splice");
         tableAliasStop.add("cross");
         tableAliasStop.add("sample");
         tableAliasStop.add("order");
@@ -1162,5 +1207,6 @@ public final class SqlParser {
         joinStartSet.put("outer", QueryModel.JOIN_OUTER);
         joinStartSet.put("cross", QueryModel.JOIN_CROSS);
         joinStartSet.put("asof", QueryModel.JOIN_ASOF);
+        joinStartSet.put("splice", QueryModel.JOIN_SPLICE);
     }
 }
@@ -38,6 +38,11 @@ public class LimitRecordCursorFactory extends AbstractRecordCursorFactory {
         this.cursor = new LimitRecordCursor(loFunction, hiFunction);
     }
 
+    @Override
+    public void close() {
+        base.close();
+    }
+
     @Override
     public RecordCursor getCursor(BindVariableService bindVariableService) {
         cursor.of(base.getCursor(bindVariableService), bindVariableService);
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.engine.functions.DoubleFunction;
+import com.questdb.griffin.model.AnalyticColumn;
+import com.questdb.std.ObjList;
+
+/**
+ * Base of aggregate analytic functions. Frame of the function decides how value is computed:
+ * <ul>
+ * <li>entire partition - partition aggregates are computed in pre-compute pass and looked up for each row</li>
+ * <li>from first row of partition to current row - running aggregate is updated with each row</li>
+ * <li>N rows or N units of ORDER BY column before current row - partition keeps queue of values in frame</li>
+ * </ul>
+ * Frames other than ROWS also include peers of current row, value of such frame is taken after last peer is seen.
+ * NaN values do not contribute to aggregate, aggregate of frame without values is NaN.
+ */
+abstract class AbstractAggregateFunction extends DoubleFunction implements AnalyticFunction {
+    private static final int ACC_INDEX = 0;
+    private static final int COUNT_INDEX = 1;
+    private static final int ROW_INDEX = 2;
+    private static final int DEQUE_INDEX = 3;
+    private static final int INITIAL_FRAME_CAPACITY = 16;
+    protected final Function arg;
+    private final AnalyticContext context;
+    private final PartitionMap partitions;
+    private final FrameDeque deque;
+    private final boolean wholePartition;
+    private final boolean peerFrame;
+    private final boolean rows;
+    private final long preceding;
+    private final boolean rangeDescending;
+    private double value;
+
+    AbstractAggregateFunction(int position, Function arg, AnalyticContext context) {
+        super(position);
+        this.arg = arg;
+        this.context = context;
+        this.wholePartition = context.isWholePartition();
+        this.peerFrame = context.isPeerFrame();
+        this.rows = context.getFramingMode() != AnalyticColumn.FRAMING_RANGE;
+        this.preceding = context.getFramePreceding();
+        this.rangeDescending = context.isRangeDescending();
+
+        final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+        valueTypes.add(ColumnType.DOUBLE);
+        valueTypes.add(ColumnType.LONG);
+        valueTypes.add(ColumnType.LONG);
+        if (context.isBoundedFrame()) {
+            FrameDeque.pushValueTypes(valueTypes);
+            this.deque = new FrameDeque();
+        } else {
+            this.deque = null;
+        }
+        this.partitions = context.createPartitionMap(valueTypes);
+    }
+
+    static Function getArg(ObjList<Function> args, int position, CharSequence name) throws SqlException {
+        if (args.size() != 1) {
+            throw SqlException.$(position, name).put("() expects single argument");
+        }
+
+        final Function arg = args.getQuick(0);
+        switch (arg.getType()) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return arg;
+            default:
+                throw SqlException.$(arg.getPosition(), "unsupported argument type: ").put(ColumnType.nameOf(arg.getType()));
+        }
+    }
+
+    @Override
+    public void close() {
+        partitions.close();
+        if (deque != null) {
+            deque.close();
+        }
+    }
+
+    @Override
+    public void computeNext(Record record) {
+        final MapValue mapValue = partitions.valueOf(record);
+        if (wholePartition) {
+            value = result(mapValue.getDouble(ACC_INDEX), mapValue.getLong(COUNT_INDEX));
+            return;
+        }
+
+        if (mapValue.isNew()) {
+            init(mapValue);
+        }
+
+        final double v = arg.getDouble(record);
+        if (deque == null) {
+            if (v == v) {
+                accumulate(mapValue, v);
+            }
+            value = frameValue(mapValue);
+            return;
+        }
+
+        final long key;
+        if (rows) {
+            key = mapValue.getLong(ROW_INDEX);
+            mapValue.putLong(ROW_INDEX, key + 1);
+        } else {
+            key = context.getRangeKey(record);
+        }
+
+        evict(mapValue, key);
+
+        if (isInvertible()) {
+            if (v == v) {
+                deque.addLast(mapValue, DEQUE_INDEX, key, Double.doubleToRawLongBits(v));
+                accumulate(mapValue, v);
+            }
+        } else {
+            if (v == v) {
+                // values that can no longer become the aggregate, because current value outlives them, are dropped
+                while (deque.size(mapValue, DEQUE_INDEX) > 0 && supersedes(v, Double.longBitsToDouble(deque.lastValue(mapValue, DEQUE_INDEX)))) {
+                    deque.removeLast(mapValue, DEQUE_INDEX);
+                }
+                deque.addLast(mapValue, DEQUE_INDEX, key, Double.doubleToRawLongBits(v));
+            }
+        }
+        value = frameValue(mapValue);
+    }
+
+    @Override
+    public void computePeer(Record record) {
+        // frame of the last peer is the frame of every row in peer group
+        value = frameValue(partitions.valueOf(record));
+    }
+
+    @Override
+    public double getDouble(Record rec) {
+        return value;
+    }
+
+    @Override
+    public boolean isPeerFrame() {
+        return peerFrame;
+    }
+
+    @Override
+    public boolean isPreComputeRequired() {
+        return wholePartition;
+    }
+
+    @Override
+    public void preCompute(Record record) {
+        final MapValue mapValue = partitions.valueOf(record);
+        if (mapValue.isNew()) {
+            init(mapValue);
+        }
+        final double v = arg.getDouble(record);
+        if (v == v) {
+            accumulate(mapValue, v);
+        }
+    }
+
+    @Override
+    public void reset() {
+        partitions.clear();
+        if (deque != null) {
+            deque.clear();
+        }
+    }
+
+    protected abstract double combine(double acc, double value);
+
+    /**
+     * Invertible aggregates can remove value that leaves frame from the aggregate, others keep
+     * monotonic queue of candidate values.
+     *
+     * @return true when aggregate can be inverted
+     */
+    protected abstract boolean isInvertible();
+
+    protected double result(double acc, long count) {
+        return count == 0 ? Double.NaN : acc;
+    }
+
+    /**
+     * Only called for aggregates that are not invertible.
+     *
+     * @param value newer value
+     * @param older value that entered frame earlier
+     * @return true when older value can never be the aggregate of frame that contains newer value
+     */
+    protected boolean supersedes(double value, double older) {
+        throw new UnsupportedOperationException();
+    }
+
+    private void accumulate(MapValue mapValue, double v) {
+        final long count = mapValue.getLong(COUNT_INDEX);
+        mapValue.putDouble(ACC_INDEX, count == 0 ? v : combine(mapValue.getDouble(ACC_INDEX), v));
+        mapValue.putLong(COUNT_INDEX, count + 1);
+    }
+
+    private void evict(MapValue mapValue, long key) {
+        while (deque.size(mapValue, DEQUE_INDEX) > 0 && isOutOfFrame(deque.firstKey(mapValue, DEQUE_INDEX), key)) {
+            if (isInvertible()) {
+                mapValue.putDouble(ACC_INDEX, mapValue.getDouble(ACC_INDEX) - Double.longBitsToDouble(deque.firstValue(mapValue, DEQUE_INDEX)));
+                mapValue.putLong(COUNT_INDEX, mapValue.getLong(COUNT_INDEX) - 1);
+            }
+            deque.removeFirst(mapValue, DEQUE_INDEX);
+        }
+    }
+
+    private double frameValue(MapValue mapValue) {
+        if (deque == null || isInvertible()) {
+            return result(mapValue.getDouble(ACC_INDEX), mapValue.getLong(COUNT_INDEX));
+        }
+        return deque.size(mapValue, DEQUE_INDEX) > 0 ? Double.longBitsToDouble(deque.firstValue(mapValue, DEQUE_INDEX)) : Double.NaN;
+    }
+
+    private void init(MapValue mapValue) {
+        mapValue.putDouble(ACC_INDEX, 0);
+        mapValue.putLong(COUNT_INDEX, 0);
+        mapValue.putLong(ROW_INDEX, 0);
+        if (deque != null) {
+            deque.init(mapValue, DEQUE_INDEX, INITIAL_FRAME_CAPACITY);
+        }
+    }
+
+    private boolean isOutOfFrame(long key, long currentKey) {
+        if (rows || !rangeDescending) {
+            return currentKey - key > preceding;
+        }
+        return key - currentKey > preceding;
+    }
+}
@@ -0,0 +1,258 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.griffin.SqlException;
+import com.questdb.std.BinarySequence;
+import com.questdb.std.Numbers;
+import com.questdb.std.ObjList;
+import com.questdb.std.str.CharSink;
+
+/**
+ * Base of functions that return value of another row of the same partition, such as lag() and lead().
+ * Values are kept as raw long bits and function returns the same type as its argument.
+ */
+abstract class AbstractOffsetFunction implements AnalyticFunction {
+    protected final Function arg;
+    protected final int offset;
+    protected final PartitionMap partitions;
+    protected final FrameDeque deque = new FrameDeque();
+    protected final long nullBits;
+    private final int position;
+    protected long value;
+
+    AbstractOffsetFunction(int position, Function arg, int offset, AnalyticContext context) {
+        this.position = position;
+        this.arg = arg;
+        this.offset = offset;
+        final ArrayColumnTypes valueTypes = new ArrayColumnTypes();
+        FrameDeque.pushValueTypes(valueTypes);
+        this.partitions = context.createPartitionMap(valueTypes);
+        this.nullBits = nullBits(arg.getType());
+    }
+
+    static int getOffset(ObjList<Function> args, int position, CharSequence name) throws SqlException {
+        if (args.size() < 1 || args.size() > 2) {
+            throw SqlException.$(position, name).put("() expects value and optional offset");
+        }
+
+        final Function arg = args.getQuick(0);
+        switch (arg.getType()) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                break;
+            default:
+                throw SqlException.$(arg.getPosition(), "unsupported argument type: ").put(ColumnType.nameOf(arg.getType()));
+        }
+
+        if (args.size() == 1) {
+            return 1;
+        }
+
+        final Function offset = args.getQuick(1);
+        if (offset.isConstant()) {
+            switch (offset.getType()) {
+                case ColumnType.BYTE:
+                case ColumnType.SHORT:
+                case ColumnType.INT:
+                case ColumnType.LONG:
+                    final long value = offset.getLong(null);
+                    if (value > 0 && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        throw SqlException.$(offset.getPosition(), "offset must be positive integer constant");
+    }
+
+    private static long nullBits(int type) {
+        switch (type) {
+            case ColumnType.INT:
+                return Numbers.INT_NaN;
+            case ColumnType.LONG:
+            case ColumnType.DATE:
+            case ColumnType.TIMESTAMP:
+                return Numbers.LONG_NaN;
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return Double.doubleToRawLongBits(Double.NaN);
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        partitions.close();
+        deque.close();
+    }
+
+    @Override
+    public BinarySequence getBin(Record rec) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getBinLen(Record rec) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getBool(Record rec) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte getByte(Record rec) {
+        return (byte) value;
+    }
+
+    @Override
+    public long getDate(Record rec) {
+        return value;
+    }
+
+    @Override
+    public double getDouble(Record rec) {
+        return isFloatingPoint() ? Double.longBitsToDouble(value) : value;
+    }
+
+    @Override
+    public float getFloat(Record rec) {
+        return (float) getDouble(rec);
+    }
+
+    @Override
+    public int getInt(Record rec) {
+        return (int) value;
+    }
+
+    @Override
+    public long getLong(Record rec) {
+        return value;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public RecordCursorFactory getRecordCursorFactory() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public short getShort(Record rec) {
+        return (short) value;
+    }
+
+    @Override
+    public CharSequence getStr(Record rec) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void getStr(Record rec, CharSink sink) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CharSequence getStrB(Record rec) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getStrLen(Record rec) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public CharSequence getSymbol(Record rec) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getTimestamp(Record rec) {
+        return value;
+    }
+
+    @Override
+    public int getType() {
+        return arg.getType();
+    }
+
+    @Override
+    public void reset() {
+        partitions.clear();
+        deque.clear();
+    }
+
+    protected long readBits(Record record) {
+        switch (arg.getType()) {
+            case ColumnType.BYTE:
+                return arg.getByte(record);
+            case ColumnType.SHORT:
+                return arg.getShort(record);
+            case ColumnType.INT:
+                return arg.getInt(record);
+            case ColumnType.DATE:
+                return arg.getDate(record);
+            case ColumnType.TIMESTAMP:
+                return arg.getTimestamp(record);
+            case ColumnType.FLOAT:
+                return Double.doubleToRawLongBits(arg.getFloat(record));
+            case ColumnType.DOUBLE:
+                return Double.doubleToRawLongBits(arg.getDouble(record));
+            default:
+                return arg.getLong(record);
+        }
+    }
+
+    private boolean isFloatingPoint() {
+        final int type = arg.getType();
+        return type == ColumnType.FLOAT || type == ColumnType.DOUBLE;
+    }
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.CairoConfiguration;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.ColumnTypes;
+import com.questdb.cairo.RecordSink;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.model.AnalyticColumn;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Window definition of analytic function that is being created. Code generator populates context
+ * before it calls {@link AnalyticFunctionFactory} for each analytic column.
+ */
+public class AnalyticContext {
+    private final CairoConfiguration configuration;
+    private final ArrayColumnTypes singlePartitionKeyTypes = new ArrayColumnTypes().add(ColumnType.LONG);
+    private ColumnTypes partitionKeyTypes;
+    private RecordSink partitionSink;
+    private boolean ordered;
+    private int framingMode;
+    private long framePreceding;
+    private int rangeColumnIndex;
+    private int rangeColumnType;
+    private boolean rangeDescending;
+
+    public AnalyticContext(CairoConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    public PartitionMap createPartitionMap(ColumnTypes valueTypes) {
+        return new PartitionMap(
+                configuration,
+                partitionSink == null ? singlePartitionKeyTypes : partitionKeyTypes,
+                valueTypes,
+                partitionSink
+        );
+    }
+
+    public CairoConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public long getFramePreceding() {
+        return framePreceding;
+    }
+
+    public int getFramingMode() {
+        return framingMode;
+    }
+
+    /**
+     * @param record current row
+     * @return value of ORDER BY column that RANGE frame is measured by
+     */
+    public long getRangeKey(Record record) {
+        switch (rangeColumnType) {
+            case ColumnType.INT:
+                return record.getInt(rangeColumnIndex);
+            case ColumnType.DATE:
+                return record.getDate(rangeColumnIndex);
+            case ColumnType.TIMESTAMP:
+                return record.getTimestamp(rangeColumnIndex);
+            default:
+                return record.getLong(rangeColumnIndex);
+        }
+    }
+
+    /**
+     * @return true when frame ends at current row but does not start at first row of partition
+     */
+    public boolean isBoundedFrame() {
+        return !isWholePartition() && framePreceding != AnalyticColumn.UNBOUNDED_PRECEDING;
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /**
+     * Default frame with ORDER BY and RANGE frames end at last peer of current row, that is the last row
+     * with the same ORDER BY values, rather than at current row itself.
+     *
+     * @return true when frame includes peers of current row
+     */
+    public boolean isPeerFrame() {
+        return ordered && framingMode != AnalyticColumn.FRAMING_ROWS;
+    }
+
+    public boolean isRangeDescending() {
+        return rangeDescending;
+    }
+
+    /**
+     * Without ORDER BY all rows of partition are peers, unless frame is counted in rows
+     * frame is entire partition.
+     *
+     * @return true when frame spans entire partition
+     */
+    public boolean isWholePartition() {
+        return !ordered && framingMode != AnalyticColumn.FRAMING_ROWS;
+    }
+
+    public void of(
+            ColumnTypes partitionKeyTypes,
+            @Nullable RecordSink partitionSink,
+            boolean ordered,
+            int framingMode,
+            long framePreceding,
+            int rangeColumnIndex,
+            int rangeColumnType,
+            boolean rangeDescending
+    ) {
+        this.partitionKeyTypes = partitionKeyTypes;
+        this.partitionSink = partitionSink;
+        this.ordered = ordered;
+        this.framingMode = framingMode;
+        this.framePreceding = framePreceding;
+        this.rangeColumnIndex = rangeColumnIndex;
+        this.rangeColumnType = rangeColumnType;
+        this.rangeDescending = rangeDescending;
+    }
+}
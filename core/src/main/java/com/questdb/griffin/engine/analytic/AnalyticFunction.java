@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+
+/**
+ * Function that is evaluated over window of rows rather than single row. Rows are supplied in window
+ * order one at a time and function keeps whatever partition state it needs to produce value for
+ * the current row. Value is then available via getXXX() methods until next row is supplied.
+ */
+public interface AnalyticFunction extends Function {
+
+    /**
+     * Computes value of function for the given row. Rows of all partitions are interleaved, function
+     * has to find its partition state itself.
+     *
+     * @param record current row
+     */
+    void computeNext(Record record);
+
+    /**
+     * Computes value of function for row, whose peers have all been given to {@link #computeNext(Record)}
+     * already. Partition state must not change here, the call is made once for each row of the peer group.
+     * Only called for functions that return true from {@link #isPeerFrame()}.
+     *
+     * @param record row of current peer group
+     */
+    default void computePeer(Record record) {
+    }
+
+    /**
+     * Value of function, whose frame includes peers of current row, depends on rows that follow it. Cursor
+     * supplies such function with entire peer group via {@link #computeNext(Record)} and then revisits each
+     * row of the group with {@link #computePeer(Record)}.
+     *
+     * @return true when frame of function ends at last peer of current row
+     */
+    default boolean isPeerFrame() {
+        return false;
+    }
+
+    /**
+     * Functions that cannot produce value before they see rows that follow current one, such as lead() or
+     * aggregate over entire partition, are given every row here before first call to {@link #computeNext(Record)}.
+     *
+     * @param record row in the same order as it will be later given to {@link #computeNext(Record)}
+     */
+    default void preCompute(Record record) {
+    }
+
+    default boolean isPreComputeRequired() {
+        return false;
+    }
+
+    /**
+     * Discards partition state, cursor calls this method before it starts supplying rows again.
+     */
+    void reset();
+}
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.AbstractRecordCursorFactory;
+import com.questdb.cairo.CairoConfiguration;
+import com.questdb.cairo.RecordChain;
+import com.questdb.cairo.RecordSink;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.griffin.engine.orderby.RecordComparator;
+import com.questdb.std.IntList;
+import com.questdb.std.Misc;
+import com.questdb.std.ObjList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Evaluates analytic functions in single pass over base cursor, which must already be in window order.
+ * Base rows are not materialised, each function keeps only the partition state it needs. When some of
+ * the functions need to look at rows ahead of current one base cursor is scanned twice. Functions, whose
+ * frame includes peers of current row, need group of rows with equal ORDER BY values to be seen before
+ * value of any of them is known. Only the current group of such rows is copied, base is still streamed.
+ */
+public class AnalyticRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final ObjList<Function> functions;
+    private final ObjList<AnalyticFunction> analyticFunctions;
+    private final AnalyticRecordCursor cursor;
+
+    /**
+     * @param peerComparator compares ORDER BY columns of rows, must be provided when any of the functions
+     *                       is evaluated over peer frame
+     * @param peerSink       copies base rows into peer group, must be provided together with comparator
+     */
+    public AnalyticRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordMetadata metadata,
+            RecordCursorFactory base,
+            ObjList<Function> functions,
+            ObjList<AnalyticFunction> analyticFunctions,
+            @Nullable IntList symbolTableCrossIndex,
+            @Nullable RecordComparator peerComparator,
+            @Nullable RecordSink peerSink
+    ) {
+        super(metadata);
+        this.base = base;
+        this.functions = functions;
+        this.analyticFunctions = analyticFunctions;
+        final RecordChain peers;
+        if (peerComparator != null) {
+            assert peerSink != null;
+            peers = new RecordChain(base.getMetadata(), peerSink, configuration.getSqlAnalyticPeerPageSize());
+        } else {
+            peers = null;
+        }
+        this.cursor = new AnalyticRecordCursor(functions, analyticFunctions, symbolTableCrossIndex, peerComparator, peers);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            functions.getQuick(i).close();
+        }
+        Misc.free(cursor.peers);
+        base.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        final RecordCursor baseCursor = base.getCursor(bindVariableService);
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            functions.getQuick(i).init(baseCursor, bindVariableService);
+        }
+        cursor.of(baseCursor);
+        return cursor;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return false;
+    }
+
+    private static class AnalyticRecordCursor implements NoRandomAccessRecordCursor {
+        private final VirtualRecordNoRowid record;
+        private final ObjList<AnalyticFunction> analyticFunctions;
+        private final IntList symbolTableCrossIndex;
+        private final boolean preComputeRequired;
+        private final RecordComparator peerComparator;
+        private final RecordChain peers;
+        private final Record groupRecord;
+        private RecordCursor baseCursor;
+        private Record baseRecord;
+        private boolean groupPending;
+
+        public AnalyticRecordCursor(
+                ObjList<Function> functions,
+                ObjList<AnalyticFunction> analyticFunctions,
+                @Nullable IntList symbolTableCrossIndex,
+                @Nullable RecordComparator peerComparator,
+                @Nullable RecordChain peers
+        ) {
+            this.record = new VirtualRecordNoRowid(functions);
+            this.analyticFunctions = analyticFunctions;
+            this.symbolTableCrossIndex = symbolTableCrossIndex;
+            this.peerComparator = peerComparator;
+            this.peers = peers;
+            this.groupRecord = peers == null ? null : peers.newRecord();
+            boolean preComputeRequired = false;
+            for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                preComputeRequired |= analyticFunctions.getQuick(i).isPreComputeRequired();
+            }
+            this.preComputeRequired = preComputeRequired;
+        }
+
+        @Override
+        public void close() {
+            baseCursor = Misc.free(baseCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            assert symbolTableCrossIndex != null;
+            return baseCursor.getSymbolTable(symbolTableCrossIndex.getQuick(columnIndex));
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (peers != null) {
+                return hasNextPeer();
+            }
+
+            if (baseCursor.hasNext()) {
+                for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                    analyticFunctions.getQuick(i).computeNext(baseRecord);
+                }
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public long size() {
+            return baseCursor.size();
+        }
+
+        @Override
+        public void toTop() {
+            baseCursor.toTop();
+            prepare();
+        }
+
+        void of(RecordCursor baseCursor) {
+            this.baseCursor = baseCursor;
+            this.baseRecord = baseCursor.getRecord();
+            if (peers != null) {
+                peers.setSymbolTableResolver(baseCursor);
+                record.of(peers.getRecord());
+            } else {
+                record.of(baseRecord);
+            }
+            prepare();
+        }
+
+        private long addPeer(long prevOffset) {
+            for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                final AnalyticFunction function = analyticFunctions.getQuick(i);
+                if (function.isPeerFrame()) {
+                    function.computeNext(baseRecord);
+                }
+            }
+            return peers.put(baseRecord, prevOffset);
+        }
+
+        private boolean hasNextPeer() {
+            if (!peers.hasNext()) {
+                if (!nextPeerGroup()) {
+                    return false;
+                }
+                peers.hasNext();
+            }
+
+            final Record peerRecord = peers.getRecord();
+            for (int i = 0, n = analyticFunctions.size(); i < n; i++) {
+                final AnalyticFunction function = analyticFunctions.getQuick(i);
+                if (function.isPeerFrame()) {
+                    function.computePeer(peerRecord);
+                } else {
+                    function.computeNext(peerRecord);
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Copies rows up to and including last peer of the next row. Base cursor stops on the row
+         * that starts the following group, this row is picked up by the next call.
+         *
+         * @return false when base cursor is exhausted
+         */
+        private boolean nextPeerGroup() {
+            if (groupPending) {
+                groupPending = false;
+            } else if (!baseCursor.hasNext()) {
+                return false;
+            }
+
+            peers.truncate();
+            long offset = addPeer(-1L);
+            peers.recordAt(groupRecord, offset);
+            peerComparator.setLeft(groupRecord);
+
+            while (baseCursor.hasNext()) {
+                if (peerComparator.compare(baseRecord) != 0) {
+                    groupPending = true;
+                    break;
+                }
+                offset = addPeer(offset);
+            }
+            peers.toTop();
+            return true;
+        }
+
+        private void prepare() {
+            final int n = analyticFunctions.size();
+            for (int i = 0; i < n; i++) {
+                analyticFunctions.getQuick(i).reset();
+            }
+
+            if (preComputeRequired) {
+                while (baseCursor.hasNext()) {
+                    for (int i = 0; i < n; i++) {
+                        final AnalyticFunction function = analyticFunctions.getQuick(i);
+                        if (function.isPreComputeRequired()) {
+                            function.preCompute(baseRecord);
+                        }
+                    }
+                }
+                baseCursor.toTop();
+            }
+
+            if (peers != null) {
+                peers.truncate();
+                groupPending = false;
+            }
+        }
+    }
+}
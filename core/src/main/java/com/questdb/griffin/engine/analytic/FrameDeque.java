@@ -0,0 +1,174 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.std.Mutable;
+import com.questdb.std.Unsafe;
+
+import java.io.Closeable;
+
+/**
+ * Double-ended queues of (key, value) pairs, one per partition, kept in single block of off-heap memory.
+ * Queue is ring buffer, its state lives in partition map value as four LONG columns: offset of ring in
+ * memory block, ring capacity, index of first entry and queue size. Full ring is moved to the end of
+ * memory block with double the capacity. Space of the old ring is not reused until the block is cleared,
+ * which keeps allocation trivial at the cost of up to twice the memory rings need.
+ */
+public class FrameDeque implements Mutable, Closeable {
+    private static final int ENTRY_SHL = 4;
+    private static final int MIN_BLOCK_ENTRIES = 1024;
+    private long address;
+    private long capacity;
+    private long used;
+
+    public static void pushValueTypes(ArrayColumnTypes columnTypes) {
+        columnTypes.add(ColumnType.LONG);
+        columnTypes.add(ColumnType.LONG);
+        columnTypes.add(ColumnType.LONG);
+        columnTypes.add(ColumnType.LONG);
+    }
+
+    public void addLast(MapValue value, int index, long key, long val) {
+        long ringCapacity = value.getLong(index + 1);
+        long size = value.getLong(index + 3);
+        if (size == ringCapacity) {
+            grow(value, index, ringCapacity, size);
+            ringCapacity = ringCapacity * 2;
+        }
+        final long p = entryAddress(value.getLong(index), ringCapacity, value.getLong(index + 2) + size);
+        Unsafe.getUnsafe().putLong(p, key);
+        Unsafe.getUnsafe().putLong(p + 8, val);
+        value.putLong(index + 3, size + 1);
+    }
+
+    @Override
+    public void clear() {
+        used = 0;
+    }
+
+    @Override
+    public void close() {
+        if (address != 0) {
+            Unsafe.free(address, capacity << ENTRY_SHL);
+            address = 0;
+            capacity = 0;
+            used = 0;
+        }
+    }
+
+    public long firstKey(MapValue value, int index) {
+        return Unsafe.getUnsafe().getLong(entryAddress(value, index, 0));
+    }
+
+    public long firstValue(MapValue value, int index) {
+        return Unsafe.getUnsafe().getLong(entryAddress(value, index, 0) + 8);
+    }
+
+    /**
+     * Allocates ring for new partition.
+     *
+     * @param value        partition state
+     * @param index        index of first of four state columns
+     * @param ringCapacity initial capacity of ring, queue grows when capacity is exceeded
+     */
+    public void init(MapValue value, int index, long ringCapacity) {
+        value.putLong(index, allocate(ringCapacity));
+        value.putLong(index + 1, ringCapacity);
+        value.putLong(index + 2, 0);
+        value.putLong(index + 3, 0);
+    }
+
+    public long lastKey(MapValue value, int index) {
+        return Unsafe.getUnsafe().getLong(entryAddress(value, index, value.getLong(index + 3) - 1));
+    }
+
+    public long lastValue(MapValue value, int index) {
+        return Unsafe.getUnsafe().getLong(entryAddress(value, index, value.getLong(index + 3) - 1) + 8);
+    }
+
+    public void removeFirst(MapValue value, int index) {
+        final long ringCapacity = value.getLong(index + 1);
+        value.putLong(index + 2, (value.getLong(index + 2) + 1) % ringCapacity);
+        value.putLong(index + 3, value.getLong(index + 3) - 1);
+    }
+
+    public void removeLast(MapValue value, int index) {
+        value.putLong(index + 3, value.getLong(index + 3) - 1);
+    }
+
+    public long size(MapValue value, int index) {
+        return value.getLong(index + 3);
+    }
+
+    private long allocate(long entries) {
+        if (used + entries > capacity) {
+            final long newCapacity = Math.max(Math.max(capacity * 2, used + entries), MIN_BLOCK_ENTRIES);
+            final long newAddress = Unsafe.malloc(newCapacity << ENTRY_SHL);
+            if (address != 0) {
+                Unsafe.getUnsafe().copyMemory(address, newAddress, used << ENTRY_SHL);
+                Unsafe.free(address, capacity << ENTRY_SHL);
+            }
+            address = newAddress;
+            capacity = newCapacity;
+        }
+        final long offset = used;
+        used += entries;
+        return offset;
+    }
+
+    private long entryAddress(MapValue value, int index, long i) {
+        return entryAddress(value.getLong(index), value.getLong(index + 1), value.getLong(index + 2) + i);
+    }
+
+    private long entryAddress(long offset, long ringCapacity, long i) {
+        return address + ((offset + i % ringCapacity) << ENTRY_SHL);
+    }
+
+    private void grow(MapValue value, int index, long ringCapacity, long size) {
+        final long newOffset = allocate(ringCapacity * 2);
+        // allocation may have moved memory block, ring addresses are computed after it
+        final long offset = value.getLong(index);
+        final long head = value.getLong(index + 2);
+        final long headCount = Math.min(size, ringCapacity - head);
+        Unsafe.getUnsafe().copyMemory(
+                address + ((offset + head) << ENTRY_SHL),
+                address + (newOffset << ENTRY_SHL),
+                headCount << ENTRY_SHL
+        );
+        if (headCount < size) {
+            Unsafe.getUnsafe().copyMemory(
+                    address + (offset << ENTRY_SHL),
+                    address + ((newOffset + headCount) << ENTRY_SHL),
+                    (size - headCount) << ENTRY_SHL
+            );
+        }
+        value.putLong(index, newOffset);
+        value.putLong(index + 1, ringCapacity * 2);
+        value.putLong(index + 2, 0);
+    }
+}
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.SqlException;
+import com.questdb.std.ObjList;
+
+public class LagFunctionFactory implements AnalyticFunctionFactory {
+    @Override
+    public String getName() {
+        return "lag";
+    }
+
+    @Override
+    public AnalyticFunction newInstance(ObjList<Function> args, int position, AnalyticContext context) throws SqlException {
+        final int offset = AbstractOffsetFunction.getOffset(args, position, getName());
+        return new Func(position, args.getQuick(0), offset, context);
+    }
+
+    private static class Func extends AbstractOffsetFunction {
+
+        public Func(int position, Function arg, int offset, AnalyticContext context) {
+            super(position, arg, offset, context);
+        }
+
+        @Override
+        public void computeNext(Record record) {
+            // partition keeps values of last "offset" rows, the oldest of them is the one we need
+            final MapValue mapValue = partitions.valueOf(record);
+            if (mapValue.isNew()) {
+                deque.init(mapValue, 0, offset);
+            }
+
+            if (deque.size(mapValue, 0) == offset) {
+                value = deque.firstValue(mapValue, 0);
+                deque.removeFirst(mapValue, 0);
+            } else {
+                value = nullBits;
+            }
+            deque.addLast(mapValue, 0, 0, readBits(record));
+        }
+    }
+}
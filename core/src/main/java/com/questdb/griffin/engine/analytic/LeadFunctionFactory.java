@@ -0,0 +1,99 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.SqlException;
+import com.questdb.std.DirectLongList;
+import com.questdb.std.ObjList;
+
+public class LeadFunctionFactory implements AnalyticFunctionFactory {
+    @Override
+    public String getName() {
+        return "lead";
+    }
+
+    @Override
+    public AnalyticFunction newInstance(ObjList<Function> args, int position, AnalyticContext context) throws SqlException {
+        final int offset = AbstractOffsetFunction.getOffset(args, position, getName());
+        return new Func(position, args.getQuick(0), offset, context);
+    }
+
+    /**
+     * Value of the row "offset" rows ahead is known only when that row is seen. Pre-compute pass keeps
+     * indexes of rows still waiting for their value in partition queue and assigns values to them in
+     * single long per row of input. This list is the only state that grows with the size of input.
+     */
+    private static class Func extends AbstractOffsetFunction {
+        private final DirectLongList values = new DirectLongList(1024);
+        private long rowIndex;
+
+        public Func(int position, Function arg, int offset, AnalyticContext context) {
+            super(position, arg, offset, context);
+        }
+
+        @Override
+        public void close() {
+            super.close();
+            values.close();
+        }
+
+        @Override
+        public void computeNext(Record record) {
+            value = values.get(rowIndex++);
+        }
+
+        @Override
+        public boolean isPreComputeRequired() {
+            return true;
+        }
+
+        @Override
+        public void preCompute(Record record) {
+            final long current = values.size();
+            values.add(nullBits);
+
+            final MapValue mapValue = partitions.valueOf(record);
+            if (mapValue.isNew()) {
+                deque.init(mapValue, 0, offset);
+            }
+
+            if (deque.size(mapValue, 0) == offset) {
+                values.set(deque.firstValue(mapValue, 0), readBits(record));
+                deque.removeFirst(mapValue, 0);
+            }
+            deque.addLast(mapValue, 0, 0, current);
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            values.clear();
+            rowIndex = 0;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.CairoConfiguration;
+import com.questdb.cairo.ColumnTypes;
+import com.questdb.cairo.RecordSink;
+import com.questdb.cairo.map.Map;
+import com.questdb.cairo.map.MapFactory;
+import com.questdb.cairo.map.MapKey;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Record;
+import com.questdb.std.Mutable;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * State of analytic function for each partition. When analytic function is not partitioned all rows
+ * belong to single partition with constant key.
+ */
+public class PartitionMap implements Mutable, Closeable {
+    private final Map map;
+    private final RecordSink partitionSink;
+
+    public PartitionMap(
+            CairoConfiguration configuration,
+            ColumnTypes keyTypes,
+            ColumnTypes valueTypes,
+            @Nullable RecordSink partitionSink
+    ) {
+        this.map = MapFactory.createMap(configuration, keyTypes, valueTypes);
+        this.partitionSink = partitionSink;
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+    }
+
+    @Override
+    public void close() {
+        map.close();
+    }
+
+    /**
+     * Finds state of partition given record belongs to. State is created when partition is new, which
+     * callers can check via {@link MapValue#isNew()}.
+     *
+     * @param record row of partition
+     * @return partition state
+     */
+    public MapValue valueOf(Record record) {
+        if (partitionSink == null) {
+            return map.withKeyAsLong(0).createValue();
+        }
+        final MapKey key = map.withKey();
+        partitionSink.copy(record, key);
+        return key.createValue();
+    }
+}
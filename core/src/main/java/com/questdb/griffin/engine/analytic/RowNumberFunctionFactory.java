@@ -0,0 +1,81 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.engine.functions.LongFunction;
+import com.questdb.std.ObjList;
+
+public class RowNumberFunctionFactory implements AnalyticFunctionFactory {
+    @Override
+    public String getName() {
+        return "row_number";
+    }
+
+    @Override
+    public AnalyticFunction newInstance(ObjList<Function> args, int position, AnalyticContext context) throws SqlException {
+        if (args.size() > 0) {
+            throw SqlException.$(position, "row_number() does not take arguments");
+        }
+        return new Func(position, context.createPartitionMap(new ArrayColumnTypes().add(ColumnType.LONG)));
+    }
+
+    private static class Func extends LongFunction implements AnalyticFunction {
+        private final PartitionMap partitions;
+        private long value;
+
+        public Func(int position, PartitionMap partitions) {
+            super(position);
+            this.partitions = partitions;
+        }
+
+        @Override
+        public void close() {
+            partitions.close();
+        }
+
+        @Override
+        public void computeNext(Record record) {
+            final MapValue mapValue = partitions.valueOf(record);
+            value = mapValue.isNew() ? 1 : mapValue.getLong(0) + 1;
+            mapValue.putLong(0, value);
+        }
+
+        @Override
+        public long getLong(Record rec) {
+            return value;
+        }
+
+        @Override
+        public void reset() {
+            partitions.clear();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.cairo.sql.Function;
+import com.questdb.griffin.SqlException;
+import com.questdb.std.ObjList;
+
+public class SumFunctionFactory implements AnalyticFunctionFactory {
+    @Override
+    public String getName() {
+        return "sum";
+    }
+
+    @Override
+    public AnalyticFunction newInstance(ObjList<Function> args, int position, AnalyticContext context) throws SqlException {
+        return new Func(position, AbstractAggregateFunction.getArg(args, position, getName()), context);
+    }
+
+    private static class Func extends AbstractAggregateFunction {
+
+        public Func(int position, Function arg, AnalyticContext context) {
+            super(position, arg, context);
+        }
+
+        @Override
+        protected double combine(double acc, double value) {
+            return acc + value;
+        }
+
+        @Override
+        protected boolean isInvertible() {
+            return true;
+        }
+    }
+}
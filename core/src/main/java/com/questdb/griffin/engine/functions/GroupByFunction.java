@@ -33,6 +33,16 @@ public interface GroupByFunction extends Function {
 
     void computeNext(MapValue mapValue, Record record);
 
+    /**
+     * Folds partial aggregate of the same key computed over different set of rows into destination value.
+     * Parallel group-by calls this to combine maps of its workers. Values are never new, keys that do not
+     * exist in destination map are copied as they are.
+     *
+     * @param destValue value to update
+     * @param srcValue  partial aggregate to fold in
+     */
+    void merge(MapValue destValue, MapValue srcValue);
+
     void pushValueTypes(ArrayColumnTypes columnTypes);
 
     default void setByte(MapValue mapValue, byte value) {
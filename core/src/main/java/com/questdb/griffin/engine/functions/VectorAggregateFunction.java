@@ -0,0 +1,56 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.functions;
+
+import com.questdb.cairo.map.MapValue;
+
+/**
+ * Group-by function that aggregates batch of values of its column straight from column memory of page frame,
+ * see {@link com.questdb.cairo.sql.PageFrame}. Batch is never empty. When map value is new the first value of
+ * the batch is computed as first, the rest as next.
+ */
+public interface VectorAggregateFunction extends GroupByFunction {
+
+    /**
+     * @param mapValue value to update
+     * @param address  address of the first value of the batch, function that does not read values gets 0
+     * @param count    number of values
+     */
+    void computeBatch(MapValue mapValue, long address, long count);
+
+    /**
+     * @param mapValue value to update
+     * @param address  address of value of the first row of page frame
+     * @param rows     address of selection vector, offsets of rows from the first row of page frame
+     * @param count    number of offsets in selection vector
+     */
+    void computeBatchSelected(MapValue mapValue, long address, long rows, long count);
+
+    /**
+     * @param columnType type of column function argument is or -1 when function has no argument
+     * @return true when function can read values of the column directly from memory
+     */
+    boolean isVectorSupported(int columnType);
+}
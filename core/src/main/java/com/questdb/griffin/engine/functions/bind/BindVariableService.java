@@ -29,6 +29,8 @@ import com.questdb.griffin.SqlException;
 import com.questdb.std.BinarySequence;
 import com.questdb.std.CharSequenceObjHashMap;
 import com.questdb.std.Chars;
+import com.questdb.std.ObjList;
+import com.questdb.std.str.CharSink;
 
 public class BindVariableService {
     private final CharSequenceObjHashMap<Function> variables = new CharSequenceObjHashMap<>();
@@ -37,6 +39,21 @@ public class BindVariableService {
         variables.clear();
     }
 
+    /**
+     * Prints names and types of defined variables in name order. Query compiled for
+     * one set of types is not valid for another, so this is part of query cache key.
+     *
+     * @param sink sink to print to
+     */
+    public void typesToSink(CharSink sink) {
+        variables.sortKeys(Chars::compare);
+        ObjList<CharSequence> names = variables.keys();
+        for (int i = 0, n = names.size(); i < n; i++) {
+            CharSequence name = names.getQuick(i);
+            sink.put(':').put(name).put(' ').put(ColumnType.nameOf(variables.get(name).getType())).put(';');
+        }
+    }
+
     public Function getFunction(CharSequence name) {
         assert name != null;
         assert Chars.startsWith(name, ':');
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.functions.groupby;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.engine.functions.DoubleFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
+import com.questdb.std.Numbers;
+import com.questdb.std.Vect;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Average of non-null values. Keeps sum of values and their count, value of function without values is NaN.
+ */
+public class AvgDoubleGroupByFunction extends DoubleFunction implements VectorAggregateFunction {
+    private final Function value;
+    private int valueIndex;
+
+    public AvgDoubleGroupByFunction(int position, @NotNull Function value) {
+        super(position);
+        this.value = value;
+    }
+
+    @Override
+    public void computeBatch(MapValue mapValue, long address, long count) {
+        switch (value.getType()) {
+            case ColumnType.INT:
+                aggregate(mapValue, Vect.sumInt(address, count), Vect.countInt(address, count));
+                break;
+            case ColumnType.LONG:
+                aggregate(mapValue, Vect.sumLong(address, count), Vect.countLong(address, count));
+                break;
+            case ColumnType.FLOAT:
+                aggregate(mapValue, Vect.sumFloat(address, count), Vect.countFloat(address, count));
+                break;
+            default:
+                aggregate(mapValue, Vect.sumDouble(address, count), Vect.countDouble(address, count));
+                break;
+        }
+    }
+
+    @Override
+    public void computeBatchSelected(MapValue mapValue, long address, long rows, long count) {
+        switch (value.getType()) {
+            case ColumnType.INT:
+                aggregate(mapValue, Vect.sumIntSelected(address, rows, count), Vect.countIntSelected(address, rows, count));
+                break;
+            case ColumnType.LONG:
+                aggregate(mapValue, Vect.sumLongSelected(address, rows, count), Vect.countLongSelected(address, rows, count));
+                break;
+            case ColumnType.FLOAT:
+                aggregate(mapValue, Vect.sumFloatSelected(address, rows, count), Vect.countFloatSelected(address, rows, count));
+                break;
+            default:
+                aggregate(mapValue, Vect.sumDoubleSelected(address, rows, count), Vect.countDoubleSelected(address, rows, count));
+                break;
+        }
+    }
+
+    @Override
+    public void computeFirst(MapValue mapValue, Record record) {
+        setDouble(mapValue, getValue(record));
+    }
+
+    @Override
+    public void computeNext(MapValue mapValue, Record record) {
+        final double x = getValue(record);
+        if (!Double.isNaN(x)) {
+            add(mapValue, x, 1);
+        }
+    }
+
+    @Override
+    public boolean isVectorSupported(int columnType) {
+        switch (columnType) {
+            case ColumnType.INT:
+            case ColumnType.LONG:
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return columnType == value.getType();
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        add(destValue, srcValue.getDouble(valueIndex), srcValue.getLong(valueIndex + 1));
+    }
+
+    @Override
+    public void pushValueTypes(ArrayColumnTypes columnTypes) {
+        this.valueIndex = columnTypes.getColumnCount();
+        columnTypes.add(ColumnType.DOUBLE);
+        columnTypes.add(ColumnType.LONG);
+    }
+
+    @Override
+    public void setDouble(MapValue mapValue, double value) {
+        if (Double.isNaN(value)) {
+            setNull(mapValue);
+        } else {
+            mapValue.putDouble(valueIndex, value);
+            mapValue.putLong(valueIndex + 1, 1);
+        }
+    }
+
+    @Override
+    public void setNull(MapValue mapValue) {
+        mapValue.putDouble(valueIndex, 0);
+        mapValue.putLong(valueIndex + 1, 0);
+    }
+
+    @Override
+    public double getDouble(Record rec) {
+        final long count = rec.getLong(valueIndex + 1);
+        return count > 0 ? rec.getDouble(valueIndex) / count : Double.NaN;
+    }
+
+    private void add(MapValue mapValue, double sum, long count) {
+        mapValue.putDouble(valueIndex, mapValue.getDouble(valueIndex) + sum);
+        mapValue.putLong(valueIndex + 1, mapValue.getLong(valueIndex + 1) + count);
+    }
+
+    private void aggregate(MapValue mapValue, double sum, long count) {
+        if (mapValue.isNew()) {
+            setNull(mapValue);
+        }
+        if (count > 0) {
+            add(mapValue, sum, count);
+        }
+    }
+
+    // INT and LONG nulls do not convert to NaN
+    private double getValue(Record record) {
+        switch (value.getType()) {
+            case ColumnType.INT:
+                final int i = value.getInt(record);
+                return i == Numbers.INT_NaN ? Double.NaN : i;
+            case ColumnType.LONG:
+                final long l = value.getLong(record);
+                return l == Numbers.LONG_NaN ? Double.NaN : l;
+            default:
+                return value.getDouble(record);
+        }
+    }
+}
@@ -27,17 +27,31 @@ import com.questdb.cairo.ArrayColumnTypes;
 import com.questdb.cairo.ColumnType;
 import com.questdb.cairo.map.MapValue;
 import com.questdb.cairo.sql.Record;
-import com.questdb.griffin.engine.functions.GroupByFunction;
 import com.questdb.griffin.engine.functions.LongFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
 import com.questdb.std.Numbers;
 
-public class CountGroupByFunction extends LongFunction implements GroupByFunction {
+public class CountGroupByFunction extends LongFunction implements VectorAggregateFunction {
     private int valueIndex;
 
     public CountGroupByFunction(int position) {
         super(position);
     }
 
+    @Override
+    public void computeBatch(MapValue mapValue, long address, long count) {
+        if (mapValue.isNew()) {
+            mapValue.putLong(valueIndex, count);
+        } else {
+            mapValue.putLong(valueIndex, mapValue.getLong(valueIndex) + count);
+        }
+    }
+
+    @Override
+    public void computeBatchSelected(MapValue mapValue, long address, long rows, long count) {
+        computeBatch(mapValue, address, count);
+    }
+
     @Override
     public void computeFirst(MapValue mapValue, Record record) {
         mapValue.putLong(valueIndex, 1L);
@@ -48,6 +62,17 @@ public class CountGroupByFunction extends LongFunction implements GroupByFunctio
         mapValue.putLong(valueIndex, mapValue.getLong(valueIndex) + 1);
     }
 
+    @Override
+    public boolean isVectorSupported(int columnType) {
+        // count does not read values
+        return true;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        destValue.putLong(valueIndex, destValue.getLong(valueIndex) + srcValue.getLong(valueIndex));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.functions.groupby;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.engine.functions.FloatFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
+import com.questdb.std.Vect;
+import org.jetbrains.annotations.NotNull;
+
+public class MinFloatGroupByFunction extends FloatFunction implements VectorAggregateFunction {
+    private final Function value;
+    private int valueIndex;
+
+    public MinFloatGroupByFunction(int position, @NotNull Function value) {
+        super(position);
+        this.value = value;
+    }
+
+    @Override
+    public void computeBatch(MapValue mapValue, long address, long count) {
+        aggregate(mapValue, Vect.minFloat(address, count));
+    }
+
+    @Override
+    public void computeBatchSelected(MapValue mapValue, long address, long rows, long count) {
+        aggregate(mapValue, Vect.minFloatSelected(address, rows, count));
+    }
+
+    @Override
+    public void computeFirst(MapValue mapValue, Record record) {
+        mapValue.putFloat(valueIndex, value.getFloat(record));
+    }
+
+    @Override
+    public void computeNext(MapValue mapValue, Record record) {
+        min(mapValue, value.getFloat(record));
+    }
+
+    @Override
+    public boolean isVectorSupported(int columnType) {
+        return columnType == ColumnType.FLOAT;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        min(destValue, srcValue.getFloat(valueIndex));
+    }
+
+    @Override
+    public void pushValueTypes(ArrayColumnTypes columnTypes) {
+        this.valueIndex = columnTypes.getColumnCount();
+        columnTypes.add(ColumnType.FLOAT);
+    }
+
+    @Override
+    public void setFloat(MapValue mapValue, float value) {
+        mapValue.putFloat(valueIndex, value);
+    }
+
+    @Override
+    public void setNull(MapValue mapValue) {
+        mapValue.putFloat(valueIndex, Float.NaN);
+    }
+
+    @Override
+    public float getFloat(Record rec) {
+        return rec.getFloat(valueIndex);
+    }
+
+    private void aggregate(MapValue mapValue, float x) {
+        if (mapValue.isNew()) {
+            mapValue.putFloat(valueIndex, x);
+        } else {
+            min(mapValue, x);
+        }
+    }
+
+    private void min(MapValue mapValue, float x) {
+        if (!Float.isNaN(x)) {
+            final float min = mapValue.getFloat(valueIndex);
+            if (Float.isNaN(min) || x < min) {
+                mapValue.putFloat(valueIndex, x);
+            }
+        }
+    }
+}
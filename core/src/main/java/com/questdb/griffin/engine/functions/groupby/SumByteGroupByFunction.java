@@ -51,6 +51,11 @@ public class SumByteGroupByFunction extends ByteFunction implements GroupByFunct
         mapValue.putByte(valueIndex, (byte) (mapValue.getByte(valueIndex) + value.getByte(record)));
     }
 
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        destValue.putByte(valueIndex, (byte) (destValue.getByte(valueIndex) + srcValue.getByte(valueIndex)));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -29,10 +29,11 @@ import com.questdb.cairo.map.MapValue;
 import com.questdb.cairo.sql.Function;
 import com.questdb.cairo.sql.Record;
 import com.questdb.griffin.engine.functions.DoubleFunction;
-import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
+import com.questdb.std.Vect;
 import org.jetbrains.annotations.NotNull;
 
-public class SumDoubleGroupByFunction extends DoubleFunction implements GroupByFunction {
+public class SumDoubleGroupByFunction extends DoubleFunction implements VectorAggregateFunction {
     private final Function value;
     private int valueIndex;
 
@@ -41,6 +42,16 @@ public class SumDoubleGroupByFunction extends DoubleFunction implements GroupByF
         this.value = value;
     }
 
+    @Override
+    public void computeBatch(MapValue mapValue, long address, long count) {
+        aggregate(mapValue, Vect.sumDouble(address, count));
+    }
+
+    @Override
+    public void computeBatchSelected(MapValue mapValue, long address, long rows, long count) {
+        aggregate(mapValue, Vect.sumDoubleSelected(address, rows, count));
+    }
+
     @Override
     public void computeFirst(MapValue mapValue, Record record) {
         mapValue.putDouble(valueIndex, value.getDouble(record));
@@ -48,7 +59,17 @@ public class SumDoubleGroupByFunction extends DoubleFunction implements GroupByF
 
     @Override
     public void computeNext(MapValue mapValue, Record record) {
-        mapValue.putDouble(valueIndex, mapValue.getDouble(valueIndex) + value.getDouble(record));
+        add(mapValue, value.getDouble(record));
+    }
+
+    @Override
+    public boolean isVectorSupported(int columnType) {
+        return columnType == ColumnType.DOUBLE;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        add(destValue, srcValue.getDouble(valueIndex));
     }
 
     @Override
@@ -71,4 +92,20 @@ public class SumDoubleGroupByFunction extends DoubleFunction implements GroupByF
     public double getDouble(Record rec) {
         return rec.getDouble(valueIndex);
     }
+
+    private void add(MapValue mapValue, double x) {
+        if (!Double.isNaN(x)) {
+            final double sum = mapValue.getDouble(valueIndex);
+            mapValue.putDouble(valueIndex, Double.isNaN(sum) ? x : sum + x);
+        }
+    }
+
+    private void aggregate(MapValue mapValue, double sum) {
+        final double x = sum;
+        if (mapValue.isNew()) {
+            mapValue.putDouble(valueIndex, x);
+        } else {
+            add(mapValue, x);
+        }
+    }
 }
@@ -29,10 +29,11 @@ import com.questdb.cairo.map.MapValue;
 import com.questdb.cairo.sql.Function;
 import com.questdb.cairo.sql.Record;
 import com.questdb.griffin.engine.functions.FloatFunction;
-import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
+import com.questdb.std.Vect;
 import org.jetbrains.annotations.NotNull;
 
-public class SumFloatGroupByFunction extends FloatFunction implements GroupByFunction {
+public class SumFloatGroupByFunction extends FloatFunction implements VectorAggregateFunction {
     private final Function value;
     private int valueIndex;
 
@@ -41,6 +42,16 @@ public class SumFloatGroupByFunction extends FloatFunction implements GroupByFun
         this.value = value;
     }
 
+    @Override
+    public void computeBatch(MapValue mapValue, long address, long count) {
+        aggregate(mapValue, Vect.sumFloat(address, count));
+    }
+
+    @Override
+    public void computeBatchSelected(MapValue mapValue, long address, long rows, long count) {
+        aggregate(mapValue, Vect.sumFloatSelected(address, rows, count));
+    }
+
     @Override
     public void computeFirst(MapValue mapValue, Record record) {
         mapValue.putFloat(valueIndex, value.getFloat(record));
@@ -48,7 +59,17 @@ public class SumFloatGroupByFunction extends FloatFunction implements GroupByFun
 
     @Override
     public void computeNext(MapValue mapValue, Record record) {
-        mapValue.putFloat(valueIndex, mapValue.getFloat(valueIndex) + value.getFloat(record));
+        add(mapValue, value.getFloat(record));
+    }
+
+    @Override
+    public boolean isVectorSupported(int columnType) {
+        return columnType == ColumnType.FLOAT;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        add(destValue, srcValue.getFloat(valueIndex));
     }
 
     @Override
@@ -71,4 +92,20 @@ public class SumFloatGroupByFunction extends FloatFunction implements GroupByFun
     public float getFloat(Record rec) {
         return rec.getFloat(valueIndex);
     }
+
+    private void add(MapValue mapValue, float x) {
+        if (!Float.isNaN(x)) {
+            final float sum = mapValue.getFloat(valueIndex);
+            mapValue.putFloat(valueIndex, Float.isNaN(sum) ? x : sum + x);
+        }
+    }
+
+    private void aggregate(MapValue mapValue, double sum) {
+        final float x = (float) sum;
+        if (mapValue.isNew()) {
+            mapValue.putFloat(valueIndex, x);
+        } else {
+            add(mapValue, x);
+        }
+    }
 }
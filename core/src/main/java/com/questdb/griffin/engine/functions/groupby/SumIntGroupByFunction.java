@@ -28,12 +28,13 @@ import com.questdb.cairo.ColumnType;
 import com.questdb.cairo.map.MapValue;
 import com.questdb.cairo.sql.Function;
 import com.questdb.cairo.sql.Record;
-import com.questdb.griffin.engine.functions.GroupByFunction;
 import com.questdb.griffin.engine.functions.IntFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
 import com.questdb.std.Numbers;
+import com.questdb.std.Vect;
 import org.jetbrains.annotations.NotNull;
 
-public class SumIntGroupByFunction extends IntFunction implements GroupByFunction {
+public class SumIntGroupByFunction extends IntFunction implements VectorAggregateFunction {
     private final Function value;
     private int valueIndex;
 
@@ -42,6 +43,16 @@ public class SumIntGroupByFunction extends IntFunction implements GroupByFunctio
         this.value = value;
     }
 
+    @Override
+    public void computeBatch(MapValue mapValue, long address, long count) {
+        aggregate(mapValue, Vect.sumInt(address, count), count - Vect.countInt(address, count));
+    }
+
+    @Override
+    public void computeBatchSelected(MapValue mapValue, long address, long rows, long count) {
+        aggregate(mapValue, Vect.sumIntSelected(address, rows, count), count - Vect.countIntSelected(address, rows, count));
+    }
+
     @Override
     public void computeFirst(MapValue mapValue, Record record) {
         mapValue.putInt(valueIndex, value.getInt(record));
@@ -52,6 +63,16 @@ public class SumIntGroupByFunction extends IntFunction implements GroupByFunctio
         mapValue.putInt(valueIndex, mapValue.getInt(valueIndex) + value.getInt(record));
     }
 
+    @Override
+    public boolean isVectorSupported(int columnType) {
+        return columnType == ColumnType.INT;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        destValue.putInt(valueIndex, destValue.getInt(valueIndex) + srcValue.getInt(valueIndex));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -72,4 +93,14 @@ public class SumIntGroupByFunction extends IntFunction implements GroupByFunctio
     public int getInt(Record rec) {
         return rec.getInt(valueIndex);
     }
+
+    // kernels skip nulls, row path adds them as any other value, page sum is brought to the same result
+    private void aggregate(MapValue mapValue, long sum, long nullCount) {
+        final int x = (int) ((sum == Numbers.LONG_NaN ? 0 : sum) + nullCount * Numbers.INT_NaN);
+        if (mapValue.isNew()) {
+            mapValue.putInt(valueIndex, x);
+        } else {
+            mapValue.putInt(valueIndex, mapValue.getInt(valueIndex) + x);
+        }
+    }
 }
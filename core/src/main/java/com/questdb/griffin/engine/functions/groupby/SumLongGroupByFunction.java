@@ -28,12 +28,13 @@ import com.questdb.cairo.ColumnType;
 import com.questdb.cairo.map.MapValue;
 import com.questdb.cairo.sql.Function;
 import com.questdb.cairo.sql.Record;
-import com.questdb.griffin.engine.functions.GroupByFunction;
 import com.questdb.griffin.engine.functions.LongFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
 import com.questdb.std.Numbers;
+import com.questdb.std.Vect;
 import org.jetbrains.annotations.NotNull;
 
-public class SumLongGroupByFunction extends LongFunction implements GroupByFunction {
+public class SumLongGroupByFunction extends LongFunction implements VectorAggregateFunction {
     private final Function value;
     private int valueIndex;
 
@@ -42,6 +43,16 @@ public class SumLongGroupByFunction extends LongFunction implements GroupByFunct
         this.value = value;
     }
 
+    @Override
+    public void computeBatch(MapValue mapValue, long address, long count) {
+        aggregate(mapValue, Vect.sumLong(address, count));
+    }
+
+    @Override
+    public void computeBatchSelected(MapValue mapValue, long address, long rows, long count) {
+        aggregate(mapValue, Vect.sumLongSelected(address, rows, count));
+    }
+
     @Override
     public void computeFirst(MapValue mapValue, Record record) {
         mapValue.putLong(valueIndex, value.getLong(record));
@@ -49,7 +60,17 @@ public class SumLongGroupByFunction extends LongFunction implements GroupByFunct
 
     @Override
     public void computeNext(MapValue mapValue, Record record) {
-        mapValue.putLong(valueIndex, mapValue.getLong(valueIndex) + value.getLong(record));
+        add(mapValue, value.getLong(record));
+    }
+
+    @Override
+    public boolean isVectorSupported(int columnType) {
+        return columnType == ColumnType.LONG;
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        add(destValue, srcValue.getLong(valueIndex));
     }
 
     @Override
@@ -72,4 +93,20 @@ public class SumLongGroupByFunction extends LongFunction implements GroupByFunct
     public long getLong(Record rec) {
         return rec.getLong(valueIndex);
     }
+
+    private void add(MapValue mapValue, long x) {
+        if (x != Numbers.LONG_NaN) {
+            final long sum = mapValue.getLong(valueIndex);
+            mapValue.putLong(valueIndex, sum == Numbers.LONG_NaN ? x : sum + x);
+        }
+    }
+
+    private void aggregate(MapValue mapValue, long sum) {
+        final long x = sum;
+        if (mapValue.isNew()) {
+            mapValue.putLong(valueIndex, x);
+        } else {
+            add(mapValue, x);
+        }
+    }
 }
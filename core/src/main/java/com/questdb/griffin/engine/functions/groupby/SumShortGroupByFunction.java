@@ -51,6 +51,11 @@ public class SumShortGroupByFunction extends ShortFunction implements GroupByFun
         mapValue.putShort(valueIndex, (short) (mapValue.getShort(valueIndex) + value.getShort(record)));
     }
 
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        destValue.putShort(valueIndex, (short) (destValue.getShort(valueIndex) + srcValue.getShort(valueIndex)));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -42,6 +42,7 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
 
     protected final RecordCursorFactory base;
     private final Map dataMap;
+    private final GroupBySpill spill;
     private final GroupByRecordCursor cursor;
     private final ObjList<Function> recordFunctions;
     private final ObjList<GroupByFunction> groupByFunctions;
@@ -92,6 +93,7 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
         // sink will be storing record columns to map key
         this.mapSink = RecordSinkFactory.getInstance(asm, metadata, listColumnFilter, false);
         this.dataMap = MapFactory.createMap(configuration, keyTypes, valueTypes);
+        this.spill = new GroupBySpill(configuration, asm, keyTypes, valueTypes, groupByFunctions);
         this.base = base;
         this.metadata = groupByMetadata;
         this.cursor = new GroupByRecordCursor(recordFunctions, symbolTableIndex);
@@ -103,11 +105,13 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
             recordFunctions.getQuick(i).close();
         }
         dataMap.close();
+        spill.close();
     }
 
     @Override
     public RecordCursor getCursor(BindVariableService bindVariableService) {
         dataMap.clear();
+        spill.clear();
         final RecordCursor baseCursor = base.getCursor(bindVariableService);
         try {
             final Record baseRecord = baseCursor.getRecord();
@@ -117,10 +121,15 @@ public class GroupByRecordCursorFactory implements RecordCursorFactory {
                 mapSink.copy(baseRecord, key);
                 MapValue value = key.createValue();
                 GroupByUtils.updateFunctions(groupByFunctions, n, value, baseRecord);
+                // map grows only when key is new
+                if (value.isNew()) {
+                    spill.spillIfNeeded(dataMap);
+                }
             }
-            return initFunctionsAndCursor(bindVariableService, dataMap.getCursor(), baseCursor);
+            return initFunctionsAndCursor(bindVariableService, spill.getCursor(dataMap), baseCursor);
         } catch (CairoException e) {
             baseCursor.close();
+            spill.clear();
             throw e;
         }
     }
@@ -0,0 +1,348 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.map.*;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.SymbolTable;
+import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.std.*;
+
+import java.io.Closeable;
+
+/**
+ * Keeps group-by map within its memory budget. Once map takes more memory than the budget its entries are
+ * written out to partition files and map is cleared to aggregate remaining rows. Partition of entry is
+ * chosen by hash of its key, so that partial aggregates of the same key always end up in the same file.
+ * Partitions are then aggregated in the map one at a time and final entries are appended to result file,
+ * cursor of which replaces map cursor. Keys of single partition are expected to fit in memory, partitions
+ * are not split any further.
+ * <p>
+ * Files store map records as they are, value columns first and key columns after them. Functions that read
+ * map record by column index can read records of result file just as well.
+ */
+class GroupBySpill implements Closeable, Mutable {
+    private final ObjList<RecordSpillFile> partitions;
+    private final RecordSpillFile results;
+    private final RecordSink keySink;
+    private final RecordValueSink valueSink;
+    private final ObjList<GroupByFunction> functions;
+    private final long threshold;
+    private final KeyHashSink hashSink = new KeyHashSink();
+    private final SpillValue spillValue = new SpillValue();
+    private final SpillRecordCursor cursor = new SpillRecordCursor();
+    private boolean spilled = false;
+
+    GroupBySpill(
+            CairoConfiguration configuration,
+            BytecodeAssembler asm,
+            @Transient ColumnTypes keyTypes,
+            @Transient ColumnTypes valueTypes,
+            ObjList<GroupByFunction> functions
+    ) {
+        final int valueCount = valueTypes.getColumnCount();
+        final int keyCount = keyTypes.getColumnCount();
+        final ArrayColumnTypes recordTypes = new ArrayColumnTypes();
+        final ListColumnFilter columnFilter = new ListColumnFilter();
+        for (int i = 0; i < valueCount; i++) {
+            recordTypes.add(valueTypes.getColumnType(i));
+            columnFilter.add(i);
+        }
+        this.valueSink = RecordValueSinkFactory.getInstance(asm, recordTypes, columnFilter);
+
+        columnFilter.clear();
+        for (int i = 0; i < keyCount; i++) {
+            recordTypes.add(keyTypes.getColumnType(i));
+            columnFilter.add(valueCount + i);
+        }
+        this.keySink = RecordSinkFactory.getInstance(asm, recordTypes, columnFilter, false);
+
+        final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
+        entityColumnFilter.of(valueCount + keyCount);
+        final RecordSink recordSink = RecordSinkFactory.getInstance(asm, recordTypes, entityColumnFilter, false);
+        final long pageSize = configuration.getSqlMapPageSize();
+        final int partitionCount = configuration.getSqlGroupBySpillPartitionCount();
+        this.partitions = new ObjList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new RecordSpillFile(configuration, recordTypes, recordSink, pageSize));
+        }
+        this.results = new RecordSpillFile(configuration, recordTypes, recordSink, pageSize);
+        this.functions = functions;
+        this.threshold = configuration.getSqlGroupBySpillThreshold();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            partitions.getQuick(i).clear();
+        }
+        results.clear();
+        spilled = false;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = partitions.size(); i < n; i++) {
+            partitions.getQuick(i).close();
+        }
+        results.close();
+    }
+
+    /**
+     * Completes aggregation. When map has never been spilled this is map cursor, otherwise partitions are
+     * aggregated and map is left empty.
+     *
+     * @param map map rows have been aggregated in
+     * @return cursor of aggregated records
+     */
+    RecordCursor getCursor(Map map) {
+        if (!spilled) {
+            return map.getCursor();
+        }
+
+        spill(map);
+        final int n = functions.size();
+        for (int i = 0, m = partitions.size(); i < m; i++) {
+            final RecordSpillFile partition = partitions.getQuick(i);
+            partition.toReadMode();
+            final Record record = partition.getRecord();
+            for (long offset = 0, size = partition.size(); offset < size; ) {
+                offset = partition.recordAt(record, offset);
+                final MapKey key = map.withKey();
+                key.put(record, keySink);
+                final MapValue value = key.createValue();
+                if (value.isNew()) {
+                    valueSink.copy(record, value);
+                } else {
+                    spillValue.of(record);
+                    for (int j = 0; j < n; j++) {
+                        functions.getQuick(j).merge(value, spillValue);
+                    }
+                }
+            }
+            partition.clear();
+
+            final RecordCursor mapCursor = map.getCursor();
+            final Record mapRecord = mapCursor.getRecord();
+            while (mapCursor.hasNext()) {
+                results.put(mapRecord);
+            }
+            map.clear();
+        }
+        results.toReadMode();
+        cursor.toTop();
+        return cursor;
+    }
+
+    /**
+     * Writes map entries out to partitions and clears map when map is over memory budget.
+     *
+     * @param map map rows are being aggregated in
+     */
+    void spillIfNeeded(Map map) {
+        if (map.getUsedMemory() > threshold) {
+            spill(map);
+            spilled = true;
+        }
+    }
+
+    private void spill(Map map) {
+        final RecordCursor mapCursor = map.getCursor();
+        final Record mapRecord = mapCursor.getRecord();
+        final int partitionCount = partitions.size();
+        while (mapCursor.hasNext()) {
+            hashSink.clear();
+            keySink.copy(mapRecord, hashSink);
+            partitions.getQuick(hashSink.partition(partitionCount)).put(mapRecord);
+        }
+        map.clear();
+    }
+
+    /**
+     * Value of partial aggregate read from partition file, it is source of {@link GroupByFunction#merge(MapValue, MapValue)}.
+     */
+    private static class SpillValue implements MapValue {
+        private Record record;
+
+        @Override
+        public long getAddress() {
+            return record.getRowId();
+        }
+
+        @Override
+        public boolean getBool(int columnIndex) {
+            return record.getBool(columnIndex);
+        }
+
+        @Override
+        public byte getByte(int index) {
+            return record.getByte(index);
+        }
+
+        @Override
+        public long getDate(int columnIndex) {
+            return record.getDate(columnIndex);
+        }
+
+        @Override
+        public double getDouble(int index) {
+            return record.getDouble(index);
+        }
+
+        @Override
+        public float getFloat(int index) {
+            return record.getFloat(index);
+        }
+
+        @Override
+        public int getInt(int index) {
+            return record.getInt(index);
+        }
+
+        @Override
+        public long getLong(int index) {
+            return record.getLong(index);
+        }
+
+        @Override
+        public short getShort(int index) {
+            return record.getShort(index);
+        }
+
+        @Override
+        public long getTimestamp(int columnIndex) {
+            return record.getTimestamp(columnIndex);
+        }
+
+        @Override
+        public boolean isNew() {
+            return false;
+        }
+
+        @Override
+        public void putBool(int columnIndex, boolean value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putByte(int index, byte value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putDate(int index, long value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putDouble(int index, double value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putFloat(int index, float value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putInt(int index, int value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putLong(int index, long value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putShort(int index, short value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void putTimestamp(int columnIndex, long value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setMapRecordHere() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void of(Record record) {
+            this.record = record;
+        }
+    }
+
+    private class SpillRecordCursor implements RecordCursor {
+        private long offset;
+
+        @Override
+        public void close() {
+            GroupBySpill.this.clear();
+        }
+
+        @Override
+        public Record getRecord() {
+            return results.getRecord();
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (offset < results.size()) {
+                offset = results.recordAt(results.getRecord(), offset);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Record newRecord() {
+            return results.newRecord();
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            results.recordAt(record, atRowId);
+        }
+
+        @Override
+        public void recordAt(long rowId) {
+            results.recordAt(results.getRecord(), rowId);
+        }
+
+        @Override
+        public void toTop() {
+            offset = 0;
+        }
+    }
+}
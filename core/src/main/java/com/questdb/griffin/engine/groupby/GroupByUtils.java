@@ -38,8 +38,10 @@ import com.questdb.griffin.model.QueryColumn;
 import com.questdb.griffin.model.QueryModel;
 import com.questdb.std.Chars;
 import com.questdb.std.IntIntHashMap;
+import com.questdb.std.IntList;
 import com.questdb.std.ObjList;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 class GroupByUtils {
     static void prepareGroupByFunctions(
@@ -189,6 +191,25 @@ class GroupByUtils {
         }
     }
 
+    /**
+     * @return distinct table columns page frames of vectorised aggregation are made of
+     */
+    static IntList getPageFrameColumns(IntList aggregateColumns, @Nullable VectorFilter vectorFilter, int timestampIndex) {
+        final IntList columns = new IntList();
+        if (timestampIndex != -1) {
+            columns.add(timestampIndex);
+        }
+        for (int i = 0, n = aggregateColumns.size(); i < n; i++) {
+            addPageFrameColumn(columns, aggregateColumns.getQuick(i));
+        }
+        if (vectorFilter != null) {
+            for (int i = 0, n = vectorFilter.size(); i < n; i++) {
+                addPageFrameColumn(columns, vectorFilter.getColumnIndex(i));
+            }
+        }
+        return columns;
+    }
+
     static void updateFunctions(ObjList<GroupByFunction> groupByFunctions, int n, MapValue value, Record record) {
         if (value.isNew()) {
             for (int i = 0; i < n; i++) {
@@ -206,4 +227,16 @@ class GroupByUtils {
             groupByFunctions.getQuick(i).close();
         }
     }
+
+    private static void addPageFrameColumn(IntList columns, int columnIndex) {
+        if (columnIndex == -1) {
+            return;
+        }
+        for (int i = 0, n = columns.size(); i < n; i++) {
+            if (columns.getQuick(i) == columnIndex) {
+                return;
+            }
+        }
+        columns.add(columnIndex);
+    }
 }
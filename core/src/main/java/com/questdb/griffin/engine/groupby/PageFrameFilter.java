@@ -0,0 +1,107 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.TableReader;
+import com.questdb.cairo.TableReaderRecord;
+import com.questdb.cairo.VectorFilter;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.PageFrame;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.Unsafe;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+
+/**
+ * Selects rows of page frame that pass filter of table scan. Vector filter is used when there is one,
+ * otherwise filter function is evaluated for every row of the frame.
+ */
+class PageFrameFilter implements Closeable {
+    private final VectorFilter vectorFilter;
+    private final Function filter;
+    private final TableReaderRecord record = new TableReaderRecord();
+    private final long maxRowCount;
+    private long rows = 0;
+
+    /**
+     * @param vectorFilter filter that selects the same rows as filter function or null
+     * @param filter       filter function or null when scan returns all rows
+     * @param maxRowCount  maximum number of rows in page frame
+     */
+    PageFrameFilter(@Nullable VectorFilter vectorFilter, @Nullable Function filter, long maxRowCount) {
+        this.vectorFilter = vectorFilter;
+        this.filter = filter;
+        this.maxRowCount = maxRowCount;
+    }
+
+    @Override
+    public void close() {
+        if (rows != 0) {
+            Unsafe.free(rows, maxRowCount * 8);
+            rows = 0;
+        }
+    }
+
+    /**
+     * @return address of selection vector of the last frame
+     */
+    long getRows() {
+        return rows;
+    }
+
+    void of(TableReader reader, BindVariableService bindVariableService) {
+        if (filter != null) {
+            record.of(reader);
+            filter.init(reader.getCursor(), bindVariableService);
+        }
+        if (rows == 0 && (filter != null || vectorFilter != null)) {
+            rows = Unsafe.malloc(maxRowCount * 8);
+        }
+    }
+
+    /**
+     * @param frame page frame of table scan
+     * @return -1 when all rows of the frame are selected, otherwise number of row offsets in selection vector
+     */
+    long select(PageFrame frame) {
+        if (vectorFilter != null) {
+            return vectorFilter.filter(frame, rows);
+        }
+
+        if (filter == null) {
+            return -1;
+        }
+
+        final long rowLo = frame.getRowLo();
+        long n = 0;
+        record.jumpTo(frame.getPartitionIndex(), rowLo);
+        for (long i = 0, count = frame.getRowCount(); i < count; i++) {
+            record.setRecordIndex(rowLo + i);
+            Unsafe.getUnsafe().putLong(rows + (n << 3), i);
+            n += filter.getBool(record) ? 1 : 0;
+        }
+        return n;
+    }
+}
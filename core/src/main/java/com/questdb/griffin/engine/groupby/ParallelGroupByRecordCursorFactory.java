@@ -0,0 +1,483 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.map.*;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.FunctionParser;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.SqlExecutionContext;
+import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.griffin.model.QueryModel;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Group-by over scan of data frames. Each lane aggregates the frames it claims with its own group-by function
+ * and filter instances into its own maps, one map per partition of key hash. Partitions are then merged in
+ * parallel, each into the map of the first lane, and lanes fold partial aggregates via
+ * {@link GroupByFunction#merge}. Partitions have no keys in common, cursor returns their rows one after another.
+ */
+public class ParallelGroupByRecordCursorFactory implements RecordCursorFactory {
+    private static final Log LOG = LogFactory.getLog(ParallelGroupByRecordCursorFactory.class);
+    // row ids of map records are offsets or native addresses, partition index is kept in bits above them
+    private static final int PARTITION_SHIFT = 48;
+    private static final long LOCAL_ROW_ID_MASK = (1L << PARTITION_SHIFT) - 1;
+    private final RecordCursorFactory base;
+    private final DataFrameCursorFactory dataFrameCursorFactory;
+    private final CairoEngine engine;
+    private final DataFrameDispatcher dispatcher;
+    private final int frameRowCount;
+    private final ObjList<AggregateLane> lanes;
+    private final ObjList<Function> recordFunctions;
+    private final RecordMetadata metadata;
+    private final GroupByRecordCursor cursor;
+    // copies base record columns to map key
+    private final RecordSink mapSink;
+    // copies key of map record to key of another map
+    private final RecordSink mergeKeySink;
+    // copies values of map record to new value of another map
+    private final RecordValueSink mergeValueSink;
+    // partition index, row lo and row hi of each frame
+    private final LongList frames = new LongList();
+    private final int partitionCount;
+    private int laneCount = 0;
+    // when set lanes merge partitions rather than aggregate frames
+    private boolean merging = false;
+
+    /**
+     * @param filters instances of the same filter, one for calling thread and one for each worker, or null
+     *                when all rows of data frames are aggregated
+     */
+    public ParallelGroupByRecordCursorFactory(
+            CairoConfiguration configuration,
+            CairoEngine engine,
+            RecordCursorFactory base,
+            DataFrameCursorFactory dataFrameCursorFactory,
+            @Nullable ObjList<Function> filters,
+            DataFrameDispatcher dispatcher,
+            @Transient @NotNull QueryModel model,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull FunctionParser functionParser,
+            @Transient @NotNull SqlExecutionContext executionContext,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes
+    ) throws SqlException {
+        final int columnCount = model.getColumns().size();
+        final RecordMetadata metadata = base.getMetadata();
+        final int laneCount = filters != null ? filters.size() : dispatcher.getWorkerCount() + 1;
+
+        // functions are not thread-safe, each lane gets its own instances
+        final ObjList<ObjList<GroupByFunction>> laneFunctions = new ObjList<>(laneCount);
+        final ArrayColumnTypes laneValueTypes = new ArrayColumnTypes();
+        for (int i = 0; i < laneCount; i++) {
+            final ObjList<GroupByFunction> functions = new ObjList<>(columnCount);
+            GroupByUtils.prepareGroupByFunctions(
+                    model,
+                    metadata,
+                    functionParser,
+                    executionContext,
+                    functions,
+                    i == 0 ? valueTypes : laneValueTypes.reset()
+            );
+            laneFunctions.add(functions);
+        }
+
+        this.recordFunctions = new ObjList<>(columnCount);
+        final GenericRecordMetadata groupByMetadata = new GenericRecordMetadata();
+        final IntIntHashMap symbolTableIndex = new IntIntHashMap();
+
+        GroupByUtils.prepareGroupByRecordFunctions(
+                model,
+                metadata,
+                listColumnFilter,
+                laneFunctions.getQuick(0),
+                recordFunctions,
+                groupByMetadata,
+                keyTypes,
+                valueTypes,
+                symbolTableIndex,
+                true
+        );
+
+        // sink will be storing record columns to map key
+        this.mapSink = RecordSinkFactory.getInstance(asm, metadata, listColumnFilter, false);
+
+        // map record has value columns first and key columns after them
+        final int valueCount = valueTypes.getColumnCount();
+        final int keyCount = keyTypes.getColumnCount();
+        final ArrayColumnTypes mapRecordTypes = new ArrayColumnTypes();
+        final ListColumnFilter mapColumnFilter = new ListColumnFilter();
+        for (int i = 0; i < valueCount; i++) {
+            mapRecordTypes.add(valueTypes.getColumnType(i));
+            mapColumnFilter.add(i);
+        }
+        this.mergeValueSink = RecordValueSinkFactory.getInstance(asm, mapRecordTypes, mapColumnFilter);
+
+        mapColumnFilter.clear();
+        for (int i = 0; i < keyCount; i++) {
+            mapRecordTypes.add(keyTypes.getColumnType(i));
+            mapColumnFilter.add(valueCount + i);
+        }
+        this.mergeKeySink = RecordSinkFactory.getInstance(asm, mapRecordTypes, mapColumnFilter, false);
+
+        this.partitionCount = laneCount;
+        this.lanes = new ObjList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            final ObjList<Map> maps = new ObjList<>(partitionCount);
+            for (int j = 0; j < partitionCount; j++) {
+                maps.add(MapFactory.createMap(configuration, keyTypes, valueTypes));
+            }
+            lanes.add(new AggregateLane(
+                    maps,
+                    laneFunctions.getQuick(i),
+                    filters != null ? filters.getQuick(i) : null
+            ));
+        }
+
+        this.base = base;
+        this.dataFrameCursorFactory = dataFrameCursorFactory;
+        this.engine = engine;
+        this.dispatcher = dispatcher;
+        this.frameRowCount = configuration.getSqlParallelFrameRowCount();
+        this.metadata = groupByMetadata;
+        this.cursor = new GroupByRecordCursor(recordFunctions, symbolTableIndex, lanes.getQuick(0).maps);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+            recordFunctions.getQuick(i).close();
+        }
+        // functions of first lane are closed as record functions
+        for (int i = 0, n = lanes.size(); i < n; i++) {
+            final AggregateLane lane = lanes.getQuick(i);
+            if (i > 0) {
+                for (int j = 0, m = lane.functions.size(); j < m; j++) {
+                    lane.functions.getQuick(j).close();
+                }
+            }
+            for (int j = 0; j < partitionCount; j++) {
+                lane.maps.getQuick(j).close();
+            }
+        }
+        // base factory owns filters
+        base.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        final DataFrameCursor dataFrameCursor = dataFrameCursorFactory.getCursor();
+        try {
+            final TableReader reader = dataFrameCursor.getTableReader();
+            ofLanes(reader, bindVariableService);
+            try {
+                prepareFrames(dataFrameCursor);
+                merging = false;
+                dispatcher.dispatch(lanes, laneCount, frames.size() / 3);
+
+                if (laneCount > 1) {
+                    merging = true;
+                    dispatcher.dispatch(lanes, laneCount, partitionCount);
+                }
+            } finally {
+                releaseLanes();
+            }
+
+            cursor.of(dataFrameCursor);
+            // init all record function for this cursor, in case functions require metadata and/or symbol tables
+            for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+                recordFunctions.getQuick(i).init(cursor, bindVariableService);
+            }
+            return cursor;
+        } catch (CairoException e) {
+            dataFrameCursor.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return true;
+    }
+
+    private void ofLanes(TableReader reader, BindVariableService bindVariableService) {
+        final AggregateLane first = lanes.getQuick(0);
+        first.of(reader, bindVariableService);
+        laneCount = 1;
+
+        for (int i = 1, n = lanes.size(); i < n; i++) {
+            final TableReader laneReader;
+            try {
+                laneReader = engine.getReader(reader.getTableName(), reader.getVersion());
+            } catch (CairoException e) {
+                LOG.info().$("no reader for lane [table=").$(reader.getTableName()).$(", lane=").$(i).$(']').$();
+                break;
+            }
+
+            if (laneReader.getTxn() != reader.getTxn()) {
+                // table has changed in the meantime, frames of data frame cursor may not be valid for lane reader
+                laneReader.close();
+                break;
+            }
+
+            lanes.getQuick(i).of(laneReader, bindVariableService);
+            laneCount++;
+        }
+    }
+
+    private void prepareFrames(DataFrameCursor dataFrameCursor) {
+        frames.clear();
+        while (dataFrameCursor.hasNext()) {
+            final DataFrame frame = dataFrameCursor.next();
+            final int partitionIndex = frame.getPartitionIndex();
+            final long hi = frame.getRowHi();
+            for (long lo = frame.getRowLo(); lo < hi; lo += frameRowCount) {
+                frames.add(partitionIndex);
+                frames.add(lo);
+                frames.add(Math.min(lo + frameRowCount, hi));
+            }
+        }
+    }
+
+    private void releaseLanes() {
+        // first lane uses reader of data frame cursor
+        for (int i = 1; i < laneCount; i++) {
+            final AggregateLane lane = lanes.getQuick(i);
+            lane.reader = Misc.free(lane.reader);
+        }
+        laneCount = 0;
+    }
+
+    private static class GroupByRecordCursor implements RecordCursor {
+        private final PartitionRecord functionRecord;
+        private final IntIntHashMap symbolTableIndex;
+        private final ObjList<Map> maps;
+        private final ObjList<RecordCursor> mapCursors = new ObjList<>();
+        private int mapIndex;
+        private DataFrameCursor dataFrameCursor;
+
+        public GroupByRecordCursor(ObjList<Function> functions, IntIntHashMap symbolTableIndex, ObjList<Map> maps) {
+            this.functionRecord = new PartitionRecord(functions, maps.size());
+            this.symbolTableIndex = symbolTableIndex;
+            this.maps = maps;
+        }
+
+        @Override
+        public void close() {
+            for (int i = 0, n = mapCursors.size(); i < n; i++) {
+                Misc.free(mapCursors.getQuick(i));
+            }
+            Misc.free(dataFrameCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return functionRecord;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return dataFrameCursor.getSymbolTable(symbolTableIndex.get(columnIndex));
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!mapCursors.getQuick(mapIndex).hasNext()) {
+                if (++mapIndex == mapCursors.size()) {
+                    mapIndex--;
+                    return false;
+                }
+                functionRecord.of(mapIndex);
+            }
+            return true;
+        }
+
+        @Override
+        public Record newRecord() {
+            final PartitionRecord record = new PartitionRecord(functionRecord.getFunctions(), mapCursors.size());
+            for (int i = 0, n = mapCursors.size(); i < n; i++) {
+                record.records.extendAndSet(i, mapCursors.getQuick(i).newRecord());
+            }
+            record.of(0);
+            return record;
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            assert record instanceof PartitionRecord;
+            recordAt((PartitionRecord) record, atRowId);
+        }
+
+        @Override
+        public void recordAt(long rowId) {
+            recordAt(functionRecord, rowId);
+        }
+
+        @Override
+        public void toTop() {
+            for (int i = 0, n = mapCursors.size(); i < n; i++) {
+                mapCursors.getQuick(i).toTop();
+            }
+            mapIndex = 0;
+            functionRecord.of(0);
+        }
+
+        public void of(DataFrameCursor dataFrameCursor) {
+            this.dataFrameCursor = dataFrameCursor;
+            mapCursors.clear();
+            for (int i = 0, n = maps.size(); i < n; i++) {
+                final RecordCursor mapCursor = maps.getQuick(i).getCursor();
+                mapCursors.add(mapCursor);
+                functionRecord.records.extendAndSet(i, mapCursor.getRecord());
+            }
+            mapIndex = 0;
+            functionRecord.of(0);
+        }
+
+        private void recordAt(PartitionRecord record, long rowId) {
+            final int index = (int) (rowId >>> PARTITION_SHIFT);
+            record.of(index);
+            mapCursors.getQuick(index).recordAt(record.getBaseRecord(), rowId & LOCAL_ROW_ID_MASK);
+        }
+    }
+
+    /**
+     * Function record over records of all partition maps. Row id of base record is only unique within its map,
+     * partition index is added to it.
+     */
+    private static class PartitionRecord extends VirtualRecord {
+        private final ObjList<Record> records;
+        private int index;
+
+        private PartitionRecord(ObjList<? extends Function> functions, int partitionCount) {
+            super(functions);
+            this.records = new ObjList<>(partitionCount);
+        }
+
+        @Override
+        public long getRowId() {
+            return ((long) index << PARTITION_SHIFT) | super.getRowId();
+        }
+
+        private void of(int index) {
+            this.index = index;
+            of(records.getQuick(index));
+        }
+    }
+
+    private class AggregateLane extends DataFrameLane {
+        private final ObjList<Map> maps;
+        private final ObjList<GroupByFunction> functions;
+        private final Function filter;
+        private final TableReaderRecord record = new TableReaderRecord();
+        private final KeyHashSink hashSink = new KeyHashSink();
+        private TableReader reader;
+
+        private AggregateLane(ObjList<Map> maps, ObjList<GroupByFunction> functions, @Nullable Function filter) {
+            this.maps = maps;
+            this.functions = functions;
+            this.filter = filter;
+        }
+
+        @Override
+        protected void process(int frameIndex) {
+            if (merging) {
+                // frame index is index of partition, it is merged into map of first lane
+                final Map dest = lanes.getQuick(0).maps.getQuick(frameIndex);
+                for (int i = 1; i < laneCount; i++) {
+                    merge(dest, lanes.getQuick(i).maps.getQuick(frameIndex));
+                }
+            } else {
+                aggregate(frameIndex);
+            }
+        }
+
+        private void aggregate(int frameIndex) {
+            final int partitionIndex = (int) frames.getQuick(frameIndex * 3);
+            final long lo = frames.getQuick(frameIndex * 3 + 1);
+            final long hi = frames.getQuick(frameIndex * 3 + 2);
+            final int n = functions.size();
+
+            reader.openPartition(partitionIndex);
+            record.jumpTo(partitionIndex, lo);
+            for (long row = lo; row < hi; row++) {
+                record.setRecordIndex(row);
+                if (filter == null || filter.getBool(record)) {
+                    hashSink.clear();
+                    mapSink.copy(record, hashSink);
+                    final MapKey key = maps.getQuick(hashSink.partition(partitionCount)).withKey();
+                    mapSink.copy(record, key);
+                    GroupByUtils.updateFunctions(functions, n, key.createValue(), record);
+                }
+            }
+        }
+
+        private void merge(Map dest, Map src) {
+            final RecordCursor srcCursor = src.getCursor();
+            final MapRecord srcRecord = (MapRecord) srcCursor.getRecord();
+            final int n = functions.size();
+            while (srcCursor.hasNext()) {
+                final MapKey key = dest.withKey();
+                key.put(srcRecord, mergeKeySink);
+                final MapValue destValue = key.createValue();
+                if (destValue.isNew()) {
+                    mergeValueSink.copy(srcRecord, destValue);
+                } else {
+                    final MapValue srcValue = srcRecord.getValue();
+                    for (int i = 0; i < n; i++) {
+                        functions.getQuick(i).merge(destValue, srcValue);
+                    }
+                }
+            }
+        }
+
+        private void of(TableReader reader, BindVariableService bindVariableService) {
+            this.reader = reader;
+            this.record.of(reader);
+            for (int i = 0; i < partitionCount; i++) {
+                maps.getQuick(i).clear();
+            }
+            final TableReaderRecordCursor readerCursor = reader.getCursor();
+            if (filter != null) {
+                filter.init(readerCursor, bindVariableService);
+            }
+            for (int i = 0, n = functions.size(); i < n; i++) {
+                functions.getQuick(i).init(readerCursor, bindVariableService);
+            }
+        }
+    }
+}
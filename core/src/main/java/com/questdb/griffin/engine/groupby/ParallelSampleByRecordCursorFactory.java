@@ -0,0 +1,559 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.map.*;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.FunctionParser;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.SqlExecutionContext;
+import com.questdb.griffin.engine.EmptyTableRecordCursor;
+import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.griffin.model.QueryModel;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sample-by over scan of data frames. Rows are cut into units that end on sample boundary and lanes aggregate
+ * units into maps keyed by sample timestamp and key columns. Each sample is therefore aggregated by exactly one
+ * lane, in the same order of rows serial cursor would use. Partial aggregates are streamed batch by batch, in
+ * order of units, to the same fill cursor serial sample-by uses. Fill cursor copies partial aggregates via
+ * {@link PartialGroupByFunction} instead of computing them from table rows.
+ */
+public class ParallelSampleByRecordCursorFactory implements RecordCursorFactory {
+    private static final Log LOG = LogFactory.getLog(ParallelSampleByRecordCursorFactory.class);
+    private final RecordCursorFactory base;
+    private final DataFrameCursorFactory dataFrameCursorFactory;
+    private final CairoEngine engine;
+    private final DataFrameDispatcher dispatcher;
+    private final TimestampSampler timestampSampler;
+    // index of timestamp column in table
+    private final int timestampIndex;
+    private final int unitRowCount;
+    private final boolean fillGaps;
+    private final ObjList<SampleByLane> lanes;
+    private final ObjList<Function> recordFunctions;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final RecordMetadata metadata;
+    private final DelegatingRecordCursor cursor;
+    private final PartialRecordCursor partialCursor = new PartialRecordCursor();
+    // key map of fill cursor
+    private final Map map;
+    // copies key columns of partial aggregate to key of fill cursor map
+    private final RecordSink mapSink;
+    // maps lanes aggregate units of the batch into
+    private final ObjList<Map> unitMaps;
+    // partial aggregates of all units of the batch in order of units
+    private final Map partialMap;
+    // copies key columns of table record to unit map key, after sample timestamp
+    private final RecordSink laneSink;
+    // copies sample timestamp and keys of unit map record to key of partial map
+    private final RecordSink partialKeySink;
+    // copies values of unit map record to new value of partial map
+    private final RecordValueSink partialValueSink;
+    // partition index, row lo and row hi of each segment of units in the batch
+    private final LongList segments = new LongList();
+    // index of first segment of each unit in the batch, followed by segment count
+    private final IntList unitSegments = new IntList();
+    private int laneCount = 0;
+
+    /**
+     * @param filters  instances of the same filter, one for calling thread and one for each worker, or null
+     *                 when all rows of data frames are aggregated
+     * @param fillGaps true when fill cursor returns every key for every sample, fill cursor map is then
+     *                 populated with all keys before the cursor is returned
+     */
+    public ParallelSampleByRecordCursorFactory(
+            CairoConfiguration configuration,
+            CairoEngine engine,
+            RecordCursorFactory base,
+            DataFrameCursorFactory dataFrameCursorFactory,
+            @Nullable ObjList<Function> filters,
+            DataFrameDispatcher dispatcher,
+            @NotNull TimestampSampler timestampSampler,
+            boolean fillGaps,
+            @Transient @NotNull QueryModel model,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull FunctionParser functionParser,
+            @Transient @NotNull SqlExecutionContext executionContext,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull SampleByCursorLambda cursorLambda,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes
+    ) throws SqlException {
+        final int columnCount = model.getColumns().size();
+        final RecordMetadata metadata = base.getMetadata();
+        final int laneCount = filters != null ? filters.size() : dispatcher.getWorkerCount() + 1;
+
+        // functions are not thread-safe, each lane gets its own instances
+        final ObjList<ObjList<GroupByFunction>> laneFunctions = new ObjList<>(laneCount);
+        final ArrayColumnTypes laneValueTypes = new ArrayColumnTypes();
+        valueTypes.add(ColumnType.TIMESTAMP); // first value is always timestamp
+        for (int i = 0; i < laneCount; i++) {
+            final ObjList<GroupByFunction> functions = new ObjList<>(columnCount);
+            if (i > 0) {
+                laneValueTypes.reset();
+                laneValueTypes.add(ColumnType.TIMESTAMP);
+            }
+            GroupByUtils.prepareGroupByFunctions(
+                    model,
+                    metadata,
+                    functionParser,
+                    executionContext,
+                    functions,
+                    i == 0 ? valueTypes : laneValueTypes
+            );
+            laneFunctions.add(functions);
+        }
+        this.groupByFunctions = laneFunctions.getQuick(0);
+
+        this.recordFunctions = new ObjList<>(columnCount);
+        final GenericRecordMetadata groupByMetadata = new GenericRecordMetadata();
+        final IntIntHashMap symbolTableIndex = new IntIntHashMap();
+
+        GroupByUtils.prepareGroupByRecordFunctions(
+                model,
+                metadata,
+                listColumnFilter,
+                groupByFunctions,
+                recordFunctions,
+                groupByMetadata,
+                keyTypes,
+                valueTypes,
+                symbolTableIndex,
+                false
+        );
+
+        // sink will be storing record columns to unit map key
+        this.laneSink = RecordSinkFactory.getInstance(asm, metadata, listColumnFilter, false);
+
+        // partial aggregates are keyed by sample timestamp followed by key columns
+        final int valueCount = valueTypes.getColumnCount();
+        final int keyCount = keyTypes.getColumnCount();
+        final ArrayColumnTypes partialKeyTypes = new ArrayColumnTypes();
+        partialKeyTypes.add(ColumnType.TIMESTAMP);
+        for (int i = 0; i < keyCount; i++) {
+            partialKeyTypes.add(keyTypes.getColumnType(i));
+        }
+
+        // map record has value columns first and key columns after them
+        final ArrayColumnTypes partialRecordTypes = new ArrayColumnTypes();
+        final ListColumnFilter partialColumnFilter = new ListColumnFilter();
+        for (int i = 0; i < valueCount; i++) {
+            partialRecordTypes.add(valueTypes.getColumnType(i));
+            partialColumnFilter.add(i);
+        }
+        this.partialValueSink = RecordValueSinkFactory.getInstance(asm, partialRecordTypes, partialColumnFilter);
+
+        partialColumnFilter.clear();
+        for (int i = 0; i <= keyCount; i++) {
+            partialRecordTypes.add(partialKeyTypes.getColumnType(i));
+            partialColumnFilter.add(valueCount + i);
+        }
+        this.partialKeySink = RecordSinkFactory.getInstance(asm, partialRecordTypes, partialColumnFilter, false);
+
+        // fill cursor map is keyed by key columns only
+        partialColumnFilter.clear();
+        for (int i = 1; i <= keyCount; i++) {
+            partialColumnFilter.add(valueCount + i);
+        }
+        this.mapSink = RecordSinkFactory.getInstance(asm, partialRecordTypes, partialColumnFilter, false);
+
+        final int unitMapCount = 2 * laneCount;
+        this.unitMaps = new ObjList<>(unitMapCount);
+        for (int i = 0; i < unitMapCount; i++) {
+            unitMaps.add(MapFactory.createMap(configuration, partialKeyTypes, valueTypes));
+        }
+        this.partialMap = MapFactory.createMap(configuration, partialKeyTypes, valueTypes);
+        this.map = MapFactory.createMap(configuration, keyTypes, valueTypes);
+
+        this.lanes = new ObjList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new SampleByLane(laneFunctions.getQuick(i), filters != null ? filters.getQuick(i) : null));
+        }
+
+        final ObjList<GroupByFunction> partialFunctions = new ObjList<>(1);
+        partialFunctions.add(new PartialGroupByFunction(groupByFunctions, partialValueSink));
+        try {
+            this.cursor = cursorLambda.createCursor(
+                    map,
+                    mapSink,
+                    timestampSampler,
+                    // sample timestamp is the first key column of partial aggregate
+                    valueCount,
+                    partialFunctions,
+                    recordFunctions,
+                    symbolTableIndex
+            );
+        } catch (SqlException | CairoException e) {
+            freeMaps();
+            throw e;
+        }
+
+        this.base = base;
+        this.dataFrameCursorFactory = dataFrameCursorFactory;
+        this.engine = engine;
+        this.dispatcher = dispatcher;
+        this.timestampSampler = timestampSampler;
+        this.timestampIndex = metadata.getTimestampIndex();
+        this.unitRowCount = configuration.getSqlParallelFrameRowCount();
+        this.fillGaps = fillGaps;
+        this.metadata = groupByMetadata;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+            recordFunctions.getQuick(i).close();
+        }
+        // functions of first lane are closed as record functions
+        for (int i = 1, n = lanes.size(); i < n; i++) {
+            final ObjList<GroupByFunction> functions = lanes.getQuick(i).functions;
+            for (int j = 0, m = functions.size(); j < m; j++) {
+                functions.getQuick(j).close();
+            }
+        }
+        freeMaps();
+        // base factory owns filters
+        base.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        partialCursor.of(dataFrameCursorFactory.getCursor(), bindVariableService);
+        try {
+            map.clear();
+            if (fillGaps) {
+                // This cursor fills gaps in data. To do that fill cursor has
+                // to know all possible key values upfront.
+                final MapRecord partialRecord = partialMap.getRecord();
+                final int n = groupByFunctions.size();
+                while (partialCursor.hasNext()) {
+                    final MapKey key = map.withKey();
+                    key.put(partialRecord, mapSink);
+                    final MapValue value = key.createValue();
+                    if (value.isNew()) {
+                        // timestamp is always stored in value field 0
+                        value.putLong(0, Numbers.LONG_NaN);
+                        // have functions reset their columns to "zero" state
+                        for (int i = 0; i < n; i++) {
+                            groupByFunctions.getQuick(i).setNull(value);
+                        }
+                    }
+                }
+                partialCursor.toTop();
+            }
+
+            if (partialCursor.hasNext()) {
+                cursor.of(partialCursor);
+                // init all record function for this cursor, in case functions require metadata and/or symbol tables
+                for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+                    recordFunctions.getQuick(i).init(cursor, bindVariableService);
+                }
+                return cursor;
+            }
+        } catch (CairoException e) {
+            partialCursor.close();
+            throw e;
+        }
+        partialCursor.close();
+        return EmptyTableRecordCursor.INSTANCE;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return false;
+    }
+
+    private void freeMaps() {
+        for (int i = 0, n = unitMaps.size(); i < n; i++) {
+            unitMaps.getQuick(i).close();
+        }
+        partialMap.close();
+        map.close();
+    }
+
+    private class PartialRecordCursor implements NoRandomAccessRecordCursor {
+        private final TableReaderRecord record = new TableReaderRecord();
+        private DataFrameCursor dataFrameCursor;
+        private BindVariableService bindVariableService;
+        private RecordCursor mapCursor;
+        // part of data frame that is not in any unit yet
+        private int partitionIndex;
+        private long rowLo;
+        private long rowHi;
+
+        @Override
+        public void close() {
+            if (dataFrameCursor != null) {
+                releaseLanes();
+                dataFrameCursor = Misc.free(dataFrameCursor);
+            }
+        }
+
+        @Override
+        public Record getRecord() {
+            return partialMap.getRecord();
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return dataFrameCursor.getSymbolTable(columnIndex);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (mapCursor == null || !mapCursor.hasNext()) {
+                if (!nextBatch()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void toTop() {
+            dataFrameCursor.toTop();
+            mapCursor = null;
+            rowLo = rowHi = 0;
+            // filters can cache state of the cursor
+            for (int i = 0; i < laneCount; i++) {
+                lanes.getQuick(i).toTop();
+            }
+        }
+
+        private void addSegment(long hi) {
+            segments.add(partitionIndex);
+            segments.add(rowLo);
+            segments.add(hi);
+            rowLo = hi;
+        }
+
+        private boolean nextBatch() {
+            segments.clear();
+            unitSegments.clear();
+            for (int i = 0, n = unitMaps.size(); i < n; i++) {
+                final int unitSegment = segments.size() / 3;
+                if (!nextUnit()) {
+                    break;
+                }
+                unitSegments.add(unitSegment);
+            }
+
+            final int unitCount = unitSegments.size();
+            if (unitCount == 0) {
+                return false;
+            }
+            // end of last unit
+            unitSegments.add(segments.size() / 3);
+            dispatcher.dispatch(lanes, laneCount, unitCount);
+
+            // units do not share samples, keys of different units are never the same
+            partialMap.clear();
+            for (int i = 0; i < unitCount; i++) {
+                final RecordCursor unitCursor = unitMaps.getQuick(i).getCursor();
+                final MapRecord unitRecord = (MapRecord) unitCursor.getRecord();
+                while (unitCursor.hasNext()) {
+                    final MapKey key = partialMap.withKey();
+                    key.put(unitRecord, partialKeySink);
+                    partialValueSink.copy(unitRecord, key.createValue());
+                }
+            }
+            mapCursor = partialMap.getCursor();
+            return true;
+        }
+
+        private boolean nextFrame() {
+            while (rowLo == rowHi) {
+                if (!dataFrameCursor.hasNext()) {
+                    return false;
+                }
+                final DataFrame frame = dataFrameCursor.next();
+                partitionIndex = frame.getPartitionIndex();
+                rowLo = frame.getRowLo();
+                rowHi = frame.getRowHi();
+            }
+            return true;
+        }
+
+        private boolean nextUnit() {
+            long rowCount = 0;
+            while (rowCount < unitRowCount && nextFrame()) {
+                final long hi = Math.min(rowHi, rowLo + unitRowCount - rowCount);
+                rowCount += hi - rowLo;
+                addSegment(hi);
+            }
+
+            if (rowCount == 0) {
+                return false;
+            }
+
+            // unit cannot end in the middle of sample, take the rest of the last sample
+            final int lastSegment = segments.size() / 3 - 1;
+            record.jumpTo((int) segments.getQuick(lastSegment * 3), segments.getQuick(lastSegment * 3 + 2) - 1);
+            final long boundary = timestampSampler.nextTimestamp(timestampSampler.round(record.getTimestamp(timestampIndex)));
+            while (nextFrame()) {
+                final long hi = searchTimestamp(boundary);
+                if (hi > rowLo) {
+                    addSegment(hi);
+                }
+                if (hi < rowHi) {
+                    break;
+                }
+            }
+            return true;
+        }
+
+        private void of(DataFrameCursor dataFrameCursor, BindVariableService bindVariableService) {
+            this.dataFrameCursor = dataFrameCursor;
+            this.bindVariableService = bindVariableService;
+            this.mapCursor = null;
+            this.rowLo = this.rowHi = 0;
+            final TableReader reader = dataFrameCursor.getTableReader();
+            this.record.of(reader);
+            ofLanes(reader);
+        }
+
+        private void ofLanes(TableReader reader) {
+            lanes.getQuick(0).of(reader, bindVariableService);
+            laneCount = 1;
+
+            for (int i = 1, n = lanes.size(); i < n; i++) {
+                final TableReader laneReader;
+                try {
+                    laneReader = engine.getReader(reader.getTableName(), reader.getVersion());
+                } catch (CairoException e) {
+                    LOG.info().$("no reader for lane [table=").$(reader.getTableName()).$(", lane=").$(i).$(']').$();
+                    break;
+                }
+
+                if (laneReader.getTxn() != reader.getTxn()) {
+                    // table has changed in the meantime, frames of data frame cursor may not be valid for lane reader
+                    laneReader.close();
+                    break;
+                }
+
+                lanes.getQuick(i).of(laneReader, bindVariableService);
+                laneCount++;
+            }
+        }
+
+        private void releaseLanes() {
+            // first lane uses reader of data frame cursor
+            for (int i = 1; i < laneCount; i++) {
+                final SampleByLane lane = lanes.getQuick(i);
+                lane.reader = Misc.free(lane.reader);
+            }
+            laneCount = 0;
+        }
+
+        private long searchTimestamp(long timestamp) {
+            // first row of the frame at or above timestamp
+            long lo = rowLo;
+            long hi = rowHi;
+            record.jumpTo(partitionIndex, lo);
+            while (lo < hi) {
+                final long mid = (lo + hi) >>> 1;
+                record.setRecordIndex(mid);
+                if (record.getTimestamp(timestampIndex) < timestamp) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    private class SampleByLane extends DataFrameLane {
+        private final ObjList<GroupByFunction> functions;
+        private final Function filter;
+        private final TableReaderRecord record = new TableReaderRecord();
+        private TableReader reader;
+
+        private SampleByLane(ObjList<GroupByFunction> functions, @Nullable Function filter) {
+            this.functions = functions;
+            this.filter = filter;
+        }
+
+        @Override
+        protected void process(int unitIndex) {
+            final Map map = unitMaps.getQuick(unitIndex);
+            final int n = functions.size();
+            map.clear();
+            for (int i = unitSegments.getQuick(unitIndex), m = unitSegments.getQuick(unitIndex + 1); i < m; i++) {
+                final int partitionIndex = (int) segments.getQuick(i * 3);
+                final long lo = segments.getQuick(i * 3 + 1);
+                final long hi = segments.getQuick(i * 3 + 2);
+
+                reader.openPartition(partitionIndex);
+                record.jumpTo(partitionIndex, lo);
+                for (long row = lo; row < hi; row++) {
+                    record.setRecordIndex(row);
+                    if (filter == null || filter.getBool(record)) {
+                        final long timestamp = timestampSampler.round(record.getTimestamp(timestampIndex));
+                        final MapKey key = map.withKey();
+                        key.putTimestamp(timestamp);
+                        laneSink.copy(record, key);
+                        final MapValue value = key.createValue();
+                        value.putLong(0, timestamp);
+                        GroupByUtils.updateFunctions(functions, n, value, record);
+                    }
+                }
+            }
+        }
+
+        private void of(TableReader reader, BindVariableService bindVariableService) {
+            this.reader = reader;
+            this.record.of(reader);
+            final TableReaderRecordCursor readerCursor = reader.getCursor();
+            if (filter != null) {
+                filter.init(readerCursor, bindVariableService);
+            }
+            for (int i = 0, n = functions.size(); i < n; i++) {
+                functions.getQuick(i).init(readerCursor, bindVariableService);
+            }
+        }
+
+        private void toTop() {
+            if (filter != null) {
+                filter.toTop();
+            }
+            for (int i = 0, n = functions.size(); i < n; i++) {
+                functions.getQuick(i).toTop();
+            }
+        }
+    }
+}
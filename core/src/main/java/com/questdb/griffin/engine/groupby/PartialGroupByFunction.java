@@ -0,0 +1,85 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.ArrayColumnTypes;
+import com.questdb.cairo.map.MapRecord;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.map.RecordValueSink;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.griffin.engine.functions.TimestampFunction;
+import com.questdb.std.ObjList;
+
+/**
+ * Stands in for group-by functions of sample-by when records are partial aggregates, that is records of another
+ * sample-by map, rather than rows of a table. The first partial aggregate of a key is copied, the following ones
+ * are merged. Value 0 of sample-by map is timestamp of the sample, that is what this function returns.
+ */
+class PartialGroupByFunction extends TimestampFunction implements GroupByFunction {
+    private final ObjList<GroupByFunction> functions;
+    private final RecordValueSink valueSink;
+
+    PartialGroupByFunction(ObjList<GroupByFunction> functions, RecordValueSink valueSink) {
+        super(0);
+        this.functions = functions;
+        this.valueSink = valueSink;
+    }
+
+    @Override
+    public void computeFirst(MapValue mapValue, Record record) {
+        valueSink.copy(record, mapValue);
+    }
+
+    @Override
+    public void computeNext(MapValue mapValue, Record record) {
+        merge(mapValue, ((MapRecord) record).getValue());
+    }
+
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            functions.getQuick(i).merge(destValue, srcValue);
+        }
+    }
+
+    @Override
+    public void pushValueTypes(ArrayColumnTypes columnTypes) {
+        // value columns belong to functions this one stands in for
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void setNull(MapValue mapValue) {
+        for (int i = 0, n = functions.size(); i < n; i++) {
+            functions.getQuick(i).setNull(mapValue);
+        }
+    }
+
+    @Override
+    public long getTimestamp(Record rec) {
+        return rec.getTimestamp(0);
+    }
+}
@@ -45,7 +45,7 @@ import com.questdb.std.Transient;
 import org.jetbrains.annotations.NotNull;
 
 public class SampleByFillNoneRecordCursorFactory extends AbstractSampleByRecordCursorFactory {
-    private final static SampleByCursorLambda CURSOR_LAMBDA = SampleByFillNoneRecordCursorFactory::createCursor;
+    public final static SampleByCursorLambda CURSOR_LAMBDA = SampleByFillNoneRecordCursorFactory::createCursor;
 
     public SampleByFillNoneRecordCursorFactory(
             CairoConfiguration configuration,
@@ -38,7 +38,7 @@ import org.jetbrains.annotations.NotNull;
 
 public class SampleByFillNullRecordCursorFactory extends AbstractSampleByRecordCursorFactory {
 
-    private static final SampleByCursorLambda CURSOR_LAMBDA = SampleByFillNullRecordCursorFactory::createCursor;
+    public static final SampleByCursorLambda CURSOR_LAMBDA = SampleByFillNullRecordCursorFactory::createCursor;
 
     public SampleByFillNullRecordCursorFactory(
             CairoConfiguration configuration,
@@ -42,7 +42,7 @@ import com.questdb.std.Transient;
 import org.jetbrains.annotations.NotNull;
 
 public class SampleByFillPrevRecordCursorFactory extends AbstractSampleByRecordCursorFactory {
-    private static final SampleByCursorLambda CURSOR_LAMBDA = SampleByFillPrevRecordCursorFactory::createCursor;
+    public static final SampleByCursorLambda CURSOR_LAMBDA = SampleByFillPrevRecordCursorFactory::createCursor;
 
     public SampleByFillPrevRecordCursorFactory(
             CairoConfiguration configuration,
@@ -60,25 +60,7 @@ public class SampleByFillValueRecordCursorFactory extends AbstractSampleByRecord
                 functionParser,
                 executionContext,
                 asm,
-                (
-                        map,
-                        sink,
-                        sampler,
-                        timestampIndex,
-                        groupByFunctions,
-                        recordFunctions,
-                        symbolTableIndex
-
-                ) -> createCursor(
-                        map,
-                        sink,
-                        sampler,
-                        timestampIndex,
-                        groupByFunctions,
-                        recordFunctions,
-                        symbolTableIndex,
-                        fillValues
-                ),
+                getCursorLambda(fillValues),
                 keyTypes,
                 valueTypes
         );
@@ -112,6 +94,32 @@ public class SampleByFillValueRecordCursorFactory extends AbstractSampleByRecord
         }
     }
 
+    /**
+     * @param fillValues values of aggregates for samples that have no rows
+     * @return lambda that creates fill cursor, parallel sample-by shares it with this factory
+     */
+    public static SampleByCursorLambda getCursorLambda(@NotNull ObjList<ExpressionNode> fillValues) {
+        return (
+                map,
+                sink,
+                sampler,
+                timestampIndex,
+                groupByFunctions,
+                recordFunctions,
+                symbolTableIndex
+
+        ) -> createCursor(
+                map,
+                sink,
+                sampler,
+                timestampIndex,
+                groupByFunctions,
+                recordFunctions,
+                symbolTableIndex,
+                fillValues
+        );
+    }
+
     @NotNull
     private static ObjList<Function> createPlaceholderFunctions(
             ObjList<Function> recordFunctions,
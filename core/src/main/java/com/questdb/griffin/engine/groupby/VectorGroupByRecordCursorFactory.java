@@ -0,0 +1,250 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.map.Map;
+import com.questdb.cairo.map.MapFactory;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.FunctionParser;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.SqlExecutionContext;
+import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.griffin.model.QueryModel;
+import com.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keyless group-by over scan of data frames. Data frames are cut into page frames and each group-by function
+ * aggregates values of its column for the whole frame in one call, reading them straight from column memory.
+ * Rows of frame are narrowed down by selection vector when scan has filter.
+ */
+public class VectorGroupByRecordCursorFactory implements RecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final DataFrameCursorFactory dataFrameCursorFactory;
+    private final DataFramePageFrameCursor pageFrameCursor;
+    private final PageFrameFilter frameFilter;
+    private final Map dataMap;
+    private final ObjList<VectorAggregateFunction> aggregateFunctions;
+    // table column each aggregate function reads, -1 when function reads none
+    private final IntList aggregateColumns;
+    private final ObjList<Function> recordFunctions;
+    private final RecordMetadata metadata;
+    private final GroupByRecordCursor cursor;
+
+    /**
+     * @param aggregateColumns table column of each group-by function in order of select columns, -1 for function
+     *                         without argument
+     * @param filter           filter function of the scan or null when all rows of data frames are aggregated
+     * @param vectorFilter     filter that selects the same rows as filter function or null
+     */
+    public VectorGroupByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            DataFrameCursorFactory dataFrameCursorFactory,
+            @NotNull IntList aggregateColumns,
+            @Nullable Function filter,
+            @Nullable VectorFilter vectorFilter,
+            @Transient @NotNull QueryModel model,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull FunctionParser functionParser,
+            @Transient @NotNull SqlExecutionContext executionContext,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes
+    ) throws SqlException {
+        final int columnCount = model.getColumns().size();
+        final RecordMetadata metadata = base.getMetadata();
+        final ObjList<GroupByFunction> groupByFunctions = new ObjList<>(columnCount);
+        GroupByUtils.prepareGroupByFunctions(
+                model,
+                metadata,
+                functionParser,
+                executionContext,
+                groupByFunctions,
+                valueTypes
+        );
+
+        this.aggregateFunctions = new ObjList<>(groupByFunctions.size());
+        for (int i = 0, n = groupByFunctions.size(); i < n; i++) {
+            aggregateFunctions.add((VectorAggregateFunction) groupByFunctions.getQuick(i));
+        }
+
+        this.recordFunctions = new ObjList<>(columnCount);
+        final GenericRecordMetadata groupByMetadata = new GenericRecordMetadata();
+        final IntIntHashMap symbolTableIndex = new IntIntHashMap();
+
+        GroupByUtils.prepareGroupByRecordFunctions(
+                model,
+                metadata,
+                listColumnFilter,
+                groupByFunctions,
+                recordFunctions,
+                groupByMetadata,
+                keyTypes,
+                valueTypes,
+                symbolTableIndex,
+                true
+        );
+        assert keyTypes.getColumnCount() == 0;
+
+        final int pageFrameRowCount = configuration.getSqlPageFrameRowCount();
+        this.pageFrameCursor = new DataFramePageFrameCursor(
+                GroupByUtils.getPageFrameColumns(aggregateColumns, vectorFilter, -1),
+                pageFrameRowCount
+        );
+        this.frameFilter = new PageFrameFilter(vectorFilter, filter, pageFrameRowCount);
+        this.dataMap = MapFactory.createMap(configuration, keyTypes, valueTypes);
+        this.aggregateColumns = aggregateColumns;
+        this.base = base;
+        this.dataFrameCursorFactory = dataFrameCursorFactory;
+        this.metadata = groupByMetadata;
+        this.cursor = new GroupByRecordCursor(recordFunctions, symbolTableIndex);
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+            recordFunctions.getQuick(i).close();
+        }
+        dataMap.close();
+        frameFilter.close();
+        // base factory owns filters
+        base.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        dataMap.clear();
+        pageFrameCursor.of(dataFrameCursorFactory.getCursor());
+        try {
+            frameFilter.of(pageFrameCursor.getTableReader(), bindVariableService);
+            final int n = aggregateFunctions.size();
+            while (pageFrameCursor.hasNext()) {
+                final PageFrame frame = pageFrameCursor.next();
+                final long count = frameFilter.select(frame);
+                if (count == 0) {
+                    continue;
+                }
+
+                // map has no keys, value is created by the first frame that has rows
+                final MapValue value = dataMap.withKey().createValue();
+                for (int i = 0; i < n; i++) {
+                    final int columnIndex = aggregateColumns.getQuick(i);
+                    final long address = columnIndex == -1 ? 0 : frame.getPageAddress(columnIndex);
+                    if (count == -1) {
+                        aggregateFunctions.getQuick(i).computeBatch(value, address, frame.getRowCount());
+                    } else {
+                        aggregateFunctions.getQuick(i).computeBatchSelected(value, address, frameFilter.getRows(), count);
+                    }
+                }
+            }
+
+            cursor.of(dataMap.getCursor(), pageFrameCursor);
+            // init all record function for this cursor, in case functions require metadata and/or symbol tables
+            for (int i = 0, m = recordFunctions.size(); i < m; i++) {
+                recordFunctions.getQuick(i).init(cursor, bindVariableService);
+            }
+            return cursor;
+        } catch (CairoException e) {
+            pageFrameCursor.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return true;
+    }
+
+    private static class GroupByRecordCursor implements RecordCursor {
+        private final VirtualRecord functionRecord;
+        private final IntIntHashMap symbolTableIndex;
+        private RecordCursor mapCursor;
+        private PageFrameCursor pageFrameCursor;
+
+        public GroupByRecordCursor(ObjList<Function> functions, IntIntHashMap symbolTableIndex) {
+            this.functionRecord = new VirtualRecord(functions);
+            this.symbolTableIndex = symbolTableIndex;
+        }
+
+        @Override
+        public void close() {
+            Misc.free(mapCursor);
+            Misc.free(pageFrameCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return functionRecord;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            return pageFrameCursor.getTableReader().getSymbolMapReader(symbolTableIndex.get(columnIndex));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mapCursor.hasNext();
+        }
+
+        @Override
+        public Record newRecord() {
+            VirtualRecord record = new VirtualRecord(functionRecord.getFunctions());
+            record.of(mapCursor.newRecord());
+            return record;
+        }
+
+        @Override
+        public void recordAt(Record record, long atRowId) {
+            assert record instanceof VirtualRecord;
+            mapCursor.recordAt(((VirtualRecord) record).getBaseRecord(), atRowId);
+        }
+
+        @Override
+        public void recordAt(long rowId) {
+            mapCursor.recordAt(functionRecord.getBaseRecord(), rowId);
+        }
+
+        @Override
+        public void toTop() {
+            mapCursor.toTop();
+        }
+
+        public void of(RecordCursor mapCursor, PageFrameCursor pageFrameCursor) {
+            this.mapCursor = mapCursor;
+            this.pageFrameCursor = pageFrameCursor;
+            functionRecord.of(mapCursor.getRecord());
+        }
+    }
+}
@@ -0,0 +1,334 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.map.*;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.FunctionParser;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.SqlExecutionContext;
+import com.questdb.griffin.engine.EmptyTableRecordCursor;
+import com.questdb.griffin.engine.functions.GroupByFunction;
+import com.questdb.griffin.engine.functions.VectorAggregateFunction;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.griffin.model.QueryModel;
+import com.questdb.std.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keyless sample-by over scan of data frames. Page frames are cut on sample boundaries and each group-by function
+ * aggregates values of its column for the whole cut in one call, reading them straight from column memory.
+ * Aggregates are kept in map keyed by sample timestamp, which is then streamed to the same fill cursor serial
+ * sample-by uses. Fill cursor copies aggregates via {@link PartialGroupByFunction}.
+ */
+public class VectorSampleByRecordCursorFactory implements RecordCursorFactory {
+    private final RecordCursorFactory base;
+    private final DataFrameCursorFactory dataFrameCursorFactory;
+    private final DataFramePageFrameCursor pageFrameCursor;
+    private final PageFrameFilter frameFilter;
+    private final TimestampSampler timestampSampler;
+    // index of timestamp column in table
+    private final int timestampIndex;
+    private final boolean fillGaps;
+    private final ObjList<VectorAggregateFunction> aggregateFunctions;
+    // table column each aggregate function reads, -1 when function reads none
+    private final IntList aggregateColumns;
+    // log2 of value size of each aggregate column
+    private final IntList aggregateShifts;
+    private final ObjList<GroupByFunction> groupByFunctions;
+    private final ObjList<Function> recordFunctions;
+    private final RecordMetadata metadata;
+    private final DelegatingRecordCursor cursor;
+    // key map of fill cursor, it has no keys
+    private final Map map;
+    // aggregates of samples keyed by sample timestamp in order of samples
+    private final Map partialMap;
+
+    /**
+     * @param aggregateColumns table column of each group-by function in order of select columns, -1 for function
+     *                         without argument
+     * @param filter           filter function of the scan or null when all rows of data frames are aggregated
+     * @param vectorFilter     filter that selects the same rows as filter function or null
+     * @param fillGaps         true when fill cursor returns every sample, fill cursor map is then populated
+     *                         before the cursor is returned
+     */
+    public VectorSampleByRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordCursorFactory base,
+            DataFrameCursorFactory dataFrameCursorFactory,
+            @NotNull IntList aggregateColumns,
+            @Nullable Function filter,
+            @Nullable VectorFilter vectorFilter,
+            @NotNull TimestampSampler timestampSampler,
+            boolean fillGaps,
+            @Transient @NotNull QueryModel model,
+            @Transient @NotNull ListColumnFilter listColumnFilter,
+            @Transient @NotNull FunctionParser functionParser,
+            @Transient @NotNull SqlExecutionContext executionContext,
+            @Transient @NotNull BytecodeAssembler asm,
+            @Transient @NotNull SampleByCursorLambda cursorLambda,
+            @Transient @NotNull ArrayColumnTypes keyTypes,
+            @Transient @NotNull ArrayColumnTypes valueTypes
+    ) throws SqlException {
+        final int columnCount = model.getColumns().size();
+        final RecordMetadata metadata = base.getMetadata();
+        this.groupByFunctions = new ObjList<>(columnCount);
+        valueTypes.add(ColumnType.TIMESTAMP); // first value is always timestamp
+        GroupByUtils.prepareGroupByFunctions(
+                model,
+                metadata,
+                functionParser,
+                executionContext,
+                groupByFunctions,
+                valueTypes
+        );
+
+        this.aggregateFunctions = new ObjList<>(groupByFunctions.size());
+        this.aggregateShifts = new IntList(groupByFunctions.size());
+        for (int i = 0, n = groupByFunctions.size(); i < n; i++) {
+            aggregateFunctions.add((VectorAggregateFunction) groupByFunctions.getQuick(i));
+            final int columnIndex = aggregateColumns.getQuick(i);
+            aggregateShifts.add(columnIndex == -1 ? 0 : ColumnType.pow2SizeOf(metadata.getColumnType(columnIndex)));
+        }
+
+        this.recordFunctions = new ObjList<>(columnCount);
+        final GenericRecordMetadata groupByMetadata = new GenericRecordMetadata();
+        final IntIntHashMap symbolTableIndex = new IntIntHashMap();
+
+        GroupByUtils.prepareGroupByRecordFunctions(
+                model,
+                metadata,
+                listColumnFilter,
+                groupByFunctions,
+                recordFunctions,
+                groupByMetadata,
+                keyTypes,
+                valueTypes,
+                symbolTableIndex,
+                false
+        );
+        assert keyTypes.getColumnCount() == 0;
+
+        // map record has value columns first and sample timestamp after them
+        final int valueCount = valueTypes.getColumnCount();
+        final ArrayColumnTypes partialKeyTypes = new ArrayColumnTypes();
+        partialKeyTypes.add(ColumnType.TIMESTAMP);
+        final ArrayColumnTypes partialRecordTypes = new ArrayColumnTypes();
+        final ListColumnFilter partialColumnFilter = new ListColumnFilter();
+        for (int i = 0; i < valueCount; i++) {
+            partialRecordTypes.add(valueTypes.getColumnType(i));
+            partialColumnFilter.add(i);
+        }
+        partialRecordTypes.add(ColumnType.TIMESTAMP);
+        final RecordValueSink partialValueSink = RecordValueSinkFactory.getInstance(asm, partialRecordTypes, partialColumnFilter);
+
+        // fill cursor map has no key columns
+        partialColumnFilter.clear();
+        final RecordSink mapSink = RecordSinkFactory.getInstance(asm, partialRecordTypes, partialColumnFilter, false);
+
+        this.partialMap = MapFactory.createMap(configuration, partialKeyTypes, valueTypes);
+        this.map = MapFactory.createMap(configuration, keyTypes, valueTypes);
+
+        final ObjList<GroupByFunction> partialFunctions = new ObjList<>(1);
+        partialFunctions.add(new PartialGroupByFunction(groupByFunctions, partialValueSink));
+        try {
+            this.cursor = cursorLambda.createCursor(
+                    map,
+                    mapSink,
+                    timestampSampler,
+                    // sample timestamp is the key column of partial aggregate
+                    valueCount,
+                    partialFunctions,
+                    recordFunctions,
+                    symbolTableIndex
+            );
+        } catch (SqlException | CairoException e) {
+            partialMap.close();
+            map.close();
+            throw e;
+        }
+
+        final int pageFrameRowCount = configuration.getSqlPageFrameRowCount();
+        this.timestampIndex = metadata.getTimestampIndex();
+        this.pageFrameCursor = new DataFramePageFrameCursor(
+                GroupByUtils.getPageFrameColumns(aggregateColumns, vectorFilter, timestampIndex),
+                pageFrameRowCount
+        );
+        this.frameFilter = new PageFrameFilter(vectorFilter, filter, pageFrameRowCount);
+        this.aggregateColumns = aggregateColumns;
+        this.base = base;
+        this.dataFrameCursorFactory = dataFrameCursorFactory;
+        this.timestampSampler = timestampSampler;
+        this.fillGaps = fillGaps;
+        this.metadata = groupByMetadata;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+            recordFunctions.getQuick(i).close();
+        }
+        partialMap.close();
+        map.close();
+        frameFilter.close();
+        // base factory owns filters
+        base.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        partialMap.clear();
+        pageFrameCursor.of(dataFrameCursorFactory.getCursor());
+        try {
+            frameFilter.of(pageFrameCursor.getTableReader(), bindVariableService);
+            while (pageFrameCursor.hasNext()) {
+                final PageFrame frame = pageFrameCursor.next();
+                final long count = frameFilter.select(frame);
+                if (count == -1) {
+                    aggregate(frame);
+                } else {
+                    aggregateSelected(frame, count);
+                }
+            }
+        } finally {
+            // aggregates do not refer to table data
+            pageFrameCursor.close();
+        }
+
+        final RecordCursor partialCursor = partialMap.getCursor();
+        map.clear();
+        if (fillGaps) {
+            // This cursor fills gaps in data. To do that fill cursor has
+            // to know all possible key values upfront.
+            final int n = groupByFunctions.size();
+            if (partialCursor.hasNext()) {
+                final MapValue value = map.withKey().createValue();
+                // timestamp is always stored in value field 0
+                value.putLong(0, Numbers.LONG_NaN);
+                // have functions reset their columns to "zero" state
+                for (int i = 0; i < n; i++) {
+                    groupByFunctions.getQuick(i).setNull(value);
+                }
+            }
+            partialCursor.toTop();
+        }
+
+        if (partialCursor.hasNext()) {
+            cursor.of(partialCursor);
+            // init all record function for this cursor, in case functions require metadata and/or symbol tables
+            for (int i = 0, n = recordFunctions.size(); i < n; i++) {
+                recordFunctions.getQuick(i).init(cursor, bindVariableService);
+            }
+            return cursor;
+        }
+        return EmptyTableRecordCursor.INSTANCE;
+    }
+
+    @Override
+    public RecordMetadata getMetadata() {
+        return metadata;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return false;
+    }
+
+    private void aggregate(PageFrame frame) {
+        final long timestamps = frame.getPageAddress(timestampIndex);
+        final long count = frame.getRowCount();
+        final int n = aggregateFunctions.size();
+        long lo = 0;
+        while (lo < count) {
+            final long sample = timestampSampler.round(Unsafe.getUnsafe().getLong(timestamps + (lo << 3)));
+            final long hi = searchTimestamp(timestamps, lo, count, timestampSampler.nextTimestamp(sample));
+            final MapValue value = createValue(sample);
+            for (int i = 0; i < n; i++) {
+                final int columnIndex = aggregateColumns.getQuick(i);
+                final long address = columnIndex == -1 ? 0 : frame.getPageAddress(columnIndex) + (lo << aggregateShifts.getQuick(i));
+                aggregateFunctions.getQuick(i).computeBatch(value, address, hi - lo);
+            }
+            lo = hi;
+        }
+    }
+
+    private void aggregateSelected(PageFrame frame, long count) {
+        final long timestamps = frame.getPageAddress(timestampIndex);
+        final long rows = frameFilter.getRows();
+        final int n = aggregateFunctions.size();
+        long lo = 0;
+        while (lo < count) {
+            final long row = Unsafe.getUnsafe().getLong(rows + (lo << 3));
+            final long sample = timestampSampler.round(Unsafe.getUnsafe().getLong(timestamps + (row << 3)));
+            final long hi = searchSelectedTimestamp(timestamps, rows, lo, count, timestampSampler.nextTimestamp(sample));
+            final MapValue value = createValue(sample);
+            for (int i = 0; i < n; i++) {
+                final int columnIndex = aggregateColumns.getQuick(i);
+                final long address = columnIndex == -1 ? 0 : frame.getPageAddress(columnIndex);
+                aggregateFunctions.getQuick(i).computeBatchSelected(value, address, rows + (lo << 3), hi - lo);
+            }
+            lo = hi;
+        }
+    }
+
+    private MapValue createValue(long sample) {
+        // sample can continue from previous frame
+        final MapKey key = partialMap.withKey();
+        key.putTimestamp(sample);
+        final MapValue value = key.createValue();
+        if (value.isNew()) {
+            value.putLong(0, sample);
+        }
+        return value;
+    }
+
+    private static long searchTimestamp(long timestamps, long lo, long hi, long timestamp) {
+        // first row at or above timestamp
+        while (lo < hi) {
+            final long mid = (lo + hi) >>> 1;
+            if (Unsafe.getUnsafe().getLong(timestamps + (mid << 3)) < timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static long searchSelectedTimestamp(long timestamps, long rows, long lo, long hi, long timestamp) {
+        // first selected row at or above timestamp
+        while (lo < hi) {
+            final long mid = (lo + hi) >>> 1;
+            final long row = Unsafe.getUnsafe().getLong(rows + (mid << 3));
+            if (Unsafe.getUnsafe().getLong(timestamps + (row << 3)) < timestamp) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
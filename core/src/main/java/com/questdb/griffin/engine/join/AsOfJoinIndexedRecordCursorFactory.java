@@ -0,0 +1,265 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.join;
+
+import com.questdb.cairo.AbstractRecordCursorFactory;
+import com.questdb.cairo.BitmapIndexReader;
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.TableReader;
+import com.questdb.cairo.TableReaderRecord;
+import com.questdb.cairo.TableUtils;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.LongList;
+import com.questdb.std.Misc;
+import com.questdb.std.ObjList;
+
+/**
+ * ASOF join on single symbol column that is indexed on slave table. Slave is not scanned, instead
+ * for every master row we find last slave row with timestamp not greater than that of master and
+ * walk backward index of join key from there. Cost of join depends on size of master rather than
+ * size of slave.
+ */
+public class AsOfJoinIndexedRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final RecordCursorFactory masterFactory;
+    private final RecordCursorFactory slaveFactory;
+    private final DataFrameCursorFactory slaveDataFrameCursorFactory;
+    private final AsOfJoinIndexedRecordCursor cursor;
+
+    public AsOfJoinIndexedRecordCursorFactory(
+            RecordMetadata metadata,
+            RecordCursorFactory masterFactory,
+            RecordCursorFactory slaveFactory,
+            DataFrameCursorFactory slaveDataFrameCursorFactory,
+            int masterKeyIndex,
+            int slaveKeyIndex,
+            int columnSplit
+    ) {
+        super(metadata);
+        this.masterFactory = masterFactory;
+        this.slaveFactory = slaveFactory;
+        this.slaveDataFrameCursorFactory = slaveDataFrameCursorFactory;
+        this.cursor = new AsOfJoinIndexedRecordCursor(
+                columnSplit,
+                NullRecordFactory.getInstance(slaveFactory.getMetadata()),
+                masterFactory.getMetadata().getTimestampIndex(),
+                slaveFactory.getMetadata().getTimestampIndex(),
+                masterKeyIndex,
+                masterFactory.getMetadata().getColumnType(masterKeyIndex) == ColumnType.SYMBOL,
+                slaveKeyIndex
+        );
+    }
+
+    @Override
+    public void close() {
+        ((JoinRecordMetadata) getMetadata()).close();
+        masterFactory.close();
+        slaveFactory.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        final RecordCursor masterCursor = masterFactory.getCursor(bindVariableService);
+        try {
+            cursor.of(masterCursor, slaveDataFrameCursorFactory.getCursor());
+        } catch (RuntimeException e) {
+            masterCursor.close();
+            throw e;
+        }
+        return cursor;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return false;
+    }
+
+    private static class AsOfJoinIndexedRecordCursor implements NoRandomAccessRecordCursor {
+        // partition index, row lo, row hi and timestamp of first row for each slave data frame
+        private static final int FRAME_ENTRY_SIZE = 4;
+        private final OuterJoinRecord record;
+        private final TableReaderRecord slaveRecord = new TableReaderRecord();
+        private final TableReaderRecord timestampRecord = new TableReaderRecord();
+        private final LongList frames = new LongList();
+        private final ObjList<BitmapIndexReader> indexReaders = new ObjList<>();
+        private final int columnSplit;
+        private final int masterTimestampIndex;
+        private final int slaveTimestampIndex;
+        private final int masterKeyIndex;
+        private final boolean masterKeySymbol;
+        private final int slaveKeyIndex;
+        private RecordCursor masterCursor;
+        private DataFrameCursor slaveCursor;
+        private Record masterRecord;
+        private SymbolTable slaveKeySymbolTable;
+
+        public AsOfJoinIndexedRecordCursor(
+                int columnSplit,
+                Record nullRecord,
+                int masterTimestampIndex,
+                int slaveTimestampIndex,
+                int masterKeyIndex,
+                boolean masterKeySymbol,
+                int slaveKeyIndex
+        ) {
+            this.record = new OuterJoinRecord(columnSplit, nullRecord);
+            this.columnSplit = columnSplit;
+            this.masterTimestampIndex = masterTimestampIndex;
+            this.slaveTimestampIndex = slaveTimestampIndex;
+            this.masterKeyIndex = masterKeyIndex;
+            this.masterKeySymbol = masterKeySymbol;
+            this.slaveKeyIndex = slaveKeyIndex;
+        }
+
+        @Override
+        public void close() {
+            masterCursor = Misc.free(masterCursor);
+            slaveCursor = Misc.free(slaveCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            if (columnIndex < columnSplit) {
+                return masterCursor.getSymbolTable(columnIndex);
+            }
+            return slaveCursor.getSymbolTable(columnIndex - columnSplit);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (masterCursor.hasNext()) {
+                record.hasSlave(findSlave());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void toTop() {
+            masterCursor.toTop();
+        }
+
+        private int findFrame(long timestamp) {
+            // last frame that starts at or before timestamp
+            int lo = 0;
+            int hi = frames.size() / FRAME_ENTRY_SIZE;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (frames.getQuick(mid * FRAME_ENTRY_SIZE + 3) <= timestamp) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo - 1;
+        }
+
+        private boolean findSlave() {
+            final CharSequence key = masterKeySymbol ? masterRecord.getSym(masterKeyIndex) : masterRecord.getStr(masterKeyIndex);
+            final int symbolKey = slaveKeySymbolTable.getQuick(key);
+            if (symbolKey == SymbolTable.VALUE_NOT_FOUND) {
+                return false;
+            }
+            final int indexKey = TableUtils.toIndexKey(symbolKey);
+            final long masterTimestamp = masterRecord.getTimestamp(masterTimestampIndex);
+
+            int frameIndex = findFrame(masterTimestamp);
+            if (frameIndex < 0) {
+                return false;
+            }
+
+            int offset = frameIndex * FRAME_ENTRY_SIZE;
+            int partitionIndex = (int) frames.getQuick(offset);
+            long rowLo = frames.getQuick(offset + 1);
+            long rowHi = findRowHi(partitionIndex, rowLo, frames.getQuick(offset + 2), masterTimestamp);
+
+            while (true) {
+                final RowCursor rowCursor = indexReaders.getQuick(frameIndex).getCursor(true, indexKey, rowLo, rowHi - 1);
+                if (rowCursor.hasNext()) {
+                    slaveRecord.jumpTo(partitionIndex, rowCursor.next());
+                    return true;
+                }
+
+                if (--frameIndex < 0) {
+                    return false;
+                }
+
+                offset = frameIndex * FRAME_ENTRY_SIZE;
+                partitionIndex = (int) frames.getQuick(offset);
+                rowLo = frames.getQuick(offset + 1);
+                rowHi = frames.getQuick(offset + 2);
+            }
+        }
+
+        private long findRowHi(int partitionIndex, long rowLo, long rowHi, long timestamp) {
+            // first row in frame with timestamp greater than that of master
+            timestampRecord.jumpTo(partitionIndex, rowLo);
+            long lo = rowLo;
+            long hi = rowHi;
+            while (lo < hi) {
+                long mid = (lo + hi) >>> 1;
+                timestampRecord.setRecordIndex(mid);
+                if (timestampRecord.getTimestamp(slaveTimestampIndex) <= timestamp) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        void of(RecordCursor masterCursor, DataFrameCursor slaveCursor) {
+            this.masterCursor = masterCursor;
+            this.slaveCursor = slaveCursor;
+            this.masterRecord = masterCursor.getRecord();
+            this.slaveKeySymbolTable = slaveCursor.getSymbolTable(slaveKeyIndex);
+            final TableReader reader = slaveCursor.getTableReader();
+            slaveRecord.of(reader);
+            timestampRecord.of(reader);
+
+            frames.clear();
+            indexReaders.clear();
+            while (slaveCursor.hasNext()) {
+                final DataFrame frame = slaveCursor.next();
+                final long rowLo = frame.getRowLo();
+                final long rowHi = frame.getRowHi();
+                if (rowLo < rowHi) {
+                    timestampRecord.jumpTo(frame.getPartitionIndex(), rowLo);
+                    frames.add(frame.getPartitionIndex());
+                    frames.add(rowLo);
+                    frames.add(rowHi);
+                    frames.add(timestampRecord.getTimestamp(slaveTimestampIndex));
+                    indexReaders.add(frame.getBitmapIndexReader(slaveKeyIndex, BitmapIndexReader.DIR_BACKWARD));
+                }
+            }
+            record.of(masterRecord, slaveRecord);
+        }
+    }
+}
@@ -40,6 +40,10 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
     private final RecordCursorFactory slaveFactory;
     private final RecordSink masterKeySink;
     private final RecordSink slaveKeySink;
+    private final HashJoinSpill spill;
+    private final JoinKeyFilter filter;
+    private final long spillThreshold;
+    private final long swapThreshold;
     private final HashJoinRecordCursor cursor;
 
     public HashJoinLightRecordCursorFactory(
@@ -51,6 +55,9 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
             @Transient ColumnTypes valueTypes, // this expected to be just LONG, we store chain references in map
             RecordSink masterKeySink,
             RecordSink slaveKeySink,
+            RecordSink spillKeySink, // copies join key of spilled rows, which is stored ahead of other columns
+            int masterSymbolKeyIndex, // index of master key column when key is single symbol, otherwise -1
+            int slaveSymbolKeyIndex,
             int columnSplit
 
     ) {
@@ -61,6 +68,11 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         slaveChain = new LongChain(configuration.getSqlHashJoinLightValuePageSize());
         this.masterKeySink = masterKeySink;
         this.slaveKeySink = slaveKeySink;
+        this.spill = new HashJoinSpill(configuration, joinColumnTypes, masterKeySink, slaveKeySink, spillKeySink, joinKeyMap, slaveChain);
+        this.filter = new JoinKeyFilter(masterKeySink, slaveKeySink, masterSymbolKeyIndex, slaveSymbolKeyIndex);
+        this.spillThreshold = configuration.getSqlHashJoinSpillThreshold();
+        // number of rows that fit first page of chain, chain entry is two longs
+        this.swapThreshold = configuration.getSqlHashJoinLightValuePageSize() / 16;
         this.cursor = new HashJoinRecordCursor(columnSplit, joinKeyMap, slaveChain);
     }
 
@@ -68,6 +80,7 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
     public void close() {
         joinKeyMap.close();
         slaveChain.close();
+        spill.close();
         ((JoinRecordMetadata) getMetadata()).close();
         masterFactory.close();
         slaveFactory.close();
@@ -76,14 +89,44 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
     @Override
     public RecordCursor getCursor(BindVariableService bindVariableService) {
         RecordCursor slaveCursor = slaveFactory.getCursor(bindVariableService);
+        RecordCursor masterCursor = null;
         try {
-            buildMapOfSlaveRecords(slaveCursor);
+            masterCursor = masterFactory.getCursor(bindVariableService);
+            // hash table is built from smaller side, unless join has to keep order of master rows
+            final boolean swapped = getMetadata().getTimestampIndex() == -1
+                    && masterFactory.isRandomAccessCursor()
+                    && isSmaller(masterCursor, slaveCursor, swapThreshold);
+            // spilled rows are joined by row ids of both sides
+            final boolean spillable = swapped || masterFactory.isRandomAccessCursor();
+            final boolean spilled;
+            // true when master cursor skips rows rejected by filter
+            boolean pushed = false;
+            if (swapped) {
+                // rows of slave are probed, filter only knows master keys
+                filter.clear();
+                spilled = !buildMap(masterCursor, masterKeySink, spillable, false);
+            } else {
+                filter.of(masterCursor);
+                spilled = !buildMap(slaveCursor, slaveKeySink, spillable, true);
+                if (spilled) {
+                    filter.clear();
+                } else {
+                    filter.build();
+                    // size of master is taken above, before filter makes it unknown
+                    pushed = masterCursor.pushFilter(filter);
+                }
+            }
+            if (spilled) {
+                spill.of(masterCursor, slaveCursor, swapped);
+            }
+            cursor.of(masterCursor, slaveCursor, swapped, spilled, pushed);
+            return cursor;
         } catch (CairoException e) {
+            Misc.free(masterCursor);
             slaveCursor.close();
+            spill.clear();
             throw e;
         }
-        cursor.of(masterFactory.getCursor(bindVariableService), slaveCursor);
-        return cursor;
     }
 
     @Override
@@ -91,22 +134,50 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         return false;
     }
 
-    private void buildMapOfSlaveRecords(RecordCursor slaveCursor) {
+    /**
+     * Swapping sides changes order of rows, small joins keep order of master rows even when master is smaller.
+     */
+    private static boolean isSmaller(RecordCursor cursor, RecordCursor other, long minOtherSize) {
+        final long otherSize = other.size();
+        if (otherSize <= minOtherSize) {
+            return false;
+        }
+        final long size = cursor.size();
+        return size > -1 && size < otherSize;
+    }
+
+    /**
+     * Builds hash table of join key to chain of row ids.
+     *
+     * @param filtered when true keys are also added to filter of probe side rows
+     * @return false when hash table has gone over memory budget and join has to be spilled
+     */
+    private boolean buildMap(RecordCursor buildCursor, RecordSink keySink, boolean spillable, boolean filtered) {
         slaveChain.clear();
         joinKeyMap.clear();
-        final Record record = slaveCursor.getRecord();
-        while (slaveCursor.hasNext()) {
+        final Record record = buildCursor.getRecord();
+        while (buildCursor.hasNext()) {
             MapKey key = joinKeyMap.withKey();
-            key.put(record, slaveKeySink);
+            key.put(record, keySink);
             MapValue value = key.createValue();
             if (value.isNew()) {
                 final long offset = slaveChain.put(record.getRowId(), -1);
                 value.putLong(0, offset);
                 value.putLong(1, offset);
+                if (filtered) {
+                    filter.add(record);
+                }
             } else {
                 value.putLong(1, slaveChain.put(record.getRowId(), value.getLong(1)));
             }
+
+            if (spillable && joinKeyMap.getUsedMemory() + slaveChain.getUsedMemory() > spillThreshold) {
+                slaveChain.clear();
+                joinKeyMap.clear();
+                return false;
+            }
         }
+        return true;
     }
 
     private class HashJoinRecordCursor implements NoRandomAccessRecordCursor {
@@ -116,8 +187,13 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         private final int columnSplit;
         private RecordCursor masterCursor;
         private RecordCursor slaveCursor;
-        private Record masterRecord;
-        private Record slaveRecord;
+        // hash table is built from build side and looked up with rows of probe side
+        private RecordCursor buildCursor;
+        private RecordCursor probeCursor;
+        private Record probeRecord;
+        private RecordSink probeKeySink;
+        private boolean spilled;
+        private boolean filterPushed;
         private LongChain.TreeCursor slaveChainCursor;
 
         public HashJoinRecordCursor(int columnSplit, Map joinKeyMap, LongChain slaveChain) {
@@ -131,6 +207,9 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
         public void close() {
             masterCursor = Misc.free(masterCursor);
             slaveCursor = Misc.free(slaveCursor);
+            if (spilled) {
+                spill.clear();
+            }
         }
 
         @Override
@@ -148,21 +227,34 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
 
         @Override
         public boolean hasNext() {
+            if (spilled) {
+                if (spill.hasNext()) {
+                    final Record pair = spill.getRecord();
+                    probeCursor.recordAt(pair.getLong(1));
+                    buildCursor.recordAt(pair.getLong(2));
+                    return true;
+                }
+                return false;
+            }
+
             if (slaveChainCursor != null && slaveChainCursor.hasNext()) {
-                slaveCursor.recordAt(slaveChainCursor.next());
+                buildCursor.recordAt(slaveChainCursor.next());
                 return true;
             }
 
-            while (masterCursor.hasNext()) {
+            while (probeCursor.hasNext()) {
+                if (!filterPushed && !filter.accept(probeRecord)) {
+                    continue;
+                }
                 MapKey key = joinKeyMap.withKey();
-                key.put(masterRecord, masterKeySink);
+                key.put(probeRecord, probeKeySink);
                 MapValue value = key.findValue();
                 if (value != null) {
                     slaveChainCursor = slaveChain.getCursor(value.getLong(0));
                     // we know cursor has values
                     // advance to get first value
                     slaveChainCursor.hasNext();
-                    slaveCursor.recordAt(slaveChainCursor.next());
+                    buildCursor.recordAt(slaveChainCursor.next());
                     return true;
                 }
             }
@@ -171,16 +263,30 @@ public class HashJoinLightRecordCursorFactory extends AbstractRecordCursorFactor
 
         @Override
         public void toTop() {
-            masterCursor.toTop();
+            if (spilled) {
+                spill.toTop();
+            } else {
+                probeCursor.toTop();
+            }
             slaveChainCursor = null;
         }
 
-        void of(RecordCursor masterCursor, RecordCursor slaveCursor) {
+        void of(RecordCursor masterCursor, RecordCursor slaveCursor, boolean swapped, boolean spilled, boolean filterPushed) {
             this.masterCursor = masterCursor;
             this.slaveCursor = slaveCursor;
-            this.masterRecord = masterCursor.getRecord();
-            this.slaveRecord = slaveCursor.getRecord();
-            record.of(masterRecord, slaveRecord);
+            if (swapped) {
+                this.buildCursor = masterCursor;
+                this.probeCursor = slaveCursor;
+                this.probeKeySink = slaveKeySink;
+            } else {
+                this.buildCursor = slaveCursor;
+                this.probeCursor = masterCursor;
+                this.probeKeySink = masterKeySink;
+            }
+            this.probeRecord = probeCursor.getRecord();
+            this.spilled = spilled;
+            this.filterPushed = filterPushed;
+            record.of(masterCursor.getRecord(), slaveCursor.getRecord());
             slaveChainCursor = null;
         }
     }
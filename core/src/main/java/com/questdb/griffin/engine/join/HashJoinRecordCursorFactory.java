@@ -40,6 +40,7 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
     private final RecordCursorFactory slaveFactory;
     private final RecordSink masterSink;
     private final RecordSink slaveKeySink;
+    private final JoinKeyFilter filter;
     private final HashJoinRecordCursor cursor;
 
     public HashJoinRecordCursorFactory(
@@ -52,6 +53,8 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
             RecordSink masterSink,
             RecordSink slaveKeySink,
             RecordSink slaveChainSink,
+            int masterSymbolKeyIndex, // index of master key column when key is single symbol, otherwise -1
+            int slaveSymbolKeyIndex,
             int columnSplit
 
     ) {
@@ -62,6 +65,7 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
         slaveChain = new RecordChain(slaveFactory.getMetadata(), slaveChainSink, configuration.getSqlHashJoinValuePageSize());
         this.masterSink = masterSink;
         this.slaveKeySink = slaveKeySink;
+        this.filter = new JoinKeyFilter(masterSink, slaveKeySink, masterSymbolKeyIndex, slaveSymbolKeyIndex);
         this.cursor = new HashJoinRecordCursor(columnSplit, joinKeyMap, slaveChain);
     }
 
@@ -77,13 +81,17 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
     @Override
     public RecordCursor getCursor(BindVariableService bindVariableService) {
         RecordCursor slaveCursor = slaveFactory.getCursor(bindVariableService);
+        RecordCursor masterCursor = null;
         try {
-            buildMapOfSlaveRecords(slaveCursor);
+            // filter of master rows is built together with hash table and needs master symbol tables
+            masterCursor = masterFactory.getCursor(bindVariableService);
+            buildMapOfSlaveRecords(masterCursor, slaveCursor);
         } catch (CairoException e) {
+            Misc.free(masterCursor);
             slaveCursor.close();
             throw e;
         }
-        cursor.of(masterFactory.getCursor(bindVariableService), slaveCursor);
+        cursor.of(masterCursor, slaveCursor, masterCursor.pushFilter(filter));
         return cursor;
     }
 
@@ -92,8 +100,10 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
         return false;
     }
 
-    private void buildMapOfSlaveRecords(RecordCursor slaveCursor) {
-        HashOuterJoinRecordCursorFactory.buildMap(slaveCursor, slaveCursor.getRecord(), joinKeyMap, slaveKeySink, slaveChain);
+    private void buildMapOfSlaveRecords(RecordCursor masterCursor, RecordCursor slaveCursor) {
+        filter.of(masterCursor);
+        HashOuterJoinRecordCursorFactory.buildMap(slaveCursor, slaveCursor.getRecord(), joinKeyMap, slaveKeySink, slaveChain, filter);
+        filter.build();
     }
 
     private class HashJoinRecordCursor implements NoRandomAccessRecordCursor {
@@ -106,6 +116,8 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
         private Record masterRecord;
         private Record slaveRecord;
         private boolean useSlaveCursor;
+        // true when master cursor skips rows rejected by filter
+        private boolean filterPushed;
 
         public HashJoinRecordCursor(int columnSplit, Map joinKeyMap, RecordChain slaveChain) {
             this.record = new JoinRecord(columnSplit);
@@ -140,6 +152,9 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
             }
 
             while (masterCursor.hasNext()) {
+                if (!filterPushed && !filter.accept(masterRecord)) {
+                    continue;
+                }
                 MapKey key = joinKeyMap.withKey();
                 key.put(masterRecord, masterSink);
                 MapValue value = key.findValue();
@@ -161,8 +176,9 @@ public class HashJoinRecordCursorFactory extends AbstractRecordCursorFactory {
             useSlaveCursor = false;
         }
 
-        void of(RecordCursor masterCursor, RecordCursor slaveCursor) {
+        void of(RecordCursor masterCursor, RecordCursor slaveCursor, boolean filterPushed) {
             this.masterCursor = masterCursor;
+            this.filterPushed = filterPushed;
             this.slaveCursor = slaveCursor;
             this.masterRecord = masterCursor.getRecord();
             this.slaveRecord = slaveChain.getRecord();
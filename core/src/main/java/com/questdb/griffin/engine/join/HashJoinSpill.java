@@ -0,0 +1,266 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.join;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.map.Map;
+import com.questdb.cairo.map.MapKey;
+import com.questdb.cairo.map.MapValue;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.griffin.engine.orderby.RecordComparator;
+import com.questdb.griffin.engine.orderby.SortedRunsRecordCursor;
+import com.questdb.std.LongList;
+import com.questdb.std.Mutable;
+import com.questdb.std.ObjList;
+import com.questdb.std.Transient;
+
+import java.io.Closeable;
+
+/**
+ * Grace hash join for hash tables that do not fit in memory. Rows of both sides are written to partition files
+ * chosen by hash of join key, rows that can join end up in partitions of the same index. Partitions are joined
+ * one at a time: hash table is built from partition of build side and rows of probe side partition are looked
+ * up in it. Keys of single build partition are expected to fit in memory, partitions are not split any further.
+ * <p>
+ * Partition files keep join key followed by position of row in its cursor and row id. Join produces
+ * pairs of probe and build row ids, each partition adds run of pairs in order of probe rows. Runs are merged
+ * by position of probe row when order of probe side is to be kept.
+ */
+class HashJoinSpill implements Closeable, Mutable {
+    private final ObjList<RecordSpillFile> masterPartitions;
+    private final ObjList<RecordSpillFile> slavePartitions;
+    private final RecordSpillFile pairs;
+    private final RecordSink masterKeySink;
+    private final RecordSink slaveKeySink;
+    private final RecordSink partitionKeySink;
+    private final Map joinKeyMap;
+    private final LongChain chain;
+    private final KeyHashSink hashSink = new KeyHashSink();
+    private final LongList runs = new LongList();
+    private final SortedRunsRecordCursor runsCursor;
+    private final Record pairRecord;
+    private final int rowIdIndex;
+    private boolean ordered;
+    private long offset;
+
+    HashJoinSpill(
+            CairoConfiguration configuration,
+            @Transient ColumnTypes joinColumnTypes,
+            RecordSink masterKeySink,
+            RecordSink slaveKeySink,
+            RecordSink partitionKeySink,
+            Map joinKeyMap,
+            LongChain chain
+    ) {
+        final int keyCount = joinColumnTypes.getColumnCount();
+        final ArrayColumnTypes partitionTypes = new ArrayColumnTypes();
+        for (int i = 0; i < keyCount; i++) {
+            partitionTypes.add(joinColumnTypes.getColumnType(i));
+        }
+        partitionTypes.add(ColumnType.LONG);
+        partitionTypes.add(ColumnType.LONG);
+
+        final long pageSize = configuration.getSqlHashJoinLightValuePageSize();
+        final int partitionCount = configuration.getSqlHashJoinSpillPartitionCount();
+        this.masterPartitions = new ObjList<>(partitionCount);
+        this.slavePartitions = new ObjList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            masterPartitions.add(new RecordSpillFile(configuration, partitionTypes, masterKeySink, pageSize));
+            slavePartitions.add(new RecordSpillFile(configuration, partitionTypes, slaveKeySink, pageSize));
+        }
+
+        // pair is position and row id of probe row, which are copied from partition record, and row id of build row
+        final ArrayColumnTypes pairTypes = new ArrayColumnTypes();
+        pairTypes.add(ColumnType.LONG);
+        pairTypes.add(ColumnType.LONG);
+        pairTypes.add(ColumnType.LONG);
+        this.pairs = new RecordSpillFile(configuration, pairTypes, (r, w) -> {
+            w.putLong(r.getLong(keyCount));
+            w.putLong(r.getLong(keyCount + 1));
+        }, pageSize);
+        this.pairRecord = pairs.getRecord();
+        this.runsCursor = new SortedRunsRecordCursor(pairs, new PositionComparator());
+        this.masterKeySink = masterKeySink;
+        this.slaveKeySink = slaveKeySink;
+        this.partitionKeySink = partitionKeySink;
+        this.joinKeyMap = joinKeyMap;
+        this.chain = chain;
+        this.rowIdIndex = keyCount + 1;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0, n = masterPartitions.size(); i < n; i++) {
+            masterPartitions.getQuick(i).clear();
+            slavePartitions.getQuick(i).clear();
+        }
+        pairs.clear();
+        runs.clear();
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = masterPartitions.size(); i < n; i++) {
+            masterPartitions.getQuick(i).close();
+            slavePartitions.getQuick(i).close();
+        }
+        pairs.close();
+    }
+
+    /**
+     * Record of current pair, column 1 is row id of probe row and column 2 is row id of build row.
+     *
+     * @return pair record
+     */
+    Record getRecord() {
+        return pairRecord;
+    }
+
+    boolean hasNext() {
+        if (ordered) {
+            return runsCursor.hasNext();
+        }
+
+        if (offset < pairs.size()) {
+            offset = pairs.recordAt(pairRecord, offset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Joins all rows of both cursors. Hash table and chain of join are used to join partitions and are left empty.
+     *
+     * @param masterCursor master cursor
+     * @param slaveCursor  slave cursor
+     * @param swapped      true when master is build side and slave is probe side
+     */
+    void of(RecordCursor masterCursor, RecordCursor slaveCursor, boolean swapped) {
+        clear();
+        partition(masterCursor, masterKeySink, masterPartitions);
+        partition(slaveCursor, slaveKeySink, slavePartitions);
+        if (swapped) {
+            join(masterPartitions, slavePartitions);
+        } else {
+            join(slavePartitions, masterPartitions);
+        }
+        runs.add(pairs.size());
+        pairs.toReadMode();
+
+        // master side is probe side, keep its order
+        this.ordered = !swapped;
+        if (ordered) {
+            runsCursor.of(masterCursor, runs);
+        }
+        toTop();
+    }
+
+    void toTop() {
+        if (ordered) {
+            runsCursor.toTop();
+        } else {
+            offset = 0;
+        }
+    }
+
+    private void join(ObjList<RecordSpillFile> buildPartitions, ObjList<RecordSpillFile> probePartitions) {
+        for (int i = 0, n = buildPartitions.size(); i < n; i++) {
+            final RecordSpillFile build = buildPartitions.getQuick(i);
+            final RecordSpillFile probe = probePartitions.getQuick(i);
+            build.toReadMode();
+            probe.toReadMode();
+
+            joinKeyMap.clear();
+            chain.clear();
+            final Record buildRecord = build.getRecord();
+            for (long o = 0, size = build.size(); o < size; ) {
+                o = build.recordAt(buildRecord, o);
+                final MapKey key = joinKeyMap.withKey();
+                key.put(buildRecord, partitionKeySink);
+                final MapValue value = key.createValue();
+                if (value.isNew()) {
+                    final long offset = chain.put(buildRecord.getLong(rowIdIndex), -1);
+                    value.putLong(0, offset);
+                    value.putLong(1, offset);
+                } else {
+                    value.putLong(1, chain.put(buildRecord.getLong(rowIdIndex), value.getLong(1)));
+                }
+            }
+
+            final long runStart = pairs.size();
+            final Record probeRecord = probe.getRecord();
+            for (long o = 0, size = joinKeyMap.size() > 0 ? probe.size() : 0; o < size; ) {
+                o = probe.recordAt(probeRecord, o);
+                final MapKey key = joinKeyMap.withKey();
+                key.put(probeRecord, partitionKeySink);
+                final MapValue value = key.findValue();
+                if (value != null) {
+                    final LongChain.TreeCursor cursor = chain.getCursor(value.getLong(0));
+                    while (cursor.hasNext()) {
+                        pairs.put(probeRecord);
+                        pairs.putLong(cursor.next());
+                    }
+                }
+            }
+            if (pairs.size() > runStart) {
+                runs.add(runStart);
+            }
+            build.clear();
+            probe.clear();
+        }
+        joinKeyMap.clear();
+        chain.clear();
+    }
+
+    private void partition(RecordCursor cursor, RecordSink keySink, ObjList<RecordSpillFile> partitions) {
+        final Record record = cursor.getRecord();
+        final int partitionCount = partitions.size();
+        long position = 0;
+        cursor.toTop();
+        while (cursor.hasNext()) {
+            hashSink.clear();
+            keySink.copy(record, hashSink);
+            final RecordSpillFile partition = partitions.getQuick(hashSink.partition(partitionCount));
+            partition.put(record);
+            partition.putLong(position++);
+            partition.putLong(record.getRowId());
+        }
+    }
+
+    private static class PositionComparator implements RecordComparator {
+        private long left;
+
+        @Override
+        public int compare(Record record) {
+            return Long.compare(left, record.getLong(0));
+        }
+
+        @Override
+        public void setLeft(Record record) {
+            left = record.getLong(0);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import com.questdb.cairo.sql.*;
 import com.questdb.griffin.engine.functions.bind.BindVariableService;
 import com.questdb.std.Misc;
 import com.questdb.std.Transient;
+import org.jetbrains.annotations.Nullable;
 
 public class HashOuterJoinRecordCursorFactory extends AbstractRecordCursorFactory {
     private final Map joinKeyMap;
@@ -97,7 +98,14 @@ public class HashOuterJoinRecordCursorFactory extends AbstractRecordCursorFactor
         return false;
     }
 
-    static void buildMap(RecordCursor slaveCursor, Record record, Map joinKeyMap, RecordSink slaveKeySink, RecordChain slaveChain) {
+    static void buildMap(
+            RecordCursor slaveCursor,
+            Record record,
+            Map joinKeyMap,
+            RecordSink slaveKeySink,
+            RecordChain slaveChain,
+            @Nullable JoinKeyFilter filter
+    ) {
         joinKeyMap.clear();
         slaveChain.clear();
         while (slaveCursor.hasNext()) {
@@ -108,6 +116,9 @@ public class HashOuterJoinRecordCursorFactory extends AbstractRecordCursorFactor
                 long offset = slaveChain.put(record, -1);
                 value.putLong(0, offset);
                 value.putLong(1, offset);
+                if (filter != null) {
+                    filter.add(record);
+                }
             } else {
                 value.putLong(1, slaveChain.put(record, value.getLong(1)));
             }
@@ -115,7 +126,7 @@ public class HashOuterJoinRecordCursorFactory extends AbstractRecordCursorFactor
     }
 
     private void buildMapOfSlaveRecords(RecordCursor slaveCursor) {
-        buildMap(slaveCursor, slaveCursor.getRecord(), joinKeyMap, slaveKeySink, slaveChain);
+        buildMap(slaveCursor, slaveCursor.getRecord(), joinKeyMap, slaveKeySink, slaveChain, null);
     }
 
     private class HashJoinRecordCursor implements NoRandomAccessRecordCursor {
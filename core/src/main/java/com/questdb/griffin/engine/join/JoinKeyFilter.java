@@ -0,0 +1,165 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.join;
+
+import com.questdb.cairo.KeyHashSink;
+import com.questdb.cairo.RecordSink;
+import com.questdb.cairo.SymbolMapReader;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RecordFilter;
+import com.questdb.cairo.sql.SymbolTable;
+import com.questdb.std.LongList;
+import com.questdb.std.Mutable;
+import com.questdb.std.Numbers;
+
+/**
+ * Filter of probe side rows, which is built together with hash table of join. Rows rejected by filter
+ * have no match in hash table and are skipped without probing it. Single symbol key is filtered exactly
+ * by symbol key of probe side without reading symbol value. Other keys are filtered by bloom filter
+ * of key hash, which lets through small proportion of rows that have no match. Filter is pushed into probe side
+ * cursor when it can apply it while scanning rows.
+ */
+class JoinKeyFilter implements RecordFilter, Mutable {
+    // bloom filter bits per key, two bits are set for each key
+    private static final int BITS_PER_KEY = 8;
+    private final KeyHashSink hashSink = new KeyHashSink();
+    private final LongList bits = new LongList();
+    private final LongList hashes = new LongList();
+    private final RecordSink probeKeySink;
+    private final RecordSink buildKeySink;
+    private final int probeSymbolIndex;
+    private final int buildSymbolIndex;
+    private SymbolTable probeSymbolTable;
+    private boolean acceptNull;
+    private long mask;
+    private boolean enabled;
+
+    /**
+     * @param probeKeySink     copies join key of probe side
+     * @param buildKeySink     copies join key of build side
+     * @param probeSymbolIndex index of symbol key column on probe side or -1 when key is not single symbol
+     * @param buildSymbolIndex index of symbol key column on build side or -1 when key is not single symbol
+     */
+    JoinKeyFilter(RecordSink probeKeySink, RecordSink buildKeySink, int probeSymbolIndex, int buildSymbolIndex) {
+        this.probeKeySink = probeKeySink;
+        this.buildKeySink = buildKeySink;
+        this.probeSymbolIndex = probeSymbolIndex;
+        this.buildSymbolIndex = buildSymbolIndex;
+    }
+
+    @Override
+    public boolean accept(Record probeRecord) {
+        if (!enabled) {
+            return true;
+        }
+
+        if (probeSymbolTable != null) {
+            final int key = probeRecord.getInt(probeSymbolIndex);
+            if (key == SymbolTable.VALUE_IS_NULL) {
+                return acceptNull;
+            }
+            return isSet(key);
+        }
+
+        hashSink.clear();
+        probeKeySink.copy(probeRecord, hashSink);
+        final long hash = hashSink.hash();
+        return isSet((int) (hash & mask)) && isSet((int) ((hash >>> 32) & mask));
+    }
+
+    /**
+     * Adds key of build side row, each distinct key has to be added once.
+     */
+    void add(Record buildRecord) {
+        if (probeSymbolTable != null) {
+            final int key = probeSymbolTable.getQuick(buildRecord.getSym(buildSymbolIndex));
+            // value that is not in symbol table of probe side cannot match any of probe rows
+            if (key == SymbolTable.VALUE_IS_NULL) {
+                acceptNull = true;
+            } else if (key != SymbolTable.VALUE_NOT_FOUND) {
+                set(key);
+            }
+        } else {
+            hashSink.clear();
+            buildKeySink.copy(buildRecord, hashSink);
+            hashes.add(hashSink.hash());
+        }
+    }
+
+    @Override
+    public void clear() {
+        enabled = false;
+        probeSymbolTable = null;
+        acceptNull = false;
+        bits.clear();
+        hashes.clear();
+    }
+
+    /**
+     * Completes filter after keys of all build side rows are added.
+     */
+    void build() {
+        if (probeSymbolTable == null) {
+            final int bitCount = Numbers.ceilPow2(Math.max(64, hashes.size() * BITS_PER_KEY));
+            bits.seed(bitCount >>> 6, 0);
+            mask = bitCount - 1;
+            for (int i = 0, n = hashes.size(); i < n; i++) {
+                final long hash = hashes.getQuick(i);
+                set((int) (hash & mask));
+                set((int) ((hash >>> 32) & mask));
+            }
+            hashes.clear();
+        }
+        enabled = true;
+    }
+
+    private boolean isSet(int bit) {
+        final int word = bit >>> 6;
+        return word < bits.size() && (bits.getQuick(word) & (1L << bit)) != 0;
+    }
+
+    /**
+     * Prepares filter to accept keys of build side rows. Filter is disabled until it is built.
+     */
+    void of(RecordCursor probeCursor) {
+        clear();
+        if (probeSymbolIndex != -1) {
+            // symbol keys can only be looked up in symbol tables of tables
+            final SymbolTable symbolTable = probeCursor.getSymbolTable(probeSymbolIndex);
+            if (symbolTable instanceof SymbolMapReader) {
+                probeSymbolTable = symbolTable;
+            }
+        }
+    }
+
+    private void set(int bit) {
+        final int word = bit >>> 6;
+        if (word >= bits.size()) {
+            bits.seed(bits.size(), word + 1 - bits.size(), 0);
+        }
+        bits.setQuick(word, bits.getQuick(word) | (1L << bit));
+    }
+}
@@ -53,6 +53,13 @@ public class LongChain implements Closeable, Mutable {
         return cursor;
     }
 
+    /**
+     * @return number of bytes taken by values of all chains
+     */
+    public long getUsedMemory() {
+        return valueChain.getAppendOffset();
+    }
+
     public long put(long value, long parentOffset) {
         final long appendOffset = valueChain.getAppendOffset();
         if (parentOffset != -1) {
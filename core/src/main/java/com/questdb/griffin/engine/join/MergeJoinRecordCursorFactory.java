@@ -0,0 +1,196 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.join;
+
+import com.questdb.cairo.AbstractRecordCursorFactory;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.LongList;
+import com.questdb.std.Misc;
+
+/**
+ * Inner join of two cursors on their designated timestamps. Both cursors are expected
+ * to be ordered by timestamp, which allows them to be merged in a single pass without
+ * hashing. Memory is bound by the number of slave rows sharing the same timestamp,
+ * these are remembered by row id and replayed for each master row with that timestamp.
+ */
+public class MergeJoinRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final RecordCursorFactory masterFactory;
+    private final RecordCursorFactory slaveFactory;
+    private final MergeJoinRecordCursor cursor;
+
+    public MergeJoinRecordCursorFactory(
+            RecordMetadata metadata,
+            RecordCursorFactory masterFactory,
+            RecordCursorFactory slaveFactory,
+            int columnSplit
+    ) {
+        super(metadata);
+        this.masterFactory = masterFactory;
+        this.slaveFactory = slaveFactory;
+        this.cursor = new MergeJoinRecordCursor(
+                columnSplit,
+                masterFactory.getMetadata().getTimestampIndex(),
+                slaveFactory.getMetadata().getTimestampIndex()
+        );
+    }
+
+    @Override
+    public void close() {
+        ((JoinRecordMetadata) getMetadata()).close();
+        masterFactory.close();
+        slaveFactory.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        cursor.of(
+                masterFactory.getCursor(bindVariableService),
+                slaveFactory.getCursor(bindVariableService)
+        );
+        return cursor;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return false;
+    }
+
+    private static class MergeJoinRecordCursor implements NoRandomAccessRecordCursor {
+        private final JoinRecord record;
+        private final int columnSplit;
+        private final int masterTimestampIndex;
+        private final int slaveTimestampIndex;
+        private final LongList groupRowIds = new LongList();
+        private RecordCursor masterCursor;
+        private RecordCursor slaveCursor;
+        private Record masterRecord;
+        private Record slaveRecord;
+        private Record groupRecord;
+        private long groupTimestamp;
+        private int groupIndex;
+        private long pendingTimestamp;
+        private boolean pending;
+        private boolean slaveExhausted;
+
+        public MergeJoinRecordCursor(int columnSplit, int masterTimestampIndex, int slaveTimestampIndex) {
+            this.record = new JoinRecord(columnSplit);
+            this.columnSplit = columnSplit;
+            this.masterTimestampIndex = masterTimestampIndex;
+            this.slaveTimestampIndex = slaveTimestampIndex;
+        }
+
+        @Override
+        public void close() {
+            masterCursor = Misc.free(masterCursor);
+            slaveCursor = Misc.free(slaveCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            if (columnIndex < columnSplit) {
+                return masterCursor.getSymbolTable(columnIndex);
+            }
+            return slaveCursor.getSymbolTable(columnIndex - columnSplit);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                if (groupIndex < groupRowIds.size()) {
+                    slaveCursor.recordAt(groupRecord, groupRowIds.getQuick(groupIndex++));
+                    return true;
+                }
+
+                if (!masterCursor.hasNext()) {
+                    return false;
+                }
+
+                final long masterTimestamp = masterRecord.getTimestamp(masterTimestampIndex);
+                if (masterTimestamp != groupTimestamp) {
+                    nextGroup(masterTimestamp);
+                }
+                groupIndex = 0;
+            }
+        }
+
+        @Override
+        public void toTop() {
+            masterCursor.toTop();
+            slaveCursor.toTop();
+            reset();
+        }
+
+        private void nextGroup(long timestamp) {
+            groupRowIds.clear();
+            groupTimestamp = timestamp;
+            while (true) {
+                if (!pending) {
+                    if (slaveExhausted || !slaveCursor.hasNext()) {
+                        slaveExhausted = true;
+                        return;
+                    }
+                    pendingTimestamp = slaveRecord.getTimestamp(slaveTimestampIndex);
+                    pending = true;
+                }
+
+                if (pendingTimestamp > timestamp) {
+                    // slave is ahead of master, hold on to this row for the next group
+                    return;
+                }
+
+                if (pendingTimestamp == timestamp) {
+                    groupRowIds.add(slaveRecord.getRowId());
+                }
+                pending = false;
+            }
+        }
+
+        private void reset() {
+            groupRowIds.clear();
+            groupTimestamp = Long.MIN_VALUE;
+            groupIndex = 0;
+            pending = false;
+            slaveExhausted = false;
+        }
+
+        void of(RecordCursor masterCursor, RecordCursor slaveCursor) {
+            this.masterCursor = masterCursor;
+            this.slaveCursor = slaveCursor;
+            this.masterRecord = masterCursor.getRecord();
+            this.slaveRecord = slaveCursor.getRecord();
+            // slave rows are replayed via separate record, iteration record
+            // is already ahead of the group
+            this.groupRecord = slaveCursor.newRecord();
+            record.of(masterRecord, groupRecord);
+            reset();
+        }
+    }
+}
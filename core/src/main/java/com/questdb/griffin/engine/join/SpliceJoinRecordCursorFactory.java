@@ -0,0 +1,220 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.join;
+
+import com.questdb.cairo.AbstractRecordCursorFactory;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.Misc;
+
+/**
+ * Interleaves two timestamp ordered cursors. Every row of either cursor is returned once, in
+ * timestamp order, paired with the prevailing row of the other cursor. Side that has not produced
+ * any rows yet is null. When timestamps are equal slave row goes first, so rows led by master
+ * see the same slave as ASOF join would.
+ */
+public class SpliceJoinRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final RecordCursorFactory masterFactory;
+    private final RecordCursorFactory slaveFactory;
+    private final SpliceJoinRecordCursor cursor;
+
+    public SpliceJoinRecordCursorFactory(
+            RecordMetadata metadata,
+            RecordCursorFactory masterFactory,
+            RecordCursorFactory slaveFactory,
+            int columnSplit
+    ) {
+        super(metadata);
+        this.masterFactory = masterFactory;
+        this.slaveFactory = slaveFactory;
+        this.cursor = new SpliceJoinRecordCursor(
+                columnSplit,
+                NullRecordFactory.getInstance(masterFactory.getMetadata()),
+                NullRecordFactory.getInstance(slaveFactory.getMetadata()),
+                masterFactory.getMetadata().getTimestampIndex(),
+                slaveFactory.getMetadata().getTimestampIndex()
+        );
+    }
+
+    @Override
+    public void close() {
+        ((JoinRecordMetadata) getMetadata()).close();
+        masterFactory.close();
+        slaveFactory.close();
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        cursor.of(
+                masterFactory.getCursor(bindVariableService),
+                slaveFactory.getCursor(bindVariableService)
+        );
+        return cursor;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return false;
+    }
+
+    private static class SpliceJoinRecordCursor implements NoRandomAccessRecordCursor {
+        private final OuterJoinRecord record;
+        private final Record masterNullRecord;
+        private final int columnSplit;
+        private final int masterTimestampIndex;
+        private final int slaveTimestampIndex;
+        private RecordCursor masterCursor;
+        private RecordCursor slaveCursor;
+        private Record masterRecord;
+        private Record slaveRecord;
+        // rows of one side that are current when other side is returned
+        private Record masterPrevailingRecord;
+        private Record slavePrevailingRecord;
+        private long masterPrevailingRowId;
+        private long slavePrevailingRowId;
+        private boolean masterPrevailingMoved;
+        private boolean slavePrevailingMoved;
+        private long masterTimestamp;
+        private long slaveTimestamp;
+        private boolean masterPending;
+        private boolean slavePending;
+        private boolean masterExhausted;
+        private boolean slaveExhausted;
+
+        public SpliceJoinRecordCursor(
+                int columnSplit,
+                Record masterNullRecord,
+                Record slaveNullRecord,
+                int masterTimestampIndex,
+                int slaveTimestampIndex
+        ) {
+            this.record = new OuterJoinRecord(columnSplit, slaveNullRecord);
+            this.masterNullRecord = masterNullRecord;
+            this.columnSplit = columnSplit;
+            this.masterTimestampIndex = masterTimestampIndex;
+            this.slaveTimestampIndex = slaveTimestampIndex;
+        }
+
+        @Override
+        public void close() {
+            masterCursor = Misc.free(masterCursor);
+            slaveCursor = Misc.free(slaveCursor);
+        }
+
+        @Override
+        public Record getRecord() {
+            return record;
+        }
+
+        @Override
+        public SymbolTable getSymbolTable(int columnIndex) {
+            if (columnIndex < columnSplit) {
+                return masterCursor.getSymbolTable(columnIndex);
+            }
+            return slaveCursor.getSymbolTable(columnIndex - columnSplit);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!masterPending && !masterExhausted) {
+                if (masterCursor.hasNext()) {
+                    masterTimestamp = masterRecord.getTimestamp(masterTimestampIndex);
+                    masterPending = true;
+                } else {
+                    masterExhausted = true;
+                }
+            }
+
+            if (!slavePending && !slaveExhausted) {
+                if (slaveCursor.hasNext()) {
+                    slaveTimestamp = slaveRecord.getTimestamp(slaveTimestampIndex);
+                    slavePending = true;
+                } else {
+                    slaveExhausted = true;
+                }
+            }
+
+            if (masterPending && (!slavePending || masterTimestamp < slaveTimestamp)) {
+                if (slavePrevailingMoved) {
+                    slaveCursor.recordAt(slavePrevailingRecord, slavePrevailingRowId);
+                    slavePrevailingMoved = false;
+                }
+                record.of(masterRecord, slavePrevailingRecord);
+                record.hasSlave(slavePrevailingRowId != -1);
+                masterPrevailingRowId = masterRecord.getRowId();
+                masterPrevailingMoved = true;
+                masterPending = false;
+                return true;
+            }
+
+            if (slavePending) {
+                if (masterPrevailingRowId != -1) {
+                    if (masterPrevailingMoved) {
+                        masterCursor.recordAt(masterPrevailingRecord, masterPrevailingRowId);
+                        masterPrevailingMoved = false;
+                    }
+                    record.of(masterPrevailingRecord, slaveRecord);
+                } else {
+                    record.of(masterNullRecord, slaveRecord);
+                }
+                record.hasSlave(true);
+                slavePrevailingRowId = slaveRecord.getRowId();
+                slavePrevailingMoved = true;
+                slavePending = false;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void toTop() {
+            masterCursor.toTop();
+            slaveCursor.toTop();
+            reset();
+        }
+
+        private void reset() {
+            masterPrevailingRowId = -1;
+            slavePrevailingRowId = -1;
+            masterPrevailingMoved = false;
+            slavePrevailingMoved = false;
+            masterPending = false;
+            slavePending = false;
+            masterExhausted = false;
+            slaveExhausted = false;
+        }
+
+        void of(RecordCursor masterCursor, RecordCursor slaveCursor) {
+            this.masterCursor = masterCursor;
+            this.slaveCursor = slaveCursor;
+            this.masterRecord = masterCursor.getRecord();
+            this.slaveRecord = slaveCursor.getRecord();
+            // iteration records run one row ahead of the prevailing rows
+            this.masterPrevailingRecord = masterCursor.newRecord();
+            this.slavePrevailingRecord = slaveCursor.newRecord();
+            reset();
+        }
+    }
+}
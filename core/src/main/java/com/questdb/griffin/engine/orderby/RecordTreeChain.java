@@ -125,6 +125,13 @@ public class RecordTreeChain implements Closeable, Mutable {
         fix(p);
     }
 
+    /**
+     * @return number of bytes taken by tree and records
+     */
+    public long size() {
+        return mem.size() + recordChain.size();
+    }
+
     private static void setLeft(long blockAddress, long left) {
         Unsafe.getUnsafe().putLong(blockAddress + O_LEFT, left);
     }
@@ -21,75 +21,129 @@
  *
  ******************************************************************************/
 
+
 package com.questdb.griffin.engine.orderby;
 
+import com.questdb.cairo.RecordSpillFile;
 import com.questdb.cairo.sql.DelegatingRecordCursor;
 import com.questdb.cairo.sql.Record;
 import com.questdb.cairo.sql.RecordCursor;
 import com.questdb.cairo.sql.SymbolTable;
+import com.questdb.std.LongList;
+import com.questdb.std.Misc;
 
 class SortedRecordCursor implements DelegatingRecordCursor {
     private final RecordTreeChain chain;
+    private final RecordSpillFile spillFile;
+    private final SortedRunsRecordCursor runsCursor;
+    private final long spillThreshold;
+    // start offsets of sorted runs in spill file
+    private final LongList runs = new LongList();
     private RecordTreeChain.TreeCursor chainCursor;
+    private RecordCursor base;
+    private RecordCursor cursor;
 
-    public SortedRecordCursor(RecordTreeChain chain) {
+    public SortedRecordCursor(RecordTreeChain chain, RecordSpillFile spillFile, RecordComparator comparator, long spillThreshold) {
         this.chain = chain;
+        this.spillFile = spillFile;
+        this.runsCursor = new SortedRunsRecordCursor(spillFile, comparator);
+        this.spillThreshold = spillThreshold;
     }
 
     @Override
     public void close() {
-        chainCursor.close();
+        cursor.close();
         chain.clear();
+        spillFile.clear();
     }
 
     @Override
     public Record getRecord() {
-        return chainCursor.getRecord();
+        return cursor.getRecord();
     }
 
     @Override
     public SymbolTable getSymbolTable(int columnIndex) {
-        return chainCursor.getSymbolTable(columnIndex);
+        return cursor.getSymbolTable(columnIndex);
     }
 
     @Override
     public boolean hasNext() {
-        return chainCursor.hasNext();
+        return cursor.hasNext();
     }
 
     @Override
     public Record newRecord() {
-        return chainCursor.newRecord();
+        return cursor.newRecord();
     }
 
     @Override
     public void recordAt(Record record, long atRowId) {
-        chainCursor.recordAt(record, atRowId);
+        cursor.recordAt(record, atRowId);
     }
 
     @Override
     public void recordAt(long rowId) {
-        chainCursor.recordAt(rowId);
+        cursor.recordAt(rowId);
     }
 
     @Override
     public void toTop() {
-        chainCursor.toTop();
+        cursor.toTop();
     }
 
     @Override
     public void of(RecordCursor base) {
+        this.base = base;
         this.chainCursor = chain.getCursor(base);
         final Record record = base.getRecord();
 
         chain.clear();
+        spillFile.clear();
+        spillFile.setSymbolTableResolver(base);
+        runs.clear();
+
+        boolean empty = true;
         while (base.hasNext()) {
             // Tree chain is liable to re-position record to
             // other rows to do record comparison. We must use our
             // own record instance in case base cursor keeps
             // state in the record it returns.
             chain.put(record);
+            empty = false;
+            if (chain.size() > spillThreshold) {
+                spill();
+                empty = true;
+            }
         }
+
+        if (runs.size() == 0) {
+            chainCursor.toTop();
+            cursor = chainCursor;
+        } else {
+            if (!empty) {
+                spill();
+            }
+            runs.add(spillFile.size());
+            spillFile.toReadMode();
+            runsCursor.of(base, runs);
+            cursor = runsCursor;
+        }
+    }
+
+    void free() {
+        Misc.free(chain);
+        Misc.free(spillFile);
+    }
+
+    // writes records of tree chain to spill file in sort order and empties tree chain for next run
+    private void spill() {
+        runs.add(spillFile.size());
         chainCursor.toTop();
+        final Record chainRecord = chainCursor.getRecord();
+        while (chainCursor.hasNext()) {
+            spillFile.put(chainRecord);
+        }
+        chain.clear();
     }
 }
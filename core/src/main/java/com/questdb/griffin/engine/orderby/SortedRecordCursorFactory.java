@@ -27,6 +27,7 @@ import com.questdb.cairo.AbstractRecordCursorFactory;
 import com.questdb.cairo.CairoConfiguration;
 import com.questdb.cairo.ColumnTypes;
 import com.questdb.cairo.RecordSink;
+import com.questdb.cairo.RecordSpillFile;
 import com.questdb.cairo.sql.RecordCursor;
 import com.questdb.cairo.sql.RecordCursorFactory;
 import com.questdb.cairo.sql.RecordMetadata;
@@ -34,7 +35,6 @@ import com.questdb.griffin.engine.functions.bind.BindVariableService;
 
 public class SortedRecordCursorFactory extends AbstractRecordCursorFactory {
     private final RecordCursorFactory base;
-    private final RecordTreeChain chain;
     private final SortedRecordCursor cursor;
 
     public SortedRecordCursorFactory(
@@ -45,20 +45,25 @@ public class SortedRecordCursorFactory extends AbstractRecordCursorFactory {
             RecordSink recordSink,
             RecordComparator comparator) {
         super(metadata);
-        this.chain = new RecordTreeChain(
+        RecordTreeChain chain = new RecordTreeChain(
                 columnTypes,
                 recordSink,
                 comparator,
                 configuration.getSqlSortKeyPageSize(),
                 configuration.getSqlSortValuePageSize());
+        RecordSpillFile spillFile = new RecordSpillFile(
+                configuration,
+                columnTypes,
+                recordSink,
+                configuration.getSqlSortValuePageSize());
         this.base = base;
-        this.cursor = new SortedRecordCursor(chain);
+        this.cursor = new SortedRecordCursor(chain, spillFile, comparator, configuration.getSqlSortSpillThreshold());
     }
 
     @Override
     public void close() {
         base.close();
-        chain.close();
+        cursor.free();
     }
 
     @Override
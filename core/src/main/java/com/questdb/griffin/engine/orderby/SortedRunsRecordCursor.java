@@ -0,0 +1,175 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.RecordSpillFile;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.SymbolTable;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.ObjList;
+
+/**
+ * Merges sorted runs of spill file. Heap of runs is ordered by current record of each run, ties are
+ * resolved in favour of earlier run, which keeps order of equal records the same as in-memory sort.
+ */
+public class SortedRunsRecordCursor implements RecordCursor {
+    private final RecordSpillFile spillFile;
+    private final RecordComparator comparator;
+    private final Record record;
+    // offset of current record and of record that follows it for each run
+    private final LongList offsets = new LongList();
+    private final LongList nextOffsets = new LongList();
+    private final ObjList<Record> runRecords = new ObjList<>();
+    private final IntList heap = new IntList();
+    private LongList runs;
+    private RecordCursor base;
+
+    public SortedRunsRecordCursor(RecordSpillFile spillFile, RecordComparator comparator) {
+        this.spillFile = spillFile;
+        this.comparator = comparator;
+        this.record = spillFile.getRecord();
+    }
+
+    @Override
+    public void close() {
+        base.close();
+    }
+
+    @Override
+    public Record getRecord() {
+        return record;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (heap.size() == 0) {
+            return false;
+        }
+
+        final int run = heap.getQuick(0);
+        final long next = nextOffsets.getQuick(run);
+        spillFile.recordAt(record, offsets.getQuick(run));
+        if (next < runs.getQuick(run + 1)) {
+            offsets.setQuick(run, next);
+            nextOffsets.setQuick(run, spillFile.recordAt(runRecords.getQuick(run), next));
+        } else {
+            final int last = heap.size() - 1;
+            heap.setQuick(0, heap.getQuick(last));
+            heap.removeIndex(last);
+        }
+        siftDown(0);
+        return true;
+    }
+
+    @Override
+    public Record newRecord() {
+        return spillFile.newRecord();
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        spillFile.recordAt(record, atRowId);
+    }
+
+    @Override
+    public void recordAt(long rowId) {
+        spillFile.recordAt(record, rowId);
+    }
+
+    @Override
+    public void toTop() {
+        heap.clear();
+        for (int i = 0, n = runs.size() - 1; i < n; i++) {
+            final long offset = runs.getQuick(i);
+            offsets.extendAndSet(i, offset);
+            nextOffsets.extendAndSet(i, spillFile.recordAt(runRecords.getQuick(i), offset));
+            heap.add(i);
+            siftUp(i);
+        }
+    }
+
+    /**
+     * @param base cursor records were copied from
+     * @param runs offsets at which runs start in spill file, last offset is end of last run
+     */
+    public void of(RecordCursor base, LongList runs) {
+        this.base = base;
+        this.runs = runs;
+        for (int i = runRecords.size(), n = runs.size() - 1; i < n; i++) {
+            runRecords.add(spillFile.newRecord());
+        }
+        toTop();
+    }
+
+    private boolean isBefore(int runA, int runB) {
+        comparator.setLeft(runRecords.getQuick(runA));
+        final int cmp = comparator.compare(runRecords.getQuick(runB));
+        return cmp < 0 || (cmp == 0 && runA < runB);
+    }
+
+    private void siftDown(int index) {
+        final int size = heap.size();
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size && isBefore(heap.getQuick(child + 1), heap.getQuick(child))) {
+                child++;
+            }
+
+            if (!isBefore(heap.getQuick(child), heap.getQuick(index))) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            final int parent = (index - 1) / 2;
+            if (!isBefore(heap.getQuick(index), heap.getQuick(parent))) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void swap(int i, int j) {
+        final int tmp = heap.getQuick(i);
+        heap.setQuick(i, heap.getQuick(j));
+        heap.setQuick(j, tmp);
+    }
+}
@@ -0,0 +1,221 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.LongList;
+import com.questdb.std.Mutable;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps K records that come first in sort order. Heap stores values, such as row ids, that given cursor
+ * can position record at. Root of the heap is the record that comes last among those kept, it is
+ * replaced when better record arrives. Ties are broken by arrival order the same way tree chains break
+ * them so that top K and full sort return identical rows.
+ */
+public class TopKHeap implements Mutable {
+    private final RecordComparator comparator;
+    // LongTreeChain returns duplicates newest first, RecordTreeChain returns them in order of arrival
+    private final boolean newestFirst;
+    private final LongList values = new LongList();
+    private final LongList sequences = new LongList();
+    private RecordCursor cursor;
+    private Record recordA;
+    private Record recordB;
+    private long limit;
+    private long sequence;
+
+    public TopKHeap(RecordComparator comparator, boolean newestFirst) {
+        this.comparator = comparator;
+        this.newestFirst = newestFirst;
+    }
+
+    /**
+     * Number of rows sorted cursor has to produce for LIMIT clause to return its rows. LIMIT that counts
+     * from the tail of cursor needs all rows.
+     *
+     * @param base                cursor to initialise LIMIT functions with
+     * @param bindVariableService bind variables of the query
+     * @param loFunction          first argument of LIMIT
+     * @param hiFunction          second argument of LIMIT or null when there is no second argument
+     * @return number of rows, Long.MAX_VALUE when all rows are needed
+     */
+    public static long getLimit(
+            RecordCursor base,
+            BindVariableService bindVariableService,
+            Function loFunction,
+            @Nullable Function hiFunction) {
+        loFunction.init(base, bindVariableService);
+        if (hiFunction != null) {
+            hiFunction.init(base, bindVariableService);
+        }
+
+        final long lo = loFunction.getLong(null);
+        if (hiFunction == null) {
+            return lo < 0 ? Long.MAX_VALUE : lo;
+        }
+        final long hi = hiFunction.getLong(null);
+        return lo < 0 || hi < 0 ? Long.MAX_VALUE : hi;
+    }
+
+    /**
+     * Checks if record would make it into the heap. Record is compared to heap root before it is
+     * copied anywhere, most of records of large input are rejected here.
+     *
+     * @param record record of base cursor
+     * @return true when record should be put in the heap
+     */
+    public boolean accepts(Record record) {
+        if (values.size() < limit) {
+            return true;
+        }
+
+        if (limit == 0) {
+            return false;
+        }
+
+        comparator.setLeft(record);
+        cursor.recordAt(recordB, values.getQuick(0));
+        final int cmp = comparator.compare(recordB);
+        // arriving record is newer than any record in the heap
+        return cmp < 0 || (cmp == 0 && newestFirst);
+    }
+
+    @Override
+    public void clear() {
+        values.clear();
+        sequences.clear();
+        sequence = 0;
+    }
+
+    public long get(int index) {
+        return values.getQuick(index);
+    }
+
+    /**
+     * @param cursor  cursor that positions records at values of the heap
+     * @param recordA record of cursor heap can re-position
+     * @param recordB another record of cursor heap can re-position
+     * @param limit   maximum number of values heap keeps
+     */
+    public void of(RecordCursor cursor, Record recordA, Record recordB, long limit) {
+        this.cursor = cursor;
+        this.recordA = recordA;
+        this.recordB = recordB;
+        this.limit = limit;
+    }
+
+    /**
+     * Adds value of record that was accepted, value of heap root is evicted when heap is full.
+     */
+    public void put(long value) {
+        final int size = values.size();
+        if (size < limit) {
+            values.add(value);
+            sequences.add(sequence++);
+            siftUp(size);
+        } else {
+            values.setQuick(0, value);
+            sequences.setQuick(0, sequence++);
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Replaces values without changing order of heap, for example when records are moved.
+     */
+    public void set(int index, long value) {
+        values.setQuick(index, value);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Sorts values in place, first value is first in sort order. Heap is not usable for adding
+     * values after that.
+     */
+    public void sort() {
+        for (int n = values.size() - 1; n > 0; n--) {
+            swap(0, n);
+            siftDown(0, n);
+        }
+    }
+
+    private boolean isAfter(int i, int j) {
+        cursor.recordAt(recordA, values.getQuick(i));
+        comparator.setLeft(recordA);
+        cursor.recordAt(recordB, values.getQuick(j));
+        final int cmp = comparator.compare(recordB);
+        if (cmp != 0) {
+            return cmp > 0;
+        }
+        return newestFirst ? sequences.getQuick(i) < sequences.getQuick(j) : sequences.getQuick(i) > sequences.getQuick(j);
+    }
+
+    private void siftDown(int index, int size) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+
+            if (child + 1 < size && isAfter(child + 1, child)) {
+                child++;
+            }
+
+            if (!isAfter(child, index)) {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            final int parent = (index - 1) / 2;
+            if (!isAfter(index, parent)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void swap(int i, int j) {
+        final long value = values.getQuick(i);
+        values.setQuick(i, values.getQuick(j));
+        values.setQuick(j, value);
+
+        final long seq = sequences.getQuick(i);
+        sequences.setQuick(i, sequences.getQuick(j));
+        sequences.setQuick(j, seq);
+    }
+}
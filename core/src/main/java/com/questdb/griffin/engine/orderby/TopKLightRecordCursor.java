@@ -0,0 +1,108 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.SymbolTable;
+
+class TopKLightRecordCursor implements RecordCursor {
+    private final TopKHeap heap;
+    private RecordCursor base;
+    private Record baseRecord;
+    private Record placeHolderRecordA = null;
+    private Record placeHolderRecordB = null;
+    private int index;
+
+    public TopKLightRecordCursor(RecordComparator comparator) {
+        this.heap = new TopKHeap(comparator, true);
+    }
+
+    @Override
+    public void close() {
+        heap.clear();
+        base.close();
+    }
+
+    @Override
+    public Record getRecord() {
+        return baseRecord;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < heap.size()) {
+            base.recordAt(heap.get(index++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Record newRecord() {
+        return base.newRecord();
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        base.recordAt(record, atRowId);
+    }
+
+    @Override
+    public void recordAt(long rowId) {
+        base.recordAt(rowId);
+    }
+
+    @Override
+    public void toTop() {
+        index = 0;
+    }
+
+    void of(RecordCursor base, long limit) {
+        this.base = base;
+        this.baseRecord = base.getRecord();
+        if (placeHolderRecordA == null) {
+            placeHolderRecordA = base.newRecord();
+            placeHolderRecordB = base.newRecord();
+        }
+
+        heap.clear();
+        // heap re-positions its own records to compare rows,
+        // base cursor may keep state in the record it returns
+        heap.of(base, placeHolderRecordA, placeHolderRecordB, limit);
+        while (base.hasNext()) {
+            if (heap.accepts(baseRecord)) {
+                heap.put(baseRecord.getRowId());
+            }
+        }
+        heap.sort();
+        toTop();
+    }
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.AbstractRecordCursorFactory;
+import com.questdb.cairo.CairoConfiguration;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.Misc;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Sorts row ids of random access cursor when only first rows of sorted cursor are needed. Unlike tree
+ * chain of {@link SortedLightRecordCursorFactory} cursor keeps as many row ids as LIMIT clause asks for.
+ * LIMIT is known only when cursor is created, LIMIT above {@link CairoConfiguration#getSqlSortTopKMaxLimit()}
+ * sorts all row ids the way {@link SortedLightRecordCursorFactory} does.
+ */
+public class TopKLightRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final CairoConfiguration configuration;
+    private final RecordCursorFactory base;
+    private final RecordComparator comparator;
+    private final Function loFunction;
+    private final Function hiFunction;
+    private final TopKLightRecordCursor cursor;
+    // tree chain allocates memory upfront, it is created by first query that needs it
+    private LongTreeChain chain;
+    private SortedLightRecordCursor sortedCursor;
+
+    public TopKLightRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordMetadata metadata,
+            RecordCursorFactory base,
+            RecordComparator comparator,
+            Function loFunction,
+            @Nullable Function hiFunction) {
+        super(metadata);
+        this.configuration = configuration;
+        this.base = base;
+        this.comparator = comparator;
+        this.loFunction = loFunction;
+        this.hiFunction = hiFunction;
+        this.cursor = new TopKLightRecordCursor(comparator);
+    }
+
+    @Override
+    public void close() {
+        base.close();
+        chain = Misc.free(chain);
+        sortedCursor = null;
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        final RecordCursor baseCursor = base.getCursor(bindVariableService);
+        final long limit = TopKHeap.getLimit(baseCursor, bindVariableService, loFunction, hiFunction);
+        if (limit <= configuration.getSqlSortTopKMaxLimit()) {
+            cursor.of(baseCursor, limit);
+            return cursor;
+        }
+
+        if (sortedCursor == null) {
+            chain = new LongTreeChain(configuration.getSqlSortKeyPageSize(), configuration.getSqlSortLightValuePageSize());
+            sortedCursor = new SortedLightRecordCursor(chain, comparator);
+        }
+        sortedCursor.of(baseCursor);
+        return sortedCursor;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return true;
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.ColumnTypes;
+import com.questdb.cairo.RecordChain;
+import com.questdb.cairo.RecordSink;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.SymbolTable;
+import com.questdb.std.Misc;
+
+class TopKRecordCursor implements RecordCursor {
+    // chain is compacted when it has this many times more records than the heap
+    private static final int COMPACTION_FACTOR = 2;
+    private static final int MIN_COMPACTION_SIZE = 1024;
+    private final TopKHeap heap;
+    // evicted records stay in chain until live records are copied to spare chain
+    private RecordChain chain;
+    private RecordChain spareChain;
+    private Record chainRecordA;
+    private Record chainRecordB;
+    private Record spareRecordA;
+    private Record spareRecordB;
+    private RecordCursor base;
+    private int index;
+
+    public TopKRecordCursor(
+            ColumnTypes columnTypes,
+            RecordSink recordSink,
+            RecordComparator comparator,
+            int valuePageSize) {
+        this.heap = new TopKHeap(comparator, false);
+        this.chain = new RecordChain(columnTypes, recordSink, valuePageSize);
+        this.spareChain = new RecordChain(columnTypes, recordSink, valuePageSize);
+        this.chainRecordA = chain.newRecord();
+        this.chainRecordB = chain.newRecord();
+        this.spareRecordA = spareChain.newRecord();
+        this.spareRecordB = spareChain.newRecord();
+    }
+
+    @Override
+    public void close() {
+        heap.clear();
+        chain.clear();
+        spareChain.clear();
+        base.close();
+    }
+
+    @Override
+    public Record getRecord() {
+        return chain.getRecord();
+    }
+
+    @Override
+    public SymbolTable getSymbolTable(int columnIndex) {
+        return base.getSymbolTable(columnIndex);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (index < heap.size()) {
+            chain.recordAt(heap.get(index++));
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Record newRecord() {
+        return chain.newRecord();
+    }
+
+    @Override
+    public void recordAt(Record record, long atRowId) {
+        chain.recordAt(record, atRowId);
+    }
+
+    @Override
+    public void recordAt(long rowId) {
+        chain.recordAt(rowId);
+    }
+
+    @Override
+    public void toTop() {
+        index = 0;
+    }
+
+    void free() {
+        Misc.free(chain);
+        Misc.free(spareChain);
+    }
+
+    void of(RecordCursor base, long limit) {
+        this.base = base;
+        final long compactionSize = limit > Integer.MAX_VALUE ? Long.MAX_VALUE : COMPACTION_FACTOR * Math.max(limit, MIN_COMPACTION_SIZE);
+        final Record record = base.getRecord();
+
+        heap.clear();
+        chain.clear();
+        spareChain.clear();
+        chain.setSymbolTableResolver(base);
+        spareChain.setSymbolTableResolver(base);
+        heap.of(chain, chainRecordA, chainRecordB, limit);
+
+        long chainSize = 0;
+        while (base.hasNext()) {
+            if (heap.accepts(record)) {
+                heap.put(chain.put(record, -1L));
+                if (++chainSize > compactionSize) {
+                    compact(limit);
+                    chainSize = heap.size();
+                }
+            }
+        }
+        heap.sort();
+        toTop();
+    }
+
+    private void compact(long limit) {
+        for (int i = 0, n = heap.size(); i < n; i++) {
+            chain.recordAt(chainRecordA, heap.get(i));
+            heap.set(i, spareChain.put(chainRecordA, -1L));
+        }
+        chain.clear();
+
+        final RecordChain tmpChain = chain;
+        chain = spareChain;
+        spareChain = tmpChain;
+
+        final Record tmpA = chainRecordA;
+        final Record tmpB = chainRecordB;
+        chainRecordA = spareRecordA;
+        chainRecordB = spareRecordB;
+        spareRecordA = tmpA;
+        spareRecordB = tmpB;
+
+        heap.of(chain, chainRecordA, chainRecordB, limit);
+    }
+}
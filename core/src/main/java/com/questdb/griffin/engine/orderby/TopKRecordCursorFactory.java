@@ -0,0 +1,124 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.AbstractRecordCursorFactory;
+import com.questdb.cairo.CairoConfiguration;
+import com.questdb.cairo.ColumnTypes;
+import com.questdb.cairo.RecordSink;
+import com.questdb.cairo.RecordSpillFile;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Copies first rows of sorted cursor when base cursor does not support random access. Records that
+ * cannot make it into LIMIT are not copied, memory is proportional to LIMIT rather than to base cursor.
+ * LIMIT above {@link CairoConfiguration#getSqlSortTopKMaxLimit()} sorts all rows the way
+ * {@link SortedRecordCursorFactory} does, including its spill to disk.
+ */
+public class TopKRecordCursorFactory extends AbstractRecordCursorFactory {
+    private final CairoConfiguration configuration;
+    private final RecordCursorFactory base;
+    private final ColumnTypes columnTypes;
+    private final RecordSink recordSink;
+    private final RecordComparator comparator;
+    private final Function loFunction;
+    private final Function hiFunction;
+    private final TopKRecordCursor cursor;
+    // tree chain allocates memory upfront, it is created by first query that needs it
+    private SortedRecordCursor sortedCursor;
+
+    public TopKRecordCursorFactory(
+            CairoConfiguration configuration,
+            RecordMetadata metadata,
+            RecordCursorFactory base,
+            ColumnTypes columnTypes,
+            RecordSink recordSink,
+            RecordComparator comparator,
+            Function loFunction,
+            @Nullable Function hiFunction) {
+        super(metadata);
+        this.configuration = configuration;
+        this.base = base;
+        this.columnTypes = columnTypes;
+        this.recordSink = recordSink;
+        this.comparator = comparator;
+        this.loFunction = loFunction;
+        this.hiFunction = hiFunction;
+        this.cursor = new TopKRecordCursor(
+                columnTypes,
+                recordSink,
+                comparator,
+                configuration.getSqlSortValuePageSize());
+    }
+
+    @Override
+    public void close() {
+        base.close();
+        cursor.free();
+        if (sortedCursor != null) {
+            sortedCursor.free();
+            sortedCursor = null;
+        }
+    }
+
+    @Override
+    public RecordCursor getCursor(BindVariableService bindVariableService) {
+        final RecordCursor baseCursor = base.getCursor(bindVariableService);
+        final long limit = TopKHeap.getLimit(baseCursor, bindVariableService, loFunction, hiFunction);
+        if (limit <= configuration.getSqlSortTopKMaxLimit()) {
+            cursor.of(baseCursor, limit);
+            return cursor;
+        }
+
+        if (sortedCursor == null) {
+            sortedCursor = new SortedRecordCursor(
+                    new RecordTreeChain(
+                            columnTypes,
+                            recordSink,
+                            comparator,
+                            configuration.getSqlSortKeyPageSize(),
+                            configuration.getSqlSortValuePageSize()),
+                    new RecordSpillFile(
+                            configuration,
+                            columnTypes,
+                            recordSink,
+                            configuration.getSqlSortValuePageSize()),
+                    comparator,
+                    configuration.getSqlSortSpillThreshold());
+        }
+        sortedCursor.of(baseCursor);
+        return sortedCursor;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.table;
+
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.griffin.engine.functions.BooleanFunction;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+
+/**
+ * Base class of filters generated by {@link FilterCompiler}. Generated class implements getBool() by reading
+ * columns of record directly. Interpreted filter function the code was generated from evaluates the same
+ * predicate, it is kept for its life cycle: init, toTop and close are delegated to it.
+ */
+public abstract class CompiledFilter extends BooleanFunction {
+    private Function interpreted;
+
+    public CompiledFilter() {
+        super(0);
+    }
+
+    /**
+     * Equality of double values as "=" function evaluates it, generated code calls this method.
+     */
+    public static boolean eq(double l, double r) {
+        return l != l && r != r || Math.abs(l - r) < 0.0000000001;
+    }
+
+    @Override
+    public void close() {
+        interpreted.close();
+    }
+
+    @Override
+    public int getPosition() {
+        return interpreted.getPosition();
+    }
+
+    @Override
+    public void init(RecordCursor recordCursor, BindVariableService bindVariableService) {
+        interpreted.init(recordCursor, bindVariableService);
+    }
+
+    @Override
+    public boolean isConstant() {
+        return false;
+    }
+
+    @Override
+    public void toTop() {
+        interpreted.toTop();
+    }
+
+    public Function getInterpreted() {
+        return interpreted;
+    }
+
+    CompiledFilter of(Function interpreted) {
+        this.interpreted = interpreted;
+        return this;
+    }
+}
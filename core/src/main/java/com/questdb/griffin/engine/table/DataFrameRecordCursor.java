@@ -31,6 +31,8 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
     private final RowCursorFactory rowCursorFactory;
     private final Function filter;
     private RowCursor rowCursor;
+    // filter pushed by consumer of this cursor
+    private RecordFilter pushedFilter;
 
     public DataFrameRecordCursor(RowCursorFactory rowCursorFactory, @Nullable Function filter) {
         this.rowCursorFactory = rowCursorFactory;
@@ -40,9 +42,13 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
     @Override
     public boolean hasNext() {
         try {
-            if (rowCursor != null && rowCursor.hasNext()) {
-                record.setRecordIndex(rowCursor.next());
-                return true;
+            if (rowCursor != null) {
+                while (rowCursor.hasNext()) {
+                    record.setRecordIndex(rowCursor.next());
+                    if (pushedFilter == null || pushedFilter.accept(record)) {
+                        return true;
+                    }
+                }
             }
             return nextFrame();
         } catch (NoMoreFramesException ignore) {
@@ -50,6 +56,29 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
         }
     }
 
+    @Override
+    public boolean pushFilter(RecordFilter filter) {
+        this.pushedFilter = filter;
+        return true;
+    }
+
+    @Override
+    public long size() {
+        // frames are counted only when all of their rows are returned
+        if (filter != null || pushedFilter != null || !(rowCursorFactory instanceof DataFrameRowCursorFactory)) {
+            return -1;
+        }
+
+        long size = 0;
+        dataFrameCursor.toTop();
+        while (dataFrameCursor.hasNext()) {
+            final DataFrame dataFrame = dataFrameCursor.next();
+            size += dataFrame.getRowHi() - dataFrame.getRowLo();
+        }
+        toTop();
+        return size;
+    }
+
     @Override
     public void toTop() {
         dataFrameCursor.toTop();
@@ -68,6 +97,7 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
         this.record.of(dataFrameCursor.getTableReader());
         this.rowCursorFactory.prepareCursor(dataFrameCursor.getTableReader());
         rowCursor = null;
+        pushedFilter = null;
         if (filter != null) {
             filter.init(this, bindVariableService);
         }
@@ -79,7 +109,15 @@ class DataFrameRecordCursor extends AbstractDataFrameRecordCursor {
             rowCursor = rowCursorFactory.getCursor(dataFrame);
             if (rowCursor.hasNext()) {
                 record.jumpTo(dataFrame.getPartitionIndex(), rowCursor.next());
-                return true;
+                if (pushedFilter == null || pushedFilter.accept(record)) {
+                    return true;
+                }
+                while (rowCursor.hasNext()) {
+                    record.setRecordIndex(rowCursor.next());
+                    if (pushedFilter.accept(record)) {
+                        return true;
+                    }
+                }
             }
         }
         return false;
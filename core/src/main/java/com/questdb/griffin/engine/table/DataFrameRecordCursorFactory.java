@@ -23,13 +23,17 @@
 
 package com.questdb.griffin.engine.table;
 
+import com.questdb.cairo.VectorFilter;
 import com.questdb.cairo.sql.*;
 import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.ObjList;
 import org.jetbrains.annotations.Nullable;
 
-public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorFactory {
+public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorFactory implements DataFrameScanSource {
     private final DataFrameRecordCursor cursor;
     private final Function filter;
+    // cursor returns every row of every data frame
+    private final boolean fullFrames;
 
     public DataFrameRecordCursorFactory(
             RecordMetadata metadata,
@@ -39,6 +43,7 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
         super(metadata, dataFrameCursorFactory);
         this.cursor = new DataFrameRecordCursor(rowCursorFactory, filter);
         this.filter = filter;
+        this.fullFrames = filter == null && rowCursorFactory instanceof DataFrameRowCursorFactory;
     }
 
     @Override
@@ -48,6 +53,21 @@ public class DataFrameRecordCursorFactory extends AbstractDataFrameRecordCursorF
         }
     }
 
+    @Override
+    public DataFrameCursorFactory getScanDataFrameCursorFactory() {
+        return fullFrames ? dataFrameCursorFactory : null;
+    }
+
+    @Override
+    public ObjList<Function> getScanFilters() {
+        return null;
+    }
+
+    @Override
+    public VectorFilter getScanVectorFilter() {
+        return null;
+    }
+
     @Override
     public boolean isRandomAccessCursor() {
         return true;
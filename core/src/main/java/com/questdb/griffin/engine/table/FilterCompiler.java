@@ -0,0 +1,554 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.table;
+
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.griffin.engine.functions.BinaryFunction;
+import com.questdb.griffin.engine.functions.UnaryFunction;
+import com.questdb.griffin.engine.functions.bool.AndFunctionFactory;
+import com.questdb.griffin.engine.functions.bool.NotFunctionFactory;
+import com.questdb.griffin.engine.functions.bool.OrFunctionFactory;
+import com.questdb.griffin.engine.functions.columns.*;
+import com.questdb.griffin.engine.functions.eq.EqDoubleFunctionFactory;
+import com.questdb.griffin.engine.functions.eq.EqIntFunctionFactory;
+import com.questdb.griffin.engine.functions.eq.EqLongFunctionFactory;
+import com.questdb.griffin.engine.functions.gt.GtDoubleFunctionFactory;
+import com.questdb.griffin.engine.functions.lt.LtDoubleCVFunctionFactory;
+import com.questdb.griffin.engine.functions.lt.LtDoubleVCFunctionFactory;
+import com.questdb.griffin.engine.functions.lt.LtDoubleVVFunctionFactory;
+import com.questdb.griffin.model.ExpressionNode;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.*;
+import com.questdb.std.ex.BytecodeException;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Generates byte code of filter function. Generated getBool(Record) reads columns of record directly and
+ * evaluates the predicate with short-circuit branches instead of calling functions of the tree one by one.
+ * <p>
+ * Compiler supports "and", "or", "not", "=" on int, long and double as well as "&lt;" and "&gt;" on double
+ * arguments, where arguments are BYTE, SHORT, INT, LONG, FLOAT and DOUBLE columns or numeric constants.
+ * Filter is walked as both expression and function tree. Function tree tells which overload parser chose,
+ * expression tree tells which columns functions read. When filter has anything else compiler gives up and
+ * filter function is to be interpreted.
+ */
+public class FilterCompiler {
+    private static final Log LOG = LogFactory.getLog(FilterCompiler.class);
+
+    private static final int OP_AND = 1;
+    private static final int OP_OR = 2;
+    private static final int OP_NOT = 3;
+    private static final int OP_EQ_INT = 4;
+    private static final int OP_EQ_LONG = 5;
+    private static final int OP_EQ_DOUBLE = 6;
+    private static final int OP_LT = 7;
+    private static final int OP_GT = 8;
+    // factories of "<" with one constant argument keep constant to themselves
+    private static final int OP_LT_VC = 9;
+    private static final int OP_LT_CV = 10;
+
+    private static final int OPERAND_COLUMN = 0;
+    private static final int OPERAND_ICONST = 1;
+    private static final int OPERAND_LDC = 2;
+    private static final int OPERAND_LDC_INT = 3;
+
+    private static final ObjIntHashMap<Class<?>> operators = new ObjIntHashMap<>();
+    private static final ObjIntHashMap<Class<?>> columns = new ObjIntHashMap<>();
+
+    private final BytecodeAssembler asm;
+    // node of filter is either operator with child nodes or comparison of two operands
+    private final IntList nodeOperators = new IntList();
+    private final IntList nodeLeft = new IntList();
+    private final IntList nodeRight = new IntList();
+    private final IntList operandKinds = new IntList();
+    private final IntList operandValues = new IntList();
+    private final IntList operandTypes = new IntList();
+    private final IntList getterIndices = new IntList();
+    private final IntList labels = new IntList();
+    private final IntList branches = new IntList();
+    private final IntList branchLabels = new IntList();
+    private final IntList frames = new IntList();
+    private int recordClassIndex;
+
+    public FilterCompiler(BytecodeAssembler asm) {
+        this.asm = asm;
+    }
+
+    /**
+     * Creates instance of compiled filter class.
+     *
+     * @param filterClass class {@link #compile(Function, ExpressionNode, RecordMetadata)} generated
+     * @param filter      function tree the class was generated from, a fresh instance for every filter
+     * @return compiled filter, or the function itself when class is null
+     */
+    public static Function newFilter(@Nullable Class<CompiledFilter> filterClass, Function filter) {
+        if (filterClass == null) {
+            return filter;
+        }
+
+        try {
+            return filterClass.newInstance().of(filter);
+        } catch (Exception e) {
+            LOG.error().$("Failed to create an instance of compiled filter, cause: ").$(e).$();
+            throw BytecodeException.INSTANCE;
+        }
+    }
+
+    /**
+     * Generates filter class.
+     *
+     * @param filter   boolean function parsed from node
+     * @param node     filter expression
+     * @param metadata metadata of records filter is evaluated on, function parser resolved columns against it
+     * @return class of compiled filter or null when filter cannot be compiled
+     */
+    @Nullable
+    public Class<CompiledFilter> compile(Function filter, ExpressionNode node, RecordMetadata metadata) {
+        nodeOperators.clear();
+        nodeLeft.clear();
+        nodeRight.clear();
+        operandKinds.clear();
+        operandValues.clear();
+        operandTypes.clear();
+        // getters are pooled once per column type, operands read types up to DOUBLE
+        getterIndices.setAll(ColumnType.DOUBLE + 1, -1);
+
+        asm.init(CompiledFilter.class);
+        asm.setupPool();
+
+        int stackMapTableIndex = asm.poolUtf8("StackMapTable");
+        int thisClassIndex = asm.poolClass(asm.poolUtf8("questdbasm"));
+        int superclassIndex = asm.poolClass(CompiledFilter.class);
+        int superIndex = asm.poolMethod(superclassIndex, "<init>", "()V");
+        int getBoolNameIndex = asm.poolUtf8("getBool");
+        int getBoolDescIndex = asm.poolUtf8("(Lcom/questdb/cairo/sql/Record;)Z");
+        int eqIndex = asm.poolMethod(superclassIndex, "eq", "(DD)Z");
+        recordClassIndex = asm.poolClass(Record.class);
+
+        final int root = analyseNode(node, filter, metadata);
+        if (root == -1) {
+            return null;
+        }
+
+        asm.finishPool();
+        asm.defineClass(thisClassIndex, superclassIndex);
+        asm.interfaceCount(0);
+        asm.fieldCount(0);
+        asm.methodCount(2);
+        asm.defineDefaultConstructor(superIndex);
+        instrumentGetBoolMethod(stackMapTableIndex, getBoolNameIndex, getBoolDescIndex, eqIndex, root);
+        // class attribute count
+        asm.putShort(0);
+        return asm.loadClass(CompiledFilter.class);
+    }
+
+    private static int getOperandRead(int operator) {
+        switch (operator) {
+            case OP_EQ_INT:
+                return ColumnType.INT;
+            case OP_EQ_LONG:
+                return ColumnType.LONG;
+            default:
+                return ColumnType.DOUBLE;
+        }
+    }
+
+    private static String getSignature(int columnType) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+                return "B";
+            case ColumnType.SHORT:
+                return "S";
+            case ColumnType.INT:
+                return "I";
+            case ColumnType.LONG:
+                return "J";
+            case ColumnType.FLOAT:
+                return "F";
+            default:
+                return "D";
+        }
+    }
+
+    private static boolean isReadable(int columnType, int read) {
+        switch (columnType) {
+            case ColumnType.BYTE:
+            case ColumnType.SHORT:
+            case ColumnType.INT:
+                return true;
+            case ColumnType.LONG:
+                return read != ColumnType.INT;
+            case ColumnType.FLOAT:
+            case ColumnType.DOUBLE:
+                return read == ColumnType.DOUBLE;
+            default:
+                return false;
+        }
+    }
+
+    private int addNode(int operator, int left, int right) {
+        if (left == -1 || right == -1) {
+            return -1;
+        }
+        nodeOperators.add(operator);
+        nodeLeft.add(left);
+        nodeRight.add(right);
+        return nodeOperators.size() - 1;
+    }
+
+    private int addOperand(int kind, int value, int type) {
+        operandKinds.add(kind);
+        operandValues.add(value);
+        operandTypes.add(type);
+        return operandKinds.size() - 1;
+    }
+
+    private int analyseConstant(ExpressionNode node) {
+        if (node == null || node.type != ExpressionNode.CONSTANT) {
+            return -1;
+        }
+
+        try {
+            return addOperand(OPERAND_LDC, asm.poolDoubleConst(Numbers.parseDouble(node.token)), ColumnType.DOUBLE);
+        } catch (NumericException e) {
+            return -1;
+        }
+    }
+
+    private int analyseNode(ExpressionNode node, Function function, RecordMetadata metadata) {
+        if (node == null) {
+            return -1;
+        }
+
+        final Class<?> factory = function.getClass().getEnclosingClass();
+        final int operator = factory == null ? -1 : operators.get(factory);
+        switch (operator) {
+            case OP_AND:
+            case OP_OR:
+                return addNode(
+                        operator,
+                        analyseNode(node.lhs, ((BinaryFunction) function).getLeft(), metadata),
+                        analyseNode(node.rhs, ((BinaryFunction) function).getRight(), metadata)
+                );
+            case OP_NOT:
+                // unary operator keeps its argument on the right
+                return addNode(operator, analyseNode(node.rhs, ((UnaryFunction) function).getArg(), metadata), 0);
+            case OP_EQ_INT:
+            case OP_EQ_LONG:
+            case OP_EQ_DOUBLE:
+            case OP_LT:
+            case OP_GT:
+                final int read = getOperandRead(operator);
+                return addNode(
+                        operator,
+                        analyseOperand(node.lhs, ((BinaryFunction) function).getLeft(), metadata, read),
+                        analyseOperand(node.rhs, ((BinaryFunction) function).getRight(), metadata, read)
+                );
+            case OP_LT_VC:
+                return addNode(
+                        OP_LT,
+                        analyseOperand(node.lhs, ((UnaryFunction) function).getArg(), metadata, ColumnType.DOUBLE),
+                        analyseConstant(node.rhs)
+                );
+            case OP_LT_CV:
+                return addNode(
+                        OP_LT,
+                        analyseConstant(node.lhs),
+                        analyseOperand(node.rhs, ((UnaryFunction) function).getArg(), metadata, ColumnType.DOUBLE)
+                );
+            default:
+                return -1;
+        }
+    }
+
+    private int analyseOperand(ExpressionNode node, Function function, RecordMetadata metadata, int read) {
+        if (node == null) {
+            return -1;
+        }
+
+        if (function.isConstant()) {
+            switch (read) {
+                case ColumnType.INT:
+                    final int value = function.getInt(null);
+                    if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                        return addOperand(OPERAND_ICONST, value, read);
+                    }
+                    return addOperand(OPERAND_LDC_INT, asm.poolLongConst(value), read);
+                case ColumnType.LONG:
+                    return addOperand(OPERAND_LDC, asm.poolLongConst(function.getLong(null)), read);
+                default:
+                    return addOperand(OPERAND_LDC, asm.poolDoubleConst(function.getDouble(null)), read);
+            }
+        }
+
+        if (node.type != ExpressionNode.LITERAL) {
+            return -1;
+        }
+
+        final int columnIndex = metadata.getColumnIndexQuiet(node.token);
+        if (columnIndex == -1) {
+            return -1;
+        }
+
+        final int columnType = metadata.getColumnType(columnIndex);
+        // make sure function is the column expression names rather than something that reads it
+        if (!isReadable(columnType, read) || columns.get(function.getClass()) != columnType) {
+            return -1;
+        }
+
+        if (getterIndices.getQuick(columnType) == -1) {
+            final String getter;
+            switch (columnType) {
+                case ColumnType.BYTE:
+                    getter = "getByte";
+                    break;
+                case ColumnType.SHORT:
+                    getter = "getShort";
+                    break;
+                case ColumnType.INT:
+                    getter = "getInt";
+                    break;
+                case ColumnType.LONG:
+                    getter = "getLong";
+                    break;
+                case ColumnType.FLOAT:
+                    getter = "getFloat";
+                    break;
+                default:
+                    getter = "getDouble";
+                    break;
+            }
+            getterIndices.setQuick(columnType, asm.poolInterfaceMethod(recordClassIndex, getter, "(I)" + getSignature(columnType)));
+        }
+        return addOperand(OPERAND_COLUMN, columnIndex, columnType);
+    }
+
+    private void branch(int branch, int label) {
+        branches.add(branch);
+        branchLabels.add(label);
+    }
+
+    /*
+     * getBool(Record)
+     *
+     * Filter is generated as chain of conditional jumps to "false" label, every condition jumps when its
+     * node is false. Values are not cached, record getters are cheap and most filters read column once:
+     *
+     * aload_1
+     * iconst column
+     * invokeinterface getter
+     * ...
+     * ifXX FALSE
+     * iconst_1
+     * ireturn
+     * FALSE:
+     * iconst_0
+     * ireturn
+     */
+    private void instrumentGetBoolMethod(int stackMapTableIndex, int nameIndex, int descIndex, int eqIndex, int root) {
+        labels.clear();
+        branches.clear();
+        branchLabels.clear();
+        frames.clear();
+
+        asm.startMethod(nameIndex, descIndex, 6, 2);
+        final int falseLabel = newLabel();
+        instrumentNode(root, false, falseLabel, eqIndex);
+        asm.iconst(1);
+        asm.ireturn();
+        placeLabel(falseLabel);
+        asm.iconst(0);
+        asm.ireturn();
+
+        for (int i = 0, n = branches.size(); i < n; i++) {
+            asm.setJmp(branches.getQuick(i), labels.getQuick(branchLabels.getQuick(i)));
+        }
+
+        asm.endMethodCode();
+        // exceptions
+        asm.putShort(0);
+
+        // every label is a branch target, jvm requires stack map frame for each of them
+        // frames are ordered by position and several labels can share position
+        for (int i = 0, n = labels.size(); i < n; i++) {
+            final int p = labels.getQuick(i);
+            final int index = frames.binarySearch(p);
+            if (index < 0) {
+                frames.add(-index - 1, p);
+            }
+        }
+
+        // attributes: 1 - StackMapTable
+        asm.putShort(1);
+        asm.startStackMapTables(stackMapTableIndex, frames.size());
+        int prev = asm.getCodeStart() - 1;
+        for (int i = 0, n = frames.size(); i < n; i++) {
+            final int p = frames.getQuick(i);
+            // frames do not change locals and leave empty stack
+            asm.same_frame(p - prev - 1);
+            prev = p;
+        }
+        asm.endStackMapTables();
+        asm.endMethod();
+    }
+
+    private void instrumentNode(int node, boolean jumpIf, int label, int eqIndex) {
+        final int left = nodeLeft.getQuick(node);
+        final int right = nodeRight.getQuick(node);
+        switch (nodeOperators.getQuick(node)) {
+            case OP_AND:
+                if (jumpIf) {
+                    final int skip = newLabel();
+                    instrumentNode(left, false, skip, eqIndex);
+                    instrumentNode(right, true, label, eqIndex);
+                    placeLabel(skip);
+                } else {
+                    instrumentNode(left, false, label, eqIndex);
+                    instrumentNode(right, false, label, eqIndex);
+                }
+                break;
+            case OP_OR:
+                if (jumpIf) {
+                    instrumentNode(left, true, label, eqIndex);
+                    instrumentNode(right, true, label, eqIndex);
+                } else {
+                    final int skip = newLabel();
+                    instrumentNode(left, true, skip, eqIndex);
+                    instrumentNode(right, false, label, eqIndex);
+                    placeLabel(skip);
+                }
+                break;
+            case OP_NOT:
+                instrumentNode(left, !jumpIf, label, eqIndex);
+                break;
+            case OP_EQ_INT:
+                instrumentOperand(left, ColumnType.INT);
+                instrumentOperand(right, ColumnType.INT);
+                branch(jumpIf ? asm.if_icmpeq() : asm.if_icmpne(), label);
+                break;
+            case OP_EQ_LONG:
+                instrumentOperand(left, ColumnType.LONG);
+                instrumentOperand(right, ColumnType.LONG);
+                asm.lcmp();
+                branch(jumpIf ? asm.ifeq() : asm.ifne(), label);
+                break;
+            case OP_EQ_DOUBLE:
+                instrumentOperand(left, ColumnType.DOUBLE);
+                instrumentOperand(right, ColumnType.DOUBLE);
+                asm.invokeStatic(eqIndex);
+                branch(jumpIf ? asm.ifne() : asm.ifeq(), label);
+                break;
+            case OP_LT:
+                // NaN compares as greater, "<" is false when either value is NaN
+                instrumentOperand(left, ColumnType.DOUBLE);
+                instrumentOperand(right, ColumnType.DOUBLE);
+                asm.dcmpg();
+                branch(jumpIf ? asm.iflt() : asm.ifge(), label);
+                break;
+            default:
+                // OP_GT, NaN compares as less
+                instrumentOperand(left, ColumnType.DOUBLE);
+                instrumentOperand(right, ColumnType.DOUBLE);
+                asm.dcmpl();
+                branch(jumpIf ? asm.ifgt() : asm.ifle(), label);
+                break;
+        }
+    }
+
+    private void instrumentOperand(int operand, int read) {
+        final int value = operandValues.getQuick(operand);
+        switch (operandKinds.getQuick(operand)) {
+            case OPERAND_ICONST:
+                asm.iconst(value);
+                break;
+            case OPERAND_LDC_INT:
+                asm.ldc2_w(value);
+                asm.l2i();
+                break;
+            case OPERAND_LDC:
+                asm.ldc2_w(value);
+                break;
+            default:
+                final int columnType = operandTypes.getQuick(operand);
+                asm.aload(1);
+                asm.iconst(value);
+                asm.invokeInterface(getterIndices.getQuick(columnType), 1);
+                // same widening function parser applies to arguments
+                switch (columnType) {
+                    case ColumnType.LONG:
+                        if (read == ColumnType.DOUBLE) {
+                            asm.l2d();
+                        }
+                        break;
+                    case ColumnType.FLOAT:
+                        asm.f2d();
+                        break;
+                    case ColumnType.DOUBLE:
+                        break;
+                    default:
+                        if (read == ColumnType.LONG) {
+                            asm.i2l();
+                        } else if (read == ColumnType.DOUBLE) {
+                            asm.i2d();
+                        }
+                        break;
+                }
+                break;
+        }
+    }
+
+    private int newLabel() {
+        labels.add(-1);
+        return labels.size() - 1;
+    }
+
+    private void placeLabel(int label) {
+        labels.setQuick(label, asm.position());
+    }
+
+    static {
+        operators.put(AndFunctionFactory.class, OP_AND);
+        operators.put(OrFunctionFactory.class, OP_OR);
+        operators.put(NotFunctionFactory.class, OP_NOT);
+        operators.put(EqIntFunctionFactory.class, OP_EQ_INT);
+        operators.put(EqLongFunctionFactory.class, OP_EQ_LONG);
+        operators.put(EqDoubleFunctionFactory.class, OP_EQ_DOUBLE);
+        operators.put(LtDoubleVVFunctionFactory.class, OP_LT);
+        operators.put(GtDoubleFunctionFactory.class, OP_GT);
+        operators.put(LtDoubleVCFunctionFactory.class, OP_LT_VC);
+        operators.put(LtDoubleCVFunctionFactory.class, OP_LT_CV);
+
+        columns.put(ByteColumn.class, ColumnType.BYTE);
+        columns.put(ShortColumn.class, ColumnType.SHORT);
+        columns.put(IntColumn.class, ColumnType.INT);
+        columns.put(LongColumn.class, ColumnType.LONG);
+        columns.put(FloatColumn.class, ColumnType.FLOAT);
+        columns.put(DoubleColumn.class, ColumnType.DOUBLE);
+    }
+}
@@ -26,6 +26,7 @@ package com.questdb.griffin.engine.table;
 import com.questdb.cairo.sql.Function;
 import com.questdb.cairo.sql.Record;
 import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RecordFilter;
 import com.questdb.cairo.sql.SymbolTable;
 import com.questdb.griffin.engine.functions.bind.BindVariableService;
 
@@ -33,6 +34,8 @@ class FilteredRecordCursor implements RecordCursor {
     private final Function filter;
     private RecordCursor base;
     private Record record;
+    // filter pushed by consumer, which base cursor could not apply
+    private RecordFilter pushedFilter;
 
     public FilteredRecordCursor(Function filter) {
         this.filter = filter;
@@ -56,7 +59,7 @@ class FilteredRecordCursor implements RecordCursor {
     @Override
     public boolean hasNext() {
         while (base.hasNext()) {
-            if (filter.getBool(record)) {
+            if ((pushedFilter == null || pushedFilter.accept(record)) && filter.getBool(record)) {
                 return true;
             }
         }
@@ -68,6 +71,13 @@ class FilteredRecordCursor implements RecordCursor {
         return base.newRecord();
     }
 
+    @Override
+    public boolean pushFilter(RecordFilter filter) {
+        // pushed filter is tested first, base cursor tests it before record reaches this cursor
+        this.pushedFilter = base.pushFilter(filter) ? null : filter;
+        return true;
+    }
+
     @Override
     public void recordAt(Record record, long atRowId) {
         base.recordAt(record, atRowId);
@@ -87,6 +97,7 @@ class FilteredRecordCursor implements RecordCursor {
     void of(RecordCursor base, BindVariableService bindVariableService) {
         this.base = base;
         this.record = base.getRecord();
+        this.pushedFilter = null;
         filter.init(this, bindVariableService);
     }
 }
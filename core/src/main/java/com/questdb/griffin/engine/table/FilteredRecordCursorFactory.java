@@ -23,21 +23,32 @@
 
 package com.questdb.griffin.engine.table;
 
-import com.questdb.cairo.sql.Function;
-import com.questdb.cairo.sql.RecordCursor;
-import com.questdb.cairo.sql.RecordCursorFactory;
-import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.cairo.VectorFilter;
+import com.questdb.cairo.sql.*;
 import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.ObjList;
+import org.jetbrains.annotations.Nullable;
 
-public class FilteredRecordCursorFactory implements RecordCursorFactory {
+public class FilteredRecordCursorFactory implements RecordCursorFactory, DataFrameScanSource {
     private final RecordCursorFactory base;
     private final FilteredRecordCursor cursor;
     private final Function filter;
+    private final ObjList<Function> filters = new ObjList<>(1);
+    private final VectorFilter vectorFilter;
 
     public FilteredRecordCursorFactory(RecordCursorFactory base, Function filter) {
+        this(base, filter, null);
+    }
+
+    /**
+     * @param vectorFilter filter that selects the same rows on page frames or null
+     */
+    public FilteredRecordCursorFactory(RecordCursorFactory base, Function filter, @Nullable VectorFilter vectorFilter) {
         this.base = base;
         this.cursor = new FilteredRecordCursor(filter);
         this.filter = filter;
+        this.filters.add(filter);
+        this.vectorFilter = vectorFilter;
     }
 
     @Override
@@ -53,6 +64,25 @@ public class FilteredRecordCursorFactory implements RecordCursorFactory {
         return this.cursor;
     }
 
+    @Override
+    public DataFrameCursorFactory getScanDataFrameCursorFactory() {
+        // filter applies to rows of base, base has to return all rows of its data frames
+        if (base instanceof DataFrameScanSource && ((DataFrameScanSource) base).getScanFilters() == null) {
+            return ((DataFrameScanSource) base).getScanDataFrameCursorFactory();
+        }
+        return null;
+    }
+
+    @Override
+    public ObjList<Function> getScanFilters() {
+        return filters;
+    }
+
+    @Override
+    public VectorFilter getScanVectorFilter() {
+        return vectorFilter;
+    }
+
     @Override
     public RecordMetadata getMetadata() {
         return base.getMetadata();
@@ -0,0 +1,248 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.table;
+
+import com.questdb.cairo.CairoException;
+import com.questdb.cairo.DataFrameDispatcher;
+import com.questdb.cairo.DataFrameLane;
+import com.questdb.cairo.TableReader;
+import com.questdb.cairo.TableReaderRecord;
+import com.questdb.cairo.sql.CairoEngine;
+import com.questdb.cairo.sql.DataFrame;
+import com.questdb.cairo.sql.DataFrameCursor;
+import com.questdb.cairo.sql.Function;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.log.Log;
+import com.questdb.log.LogFactory;
+import com.questdb.std.LongList;
+import com.questdb.std.Misc;
+import com.questdb.std.ObjList;
+
+/**
+ * Evaluates filter on batches of data frames in parallel and returns matching rows in order of frames.
+ * Each lane reads table through its own reader and filter instance, readers and functions are not
+ * thread-safe. Lanes other than the first take readers from the engine, those are used only when they
+ * are at the same transaction as the reader of data frame cursor.
+ */
+class ParallelFilteredRecordCursor extends AbstractDataFrameRecordCursor {
+    private static final Log LOG = LogFactory.getLog(ParallelFilteredRecordCursor.class);
+    private final CairoEngine engine;
+    private final String tableName;
+    private final long tableVersion;
+    private final DataFrameDispatcher dispatcher;
+    private final int frameRowCount;
+    private final ObjList<FilterLane> lanes = new ObjList<>();
+    // partition index, row lo and row hi of each frame in the batch
+    private final LongList frames = new LongList();
+    private final ObjList<LongList> frameRows = new ObjList<>();
+    private final int batchFrameCount;
+    private int laneCount = 0;
+    private int frameCount = 0;
+    private int frameIndex = 0;
+    private LongList rows;
+    private int rowIndex = 0;
+    private int rowCount = 0;
+    // remainder of data frame that did not fit previous batch
+    private int splitPartitionIndex;
+    private long splitLo = 0;
+    private long splitHi = 0;
+
+    public ParallelFilteredRecordCursor(
+            CairoEngine engine,
+            String tableName,
+            long tableVersion,
+            ObjList<Function> filters,
+            DataFrameDispatcher dispatcher,
+            int frameRowCount
+    ) {
+        this.engine = engine;
+        this.tableName = tableName;
+        this.tableVersion = tableVersion;
+        this.dispatcher = dispatcher;
+        this.frameRowCount = frameRowCount;
+        for (int i = 0, n = filters.size(); i < n; i++) {
+            lanes.add(new FilterLane(filters.getQuick(i)));
+        }
+        // twice as many frames as lanes evens out lanes that are slow to start
+        this.batchFrameCount = 2 * filters.size();
+    }
+
+    @Override
+    public void close() {
+        releaseLanes();
+        super.close();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (rowIndex == rowCount) {
+            if (++frameIndex >= frameCount) {
+                if (!nextBatch()) {
+                    return false;
+                }
+                frameIndex = 0;
+            }
+            rows = frameRows.getQuick(frameIndex);
+            rowIndex = 0;
+            rowCount = rows.size();
+            record.jumpTo((int) frames.getQuick(frameIndex * 3), 0);
+        }
+        record.setRecordIndex(rows.getQuick(rowIndex++));
+        return true;
+    }
+
+    @Override
+    public void toTop() {
+        dataFrameCursor.toTop();
+        resetBatch();
+        for (int i = 0; i < laneCount; i++) {
+            lanes.getQuick(i).filter.toTop();
+        }
+    }
+
+    @Override
+    void of(DataFrameCursor dataFrameCursor, BindVariableService bindVariableService) {
+        if (this.dataFrameCursor != dataFrameCursor) {
+            close();
+            this.dataFrameCursor = dataFrameCursor;
+        } else {
+            releaseLanes();
+        }
+        final TableReader reader = dataFrameCursor.getTableReader();
+        this.record.of(reader);
+
+        final FilterLane first = lanes.getQuick(0);
+        first.of(reader);
+        first.filter.init(this, bindVariableService);
+        laneCount = 1;
+
+        for (int i = 1, n = lanes.size(); i < n; i++) {
+            final TableReader laneReader;
+            try {
+                laneReader = engine.getReader(tableName, tableVersion);
+            } catch (CairoException e) {
+                LOG.info().$("no reader for lane [table=").$(tableName).$(", lane=").$(i).$(']').$();
+                break;
+            }
+
+            if (laneReader.getTxn() != reader.getTxn()) {
+                // table has changed in the meantime, frames of this cursor may not be valid for lane reader
+                laneReader.close();
+                break;
+            }
+
+            final FilterLane lane = lanes.getQuick(i);
+            lane.of(laneReader);
+            lane.filter.init(laneReader.getCursor(), bindVariableService);
+            laneCount++;
+        }
+        resetBatch();
+    }
+
+    private boolean nextBatch() {
+        frames.clear();
+        frameCount = 0;
+        while (frameCount < batchFrameCount) {
+            if (splitLo == splitHi) {
+                if (!dataFrameCursor.hasNext()) {
+                    break;
+                }
+                final DataFrame frame = dataFrameCursor.next();
+                splitPartitionIndex = frame.getPartitionIndex();
+                splitLo = frame.getRowLo();
+                splitHi = frame.getRowHi();
+                continue;
+            }
+
+            final long hi = Math.min(splitLo + frameRowCount, splitHi);
+            frames.add(splitPartitionIndex);
+            frames.add(splitLo);
+            frames.add(hi);
+            splitLo = hi;
+            if (frameRows.size() == frameCount) {
+                frameRows.add(new LongList());
+            }
+            frameCount++;
+        }
+
+        if (frameCount == 0) {
+            return false;
+        }
+
+        dispatcher.dispatch(lanes, laneCount, frameCount);
+        return true;
+    }
+
+    private void releaseLanes() {
+        // first lane uses reader of data frame cursor
+        for (int i = 1; i < laneCount; i++) {
+            final FilterLane lane = lanes.getQuick(i);
+            lane.reader = Misc.free(lane.reader);
+        }
+        laneCount = 0;
+    }
+
+    private void resetBatch() {
+        frameCount = 0;
+        frameIndex = 0;
+        rowIndex = 0;
+        rowCount = 0;
+        splitLo = 0;
+        splitHi = 0;
+    }
+
+    private class FilterLane extends DataFrameLane {
+        private final Function filter;
+        private final TableReaderRecord laneRecord = new TableReaderRecord();
+        private TableReader reader;
+
+        private FilterLane(Function filter) {
+            this.filter = filter;
+        }
+
+        @Override
+        protected void process(int frameIndex) {
+            final int partitionIndex = (int) frames.getQuick(frameIndex * 3);
+            final long lo = frames.getQuick(frameIndex * 3 + 1);
+            final long hi = frames.getQuick(frameIndex * 3 + 2);
+            final LongList rows = frameRows.getQuick(frameIndex);
+            rows.clear();
+
+            reader.openPartition(partitionIndex);
+            laneRecord.jumpTo(partitionIndex, lo);
+            for (long row = lo; row < hi; row++) {
+                laneRecord.setRecordIndex(row);
+                if (filter.getBool(laneRecord)) {
+                    rows.add(row);
+                }
+            }
+        }
+
+        private void of(TableReader reader) {
+            this.reader = reader;
+            this.laneRecord.of(reader);
+        }
+    }
+}
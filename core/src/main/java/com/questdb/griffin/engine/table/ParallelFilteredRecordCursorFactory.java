@@ -0,0 +1,92 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.table;
+
+import com.questdb.cairo.DataFrameDispatcher;
+import com.questdb.cairo.VectorFilter;
+import com.questdb.cairo.sql.*;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.ObjList;
+import org.jetbrains.annotations.Nullable;
+
+public class ParallelFilteredRecordCursorFactory extends AbstractDataFrameRecordCursorFactory implements DataFrameScanSource {
+    private final ParallelFilteredRecordCursor cursor;
+    private final ObjList<Function> filters;
+    private final VectorFilter vectorFilter;
+
+    /**
+     * @param filters      instances of the same filter, one for calling thread and one for each worker
+     * @param vectorFilter filter that selects the same rows on page frames or null
+     */
+    public ParallelFilteredRecordCursorFactory(
+            RecordMetadata metadata,
+            DataFrameCursorFactory dataFrameCursorFactory,
+            CairoEngine engine,
+            String tableName,
+            long tableVersion,
+            ObjList<Function> filters,
+            DataFrameDispatcher dispatcher,
+            int frameRowCount,
+            @Nullable VectorFilter vectorFilter
+    ) {
+        super(metadata, dataFrameCursorFactory);
+        this.cursor = new ParallelFilteredRecordCursor(engine, tableName, tableVersion, filters, dispatcher, frameRowCount);
+        this.filters = filters;
+        this.vectorFilter = vectorFilter;
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0, n = filters.size(); i < n; i++) {
+            filters.getQuick(i).close();
+        }
+    }
+
+    @Override
+    public DataFrameCursorFactory getScanDataFrameCursorFactory() {
+        return dataFrameCursorFactory;
+    }
+
+    @Override
+    public ObjList<Function> getScanFilters() {
+        return filters;
+    }
+
+    @Override
+    public VectorFilter getScanVectorFilter() {
+        return vectorFilter;
+    }
+
+    @Override
+    public boolean isRandomAccessCursor() {
+        return true;
+    }
+
+    @Override
+    protected RecordCursor getCursorInstance(DataFrameCursor dataFrameCursor, BindVariableService bindVariableService) {
+        cursor.of(dataFrameCursor, bindVariableService);
+        return cursor;
+    }
+}
@@ -75,6 +75,11 @@ class SelectedRecordCursor implements RecordCursor {
         baseCursor.recordAt(rowId);
     }
 
+    @Override
+    public long size() {
+        return baseCursor.size();
+    }
+
     @Override
     public void toTop() {
         baseCursor.toTop();
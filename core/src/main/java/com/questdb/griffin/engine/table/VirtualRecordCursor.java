@@ -76,6 +76,11 @@ class VirtualRecordCursor implements RecordCursor {
         baseCursor.recordAt(rowId);
     }
 
+    @Override
+    public long size() {
+        return baseCursor.size();
+    }
+
     @Override
     public void toTop() {
         baseCursor.toTop();
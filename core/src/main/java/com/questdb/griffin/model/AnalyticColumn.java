@@ -29,9 +29,16 @@ import com.questdb.std.ObjectFactory;
 
 public final class AnalyticColumn extends QueryColumn {
     public final static ObjectFactory<AnalyticColumn> FACTORY = AnalyticColumn::new;
+    public static final int FRAMING_DEFAULT = 0;
+    public static final int FRAMING_ROWS = 1;
+    public static final int FRAMING_RANGE = 2;
+    public static final long UNBOUNDED_PRECEDING = Long.MAX_VALUE;
     private final ObjList<ExpressionNode> partitionBy = new ObjList<>(2);
     private final ObjList<ExpressionNode> orderBy = new ObjList<>(2);
     private final IntList orderByDirection = new IntList(2);
+    private int framingMode = FRAMING_DEFAULT;
+    private long framePreceding = UNBOUNDED_PRECEDING;
+    private int framingPosition;
 
     private AnalyticColumn() {
     }
@@ -47,6 +54,29 @@ public final class AnalyticColumn extends QueryColumn {
         partitionBy.clear();
         orderBy.clear();
         orderByDirection.clear();
+        framingMode = FRAMING_DEFAULT;
+        framePreceding = UNBOUNDED_PRECEDING;
+        framingPosition = 0;
+    }
+
+    /**
+     * @return number of rows (ROWS framing) or distance in units of ORDER BY column (RANGE framing)
+     * frame extends before current row; {@link #UNBOUNDED_PRECEDING} when frame starts at first row of partition
+     */
+    public long getFramePreceding() {
+        return framePreceding;
+    }
+
+    public void setFramePreceding(long framePreceding) {
+        this.framePreceding = framePreceding;
+    }
+
+    public int getFramingMode() {
+        return framingMode;
+    }
+
+    public int getFramingPosition() {
+        return framingPosition;
     }
 
     public ObjList<ExpressionNode> getPartitionBy() {
@@ -61,6 +91,11 @@ public final class AnalyticColumn extends QueryColumn {
         return orderByDirection;
     }
 
+    public void setFraming(int framingMode, int framingPosition) {
+        this.framingMode = framingMode;
+        this.framingPosition = framingPosition;
+    }
+
     @Override
     public AnalyticColumn of(CharSequence alias, ExpressionNode ast) {
         return (AnalyticColumn) super.of(alias, ast);
@@ -38,6 +38,7 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
     public static final int JOIN_OUTER = 2;
     public static final int JOIN_CROSS = 3;
     public static final int JOIN_ASOF = 4;
+    public static final int JOIN_SPLICE = 5;
     public static final String SUB_QUERY_ALIAS_PREFIX = "_xQdbA";
     public static final int SELECT_MODEL_NONE = 0;
     public static final int SELECT_MODEL_CHOOSE = 1;
@@ -75,6 +76,7 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
     private QueryModel nestedModel;
     private ExpressionNode tableName;
     private long tableVersion;
+    private long tableId;
     private Function tableNameFunction;
     private ExpressionNode alias;
     private ExpressionNode latestBy;
@@ -196,6 +198,7 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
         columnToAliasMap.clear();
         tableNameFunction = null;
         tableVersion = -1;
+        tableId = -1;
         columnNames.clear();
         expressionModels.clear();
     }
@@ -425,6 +428,14 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
         this.tableNameFunction = function;
     }
 
+    public long getTableId() {
+        return tableId;
+    }
+
+    public void setTableId(long tableId) {
+        this.tableId = tableId;
+    }
+
     public long getTableVersion() {
         return tableVersion;
     }
@@ -589,6 +600,21 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
                                 }
                             }
                         }
+
+                        if (ac.getFramingMode() != AnalyticColumn.FRAMING_DEFAULT) {
+                            if (partitionBy.size() > 0 || orderBy.size() > 0) {
+                                sink.put(' ');
+                            }
+                            sink.put(ac.getFramingMode() == AnalyticColumn.FRAMING_ROWS ? "rows" : "range").put(" between ");
+                            if (ac.getFramePreceding() == AnalyticColumn.UNBOUNDED_PRECEDING) {
+                                sink.put("unbounded preceding");
+                            } else if (ac.getFramePreceding() == 0) {
+                                sink.put("current row");
+                            } else {
+                                sink.put(ac.getFramePreceding()).put(" preceding");
+                            }
+                            sink.put(" and current row");
+                        }
                         sink.put(')');
                     }
                 } else {
@@ -637,6 +663,9 @@ public class QueryModel implements Mutable, ExecutionModel, AliasTranslator, Sin
                         case JOIN_ASOF:
                             sink.put(" asof join ");
                             break;
+                        case JOIN_SPLICE:
+                            sink.put(" splice join ");
+                            break;
                         case JOIN_CROSS:
                             sink.put(" cross join ");
                             break;
@@ -111,6 +111,14 @@ public class BytecodeAssembler {
         putShort(0x8F);
     }
 
+    public void dcmpg() {
+        putByte(0x98);
+    }
+
+    public void dcmpl() {
+        putByte(0x97);
+    }
+
     public void defineClass(int thisClassIndex) {
         defineClass(thisClassIndex, objectClassIndex);
     }
@@ -261,6 +269,10 @@ public class BytecodeAssembler {
         }
     }
 
+    public int if_icmpeq() {
+        return genericGoto(0x9f);
+    }
+
     public int if_icmpge() {
         return genericGoto(0xa2);
     }
@@ -269,6 +281,26 @@ public class BytecodeAssembler {
         return genericGoto(0xa0);
     }
 
+    public int ifeq() {
+        return genericGoto(0x99);
+    }
+
+    public int ifge() {
+        return genericGoto(0x9c);
+    }
+
+    public int ifgt() {
+        return genericGoto(0x9d);
+    }
+
+    public int ifle() {
+        return genericGoto(0x9e);
+    }
+
+    public int iflt() {
+        return genericGoto(0x9b);
+    }
+
     public int ifne() {
         return genericGoto(0x9a);
     }
@@ -427,6 +459,14 @@ public class BytecodeAssembler {
         return classCache.valueAt(index);
     }
 
+    public int poolDoubleConst(double value) {
+        putByte(0x06);
+        putLong(Double.doubleToRawLongBits(value));
+        int index = poolCount;
+        poolCount += 2;
+        return index;
+    }
+
     public int poolField(int classIndex, int nameAndTypeIndex) {
         return poolRef(0x09, classIndex, nameAndTypeIndex);
     }
@@ -101,6 +101,10 @@ public class DirectLongList implements Mutable, Closeable {
         }
     }
 
+    public long getAddress() {
+        return start;
+    }
+
     public long get(long p) {
         return Unsafe.getUnsafe().getLong(start + (p << 3));
     }
@@ -170,11 +174,12 @@ public class DirectLongList implements Mutable, Closeable {
     }
 
     private void extend(long capacity) {
+        final long oldCapacity = this.capacity;
         long address = Unsafe.malloc(this.capacity = ((capacity << pow2) + CACHE_LINE_SIZE));
         long start = address + (address & (CACHE_LINE_SIZE - 1));
         Unsafe.getUnsafe().copyMemory(this.start, start, limit + onePow2 - this.start);
         if (this.address != 0) {
-            Unsafe.free(this.address, this.capacity);
+            Unsafe.free(this.address, oldCapacity);
         }
         this.pos = this.pos - this.start + start;
         this.limit = start + ((capacity - 1) << pow2);
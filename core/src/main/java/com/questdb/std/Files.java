@@ -27,6 +27,9 @@ import com.questdb.std.str.LPSZ;
 import com.questdb.std.str.Path;
 
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.SyncFailedException;
+import java.lang.reflect.Field;
 import java.nio.charset.Charset;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -49,6 +52,10 @@ public final class Files {
     public static final char SEPARATOR;
 
     static final AtomicLong OPEN_FILE_COUNT = new AtomicLong();
+    // false when native library has been built before fsync was added
+    private static final boolean NATIVE_FSYNC;
+    // handle (Windows) or fd field of java.io.FileDescriptor, syncs files when native fsync is missing
+    private static final Field FD_FIELD;
 
     private Files() {
     } // Prevent construction.
@@ -87,6 +94,20 @@ public final class Files {
 
     public native static long findName(long findPtr);
 
+    /**
+     * Flushes file content and metadata to storage device. Pages of the file mapped into memory
+     * are flushed as well because mappings are shared with OS page cache.
+     *
+     * @param fd file descriptor
+     * @return 0 on success, -1 on failure
+     */
+    public static int fsync(long fd) {
+        if (NATIVE_FSYNC) {
+            return fsync0(fd);
+        }
+        return FD_FIELD != null ? fsyncDescriptor(fd) : -1;
+    }
+
     public native static int findNext(long findPtr);
 
     public native static int findType(long findPtr);
@@ -263,6 +284,49 @@ public final class Files {
         return Unsafe.getUnsafe().getByte(lpsz + len) == 0;
     }
 
+    // Syncs open file via FileDescriptor, which calls fsync() or FlushFileBuffers() on Windows for the
+    // same descriptor. Used only with native library that does not have fsync.
+    private static int fsyncDescriptor(long fd) {
+        final FileDescriptor descriptor = new FileDescriptor();
+        try {
+            if (Os.type == Os.WINDOWS) {
+                FD_FIELD.setLong(descriptor, fd);
+            } else {
+                FD_FIELD.setInt(descriptor, (int) fd);
+            }
+            descriptor.sync();
+            return 0;
+        } catch (IllegalAccessException | SyncFailedException e) {
+            return -1;
+        }
+    }
+
+    private static Field getDescriptorField() {
+        if (NATIVE_FSYNC) {
+            return null;
+        }
+
+        try {
+            Field field = FileDescriptor.class.getDeclaredField(Os.type == Os.WINDOWS ? "handle" : "fd");
+            field.setAccessible(true);
+            return field;
+        } catch (ReflectiveOperationException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static boolean hasNativeFsync() {
+        try {
+            // invalid descriptor, call fails without side effects
+            fsync0(-1);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            return false;
+        }
+    }
+
+    private native static int fsync0(long fd);
+
     private static native int munmap0(long address, long len);
 
     private static native long mmap0(long fd, long len, long offset, int flags);
@@ -296,5 +360,7 @@ public final class Files {
         UTF_8 = Charset.forName("UTF-8");
         PAGE_SIZE = getPageSize();
         SEPARATOR = Os.type == Os.WINDOWS ? '\\' : '/';
+        NATIVE_FSYNC = hasNativeFsync();
+        FD_FIELD = getDescriptorField();
     }
 }
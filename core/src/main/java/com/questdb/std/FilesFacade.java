@@ -47,6 +47,8 @@ public interface FilesFacade {
 
     int findType(long findPtr);
 
+    int fsync(long fd);
+
     long getMapPageSize();
 
     long getOpenFileCount();
@@ -91,6 +91,11 @@ public class FilesFacadeImpl implements FilesFacade {
         return Files.findType(findPtr);
     }
 
+    @Override
+    public int fsync(long fd) {
+        return Files.fsync(fd);
+    }
+
     @Override
     public long getMapPageSize() {
         if (mapPageSize == 0) {
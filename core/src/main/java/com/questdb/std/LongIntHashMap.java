@@ -61,6 +61,7 @@ public class LongIntHashMap implements Mutable {
 
     public final void clear() {
         Arrays.fill(values, noEntryValue);
+        free = (int) (values.length * loadFactor);
     }
 
     public int get(long key) {
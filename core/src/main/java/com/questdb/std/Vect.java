@@ -0,0 +1,546 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.std;
+
+/**
+ * Aggregation kernels over fixed-width values in contiguous memory, such as page of column. Null values, which
+ * are NaN for DOUBLE and FLOAT and {@link Numbers#INT_NaN}, {@link Numbers#LONG_NaN} for INT and LONG, are
+ * skipped. Aggregates of pages without values are null. Sum of INT and FLOAT values is accumulated in LONG and
+ * DOUBLE respectively. TIMESTAMP and DATE values are aggregated as LONG.
+ * <p>
+ * Kernels over whole page run in native code with AVX2 instructions when CPU supports them and with scalar
+ * instructions otherwise. When native library does not have kernels, for example on 32-bit JVM, kernels run in
+ * Java. Selected variants aggregate only values at offsets listed in selection vector, which is array of longs
+ * in memory, and always run in Java.
+ */
+public final class Vect {
+    public static final int INSTRUCTION_SET_JAVA = -1;
+    public static final int INSTRUCTION_SET_SCALAR = 0;
+    public static final int INSTRUCTION_SET_AVX2 = 1;
+    private static final int instructionSet;
+
+    private Vect() {
+    }
+
+    public static long countDouble(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return countDouble0(address, count);
+        }
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (i << 3));
+            if (v == v) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static long countDoubleSelected(long address, long rows, long count) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v == v) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static long countFloat(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return countFloat0(address, count);
+        }
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (i << 2));
+            if (v == v) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static long countFloatSelected(long address, long rows, long count) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v == v) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static long countInt(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return countInt0(address, count);
+        }
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (i << 2));
+            if (v != Numbers.INT_NaN) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static long countIntSelected(long address, long rows, long count) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v != Numbers.INT_NaN) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static long countLong(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return countLong0(address, count);
+        }
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (i << 3));
+            if (v != Numbers.LONG_NaN) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public static long countLongSelected(long address, long rows, long count) {
+        long n = 0;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v != Numbers.LONG_NaN) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @return one of INSTRUCTION_SET_* constants, instruction set of kernels over whole page
+     */
+    public static int getSupportedInstructionSet() {
+        return instructionSet;
+    }
+
+    public static double maxDouble(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return maxDouble0(address, count);
+        }
+        double result = Double.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (i << 3));
+            if (v == v && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static double maxDoubleSelected(long address, long rows, long count) {
+        double result = Double.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v == v && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static float maxFloat(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return maxFloat0(address, count);
+        }
+        float result = Float.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (i << 2));
+            if (v == v && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static float maxFloatSelected(long address, long rows, long count) {
+        float result = Float.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v == v && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static int maxInt(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return maxInt0(address, count);
+        }
+        int result = Numbers.INT_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (i << 2));
+            if (v != Numbers.INT_NaN && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static int maxIntSelected(long address, long rows, long count) {
+        int result = Numbers.INT_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v != Numbers.INT_NaN && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static long maxLong(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return maxLong0(address, count);
+        }
+        long result = Numbers.LONG_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (i << 3));
+            if (v != Numbers.LONG_NaN && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static long maxLongSelected(long address, long rows, long count) {
+        long result = Numbers.LONG_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v != Numbers.LONG_NaN && (!found || v > result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static double minDouble(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return minDouble0(address, count);
+        }
+        double result = Double.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (i << 3));
+            if (v == v && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static double minDoubleSelected(long address, long rows, long count) {
+        double result = Double.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v == v && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static float minFloat(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return minFloat0(address, count);
+        }
+        float result = Float.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (i << 2));
+            if (v == v && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static float minFloatSelected(long address, long rows, long count) {
+        float result = Float.NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v == v && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static int minInt(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return minInt0(address, count);
+        }
+        int result = Numbers.INT_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (i << 2));
+            if (v != Numbers.INT_NaN && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static int minIntSelected(long address, long rows, long count) {
+        int result = Numbers.INT_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v != Numbers.INT_NaN && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static long minLong(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return minLong0(address, count);
+        }
+        long result = Numbers.LONG_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (i << 3));
+            if (v != Numbers.LONG_NaN && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static long minLongSelected(long address, long rows, long count) {
+        long result = Numbers.LONG_NaN;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v != Numbers.LONG_NaN && (!found || v < result)) {
+                result = v;
+                found = true;
+            }
+        }
+        return result;
+    }
+
+    public static double sumDouble(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return sumDouble0(address, count);
+        }
+        double sum = 0.0;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (i << 3));
+            if (v == v) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Double.NaN;
+    }
+
+    public static double sumDoubleSelected(long address, long rows, long count) {
+        double sum = 0.0;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final double v = Unsafe.getUnsafe().getDouble(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v == v) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Double.NaN;
+    }
+
+    public static double sumFloat(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return sumFloat0(address, count);
+        }
+        double sum = 0.0;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (i << 2));
+            if (v == v) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Double.NaN;
+    }
+
+    public static double sumFloatSelected(long address, long rows, long count) {
+        double sum = 0.0;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final float v = Unsafe.getUnsafe().getFloat(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v == v) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Double.NaN;
+    }
+
+    public static long sumInt(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return sumInt0(address, count);
+        }
+        long sum = 0L;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (i << 2));
+            if (v != Numbers.INT_NaN) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Numbers.LONG_NaN;
+    }
+
+    public static long sumIntSelected(long address, long rows, long count) {
+        long sum = 0L;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final int v = Unsafe.getUnsafe().getInt(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 2));
+            if (v != Numbers.INT_NaN) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Numbers.LONG_NaN;
+    }
+
+    public static long sumLong(long address, long count) {
+        if (instructionSet != INSTRUCTION_SET_JAVA) {
+            return sumLong0(address, count);
+        }
+        long sum = 0L;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (i << 3));
+            if (v != Numbers.LONG_NaN) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Numbers.LONG_NaN;
+    }
+
+    public static long sumLongSelected(long address, long rows, long count) {
+        long sum = 0L;
+        boolean found = false;
+        for (long i = 0; i < count; i++) {
+            final long v = Unsafe.getUnsafe().getLong(address + (Unsafe.getUnsafe().getLong(rows + (i << 3)) << 3));
+            if (v != Numbers.LONG_NaN) {
+                sum += v;
+                found = true;
+            }
+        }
+        return found ? sum : Numbers.LONG_NaN;
+    }
+
+    private static native long countDouble0(long address, long count);
+
+    private static native long countFloat0(long address, long count);
+
+    private static native long countInt0(long address, long count);
+
+    private static native long countLong0(long address, long count);
+
+    private static native double maxDouble0(long address, long count);
+
+    private static native float maxFloat0(long address, long count);
+
+    private static native int maxInt0(long address, long count);
+
+    private static native long maxLong0(long address, long count);
+
+    private static native double minDouble0(long address, long count);
+
+    private static native float minFloat0(long address, long count);
+
+    private static native int minInt0(long address, long count);
+
+    private static native long minLong0(long address, long count);
+
+    private static native double sumDouble0(long address, long count);
+
+    private static native double sumFloat0(long address, long count);
+
+    private static native long sumInt0(long address, long count);
+
+    private static native long sumLong0(long address, long count);
+
+    private static native int getSupportedInstructionSet0();
+
+    static {
+        Os.init();
+        int set;
+        try {
+            set = getSupportedInstructionSet0();
+        } catch (UnsatisfiedLinkError e) {
+            set = INSTRUCTION_SET_JAVA;
+        }
+        instructionSet = set;
+    }
+}
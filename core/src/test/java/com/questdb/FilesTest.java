@@ -128,6 +128,20 @@ public class FilesTest {
         }
     }
 
+    @Test
+    public void testFsync() throws Exception {
+        try (Path path = new Path()) {
+            File f = temporaryFolder.newFile();
+            long fd = Files.openRW(path.of(f.getAbsolutePath()).$());
+            try {
+                Assert.assertEquals(0, Files.fsync(fd));
+            } finally {
+                Files.close(fd);
+            }
+            Assert.assertEquals(-1, Files.fsync(fd));
+        }
+    }
+
     @Test
     public void testLastModified() throws IOException, NumericException {
         try (Path path = new Path()) {
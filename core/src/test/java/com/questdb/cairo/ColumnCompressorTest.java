@@ -0,0 +1,184 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.std.FilesFacade;
+import com.questdb.std.FilesFacadeImpl;
+import com.questdb.std.Numbers;
+import com.questdb.std.Rnd;
+import com.questdb.std.str.Path;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ColumnCompressorTest extends AbstractCairoTest {
+    private static final FilesFacade FF = FilesFacadeImpl.INSTANCE;
+    private static final long N = 3 * ColumnCompressor.BLOCK_ROWS + 117;
+    private long compressedSize;
+
+    @Test
+    public void testBoolean() throws Exception {
+        assertCompression(ColumnType.BOOLEAN, (rnd, mem, i) -> mem.putBool(rnd.nextBoolean()));
+    }
+
+    @Test
+    public void testByte() throws Exception {
+        assertCompression(ColumnType.BYTE, (rnd, mem, i) -> mem.putByte(rnd.nextByte()));
+    }
+
+    @Test
+    public void testDouble() throws Exception {
+        assertCompression(ColumnType.DOUBLE, (rnd, mem, i) -> mem.putDouble(i % 1000 == 0 ? Double.NaN : 100 + (i % 7) * 0.25 + rnd.nextDouble()));
+    }
+
+    @Test
+    public void testDoubleRepeated() throws Exception {
+        assertCompression(ColumnType.DOUBLE, (rnd, mem, i) -> mem.putDouble((i / 100) * 0.5));
+        // at least 5x smaller
+        Assert.assertTrue(compressedSize * 5 < N * 8);
+    }
+
+    @Test
+    public void testFloat() throws Exception {
+        assertCompression(ColumnType.FLOAT, (rnd, mem, i) -> mem.putFloat(i % 1000 == 0 ? Float.NaN : rnd.nextFloat()));
+    }
+
+    @Test
+    public void testInt() throws Exception {
+        assertCompression(ColumnType.INT, (rnd, mem, i) -> mem.putInt(i % 1000 == 0 ? Numbers.INT_NaN : rnd.nextInt()));
+    }
+
+    @Test
+    public void testLong() throws Exception {
+        assertCompression(ColumnType.LONG, (rnd, mem, i) -> mem.putLong(i % 1000 == 0 ? Numbers.LONG_NaN : rnd.nextLong()));
+    }
+
+    @Test
+    public void testShort() throws Exception {
+        assertCompression(ColumnType.SHORT, (rnd, mem, i) -> mem.putShort(rnd.nextShort()));
+    }
+
+    @Test
+    public void testSmallSymbolKeys() throws Exception {
+        assertCompression(ColumnType.SYMBOL, (rnd, mem, i) -> mem.putInt(rnd.nextPositiveInt() % 17 - 1));
+        // at least 5x smaller
+        Assert.assertTrue(compressedSize * 5 < N * 4);
+    }
+
+    @Test
+    public void testSingleValue() throws Exception {
+        assertCompression(ColumnType.TIMESTAMP, 1, (rnd, mem, i) -> mem.putLong(1234567L));
+    }
+
+    @Test
+    public void testTimestamp() throws Exception {
+        final long[] timestamp = {1514764800000000L};
+        assertCompression(ColumnType.TIMESTAMP, (rnd, mem, i) -> mem.putLong(timestamp[0] += 1000000 + (i % 10 == 0 ? rnd.nextPositiveInt() % 1000 : 0)));
+        // at least 5x smaller
+        Assert.assertTrue(compressedSize * 5 < N * 8);
+    }
+
+    private void assertCompression(int type, ValueGenerator generator) throws Exception {
+        assertCompression(type, N, generator);
+    }
+
+    private void assertCompression(int type, long count, ValueGenerator generator) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final int shl = ColumnType.pow2SizeOf(type);
+            try (Path path = new Path()) {
+                final Rnd rnd = new Rnd();
+                try (AppendMemory mem = new AppendMemory(FF, path.of(root).concat("x.d").$(), FF.getPageSize())) {
+                    for (long i = 0; i < count; i++) {
+                        generator.put(rnd, mem, i);
+                    }
+                }
+
+                final long size = count << shl;
+                try (
+                        ReadOnlyMemory src = new ReadOnlyMemory(FF, path.of(root).concat("x.d").$(), FF.getPageSize(), size);
+                        AppendMemory dst = new AppendMemory(FF, path.of(root).concat("x.dz").$(), FF.getPageSize())
+                ) {
+                    ColumnCompressor.compress(src, count, type, dst);
+                }
+
+                try (
+                        ReadOnlyMemory expected = new ReadOnlyMemory(FF, path.of(root).concat("x.d").$(), FF.getPageSize(), size);
+                        CompressedColumn actual = new CompressedColumn(FF, path.of(root).concat("x.dz").$(), FF.getPageSize())
+                ) {
+                    Assert.assertEquals(count, actual.getRowCount());
+                    compressedSize = FF.length(path);
+
+                    for (long i = 0; i < count; i++) {
+                        assertValue(expected, actual, shl, i);
+                    }
+
+                    // random access across blocks
+                    for (int i = 0; i < 1000; i++) {
+                        assertValue(expected, actual, shl, rnd.nextPositiveLong() % count);
+                    }
+                }
+
+                try (
+                        ReadOnlyMemory src = new ReadOnlyMemory(FF, path.of(root).concat("x.dz").$(), FF.getPageSize(), FF.length(path));
+                        AppendMemory dst = new AppendMemory(FF, path.of(root).concat("y.d").$(), FF.getPageSize())
+                ) {
+                    ColumnCompressor.decompress(src, src.size(), dst);
+                }
+
+                try (
+                        ReadOnlyMemory expected = new ReadOnlyMemory(FF, path.of(root).concat("x.d").$(), FF.getPageSize(), size);
+                        ReadOnlyMemory actual = new ReadOnlyMemory(FF, path.of(root).concat("y.d").$(), FF.getPageSize(), size)
+                ) {
+                    Assert.assertEquals(size, FF.length(path));
+                    for (long i = 0; i < count; i++) {
+                        assertValue(expected, actual, shl, i);
+                    }
+                }
+            }
+        });
+    }
+
+    private void assertValue(ReadOnlyColumn expected, ReadOnlyColumn actual, int shl, long row) {
+        switch (shl) {
+            case 0:
+                Assert.assertEquals(expected.getByte(row), actual.getByte(row));
+                break;
+            case 1:
+                Assert.assertEquals(expected.getShort(row * 2), actual.getShort(row * 2));
+                break;
+            case 2:
+                Assert.assertEquals(expected.getInt(row * 4), actual.getInt(row * 4));
+                break;
+            default:
+                Assert.assertEquals(expected.getLong(row * 8), actual.getLong(row * 8));
+                break;
+        }
+    }
+
+    @FunctionalInterface
+    private interface ValueGenerator {
+        void put(Rnd rnd, AppendMemory mem, long index);
+    }
+}
@@ -0,0 +1,54 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.std.ObjList;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DataFrameDispatcherTest {
+
+    @Test
+    public void testLaneFailureKeepsErrno() {
+        final DataFrameDispatcher dispatcher = new DataFrameDispatcher(null);
+        final ObjList<DataFrameLane> lanes = new ObjList<>();
+        lanes.add(new DataFrameLane() {
+            @Override
+            protected void process(int frameIndex) {
+                if (frameIndex == 2) {
+                    throw CairoException.instance(5).put("could not read [fd=").put(frameIndex).put(']');
+                }
+            }
+        });
+
+        try {
+            dispatcher.dispatch(lanes, 1, 4);
+            Assert.fail();
+        } catch (CairoException e) {
+            Assert.assertEquals(5, e.getErrno());
+            Assert.assertEquals("[5] could not read [fd=2]", e.getMessage());
+        }
+    }
+}
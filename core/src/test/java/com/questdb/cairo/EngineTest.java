@@ -97,6 +97,26 @@ public class EngineTest extends AbstractCairoTest {
                     jobs.add(job);
                 }
 
+                @Override
+                public Sequence getDataFrameLanePubSequence() {
+                    return null;
+                }
+
+                @Override
+                public RingQueue<DataFrameLaneEntry> getDataFrameLaneQueue() {
+                    return null;
+                }
+
+                @Override
+                public Sequence getDataFrameLaneSubSequence() {
+                    return null;
+                }
+
+                @Override
+                public GroupCommit getGroupCommit() {
+                    return null;
+                }
+
                 @Override
                 public Sequence getIndexerPubSequence() {
                     return null;
@@ -111,6 +131,11 @@ public class EngineTest extends AbstractCairoTest {
                 public Sequence getIndexerSubSequence() {
                     return null;
                 }
+
+                @Override
+                public int getWorkerCount() {
+                    return 0;
+                }
             }
 
             MyListener listener = new MyListener();
@@ -122,7 +147,7 @@ public class EngineTest extends AbstractCairoTest {
                 assertWriter(engine, "x");
                 assertReader(engine, "x");
 
-                Assert.assertEquals(2, workScheduler.jobs.size());
+                Assert.assertEquals(4, workScheduler.jobs.size());
 
                 Job job = workScheduler.jobs.get(0);
                 Assert.assertNotNull(job);
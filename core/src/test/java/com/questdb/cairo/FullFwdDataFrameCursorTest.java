@@ -2251,6 +2251,26 @@ public class FullFwdDataFrameCursorTest extends AbstractCairoTest {
             jobs.add(job);
         }
 
+        @Override
+        public Sequence getDataFrameLanePubSequence() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<DataFrameLaneEntry> getDataFrameLaneQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getDataFrameLaneSubSequence() {
+            return null;
+        }
+
+        @Override
+        public GroupCommit getGroupCommit() {
+            return null;
+        }
+
         @Override
         public Sequence getIndexerPubSequence() {
             return pubSeq;
@@ -2266,6 +2286,11 @@ public class FullFwdDataFrameCursorTest extends AbstractCairoTest {
             return subSeq;
         }
 
+        @Override
+        public int getWorkerCount() {
+            return nWorkers;
+        }
+
         void halt() throws InterruptedException {
             if (active) {
                 for (int i = 0; i < nWorkers; i++) {
@@ -0,0 +1,454 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.mp.Job;
+import com.questdb.mp.RingQueue;
+import com.questdb.mp.Sequence;
+import com.questdb.std.*;
+import com.questdb.std.microtime.Dates;
+import com.questdb.std.microtime.MicrosecondClock;
+import com.questdb.std.str.LPSZ;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GroupCommitTest extends AbstractCairoTest {
+
+    @Test
+    public void testAsyncCommitFlushedByJob() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            CountingFacade ff = new CountingFacade();
+            MutableClock clock = new MutableClock();
+            CairoConfiguration configuration = new Configuration(ff, CommitMode.ASYNC, 1000) {
+                @Override
+                public MicrosecondClock getMicrosecondClock() {
+                    return clock;
+                }
+            };
+            GroupCommit groupCommit = new GroupCommit(configuration);
+            Scheduler scheduler = new Scheduler(groupCommit);
+            GroupCommitJob job = new GroupCommitJob(scheduler);
+            try (TableWriter writer = new TableWriter(configuration, "x", scheduler)) {
+                appendRows(writer, 10);
+                writer.commit();
+                Assert.assertFalse(job.run());
+                Assert.assertEquals(0, ff.count);
+
+                clock.ticks += 1000;
+                Assert.assertTrue(job.run());
+                Assert.assertTrue(ff.count > 0);
+                Assert.assertFalse(job.run());
+
+                final int count = ff.count;
+                writer.close();
+                Assert.assertEquals(count, ff.count);
+            }
+        });
+    }
+
+    @Test
+    public void testAsyncCommitFlushedOnClose() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            CountingFacade ff = new CountingFacade();
+            CairoConfiguration configuration = new Configuration(ff, CommitMode.ASYNC, 1000);
+            GroupCommit groupCommit = new GroupCommit(configuration);
+            try (TableWriter writer = new TableWriter(configuration, "x", new Scheduler(groupCommit))) {
+                appendRows(writer, 10);
+                writer.commit();
+                // latency window has not elapsed and there is no flush job
+                Assert.assertEquals(0, ff.count);
+            }
+            Assert.assertTrue(ff.count > 0);
+        });
+    }
+
+    @Test
+    public void testAsyncCommitFlushedBeforeRollback() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            ClosingFacade ff = new ClosingFacade();
+            CairoConfiguration configuration = new Configuration(ff, CommitMode.ASYNC, 1000);
+            GroupCommit groupCommit = new GroupCommit(configuration);
+            try (TableWriter writer = new TableWriter(configuration, "x", new Scheduler(groupCommit))) {
+                appendRows(writer, 10);
+                writer.commit();
+                Assert.assertEquals(0, ff.count);
+
+                // rollback closes column files, which are queued for flush
+                appendRows(writer, 5);
+                writer.rollback();
+                Assert.assertTrue(ff.count > 0);
+                Assert.assertEquals(10, writer.size());
+            }
+            Assert.assertEquals(0, ff.closedSyncCount);
+        });
+    }
+
+    @Test
+    public void testDuplicateDescriptorsFlushedOnce() {
+        CountingFacade ff = new CountingFacade();
+        GroupCommit groupCommit = new GroupCommit(new Configuration(ff, CommitMode.ASYNC, 1000));
+
+        LongList fds = new LongList();
+        Assert.assertEquals(0, groupCommit.submit(fds));
+
+        fds.add(11);
+        fds.add(12);
+        long c1 = groupCommit.submit(fds);
+        fds.clear();
+        fds.add(12);
+        fds.add(13);
+        fds.add(11);
+        long c2 = groupCommit.submit(fds);
+        Assert.assertEquals(c1, c2);
+
+        Assert.assertTrue(groupCommit.flush(true));
+        Assert.assertEquals(3, ff.count);
+        groupCommit.await(c1);
+
+        // next cycle
+        Assert.assertEquals(c1 + 1, groupCommit.submit(fds));
+        Assert.assertFalse(groupCommit.flush(false));
+        Assert.assertEquals(3, ff.count);
+    }
+
+    @Test
+    public void testFailedFlush() {
+        CountingFacade ff = new CountingFacade();
+        ff.fail = true;
+        GroupCommit groupCommit = new GroupCommit(new Configuration(ff, CommitMode.ASYNC, 0));
+        LongList fds = new LongList();
+        fds.add(11);
+        long cycle = groupCommit.submit(fds);
+        try {
+            groupCommit.await(cycle);
+            Assert.fail();
+        } catch (CairoException e) {
+            TestUtils.assertContains(e.getMessage(), "Could not flush");
+        }
+        Assert.assertEquals(1, ff.count);
+    }
+
+    @Test
+    public void testFailedSyncCommit() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            CountingFacade ff = new CountingFacade();
+            try (TableWriter writer = new TableWriter(new Configuration(ff, CommitMode.NOSYNC, 0), "x")) {
+                appendRows(writer, 10);
+                ff.fail = true;
+                try {
+                    writer.commit(CommitMode.SYNC);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "Could not flush");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testNoSyncCommit() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            CountingFacade ff = new CountingFacade();
+            try (TableWriter writer = new TableWriter(new Configuration(ff, CommitMode.NOSYNC, 0), "x")) {
+                appendRows(writer, 10);
+                writer.commit();
+            }
+            Assert.assertEquals(0, ff.count);
+        });
+    }
+
+    @Test
+    public void testSyncCommit() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            CountingFacade ff = new CountingFacade();
+            try (TableWriter writer = new TableWriter(new Configuration(ff, CommitMode.SYNC, 0), "x")) {
+                writer.commit();
+                // nothing to commit
+                Assert.assertEquals(0, ff.count);
+
+                appendRows(writer, 10);
+                writer.commit();
+                final int count = ff.count;
+                // column files and txn file
+                Assert.assertTrue(count > 1);
+
+                appendRows(writer, 10);
+                writer.commit(CommitMode.NOSYNC);
+                Assert.assertEquals(count, ff.count);
+            }
+        });
+    }
+
+    @Test
+    public void testSyncCommitFlushesClosedPartitions() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createPartitionedTable();
+            TrackingFacade ff = new TrackingFacade();
+            try (TableWriter writer = new TableWriter(new Configuration(ff, CommitMode.NOSYNC, 0), "y")) {
+                for (int day = 0; day < 3; day++) {
+                    appendRows(writer, day * Dates.DAY_MICROS, 10);
+                }
+                // partitions closed by writer are flushed even though configured mode is NOSYNC
+                writer.commit(CommitMode.SYNC);
+                Assert.assertTrue(ff.isSynced("1970-01-01", "a.d"));
+                Assert.assertTrue(ff.isSynced("1970-01-02", "a.d"));
+                Assert.assertTrue(ff.isSynced("1970-01-03", "a.d"));
+            }
+        });
+    }
+
+    @Test
+    public void testSyncCommitFlushesMergedPartition() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createPartitionedTable();
+            TrackingFacade ff = new TrackingFacade();
+            CairoConfiguration configuration = new Configuration(ff, CommitMode.NOSYNC, 0) {
+                @Override
+                public boolean isOutOfOrderEnabled() {
+                    return true;
+                }
+            };
+            try (TableWriter writer = new TableWriter(configuration, "y")) {
+                appendRows(writer, 0, 10);
+                appendRows(writer, Dates.DAY_MICROS, 10);
+                writer.commit();
+                Assert.assertEquals(0, ff.count);
+
+                appendRows(writer, 1, 1);
+                writer.commit(CommitMode.SYNC);
+                Assert.assertTrue(ff.isSynced("1970-01-01.1", "a.d"));
+                Assert.assertEquals(21, writer.size());
+            }
+        });
+    }
+
+    private static void appendRows(TableWriter writer, long timestamp, int count) {
+        for (int i = 0; i < count; i++) {
+            TableWriter.Row r = writer.newRow(timestamp + i * 1000);
+            r.putInt(0, i);
+            r.append();
+        }
+    }
+
+    private static void appendRows(TableWriter writer, int count) {
+        for (int i = 0; i < count; i++) {
+            TableWriter.Row r = writer.newRow(0);
+            r.putInt(0, i);
+            r.putSym(1, i % 2 == 0 ? "A" : "B");
+            r.append();
+        }
+    }
+
+    private void createTable() {
+        try (TableModel model = new TableModel(configuration, "x", PartitionBy.NONE)
+                .col("a", ColumnType.INT)
+                .col("b", ColumnType.SYMBOL).indexed(true, 256)) {
+            CairoTestUtils.create(model);
+        }
+    }
+
+    private void createPartitionedTable() {
+        try (TableModel model = new TableModel(configuration, "y", PartitionBy.DAY)
+                .col("a", ColumnType.INT)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+
+    private static class CountingFacade extends FilesFacadeImpl {
+        int count = 0;
+        boolean fail = false;
+
+        @Override
+        public int fsync(long fd) {
+            count++;
+            return fail ? -1 : 0;
+        }
+    }
+
+    private static class ClosingFacade extends CountingFacade {
+        private final LongHashSet closed = new LongHashSet();
+        int closedSyncCount = 0;
+
+        @Override
+        public boolean close(long fd) {
+            closed.add(fd);
+            return super.close(fd);
+        }
+
+        @Override
+        public int fsync(long fd) {
+            if (closed.contains(fd)) {
+                closedSyncCount++;
+            }
+            return super.fsync(fd);
+        }
+
+        @Override
+        public long openRO(LPSZ name) {
+            final long fd = super.openRO(name);
+            closed.remove(fd);
+            return fd;
+        }
+
+        @Override
+        public long openRW(LPSZ name) {
+            final long fd = super.openRW(name);
+            closed.remove(fd);
+            return fd;
+        }
+    }
+
+    private static class TrackingFacade extends CountingFacade {
+        // descriptors are reused once closed, last file opened with descriptor wins
+        private final LongList fds = new LongList();
+        private final ObjList<String> names = new ObjList<>();
+        private final ObjList<String> synced = new ObjList<>();
+
+        @Override
+        public int fsync(long fd) {
+            for (int i = fds.size() - 1; i > -1; i--) {
+                if (fds.getQuick(i) == fd) {
+                    synced.add(names.getQuick(i));
+                    break;
+                }
+            }
+            return super.fsync(fd);
+        }
+
+        @Override
+        public long openRW(LPSZ name) {
+            final long fd = super.openRW(name);
+            fds.add(fd);
+            names.add(Chars.stringOf(name));
+            return fd;
+        }
+
+        boolean isSynced(String partition, String fileName) {
+            for (int i = 0, n = synced.size(); i < n; i++) {
+                final String name = synced.getQuick(i);
+                if (Chars.endsWith(name, fileName) && Chars.contains(name, Files.SEPARATOR + partition + Files.SEPARATOR)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static class MutableClock implements MicrosecondClock {
+        long ticks = 0;
+
+        @Override
+        public long getTicks() {
+            return ticks;
+        }
+    }
+
+    private static class Configuration extends DefaultCairoConfiguration {
+        private final FilesFacade ff;
+        private final int commitMode;
+        private final long window;
+
+        Configuration(FilesFacade ff, int commitMode, long window) {
+            super(root);
+            this.ff = ff;
+            this.commitMode = commitMode;
+            this.window = window;
+        }
+
+        @Override
+        public int getCommitMode() {
+            return commitMode;
+        }
+
+        @Override
+        public FilesFacade getFilesFacade() {
+            return ff;
+        }
+
+        @Override
+        public long getGroupCommitWindow() {
+            return window;
+        }
+    }
+
+    private static class Scheduler implements CairoWorkScheduler {
+        private final GroupCommit groupCommit;
+
+        Scheduler(GroupCommit groupCommit) {
+            this.groupCommit = groupCommit;
+        }
+
+        @Override
+        public void addJob(Job job) {
+        }
+
+        @Override
+        public Sequence getDataFrameLanePubSequence() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<DataFrameLaneEntry> getDataFrameLaneQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getDataFrameLaneSubSequence() {
+            return null;
+        }
+
+        @Override
+        public GroupCommit getGroupCommit() {
+            return groupCommit;
+        }
+
+        @Override
+        public Sequence getIndexerPubSequence() {
+            return null;
+        }
+
+        @Override
+        public RingQueue<ColumnIndexerEntry> getIndexerQueue() {
+            return null;
+        }
+
+        @Override
+        public Sequence getIndexerSubSequence() {
+            return null;
+        }
+
+        @Override
+        public int getWorkerCount() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PartitionByTest {
+
+    @Test
+    public void testFromString() {
+        Assert.assertEquals(PartitionBy.DAY, PartitionBy.fromString("DAY"));
+        Assert.assertEquals(PartitionBy.HOUR, PartitionBy.fromString("HOUR"));
+        Assert.assertEquals(PartitionBy.HOUR, PartitionBy.fromString("60m"));
+        Assert.assertEquals(PartitionBy.HOUR, PartitionBy.fromString("1h"));
+        Assert.assertEquals(PartitionBy.minutes(15), PartitionBy.fromString("15m"));
+        Assert.assertEquals(PartitionBy.minutes(240), PartitionBy.fromString("4h"));
+        Assert.assertEquals(-1, PartitionBy.fromString("m"));
+        Assert.assertEquals(-1, PartitionBy.fromString("0m"));
+        Assert.assertEquals(-1, PartitionBy.fromString("-5m"));
+        Assert.assertEquals(-1, PartitionBy.fromString("15s"));
+        Assert.assertEquals(-1, PartitionBy.fromString("WEEK"));
+    }
+
+    @Test
+    public void testInvalidWidth() {
+        try {
+            PartitionBy.minutes(0);
+            Assert.fail();
+        } catch (CairoException e) {
+            Assert.assertTrue(e.getMessage().contains("Invalid partition width"));
+        }
+    }
+
+    @Test
+    public void testToString() {
+        Assert.assertEquals("HOUR", PartitionBy.toString(PartitionBy.HOUR));
+        Assert.assertEquals("15m", PartitionBy.toString(PartitionBy.minutes(15)));
+        Assert.assertEquals("4h", PartitionBy.toString(PartitionBy.minutes(240)));
+        for (String name : new String[]{"DAY", "MONTH", "YEAR", "NONE", "HOUR", "90m", "2h"}) {
+            Assert.assertEquals(name, PartitionBy.toString(PartitionBy.fromString(name)));
+        }
+    }
+
+    @Test
+    public void testWidth() {
+        Assert.assertEquals(0, PartitionBy.getWidth(PartitionBy.DAY));
+        Assert.assertFalse(PartitionBy.isFixedWidth(PartitionBy.MONTH));
+        Assert.assertTrue(PartitionBy.isFixedWidth(PartitionBy.HOUR));
+        Assert.assertEquals(15 * 60 * 1000000L, PartitionBy.getWidth(PartitionBy.minutes(15)));
+        Assert.assertEquals(3 * 60 * 60 * 1000000L, TableUtils.floorPartition(3 * 60 * 60 * 1000000L + 17, PartitionBy.minutes(90)));
+    }
+}
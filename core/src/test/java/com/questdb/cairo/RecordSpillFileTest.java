@@ -0,0 +1,155 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.std.BytecodeAssembler;
+import com.questdb.std.LongList;
+import com.questdb.std.Rnd;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+
+public class RecordSpillFileTest extends AbstractCairoTest {
+    private static final long PAGE_SIZE = 1024 * 1024L;
+    private static final BytecodeAssembler asm = new BytecodeAssembler();
+    private static final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
+
+    @Test
+    public void testClear() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            CairoTestUtils.createTestTable(1000, new Rnd(), new TestRecord.ArrayBinarySequence());
+            try (TableReader reader = new TableReader(configuration, "x")) {
+                entityColumnFilter.of(reader.getColumnCount());
+                RecordSink recordSink = RecordSinkFactory.getInstance(asm, reader.getMetadata(), entityColumnFilter, false);
+                try (RecordSpillFile spillFile = new RecordSpillFile(configuration, reader.getMetadata(), recordSink, PAGE_SIZE)) {
+                    Assert.assertEquals(0, spillFile.size());
+                    populate(spillFile, reader);
+                    Assert.assertTrue(spillFile.size() > 0);
+                    Assert.assertEquals(1, countSpillFiles());
+
+                    spillFile.clear();
+                    Assert.assertEquals(0, spillFile.size());
+                    Assert.assertEquals(0, countSpillFiles());
+
+                    // spill file is reusable after clear
+                    LongList offsets = populate(spillFile, reader);
+                    spillFile.toReadMode();
+                    assertRecords(spillFile, offsets, reader);
+                }
+                Assert.assertEquals(0, countSpillFiles());
+            }
+        });
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            CairoTestUtils.createTestTable(1, new Rnd(), new TestRecord.ArrayBinarySequence());
+            try (TableReader reader = new TableReader(configuration, "x")) {
+                entityColumnFilter.of(reader.getColumnCount());
+                RecordSink recordSink = RecordSinkFactory.getInstance(asm, reader.getMetadata(), entityColumnFilter, false);
+                try (RecordSpillFile spillFile = new RecordSpillFile(configuration, reader.getMetadata(), recordSink, PAGE_SIZE)) {
+                    spillFile.toReadMode();
+                    Assert.assertEquals(0, spillFile.size());
+                    Assert.assertEquals(0, countSpillFiles());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            // records span several pages
+            CairoTestUtils.createTestTable(10000, new Rnd(), new TestRecord.ArrayBinarySequence());
+            try (TableReader reader = new TableReader(configuration, "x")) {
+                entityColumnFilter.of(reader.getColumnCount());
+                RecordSink recordSink = RecordSinkFactory.getInstance(asm, reader.getMetadata(), entityColumnFilter, false);
+                try (RecordSpillFile spillFile = new RecordSpillFile(configuration, reader.getMetadata(), recordSink, PAGE_SIZE)) {
+                    LongList offsets = populate(spillFile, reader);
+                    spillFile.toReadMode();
+                    Assert.assertEquals(offsets.getLast(), spillFile.size());
+                    assertRecords(spillFile, offsets, reader);
+                }
+            }
+        });
+    }
+
+    private static void assertRecords(RecordSpillFile spillFile, LongList offsets, TableReader reader) throws Exception {
+        final RecordCursor cursor = reader.getCursor();
+        spillFile.setSymbolTableResolver(cursor);
+
+        sink.clear();
+        printer.print(cursor, reader.getMetadata(), true);
+        final String expected = sink.toString();
+
+        // sequential read
+        sink.clear();
+        printer.printHeader(reader.getMetadata());
+        final Record record = spillFile.getRecord();
+        for (int i = 0, n = offsets.size() - 1; i < n; i++) {
+            Assert.assertEquals(offsets.getQuick(i + 1), spillFile.recordAt(record, offsets.getQuick(i)));
+            Assert.assertEquals(offsets.getQuick(i), record.getRowId());
+            printer.print(record, reader.getMetadata());
+        }
+        TestUtils.assertEquals(expected, sink);
+
+        // random read, every other record
+        final Record rec2 = spillFile.newRecord();
+        cursor.toTop();
+        for (int i = 0, n = offsets.size() - 1; i < n; i++) {
+            Assert.assertTrue(cursor.hasNext());
+            if ((i & 1) == 0) {
+                spillFile.recordAt(rec2, offsets.getQuick(i));
+                sink.clear();
+                printer.print(cursor.getRecord(), reader.getMetadata());
+                final String e = sink.toString();
+                sink.clear();
+                printer.print(rec2, reader.getMetadata());
+                TestUtils.assertEquals(e, sink);
+            }
+        }
+    }
+
+    private static int countSpillFiles() {
+        final String[] files = new File(configuration.getSqlSpillRoot().toString()).list();
+        return files == null ? 0 : files.length;
+    }
+
+    private static LongList populate(RecordSpillFile spillFile, TableReader reader) {
+        final LongList offsets = new LongList();
+        final RecordCursor cursor = reader.getCursor();
+        final Record record = cursor.getRecord();
+        while (cursor.hasNext()) {
+            offsets.add(spillFile.put(record));
+        }
+        offsets.add(spillFile.size());
+        return offsets;
+    }
+}
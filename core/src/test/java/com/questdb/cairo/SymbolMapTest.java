@@ -95,6 +95,73 @@ public class SymbolMapTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testCachedAddAndRollback() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int N = 100000;
+            try (Path path = new Path().of(configuration.getRoot())) {
+                create(path, "x", N, true);
+                try (SymbolMapWriter writer = new SymbolMapWriter(configuration, path, "x", 0)) {
+                    Assert.assertTrue(writer.isCached());
+                    Rnd rnd = new Rnd();
+                    for (int i = 0; i < N; i++) {
+                        Assert.assertEquals(i, writer.put(rnd.nextChars(10)));
+                    }
+
+                    // every lookup is a dictionary hit now
+                    rnd.reset();
+                    for (int i = 0; i < N; i++) {
+                        Assert.assertEquals(i, writer.put(rnd.nextChars(10)));
+                    }
+                    Assert.assertEquals(N, writer.getSymbolCount());
+
+                    writer.rollback(N / 2);
+                    Assert.assertEquals(N / 2, writer.getSymbolCount());
+
+                    // symbols below rollback point retain their keys, the rest are re-added
+                    rnd.reset();
+                    for (int i = 0; i < N; i++) {
+                        CharSequence cs = rnd.nextChars(10);
+                        Assert.assertEquals(i, writer.put(cs));
+                        Assert.assertEquals(i, writer.put(cs));
+                    }
+                    Assert.assertEquals(N, writer.getSymbolCount());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCachedRead() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            int N = 10000;
+            Rnd rnd = new Rnd();
+            try (Path path = new Path().of(configuration.getRoot())) {
+                create(path, "x", N, true);
+                try (SymbolMapWriter writer = new SymbolMapWriter(configuration, path, "x", 0)) {
+                    for (int i = 0; i < N; i++) {
+                        Assert.assertEquals(i, writer.put(rnd.nextChars(10)));
+                    }
+                }
+
+                try (SymbolMapReaderImpl reader = new SymbolMapReaderImpl(configuration, path, "x", N)) {
+                    Assert.assertTrue(reader.isCached());
+                    for (int pass = 0; pass < 2; pass++) {
+                        rnd.reset();
+                        for (int i = 0; i < N; i++) {
+                            CharSequence cs = rnd.nextChars(10);
+                            Assert.assertEquals(i, reader.getQuick(cs));
+                            TestUtils.assertEquals(cs, reader.value(i));
+                        }
+                    }
+                    Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, reader.getQuick("hola"));
+                    Assert.assertEquals(SymbolTable.VALUE_NOT_FOUND, reader.getQuick("hola"));
+                    Assert.assertEquals(SymbolTable.VALUE_IS_NULL, reader.getQuick(null));
+                }
+            }
+        });
+    }
+
 //    @Test
 //    public void testLookupPerformanceOld() throws JournalException {
 //        int N = 100000000;
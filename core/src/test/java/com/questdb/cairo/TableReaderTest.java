@@ -1831,6 +1831,18 @@ public class TableReaderTest extends AbstractCairoTest {
         TestUtils.assertMemoryLeak(this::testTableCursor);
     }
 
+    @Test
+    public void testReadByHour() throws Exception {
+        CairoTestUtils.createAllTable(configuration, PartitionBy.HOUR);
+        TestUtils.assertMemoryLeak(() -> testTableCursor(20 * 60000));
+    }
+
+    @Test
+    public void testReadByMinutes() throws Exception {
+        CairoTestUtils.createAllTable(configuration, PartitionBy.minutes(15));
+        TestUtils.assertMemoryLeak(() -> testTableCursor(5 * 60000));
+    }
+
     @Test
     public void testReadByMonth() throws Exception {
         CairoTestUtils.createAllTable(configuration, PartitionBy.MONTH);
@@ -1938,6 +1950,21 @@ public class TableReaderTest extends AbstractCairoTest {
         testReload(PartitionBy.DAY, 150, 6 * 60000L, MUST_SWITCH);
     }
 
+    @Test
+    public void testReloadByHourSamePartition() throws Exception {
+        testReload(PartitionBy.HOUR, 10, 60000L, MUST_NOT_SWITCH);
+    }
+
+    @Test
+    public void testReloadByHourSwitch() throws Exception {
+        testReload(PartitionBy.HOUR, 150, 60000L, MUST_SWITCH);
+    }
+
+    @Test
+    public void testReloadByMinutesSwitch() throws Exception {
+        testReload(PartitionBy.minutes(15), 60, 60000L, MUST_SWITCH);
+    }
+
     @Test
     public void testReloadByMonthSamePartition() throws Exception {
         testReload(PartitionBy.MONTH, 15, 60L * 60000, MUST_NOT_SWITCH);
@@ -2189,6 +2216,17 @@ public class TableReaderTest extends AbstractCairoTest {
         testRemovePartitionReload(PartitionBy.DAY, "2017-12-14", 3000, current -> Dates.addDays(Dates.floorDD(current), 1));
     }
 
+    @Test
+    public void testRemovePartitionByHour() throws Exception {
+        testRemovePartition(PartitionBy.HOUR, "2017-12-11T03", 3000, current -> TableUtils.floorPartition(current, PartitionBy.HOUR) + Dates.HOUR_MICROS);
+    }
+
+    @Test
+    public void testRemovePartitionByMinutes() throws Exception {
+        final int partitionBy = PartitionBy.minutes(15);
+        testRemovePartition(partitionBy, "2017-12-11T00-45", 3000, current -> TableUtils.floorPartition(current, partitionBy) + 15 * Dates.MINUTE_MICROS);
+    }
+
     @Test
     public void testRemovePartitionByMonth() throws Exception {
         testRemovePartition(PartitionBy.MONTH, "2018-01", 1000, current -> Dates.addMonths(Dates.floorMM(current), 1));
@@ -25,6 +25,7 @@ package com.questdb.cairo;
 
 import com.questdb.cairo.sql.Record;
 import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RowCursor;
 import com.questdb.log.Log;
 import com.questdb.log.LogFactory;
 import com.questdb.std.*;
@@ -36,6 +37,8 @@ import com.questdb.test.tools.TestUtils;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class TableWriterTest extends AbstractCairoTest {
@@ -43,6 +46,12 @@ public class TableWriterTest extends AbstractCairoTest {
     public static final String PRODUCT = "product";
     private static final FilesFacade FF = FilesFacadeImpl.INSTANCE;
     private static final Log LOG = LogFactory.getLog(TableWriterTest.class);
+    private final CairoConfiguration outOfOrderConfiguration = new DefaultCairoConfiguration(root) {
+        @Override
+        public boolean isOutOfOrderEnabled() {
+            return true;
+        }
+    };
 
     @Test
     public void tesFrequentCommit() throws Exception {
@@ -674,6 +683,175 @@ public class TableWriterTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testAppendBlock() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createBlockTable(PartitionBy.DAY);
+            final String[] strings = {"abc", null, "", "defgh", "x"};
+            final long timestamp = DateFormatUtils.parseDateTime("2018-01-01T22:00:00.000Z");
+            final long size = 5 * 8 + 5 * 4 + 5 * 4 + 5 * 8 + 4 * 4 + 9 * 2;
+            final long mem = Unsafe.malloc(size);
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                final long syms = mem;
+                final long ints = syms + 5 * 4;
+                final long timestamps = ints + 5 * 4;
+                final long offsets = timestamps + 5 * 8;
+                final long data = offsets + 5 * 8;
+
+                appendRow(writer, "2018-01-01T21:00:00.000Z", "b", "first", 0);
+
+                TableWriter.Block block = writer.newBlock();
+                long p = data;
+                for (int i = 0; i < 5; i++) {
+                    Unsafe.getUnsafe().putInt(syms + i * 4, block.putSym(0, i % 2 == 0 ? "a" : "b"));
+                    Unsafe.getUnsafe().putInt(ints + i * 4, i + 1);
+                    Unsafe.getUnsafe().putLong(timestamps + i * 8, timestamp + i * Dates.HOUR_MICROS);
+                    Unsafe.getUnsafe().putLong(offsets + i * 8, p - data);
+                    final String s = strings[i];
+                    if (s == null) {
+                        Unsafe.getUnsafe().putInt(p, TableUtils.NULL_LEN);
+                        p += 4;
+                    } else {
+                        Unsafe.getUnsafe().putInt(p, s.length());
+                        p += 4;
+                        for (int k = 0; k < s.length(); k++) {
+                            Unsafe.getUnsafe().putChar(p, s.charAt(k));
+                            p += 2;
+                        }
+                    }
+                }
+                block.putColumn(0, syms);
+                block.putColumn(1, data, p - data, offsets);
+                block.putColumn(2, ints);
+                block.putColumn(4, timestamps);
+                block.append(5);
+                Assert.assertEquals(6, writer.size());
+
+                appendRow(writer, "2018-01-02T03:00:00.000Z", "a", "last", 6);
+                writer.commit();
+            } finally {
+                Unsafe.free(mem, size);
+            }
+
+            try (TableReader reader = new TableReader(configuration, "x")) {
+                assertThat("sym\tstr\ti\td\ttimestamp\n" +
+                        "b\tfirst\t0\tNaN\t2018-01-01T21:00:00.000000Z\n" +
+                        "a\tabc\t1\tNaN\t2018-01-01T22:00:00.000000Z\n" +
+                        "b\t\t2\tNaN\t2018-01-01T23:00:00.000000Z\n" +
+                        "a\t\t3\tNaN\t2018-01-02T00:00:00.000000Z\n" +
+                        "b\tdefgh\t4\tNaN\t2018-01-02T01:00:00.000000Z\n" +
+                        "a\tx\t5\tNaN\t2018-01-02T02:00:00.000000Z\n" +
+                        "a\tlast\t6\tNaN\t2018-01-02T03:00:00.000000Z\n", reader.getCursor(), reader.getMetadata(), true);
+                Assert.assertEquals(2, reader.getPartitionCount());
+                assertSymbolIndex(reader, "a", 1, 3, 5, 6);
+                assertSymbolIndex(reader, "b", 0, 2, 4);
+            }
+        });
+    }
+
+    @Test
+    public void testAppendBlockOutOfOrder() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createBlockTable(PartitionBy.DAY);
+            final long timestamps = Unsafe.malloc(16);
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                appendRow(writer, "2018-01-01T21:00:00.000Z", "b", "first", 0);
+
+                Unsafe.getUnsafe().putLong(timestamps, DateFormatUtils.parseDateTime("2018-01-01T20:00:00.000Z"));
+                Unsafe.getUnsafe().putLong(timestamps + 8, DateFormatUtils.parseDateTime("2018-01-01T22:00:00.000Z"));
+                TableWriter.Block block = writer.newBlock();
+                block.putColumn(4, timestamps);
+                try {
+                    block.append(2);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "Cannot insert rows out of order");
+                }
+
+                Unsafe.getUnsafe().putLong(timestamps, DateFormatUtils.parseDateTime("2018-01-01T23:00:00.000Z"));
+                block = writer.newBlock();
+                block.putColumn(4, timestamps);
+                try {
+                    block.append(2);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "Block rows are out of order");
+                }
+
+                writer.commit();
+                Assert.assertEquals(1, writer.size());
+            } finally {
+                Unsafe.free(timestamps, 16);
+            }
+        });
+    }
+
+    @Test
+    public void testAppendBufferedRows() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createBlockTable(PartitionBy.DAY);
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getBufferedRowCount() {
+                    return 3;
+                }
+
+                @Override
+                public boolean isOutOfOrderEnabled() {
+                    return true;
+                }
+            };
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                appendBufferedRow(writer, "2018-01-01T21:00:00.000Z", "a", "s0", 0);
+
+                TableWriter.Row r = writer.newBufferedRow(DateFormatUtils.parseDateTime("2018-01-01T22:00:00.000Z"));
+                r.putSym(0, "b");
+                r.putInt(2, 1);
+                r.putDouble(3, 1.5);
+                r.append();
+
+                r = writer.newBufferedRow(DateFormatUtils.parseDateTime("2018-01-01T23:00:00.000Z"));
+                r.putStr(1, "cancelled");
+                r.putInt(2, 100);
+                r.cancel();
+                Assert.assertEquals(0, writer.size());
+
+                // third row fills block
+                appendBufferedRow(writer, "2018-01-01T23:00:00.000Z", "a", "s2", 2);
+                Assert.assertEquals(3, writer.size());
+
+                appendBufferedRow(writer, "2018-01-02T01:00:00.000Z", "a", "s3", 3);
+                Assert.assertEquals(3, writer.size());
+
+                // out-of-order row is written directly after buffered rows
+                appendBufferedRow(writer, "2018-01-01T20:00:00.000Z", "b", "ooo", 4);
+                Assert.assertEquals(4, writer.size());
+
+                appendBufferedRow(writer, "2018-01-02T02:00:00.000Z", "b", "s5", 5);
+                writer.commit();
+                Assert.assertEquals(6, writer.size());
+
+                appendBufferedRow(writer, "2018-01-02T03:00:00.000Z", "a", "rolled back", 6);
+                writer.rollback();
+                writer.commit();
+                Assert.assertEquals(6, writer.size());
+            }
+
+            try (TableReader reader = new TableReader(configuration, "x")) {
+                assertThat("sym\tstr\ti\td\ttimestamp\n" +
+                        "b\tooo\t4\tNaN\t2018-01-01T20:00:00.000000Z\n" +
+                        "a\ts0\t0\tNaN\t2018-01-01T21:00:00.000000Z\n" +
+                        "b\t\t1\t1.500000000000\t2018-01-01T22:00:00.000000Z\n" +
+                        "a\ts2\t2\tNaN\t2018-01-01T23:00:00.000000Z\n" +
+                        "a\ts3\t3\tNaN\t2018-01-02T01:00:00.000000Z\n" +
+                        "b\ts5\t5\tNaN\t2018-01-02T02:00:00.000000Z\n", reader.getCursor(), reader.getMetadata(), true);
+                Assert.assertEquals(2, reader.getPartitionCount());
+                assertSymbolIndex(reader, "a", 0, 2, 3);
+                assertSymbolIndex(reader, "b", 4, 1, 5);
+            }
+        });
+    }
+
     @Test
     public void testAppendOutOfOrder() throws Exception {
         int N = 10000;
@@ -1469,6 +1647,175 @@ public class TableWriterTest extends AbstractCairoTest {
         }, N);
     }
 
+    @Test
+    public void testCompressPartition() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(outOfOrderConfiguration, "x", PartitionBy.DAY)
+                    .col("sym", ColumnType.SYMBOL).indexed(true, 4)
+                    .col("str", ColumnType.STRING)
+                    .col("i", ColumnType.INT)
+                    .col("d", ColumnType.DOUBLE)
+                    .timestamp()) {
+                CairoTestUtils.create(model);
+            }
+
+            final Rnd rnd = new Rnd();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            final String expected;
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                for (int i = 0; i < 3 * 24 * 60; i++) {
+                    TableWriter.Row r = writer.newRow(ts + i * 60000000L);
+                    r.putSym(0, rnd.nextChars(1));
+                    r.putStr(1, rnd.nextChars(3));
+                    r.putInt(2, i);
+                    r.putDouble(3, rnd.nextDouble());
+                    r.append();
+                }
+                writer.commit();
+
+                try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                    sink.clear();
+                    printer.print(reader.getCursor(), reader.getMetadata(), true);
+                    expected = sink.toString();
+
+                    Assert.assertFalse(writer.compressPartition(ts + 2 * Dates.DAY_MICROS));
+                    Assert.assertTrue(writer.compressPartition(ts));
+                    Assert.assertTrue(writer.compressPartition(ts + Dates.DAY_MICROS));
+
+                    try (Path path = new Path()) {
+                        path.of(root).concat("x").concat("2018-01-01");
+                        final int plen = path.length();
+                        Assert.assertFalse(FF.exists(path.concat("i.d").$()));
+                        Assert.assertTrue(FF.exists(path.trimTo(plen).concat("i.dz").$()));
+                        Assert.assertTrue(FF.exists(path.trimTo(plen).concat("str.d").$()));
+                    }
+
+                    // reader that has partitions open keeps using unlinked files
+                    assertThat(expected, reader.getCursor(), reader.getMetadata(), true);
+                }
+
+                try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                    assertThat(expected, reader.getCursor(), reader.getMetadata(), true);
+                }
+
+                TableWriter.Row r = writer.newRow(ts + 30000000L);
+                r.putSym(0, "OOO");
+                r.putStr(1, "ooo");
+                r.putInt(2, -1);
+                r.putDouble(3, 0.5);
+                r.append();
+                writer.commit();
+            }
+
+            try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                Assert.assertEquals(3 * 24 * 60 + 1, reader.size());
+                assertSymbolIndex(reader, "OOO", -1);
+                final RecordCursor cursor = reader.getCursor();
+                final Record record = cursor.getRecord();
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(0, record.getInt(2));
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(-1, record.getInt(2));
+                TestUtils.assertEquals("ooo", record.getStr(1));
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(1, record.getInt(2));
+            }
+        });
+    }
+
+    @Test
+    public void testCompressPartitionVarSizeColumns() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(outOfOrderConfiguration, "x", PartitionBy.DAY)
+                    .col("str", ColumnType.STRING)
+                    .col("bin", ColumnType.BINARY)
+                    .col("l", ColumnType.LONG)
+                    .timestamp()) {
+                CairoTestUtils.create(model);
+            }
+
+            final Rnd rnd = new Rnd();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            final int blobLen = 64;
+            final long blob = Unsafe.malloc(blobLen);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                for (int i = 0; i < 2 * 24 * 60; i++) {
+                    TableWriter.Row r = writer.newRow(ts + i * 60000000L);
+                    if (rnd.nextBoolean()) {
+                        r.putStr(0, rnd.nextChars(rnd.nextPositiveInt() % 16));
+                    }
+                    if (rnd.nextBoolean()) {
+                        rnd.nextChars(blob, blobLen / 2);
+                        r.putBin(1, blob, rnd.nextPositiveInt() % blobLen);
+                    }
+                    r.putLong(2, i);
+                    r.append();
+                }
+                writer.commit();
+
+                // column added after partition is written has no files in that partition
+                writer.addColumn("s", ColumnType.STRING);
+
+                final String expected;
+                try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                    sink.clear();
+                    printer.print(reader.getCursor(), reader.getMetadata(), true);
+                    expected = sink.toString();
+                }
+
+                Assert.assertTrue(writer.compressPartition(ts));
+
+                try (Path path = new Path()) {
+                    path.of(root).concat("x").concat("2018-01-01");
+                    final int plen = path.length();
+                    Assert.assertTrue(FF.exists(path.concat("str.d").$()));
+                    Assert.assertTrue(FF.exists(path.trimTo(plen).concat("str.i").$()));
+                    Assert.assertTrue(FF.exists(path.trimTo(plen).concat("bin.d").$()));
+                    Assert.assertTrue(FF.exists(path.trimTo(plen).concat("bin.i").$()));
+                    Assert.assertFalse(FF.exists(path.trimTo(plen).concat("str.dz").$()));
+                    Assert.assertFalse(FF.exists(path.trimTo(plen).concat("bin.dz").$()));
+                    Assert.assertTrue(FF.exists(path.trimTo(plen).concat("l.dz").$()));
+
+                    // stray compressed file of string column must not be mistaken for its data
+                    java.nio.file.Files.copy(
+                            java.nio.file.Paths.get(path.trimTo(plen).concat("l.dz").toString()),
+                            java.nio.file.Paths.get(path.trimTo(plen).concat("s.dz").toString())
+                    );
+                }
+
+                try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                    assertThat(expected, reader.getCursor(), reader.getMetadata(), true);
+                }
+
+                TableWriter.Row r = writer.newRow(ts + 30000000L);
+                r.putStr(0, "ooo");
+                r.putLong(2, -1);
+                r.putStr(4, "abc");
+                r.append();
+                writer.commit();
+            } finally {
+                Unsafe.free(blob, blobLen);
+            }
+
+            try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                Assert.assertEquals(2 * 24 * 60 + 1, reader.size());
+                final RecordCursor cursor = reader.getCursor();
+                final Record record = cursor.getRecord();
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(0, record.getLong(2));
+                Assert.assertNull(record.getStr(4));
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(-1, record.getLong(2));
+                TestUtils.assertEquals("ooo", record.getStr(0));
+                Assert.assertNull(record.getBin(1));
+                TestUtils.assertEquals("abc", record.getStr(4));
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(1, record.getLong(2));
+                Assert.assertNull(record.getStr(4));
+            }
+        });
+    }
+
     @Test
     public void testConstructorTruncatedTodo() throws Exception {
         FilesFacade ff = new FilesFacadeImpl() {
@@ -1592,6 +1939,212 @@ public class TableWriterTest extends AbstractCairoTest {
         testTruncate(new X(), false);
     }
 
+    @Test
+    public void testDedupBinaryKey() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(outOfOrderConfiguration, "x", PartitionBy.DAY)
+                    .col("b", ColumnType.BINARY)
+                    .timestamp()) {
+                CairoTestUtils.create(model);
+            }
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                try {
+                    writer.setDedupKey("b");
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "BINARY");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDedupInvalidColumn() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                try {
+                    writer.setDedupKey("sym", "xyz");
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "Invalid column: xyz");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDedupRequiresOutOfOrder() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                try {
+                    writer.setDedupKey("sym");
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "out-of-order");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDedupRemoveKey() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                writer.setDedupKey("sym");
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                writer.commit();
+                writer.removeDedupKey();
+            }
+
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s2", 2);
+                writer.commit();
+                Assert.assertEquals(2, writer.size());
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "a\ts2\t2\t2018-01-02T10:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testDedupRandom() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            final int N = 5000;
+            final Rnd rnd = new Rnd();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            final CharSequenceIntHashMap expected = new CharSequenceIntHashMap();
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                writer.setDedupKey("sym");
+                for (int k = 0; k < 4; k++) {
+                    for (int i = 0; i < N; i++) {
+                        final long timestamp = ts + (rnd.nextPositiveInt() % 200) * Dates.HOUR_MICROS;
+                        final String sym = rnd.nextChars(1).toString();
+                        final int value = k * N + i;
+                        TableWriter.Row r = writer.newRow(timestamp);
+                        r.putSym(0, sym);
+                        r.putStr(1, rnd.nextChars(5));
+                        r.putInt(2, value);
+                        r.append();
+                        expected.put(timestamp + ":" + sym, value);
+                    }
+                    writer.commit();
+                    Assert.assertEquals(expected.size(), writer.size());
+                }
+            }
+
+            try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                Assert.assertEquals(expected.size(), reader.size());
+                final RecordCursor cursor = reader.getCursor();
+                final Record record = cursor.getRecord();
+                long prev = Long.MIN_VALUE;
+                while (cursor.hasNext()) {
+                    final long timestamp = record.getTimestamp(3);
+                    Assert.assertTrue(timestamp >= prev);
+                    Assert.assertEquals(expected.get(timestamp + ":" + record.getSym(0)), record.getInt(2));
+                    prev = timestamp;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDedupReplaceRows() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                writer.setDedupKey("sym");
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "a", "s3", 3);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "a", "s4", 4);
+                writer.commit();
+                Assert.assertEquals(4, writer.size());
+            }
+
+            // key is read back from metadata
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                // retry of committed rows, one of them changed
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "b", "s5", 5);
+                // new key at existing timestamp
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "c", "s6", 6);
+                // duplicates within transaction, last one wins
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "a", "s7", 7);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "a", "s8", 8);
+                writer.commit();
+                Assert.assertEquals(5, writer.size());
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "b\ts5\t5\t2018-01-02T10:00:00.000000Z\n" +
+                    "a\ts3\t3\t2018-01-02T12:00:00.000000Z\n" +
+                    "c\ts6\t6\t2018-01-02T12:00:00.000000Z\n" +
+                    "a\ts8\t8\t2018-01-03T10:00:00.000000Z\n");
+
+            try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                assertSymbolIndex(reader, "a", 1, 3, 8);
+                assertSymbolIndex(reader, "b", 5);
+                assertSymbolIndex(reader, "c", 6);
+            }
+        });
+    }
+
+    @Test
+    public void testDedupReplaceRowsNonPartitioned() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.NONE);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                writer.setDedupKey("sym", "i");
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T11:00:00.000Z", "a", "s2", 1);
+                writer.commit();
+
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s3", 1);
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s4", 2);
+                appendRow(writer, "2018-01-02T11:00:00.000Z", null, "s5", 1);
+                writer.commit();
+                Assert.assertEquals(4, writer.size());
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "a\ts3\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "a\ts4\t2\t2018-01-02T10:00:00.000000Z\n" +
+                    "a\ts2\t1\t2018-01-02T11:00:00.000000Z\n" +
+                    "\ts5\t1\t2018-01-02T11:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testDedupTimestampOnly() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                writer.setDedupKey();
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-02T11:00:00.000Z", "c", "s3", 3);
+                writer.commit();
+                Assert.assertEquals(2, writer.size());
+
+                appendRow(writer, "2018-01-02T11:00:00.000Z", "d", "s4", 4);
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "e", "s5", 5);
+                writer.commit();
+                Assert.assertEquals(2, writer.size());
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "e\ts5\t5\t2018-01-02T10:00:00.000000Z\n" +
+                    "d\ts4\t4\t2018-01-02T11:00:00.000000Z\n");
+        });
+    }
+
     @Test
     public void testDefaultPartition() throws Exception {
         populateTable(FF);
@@ -1767,6 +2320,391 @@ public class TableWriterTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testOutOfOrderCancelRow() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "b", "s2", 2);
+
+                TableWriter.Row r = writer.newRow(DateFormatUtils.parseDateTime("2018-01-02T11:00:00.000Z"));
+                r.putSym(0, "c");
+                r.putStr(1, "cancelled");
+                r.cancel();
+
+                appendRow(writer, "2018-01-02T11:30:00.000Z", "d", "s4", 4);
+                writer.commit();
+                Assert.assertEquals(3, writer.size());
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "d\ts4\t4\t2018-01-02T11:30:00.000000Z\n" +
+                    "b\ts2\t2\t2018-01-02T12:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testOutOfOrderMergeColumnTop() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T11:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "a", "s3", 3);
+                appendRow(writer, "2018-01-02T13:00:00.000Z", "b", "s4", 4);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "a", "s5", 5);
+                appendRow(writer, "2018-01-03T12:00:00.000Z", "b", "s6", 6);
+                writer.commit();
+
+                // first partition has no files for new columns, last partition has column top
+                writer.addColumn("l", ColumnType.LONG);
+                writer.addColumn("s", ColumnType.STRING);
+
+                appendRow(writer, "2018-01-03T13:00:00.000Z", "c", "s7", 7, 70, "x7");
+                writer.commit();
+
+                // out-of-order rows land in the middle of both partitions, below column top
+                appendRow(writer, "2018-01-02T11:30:00.000Z", "c", "s8", 8, 80, "x8");
+                appendRow(writer, "2018-01-03T11:00:00.000Z", "a", "s9", 9, 90, "x9");
+                writer.commit();
+                Assert.assertEquals(9, writer.size());
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\tl\ts\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\tNaN\t\n" +
+                    "b\ts2\t2\t2018-01-02T11:00:00.000000Z\tNaN\t\n" +
+                    "c\ts8\t8\t2018-01-02T11:30:00.000000Z\t80\tx8\n" +
+                    "a\ts3\t3\t2018-01-02T12:00:00.000000Z\tNaN\t\n" +
+                    "b\ts4\t4\t2018-01-02T13:00:00.000000Z\tNaN\t\n" +
+                    "a\ts5\t5\t2018-01-03T10:00:00.000000Z\tNaN\t\n" +
+                    "a\ts9\t9\t2018-01-03T11:00:00.000000Z\t90\tx9\n" +
+                    "b\ts6\t6\t2018-01-03T12:00:00.000000Z\tNaN\t\n" +
+                    "c\ts7\t7\t2018-01-03T13:00:00.000000Z\t70\tx7\n");
+        });
+    }
+
+    @Test
+    public void testOutOfOrderMergeFailureRollsBackTransaction() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            final FilesFacade ff = new FilesFacadeImpl() {
+                boolean fail = true;
+
+                @Override
+                public int mkdirs(LPSZ path, int mode) {
+                    if (fail && Chars.contains(path, "2018-01-02.1")) {
+                        fail = false;
+                        return -1;
+                    }
+                    return super.mkdirs(path, mode);
+                }
+            };
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public boolean isOutOfOrderEnabled() {
+                    return true;
+                }
+            };
+
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                writer.commit();
+
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-02T09:00:00.000Z", "c", "s3", 3);
+                try {
+                    writer.commit();
+                    Assert.fail();
+                } catch (CairoException ignore) {
+                }
+
+                // in-order row is rolled back together with out-of-order one
+                Assert.assertFalse(writer.inTransaction());
+                Assert.assertEquals(1, writer.size());
+                assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                        "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n");
+
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-02T09:00:00.000Z", "c", "s3", 3);
+                writer.commit();
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "c\ts3\t3\t2018-01-02T09:00:00.000000Z\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "b\ts2\t2\t2018-01-03T10:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testOutOfOrderMergeWritesNewPartitionVersion() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            // previous versions of merged partitions are captured with size of their "i" column when they are removed
+            final ObjList<String> removedDirs = new ObjList<>();
+            final LongList removedSizes = new LongList();
+            final FilesFacade ff = new FilesFacadeImpl() {
+                @Override
+                public boolean rmdir(Path name) {
+                    final String dir = Chars.stringOf(name);
+                    removedDirs.add(dir.substring(dir.lastIndexOf(Files.SEPARATOR) + 1));
+                    removedSizes.add(new File(dir, "i.d").length());
+                    return super.rmdir(name);
+                }
+            };
+
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public boolean isOutOfOrderEnabled() {
+                    return true;
+                }
+            };
+
+            try (TableWriter writer = new TableWriter(configuration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T11:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "a", "s3", 3);
+                appendRow(writer, "2018-01-02T13:00:00.000Z", "b", "s4", 4);
+                appendRow(writer, "2018-01-02T14:00:00.000Z", "a", "s5", 5);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "b", "s6", 6);
+                appendRow(writer, "2018-01-03T11:00:00.000Z", "a", "s7", 7);
+                appendRow(writer, "2018-01-03T12:00:00.000Z", "b", "s8", 8);
+                appendRow(writer, "2018-01-03T13:00:00.000Z", "a", "s9", 9);
+                writer.commit();
+
+                appendRow(writer, "2018-01-02T12:30:00.000Z", "c", "s10", 10);
+                appendRow(writer, "2018-01-03T11:30:00.000Z", "c", "s11", 11);
+                writer.commit();
+
+                // partitions are rewritten to new directories, previous ones are removed as they were
+                Assert.assertEquals(2, removedDirs.size());
+                Assert.assertEquals("2018-01-02", removedDirs.getQuick(0));
+                Assert.assertEquals(5 * 4, removedSizes.getQuick(0));
+                Assert.assertEquals("2018-01-03", removedDirs.getQuick(1));
+                Assert.assertEquals(6 * 4, new File(new File(new File(root.toString(), "x"), "2018-01-02.1"), "i.d").length());
+
+                // active partition continues to append after merge
+                appendRow(writer, "2018-01-03T14:00:00.000Z", "c", "s12", 12);
+                writer.commit();
+                Assert.assertEquals(12, writer.size());
+
+                appendRow(writer, "2018-01-02T15:00:00.000Z", "c", "s13", 13);
+                writer.commit();
+                Assert.assertEquals("2018-01-02.1", removedDirs.getQuick(2));
+            }
+
+            // writer reopens active partition in its current version
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-03T15:00:00.000Z", "a", "s14", 14);
+                writer.commit();
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "b\ts2\t2\t2018-01-02T11:00:00.000000Z\n" +
+                    "a\ts3\t3\t2018-01-02T12:00:00.000000Z\n" +
+                    "c\ts10\t10\t2018-01-02T12:30:00.000000Z\n" +
+                    "b\ts4\t4\t2018-01-02T13:00:00.000000Z\n" +
+                    "a\ts5\t5\t2018-01-02T14:00:00.000000Z\n" +
+                    "c\ts13\t13\t2018-01-02T15:00:00.000000Z\n" +
+                    "b\ts6\t6\t2018-01-03T10:00:00.000000Z\n" +
+                    "a\ts7\t7\t2018-01-03T11:00:00.000000Z\n" +
+                    "c\ts11\t11\t2018-01-03T11:30:00.000000Z\n" +
+                    "b\ts8\t8\t2018-01-03T12:00:00.000000Z\n" +
+                    "a\ts9\t9\t2018-01-03T13:00:00.000000Z\n" +
+                    "c\ts12\t12\t2018-01-03T14:00:00.000000Z\n" +
+                    "a\ts14\t14\t2018-01-03T15:00:00.000000Z\n");
+
+            try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                assertSymbolIndex(reader, "a", 1, 3, 5, 7, 9, 14);
+                assertSymbolIndex(reader, "b", 2, 4, 6, 8);
+                assertSymbolIndex(reader, "c", 10, 13, 11, 12);
+            }
+        });
+    }
+
+    @Test
+    public void testOutOfOrderMergeKeepsReaderSnapshot() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "a", "s3", 3);
+                writer.commit();
+
+                final String expected = "sym\tstr\ti\ttimestamp\n" +
+                        "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                        "b\ts2\t2\t2018-01-02T12:00:00.000000Z\n" +
+                        "a\ts3\t3\t2018-01-03T10:00:00.000000Z\n";
+
+                try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                    assertThat(expected, reader.getCursor(), reader.getMetadata(), true);
+
+                    appendRow(writer, "2018-01-02T11:00:00.000Z", "c", "s4", 4);
+                    appendRow(writer, "2018-01-03T09:00:00.000Z", "c", "s5", 5);
+                    writer.commit();
+
+                    // files reader has open are not modified by merge
+                    assertThat(expected, reader.getCursor(), reader.getMetadata(), true);
+
+                    Assert.assertTrue(reader.reload());
+                    assertThat("sym\tstr\ti\ttimestamp\n" +
+                            "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                            "c\ts4\t4\t2018-01-02T11:00:00.000000Z\n" +
+                            "b\ts2\t2\t2018-01-02T12:00:00.000000Z\n" +
+                            "c\ts5\t5\t2018-01-03T09:00:00.000000Z\n" +
+                            "a\ts3\t3\t2018-01-03T10:00:00.000000Z\n", reader.getCursor(), reader.getMetadata(), true);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testOutOfOrderMergeLeftoverIsRemoved() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "b", "s2", 2);
+                writer.commit();
+            }
+
+            // new version of partition that was written by merge which did not commit
+            final File leftover = new File(new File(root.toString(), "x"), "2018-01-02.1");
+            Assert.assertTrue(leftover.mkdirs());
+            Assert.assertTrue(new File(leftover, "i.d").createNewFile());
+
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                Assert.assertFalse(leftover.exists());
+                appendRow(writer, "2018-01-02T09:00:00.000Z", "c", "s3", 3);
+                writer.commit();
+            }
+
+            Assert.assertTrue(leftover.exists());
+            Assert.assertFalse(new File(new File(root.toString(), "x"), "2018-01-02").exists());
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "c\ts3\t3\t2018-01-02T09:00:00.000000Z\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "b\ts2\t2\t2018-01-03T10:00:00.000000Z\n");
+        });
+    }
+
+    @Test
+    public void testOutOfOrderMergeNonPartitioned() throws Exception {
+        testOutOfOrderMerge(PartitionBy.NONE);
+    }
+
+    @Test
+    public void testOutOfOrderMergePartitioned() throws Exception {
+        testOutOfOrderMerge(PartitionBy.DAY);
+    }
+
+    @Test
+    public void testOutOfOrderMergeRandom() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            final int N = 20000;
+            final Rnd rnd = new Rnd();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                for (int k = 0; k < 2; k++) {
+                    for (int i = 0; i < N; i++) {
+                        TableWriter.Row r = writer.newRow(ts + rnd.nextPositiveLong() % (5 * Dates.DAY_MICROS));
+                        r.putSym(0, rnd.nextChars(1));
+                        r.putStr(1, rnd.nextChars(5));
+                        r.putInt(2, i);
+                        r.append();
+                    }
+                    writer.commit();
+                }
+                Assert.assertEquals(2 * N, writer.size());
+            }
+
+            try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                Assert.assertEquals(2 * N, reader.size());
+                final RecordCursor cursor = reader.getCursor();
+                final Record record = cursor.getRecord();
+                long prev = Long.MIN_VALUE;
+                long count = 0;
+                while (cursor.hasNext()) {
+                    final long timestamp = record.getTimestamp(3);
+                    Assert.assertTrue(timestamp >= prev);
+                    Assert.assertEquals(5, record.getStr(1).length());
+                    prev = timestamp;
+                    count++;
+                }
+                Assert.assertEquals(2 * N, count);
+            }
+        });
+    }
+
+    @Test
+    public void testOutOfOrderMergeReaderReload() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (
+                    TableWriter writer = new TableWriter(outOfOrderConfiguration, "x");
+                    TableReader reader = new TableReader(outOfOrderConfiguration, "x")
+            ) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "b", "s2", 2);
+                writer.commit();
+
+                Assert.assertTrue(reader.reload());
+                assertThat("sym\tstr\ti\ttimestamp\n" +
+                        "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                        "b\ts2\t2\t2018-01-03T10:00:00.000000Z\n", reader.getCursor(), reader.getMetadata(), true);
+
+                appendRow(writer, "2018-01-02T09:00:00.000Z", "c", "s3", 3);
+                appendRow(writer, "2018-01-01T09:00:00.000Z", "a", "s4", 4);
+                writer.commit();
+
+                Assert.assertTrue(reader.reload());
+                Assert.assertEquals(4, reader.size());
+                assertThat("sym\tstr\ti\ttimestamp\n" +
+                        "a\ts4\t4\t2018-01-01T09:00:00.000000Z\n" +
+                        "c\ts3\t3\t2018-01-02T09:00:00.000000Z\n" +
+                        "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                        "b\ts2\t2\t2018-01-03T10:00:00.000000Z\n", reader.getCursor(), reader.getMetadata(), true);
+            }
+        });
+    }
+
+    @Test
+    public void testOutOfOrderRollback() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(PartitionBy.DAY);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                writer.commit();
+
+                appendRow(writer, "2018-01-02T09:00:00.000Z", "b", "s2", 2);
+                Assert.assertTrue(writer.inTransaction());
+                writer.rollback();
+                Assert.assertFalse(writer.inTransaction());
+                writer.commit();
+                Assert.assertEquals(1, writer.size());
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n");
+        });
+    }
+
     @Test
     public void testRemoveColumnAfterTimestamp() throws Exception {
         try (TableModel model = new TableModel(configuration, "ABC", PartitionBy.DAY)
@@ -2029,6 +2967,86 @@ public class TableWriterTest extends AbstractCairoTest {
         testUnrecoverableRemoveColumn(new X());
     }
 
+    @Test
+    public void testRemoveExpiredPartitions() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(configuration, "w", PartitionBy.DAY).col("l", ColumnType.LONG).timestamp()) {
+                CairoTestUtils.create(model);
+            }
+
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableReader reader = new TableReader(configuration, "w")) {
+                try (TableWriter writer = new TableWriter(configuration, "w")) {
+                    Assert.assertEquals(0, writer.getRetention());
+                    appendDays(writer, ts, 5, 10);
+                    Assert.assertEquals(0, writer.removeExpiredPartitions());
+
+                    Assert.assertTrue(reader.reload());
+                    Assert.assertEquals(50, reader.size());
+
+                    writer.setRetention(2 * Dates.DAY_MICROS);
+                    // 2018-01-01 and 2018-01-02 end before 2018-01-03T09:00
+                    Assert.assertEquals(2, writer.removeExpiredPartitions());
+                    Assert.assertEquals(0, writer.removeExpiredPartitions());
+                    Assert.assertEquals(30, writer.size());
+
+                    // reader keeps data it has already loaded
+                    Assert.assertEquals(50, reader.size());
+                }
+
+                Assert.assertTrue(reader.reload());
+                Assert.assertEquals(30, reader.size());
+                RecordCursor cursor = reader.getCursor();
+                Record record = cursor.getRecord();
+                Assert.assertTrue(cursor.hasNext());
+                Assert.assertEquals(20, record.getLong(0));
+            }
+
+            try (TableWriter writer = new TableWriter(configuration, "w")) {
+                Assert.assertEquals(2 * Dates.DAY_MICROS, writer.getRetention());
+            }
+        });
+    }
+
+    @Test
+    public void testRemoveExpiredPartitionsByEngine() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(configuration, "w", PartitionBy.DAY).col("l", ColumnType.LONG).timestamp()) {
+                CairoTestUtils.create(model);
+            }
+
+            try (TableModel model = new TableModel(configuration, "x", PartitionBy.DAY).col("l", ColumnType.LONG).timestamp()) {
+                CairoTestUtils.create(model);
+            }
+
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(configuration)) {
+                try (TableWriter writer = engine.getWriter("w")) {
+                    appendDays(writer, ts, 5, 10);
+                    writer.setRetention(Dates.DAY_MICROS);
+                    // retention must survive metadata rewrite
+                    writer.addColumn("c", ColumnType.INT);
+                }
+
+                try (TableWriter writer = engine.getWriter("x")) {
+                    appendDays(writer, ts, 5, 10);
+                }
+
+                Assert.assertTrue(engine.removeExpiredPartitions());
+                Assert.assertFalse(engine.removeExpiredPartitions());
+
+                try (TableWriter writer = engine.getWriter("w")) {
+                    Assert.assertEquals(Dates.DAY_MICROS, writer.getRetention());
+                    Assert.assertEquals(20, writer.size());
+                }
+
+                try (TableWriter writer = engine.getWriter("x")) {
+                    Assert.assertEquals(50, writer.size());
+                }
+            }
+        });
+    }
+
     @Test
     public void testRemoveTimestamp() throws Exception {
         try (TableModel model = new TableModel(configuration, "ABC", PartitionBy.NONE)
@@ -2085,6 +3103,29 @@ public class TableWriterTest extends AbstractCairoTest {
         }
     }
 
+    @Test
+    public void testRetentionRequiresPartitions() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            create(FF, PartitionBy.NONE, 4);
+            try (TableWriter writer = new TableWriter(configuration, PRODUCT)) {
+                try {
+                    writer.setRetention(Dates.DAY_MICROS);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "not supported");
+                }
+
+                try {
+                    writer.setRetention(-1);
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "Invalid retention");
+                }
+                Assert.assertEquals(0, writer.getRetention());
+            }
+        });
+    }
+
     @Test
     public void testRollbackNonPartitioned() throws Exception {
         final int N = 20000;
@@ -2356,6 +3397,71 @@ public class TableWriterTest extends AbstractCairoTest {
         testSymbolCacheFlag(false);
     }
 
+    private void appendDays(TableWriter writer, long ts, int days, int rowsPerDay) {
+        long value = 0;
+        for (int d = 0; d < days; d++) {
+            for (int i = 0; i < rowsPerDay; i++) {
+                TableWriter.Row r = writer.newRow(ts + d * Dates.DAY_MICROS + i * Dates.HOUR_MICROS);
+                r.putLong(0, value++);
+                r.append();
+            }
+        }
+        writer.commit();
+    }
+
+    private void appendBufferedRow(TableWriter writer, String timestamp, String sym, String str, int i) throws NumericException {
+        TableWriter.Row r = writer.newBufferedRow(DateFormatUtils.parseDateTime(timestamp));
+        r.putSym(0, sym);
+        r.putStr(1, str);
+        r.putInt(2, i);
+        r.append();
+    }
+
+    private void appendRow(TableWriter writer, String timestamp, String sym, String str, int i) throws NumericException {
+        TableWriter.Row r = writer.newRow(DateFormatUtils.parseDateTime(timestamp));
+        r.putSym(0, sym);
+        r.putStr(1, str);
+        r.putInt(2, i);
+        r.append();
+    }
+
+    private void appendRow(TableWriter writer, String timestamp, String sym, String str, int i, long l, String s) throws NumericException {
+        TableWriter.Row r = writer.newRow(DateFormatUtils.parseDateTime(timestamp));
+        r.putSym(0, sym);
+        r.putStr(1, str);
+        r.putInt(2, i);
+        r.putLong(4, l);
+        r.putStr(5, s);
+        r.append();
+    }
+
+    private void assertOutOfOrderTable(String expected) throws IOException {
+        try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+            assertThat(expected, reader.getCursor(), reader.getMetadata(), true);
+        }
+    }
+
+    private void assertSymbolIndex(TableReader reader, CharSequence symbol, long... expectedRows) {
+        final int key = reader.getSymbolMapReader(0).getQuick(symbol);
+        final LongList rows = new LongList();
+        for (int partitionIndex = 0, n = reader.getPartitionCount(); partitionIndex < n; partitionIndex++) {
+            final long partitionRowCount = reader.openPartition(partitionIndex);
+            if (partitionRowCount < 1) {
+                continue;
+            }
+            final BitmapIndexReader indexReader = reader.getBitmapIndexReader(reader.getColumnBase(partitionIndex), 0, BitmapIndexReader.DIR_FORWARD);
+            final ReadOnlyColumn column = reader.getColumn(TableReader.getPrimaryColumnIndex(reader.getColumnBase(partitionIndex), 2));
+            final RowCursor cursor = indexReader.getCursor(true, TableUtils.toIndexKey(key), 0, Long.MAX_VALUE);
+            while (cursor.hasNext()) {
+                rows.add(column.getInt(cursor.next() * 4));
+            }
+        }
+        Assert.assertEquals(expectedRows.length, rows.size());
+        for (int i = 0; i < expectedRows.length; i++) {
+            Assert.assertEquals(expectedRows[i], rows.getQuick(i));
+        }
+    }
+
     private long append10KNoSupplier(long ts, Rnd rnd, TableWriter writer) {
         int productId = writer.getColumnIndex("productId");
         int productName = writer.getColumnIndex("productName");
@@ -2420,6 +3526,27 @@ public class TableWriterTest extends AbstractCairoTest {
         }
     }
 
+    private void createBlockTable(int partitionBy) {
+        try (TableModel model = new TableModel(configuration, "x", partitionBy)
+                .col("sym", ColumnType.SYMBOL).indexed(true, 4)
+                .col("str", ColumnType.STRING)
+                .col("i", ColumnType.INT)
+                .col("d", ColumnType.DOUBLE)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+
+    private void createOutOfOrderTable(int partitionBy) {
+        try (TableModel model = new TableModel(outOfOrderConfiguration, "x", partitionBy)
+                .col("sym", ColumnType.SYMBOL).indexed(true, 4)
+                .col("str", ColumnType.STRING)
+                .col("i", ColumnType.INT)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+
     private void create(FilesFacade ff, int partitionBy, int N) {
         try (TableModel model = new TableModel(new DefaultCairoConfiguration(root) {
             @Override
@@ -2824,6 +3951,49 @@ public class TableWriterTest extends AbstractCairoTest {
         });
     }
 
+    private void testOutOfOrderMerge(int partitionBy) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createOutOfOrderTable(partitionBy);
+            try (TableWriter writer = new TableWriter(outOfOrderConfiguration, "x")) {
+                appendRow(writer, "2018-01-02T10:00:00.000Z", "a", "s1", 1);
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "b", "s2", 2);
+                appendRow(writer, "2018-01-03T10:00:00.000Z", "a", "s3", 3);
+                writer.commit();
+
+                // into existing partition, in front of first partition and into active partition
+                appendRow(writer, "2018-01-03T09:00:00.000Z", "c", "s4", 4);
+                appendRow(writer, "2018-01-02T12:00:00.000Z", "c", null, 5);
+                appendRow(writer, "2018-01-01T10:00:00.000Z", "b", "s6", 6);
+                appendRow(writer, "2018-01-02T11:00:00.000Z", "a", "s7", 7);
+                // in order
+                appendRow(writer, "2018-01-03T11:00:00.000Z", "b", "s8", 8);
+                writer.commit();
+                Assert.assertEquals(8, writer.size());
+                Assert.assertFalse(writer.inTransaction());
+
+                appendRow(writer, "2018-01-03T12:00:00.000Z", "a", "s9", 9);
+                writer.commit();
+            }
+
+            assertOutOfOrderTable("sym\tstr\ti\ttimestamp\n" +
+                    "b\ts6\t6\t2018-01-01T10:00:00.000000Z\n" +
+                    "a\ts1\t1\t2018-01-02T10:00:00.000000Z\n" +
+                    "a\ts7\t7\t2018-01-02T11:00:00.000000Z\n" +
+                    "b\ts2\t2\t2018-01-02T12:00:00.000000Z\n" +
+                    "c\t\t5\t2018-01-02T12:00:00.000000Z\n" +
+                    "c\ts4\t4\t2018-01-03T09:00:00.000000Z\n" +
+                    "a\ts3\t3\t2018-01-03T10:00:00.000000Z\n" +
+                    "b\ts8\t8\t2018-01-03T11:00:00.000000Z\n" +
+                    "a\ts9\t9\t2018-01-03T12:00:00.000000Z\n");
+
+            try (TableReader reader = new TableReader(outOfOrderConfiguration, "x")) {
+                assertSymbolIndex(reader, "a", 1, 7, 3, 9);
+                assertSymbolIndex(reader, "b", 6, 2, 8);
+                assertSymbolIndex(reader, "c", 5, 4);
+            }
+        });
+    }
+
     private void testOutOfOrderRecords(int N) throws Exception {
         TestUtils.assertMemoryLeak(() -> {
             try (TableWriter writer = new TableWriter(configuration, PRODUCT)) {
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.cairo;
+
+import com.questdb.mp.*;
+import com.questdb.std.ObjHashSet;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Work scheduler with worker threads that run jobs engine adds, including indexing and data frame lanes.
+ */
+public class TestWorkScheduler implements CairoWorkScheduler {
+    private final int workerCount;
+    private final CountDownLatch haltLatch;
+    private final Worker[] workers;
+    private final RingQueue<DataFrameLaneEntry> laneQueue = new RingQueue<>(DataFrameLaneEntry::new, 64);
+    private final Sequence lanePubSeq = new MPSequence(64);
+    private final Sequence laneSubSeq = new MCSequence(64);
+    private final RingQueue<ColumnIndexerEntry> indexerQueue = new RingQueue<>(ColumnIndexerEntry::new, 1024);
+    private final Sequence indexerPubSeq = new MPSequence(1024);
+    private final Sequence indexerSubSeq = new MCSequence(1024);
+    private final ObjHashSet<Job> jobs = new ObjHashSet<>();
+
+    public TestWorkScheduler(int workerCount) {
+        this.workerCount = workerCount;
+        this.haltLatch = new CountDownLatch(workerCount);
+        this.workers = new Worker[workerCount];
+    }
+
+    @Override
+    public void addJob(Job job) {
+        jobs.add(job);
+    }
+
+    @Override
+    public Sequence getDataFrameLanePubSequence() {
+        return lanePubSeq;
+    }
+
+    @Override
+    public RingQueue<DataFrameLaneEntry> getDataFrameLaneQueue() {
+        return laneQueue;
+    }
+
+    @Override
+    public Sequence getDataFrameLaneSubSequence() {
+        return laneSubSeq;
+    }
+
+    @Override
+    public GroupCommit getGroupCommit() {
+        return null;
+    }
+
+    @Override
+    public Sequence getIndexerPubSequence() {
+        return indexerPubSeq;
+    }
+
+    @Override
+    public RingQueue<ColumnIndexerEntry> getIndexerQueue() {
+        return indexerQueue;
+    }
+
+    @Override
+    public Sequence getIndexerSubSequence() {
+        return indexerSubSeq;
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void halt() throws InterruptedException {
+        for (int i = 0; i < workerCount; i++) {
+            workers[i].halt();
+        }
+        haltLatch.await();
+    }
+
+    public void start() {
+        indexerPubSeq.then(indexerSubSeq).then(indexerPubSeq);
+        lanePubSeq.then(laneSubSeq).then(lanePubSeq);
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Worker(jobs, haltLatch);
+            workers[i].start();
+        }
+    }
+}
@@ -0,0 +1,715 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.std.Chars;
+import com.questdb.std.Files;
+import com.questdb.std.FilesFacade;
+import com.questdb.std.FilesFacadeImpl;
+import com.questdb.std.Unsafe;
+import com.questdb.std.microtime.DateFormatUtils;
+import com.questdb.std.str.LPSZ;
+import com.questdb.std.str.Path;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WalWriterTest extends AbstractCairoTest {
+
+    private final CairoConfiguration walConfiguration = new DefaultCairoConfiguration(root) {
+        @Override
+        public long getWalSegmentRolloverRowCount() {
+            return 100;
+        }
+
+        @Override
+        public boolean isOutOfOrderEnabled() {
+            return true;
+        }
+    };
+
+    @Test
+    public void testApplyIsAtomicForReaders() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    try (WalWriter w1 = engine.getWalWriter("x"); WalWriter w2 = engine.getWalWriter("x")) {
+                        Assert.assertNotEquals(w1.getWalId(), w2.getWalId());
+                        appendRows(w1, ts, 0, 2, 10);
+                        Assert.assertEquals(1, w1.commit());
+                        appendRows(w2, ts, 1, 2, 10);
+                        Assert.assertEquals(2, w2.commit());
+                        // nothing to commit
+                        Assert.assertEquals(-1, w2.commit());
+
+                        Assert.assertFalse(reader.reload());
+                        Assert.assertEquals(0, reader.size());
+
+                        Assert.assertTrue(engine.applyWal());
+                        Assert.assertFalse(engine.applyWal());
+                    }
+
+                    Assert.assertTrue(reader.reload());
+                    assertRows(reader, ts, 20);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testApplyWithOutOfOrderRowsIsSingleTransaction() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    try (WalWriter writer = engine.getWalWriter("x")) {
+                        appendRows(writer, ts, 10, 1, 10);
+                        writer.commit();
+                        Assert.assertTrue(engine.applyWal());
+                        Assert.assertTrue(reader.reload());
+                        Assert.assertEquals(10, reader.size());
+                        final long txn = reader.getTxn();
+
+                        // rows both older and newer than table maximum timestamp
+                        appendRows(writer, ts, 0, 1, 10);
+                        writer.commit();
+                        appendRows(writer, ts, 20, 1, 10);
+                        writer.commit();
+                        Assert.assertTrue(engine.applyWal());
+
+                        // readers cannot observe appended rows without merged ones
+                        Assert.assertTrue(reader.reload());
+                        Assert.assertEquals(txn + 1, reader.getTxn());
+                    }
+                    assertRows(reader, ts, 30);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final int threadCount = 4;
+            final int rowCount = 1000;
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            final CyclicBarrier barrier = new CyclicBarrier(threadCount);
+            final CountDownLatch latch = new CountDownLatch(threadCount);
+            final AtomicInteger errors = new AtomicInteger();
+
+            try (Engine engine = new Engine(walConfiguration)) {
+                for (int t = 0; t < threadCount; t++) {
+                    final int thread = t;
+                    new Thread(() -> {
+                        try {
+                            barrier.await();
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                            latch.countDown();
+                            return;
+                        }
+                        try (WalWriter writer = engine.getWalWriter("x")) {
+                            for (int i = 0; i < rowCount; i += 50) {
+                                appendRows(writer, ts, i * threadCount + thread, threadCount, 50);
+                                writer.commit();
+                                // apply concurrently with producers
+                                engine.applyWal();
+                            }
+                        } catch (Throwable e) {
+                            e.printStackTrace();
+                            errors.incrementAndGet();
+                        } finally {
+                            latch.countDown();
+                        }
+                    }).start();
+                }
+                latch.await();
+                Assert.assertEquals(0, errors.get());
+
+                engine.applyWal();
+
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    assertRows(reader, ts, threadCount * rowCount);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testFixedSizeColumnsThenVarSizeColumns() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(walConfiguration, "y", PartitionBy.DAY)
+                    .col("i", ColumnType.INT)
+                    .col("l", ColumnType.LONG)
+                    .timestamp()) {
+                CairoTestUtils.create(model);
+            }
+            createTable();
+
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (WalWriter writer = engine.getWalWriter("y")) {
+                    for (int i = 0; i < 3; i++) {
+                        WalWriter.Row r = writer.newRow(ts + i);
+                        r.putInt(0, i);
+                        r.putLong(1, 10 * i);
+                        r.append();
+                    }
+                    writer.commit();
+                }
+                Assert.assertTrue(engine.applyWal());
+
+                // segment memories of fixed size columns are reused for var size columns of another table
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    appendRows(writer, ts, 0, 1, 10);
+                    writer.commit();
+                }
+                Assert.assertTrue(engine.applyWal());
+
+                try (TableReader reader = engine.getReader("y", -1)) {
+                    assertThat("i\tl\ttimestamp\n" +
+                            "0\t0\t2018-01-01T00:00:00.000000Z\n" +
+                            "1\t10\t2018-01-01T00:00:00.000001Z\n" +
+                            "2\t20\t2018-01-01T00:00:00.000002Z\n", reader.getCursor(), reader.getMetadata(), true);
+                }
+
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    assertRows(reader, ts, 10);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testIoErrorIsRetried() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final AtomicInteger failCount = new AtomicInteger(1);
+            final FilesFacade ff = new FilesFacadeImpl() {
+                @Override
+                public int errno() {
+                    return 5;
+                }
+
+                @Override
+                public long openRO(LPSZ name) {
+                    if (Chars.contains(name, TableUtils.WAL_DIR_NAME) && Chars.endsWith(name, ".d") && failCount.getAndDecrement() > 0) {
+                        return -1;
+                    }
+                    return super.openRO(name);
+                }
+            };
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public boolean isOutOfOrderEnabled() {
+                    return true;
+                }
+            };
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(configuration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    appendRows(writer, ts, 0, 1, 10);
+                    writer.commit();
+                    Assert.assertFalse(engine.applyWal());
+                    Assert.assertFalse(engine.isWalSuspended("x"));
+                    Assert.assertTrue(engine.applyWal());
+                }
+                Assert.assertTrue(engine.applyWal());
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    assertRows(reader, ts, 10);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testNullsAndRollback() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    WalWriter.Row r = writer.newRow(ts);
+                    r.putInt(writer.getColumnIndex("i"), 1);
+                    r.append();
+
+                    r = writer.newRow(ts + 1);
+                    r.putSym(0, "abc");
+                    r.putStr(1, "to be cancelled");
+                    r.cancel();
+
+                    r = writer.newRow(ts + 2);
+                    r.putSym(0, "abc");
+                    r.putInt(2, 3);
+                    r.append();
+                    Assert.assertEquals(2, writer.size());
+                    writer.commit();
+                    Assert.assertEquals(0, writer.size());
+
+                    r = writer.newRow(ts + 3);
+                    r.putStr(1, "rolled back");
+                    r.append();
+                    writer.rollback();
+
+                    r = writer.newRow(ts + 4);
+                    r.putStr(1, "xyz");
+                    r.append();
+
+                    // uncommitted row is discarded on close
+                    r = writer.newRow(ts + 5);
+                    r.append();
+                    writer.commit();
+
+                    r = writer.newRow(ts + 6);
+                    r.append();
+                }
+
+                Assert.assertTrue(engine.applyWal());
+
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    final String expected = "sym\tstr\ti\ttimestamp\n" +
+                            "\t\t1\t2018-01-01T00:00:00.000000Z\n" +
+                            "abc\t\t3\t2018-01-01T00:00:00.000002Z\n" +
+                            "\txyz\tNaN\t2018-01-01T00:00:00.000004Z\n" +
+                            "\t\tNaN\t2018-01-01T00:00:00.000005Z\n";
+                    assertThat(expected, reader.getCursor(), reader.getMetadata(), true);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testOutOfOrderRequired() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            try (Engine engine = new Engine(configuration)) {
+                try {
+                    engine.getWalWriter("x");
+                    Assert.fail();
+                } catch (CairoException e) {
+                    TestUtils.assertContains(e.getMessage(), "out-of-order");
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testPermanentErrorSuspendsTable() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    appendRows(writer, ts, 0, 1, 10);
+                    writer.commit();
+
+                    try (TableWriter w = engine.getWriter("x")) {
+                        w.removeColumn("i");
+                        w.addColumn("i", ColumnType.LONG);
+                    }
+
+                    Assert.assertFalse(engine.applyWal());
+                    Assert.assertTrue(engine.isWalSuspended("x"));
+                    Assert.assertFalse(engine.applyWal());
+                }
+
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    Assert.assertEquals(0, reader.size());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testReplayAfterRestart() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    appendRows(writer, ts, 0, 1, 10);
+                    writer.commit();
+                    Assert.assertTrue(engine.applyWal());
+                    // segment rolls over, transactions span two segments
+                    appendRows(writer, ts, 10, 1, 100);
+                    writer.commit();
+                    appendRows(writer, ts, 110, 1, 10);
+                    writer.commit();
+                }
+            }
+
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    Assert.assertEquals(10, reader.size());
+                    Assert.assertTrue(engine.applyWal());
+                    Assert.assertFalse(engine.applyWal());
+                    Assert.assertTrue(reader.reload());
+                    assertRows(reader, ts, 120);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testReplayDoesNotReapplyCommittedBatch() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            final WalWriter[] late = new WalWriter[1];
+            final FilesFacade ff = new FilesFacadeImpl() {
+                long txnFd = -1;
+
+                @Override
+                public int fsync(long fd) {
+                    if (fd == txnFd && late[0] != null) {
+                        // transaction is published while batch is being applied,
+                        // it keeps records of the log from being discarded
+                        final WalWriter writer = late[0];
+                        late[0] = null;
+                        writer.commit();
+                    }
+                    return super.fsync(fd);
+                }
+
+                @Override
+                public long openRW(LPSZ name) {
+                    final long fd = super.openRW(name);
+                    if (Chars.endsWith(name, TableUtils.TXN_FILE_NAME)) {
+                        txnFd = fd;
+                    }
+                    return fd;
+                }
+            };
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getCommitMode() {
+                    return CommitMode.SYNC;
+                }
+
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public boolean isOutOfOrderEnabled() {
+                    return true;
+                }
+            };
+
+            try (Engine engine = new Engine(configuration)) {
+                try (WalWriter w1 = engine.getWalWriter("x"); WalWriter w2 = engine.getWalWriter("x")) {
+                    appendRows(w1, ts, 0, 1, 10);
+                    w1.commit();
+                    appendRows(w2, ts, 10, 1, 10);
+                    late[0] = w2;
+                    Assert.assertTrue(engine.applyWal());
+                    Assert.assertNull(late[0]);
+                    try (TableReader reader = engine.getReader("x", -1)) {
+                        assertRows(reader, ts, 10);
+                    }
+                }
+            }
+
+            // applied transaction was not recorded before restart
+            try (Path path = new Path()) {
+                path.of(root).concat("x").concat(TableUtils.WAL_DIR_NAME).concat(TableUtils.WAL_SEQ_FILE_NAME).$();
+                final long fd = Files.openRW(path);
+                final long buf = Unsafe.malloc(8);
+                try {
+                    Unsafe.getUnsafe().putLong(buf, 0);
+                    Assert.assertEquals(8, Files.write(fd, buf, 8, WalSequencer.SEQ_OFFSET_APPLIED_TXN));
+                } finally {
+                    Unsafe.free(buf, 8);
+                    Files.close(fd);
+                }
+            }
+
+            try (Engine engine = new Engine(configuration)) {
+                Assert.assertTrue(engine.applyWal());
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    assertRows(reader, ts, 20);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testReplayRemovesWalOfWriterLostInRestart() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            final WalWriter lost;
+            try (Engine engine = new Engine(walConfiguration)) {
+                lost = engine.getWalWriter("x");
+                appendRows(lost, ts, 0, 2, 10);
+                lost.commit();
+                // uncommitted rows are not applied
+                appendRows(lost, ts, 100, 1, 10);
+            }
+            try {
+                lost.close();
+                Assert.fail();
+            } catch (CairoException e) {
+                TestUtils.assertContains(e.getMessage(), "WAL sequencer is closed");
+            }
+
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    // WAL of lost writer is not reused before it is applied
+                    Assert.assertEquals(2, writer.getWalId());
+                    appendRows(writer, ts, 1, 2, 10);
+                    writer.commit();
+                    Assert.assertTrue(engine.applyWal());
+                }
+                Assert.assertTrue(engine.applyWal());
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    assertRows(reader, ts, 20);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testRowsCrossingWalPages() throws Exception {
+        // rows are copied from WAL files as column vectors, vectors cannot span mapped pages
+        final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+            @Override
+            public int getWalPageSize() {
+                return 4096;
+            }
+
+            @Override
+            public boolean isOutOfOrderEnabled() {
+                return true;
+            }
+        };
+
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(configuration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    appendRows(writer, ts, 500, 1, 1000);
+                    writer.commit();
+                    Assert.assertTrue(engine.applyWal());
+
+                    // out-of-order rows, then rows that follow table maximum timestamp
+                    appendRows(writer, ts, 0, 1, 500);
+                    writer.commit();
+                    appendRows(writer, ts, 1500, 1, 2500);
+                    writer.commit();
+                    Assert.assertTrue(engine.applyWal());
+                }
+
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    assertRows(reader, ts, 4000);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSegmentRollover() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (WalWriter writer = engine.getWalWriter("x"); Path path = new Path()) {
+                    // late rows are merged into partitions written earlier
+                    appendRows(writer, ts, 100, 1, 150);
+                    writer.commit();
+                    appendRows(writer, ts, 0, 1, 100);
+                    writer.commit();
+                    appendRows(writer, ts, 250, 1, 30);
+                    writer.commit();
+
+                    path.of(root).concat("x").concat(TableUtils.WAL_DIR_NAME).put(Files.SEPARATOR).put(writer.getWalId());
+                    final int plen = path.length();
+                    Assert.assertTrue(Files.exists(path.concat("0").$()));
+                    Assert.assertTrue(Files.exists(path.trimTo(plen).concat("2").$()));
+
+                    Assert.assertTrue(engine.applyWal());
+
+                    Assert.assertFalse(Files.exists(path.trimTo(plen).concat("0").$()));
+                    Assert.assertFalse(Files.exists(path.trimTo(plen).concat("1").$()));
+                    Assert.assertTrue(Files.exists(path.trimTo(plen).concat("2").$()));
+
+                    try (TableReader reader = engine.getReader("x", -1)) {
+                        assertRows(reader, ts, 280);
+                    }
+                }
+                Assert.assertTrue(engine.applyWal());
+                assertWalRemoved();
+            }
+        });
+    }
+
+    @Test
+    public void testSyncCommitFlushesSegment() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final AtomicInteger syncCount = new AtomicInteger();
+            final FilesFacade ff = new FilesFacadeImpl() {
+                @Override
+                public int fsync(long fd) {
+                    syncCount.incrementAndGet();
+                    return super.fsync(fd);
+                }
+            };
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public boolean isOutOfOrderEnabled() {
+                    return true;
+                }
+            };
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(configuration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    appendRows(writer, ts, 0, 1, 10);
+                    writer.commit();
+                    Assert.assertEquals(0, syncCount.get());
+
+                    appendRows(writer, ts, 10, 1, 10);
+                    writer.commit(CommitMode.SYNC);
+                    // data and index files of four columns and sequencer log
+                    Assert.assertEquals(7, syncCount.get());
+                }
+                Assert.assertTrue(engine.applyWal());
+            }
+        });
+    }
+
+    @Test
+    public void testWriterErrorSuspendsTable() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (Engine engine = new Engine(walConfiguration)) {
+                try (WalWriter writer = engine.getWalWriter("x")) {
+                    appendRows(writer, ts, 0, 1, 10);
+                    writer.commit();
+
+                    Assert.assertTrue(engine.lock("x"));
+                    try {
+                        Assert.assertFalse(engine.applyWal());
+                    } finally {
+                        engine.unlock("x", null);
+                    }
+                    Assert.assertTrue(engine.isWalSuspended("x"));
+
+                    // transactions are kept, including those committed while table is suspended
+                    appendRows(writer, ts, 10, 1, 10);
+                    writer.commit();
+                    Assert.assertFalse(engine.applyWal());
+
+                    engine.resumeWal("x");
+                    Assert.assertFalse(engine.isWalSuspended("x"));
+                    Assert.assertTrue(engine.applyWal());
+                }
+                // closed writer releases its segments
+                Assert.assertTrue(engine.applyWal());
+
+                try (TableReader reader = engine.getReader("x", -1)) {
+                    assertRows(reader, ts, 20);
+                }
+                assertWalRemoved();
+            }
+        });
+    }
+
+    private static void appendRows(WalWriter writer, long ts, int lo, int step, int count) {
+        for (int k = 0; k < count; k++) {
+            final int i = lo + k * step;
+            WalWriter.Row r = writer.newRow(ts + i * 60000000L);
+            r.putSym(0, i % 2 == 0 ? "even" : "odd");
+            r.putStr(1, "s" + i);
+            r.putInt(2, i);
+            r.append();
+        }
+    }
+
+    private static void assertRows(TableReader reader, long ts, int count) {
+        Assert.assertEquals(count, reader.size());
+        final RecordCursor cursor = reader.getCursor();
+        final Record record = cursor.getRecord();
+        int i = 0;
+        while (cursor.hasNext()) {
+            Assert.assertEquals(i % 2 == 0 ? "even" : "odd", record.getSym(0));
+            TestUtils.assertEquals("s" + i, record.getStr(1));
+            Assert.assertEquals(i, record.getInt(2));
+            Assert.assertEquals(ts + i * 60000000L, record.getTimestamp(3));
+            i++;
+        }
+        Assert.assertEquals(count, i);
+    }
+
+    private void assertWalRemoved() {
+        try (Path path = new Path()) {
+            path.of(root).concat("x").concat(TableUtils.WAL_DIR_NAME).$();
+            Assert.assertTrue(Files.exists(path));
+            for (int walId = 1; walId < 10; walId++) {
+                path.of(root).concat("x").concat(TableUtils.WAL_DIR_NAME).put(Files.SEPARATOR).put(walId);
+                Assert.assertFalse(Files.exists(path.$()));
+            }
+        }
+    }
+
+    private void createTable() {
+        try (TableModel model = new TableModel(walConfiguration, "x", PartitionBy.DAY)
+                .col("sym", ColumnType.SYMBOL)
+                .col("str", ColumnType.STRING)
+                .col("i", ColumnType.INT)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+}
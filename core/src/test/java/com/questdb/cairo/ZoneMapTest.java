@@ -0,0 +1,305 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.cairo;
+
+import com.questdb.cairo.sql.DataFrame;
+import com.questdb.std.LongList;
+import com.questdb.std.microtime.DateFormatUtils;
+import com.questdb.std.microtime.Dates;
+import com.questdb.std.str.Path;
+import com.questdb.std.str.StringSink;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ZoneMapTest extends AbstractCairoTest {
+    private static final long ROW_STEP = Dates.DAY_MICROS / 64;
+    private final CairoConfiguration zmConfiguration = new Configuration();
+
+    @Test
+    public void testColumnTop() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                append(writer, ts, 0, 40);
+                writer.addColumn("c", ColumnType.INT);
+                for (int i = 40; i < 64; i++) {
+                    TableWriter.Row r = writer.newRow(ts + i * ROW_STEP);
+                    r.putLong(0, i);
+                    r.putInt(3, i);
+                    r.append();
+                }
+                writer.commit();
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                // rows above column top are nulls
+                assertFrames("0:32-64;", reader, 3, ZoneMapFilter.OP_GT, 45);
+                assertFrames("0:0-48;", reader, 3, ZoneMapFilter.OP_LT, 45);
+            }
+        });
+    }
+
+    @Test
+    public void testEq() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                append(writer, ts, 0, 192);
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                assertFrames("1:16-32;", reader, 0, ZoneMapFilter.OP_EQ, 90);
+                assertFrames("1:16-32;", reader, 1, ZoneMapFilter.OP_EQ, 45.5);
+                assertFrames("", reader, 0, ZoneMapFilter.OP_EQ, 500);
+            }
+        });
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                for (int i = 0; i < 64; i += 5) {
+                    append(writer, ts, i, Math.min(i + 5, 64));
+                }
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                final LongList zoneMap = new LongList();
+                Assert.assertTrue(reader.readZoneMap(0, 0, zoneMap));
+                Assert.assertEquals("[64,4,0,0,63,0,0,15,0,16,31,0,32,47,0,48,63]", zoneMap.toString());
+
+                // nulls are counted, doubles exclude them from min and max
+                Assert.assertTrue(reader.readZoneMap(0, 1, zoneMap));
+                Assert.assertEquals(64, zoneMap.getQuick(0));
+                Assert.assertEquals(8, zoneMap.getQuick(2));
+                Assert.assertEquals(0.5, Double.longBitsToDouble(zoneMap.getQuick(3)), 0.0000001);
+                Assert.assertEquals(31.0, Double.longBitsToDouble(zoneMap.getQuick(4)), 0.0000001);
+
+                assertFrames("0:48-64;", reader, 0, ZoneMapFilter.OP_GT, 50);
+            }
+        });
+    }
+
+    @Test
+    public void testMissingZoneMap() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                append(writer, ts, 0, 128);
+            }
+
+            try (Path path = new Path()) {
+                Assert.assertTrue(configuration.getFilesFacade().remove(path.of(root).concat("x").concat("2018-01-01").concat("a.zm").$()));
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                // partition without zone map is scanned in full
+                assertFrames("0:0-64;", reader, 0, ZoneMapFilter.OP_LT, 10);
+                assertFrames("0:0-64;1:32-64;", reader, 0, ZoneMapFilter.OP_GT, 100);
+            }
+        });
+    }
+
+    @Test
+    public void testOutOfOrder() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                for (int i = 0; i < 64; i += 2) {
+                    TableWriter.Row r = writer.newRow(ts + i * ROW_STEP);
+                    r.putLong(0, i);
+                    r.append();
+                }
+                writer.commit();
+
+                for (int i = 1; i < 64; i += 2) {
+                    TableWriter.Row r = writer.newRow(ts + i * ROW_STEP);
+                    r.putLong(0, 1000 + i);
+                    r.append();
+                }
+                writer.commit();
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                Assert.assertEquals(64, reader.size());
+                assertFrames("0:0-64;", reader, 0, ZoneMapFilter.OP_GT, 1000);
+                assertFrames("", reader, 0, ZoneMapFilter.OP_GT, 2000);
+            }
+        });
+    }
+
+    @Test
+    public void testPartitionSkipped() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                append(writer, ts, 0, 192);
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                assertFrames("2:16-64;", reader, 0, ZoneMapFilter.OP_GT, 150);
+                assertFrames("0:0-16;", reader, 0, ZoneMapFilter.OP_LT, 10);
+                assertFrames("0:0-64;1:0-64;2:0-64;", reader, 1, ZoneMapFilter.OP_GT, 0);
+            }
+        });
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                append(writer, ts, 0, 20);
+
+                // rows of next partition make writer update zone map of current partition
+                for (int i = 20; i < 100; i++) {
+                    TableWriter.Row r = writer.newRow(ts + i * ROW_STEP);
+                    r.putLong(0, 1000 + i);
+                    r.append();
+                }
+                writer.rollback();
+
+                append(writer, ts, 20, 40);
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                Assert.assertEquals(40, reader.size());
+                assertFrames("", reader, 0, ZoneMapFilter.OP_GT, 100);
+                assertFrames("0:32-40;", reader, 0, ZoneMapFilter.OP_GT, 35);
+            }
+        });
+    }
+
+    @Test
+    public void testTailNotCovered() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTable();
+            final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                append(writer, ts, 0, 20);
+                // commit that does not fill block leaves zone map as it is
+                append(writer, ts, 20, 30);
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                final LongList zoneMap = new LongList();
+                Assert.assertTrue(reader.readZoneMap(0, 0, zoneMap));
+                Assert.assertEquals(20, zoneMap.getQuick(0));
+                assertFrames("0:20-30;", reader, 0, ZoneMapFilter.OP_GT, 25);
+                assertFrames("0:0-16;0:20-30;", reader, 0, ZoneMapFilter.OP_LT, 10);
+            }
+        });
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try (TableModel model = new TableModel(zmConfiguration, "x", PartitionBy.NONE).col("a", ColumnType.LONG)) {
+                CairoTestUtils.create(model);
+            }
+
+            try (TableWriter writer = new TableWriter(zmConfiguration, "x")) {
+                for (int i = 0; i < 40; i++) {
+                    TableWriter.Row r = writer.newRow(0);
+                    r.putLong(0, 1000 + i);
+                    r.append();
+                }
+                writer.commit();
+                writer.truncate();
+
+                for (int i = 0; i < 20; i++) {
+                    TableWriter.Row r = writer.newRow(0);
+                    r.putLong(0, i);
+                    r.append();
+                }
+                writer.commit();
+            }
+
+            try (TableReader reader = new TableReader(zmConfiguration, "x")) {
+                final LongList zoneMap = new LongList();
+                Assert.assertTrue(reader.readZoneMap(0, 0, zoneMap));
+                Assert.assertEquals(20, zoneMap.getQuick(0));
+                assertFrames("", reader, 0, ZoneMapFilter.OP_GT, 100);
+            }
+        });
+    }
+
+    private static void append(TableWriter writer, long ts, int lo, int hi) {
+        for (int i = lo; i < hi; i++) {
+            TableWriter.Row r = writer.newRow(ts + i * ROW_STEP);
+            r.putLong(0, i);
+            r.putDouble(1, i % 9 == 0 ? Double.NaN : i / 2.0);
+            r.append();
+        }
+        writer.commit();
+    }
+
+    private static void assertFrames(String expected, TableReader reader, int columnIndex, int op, double value) {
+        final ZoneMapFilter filter = new ZoneMapFilter();
+        filter.add(columnIndex, op, value);
+        final ZoneMapDataFrameCursor cursor = new ZoneMapDataFrameCursor(filter);
+        final StringSink sink = new StringSink();
+        cursor.of(new FullFwdDataFrameCursor().of(reader));
+        while (cursor.hasNext()) {
+            DataFrame frame = cursor.next();
+            sink.put(frame.getPartitionIndex()).put(':').put(frame.getRowLo()).put('-').put(frame.getRowHi()).put(';');
+        }
+        TestUtils.assertEquals(expected, sink);
+    }
+
+    private void createTable() {
+        try (TableModel model = new TableModel(zmConfiguration, "x", PartitionBy.DAY)
+                .col("a", ColumnType.LONG)
+                .col("d", ColumnType.DOUBLE)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+    }
+
+    private static class Configuration extends DefaultCairoConfiguration {
+        Configuration() {
+            super(root);
+        }
+
+        @Override
+        public int getZoneMapBlockSize() {
+            return 16;
+        }
+
+        @Override
+        public boolean isOutOfOrderEnabled() {
+            return true;
+        }
+    }
+}
@@ -23,15 +23,12 @@
 
 package com.questdb.griffin;
 
-import com.questdb.cairo.AbstractCairoTest;
-import com.questdb.cairo.ColumnType;
-import com.questdb.cairo.Engine;
-import com.questdb.cairo.TableUtils;
+import com.questdb.cairo.*;
 import com.questdb.cairo.sql.*;
 import com.questdb.griffin.engine.functions.bind.BindVariableService;
-import com.questdb.std.BinarySequence;
-import com.questdb.std.IntList;
-import com.questdb.std.LongList;
+import com.questdb.std.*;
+import com.questdb.std.microtime.DateFormatUtils;
+import com.questdb.std.microtime.Dates;
 import com.questdb.test.tools.TestUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -197,6 +194,202 @@ public class AbstractGriffinTest extends AbstractCairoTest {
         }
     }
 
+    /**
+     * Asserts that factory returns the same rows as reference factory, which is the same query compiled
+     * with optimisation under test disabled. Cursor of factory is checked the same way as by assertQuery().
+     *
+     * @param expectedFactory reference factory
+     * @param factory         factory under test
+     * @return rows of reference factory, including header
+     */
+    protected static String assertCursor(RecordCursorFactory expectedFactory, RecordCursorFactory factory) throws IOException {
+        try (RecordCursor cursor = expectedFactory.getCursor(bindVariableService)) {
+            sink.clear();
+            printer.print(cursor, expectedFactory.getMetadata(), true);
+        }
+        final String expected = sink.toString();
+        assertCursor(expected, factory, factory.isRandomAccessCursor());
+        // make sure we get the same outcome when we get factory to create new cursor
+        assertCursor(expected, factory, factory.isRandomAccessCursor());
+        assertVariableColumns(factory);
+        return expected;
+    }
+
+    /**
+     * Asserts that query executed by worker threads returns the same rows as query executed by calling thread.
+     * Table "x" of {@link #createRandomTable(CairoConfiguration)} is split into small frames, so that every
+     * worker has frames to process.
+     *
+     * @param query                query to compile
+     * @param factoryClass         class of parallel factory, null when query wraps it in other factories
+     * @param cursorReaderCount    number of readers that are busy while cursor of parallel factory is open
+     * @param appendBetweenQueries when true, query is run again after rows are appended to table
+     */
+    protected static void assertParallel(
+            String query,
+            @Nullable Class<? extends RecordCursorFactory> factoryClass,
+            int cursorReaderCount,
+            boolean appendBetweenQueries
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public long getIdleCheckInterval() {
+                    // pool maintenance job would lock pool entries while test checks them
+                    return Long.MAX_VALUE / 1000;
+                }
+
+                @Override
+                public int getSqlParallelFrameRowCount() {
+                    return 1000;
+                }
+            };
+            createRandomTable(configuration);
+
+            final Rnd rnd = new Rnd();
+            final TestWorkScheduler scheduler = new TestWorkScheduler(3);
+            try (
+                    Engine engine = new Engine(configuration, scheduler);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration, scheduler);
+                    SqlCompiler serialCompiler = new SqlCompiler(engine, configuration)
+            ) {
+                scheduler.start();
+                try {
+                    for (int k = 0; k < 2; k++) {
+                        try (
+                                RecordCursorFactory factory = compiler.compile(query, bindVariableService);
+                                RecordCursorFactory serialFactory = serialCompiler.compile(query, bindVariableService)
+                        ) {
+                            if (factoryClass != null) {
+                                Assert.assertTrue(factoryClass.isInstance(factory));
+                            }
+                            assertCursor(serialFactory, factory);
+
+                            try (RecordCursor ignored = factory.getCursor(bindVariableService)) {
+                                Assert.assertEquals(cursorReaderCount, engine.getBusyReaderCount());
+                            }
+                            Assert.assertEquals(0, engine.getBusyReaderCount());
+                        }
+
+                        if (appendBetweenQueries) {
+                            try (TableWriter writer = engine.getWriter("x")) {
+                                appendRandomRows(writer, rnd, writer.getMaxTimestamp() + 1, 5000);
+                            }
+                        }
+                    }
+                } finally {
+                    scheduler.halt();
+                }
+            }
+        });
+    }
+
+    /**
+     * Asserts that query executed on column vectors returns the same rows as query executed row by row.
+     * Table "x" of {@link #createRandomTable(CairoConfiguration)} is mapped in small pages, so that frames
+     * end on page boundaries of columns of different widths.
+     *
+     * @param query        query to compile
+     * @param factoryClass class of vector factory
+     * @param expected     rows query returns, null when only vector and row execution are compared
+     */
+    protected static void assertVector(
+            String query,
+            Class<? extends RecordCursorFactory> factoryClass,
+            @Nullable CharSequence expected
+    ) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            final FilesFacade ff = new FilesFacadeImpl() {
+                @Override
+                public long getMapPageSize() {
+                    return getPageSize();
+                }
+            };
+            final CairoConfiguration configuration = new DefaultCairoConfiguration(root) {
+                @Override
+                public FilesFacade getFilesFacade() {
+                    return ff;
+                }
+
+                @Override
+                public int getSqlPageFrameRowCount() {
+                    return 1000;
+                }
+            };
+            final CairoConfiguration rowConfiguration = new DefaultCairoConfiguration(root) {
+                @Override
+                public boolean isSqlVectorExecutionEnabled() {
+                    return false;
+                }
+            };
+            createRandomTable(configuration);
+
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration);
+                    SqlCompiler rowCompiler = new SqlCompiler(engine, rowConfiguration);
+                    RecordCursorFactory factory = compiler.compile(query, bindVariableService);
+                    RecordCursorFactory rowFactory = rowCompiler.compile(query, bindVariableService)
+            ) {
+                Assert.assertTrue(factoryClass.isInstance(factory));
+                final String rowResult = assertCursor(rowFactory, factory);
+                if (expected != null) {
+                    TestUtils.assertEquals(expected, rowResult);
+                }
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+            }
+        });
+    }
+
+    /**
+     * Appends rows spread evenly over 10 days to table of {@link #createRandomTable(CairoConfiguration)} and commits them.
+     */
+    protected static void appendRandomRows(TableWriter writer, Rnd rnd, long ts, int count) {
+        final int n = writer.getMetadata().getColumnIndexQuiet("n");
+        final long increment = 10 * Dates.DAY_MICROS / count;
+        for (int i = 0; i < count; i++) {
+            TableWriter.Row r = writer.newRow(ts + i * increment);
+            r.putSym(0, rnd.nextChars(1));
+            r.putInt(1, rnd.nextInt() & 7);
+            r.putInt(2, rnd.nextInt());
+            r.putLong(3, rnd.nextPositiveLong() % 20000);
+            // whole numbers add up to the same sum in any order
+            r.putDouble(4, rnd.nextInt() & 127);
+            r.putFloat(5, rnd.nextInt() & 63);
+            r.putStr(6, rnd.nextChars(5));
+            if (n != -1) {
+                r.putInt(n, rnd.nextInt() & 4095);
+            }
+            r.append();
+        }
+        writer.commit();
+    }
+
+    /**
+     * Creates table "x" of random rows, which tests of parallel, vector and top K factories run queries against.
+     * Column "n" is added in the middle of a partition and has column top there.
+     */
+    protected static void createRandomTable(CairoConfiguration configuration) throws NumericException {
+        try (TableModel model = new TableModel(configuration, "x", PartitionBy.DAY)
+                .col("sym", ColumnType.SYMBOL)
+                .col("k", ColumnType.INT)
+                .col("i", ColumnType.INT)
+                .col("l", ColumnType.LONG)
+                .col("d", ColumnType.DOUBLE)
+                .col("f", ColumnType.FLOAT)
+                .col("str", ColumnType.STRING)
+                .timestamp()) {
+            CairoTestUtils.create(model);
+        }
+
+        final Rnd rnd = new Rnd();
+        try (TableWriter writer = new TableWriter(configuration, "x")) {
+            appendRandomRows(writer, rnd, DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z"), 50000);
+            writer.addColumn("n", ColumnType.INT);
+            appendRandomRows(writer, rnd, DateFormatUtils.parseDateTime("2018-01-10T23:59:50.000Z"), 20000);
+        }
+    }
+
     protected static void testSymbolAPI(RecordMetadata metadata, RecordCursor cursor) {
         IntList symbolIndexes = null;
         for (int i = 0, n = metadata.getColumnCount(); i < n; i++) {
@@ -607,6 +607,61 @@ public class JoinTest extends AbstractGriffinTest {
         testFullFat(this::testAsOfJoinNoStrings);
     }
 
+    @Test
+    public void testAsOfJoinIndexed() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try {
+                final String expected = "i\tsym\tsym2\tprice\tts\tts1\n" +
+                        "1\tmsft\tmsft\t0.560000000000\t2018-01-01T00:25:00.000000Z\t2018-01-01T00:20:00.000000Z\n" +
+                        "2\tgoogl\tgoogl\t0.622000000000\t2018-01-01T00:50:00.000000Z\t2018-01-01T00:50:00.000000Z\n" +
+                        "3\tibm\tibm\t0.768000000000\t2018-01-01T01:15:00.000000Z\t2018-01-01T00:45:00.000000Z\n" +
+                        "4\tamzn\t\tNaN\t2018-01-01T01:40:00.000000Z\t\n" +
+                        "5\tibm\tibm\t0.405000000000\t2018-01-01T02:05:00.000000Z\t2018-01-01T02:00:00.000000Z\n" +
+                        "6\tamzn\t\tNaN\t2018-01-01T02:30:00.000000Z\t\n" +
+                        "7\tgoogl\tgoogl\t0.282000000000\t2018-01-01T02:55:00.000000Z\t2018-01-01T02:50:00.000000Z\n" +
+                        "8\tamzn\t\tNaN\t2018-01-01T03:20:00.000000Z\t\n" +
+                        "9\tgoogl\tgoogl\t0.106000000000\t2018-01-01T03:45:00.000000Z\t2018-01-01T03:35:00.000000Z\n" +
+                        "10\tmsft\tmsft\t0.198000000000\t2018-01-01T04:10:00.000000Z\t2018-01-01T04:05:00.000000Z\n" +
+                        "11\tmsft\tmsft\t0.226000000000\t2018-01-01T04:35:00.000000Z\t2018-01-01T04:35:00.000000Z\n" +
+                        "12\tmsft\tmsft\t0.226000000000\t2018-01-01T05:00:00.000000Z\t2018-01-01T04:35:00.000000Z\n";
+
+                compiler.compile(
+                        "create table x as (" +
+                                "select" +
+                                " to_int(x) i," +
+                                " rnd_symbol('msft','ibm', 'googl', 'amzn') sym," +
+                                " to_timestamp('2018-01', 'yyyy-MM') + x * 1500000000 ts" +
+                                " from long_sequence(12)" +
+                                ") timestamp (ts)",
+                        bindVariableService
+                );
+
+                compiler.compile(
+                        "create table y as (" +
+                                "select" +
+                                " rnd_symbol('msft','ibm', 'googl') sym2," +
+                                " round(rnd_double(0), 3) price," +
+                                " to_timestamp('2018-01', 'yyyy-MM') + x * 300000000 ts" +
+                                " from long_sequence(60)" +
+                                "), index(sym2) timestamp(ts) partition by HOUR",
+                        bindVariableService
+                );
+
+                assertQuery(expected, "select x.i, x.sym, y.sym2, price, x.ts, y.ts from x asof join y on y.sym2 = x.sym", "ts");
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            } finally {
+                engine.releaseAllWriters();
+                engine.releaseAllReaders();
+            }
+        });
+    }
+
+    @Test
+    public void testAsOfJoinIndexedFullFat() throws Exception {
+        testFullFat(this::testAsOfJoinIndexed);
+    }
+
     @Test
     public void testAsOfJoinNoLeftTimestamp() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -1846,6 +1901,50 @@ public class JoinTest extends AbstractGriffinTest {
         testFullFat(this::testJoinInnerOnSymbol);
     }
 
+    @Test
+    public void testJoinInnerOnTimestamp() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try {
+                final String expected = "i\ti1\tts\n" +
+                        "1\t2\t2018-01-01T00:02:00.000000Z\n" +
+                        "1\t3\t2018-01-01T00:02:00.000000Z\n" +
+                        "2\t4\t2018-01-01T00:04:00.000000Z\n" +
+                        "2\t5\t2018-01-01T00:04:00.000000Z\n" +
+                        "3\t6\t2018-01-01T00:06:00.000000Z\n" +
+                        "3\t7\t2018-01-01T00:06:00.000000Z\n" +
+                        "4\t8\t2018-01-01T00:08:00.000000Z\n" +
+                        "4\t9\t2018-01-01T00:08:00.000000Z\n" +
+                        "5\t10\t2018-01-01T00:10:00.000000Z\n" +
+                        "5\t11\t2018-01-01T00:10:00.000000Z\n" +
+                        "6\t12\t2018-01-01T00:12:00.000000Z\n" +
+                        "6\t13\t2018-01-01T00:12:00.000000Z\n" +
+                        "7\t14\t2018-01-01T00:14:00.000000Z\n" +
+                        "7\t15\t2018-01-01T00:14:00.000000Z\n" +
+                        "8\t16\t2018-01-01T00:16:00.000000Z\n" +
+                        "8\t17\t2018-01-01T00:16:00.000000Z\n" +
+                        "9\t18\t2018-01-01T00:18:00.000000Z\n" +
+                        "9\t19\t2018-01-01T00:18:00.000000Z\n" +
+                        "10\t20\t2018-01-01T00:20:00.000000Z\n" +
+                        "10\t21\t2018-01-01T00:20:00.000000Z\n";
+
+                compiler.compile("create table x as (select to_int(x) i, to_timestamp('2018-01', 'yyyy-MM') + x * 120000000 ts from long_sequence(10)) timestamp(ts)", bindVariableService);
+                compiler.compile("create table y as (select to_int(x) i, to_timestamp('2018-01', 'yyyy-MM') + (x / 2) * 120000000 ts from long_sequence(25)) timestamp(ts)", bindVariableService);
+
+                assertQuery(expected, "select x.i, y.i, x.ts from x join y on (ts)", "ts");
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            } finally {
+                engine.releaseAllWriters();
+                engine.releaseAllReaders();
+            }
+        });
+    }
+
+    @Test
+    public void testJoinInnerOnTimestampFF() throws Exception {
+        testFullFat(this::testJoinInnerOnTimestamp);
+    }
+
     @Test
     public void testJoinInnerPostJoinFilter() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -2149,6 +2248,59 @@ public class JoinTest extends AbstractGriffinTest {
         });
     }
 
+    @Test
+    public void testSpliceJoin() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try {
+                final String expected = "i\ti1\tts\tts1\n" +
+                        "NaN\t1\t\t2018-01-01T00:02:00.000000Z\n" +
+                        "1\t1\t2018-01-01T00:03:00.000000Z\t2018-01-01T00:02:00.000000Z\n" +
+                        "1\t2\t2018-01-01T00:03:00.000000Z\t2018-01-01T00:04:00.000000Z\n" +
+                        "1\t3\t2018-01-01T00:03:00.000000Z\t2018-01-01T00:06:00.000000Z\n" +
+                        "2\t3\t2018-01-01T00:06:00.000000Z\t2018-01-01T00:06:00.000000Z\n" +
+                        "2\t4\t2018-01-01T00:06:00.000000Z\t2018-01-01T00:08:00.000000Z\n" +
+                        "3\t4\t2018-01-01T00:09:00.000000Z\t2018-01-01T00:08:00.000000Z\n" +
+                        "3\t5\t2018-01-01T00:09:00.000000Z\t2018-01-01T00:10:00.000000Z\n" +
+                        "3\t6\t2018-01-01T00:09:00.000000Z\t2018-01-01T00:12:00.000000Z\n" +
+                        "4\t6\t2018-01-01T00:12:00.000000Z\t2018-01-01T00:12:00.000000Z\n";
+
+                compiler.compile("create table x as (select to_int(x) i, to_timestamp('2018-01', 'yyyy-MM') + x * 180000000 ts from long_sequence(4)) timestamp(ts)", bindVariableService);
+                compiler.compile("create table y as (select to_int(x) i, to_timestamp('2018-01', 'yyyy-MM') + x * 120000000 ts from long_sequence(6)) timestamp(ts)", bindVariableService);
+
+                assertQuery(expected, "select x.i, y.i, x.ts, y.ts from x splice join y", null);
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            } finally {
+                engine.releaseAllWriters();
+                engine.releaseAllReaders();
+            }
+        });
+    }
+
+    @Test
+    public void testSpliceJoinNoLeftTimestamp() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            try {
+                compiler.compile("create table x as (select to_int(x) i, to_timestamp('2018-01', 'yyyy-MM') + x * 180000000 ts from long_sequence(4))", bindVariableService);
+                compiler.compile("create table y as (select to_int(x) i, to_timestamp('2018-01', 'yyyy-MM') + x * 120000000 ts from long_sequence(6)) timestamp(ts)", bindVariableService);
+
+                try {
+                    compiler.compile("select x.i, y.i, x.ts, y.ts from x splice join y", bindVariableService);
+                    Assert.fail();
+                } catch (SqlException e) {
+                    Assert.assertEquals(35, e.getPosition());
+                    TestUtils.assertContains(e.getFlyweightMessage(), "left side of SPLICE join has no timestamp");
+                }
+
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+                Assert.assertEquals(0, engine.getBusyWriterCount());
+            } finally {
+                engine.releaseAllWriters();
+                engine.releaseAllReaders();
+            }
+        });
+    }
+
     @Test
     public void testTypeMismatch() throws Exception {
         TestUtils.assertMemoryLeak(() -> {
@@ -575,6 +575,35 @@ public class SqlCodeGeneratorTest extends AbstractGriffinTest {
                         "28.200207166748\tABCD\t\n");
     }
 
+    @Test
+    public void testFilterOnZoneMap() throws Exception {
+        final String expected = "b\tk\n" +
+                "16\t1970-01-18T08:40:00.000000Z\n" +
+                "17\t1970-01-19T12:26:40.000000Z\n";
+
+        assertQuery(expected,
+                "select b, k from x where b > 15 and 18 > b",
+                "create table x as " +
+                        "(" +
+                        "select" +
+                        " rnd_double(0)*100 a," +
+                        " x b," +
+                        " timestamp_sequence(to_timestamp(0), 100000000000) k" +
+                        " from" +
+                        " long_sequence(20)" +
+                        ") timestamp(k) partition by DAY",
+                "k",
+                "insert into x select * from (" +
+                        "select" +
+                        " rnd_double(0)*100," +
+                        " 16," +
+                        " to_timestamp('1971', 'yyyy') t" +
+                        " from long_sequence(1)" +
+                        ") timestamp(t)",
+                expected +
+                        "16\t1971-01-01T00:00:00.000000Z\n");
+    }
+
     @Test
     public void testFilterSingleKeyValue() throws Exception {
         final String expected = "a\tb\n" +
@@ -3143,6 +3143,108 @@ public class SqlCompilerTest extends AbstractCairoTest {
         });
     }
 
+    @Test
+    public void testSqlCacheIgnoresBusyReaderPool() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            compiler.compile("create table x (a INT, b INT)", bindVariableService);
+            compiler.compile("insert into x select rnd_int(), rnd_int() from long_sequence(10)", bindVariableService);
+
+            final RecordCursorFactory factory = compiler.compile("x where a > b", bindVariableService);
+            compiler.cache("x where a > b", factory);
+
+            engine.releaseAllWriters();
+            engine.releaseAllReaders();
+
+            // readers cannot be checked out while table is locked, cached factory is still current
+            Assert.assertTrue(engine.lock("x"));
+            try {
+                RecordCursorFactory f = compiler.compile("x where a > b", bindVariableService);
+                Assert.assertSame(factory, f);
+                compiler.cache("x where a > b", f);
+            } finally {
+                engine.unlock("x", null);
+            }
+
+            RecordCursorFactory f = compiler.compile("x where a > b", bindVariableService);
+            Assert.assertSame(factory, f);
+            compiler.cache("x where a > b", f);
+
+            engine.releaseAllWriters();
+            engine.releaseAllReaders();
+        });
+    }
+
+    @Test
+    public void testSqlCacheTableCreatedAgain() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            compiler.compile("create table x (a INT, b INT)", bindVariableService);
+            compiler.compile("insert into x select rnd_int(), rnd_int() from long_sequence(10)", bindVariableService);
+
+            final RecordCursorFactory factory = compiler.compile("x where a > b", bindVariableService);
+            compiler.cache("x where a > b", factory);
+
+            // idle readers are checked, factory is current
+            RecordCursorFactory f = compiler.compile("x where a > b", bindVariableService);
+            Assert.assertSame(factory, f);
+            compiler.cache("x where a > b", f);
+
+            // new table has the same structure version and layout
+            engine.remove(path, "x");
+            compiler.compile("create table x (a INT, b INT)", bindVariableService);
+
+            try (RecordCursorFactory f2 = compiler.compile("x where a > b", bindVariableService)) {
+                Assert.assertNotSame(factory, f2);
+                try (RecordCursor cursor = f2.getCursor(bindVariableService)) {
+                    Assert.assertFalse(cursor.hasNext());
+                }
+            }
+
+            engine.releaseAllWriters();
+            engine.releaseAllReaders();
+        });
+    }
+
+    @Test
+    public void testSqlCacheSharedByCompilers() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            compiler.compile("create table x (a INT, b INT)", bindVariableService);
+            compiler.compile("insert into x select rnd_int(), rnd_int() from long_sequence(10)", bindVariableService);
+
+            final RecordCursorFactory factory = compiler.compile("x where a > b", bindVariableService);
+            compiler.cache("x where a > b", factory);
+
+            try (SqlCompiler other = new SqlCompiler(engine, configuration)) {
+                // whitespace difference does not matter
+                RecordCursorFactory f = other.compile("x  where\na > b", bindVariableService);
+                Assert.assertSame(factory, f);
+
+                // factory is leased, other compiler gets its own instance
+                try (RecordCursorFactory f2 = compiler.compile("x where a > b", bindVariableService)) {
+                    Assert.assertNotSame(factory, f2);
+                }
+                other.cache("x where a > b", f);
+
+                // different bind variable types compile different factory
+                BindVariableService bindVariables = new BindVariableService();
+                bindVariables.setInt("v", 10);
+                try (RecordCursorFactory f2 = other.compile("x where a > b", bindVariables)) {
+                    Assert.assertNotSame(factory, f2);
+                }
+
+                compiler.compile("alter table x add column c INT", bindVariableService);
+
+                // table structure has changed, cached factory must not be used
+                try (RecordCursorFactory f2 = other.compile("x where a > b", bindVariableService)) {
+                    Assert.assertNotSame(factory, f2);
+                    Assert.assertEquals(3, f2.getMetadata().getColumnCount());
+                }
+            }
+
+            engine.releaseAllWriters();
+            engine.releaseAllReaders();
+        });
+    }
+
     private void assertCast(String expectedData, String expectedMeta, String sql) throws SqlException, IOException {
         compiler.compile(sql, bindVariableService);
         try (TableReader reader = engine.getReader("y", TableUtils.ANY_TABLE_VERSION)) {
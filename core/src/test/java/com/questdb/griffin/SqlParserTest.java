@@ -65,6 +65,7 @@ public class SqlParserTest extends AbstractGriffinTest {
                         .col("a", ColumnType.INT)
                         .col("b", ColumnType.INT)
                         .col("c", ColumnType.INT)
+                        .col("ts", ColumnType.TIMESTAMP)
                         .col("x", ColumnType.INT)
                         .col("y", ColumnType.INT)
                         .col("z", ColumnType.INT)
@@ -76,10 +77,29 @@ public class SqlParserTest extends AbstractGriffinTest {
         assertQuery(
                 "select-analytic a, b, f(c) my over (partition by b, a order by ts), d(c) d over () from (xyz)",
                 "select a,b, f(c) my over (partition by b, a order by ts), d(c) over() from xyz",
-                modelOf("xyz").col("c", ColumnType.INT).col("b", ColumnType.INT).col("a", ColumnType.INT)
+                modelOf("xyz").col("c", ColumnType.INT).col("b", ColumnType.INT).col("a", ColumnType.INT).col("ts", ColumnType.TIMESTAMP)
         );
     }
 
+    @Test
+    public void testAnalyticFrame() throws Exception {
+        assertQuery(
+                "select-analytic a, b, f(c) my over (partition by b order by ts rows between 10 preceding and current row), d(c) d over (order by ts range between unbounded preceding and current row), e(c) e over (rows between current row and current row) from (xyz)",
+                "select a,b, f(c) my over (partition by b order by ts rows between 10 preceding and current row), d(c) over (order by ts range unbounded preceding), e(c) over (rows current row) from xyz",
+                modelOf("xyz").col("c", ColumnType.INT).col("b", ColumnType.INT).col("a", ColumnType.INT).col("ts", ColumnType.TIMESTAMP)
+        );
+    }
+
+    @Test
+    public void testAnalyticFrameEnd() {
+        assertSyntaxError("select a,b, f(c) my over (order by ts rows between 10 preceding and 5 preceding) from xyz", 68, "'current' expected");
+    }
+
+    @Test
+    public void testAnalyticFrameStart() {
+        assertSyntaxError("select a,b, f(c) my over (order by ts rows between x preceding and current row) from xyz", 51, "'unbounded', 'current' or number expected");
+    }
+
     @Test
     public void testAsOfJoin() throws SqlException {
         assertQuery(
@@ -1023,7 +1043,7 @@ public class SqlParserTest extends AbstractGriffinTest {
                         "timestamp(t) " +
                         "partition by EPOCH",
                 128,
-                "'NONE', 'DAY', 'MONTH' or 'YEAR' expected"
+                "'NONE', 'HOUR', 'DAY', 'MONTH', 'YEAR' or width such as '15m' or '4h' expected"
         );
     }
 
@@ -1335,6 +1355,20 @@ public class SqlParserTest extends AbstractGriffinTest {
                 "min index block capacity is");
     }
 
+    @Test
+    public void testCreateTablePartitionByWidth() throws SqlException {
+        assertCreateTable("create table x (" +
+                        "a INT," +
+                        " t TIMESTAMP)" +
+                        " timestamp(t)" +
+                        " partition by 15m",
+                "create table x (" +
+                        "a INT, " +
+                        "t TIMESTAMP) " +
+                        "timestamp(t) " +
+                        "partition by 15m");
+    }
+
     @Test
     public void testCreateTableSymbolCapacityHigh() {
         assertSyntaxError(
@@ -3091,6 +3125,7 @@ public class SqlParserTest extends AbstractGriffinTest {
                         .col("a", ColumnType.INT)
                         .col("b", ColumnType.INT)
                         .col("c", ColumnType.INT)
+                        .col("ts", ColumnType.TIMESTAMP)
         );
     }
 
@@ -4011,6 +4046,32 @@ public class SqlParserTest extends AbstractGriffinTest {
                 modelOf("tab").col("x", ColumnType.INT).col("y", ColumnType.INT));
     }
 
+    @Test
+    public void testSpliceJoin() throws SqlException {
+        assertQuery(
+                "select-choose" +
+                        " t.timestamp timestamp," +
+                        " t.tag tag," +
+                        " q.timestamp timestamp1" +
+                        " from (" +
+                        "trades t timestamp (timestamp) splice join quotes q timestamp (timestamp) post-join-where tag = null)",
+                "trades t splice join quotes q where tag = null",
+                modelOf("trades").timestamp().col("tag", ColumnType.SYMBOL),
+                modelOf("quotes").timestamp()
+        );
+    }
+
+    @Test
+    public void testSpliceJoinOn() {
+        assertSyntaxError(
+                "trades t splice join quotes q on (tag)",
+                30,
+                "Splice joins cannot have join clauses",
+                modelOf("trades").timestamp().col("tag", ColumnType.SYMBOL),
+                modelOf("quotes").timestamp().col("tag", ColumnType.SYMBOL)
+        );
+    }
+
     @Test
     public void testSubQuery() throws Exception {
         assertQuery(
@@ -4208,7 +4269,7 @@ public class SqlParserTest extends AbstractGriffinTest {
         assertQuery(
                 "select-analytic a, b, f(c) my over (partition by b order by ts), d(c) d over () from (xyz)",
                 "select a,b, f(c) my over (partition by b order by ts), d(c) over() from xyz",
-                modelOf("xyz").col("c", ColumnType.INT).col("b", ColumnType.INT).col("a", ColumnType.INT)
+                modelOf("xyz").col("c", ColumnType.INT).col("b", ColumnType.INT).col("a", ColumnType.INT).col("ts", ColumnType.TIMESTAMP)
         );
     }
 
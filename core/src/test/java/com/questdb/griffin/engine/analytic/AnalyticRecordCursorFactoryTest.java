@@ -0,0 +1,213 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.analytic;
+
+import com.questdb.griffin.AbstractGriffinTest;
+import org.junit.Test;
+
+public class AnalyticRecordCursorFactoryTest extends AbstractGriffinTest {
+
+    private static final String DDL = "create table x as (" +
+            "select" +
+            " to_int(x) i," +
+            " x % 3 k," +
+            " (x * 7) % 10 v," +
+            " timestamp_sequence(to_timestamp(0), 1000000) ts" +
+            " from long_sequence(10)" +
+            ") timestamp(ts)";
+
+    @Test
+    public void testRowNumberLagLead() throws Exception {
+        assertQuery("i\tk\tts\trn\tprev\tnext\n" +
+                "1\t1\t1970-01-01T00:00:00.000000Z\t1\tNaN\t4\n" +
+                "2\t2\t1970-01-01T00:00:01.000000Z\t1\tNaN\t5\n" +
+                "3\t0\t1970-01-01T00:00:02.000000Z\t1\tNaN\t6\n" +
+                "4\t1\t1970-01-01T00:00:03.000000Z\t2\t1\t7\n" +
+                "5\t2\t1970-01-01T00:00:04.000000Z\t2\t2\t8\n" +
+                "6\t0\t1970-01-01T00:00:05.000000Z\t2\t3\t9\n" +
+                "7\t1\t1970-01-01T00:00:06.000000Z\t3\t4\t10\n" +
+                "8\t2\t1970-01-01T00:00:07.000000Z\t3\t5\tNaN\n" +
+                "9\t0\t1970-01-01T00:00:08.000000Z\t3\t6\tNaN\n" +
+                "10\t1\t1970-01-01T00:00:09.000000Z\t4\t7\tNaN\n",
+                "select i, k, ts, row_number() rn over (partition by k order by ts), lag(i) prev over (partition by k order by ts), lead(i, 1) next over (partition by k order by ts) from x",
+                DDL,
+                "ts",
+                false
+        );
+    }
+
+    @Test
+    public void testRunningAndRows() throws Exception {
+        assertQuery("i\tv\ts\ta\tsv\tmx\tmn\n" +
+                "1\t7\t1.000000000000\t1.000000000000\t7.000000000000\t7.000000000000\t7.000000000000\n" +
+                "2\t4\t3.000000000000\t2.000000000000\t11.000000000000\t7.000000000000\t4.000000000000\n" +
+                "3\t1\t6.000000000000\t3.000000000000\t12.000000000000\t7.000000000000\t1.000000000000\n" +
+                "4\t8\t10.000000000000\t2.500000000000\t13.000000000000\t8.000000000000\t1.000000000000\n" +
+                "5\t5\t15.000000000000\t3.500000000000\t14.000000000000\t8.000000000000\t1.000000000000\n" +
+                "6\t2\t21.000000000000\t4.500000000000\t15.000000000000\t8.000000000000\t2.000000000000\n" +
+                "7\t9\t28.000000000000\t4.000000000000\t16.000000000000\t9.000000000000\t2.000000000000\n" +
+                "8\t6\t36.000000000000\t5.000000000000\t17.000000000000\t9.000000000000\t2.000000000000\n" +
+                "9\t3\t45.000000000000\t6.000000000000\t18.000000000000\t9.000000000000\t3.000000000000\n" +
+                "10\t0\t55.000000000000\t5.500000000000\t9.000000000000\t6.000000000000\t0.000000000000\n",
+                "select i, v, sum(i) s over (order by ts), avg(i) a over (partition by k order by ts), sum(v) sv over (order by ts rows between 2 preceding and current row), max(v) mx over (order by ts rows 2 preceding), min(v) mn over (order by ts rows 2 preceding) from x",
+                DDL,
+                null,
+                false
+        );
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        assertQuery("i\tv\ts\tsk\tmk\n" +
+                "1\t7\t7.000000000000\t7.000000000000\t7.000000000000\n" +
+                "2\t4\t11.000000000000\t4.000000000000\t4.000000000000\n" +
+                "3\t1\t12.000000000000\t1.000000000000\t1.000000000000\n" +
+                "4\t8\t13.000000000000\t15.000000000000\t8.000000000000\n" +
+                "5\t5\t14.000000000000\t9.000000000000\t5.000000000000\n" +
+                "6\t2\t15.000000000000\t3.000000000000\t2.000000000000\n" +
+                "7\t9\t16.000000000000\t17.000000000000\t9.000000000000\n" +
+                "8\t6\t17.000000000000\t11.000000000000\t6.000000000000\n" +
+                "9\t3\t18.000000000000\t5.000000000000\t3.000000000000\n" +
+                "10\t0\t9.000000000000\t9.000000000000\t9.000000000000\n",
+                "select i, v, sum(v) s over (order by ts range between 2000000 preceding and current row), sum(v) sk over (partition by k order by ts range 3000000 preceding), max(v) mk over (partition by k order by ts range 3000000 preceding) from x",
+                DDL,
+                null,
+                false
+        );
+    }
+
+    @Test
+    public void testWholePartition() throws Exception {
+        assertQuery("i\tk\tv\ts\tm\ta\n" +
+                "1\t1\t7\t24.000000000000\t9.000000000000\t4.500000000000\n" +
+                "2\t2\t4\t15.000000000000\t6.000000000000\t4.500000000000\n" +
+                "3\t0\t1\t6.000000000000\t3.000000000000\t4.500000000000\n" +
+                "4\t1\t8\t24.000000000000\t9.000000000000\t4.500000000000\n" +
+                "5\t2\t5\t15.000000000000\t6.000000000000\t4.500000000000\n" +
+                "6\t0\t2\t6.000000000000\t3.000000000000\t4.500000000000\n" +
+                "7\t1\t9\t24.000000000000\t9.000000000000\t4.500000000000\n" +
+                "8\t2\t6\t15.000000000000\t6.000000000000\t4.500000000000\n" +
+                "9\t0\t3\t6.000000000000\t3.000000000000\t4.500000000000\n" +
+                "10\t1\t0\t24.000000000000\t9.000000000000\t4.500000000000\n",
+                "select i, k, v, sum(v) s over (partition by k), max(v) m over (partition by k), avg(v) a over () from x",
+                DDL,
+                null,
+                false
+        );
+    }
+
+    @Test
+    public void testPeers() throws Exception {
+        // sort does not keep order of rows with equal k, only values that are the same for all peers are selected
+        assertQuery("k\ts\tm\tsk\n" +
+                "0\t6.000000000000\t3.000000000000\t6.000000000000\n" +
+                "0\t6.000000000000\t3.000000000000\t6.000000000000\n" +
+                "0\t6.000000000000\t3.000000000000\t6.000000000000\n" +
+                "1\t30.000000000000\t9.000000000000\t24.000000000000\n" +
+                "1\t30.000000000000\t9.000000000000\t24.000000000000\n" +
+                "1\t30.000000000000\t9.000000000000\t24.000000000000\n" +
+                "1\t30.000000000000\t9.000000000000\t24.000000000000\n" +
+                "2\t45.000000000000\t9.000000000000\t15.000000000000\n" +
+                "2\t45.000000000000\t9.000000000000\t15.000000000000\n" +
+                "2\t45.000000000000\t9.000000000000\t15.000000000000\n",
+                "select k, sum(v) s over (order by k), max(v) m over (order by k), sum(v) sk over (partition by k order by k) from x",
+                DDL,
+                null,
+                false
+        );
+    }
+
+    @Test
+    public void testPeersInTimestampOrder() throws Exception {
+        assertQuery("i\tts\ts\tm\n" +
+                "1\t1970-01-01T00:00:00.000000Z\t7.000000000000\t7.000000000000\n" +
+                "2\t1970-01-01T00:00:01.000000Z\t12.000000000000\t7.000000000000\n" +
+                "3\t1970-01-01T00:00:01.000000Z\t12.000000000000\t7.000000000000\n" +
+                "4\t1970-01-01T00:00:02.000000Z\t25.000000000000\t8.000000000000\n" +
+                "5\t1970-01-01T00:00:02.000000Z\t25.000000000000\t8.000000000000\n" +
+                "6\t1970-01-01T00:00:03.000000Z\t27.000000000000\t8.000000000000\n",
+                "select i, ts, sum(v) s over (order by ts), max(v) m over (order by ts range 1000000 preceding) from y",
+                "create table y as (" +
+                        "select" +
+                        " to_int(x) i," +
+                        " (x * 7) % 10 v," +
+                        " to_timestamp((x / 2) * 1000000) ts" +
+                        " from long_sequence(6)" +
+                        ") timestamp(ts)",
+                "ts",
+                false
+        );
+    }
+
+    @Test
+    public void testSorted() throws Exception {
+        assertQuery("v\trn\tp\tn\n" +
+                "9\t1\tNaN\t7\n" +
+                "8\t2\t9\t6\n" +
+                "7\t3\t8\t5\n" +
+                "6\t4\t7\t4\n" +
+                "5\t5\t6\t3\n" +
+                "4\t6\t5\t2\n" +
+                "3\t7\t4\t1\n" +
+                "2\t8\t3\t0\n" +
+                "1\t9\t2\tNaN\n" +
+                "0\t10\t1\tNaN\n",
+                "select v, row_number() rn over (order by v desc), lag(v) p over (order by v desc), lead(v, 2) n over (order by v desc) from x",
+                DDL,
+                null,
+                false
+        );
+    }
+
+    @Test
+    public void testDifferentOrder() throws Exception {
+        assertFailure(
+                "select i, row_number() rn over (order by ts), lag(i) p over (order by v) from x",
+                DDL,
+                70,
+                "analytic functions must have the same ORDER BY"
+        );
+    }
+
+    @Test
+    public void testRangeWithoutOrder() throws Exception {
+        assertFailure(
+                "select i, sum(v) s over (range 10 preceding) from x",
+                DDL,
+                25,
+                "RANGE frame requires single ORDER BY column"
+        );
+    }
+
+    @Test
+    public void testUnknownFunction() throws Exception {
+        assertFailure(
+                "select i, rank() r over (order by ts) from x",
+                DDL,
+                10,
+                "unknown analytic function"
+        );
+    }
+}
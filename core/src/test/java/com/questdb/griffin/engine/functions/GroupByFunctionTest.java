@@ -42,6 +42,10 @@ public class GroupByFunctionTest {
         public void computeNext(MapValue mapValue, Record record) {
         }
 
+        @Override
+        public void merge(MapValue destValue, MapValue srcValue) {
+        }
+
         @Override
         public void pushValueTypes(ArrayColumnTypes columnTypes) {
         }
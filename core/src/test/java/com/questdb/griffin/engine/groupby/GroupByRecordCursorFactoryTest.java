@@ -0,0 +1,140 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.LongList;
+import com.questdb.std.Rnd;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class GroupByRecordCursorFactoryTest extends AbstractCairoTest {
+    private static final BindVariableService bindVariableService = new BindVariableService();
+
+    @Test
+    public void testNoSpill() throws Exception {
+        assertSpill("select a, count() cnt, sum(c) sc, min(h) mh, max(f) mf from x", Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testSpillEveryKey() throws Exception {
+        // each new key spills map, every key is merged from many partial aggregates
+        assertSpill("select a, count() cnt, sum(c) sc, min(h) mh, max(f) mf from x", 1);
+    }
+
+    @Test
+    public void testVarSizeKeys() throws Exception {
+        assertSpill("select i, j, k, count() cnt, sum(b) sb, max(d) md, min(g) mg from x", 16 * 1024);
+    }
+
+    private static String print(RecordCursorFactory factory) throws IOException {
+        try (RecordCursor cursor = factory.getCursor(bindVariableService)) {
+            sink.clear();
+            printer.print(cursor, factory.getMetadata(), true);
+            return sortRows(sink);
+        }
+    }
+
+    private static String sortRows(CharSequence text) {
+        // spill changes order of groups, compare them ordered
+        final String[] lines = text.toString().split("\n");
+        Arrays.sort(lines, 1, lines.length);
+        return String.join("\n", lines) + '\n';
+    }
+
+    private static void assertSpillRootEmpty() {
+        final String[] files = new File(configuration.getSqlSpillRoot().toString()).list();
+        Assert.assertTrue(files == null || files.length == 0);
+    }
+
+    private void assertSpill(String query, long spillThreshold) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            CairoTestUtils.createTestTable(20000, new Rnd(), new TestRecord.ArrayBinarySequence());
+            final CairoConfiguration spillConfiguration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getSqlGroupBySpillPartitionCount() {
+                    return 4;
+                }
+
+                @Override
+                public long getSqlGroupBySpillThreshold() {
+                    return spillThreshold;
+                }
+            };
+
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration);
+                    SqlCompiler spillCompiler = new SqlCompiler(engine, spillConfiguration);
+                    RecordCursorFactory factory = compiler.compile(query, bindVariableService);
+                    RecordCursorFactory spillFactory = spillCompiler.compile(query, bindVariableService)
+            ) {
+                Assert.assertTrue(spillFactory instanceof GroupByRecordCursorFactory);
+                final String expected = print(factory);
+
+                // factory is reusable
+                for (int i = 0; i < 2; i++) {
+                    TestUtils.assertEquals(expected, print(spillFactory));
+                    assertSpillRootEmpty();
+                }
+
+                try (RecordCursor cursor = spillFactory.getCursor(bindVariableService)) {
+                    final RecordMetadata metadata = spillFactory.getMetadata();
+                    final Record record = cursor.getRecord();
+                    final LongList rows = new LongList();
+                    while (cursor.hasNext()) {
+                        rows.add(record.getRowId());
+                    }
+
+                    sink.clear();
+                    printer.printHeader(metadata);
+                    final Record rec2 = cursor.newRecord();
+                    for (int i = 0, n = rows.size(); i < n; i++) {
+                        cursor.recordAt(rec2, rows.getQuick(i));
+                        printer.print(rec2, metadata);
+                    }
+                    TestUtils.assertEquals(expected, sortRows(sink));
+
+                    cursor.toTop();
+                    sink.clear();
+                    printer.print(cursor, metadata, true);
+                    TestUtils.assertEquals(expected, sortRows(sink));
+                }
+                assertSpillRootEmpty();
+            }
+        });
+    }
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.Engine;
+import com.questdb.cairo.TestWorkScheduler;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.griffin.AbstractGriffinTest;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelGroupByRecordCursorFactoryTest extends AbstractGriffinTest {
+
+    @Test
+    public void testFilter() throws Exception {
+        assertParallel("select sym, count() c, sum(i) s from x where d > 50 order by sym", false);
+    }
+
+    @Test
+    public void testHighCardinalityKey() throws Exception {
+        assertParallel("select l, count() c, sum(d) s from x order by l", false);
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        assertParallel("select sym, sum(l) s from x where timestamp = '2018-01-03' order by sym", false);
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        assertParallel("select sym, k, count() c, sum(i) si, sum(l) sl, sum(d) sd from x order by sym, k", false);
+    }
+
+    @Test
+    public void testNoKeys() throws Exception {
+        assertParallel("select count() c, sum(i) si, sum(l) sl, sum(d) sd from x", false);
+    }
+
+    @Test
+    public void testParallelFactory() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createRandomTable(configuration);
+            final TestWorkScheduler scheduler = new TestWorkScheduler(3);
+            try (
+                    Engine engine = new Engine(configuration, scheduler);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration, scheduler);
+                    SqlCompiler serialCompiler = new SqlCompiler(engine, configuration);
+                    RecordCursorFactory factory = compiler.compile("select sym, count() from x", bindVariableService);
+                    RecordCursorFactory serialFactory = serialCompiler.compile("select sym, count() from x", bindVariableService)
+            ) {
+                Assert.assertTrue(factory instanceof ParallelGroupByRecordCursorFactory);
+                Assert.assertTrue(serialFactory instanceof GroupByRecordCursorFactory);
+            }
+        });
+    }
+
+    @Test
+    public void testTableChangesBetweenQueries() throws Exception {
+        assertParallel("select sym, count() c, sum(l) s from x order by sym", true);
+    }
+
+    private static void assertParallel(String query, boolean appendBetweenQueries) throws Exception {
+        // lane readers are released once maps are merged
+        assertParallel(query, null, 1, appendBetweenQueries);
+    }
+}
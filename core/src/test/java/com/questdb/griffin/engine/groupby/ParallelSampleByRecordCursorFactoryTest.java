@@ -0,0 +1,100 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.Engine;
+import com.questdb.cairo.TestWorkScheduler;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.griffin.AbstractGriffinTest;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelSampleByRecordCursorFactoryTest extends AbstractGriffinTest {
+
+    @Test
+    public void testFillNone() throws Exception {
+        assertParallel("select sym, count() c, sum(i) s from x sample by 1h", false);
+    }
+
+    @Test
+    public void testFillNull() throws Exception {
+        assertParallel("select k, count() c, sum(l) s from x where d > 120 sample by 1h fill(null)", false);
+    }
+
+    @Test
+    public void testFillPrev() throws Exception {
+        assertParallel("select k, count() c, sum(d) s from x where d > 120 sample by 1h fill(prev)", false);
+    }
+
+    @Test
+    public void testFillValue() throws Exception {
+        assertParallel("select k, count() c, sum(i) s from x where d > 120 sample by 1h fill(20, 30)", false);
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        assertParallel("select sym, sum(l) s from x where timestamp = '2018-01-03' sample by 30m", false);
+    }
+
+    @Test
+    public void testNoKeys() throws Exception {
+        assertParallel("select count() c, sum(i) si, sum(l) sl, sum(d) sd from x sample by 3h", false);
+    }
+
+    @Test
+    public void testParallelFactory() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createRandomTable(configuration);
+            final TestWorkScheduler scheduler = new TestWorkScheduler(3);
+            try (
+                    Engine engine = new Engine(configuration, scheduler);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration, scheduler);
+                    RecordCursorFactory factory = compiler.compile("select k, count() from x sample by 1h fill(prev)", bindVariableService);
+                    RecordCursorFactory linearFactory = compiler.compile("select k, count() from x sample by 1h fill(linear)", bindVariableService)
+            ) {
+                Assert.assertTrue(factory instanceof ParallelSampleByRecordCursorFactory);
+                Assert.assertTrue(linearFactory instanceof SampleByInterpolateRecordCursorFactory);
+            }
+        });
+    }
+
+    @Test
+    public void testSampleSpansFrames() throws Exception {
+        // each sample is larger than a frame and covers whole partition
+        assertParallel("select k, count() c, sum(l) s from x sample by 1d", false);
+    }
+
+    @Test
+    public void testTableChangesBetweenQueries() throws Exception {
+        assertParallel("select k, count() c, sum(l) s from x sample by 2h fill(null)", true);
+    }
+
+    private static void assertParallel(String query, boolean appendBetweenQueries) throws Exception {
+        // lane readers are released when cursor closes
+        assertParallel(query, ParallelSampleByRecordCursorFactory.class, 4, appendBetweenQueries);
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.CairoConfiguration;
+import com.questdb.cairo.DefaultCairoConfiguration;
+import com.questdb.cairo.Engine;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.griffin.AbstractGriffinTest;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VectorGroupByRecordCursorFactoryTest extends AbstractGriffinTest {
+
+    @Test
+    public void testColumnTop() throws Exception {
+        assertVector("select count() c, sum(n) sn, sum(f) sf from x");
+    }
+
+    @Test
+    public void testEmptySelection() throws Exception {
+        assertVector("select count() c, sum(i) si from x where d > 500", "c\tsi\n");
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createRandomTable(configuration);
+            final CairoConfiguration rowConfiguration = new DefaultCairoConfiguration(root) {
+                @Override
+                public boolean isSqlVectorExecutionEnabled() {
+                    return false;
+                }
+            };
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration);
+                    SqlCompiler rowCompiler = new SqlCompiler(engine, rowConfiguration);
+                    RecordCursorFactory factory = compiler.compile("select count(), sum(l) from x where k < 3", bindVariableService);
+                    RecordCursorFactory keyedFactory = compiler.compile("select k, count() from x", bindVariableService);
+                    RecordCursorFactory expressionFactory = compiler.compile("select sum(l * 2) from x", bindVariableService);
+                    RecordCursorFactory rowFactory = rowCompiler.compile("select count(), sum(l) from x", bindVariableService)
+            ) {
+                Assert.assertTrue(factory instanceof VectorGroupByRecordCursorFactory);
+                Assert.assertTrue(keyedFactory instanceof GroupByRecordCursorFactory);
+                Assert.assertTrue(expressionFactory instanceof GroupByRecordCursorFactory);
+                Assert.assertTrue(rowFactory instanceof GroupByRecordCursorFactory);
+            }
+        });
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        assertVector("select count() c, sum(l) sl from x where timestamp = '2018-01-03'");
+    }
+
+    @Test
+    public void testMinMaxAvg() throws Exception {
+        assertVector("select min(i) mi, max(i) xi, min(l) ml, max(l) xl, min(d) md, max(d) xd, min(f) mf, max(f) xf," +
+                " min(timestamp) mt, max(timestamp) xt, min(n) mn, max(n) xn, avg(i) ai, avg(d) ad, avg(n) an from x");
+    }
+
+    @Test
+    public void testMinMaxAvgFiltered() throws Exception {
+        assertVector("select min(i) mi, max(l) xl, min(timestamp) mt, max(n) xn, avg(f) af, avg(n) an from x where d > 30");
+    }
+
+    @Test
+    public void testNoFilter() throws Exception {
+        assertVector("select count() c, sum(i) si, sum(l) sl, sum(d) sd, sum(f) sf from x");
+    }
+
+    @Test
+    public void testRowFilter() throws Exception {
+        // comparison of two columns is evaluated row by row
+        assertVector("select count() c, sum(i) si, sum(d) sd from x where i > l");
+    }
+
+    @Test
+    public void testSumIntNull() throws Exception {
+        // null is added as any other int value, page kernels skip nulls and are brought to the same result
+        assertQuery("s\n" +
+                        "-2147483636\n",
+                "select sum(i) s from y",
+                // 1, 2, null, 4, 5
+                "create table y as (select to_int((x - 3.0) / (x - 3.0) * x) i from long_sequence(5))",
+                null,
+                true
+        );
+    }
+
+    @Test
+    public void testVectorFilter() throws Exception {
+        assertVector("select count() c, sum(i) si, sum(l) sl, sum(n) sn from x where d > 30 and 6 > k and n < 1000");
+    }
+
+    private static void assertVector(String query) throws Exception {
+        assertVector(query, null);
+    }
+
+    private static void assertVector(String query, String expected) throws Exception {
+        assertVector(query, VectorGroupByRecordCursorFactory.class, expected);
+    }
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.griffin.engine.groupby;
+
+import com.questdb.cairo.Engine;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.griffin.AbstractGriffinTest;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VectorSampleByRecordCursorFactoryTest extends AbstractGriffinTest {
+
+    @Test
+    public void testColumnTop() throws Exception {
+        assertVector("select timestamp, count() c, sum(n) sn, sum(f) sf from x sample by 1h");
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createRandomTable(configuration);
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration);
+                    RecordCursorFactory factory = compiler.compile("select count(), sum(l) from x sample by 1h fill(prev)", bindVariableService);
+                    RecordCursorFactory keyedFactory = compiler.compile("select k, count() from x sample by 1h", bindVariableService);
+                    RecordCursorFactory linearFactory = compiler.compile("select count() from x sample by 1h fill(linear)", bindVariableService)
+            ) {
+                Assert.assertTrue(factory instanceof VectorSampleByRecordCursorFactory);
+                Assert.assertTrue(keyedFactory instanceof SampleByFillNoneRecordCursorFactory);
+                Assert.assertTrue(linearFactory instanceof SampleByInterpolateRecordCursorFactory);
+            }
+        });
+    }
+
+    @Test
+    public void testFillNull() throws Exception {
+        assertVector("select count() c, sum(l) s from x where d > 120 sample by 1h fill(null)");
+    }
+
+    @Test
+    public void testFillPrev() throws Exception {
+        assertVector("select count() c, sum(d) s from x where d > 120 and k > 5 sample by 1h fill(prev)");
+    }
+
+    @Test
+    public void testFillValue() throws Exception {
+        assertVector("select count() c, sum(i) s from x where d > 120 sample by 1h fill(20, 30)");
+    }
+
+    @Test
+    public void testInterval() throws Exception {
+        assertVector("select timestamp, sum(l) s from x where timestamp = '2018-01-03' sample by 30m");
+    }
+
+    @Test
+    public void testNoFilter() throws Exception {
+        assertVector("select timestamp, count() c, sum(i) si, sum(l) sl, sum(d) sd, sum(f) sf from x sample by 3m");
+    }
+
+    @Test
+    public void testRowFilter() throws Exception {
+        // comparison of two columns is evaluated row by row
+        assertVector("select count() c, sum(i) si from x where i > l sample by 1h fill(null)");
+    }
+
+    @Test
+    public void testSampleSpansFrames() throws Exception {
+        // each sample is larger than a frame and covers whole partition
+        assertVector("select count() c, sum(l) s from x where k < 6 sample by 1d");
+    }
+
+    private static void assertVector(String query) throws Exception {
+        assertVector(query, VectorSampleByRecordCursorFactory.class, null);
+    }
+}
@@ -64,6 +64,11 @@ public class TestSumDoubleGroupByFunction extends DoubleFunction implements Grou
         mapValue.putDouble(valueIndex, mapValue.getDouble(valueIndex) + value.getDouble(record));
     }
 
+    @Override
+    public void merge(MapValue destValue, MapValue srcValue) {
+        destValue.putDouble(valueIndex, destValue.getDouble(valueIndex) + srcValue.getDouble(valueIndex));
+    }
+
     @Override
     public void pushValueTypes(ArrayColumnTypes columnTypes) {
         this.valueIndex = columnTypes.getColumnCount();
@@ -0,0 +1,276 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.join;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.NumericException;
+import com.questdb.std.Numbers;
+import com.questdb.std.Rnd;
+import com.questdb.std.microtime.DateFormatUtils;
+import com.questdb.std.microtime.Dates;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class HashJoinLightRecordCursorFactoryTest extends AbstractCairoTest {
+    private static final BindVariableService bindVariableService = new BindVariableService();
+    private static final String QUERY = "select x.i, x.s, x.k, y.v from x join y on (s, k)";
+
+    @Test
+    public void testFilterProbeRows() throws Exception {
+        // inner join skips master rows rejected by filter of join keys, outer join does not filter them
+        TestUtils.assertMemoryLeak(() -> {
+            createFilterTables();
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration)
+            ) {
+                final String[] keys = {"s", "k", "v", "s, k"};
+                for (String key : keys) {
+                    try (
+                            RecordCursorFactory factory = compiler.compile("select m.i, d.j from m join d on (" + key + ")", bindVariableService);
+                            RecordCursorFactory outerFactory = compiler.compile("select m.i, d.j from m outer join d on (" + key + ")", bindVariableService)
+                    ) {
+                        // outer join rows without slave are the ones inner join leaves out
+                        final String expected = print(outerFactory, true).replaceAll(".*\tNaN\n", "");
+                        Assert.assertTrue(expected.length() > 100);
+                        TestUtils.assertEquals(expected, print(factory, true));
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testFilterProbeRowsOfFilteredMaster() throws Exception {
+        // master scan tests filter of join keys together with its own filter
+        TestUtils.assertMemoryLeak(() -> {
+            createFilterTables();
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration)
+            ) {
+                final String[] keys = {"s", "k", "s, k"};
+                for (String key : keys) {
+                    try (
+                            RecordCursorFactory factory = compiler.compile("select m.i, d.j from m join d on (" + key + ") where m.i % 3 = 0", bindVariableService);
+                            RecordCursorFactory outerFactory = compiler.compile("select m.i, d.j from m outer join d on (" + key + ") where m.i % 3 = 0", bindVariableService)
+                    ) {
+                        final String expected = print(outerFactory, true).replaceAll(".*\tNaN\n", "");
+                        Assert.assertTrue(expected.length() > 30);
+                        TestUtils.assertEquals(expected, print(factory, true));
+                        // cursor is re-opened with filter of the same keys
+                        TestUtils.assertEquals(expected, print(factory, true));
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSpill() throws Exception {
+        // master is probe side, spilled join returns rows in the same order
+        assertJoin(false, Numbers.SIZE_1MB, 1, false);
+    }
+
+    @Test
+    public void testSpillKeepsMasterOrder() throws Exception {
+        // master is smaller but its timestamp order has to be kept, sides are not swapped
+        assertJoin(true, 16 * 1024, 1, false);
+    }
+
+    @Test
+    public void testSwap() throws Exception {
+        assertJoin(false, 16 * 1024, Long.MAX_VALUE, true);
+    }
+
+    @Test
+    public void testSwapSpill() throws Exception {
+        assertJoin(false, 16 * 1024, 1, true);
+    }
+
+    private static void createFilterTables() {
+        try (TableModel model = new TableModel(configuration, "m", PartitionBy.NONE)
+                .col("i", ColumnType.INT)
+                .col("s", ColumnType.SYMBOL)
+                .col("k", ColumnType.INT)
+                .col("v", ColumnType.STRING)) {
+            CairoTestUtils.create(model);
+        }
+
+        try (TableModel model = new TableModel(configuration, "d", PartitionBy.NONE)
+                .col("j", ColumnType.INT)
+                .col("s", ColumnType.SYMBOL)
+                .col("k", ColumnType.INT)
+                .col("v", ColumnType.STRING)) {
+            CairoTestUtils.create(model);
+        }
+
+        // master has few matches in small slave, which also has keys that master does not have
+        try (TableWriter writer = new TableWriter(configuration, "m")) {
+            for (int i = 0; i < 3000; i++) {
+                TableWriter.Row r = writer.newRow(0);
+                r.putInt(0, i);
+                r.putSym(1, i % 50 == 0 ? null : "s" + i % 200);
+                r.putInt(2, i % 300);
+                r.putStr(3, "v" + i % 400);
+                r.append();
+            }
+            writer.commit();
+        }
+
+        try (TableWriter writer = new TableWriter(configuration, "d")) {
+            for (int j = 0; j < 20; j++) {
+                TableWriter.Row r = writer.newRow(0);
+                r.putInt(0, j);
+                r.putSym(1, j == 0 ? null : "s" + j * 37);
+                r.putInt(2, j * 37);
+                r.putStr(3, "v" + j * 37);
+                r.append();
+            }
+            writer.commit();
+        }
+    }
+
+    private static void createTables(boolean timestamp) throws NumericException {
+        try (TableModel model = new TableModel(configuration, "x", PartitionBy.NONE)
+                .col("i", ColumnType.INT)
+                .col("s", ColumnType.SYMBOL)
+                .col("k", ColumnType.INT)) {
+            if (timestamp) {
+                model.timestamp();
+            }
+            CairoTestUtils.create(model);
+        }
+
+        try (TableModel model = new TableModel(configuration, "y", PartitionBy.NONE)
+                .col("s", ColumnType.SYMBOL)
+                .col("k", ColumnType.INT)
+                .col("v", ColumnType.STRING)) {
+            CairoTestUtils.create(model);
+        }
+
+        final Rnd rnd = new Rnd();
+        final long ts = DateFormatUtils.parseDateTime("2018-01-01T00:00:00.000Z");
+        try (TableWriter writer = new TableWriter(configuration, "x")) {
+            for (int i = 0; i < 200; i++) {
+                TableWriter.Row r = timestamp ? writer.newRow(ts + i * Dates.MINUTE_MICROS) : writer.newRow(0);
+                r.putInt(0, i);
+                r.putSym(1, rnd.nextBoolean() ? null : rnd.nextChars(1));
+                r.putInt(2, rnd.nextInt() & 7);
+                r.append();
+            }
+            writer.commit();
+        }
+
+        try (TableWriter writer = new TableWriter(configuration, "y")) {
+            for (int i = 0; i < 3000; i++) {
+                TableWriter.Row r = writer.newRow(0);
+                r.putSym(0, rnd.nextBoolean() ? null : rnd.nextChars(1));
+                r.putInt(1, rnd.nextInt() & 7);
+                r.putStr(2, rnd.nextChars(4));
+                r.append();
+            }
+            writer.commit();
+        }
+    }
+
+    private static String print(RecordCursorFactory factory, boolean sorted) throws IOException {
+        try (RecordCursor cursor = factory.getCursor(bindVariableService)) {
+            sink.clear();
+            printer.print(cursor, factory.getMetadata(), true);
+            return sorted ? sortRows(sink) : sink.toString();
+        }
+    }
+
+    private static String sortRows(CharSequence text) {
+        // swapped sides return rows in order of slave
+        final String[] lines = text.toString().split("\n");
+        Arrays.sort(lines, 1, lines.length);
+        return String.join("\n", lines) + '\n';
+    }
+
+    private static void assertSpillRootEmpty() {
+        final String[] files = new File(configuration.getSqlSpillRoot().toString()).list();
+        Assert.assertTrue(files == null || files.length == 0);
+    }
+
+    private void assertJoin(boolean timestamp, int valuePageSize, long spillThreshold, boolean sorted) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createTables(timestamp);
+            final CairoConfiguration joinConfiguration = new DefaultCairoConfiguration(root) {
+                @Override
+                public int getSqlHashJoinLightValuePageSize() {
+                    return valuePageSize;
+                }
+
+                @Override
+                public int getSqlHashJoinSpillPartitionCount() {
+                    return 4;
+                }
+
+                @Override
+                public long getSqlHashJoinSpillThreshold() {
+                    return spillThreshold;
+                }
+            };
+
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration);
+                    SqlCompiler joinCompiler = new SqlCompiler(engine, joinConfiguration);
+                    RecordCursorFactory factory = compiler.compile(QUERY, bindVariableService);
+                    RecordCursorFactory joinFactory = joinCompiler.compile(QUERY, bindVariableService)
+            ) {
+                final String expected = print(factory, sorted);
+                Assert.assertTrue(expected.length() > 1000);
+
+                // factory is reusable
+                for (int i = 0; i < 2; i++) {
+                    TestUtils.assertEquals(expected, print(joinFactory, sorted));
+                    assertSpillRootEmpty();
+                }
+
+                try (RecordCursor cursor = joinFactory.getCursor(bindVariableService)) {
+                    //noinspection StatementWithEmptyBody
+                    while (cursor.hasNext()) ;
+                    cursor.toTop();
+                    sink.clear();
+                    printer.print(cursor, joinFactory.getMetadata(), true);
+                    TestUtils.assertEquals(expected, sorted ? sortRows(sink) : sink);
+                }
+                assertSpillRootEmpty();
+            }
+        });
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.*;
+import com.questdb.cairo.sql.Record;
+import com.questdb.cairo.sql.RecordCursor;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.cairo.sql.RecordMetadata;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.engine.functions.bind.BindVariableService;
+import com.questdb.std.BytecodeAssembler;
+import com.questdb.std.IntList;
+import com.questdb.std.LongList;
+import com.questdb.std.Rnd;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class SortedRecordCursorFactoryTest extends AbstractCairoTest {
+    private static final BindVariableService bindVariableService = new BindVariableService();
+    private static final BytecodeAssembler asm = new BytecodeAssembler();
+    private static final EntityColumnFilter entityColumnFilter = new EntityColumnFilter();
+
+    @Test
+    public void testFixedSizeColumns() throws Exception {
+        // c INT, a BYTE
+        assertSpill("select a, b, c, d, e, f, g, h, j, k from x", 64 * 1024, 3, -1);
+    }
+
+    @Test
+    public void testNoSpill() throws Exception {
+        assertSpill("x", Long.MAX_VALUE, 10, 3);
+    }
+
+    @Test
+    public void testSingleRun() throws Exception {
+        // threshold is exceeded by last row only
+        assertSpill("x limit 10", 1, 10, 3);
+    }
+
+    @Test
+    public void testVarSizeColumns() throws Exception {
+        // j SYMBOL, c INT desc, i STRING
+        assertSpill("x", 64 * 1024, 10, -3, 9);
+    }
+
+    private static RecordCursorFactory newSortFactory(CairoConfiguration configuration, RecordCursorFactory base, IntList keys) {
+        final RecordMetadata metadata = base.getMetadata();
+        entityColumnFilter.of(metadata.getColumnCount());
+        return new SortedRecordCursorFactory(
+                configuration,
+                metadata,
+                base,
+                metadata,
+                RecordSinkFactory.getInstance(asm, metadata, entityColumnFilter, false),
+                new RecordComparatorCompiler(asm).compile(metadata, keys)
+        );
+    }
+
+    private static String print(RecordCursorFactory factory) throws IOException {
+        try (RecordCursor cursor = factory.getCursor(bindVariableService)) {
+            sink.clear();
+            printer.print(cursor, factory.getMetadata(), true);
+            return sink.toString();
+        }
+    }
+
+    private void assertSpill(String query, long spillThreshold, int... keys) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            CairoTestUtils.createTestTable(20000, new Rnd(), new TestRecord.ArrayBinarySequence());
+            final CairoConfiguration spillConfiguration = new DefaultCairoConfiguration(root) {
+                @Override
+                public long getSqlSortSpillThreshold() {
+                    return spillThreshold;
+                }
+            };
+
+            final IntList keyList = new IntList();
+            for (int i = 0; i < keys.length; i++) {
+                keyList.add(keys[i]);
+            }
+
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, configuration);
+                    RecordCursorFactory factory = newSortFactory(configuration, compile(compiler, query), keyList);
+                    RecordCursorFactory spillFactory = newSortFactory(spillConfiguration, compile(compiler, query), keyList)
+            ) {
+                final String expected = print(factory);
+
+                // factory is reusable
+                for (int i = 0; i < 2; i++) {
+                    TestUtils.assertEquals(expected, print(spillFactory));
+                    assertSpillRootEmpty();
+                }
+
+                try (RecordCursor cursor = spillFactory.getCursor(bindVariableService)) {
+                    final RecordMetadata metadata = spillFactory.getMetadata();
+                    final Record record = cursor.getRecord();
+                    final LongList rows = new LongList();
+                    while (cursor.hasNext()) {
+                        rows.add(record.getRowId());
+                    }
+
+                    sink.clear();
+                    printer.printHeader(metadata);
+                    final Record rec2 = cursor.newRecord();
+                    for (int i = 0, n = rows.size(); i < n; i++) {
+                        cursor.recordAt(rec2, rows.getQuick(i));
+                        printer.print(rec2, metadata);
+                    }
+                    TestUtils.assertEquals(expected, sink);
+
+                    cursor.toTop();
+                    sink.clear();
+                    printer.print(cursor, metadata, true);
+                    TestUtils.assertEquals(expected, sink);
+                }
+                assertSpillRootEmpty();
+            }
+        });
+    }
+
+    private static void assertSpillRootEmpty() {
+        final String[] files = new File(configuration.getSqlSpillRoot().toString()).list();
+        Assert.assertTrue(files == null || files.length == 0);
+    }
+
+    private static RecordCursorFactory compile(SqlCompiler compiler, String query) throws SqlException {
+        return compiler.compile(query, bindVariableService);
+    }
+}
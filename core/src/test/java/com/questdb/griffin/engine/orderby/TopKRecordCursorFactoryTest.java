@@ -0,0 +1,191 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.orderby;
+
+import com.questdb.cairo.CairoConfiguration;
+import com.questdb.cairo.DefaultCairoConfiguration;
+import com.questdb.cairo.Engine;
+import com.questdb.cairo.sql.RecordCursorFactory;
+import com.questdb.griffin.AbstractGriffinTest;
+import com.questdb.griffin.SqlCompiler;
+import com.questdb.test.tools.TestUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TopKRecordCursorFactoryTest extends AbstractGriffinTest {
+    private static final long MAX_LIMIT = 1000;
+    private static CairoConfiguration maxLimitConfiguration;
+    private static CairoConfiguration sortConfiguration;
+    private static int sortKeyPageSizeCalls;
+
+    @BeforeClass
+    public static void setUp3() {
+        maxLimitConfiguration = new DefaultCairoConfiguration(root) {
+            @Override
+            public int getSqlSortKeyPageSize() {
+                sortKeyPageSizeCalls++;
+                return super.getSqlSortKeyPageSize();
+            }
+
+            @Override
+            public long getSqlSortTopKMaxLimit() {
+                return MAX_LIMIT;
+            }
+        };
+        sortConfiguration = new DefaultCairoConfiguration(root) {
+            @Override
+            public boolean isSqlSortTopKEnabled() {
+                return false;
+            }
+        };
+    }
+
+    @Test
+    public void testBindVariable() throws Exception {
+        bindVariableService.clear();
+        bindVariableService.setLong("lim", 15);
+        try {
+            assertTopK("x order by d desc limit :lim", 15);
+        } finally {
+            bindVariableService.clear();
+        }
+    }
+
+    @Test
+    public void testCopiedRecords() throws Exception {
+        // sample by cursor does not support random access, records are copied
+        assertTopK("(select k, sum(d) s, count() c from x sample by 1h) order by s desc, k limit 20", 20);
+    }
+
+    @Test
+    public void testCopiedRecordsAboveMaxLimit() throws Exception {
+        assertTopK(maxLimitConfiguration, "(select sym, k, max(d) d from x sample by 10m) order by d, k limit 1500", 1500);
+    }
+
+    @Test
+    public void testCopiedRecordsCompaction() throws Exception {
+        // limit is small enough for chain to be compacted several times
+        assertTopK("(select sym, k, sum(i) s from x sample by 10m) order by sym, s limit 7", 7);
+    }
+
+    @Test
+    public void testCopiedRecordsRange() throws Exception {
+        assertTopK("(select sym, k, max(d) d from x sample by 1h) order by d limit 100, 1200", 1100);
+    }
+
+    @Test
+    public void testDuplicates() throws Exception {
+        // few distinct values, ties must come out in the same order full sort returns them
+        assertTopK("x order by k limit 2500", 2500);
+    }
+
+    @Test
+    public void testHeapOrSortIsChosenByCursor() throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createRandomTable(configuration);
+            sortKeyPageSizeCalls = 0;
+            bindVariableService.clear();
+            bindVariableService.setLong("lim", MAX_LIMIT);
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, maxLimitConfiguration);
+                    SqlCompiler sortCompiler = new SqlCompiler(engine, sortConfiguration);
+                    RecordCursorFactory factory = compiler.compile("x order by d, i limit :lim", bindVariableService);
+                    RecordCursorFactory sortFactory = sortCompiler.compile("x order by d, i limit :lim", bindVariableService)
+            ) {
+                // sort is set up by first cursor that needs it and is reused after that
+                final long[] limits = {MAX_LIMIT, MAX_LIMIT + 1, -10, 20};
+                final int[] sortCount = {0, 1, 1, 1};
+                for (int i = 0; i < limits.length; i++) {
+                    bindVariableService.setLong("lim", limits[i]);
+                    assertCursor(sortFactory, factory);
+                    Assert.assertEquals(sortCount[i], sortKeyPageSizeCalls);
+                }
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+            } finally {
+                bindVariableService.clear();
+            }
+        });
+    }
+
+    @Test
+    public void testLimitAboveMaxLimit() throws Exception {
+        assertTopK(maxLimitConfiguration, "x order by d, i limit 1500", 1500);
+    }
+
+    @Test
+    public void testLimitLargerThanCursor() throws Exception {
+        assertTopK("x order by i limit 100000", 70000);
+    }
+
+    @Test
+    public void testLimitRange() throws Exception {
+        assertTopK("x order by sym, i desc limit 5, 25", 20);
+    }
+
+    @Test
+    public void testLimitTail() throws Exception {
+        assertTopK("x order by d, i limit -10", 10);
+    }
+
+    @Test
+    public void testLimitZero() throws Exception {
+        assertTopK("x order by d limit 0", 0);
+    }
+
+    @Test
+    public void testRowIds() throws Exception {
+        assertTopK("x order by d desc, i limit 10", 10);
+    }
+
+    private static void assertTopK(String query, int expectedRows) throws Exception {
+        assertTopK(configuration, query, expectedRows);
+    }
+
+    private static void assertTopK(CairoConfiguration topKConfiguration, String query, int expectedRows) throws Exception {
+        TestUtils.assertMemoryLeak(() -> {
+            createRandomTable(configuration);
+
+            try (
+                    Engine engine = new Engine(configuration);
+                    SqlCompiler compiler = new SqlCompiler(engine, topKConfiguration);
+                    SqlCompiler sortCompiler = new SqlCompiler(engine, sortConfiguration);
+                    RecordCursorFactory factory = compiler.compile(query, bindVariableService);
+                    RecordCursorFactory sortFactory = sortCompiler.compile(query, bindVariableService)
+            ) {
+                final String expected = assertCursor(sortFactory, factory);
+                int rows = -1;
+                for (int i = 0, n = expected.length(); i < n; i++) {
+                    if (expected.charAt(i) == '\n') {
+                        rows++;
+                    }
+                }
+                Assert.assertEquals(expectedRows, rows);
+                Assert.assertEquals(0, engine.getBusyReaderCount());
+            }
+        });
+    }
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.table;
+
+import com.questdb.cairo.ColumnType;
+import com.questdb.cairo.GenericRecordMetadata;
+import com.questdb.cairo.TableColumnMetadata;
+import com.questdb.cairo.sql.Function;
+import com.questdb.cairo.sql.Record;
+import com.questdb.griffin.BaseFunctionFactoryTest;
+import com.questdb.griffin.SqlException;
+import com.questdb.griffin.engine.functions.bool.AndFunctionFactory;
+import com.questdb.griffin.engine.functions.bool.NotFunctionFactory;
+import com.questdb.griffin.engine.functions.bool.OrFunctionFactory;
+import com.questdb.griffin.engine.functions.eq.EqDoubleFunctionFactory;
+import com.questdb.griffin.engine.functions.eq.EqIntFunctionFactory;
+import com.questdb.griffin.engine.functions.eq.EqLongFunctionFactory;
+import com.questdb.griffin.engine.functions.eq.EqStrFunctionFactory;
+import com.questdb.griffin.engine.functions.gt.GtDoubleFunctionFactory;
+import com.questdb.griffin.engine.functions.lt.LtDoubleCVFunctionFactory;
+import com.questdb.griffin.engine.functions.lt.LtDoubleVCFunctionFactory;
+import com.questdb.griffin.engine.functions.lt.LtDoubleVVFunctionFactory;
+import com.questdb.griffin.model.ExpressionNode;
+import com.questdb.std.BytecodeAssembler;
+import com.questdb.std.Numbers;
+import com.questdb.std.Rnd;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FilterCompilerTest extends BaseFunctionFactoryTest {
+    private static final FilterCompiler filterCompiler = new FilterCompiler(new BytecodeAssembler());
+    private static final GenericRecordMetadata metadata = new GenericRecordMetadata();
+    private final TestRecord record = new TestRecord();
+
+    @Before
+    public void setUp5() {
+        functions.add(new AndFunctionFactory());
+        functions.add(new OrFunctionFactory());
+        functions.add(new NotFunctionFactory());
+        functions.add(new EqIntFunctionFactory());
+        functions.add(new EqLongFunctionFactory());
+        functions.add(new EqDoubleFunctionFactory());
+        functions.add(new EqStrFunctionFactory());
+        functions.add(new LtDoubleVVFunctionFactory());
+        functions.add(new LtDoubleVCFunctionFactory());
+        functions.add(new LtDoubleCVFunctionFactory());
+        functions.add(new GtDoubleFunctionFactory());
+    }
+
+    @Test
+    public void testAndOrNot() throws Exception {
+        assertCompiled("(d > f or b = 2) and not (s = 7 or l < 4.5)");
+    }
+
+    @Test
+    public void testConstantOnLeft() throws Exception {
+        assertCompiled("60.5 < d or 3 = i");
+    }
+
+    @Test
+    public void testEqDouble() throws Exception {
+        // NaN equals NaN
+        assertCompiled("d = f or d = 15.0");
+    }
+
+    @Test
+    public void testEqInt() throws Exception {
+        assertCompiled("i = 5 or b = 2 or s = i");
+    }
+
+    @Test
+    public void testEqLargeConstants() throws Exception {
+        assertCompiled("i = 300000 or l = 12345678901 or not (i = 40000) and d = 1.0");
+    }
+
+    @Test
+    public void testEqLong() throws Exception {
+        assertCompiled("l = i and not (l = 3) or l = 5");
+    }
+
+    @Test
+    public void testLtGt() throws Exception {
+        assertCompiled("d < 10.5 and i > 2 or f < l and s > 3");
+    }
+
+    @Test
+    public void testNot() throws Exception {
+        assertCompiled("not (not (d < 50) or not (b > 10))");
+    }
+
+    @Test
+    public void testUnsupportedFunction() throws Exception {
+        final ExpressionNode node = expr("str = 'a' and i = 1");
+        final Function filter = createFunctionParser().parseFunction(node, metadata, sqlExecutionContext);
+        Assert.assertNull(filterCompiler.compile(filter, node, metadata));
+        Assert.assertSame(filter, FilterCompiler.newFilter(null, filter));
+    }
+
+    private void assertCompiled(String expression) throws SqlException {
+        final ExpressionNode node = expr(expression);
+        final Function filter = createFunctionParser().parseFunction(node, metadata, sqlExecutionContext);
+        final Class<CompiledFilter> filterClass = filterCompiler.compile(filter, node, metadata);
+        Assert.assertNotNull(filterClass);
+
+        final Function compiled = FilterCompiler.newFilter(filterClass, filter);
+        Assert.assertTrue(compiled instanceof CompiledFilter);
+        Assert.assertSame(filter, ((CompiledFilter) compiled).getInterpreted());
+
+        final Rnd rnd = new Rnd();
+        int count = 0;
+        for (int i = 0; i < 10000; i++) {
+            record.next(rnd);
+            final boolean expected = filter.getBool(record);
+            Assert.assertEquals(expected, compiled.getBool(record));
+            if (expected) {
+                count++;
+            }
+        }
+        // filter should select some records but not all of them
+        Assert.assertTrue(count > 0 && count < 10000);
+    }
+
+    private static class TestRecord implements Record {
+        private byte b;
+        private short s;
+        private int i;
+        private long l;
+        private float f;
+        private double d;
+
+        @Override
+        public byte getByte(int col) {
+            Assert.assertEquals(0, col);
+            return b;
+        }
+
+        @Override
+        public double getDouble(int col) {
+            Assert.assertEquals(5, col);
+            return d;
+        }
+
+        @Override
+        public float getFloat(int col) {
+            Assert.assertEquals(4, col);
+            return f;
+        }
+
+        @Override
+        public int getInt(int col) {
+            Assert.assertEquals(2, col);
+            return i;
+        }
+
+        @Override
+        public long getLong(int col) {
+            Assert.assertEquals(3, col);
+            return l;
+        }
+
+        @Override
+        public short getShort(int col) {
+            Assert.assertEquals(1, col);
+            return s;
+        }
+
+        private void next(Rnd rnd) {
+            b = (byte) (rnd.nextInt() & 15);
+            s = (short) (rnd.nextInt() & 15);
+            i = (rnd.nextInt() & 31) == 0 ? Numbers.INT_NaN : rnd.nextInt() & 15;
+            l = (rnd.nextInt() & 31) == 0 ? Numbers.LONG_NaN : rnd.nextInt() & 15;
+            f = (rnd.nextInt() & 31) == 0 ? Float.NaN : rnd.nextInt() & 63;
+            d = (rnd.nextInt() & 31) == 0 ? Double.NaN : rnd.nextInt() & 63;
+        }
+    }
+
+    static {
+        metadata.add(new TableColumnMetadata("b", ColumnType.BYTE));
+        metadata.add(new TableColumnMetadata("s", ColumnType.SHORT));
+        metadata.add(new TableColumnMetadata("i", ColumnType.INT));
+        metadata.add(new TableColumnMetadata("l", ColumnType.LONG));
+        metadata.add(new TableColumnMetadata("f", ColumnType.FLOAT));
+        metadata.add(new TableColumnMetadata("d", ColumnType.DOUBLE));
+        metadata.add(new TableColumnMetadata("str", ColumnType.STRING));
+    }
+}
@@ -0,0 +1,67 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+
+package com.questdb.griffin.engine.table;
+
+import com.questdb.griffin.AbstractGriffinTest;
+import org.junit.Test;
+
+public class ParallelFilteredRecordCursorFactoryTest extends AbstractGriffinTest {
+
+    @Test
+    public void testFilter() throws Exception {
+        assertParallel("x where i > 0 and d < 64", false);
+    }
+
+    @Test
+    public void testFilterLimit() throws Exception {
+        assertParallel("x where d > 120 limit 10", false);
+    }
+
+    @Test
+    public void testFilterNoMatch() throws Exception {
+        assertParallel("x where i = 7 and d > 200", false);
+    }
+
+    @Test
+    public void testFilterOnStrings() throws Exception {
+        // to_char() keeps its result in a sink, workers must not share function instances
+        assertParallel("x where to_char(timestamp, 'mm') = '05'", false);
+    }
+
+    @Test
+    public void testFilterWithInterval() throws Exception {
+        assertParallel("x where timestamp = '2018-01-03' and i < 0", false);
+    }
+
+    @Test
+    public void testTableChangesBetweenQueries() throws Exception {
+        assertParallel("x where i > 0", true);
+    }
+
+    private static void assertParallel(String query, boolean appendBetweenQueries) throws Exception {
+        // each worker reads table through its own reader
+        assertParallel(query, null, 4, appendBetweenQueries);
+    }
+}
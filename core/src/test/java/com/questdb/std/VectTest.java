@@ -0,0 +1,200 @@
+/*******************************************************************************
+ *    ___                  _   ____  ____
+ *   / _ \ _   _  ___  ___| |_|  _ \| __ )
+ *  | | | | | | |/ _ \/ __| __| | | |  _ \
+ *  | |_| | |_| |  __/\__ \ |_| |_| | |_) |
+ *   \__\_\\__,_|\___||___/\__|____/|____/
+ *
+ * Copyright (C) 2014-2018 Appsicle
+ *
+ * This program is free software: you can redistribute it and/or  modify
+ * it under the terms of the GNU Affero General Public License, version 3,
+ * as published by the Free Software Foundation.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ ******************************************************************************/
+
+package com.questdb.std;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+public class VectTest {
+    // long enough for vector loop and scalar tail
+    private static final int N = 1027;
+
+    @Test
+    public void testDouble() {
+        final long address = Unsafe.malloc(N * 8);
+        try {
+            for (int i = 0; i < N; i++) {
+                Unsafe.getUnsafe().putDouble(address + i * 8, i % 3 == 0 ? Double.NaN : i - 500);
+            }
+            Assert.assertEquals(684, Vect.countDouble(address, N));
+            Assert.assertEquals(-499, Vect.minDouble(address, N), 0);
+            Assert.assertEquals(525, Vect.maxDouble(address, N), 0);
+            Assert.assertEquals(8892, Vect.sumDouble(address, N), 0);
+            assertNullDouble(address);
+        } finally {
+            Unsafe.free(address, N * 8);
+        }
+    }
+
+    @Test
+    public void testFloat() {
+        final long address = Unsafe.malloc(N * 4);
+        try {
+            for (int i = 0; i < N; i++) {
+                Unsafe.getUnsafe().putFloat(address + i * 4, i % 3 == 0 ? Float.NaN : i - 500);
+            }
+            Assert.assertEquals(684, Vect.countFloat(address, N));
+            Assert.assertEquals(-499, Vect.minFloat(address, N), 0);
+            Assert.assertEquals(525, Vect.maxFloat(address, N), 0);
+            Assert.assertEquals(8892, Vect.sumFloat(address, N), 0);
+            assertNullFloat(address);
+        } finally {
+            Unsafe.free(address, N * 4);
+        }
+    }
+
+    @Test
+    public void testInt() {
+        final long address = Unsafe.malloc(N * 4);
+        try {
+            for (int i = 0; i < N; i++) {
+                Unsafe.getUnsafe().putInt(address + i * 4, i % 3 == 0 ? Numbers.INT_NaN : Integer.MAX_VALUE - i);
+            }
+            Assert.assertEquals(684, Vect.countInt(address, N));
+            Assert.assertEquals(Integer.MAX_VALUE - 1025, Vect.minInt(address, N));
+            Assert.assertEquals(Integer.MAX_VALUE - 1, Vect.maxInt(address, N));
+            // sum does not overflow
+            Assert.assertEquals(684L * Integer.MAX_VALUE - 350892, Vect.sumInt(address, N));
+            assertNullInt(address);
+        } finally {
+            Unsafe.free(address, N * 4);
+        }
+    }
+
+    @Test
+    public void testLong() {
+        final long address = Unsafe.malloc(N * 8);
+        try {
+            for (int i = 0; i < N; i++) {
+                Unsafe.getUnsafe().putLong(address + i * 8, i % 3 == 0 ? Numbers.LONG_NaN : i - 500);
+            }
+            Assert.assertEquals(684, Vect.countLong(address, N));
+            Assert.assertEquals(-499, Vect.minLong(address, N));
+            Assert.assertEquals(525, Vect.maxLong(address, N));
+            Assert.assertEquals(8892, Vect.sumLong(address, N));
+            assertNullLong(address);
+        } finally {
+            Unsafe.free(address, N * 8);
+        }
+    }
+
+    @Test
+    public void testNativeKernels() {
+        // shipped linux library has the kernels, Java loops are only fallback for other builds
+        Assume.assumeTrue(Os.type == Os.LINUX);
+        Assert.assertNotEquals(Vect.INSTRUCTION_SET_JAVA, Vect.getSupportedInstructionSet());
+    }
+
+    @Test
+    public void testSelected() {
+        final Rnd rnd = new Rnd();
+        final long rows = Unsafe.malloc(N * 8);
+        final long address = Unsafe.malloc(N * 8);
+        try {
+            for (int i = 0; i < N; i++) {
+                Unsafe.getUnsafe().putLong(rows + i * 8, i);
+                Unsafe.getUnsafe().putLong(address + i * 8, (rnd.nextInt() & 7) == 0 ? Numbers.LONG_NaN : rnd.nextLong());
+            }
+            // selection of all rows aggregates the same values as page
+            for (int n = 0; n < 40; n++) {
+                Assert.assertEquals(Vect.countLong(address, n), Vect.countLongSelected(address, rows, n));
+                Assert.assertEquals(Vect.minLong(address, n), Vect.minLongSelected(address, rows, n));
+                Assert.assertEquals(Vect.maxLong(address, n), Vect.maxLongSelected(address, rows, n));
+                Assert.assertEquals(Vect.sumLong(address, n), Vect.sumLongSelected(address, rows, n));
+                Assert.assertEquals(Vect.countInt(address, n * 2), Vect.countIntSelected(address, rows, n * 2));
+                Assert.assertEquals(Vect.minInt(address, n * 2), Vect.minIntSelected(address, rows, n * 2));
+                Assert.assertEquals(Vect.maxInt(address, n * 2), Vect.maxIntSelected(address, rows, n * 2));
+                Assert.assertEquals(Vect.sumInt(address, n * 2), Vect.sumIntSelected(address, rows, n * 2));
+            }
+
+            // every other row
+            for (int i = 0; i <= N / 2; i++) {
+                Unsafe.getUnsafe().putLong(rows + i * 8, i * 2);
+            }
+            long count = 0;
+            long sum = 0;
+            for (int i = 0; i < N; i += 2) {
+                final long value = Unsafe.getUnsafe().getLong(address + i * 8);
+                if (value != Numbers.LONG_NaN) {
+                    count++;
+                    sum += value;
+                }
+            }
+            Assert.assertEquals(count, Vect.countLongSelected(address, rows, N / 2 + 1));
+            Assert.assertEquals(sum, Vect.sumLongSelected(address, rows, N / 2 + 1));
+        } finally {
+            Unsafe.free(rows, N * 8);
+            Unsafe.free(address, N * 8);
+        }
+    }
+
+    private static void assertNullDouble(long address) {
+        for (int i = 0; i < N; i++) {
+            Unsafe.getUnsafe().putDouble(address + i * 8, Double.NaN);
+        }
+        for (int n = 0; n < N; n += 103) {
+            Assert.assertEquals(0, Vect.countDouble(address, n));
+            Assert.assertTrue(Double.isNaN(Vect.minDouble(address, n)));
+            Assert.assertTrue(Double.isNaN(Vect.maxDouble(address, n)));
+            Assert.assertTrue(Double.isNaN(Vect.sumDouble(address, n)));
+        }
+    }
+
+    private static void assertNullFloat(long address) {
+        for (int i = 0; i < N; i++) {
+            Unsafe.getUnsafe().putFloat(address + i * 4, Float.NaN);
+        }
+        for (int n = 0; n < N; n += 103) {
+            Assert.assertEquals(0, Vect.countFloat(address, n));
+            Assert.assertTrue(Float.isNaN(Vect.minFloat(address, n)));
+            Assert.assertTrue(Float.isNaN(Vect.maxFloat(address, n)));
+            Assert.assertTrue(Double.isNaN(Vect.sumFloat(address, n)));
+        }
+    }
+
+    private static void assertNullInt(long address) {
+        for (int i = 0; i < N; i++) {
+            Unsafe.getUnsafe().putInt(address + i * 4, Numbers.INT_NaN);
+        }
+        for (int n = 0; n < N; n += 103) {
+            Assert.assertEquals(0, Vect.countInt(address, n));
+            Assert.assertEquals(Numbers.INT_NaN, Vect.minInt(address, n));
+            Assert.assertEquals(Numbers.INT_NaN, Vect.maxInt(address, n));
+            Assert.assertEquals(Numbers.LONG_NaN, Vect.sumInt(address, n));
+        }
+    }
+
+    private static void assertNullLong(long address) {
+        for (int i = 0; i < N; i++) {
+            Unsafe.getUnsafe().putLong(address + i * 8, Numbers.LONG_NaN);
+        }
+        for (int n = 0; n < N; n += 103) {
+            Assert.assertEquals(0, Vect.countLong(address, n));
+            Assert.assertEquals(Numbers.LONG_NaN, Vect.minLong(address, n));
+            Assert.assertEquals(Numbers.LONG_NaN, Vect.maxLong(address, n));
+            Assert.assertEquals(Numbers.LONG_NaN, Vect.sumLong(address, n));
+        }
+    }
+}